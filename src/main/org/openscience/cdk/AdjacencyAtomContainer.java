@@ -0,0 +1,517 @@
+/*  Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ *  Contact: cdk-devel@lists.sourceforge.net
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public License
+ *  as published by the Free Software Foundation; either version 2.1
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, write to the Free Software
+ *  Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectChangeEvent;
+import org.openscience.cdk.interfaces.IElectronContainer;
+import org.openscience.cdk.interfaces.IBond.Order;
+
+/**
+ * An {@link AtomContainer} that keeps an atom-to-index map, a bond-to-index
+ * map and per-atom adjacency arrays, so that neighbour queries such as
+ * {@link #getConnectedAtomsList(IAtom)}, {@link #getConnectedBondsList(IAtom)}
+ * and {@link #getBond(IAtom, IAtom)} run in O(degree), and
+ * {@link #getAtomNumber(IAtom)} and {@link #contains(IAtom)} in O(1),
+ * instead of scanning the full bond or atom array.
+ *
+ * <p>The indices are updated incrementally when atoms and bonds are added
+ * or bonds are removed. Operations that shift atom positions, such as
+ * {@link #removeAtom(int)} or {@link #setAtoms(IAtom[])}, mark the affected
+ * index as stale and it is rebuilt in a single O(atoms + bonds) pass on the
+ * next query. Bonds are listened to, so replacing the atoms of a bond that is
+ * part of this container is picked up as well. Neighbour lists are returned
+ * in the same order as {@link AtomContainer} returns them.
+ *
+ * <p>The container is a drop-in replacement for {@link AtomContainer}:
+ * <pre>
+ * IAtomContainer mol = new AdjacencyAtomContainer(reader.read(...));
+ * </pre>
+ *
+ * @cdk.module data
+ * @cdk.githash
+ *
+ * @cdk.keyword adjacency list
+ * @cdk.keyword performance
+ */
+public class AdjacencyAtomContainer extends AtomContainer {
+
+    private static final long serialVersionUID = -1457268093617427431L;
+
+    /* NOTE: the fields below deliberately have no initializers. The super
+     * constructors may call overridden methods, and field initializers would
+     * run afterwards and reset any state set during that call. */
+
+    /** Maps each atom to its (first) position in the atoms array. */
+    private transient Map<IAtom,Integer> atomIndex;
+    private transient boolean atomIndexValid;
+
+    /** Maps each bond to its (first) position in the bonds array. */
+    private transient Map<IBond,Integer> bondIndex;
+    private transient boolean bondIndexValid;
+
+    /** Bonds of each atom, in the order of the bonds array. */
+    private transient IBond[][] adjacency;
+    /** Number of used entries in each row of {@link #adjacency}. */
+    private transient int[] degree;
+    private transient boolean adjacencyValid;
+    /** True if a bond refers to an atom that is not part of this container. */
+    private transient boolean danglingBonds;
+
+    /**
+     * Constructs an empty AdjacencyAtomContainer.
+     */
+    public AdjacencyAtomContainer() {
+        super();
+        reset();
+    }
+
+    /**
+     * Constructs an empty AdjacencyAtomContainer with the given initial array
+     * lengths.
+     *
+     * @param atomCount Number of atoms to be in this container
+     * @param bondCount Number of bonds to be in this container
+     * @param lpCount   Number of lone pairs to be in this container
+     * @param seCount   Number of single electrons to be in this container
+     */
+    public AdjacencyAtomContainer(int atomCount, int bondCount, int lpCount, int seCount) {
+        super(atomCount, bondCount, lpCount, seCount);
+        reset();
+    }
+
+    /**
+     * Constructs an AdjacencyAtomContainer with a shallow copy of the atoms
+     * and electron containers of another container.
+     *
+     * @param container An IAtomContainer to copy the atoms and electron containers from
+     */
+    public AdjacencyAtomContainer(IAtomContainer container) {
+        super(container);
+        invalidate();
+    }
+
+    /** {@inheritDoc} */
+    public void setAtoms(IAtom[] atoms) {
+        super.setAtoms(atoms);
+        invalidate();
+    }
+
+    /** {@inheritDoc} */
+    public void setBonds(IBond[] bonds) {
+        super.setBonds(bonds);
+        bondIndexValid = false;
+        adjacencyValid = false;
+    }
+
+    /** {@inheritDoc} */
+    public void setAtom(int number, IAtom atom) {
+        super.setAtom(number, atom);
+        atomIndexValid = false;
+        adjacencyValid = false;
+    }
+
+    /** {@inheritDoc} */
+    public void addAtom(IAtom atom) {
+        int before = atomCount;
+        super.addAtom(atom);
+        if (atomCount == before) return;
+        if (atomIndexValid) atomIndex.put(atom, before);
+        if (adjacencyValid) {
+            if (danglingBonds) {
+                // an existing bond may refer to the new atom
+                adjacencyValid = false;
+            } else {
+                ensureAdjacencyCapacity(atomCount);
+                degree[before] = 0;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void addBond(IBond bond) {
+        int position = bondCount;
+        super.addBond(bond);
+        bond.addListener(this);
+        if (bondIndexValid && !bondIndex.containsKey(bond))
+            bondIndex.put(bond, position);
+        if (adjacencyValid) {
+            for (int i = 0; i < bond.getAtomCount(); i++) {
+                int atomNumber = getAtomNumber(bond.getAtom(i));
+                if (atomNumber < 0) {
+                    adjacencyValid = false;
+                    return;
+                }
+                appendBond(atomNumber, bond);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void removeAtom(int position) {
+        IAtom atom = atoms[position];
+        super.removeAtom(position);
+        if (atomIndexValid) {
+            Integer current = atomIndex.get(atom);
+            if (current != null && current == position) atomIndex.remove(atom);
+            for (int i = position; i < atomCount; i++) {
+                current = atomIndex.get(atoms[i]);
+                if (current == null || current > i) atomIndex.put(atoms[i], i);
+            }
+        }
+        adjacencyValid = false;
+    }
+
+    /** {@inheritDoc} */
+    public IBond removeBond(int position) {
+        IBond bond = super.removeBond(position);
+        if (bondIndexValid) {
+            Integer current = bondIndex.get(bond);
+            if (current != null && current == position) bondIndex.remove(bond);
+            for (int i = position; i < bondCount; i++) {
+                current = bondIndex.get(bonds[i]);
+                if (current == null || current > i) bondIndex.put(bonds[i], i);
+            }
+        }
+        if (adjacencyValid) {
+            for (int i = 0; i < bond.getAtomCount(); i++) {
+                int atomNumber = getAtomNumber(bond.getAtom(i));
+                if (atomNumber >= 0) removeBond(atomNumber, bond);
+            }
+        }
+        return bond;
+    }
+
+    /** {@inheritDoc} */
+    public void removeAllElements() {
+        super.removeAllElements();
+        reset();
+    }
+
+    /** {@inheritDoc} */
+    public void removeAllBonds() {
+        super.removeAllBonds();
+        bondIndex = new IdentityHashMap<IBond,Integer>();
+        bondIndexValid = true;
+        adjacencyValid = false;
+    }
+
+    /** {@inheritDoc} */
+    public int getAtomNumber(IAtom atom) {
+        ensureAtomIndex();
+        Integer position = atomIndex.get(atom);
+        return position == null ? -1 : position;
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(IAtom atom) {
+        return getAtomNumber(atom) >= 0;
+    }
+
+    /** {@inheritDoc} */
+    public int getBondNumber(IBond bond) {
+        ensureBondIndex();
+        Integer position = bondIndex.get(bond);
+        return position == null ? -1 : position;
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(IBond bond) {
+        return getBondNumber(bond) >= 0;
+    }
+
+    /** {@inheritDoc} */
+    public IBond getBond(IAtom atom1, IAtom atom2) {
+        int atomNumber = indexedAtomNumber(atom1);
+        if (atomNumber < 0) return super.getBond(atom1, atom2);
+        IBond[] row = adjacency[atomNumber];
+        for (int i = 0; i < degree[atomNumber]; i++) {
+            if (row[i].getConnectedAtom(atom1) == atom2) return row[i];
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public List<IAtom> getConnectedAtomsList(IAtom atom) {
+        int atomNumber = indexedAtomNumber(atom);
+        if (atomNumber < 0) return super.getConnectedAtomsList(atom);
+        IBond[] row = adjacency[atomNumber];
+        List<IAtom> atomsList = new ArrayList<IAtom>(degree[atomNumber]);
+        for (int i = 0; i < degree[atomNumber]; i++) {
+            atomsList.add(row[i].getConnectedAtom(atom));
+        }
+        return atomsList;
+    }
+
+    /** {@inheritDoc} */
+    public List<IBond> getConnectedBondsList(IAtom atom) {
+        int atomNumber = indexedAtomNumber(atom);
+        if (atomNumber < 0) return super.getConnectedBondsList(atom);
+        IBond[] row = adjacency[atomNumber];
+        List<IBond> bondsList = new ArrayList<IBond>(degree[atomNumber]);
+        for (int i = 0; i < degree[atomNumber]; i++) {
+            bondsList.add(row[i]);
+        }
+        return bondsList;
+    }
+
+    /** {@inheritDoc} */
+    public List<IElectronContainer> getConnectedElectronContainersList(IAtom atom) {
+        int atomNumber = indexedAtomNumber(atom);
+        if (atomNumber < 0) return super.getConnectedElectronContainersList(atom);
+        List<IElectronContainer> list = new ArrayList<IElectronContainer>();
+        IBond[] row = adjacency[atomNumber];
+        for (int i = 0; i < degree[atomNumber]; i++) {
+            list.add(row[i]);
+        }
+        for (int i = 0; i < lonePairCount; i++) {
+            if (lonePairs[i].contains(atom)) list.add(lonePairs[i]);
+        }
+        for (int i = 0; i < singleElectronCount; i++) {
+            if (singleElectrons[i].contains(atom)) list.add(singleElectrons[i]);
+        }
+        return list;
+    }
+
+    /** {@inheritDoc} */
+    public int getConnectedAtomsCount(IAtom atom) {
+        int atomNumber = indexedAtomNumber(atom);
+        if (atomNumber < 0) return super.getConnectedAtomsCount(atom);
+        return degree[atomNumber];
+    }
+
+    /** {@inheritDoc} */
+    public int getConnectedBondsCount(IAtom atom) {
+        return getConnectedAtomsCount(atom);
+    }
+
+    /** {@inheritDoc} */
+    public int getConnectedBondsCount(int atomNumber) {
+        ensureAdjacency();
+        return degree[atomNumber];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @deprecated   Replaced by <code>AtomContainerManipulator#getBondOrderSum(IAtomContainer, IAtom)</code>
+     */
+    @Deprecated
+    public double getBondOrderSum(IAtom atom) {
+        int atomNumber = indexedAtomNumber(atom);
+        if (atomNumber < 0) return super.getBondOrderSum(atom);
+        double count = 0;
+        IBond[] row = adjacency[atomNumber];
+        for (int i = 0; i < degree[atomNumber]; i++) {
+            Order order = row[i].getOrder();
+            if (order == IBond.Order.SINGLE) {
+                count += 1;
+            } else if (order == IBond.Order.DOUBLE) {
+                count += 2;
+            } else if (order == IBond.Order.TRIPLE) {
+                count += 3;
+            } else if (order == IBond.Order.QUADRUPLE) {
+                count += 4;
+            }
+        }
+        return count;
+    }
+
+    /** {@inheritDoc} */
+    public Order getMaximumBondOrder(IAtom atom) {
+        int atomNumber = indexedAtomNumber(atom);
+        if (atomNumber < 0) return super.getMaximumBondOrder(atom);
+        IBond.Order max = IBond.Order.SINGLE;
+        IBond[] row = adjacency[atomNumber];
+        for (int i = 0; i < degree[atomNumber]; i++) {
+            if (row[i].getOrder().ordinal() > max.ordinal()) max = row[i].getOrder();
+        }
+        return max;
+    }
+
+    /** {@inheritDoc} */
+    public Order getMinimumBondOrder(IAtom atom) {
+        int atomNumber = indexedAtomNumber(atom);
+        if (atomNumber < 0) return super.getMinimumBondOrder(atom);
+        IBond.Order min = IBond.Order.QUADRUPLE;
+        IBond[] row = adjacency[atomNumber];
+        for (int i = 0; i < degree[atomNumber]; i++) {
+            if (row[i].getOrder().ordinal() < min.ordinal()) min = row[i].getOrder();
+        }
+        return min;
+    }
+
+    /**
+     * Clones this AdjacencyAtomContainer object and its content. The indices
+     * of the clone are built independently of the ones of this container.
+     *
+     * @return The cloned object
+     */
+    public Object clone() throws CloneNotSupportedException {
+        // super.clone() calls removeAllElements() on the clone, which
+        // replaces the shallow copied index structures by new ones
+        return super.clone();
+    }
+
+    /**
+     * Called by objects to which this object has registered as a listener.
+     * Changes of the atoms of a bond in this container invalidate the
+     * adjacency index.
+     *
+     * @param event A change event pointing to the source of the change
+     */
+    public void stateChanged(IChemObjectChangeEvent event) {
+        if (adjacencyValid && event.getSource() instanceof IBond) {
+            IBond bond = (IBond)event.getSource();
+            if (contains(bond) && !isIndexed(bond)) adjacencyValid = false;
+        }
+        super.stateChanged(event);
+    }
+
+    /**
+     * Returns the position of the given atom after making sure the adjacency
+     * index is up to date, or -1 if the atom is not in this container.
+     */
+    private int indexedAtomNumber(IAtom atom) {
+        int atomNumber = getAtomNumber(atom);
+        if (atomNumber >= 0) ensureAdjacency();
+        return atomNumber;
+    }
+
+    /**
+     * Checks whether all atoms of the bond list it in their adjacency row.
+     */
+    private boolean isIndexed(IBond bond) {
+        for (int i = 0; i < bond.getAtomCount(); i++) {
+            int atomNumber = getAtomNumber(bond.getAtom(i));
+            if (atomNumber < 0) return false;
+            boolean found = false;
+            for (int j = 0; j < degree[atomNumber] && !found; j++) {
+                found = adjacency[atomNumber][j] == bond;
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private void invalidate() {
+        atomIndexValid = false;
+        bondIndexValid = false;
+        adjacencyValid = false;
+    }
+
+    private void reset() {
+        atomIndex = new IdentityHashMap<IAtom,Integer>();
+        bondIndex = new IdentityHashMap<IBond,Integer>();
+        adjacency = new IBond[0][];
+        degree = new int[0];
+        danglingBonds = false;
+        atomIndexValid = true;
+        bondIndexValid = true;
+        adjacencyValid = true;
+    }
+
+    private void ensureAtomIndex() {
+        if (atomIndexValid) return;
+        atomIndex = new IdentityHashMap<IAtom,Integer>(2 * atomCount);
+        for (int i = atomCount - 1; i >= 0; i--) {
+            atomIndex.put(atoms[i], i);
+        }
+        atomIndexValid = true;
+    }
+
+    private void ensureBondIndex() {
+        if (bondIndexValid) return;
+        bondIndex = new IdentityHashMap<IBond,Integer>(2 * bondCount);
+        for (int i = bondCount - 1; i >= 0; i--) {
+            bondIndex.put(bonds[i], i);
+        }
+        bondIndexValid = true;
+    }
+
+    private void ensureAdjacency() {
+        if (adjacencyValid) return;
+        ensureAtomIndex();
+        adjacency = new IBond[atomCount][];
+        degree = new int[atomCount];
+        danglingBonds = false;
+        for (int i = 0; i < bondCount; i++) {
+            IBond bond = bonds[i];
+            for (int j = 0; j < bond.getAtomCount(); j++) {
+                Integer atomNumber = atomIndex.get(bond.getAtom(j));
+                if (atomNumber == null) {
+                    danglingBonds = true;
+                } else {
+                    appendBond(atomNumber, bond);
+                }
+            }
+        }
+        adjacencyValid = true;
+    }
+
+    private void ensureAdjacencyCapacity(int size) {
+        if (adjacency.length >= size) return;
+        int newSize = Math.max(size, adjacency.length + growArraySize);
+        IBond[][] newAdjacency = new IBond[newSize][];
+        System.arraycopy(adjacency, 0, newAdjacency, 0, adjacency.length);
+        int[] newDegree = new int[newSize];
+        System.arraycopy(degree, 0, newDegree, 0, degree.length);
+        adjacency = newAdjacency;
+        degree = newDegree;
+    }
+
+    private void appendBond(int atomNumber, IBond bond) {
+        IBond[] row = adjacency[atomNumber];
+        int count = degree[atomNumber];
+        // a bond that lists the same atom twice is only added once
+        if (count > 0 && row[count - 1] == bond) return;
+        if (row == null) {
+            row = new IBond[4];
+            adjacency[atomNumber] = row;
+        } else if (count == row.length) {
+            IBond[] newRow = new IBond[row.length * 2];
+            System.arraycopy(row, 0, newRow, 0, count);
+            row = newRow;
+            adjacency[atomNumber] = row;
+        }
+        row[count] = bond;
+        degree[atomNumber] = count + 1;
+    }
+
+    private void removeBond(int atomNumber, IBond bond) {
+        IBond[] row = adjacency[atomNumber];
+        int count = degree[atomNumber];
+        for (int i = 0; i < count; i++) {
+            if (row[i] == bond) {
+                System.arraycopy(row, i + 1, row, i, count - i - 1);
+                row[count - 1] = null;
+                degree[atomNumber] = count - 1;
+                return;
+            }
+        }
+    }
+
+}
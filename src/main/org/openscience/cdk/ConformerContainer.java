@@ -29,6 +29,7 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import javax.vecmath.Point3d;
+import java.nio.DoubleBuffer;
 import java.util.*;
 
 /**
@@ -36,8 +37,11 @@ import java.util.*;
  * <p/>
  * Since all the conformers for a given molecule only differ in their 3D coordinates
  * this data structure stores a single {@link IAtomContainer} containing the atom and bond
- * details and a List of 3D coordinate sets, each element being the set of 3D coordinates
- * for a given conformer.
+ * details and the 3D coordinates of all conformers, packed into a single <code>double[]</code>
+ * holding x, y and z of each atom, conformer after conformer. This avoids a {@link Point3d}
+ * object per atom per conformer. The coordinates of a conformer can be read without copying
+ * with {@link #getCoordinates(int)}, and the RMSD between two conformers is computed directly
+ * on the packed coordinates by {@link #getRMSD(int, int)}.
  * <p/>
  * The class behaves in many ways as a List<IAtomContainer> object, though a few methods are not
  * implemented. Though it is possible to add conformers by hand, this data structure is
@@ -63,22 +67,97 @@ import java.util.*;
 public class ConformerContainer implements List<IAtomContainer> {
     private IAtomContainer atomContainer = null;
     private String title = null;
-    private List<Point3d[]> coordinates;
+    /** The x, y and z coordinates of each atom, for each conformer. */
+    private double[] coordinates = new double[0];
+    /** The number of conformers. */
+    private int size = 0;
+    /** The number of atoms of each conformer. */
+    private int atomCount = 0;
 
-    private Point3d[] getCoordinateList(IAtomContainer atomContainer) {
+    private double[] getCoordinateList(IAtomContainer atomContainer) {
 
-        Point3d[] tmp = new Point3d[atomContainer.getAtomCount()];
+        double[] tmp = new double[3 * atomContainer.getAtomCount()];
         for (int i = 0; i < atomContainer.getAtomCount(); i++) {
-            IAtom atom = atomContainer.getAtom(i);
-            if (atom.getPoint3d() == null) throw new NullPointerException("Molecule must have 3D coordinates");
-            tmp[i] = new Point3d(atom.getPoint3d());
+            Point3d p = atomContainer.getAtom(i).getPoint3d();
+            if (p == null) throw new NullPointerException("Molecule must have 3D coordinates");
+            tmp[3 * i] = p.x;
+            tmp[3 * i + 1] = p.y;
+            tmp[3 * i + 2] = p.z;
         }
         return tmp;
     }
 
+    private void setBase(IAtomContainer atomContainer) {
+        this.atomContainer = atomContainer;
+        this.atomCount = atomContainer.getAtomCount();
+    }
+
+    /**
+     * Inserts the coordinates of a conformer at the given position, moving
+     * the later conformers up.
+     */
+    private void insert(int i, double[] conformer, int offset) {
+        if (i < 0 || i > size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        int length = 3 * atomCount;
+        if ((size + 1) * length > coordinates.length) {
+            double[] grown = new double[Math.max(2 * size, size + 1) * length];
+            System.arraycopy(coordinates, 0, grown, 0, size * length);
+            coordinates = grown;
+        }
+        System.arraycopy(coordinates, i * length, coordinates, (i + 1) * length, (size - i) * length);
+        System.arraycopy(conformer, offset, coordinates, i * length, length);
+        size++;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+
+    /**
+     * Sets the coordinates of conformer i on the atoms of the base molecule.
+     */
+    private IAtomContainer load(int i) {
+        checkIndex(i);
+        int offset = 3 * atomCount * i;
+        for (int j = 0; j < atomCount; j++) {
+            IAtom atom = atomContainer.getAtom(j);
+            atom.setPoint3d(new Point3d(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2]));
+            offset += 3;
+        }
+        return atomContainer;
+    }
+
+    /**
+     * Returns the index of the first conformer, at or after <code>from</code>
+     * when searching forward or at or before it when searching backward, with
+     * the same coordinates as the given molecule.
+     */
+    private int find(IAtomContainer atomContainer, int from, int step) {
+        if (!atomContainer.getProperty(CDKConstants.TITLE).equals(title)) return -1;
+        if (atomContainer.getAtomCount() != this.atomCount) return -1;
+
+        double[] coords = new double[3 * atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            Point3d p = atomContainer.getAtom(i).getPoint3d();
+            coords[3 * i] = p.x;
+            coords[3 * i + 1] = p.y;
+            coords[3 * i + 2] = p.z;
+        }
+        for (int j = from; j >= 0 && j < size; j += step) {
+            int offset = 3 * atomCount * j;
+            boolean coordsMatch = true;
+            for (int k = 0; k < coords.length; k++) {
+                if (coords[k] != coordinates[offset + k]) {
+                    coordsMatch = false;
+                    break;
+                }
+            }
+            if (coordsMatch) return j;
+        }
+        return -1;
+    }
 
     public ConformerContainer() {
-        coordinates = new ArrayList<Point3d[]>();
     }
 
     /**
@@ -95,10 +174,9 @@ public class ConformerContainer implements List<IAtomContainer> {
      * @param atomContainer The base molecule (or first conformer).
      */
     public ConformerContainer(IAtomContainer atomContainer) {
-        this.atomContainer = atomContainer;
+        setBase(atomContainer);
         title = (String) atomContainer.getProperty(CDKConstants.TITLE);
-        coordinates = new ArrayList<Point3d[]>();
-        coordinates.add(getCoordinateList(atomContainer));
+        insert(0, getCoordinateList(atomContainer), 0);
     }
 
     /**
@@ -122,10 +200,10 @@ public class ConformerContainer implements List<IAtomContainer> {
                 throw new IllegalArgumentException("Titles of all molecules must match");
         }
 
-        this.atomContainer = atomContainers[0];
-        coordinates = new ArrayList<Point3d[]>();
+        setBase(atomContainers[0]);
+        coordinates = new double[3 * atomCount * atomContainers.length];
         for (IAtomContainer container : atomContainers) {
-            coordinates.add(getCoordinateList(container));
+            insert(size, getCoordinateList(container), 0);
         }
     }
 
@@ -149,7 +227,7 @@ public class ConformerContainer implements List<IAtomContainer> {
      */
     @TestMethod("testSize")
     public int size() {
-        return coordinates.size();
+        return size;
     }
 
     /**
@@ -159,7 +237,7 @@ public class ConformerContainer implements List<IAtomContainer> {
      */
     @TestMethod("testIsEmpty")
     public boolean isEmpty() {
-        return coordinates.isEmpty();
+        return size == 0;
     }
 
     /**
@@ -200,16 +278,18 @@ public class ConformerContainer implements List<IAtomContainer> {
      */
     @TestMethod("testToArray")
     public Object[] toArray() {
-        IAtomContainer[] ret = new IAtomContainer[coordinates.size()];
-        int index = 0;
-        for (Point3d[] coords : coordinates) {
+        IAtomContainer[] ret = new IAtomContainer[size];
+        for (int index = 0; index < size; index++) {
             try {
                 IAtomContainer conf = (IAtomContainer) atomContainer.clone();
-                for (int i = 0; i < coords.length; i++) {
+                int offset = 3 * atomCount * index;
+                for (int i = 0; i < atomCount; i++) {
                     IAtom atom = conf.getAtom(i);
-                    atom.setPoint3d(coords[i]);
+                    atom.setPoint3d(new Point3d(
+                        coordinates[offset + 3 * i], coordinates[offset + 3 * i + 1], coordinates[offset + 3 * i + 2]
+                    ));
                 }
-                ret[index++] = conf;
+                ret[index] = conf;
             } catch (CloneNotSupportedException e) {
                 e.printStackTrace();
             }
@@ -239,7 +319,7 @@ public class ConformerContainer implements List<IAtomContainer> {
     @TestMethod("testAdd_IAtomContainer")
     public boolean add(IAtomContainer atomContainer) {
         if (this.atomContainer == null) {
-            this.atomContainer = atomContainer;
+            setBase(atomContainer);
             title = (String) atomContainer.getProperty(CDKConstants.TITLE);
         }
         if (title==null){
@@ -254,10 +334,89 @@ public class ConformerContainer implements List<IAtomContainer> {
         if (atomContainer.getAtomCount() != this.atomContainer.getAtomCount())
             throw new IllegalArgumentException("Doesn't have the same number of atoms as the rest of the conformers");
 
-        coordinates.add(getCoordinateList(atomContainer));
+        insert(size, getCoordinateList(atomContainer), 0);
         return true;
     }
 
+    /**
+     * Add a conformer to the end of the list, given only its coordinates.
+     * <p/>
+     * The coordinates are the x, y and z coordinates of each atom, in the order
+     * of the atoms of the stored molecule. They are copied, so the array can be
+     * reused. This allows readers to add conformers without creating an
+     * IAtomContainer for each of them.
+     *
+     * @param coordinates The array with the coordinates of the new conformer
+     * @param offset      The position of the x coordinate of the first atom in the array
+     * @throws IllegalStateException if no molecule has been added yet
+     */
+    @TestMethod("testAddCoordinates_arraydouble_int")
+    public void addCoordinates(double[] coordinates, int offset) {
+        if (atomContainer == null)
+            throw new IllegalStateException("The first conformer must be added as a molecule");
+        if (offset < 0 || offset + 3 * atomCount > coordinates.length)
+            throw new IllegalArgumentException("Doesn't have the coordinates of all atoms of the conformers");
+        insert(size, coordinates, offset);
+    }
+
+    /**
+     * Get the coordinates of a conformer, without copying them.
+     * <p/>
+     * The returned buffer is a read-only view on the stored coordinates,
+     * holding the x, y and z coordinates of each atom, in the order of the
+     * atoms of the molecule. The view is only valid until conformers are added
+     * or removed.
+     *
+     * @param i The position of the conformer
+     * @return The coordinates of the conformer
+     */
+    @TestMethod("testGetCoordinates_int")
+    public DoubleBuffer getCoordinates(int i) {
+        checkIndex(i);
+        return DoubleBuffer.wrap(coordinates, 3 * atomCount * i, 3 * atomCount).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Get the coordinates of one atom in a conformer.
+     *
+     * @param i    The position of the conformer
+     * @param atom The position of the atom in the molecule
+     * @return A new point with the coordinates of the atom
+     */
+    @TestMethod("testGetPoint3d_int_int")
+    public Point3d getPoint3d(int i, int atom) {
+        checkIndex(i);
+        if (atom < 0 || atom >= atomCount) throw new IndexOutOfBoundsException("Atom: " + atom);
+        int offset = 3 * (atomCount * i + atom);
+        return new Point3d(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2]);
+    }
+
+    /**
+     * Calculates the root mean square deviation of the atom positions of two
+     * conformers, without superimposing them. This gives the same value as
+     * {@link org.openscience.cdk.geometry.GeometryTools#getAllAtomRMSD}
+     * with a mapping of all atoms on themselves, but does not need the
+     * conformers as IAtomContainers.
+     *
+     * @param i The position of the first conformer
+     * @param j The position of the second conformer
+     * @return The RMSD of the atom positions
+     */
+    @TestMethod("testGetRMSD_int_int")
+    public double getRMSD(int i, int j) {
+        checkIndex(i);
+        checkIndex(j);
+        if (atomCount == 0) return 0.0;
+        int first = 3 * atomCount * i;
+        int second = 3 * atomCount * j;
+        double sum = 0.0;
+        for (int k = 0; k < 3 * atomCount; k++) {
+            double d = coordinates[first + k] - coordinates[second + k];
+            sum += d * d;
+        }
+        return Math.sqrt(sum / atomCount);
+    }
+
     /**
      * Remove the specified conformer.
      *
@@ -309,7 +468,8 @@ public class ConformerContainer implements List<IAtomContainer> {
      */
     @TestMethod("testClear")
     public void clear() {
-        coordinates.clear();
+        coordinates = new double[0];
+        size = 0;
     }
 
     /**
@@ -320,28 +480,25 @@ public class ConformerContainer implements List<IAtomContainer> {
      */
     @TestMethod("testGet_int, testGet2")
     public IAtomContainer get(int i) {
-        Point3d[] tmp = coordinates.get(i);
-        for (int j = 0; j < atomContainer.getAtomCount(); j++) {
-            IAtom atom = atomContainer.getAtom(j);
-            atom.setPoint3d(tmp[j]);
-        }
-        return atomContainer;
+        return load(i);
     }
 
     @TestMethod("testSet_int_IAtomContainer")
     public IAtomContainer set(int i, IAtomContainer atomContainer) {
         if (!title.equals(atomContainer.getProperty(CDKConstants.TITLE)))
             throw new IllegalArgumentException("The input molecules does not have the same title as the other conformers");
-        Point3d[] tmp = getCoordinateList(atomContainer);
+        if (atomContainer.getAtomCount() != this.atomCount)
+            throw new IllegalArgumentException("Doesn't have the same number of atoms as the rest of the conformers");
+        double[] tmp = getCoordinateList(atomContainer);
         IAtomContainer oldAtomContainer = get(i);
-        coordinates.set(i, tmp);
+        System.arraycopy(tmp, 0, coordinates, 3 * this.atomCount * i, 3 * this.atomCount);
         return oldAtomContainer;
     }
 
     @TestMethod("testAdd_int_IAtomContainer")
     public void add(int i, IAtomContainer atomContainer) {
         if (this.atomContainer == null) {
-            this.atomContainer = atomContainer;
+            setBase(atomContainer);
             title = (String) atomContainer.getProperty(CDKConstants.TITLE);
         }
 
@@ -351,8 +508,7 @@ public class ConformerContainer implements List<IAtomContainer> {
         if (atomContainer.getAtomCount() != this.atomContainer.getAtomCount())
             throw new IllegalArgumentException("Doesn't have the same number of atoms as the rest of the conformers");
 
-        Point3d[] tmp = getCoordinateList(atomContainer);
-        coordinates.add(i, tmp);
+        insert(i, getCoordinateList(atomContainer), 0);
     }
 
     /**
@@ -364,7 +520,9 @@ public class ConformerContainer implements List<IAtomContainer> {
     @TestMethod("testRemove_int")
     public IAtomContainer remove(int i) {
         IAtomContainer oldAtomContainer = get(i);
-        coordinates.remove(i);
+        int length = 3 * atomCount;
+        System.arraycopy(coordinates, (i + 1) * length, coordinates, i * length, (size - i - 1) * length);
+        size--;
         return oldAtomContainer;
     }
 
@@ -380,26 +538,7 @@ public class ConformerContainer implements List<IAtomContainer> {
      */
     @TestMethod("testIndexOf_Object")
     public int indexOf(Object o) {
-        IAtomContainer atomContainer = (IAtomContainer) o;
-        if (!atomContainer.getProperty(CDKConstants.TITLE).equals(title)) return -1;
-
-        if (atomContainer.getAtomCount() != this.atomContainer.getAtomCount()) return -1;
-
-        boolean coordsMatch;
-        int index = 0;
-        for (Point3d[] coords : coordinates) {
-            coordsMatch = true;
-            for (int i = 0; i < atomContainer.getAtomCount(); i++) {
-                Point3d p = atomContainer.getAtom(i).getPoint3d();
-                if (!(p.x == coords[i].x && p.y == coords[i].y && p.z == coords[i].z)) {
-                    coordsMatch = false;
-                    break;
-                }
-            }
-            if (coordsMatch) return index;
-            index++;
-        }
-        return -1;
+        return find((IAtomContainer) o, 0, 1);
     }
 
     /**
@@ -414,25 +553,7 @@ public class ConformerContainer implements List<IAtomContainer> {
      */
     @TestMethod("testLastIndexOf_Object")
     public int lastIndexOf(Object o) {
-        IAtomContainer atomContainer = (IAtomContainer) o;
-        if (!atomContainer.getProperty(CDKConstants.TITLE).equals(title)) return -1;
-
-        if (atomContainer.getAtomCount() != coordinates.get(0).length) return -1;
-
-        boolean coordsMatch;
-        for (int j = coordinates.size() - 1; j >= 0; j--) {
-            Point3d[] coords = coordinates.get(j);
-            coordsMatch = true;
-            for (int i = 0; i < atomContainer.getAtomCount(); i++) {
-                Point3d p = atomContainer.getAtom(i).getPoint3d();
-                if (!(p.x == coords[i].x && p.y == coords[i].y && p.z == coords[i].z)) {
-                    coordsMatch = false;
-                    break;
-                }
-            }
-            if (coordsMatch) return j;
-        }
-        return -1;
+        return find((IAtomContainer) o, size - 1, -1);
     }
 
     @TestMethod("testListIterator")
@@ -456,15 +577,11 @@ public class ConformerContainer implements List<IAtomContainer> {
         int last = -1;
 
         public boolean hasNext() {
-            return current != coordinates.size();
+            return current != size;
         }
 
         public IAtomContainer next() {
-            Point3d[] tmp = coordinates.get(current);
-            for (int j = 0; j < atomContainer.getAtomCount(); j++) {
-                IAtom atom = atomContainer.getAtom(j);
-                atom.setPoint3d(tmp[j]);
-            }
+            load(current);
             last = current++;
             return atomContainer;
         }
@@ -0,0 +1,781 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.atomtype;
+
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.config.AtomTypeFactory;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.SpanningTree;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IAtomType.Hybridization;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.interfaces.ISingleElectron;
+
+/**
+ * Atom type matcher that perceives the same atom types as the
+ * {@link CDKAtomTypeMatcher}, but types a whole container in a single pass.
+ * The local environment of every atom, such as its number of neighbours, its
+ * highest bond order, its number of double bonds and explicit hydrogens, is
+ * computed once from the bond list into primitive arrays. The types are then
+ * resolved with a decision tree over those arrays, and checked against a
+ * table of the atom type properties that is built when the matcher is
+ * created, instead of looking the types up by name for every atom.
+ *
+ * <p>The decision tree covers the non-radical carbons, hydrogens, nitrogens,
+ * oxygens, fluorines, chlorines and bromines, which make up nearly all atoms
+ * of organic molecules. All other atoms, and the few cases that need the
+ * rings an atom is part of, are typed by the {@link CDKAtomTypeMatcher}, so
+ * that both matchers always return the same types. As with
+ * {@link CDKAtomTypeMatcher#findMatchingAtomType(IAtomContainer)}, all atoms
+ * are typed from the state of the container before any type is assigned.
+ *
+ * @cdk.module  core
+ * @cdk.githash
+ * @cdk.keyword atom type, perception
+ *
+ * @see CDKAtomTypeMatcher
+ */
+@TestClass("org.openscience.cdk.atomtype.CompiledCDKAtomTypeMatcherTest")
+public class CompiledCDKAtomTypeMatcher implements IAtomTypeMatcher {
+
+    // the atom types of the decision tree, the index of each name is its code
+    private static final String[] TYPE_NAMES = {
+        "C.sp", "C.sp2", "C.sp3", "C.plus.sp1", "C.plus.sp2", "C.plus.planar",
+        "C.minus.sp1", "C.minus.sp2", "C.minus.sp3", "C.minus.planar",
+        "H", "H.plus", "H.minus",
+        "N.sp1", "N.sp1.2", "N.sp2", "N.sp2.3", "N.sp3", "N.planar3", "N.amide",
+        "N.thioamide", "N.oxide", "N.nitro", "N.plus", "N.plus.sp1", "N.plus.sp2",
+        "N.minus.sp2", "N.minus.sp3", "N.minus.planar3",
+        "O.sp2", "O.sp2.co2", "O.sp3", "O.planar3", "O.minus", "O.minus.co2",
+        "O.minus2", "O.plus", "O.plus.sp1", "O.plus.sp2",
+        "F", "F.minus", "F.plus.sp2", "F.plus.sp3",
+        "Cl", "Cl.2", "Cl.chlorate", "Cl.perchlorate", "Cl.perchlorate.charged",
+        "Cl.minus", "Cl.plus.sp2", "Cl.plus.sp3",
+        "Br", "Br.3", "Br.minus", "Br.plus.sp2", "Br.plus.sp3"
+    };
+
+    private static final int C_SP = 0, C_SP2 = 1, C_SP3 = 2, C_PLUS_SP1 = 3,
+        C_PLUS_SP2 = 4, C_PLUS_PLANAR = 5, C_MINUS_SP1 = 6, C_MINUS_SP2 = 7,
+        C_MINUS_SP3 = 8, C_MINUS_PLANAR = 9;
+    private static final int H = 10, H_PLUS = 11, H_MINUS = 12;
+    private static final int N_SP1 = 13, N_SP1_2 = 14, N_SP2 = 15, N_SP2_3 = 16,
+        N_SP3 = 17, N_PLANAR3 = 18, N_AMIDE = 19, N_THIOAMIDE = 20, N_OXIDE = 21,
+        N_NITRO = 22, N_PLUS = 23, N_PLUS_SP1 = 24, N_PLUS_SP2 = 25,
+        N_MINUS_SP2 = 26, N_MINUS_SP3 = 27, N_MINUS_PLANAR3 = 28;
+    private static final int O_SP2 = 29, O_SP2_CO2 = 30, O_SP3 = 31, O_PLANAR3 = 32,
+        O_MINUS = 33, O_MINUS_CO2 = 34, O_MINUS2 = 35, O_PLUS = 36, O_PLUS_SP1 = 37,
+        O_PLUS_SP2 = 38;
+    private static final int F = 39, F_MINUS = 40, F_PLUS_SP2 = 41, F_PLUS_SP3 = 42;
+    private static final int CL = 43, CL_2 = 44, CL_CHLORATE = 45, CL_PERCHLORATE = 46,
+        CL_PERCHLORATE_CHARGED = 47, CL_MINUS = 48, CL_PLUS_SP2 = 49, CL_PLUS_SP3 = 50;
+    private static final int BR = 51, BR_3 = 52, BR_MINUS = 53, BR_PLUS_SP2 = 54,
+        BR_PLUS_SP3 = 55;
+
+    /** No atom type matches. */
+    private static final int NONE = -1;
+    /** The atom must be typed by the {@link CDKAtomTypeMatcher}. */
+    private static final int FALLBACK = -2;
+
+    // element codes
+    private static final int OTHER = 0, CARBON = 1, HYDROGEN = 2, NITROGEN = 3,
+        OXYGEN = 4, FLUORINE = 5, CHLORINE = 6, BROMINE = 7, SULPHUR = 8;
+
+    // bond order codes, the ordinals of IBond.Order
+    private static final int SINGLE = 0, DOUBLE = 1, TRIPLE = 2, QUADRUPLE = 3;
+
+    private static Map<Integer,Map<IChemObjectBuilder,CompiledCDKAtomTypeMatcher>>
+        matchers = new Hashtable<Integer,Map<IChemObjectBuilder,CompiledCDKAtomTypeMatcher>>(1);
+
+    private final int mode;
+    private final CDKAtomTypeMatcher fallback;
+
+    // the atom type table
+    private final IAtomType[] types;
+    private final int[] typeNeighbourCount;
+    private final int[] typePiBondCount;
+    private final boolean[] typeHasPiBondCount;
+    private final int[] typeValency;
+    private final Integer[] typeCharge;
+
+    private CompiledCDKAtomTypeMatcher(IChemObjectBuilder builder, int mode) {
+        this.mode = mode;
+        this.fallback = CDKAtomTypeMatcher.getInstance(builder, mode);
+        AtomTypeFactory factory = AtomTypeFactory.getInstance(
+            "org/openscience/cdk/dict/data/cdk-atom-types.owl", builder
+        );
+        int count = TYPE_NAMES.length;
+        types = new IAtomType[count];
+        typeNeighbourCount = new int[count];
+        typePiBondCount = new int[count];
+        typeHasPiBondCount = new boolean[count];
+        typeValency = new int[count];
+        typeCharge = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            IAtomType type;
+            try {
+                type = factory.getAtomType(TYPE_NAMES[i]);
+            } catch (CDKException exception) {
+                throw new IllegalStateException(
+                    "The CDK atom type list lacks " + TYPE_NAMES[i], exception
+                );
+            }
+            // the same valency as set by CDKAtomTypeMatcher
+            Integer piBondCount = (Integer)type.getProperty(CDKConstants.PI_BOND_COUNT);
+            type.setValency(piBondCount + type.getFormalNeighbourCount());
+            types[i] = type;
+            typeNeighbourCount[i] = type.getFormalNeighbourCount();
+            typeHasPiBondCount[i] = piBondCount != null;
+            typePiBondCount[i] = piBondCount;
+            typeValency[i] = type.getValency();
+            typeCharge[i] = type.getFormalCharge();
+        }
+    }
+
+    /**
+     * Returns the matcher for the given builder that does not require
+     * explicit hydrogens.
+     *
+     * @param  builder the builder of the atom types
+     * @return         the matcher
+     */
+    @TestMethod("testGetInstance_IChemObjectBuilder")
+    public static CompiledCDKAtomTypeMatcher getInstance(IChemObjectBuilder builder) {
+        return getInstance(builder, CDKAtomTypeMatcher.REQUIRE_NOTHING);
+    }
+
+    /**
+     * Returns the matcher for the given builder and mode.
+     *
+     * @param  builder the builder of the atom types
+     * @param  mode    {@link CDKAtomTypeMatcher#REQUIRE_NOTHING} or
+     *                 {@link CDKAtomTypeMatcher#REQUIRE_EXPLICIT_HYDROGENS}
+     * @return         the matcher
+     */
+    @TestMethod("testGetInstance_IChemObjectBuilder_int")
+    public static synchronized CompiledCDKAtomTypeMatcher getInstance(IChemObjectBuilder builder, int mode) {
+        if (!matchers.containsKey(mode))
+            matchers.put(mode, new Hashtable<IChemObjectBuilder,CompiledCDKAtomTypeMatcher>(1));
+        if (!matchers.get(mode).containsKey(builder))
+            matchers.get(mode).put(builder, new CompiledCDKAtomTypeMatcher(builder, mode));
+        return matchers.get(mode).get(builder);
+    }
+
+    /** {@inheritDoc} */
+    @TestMethod("testFindMatchingAtomType_IAtomContainer")
+    public IAtomType[] findMatchingAtomType(IAtomContainer atomContainer) throws CDKException {
+        Environment environment = Environment.create(atomContainer);
+        if (environment == null) return fallback.findMatchingAtomType(atomContainer);
+        IAtomType[] matched = new IAtomType[atomContainer.getAtomCount()];
+        for (int i = 0; i < matched.length; i++) {
+            matched[i] = findMatchingAtomType(environment, i);
+        }
+        return matched;
+    }
+
+    /** {@inheritDoc} */
+    @TestMethod("testFindMatchingAtomType_IAtomContainer_IAtom")
+    public IAtomType findMatchingAtomType(IAtomContainer atomContainer, IAtom atom)
+        throws CDKException {
+        Environment environment = Environment.create(atomContainer);
+        int index = environment == null ? -1 : environment.indexOf(atom);
+        if (index < 0) return fallback.findMatchingAtomType(atomContainer, atom);
+        return findMatchingAtomType(environment, index);
+    }
+
+    private IAtomType findMatchingAtomType(Environment environment, int atom)
+        throws CDKException {
+        int type = FALLBACK;
+        if (!environment.pseudo[atom] && environment.hasCharge[atom] && environment.singleElectrons[atom] == 0) {
+            switch (environment.element[atom]) {
+                case CARBON:   type = perceiveCarbon(environment, atom);   break;
+                case HYDROGEN: type = perceiveHydrogen(environment, atom); break;
+                case NITROGEN: type = perceiveNitrogen(environment, atom); break;
+                case OXYGEN:   type = perceiveOxygen(environment, atom);   break;
+                case FLUORINE: type = perceiveFluorine(environment, atom); break;
+                case CHLORINE: type = perceiveChlorine(environment, atom); break;
+                case BROMINE:  type = perceiveBromine(environment, atom);  break;
+            }
+        }
+        if (type == FALLBACK)
+            return fallback.findMatchingAtomType(environment.container, environment.atoms[atom]);
+        return type == NONE ? null : types[type];
+    }
+
+    private int perceiveCarbon(Environment env, int atom) {
+        int charge = env.charge[atom];
+        Hybridization hybridization = env.hybridization[atom];
+        int maxOrder = env.maxOrder[atom];
+        int degree = env.degree[atom];
+        if (hybridization != null && charge == 0) {
+            if (hybridization == Hybridization.SP2) {
+                if (isAcceptable(env, atom, C_SP2)) return C_SP2;
+            } else if (hybridization == Hybridization.SP3) {
+                if (isAcceptable(env, atom, C_SP3)) return C_SP3;
+            } else if (hybridization == Hybridization.SP1) {
+                if (isAcceptable(env, atom, C_SP)) return C_SP;
+            }
+        } else if (env.aromatic[atom]) {
+            if (isAcceptable(env, atom, C_SP2)) return C_SP2;
+        } else if (charge != 0) {
+            if (charge == 1) {
+                if (degree == 0) {
+                    if (isAcceptable(env, atom, C_PLUS_SP2)) return C_PLUS_SP2;
+                } else if (maxOrder == TRIPLE) {
+                    if (isAcceptable(env, atom, C_PLUS_SP1)) return C_PLUS_SP1;
+                } else if (maxOrder == DOUBLE) {
+                    if (isAcceptable(env, atom, C_PLUS_SP2)) return C_PLUS_SP2;
+                } else if (maxOrder == SINGLE) {
+                    if (isAcceptable(env, atom, C_PLUS_PLANAR)) return C_PLUS_PLANAR;
+                }
+            } else if (charge == -1) {
+                if (maxOrder == SINGLE && degree <= 3) {
+                    if (env.isRingAtom(atom) && env.bothNeighborsAreSp2(atom)) {
+                        if (isAcceptable(env, atom, C_MINUS_PLANAR)) return C_MINUS_PLANAR;
+                    }
+                    if (isAcceptable(env, atom, C_MINUS_SP3)) return C_MINUS_SP3;
+                } else if (maxOrder == DOUBLE && degree <= 3) {
+                    if (isAcceptable(env, atom, C_MINUS_SP2)) return C_MINUS_SP2;
+                } else if (maxOrder == TRIPLE && degree <= 1) {
+                    if (isAcceptable(env, atom, C_MINUS_SP1)) return C_MINUS_SP1;
+                }
+            }
+        } else if (degree > 4) {
+            return NONE;
+        } else if (maxOrder == QUADRUPLE) {
+            return NONE;
+        } else if (maxOrder == TRIPLE) {
+            if (isAcceptable(env, atom, C_SP)) return C_SP;
+        } else if (maxOrder == DOUBLE) {
+            int doubleBondCount = env.doubleBonds[atom];
+            if (doubleBondCount == 2) {
+                if (isAcceptable(env, atom, C_SP)) return C_SP;
+            } else if (doubleBondCount == 1) {
+                if (isAcceptable(env, atom, C_SP2)) return C_SP2;
+            }
+        } else {
+            if (env.aromaticBond[atom]) {
+                if (isAcceptable(env, atom, C_SP2)) return C_SP2;
+            }
+            if (isAcceptable(env, atom, C_SP3)) return C_SP3;
+        }
+        return NONE;
+    }
+
+    private int perceiveHydrogen(Environment env, int atom) {
+        int charge = env.charge[atom];
+        int degree = env.degree[atom];
+        if (degree == 1) {
+            if (charge == 0 && isAcceptable(env, atom, H)) return H;
+        } else if (degree == 0) {
+            if (charge == 0) {
+                if (isAcceptable(env, atom, H)) return H;
+            } else if (charge == 1) {
+                if (isAcceptable(env, atom, H_PLUS)) return H_PLUS;
+            } else if (charge == -1) {
+                if (isAcceptable(env, atom, H_MINUS)) return H_MINUS;
+            }
+        }
+        return NONE;
+    }
+
+    private int perceiveNitrogen(Environment env, int atom) {
+        int charge = env.charge[atom];
+        Hybridization hybridization = env.hybridization[atom];
+        int maxOrder = env.maxOrder[atom];
+        int degree = env.degree[atom];
+        if (hybridization != null && charge == 0) {
+            if (hybridization == Hybridization.SP1) {
+                int type = degree > 1 ? N_SP1_2 : N_SP1;
+                if (isAcceptable(env, atom, type)) return type;
+            } else if (hybridization == Hybridization.SP2) {
+                if (env.isAmide(atom)) {
+                    if (isAcceptable(env, atom, N_AMIDE)) return N_AMIDE;
+                } else if (env.isThioAmide(atom)) {
+                    if (isAcceptable(env, atom, N_THIOAMIDE)) return N_THIOAMIDE;
+                }
+                if (degree == 4 && maxOrder == DOUBLE) {
+                    if (isAcceptable(env, atom, N_OXIDE)) return N_OXIDE;
+                } else if (degree > 1 && env.bothNeighborsAreSp2(atom)) {
+                    // depends on the ring the atom is in
+                    return FALLBACK;
+                }
+                if (isAcceptable(env, atom, N_SP2)) return N_SP2;
+            } else if (hybridization == Hybridization.SP3) {
+                if (isAcceptable(env, atom, N_SP3)) return N_SP3;
+            } else if (hybridization == Hybridization.PLANAR3) {
+                if (degree == 3 && maxOrder == DOUBLE && env.doubleBondedOxygens[atom] == 2) {
+                    if (isAcceptable(env, atom, N_NITRO)) return N_NITRO;
+                }
+                if (isAcceptable(env, atom, N_PLANAR3)) return N_PLANAR3;
+            }
+        } else if (charge != 0) {
+            if (charge == 1) {
+                if (maxOrder == SINGLE || degree == 0) {
+                    if (hybridization == Hybridization.SP2) {
+                        if (isAcceptable(env, atom, N_PLUS_SP2)) return N_PLUS_SP2;
+                    }
+                    if (isAcceptable(env, atom, N_PLUS)) return N_PLUS;
+                } else if (maxOrder == DOUBLE) {
+                    int doubleBonds = env.doubleBonds[atom];
+                    if (doubleBonds == 1) {
+                        if (isAcceptable(env, atom, N_PLUS_SP2)) return N_PLUS_SP2;
+                    } else if (doubleBonds == 2) {
+                        if (isAcceptable(env, atom, N_PLUS_SP1)) return N_PLUS_SP1;
+                    }
+                } else if (maxOrder == TRIPLE) {
+                    if (degree == 2 && isAcceptable(env, atom, N_PLUS_SP1)) return N_PLUS_SP1;
+                }
+            } else if (charge == -1) {
+                if (maxOrder == SINGLE) {
+                    if (degree >= 2 && env.bothNeighborsAreSp2(atom) && env.isRingAtom(atom)) {
+                        if (isAcceptable(env, atom, N_MINUS_PLANAR3)) return N_MINUS_PLANAR3;
+                    } else if (degree <= 2) {
+                        if (isAcceptable(env, atom, N_MINUS_SP3)) return N_MINUS_SP3;
+                    }
+                } else if (maxOrder == DOUBLE) {
+                    if (degree <= 1 && isAcceptable(env, atom, N_MINUS_SP2)) return N_MINUS_SP2;
+                }
+            }
+        } else if (degree > 3) {
+            if (degree == 4 && env.doubleBonds[atom] == 1) {
+                if (isAcceptable(env, atom, N_OXIDE)) return N_OXIDE;
+            }
+        } else if (degree == 0) {
+            if (isAcceptable(env, atom, N_SP3)) return N_SP3;
+        } else if (maxOrder == SINGLE) {
+            if (env.isAmide(atom)) {
+                if (isAcceptable(env, atom, N_AMIDE)) return N_AMIDE;
+            } else if (env.isThioAmide(atom)) {
+                if (isAcceptable(env, atom, N_THIOAMIDE)) return N_THIOAMIDE;
+            }
+            int heavyAtoms = degree - env.explicitHydrogens[atom];
+            if (heavyAtoms == 2) {
+                if (env.firstTwoBondsAromatic(atom)) {
+                    int hCount = env.implicitHydrogens[atom];
+                    if (hCount == -1 || hCount == 0) {
+                        if (isAcceptable(env, atom, N_SP2)) return N_SP2;
+                    } else if (hCount == 1) {
+                        if (isAcceptable(env, atom, N_PLANAR3)) return N_PLANAR3;
+                    }
+                } else if (env.bothNeighborsAreSp2(atom) && env.isRingAtom(atom)) {
+                    if (isAcceptable(env, atom, N_PLANAR3)) return N_PLANAR3;
+                } else {
+                    if (isAcceptable(env, atom, N_SP3)) return N_SP3;
+                }
+            } else if (heavyAtoms == 3) {
+                if (env.bothNeighborsAreSp2(atom) && env.isRingAtom(atom)) {
+                    if (isAcceptable(env, atom, N_PLANAR3)) return N_PLANAR3;
+                }
+                if (isAcceptable(env, atom, N_SP3)) return N_SP3;
+            } else if (heavyAtoms == 1 || heavyAtoms == 0) {
+                if (isAcceptable(env, atom, N_SP3)) return N_SP3;
+            }
+        } else if (maxOrder == DOUBLE) {
+            if (degree == 3 && env.doubleBondedOxygens[atom] == 2) {
+                if (isAcceptable(env, atom, N_NITRO)) return N_NITRO;
+            } else if (degree == 3 && env.doubleBonds[atom] > 0) {
+                if (isAcceptable(env, atom, N_SP2_3)) return N_SP2_3;
+            }
+            if (isAcceptable(env, atom, N_SP2)) return N_SP2;
+        } else if (maxOrder == TRIPLE) {
+            int type = degree > 1 ? N_SP1_2 : N_SP1;
+            if (isAcceptable(env, atom, type)) return type;
+        }
+        return NONE;
+    }
+
+    private int perceiveOxygen(Environment env, int atom) {
+        int charge = env.charge[atom];
+        Hybridization hybridization = env.hybridization[atom];
+        int maxOrder = env.maxOrder[atom];
+        int degree = env.degree[atom];
+        if (hybridization != null && charge == 0) {
+            if (hybridization == Hybridization.SP2) {
+                if (degree == 1) {
+                    int type = env.isCarboxylate(atom) ? O_SP2_CO2 : O_SP2;
+                    if (isAcceptable(env, atom, type)) return type;
+                } else if (degree == 2) {
+                    if (isAcceptable(env, atom, O_PLANAR3)) return O_PLANAR3;
+                }
+            } else if (hybridization == Hybridization.SP3) {
+                if (isAcceptable(env, atom, O_SP3)) return O_SP3;
+            } else if (hybridization == Hybridization.PLANAR3) {
+                if (isAcceptable(env, atom, O_PLANAR3)) return O_PLANAR3;
+            }
+        } else if (charge != 0) {
+            if (charge == -1 && degree <= 1) {
+                int type = env.isCarboxylate(atom) ? O_MINUS_CO2 : O_MINUS;
+                if (isAcceptable(env, atom, type)) return type;
+            } else if (charge == -2 && degree == 0) {
+                if (isAcceptable(env, atom, O_MINUS2)) return O_MINUS2;
+            } else if (charge == 1) {
+                if (degree == 0 && isAcceptable(env, atom, O_PLUS)) return O_PLUS;
+                int type = maxOrder == DOUBLE ? O_PLUS_SP2
+                         : maxOrder == TRIPLE ? O_PLUS_SP1 : O_PLUS;
+                if (isAcceptable(env, atom, type)) return type;
+            }
+        } else if (degree > 2) {
+            return NONE;
+        } else if (degree == 0) {
+            if (isAcceptable(env, atom, O_SP3)) return O_SP3;
+        } else if (maxOrder == DOUBLE) {
+            int type = env.isCarboxylate(atom) ? O_SP2_CO2 : O_SP2;
+            if (isAcceptable(env, atom, type)) return type;
+        } else if (maxOrder == SINGLE) {
+            int heavyAtoms = degree - env.explicitHydrogens[atom];
+            if (heavyAtoms == 2 && env.isRingAtom(atom) && env.bothNeighborsAreSp2(atom)) {
+                if (isAcceptable(env, atom, O_PLANAR3)) return O_PLANAR3;
+            }
+            if (isAcceptable(env, atom, O_SP3)) return O_SP3;
+        }
+        return NONE;
+    }
+
+    private int perceiveFluorine(Environment env, int atom) {
+        int charge = env.charge[atom];
+        if (charge != 0) {
+            if (charge == -1) {
+                if (isAcceptable(env, atom, F_MINUS)) return F_MINUS;
+            } else if (charge == 1) {
+                int maxOrder = env.maxOrder[atom];
+                if (maxOrder == DOUBLE) {
+                    if (isAcceptable(env, atom, F_PLUS_SP2)) return F_PLUS_SP2;
+                } else if (maxOrder == SINGLE) {
+                    if (isAcceptable(env, atom, F_PLUS_SP3)) return F_PLUS_SP3;
+                }
+            }
+        } else if (env.degree[atom] <= 1) {
+            if (isAcceptable(env, atom, F)) return F;
+        }
+        return NONE;
+    }
+
+    private int perceiveChlorine(Environment env, int atom) {
+        int charge = env.charge[atom];
+        int maxOrder = env.maxOrder[atom];
+        int degree = env.degree[atom];
+        if (charge == 0) {
+            if (maxOrder == DOUBLE) {
+                int type = degree == 2 ? CL_2
+                         : degree == 3 ? CL_CHLORATE
+                         : degree == 4 ? CL_PERCHLORATE : NONE;
+                if (type != NONE && isAcceptable(env, atom, type)) return type;
+            } else if (degree <= 1) {
+                if (isAcceptable(env, atom, CL)) return CL;
+            }
+        } else if (charge == -1) {
+            if (isAcceptable(env, atom, CL_MINUS)) return CL_MINUS;
+        } else if (charge == 1) {
+            if (maxOrder == DOUBLE) {
+                if (isAcceptable(env, atom, CL_PLUS_SP2)) return CL_PLUS_SP2;
+            } else if (maxOrder == SINGLE) {
+                if (isAcceptable(env, atom, CL_PLUS_SP3)) return CL_PLUS_SP3;
+            }
+        } else if (charge == 3 && degree == 4) {
+            if (isAcceptable(env, atom, CL_PERCHLORATE_CHARGED)) return CL_PERCHLORATE_CHARGED;
+        } else {
+            int doubleBonds = env.doubleBonds[atom];
+            if (degree == 3 && doubleBonds == 2) {
+                if (isAcceptable(env, atom, CL_CHLORATE)) return CL_CHLORATE;
+            } else if (degree == 4 && doubleBonds == 3) {
+                if (isAcceptable(env, atom, CL_PERCHLORATE)) return CL_PERCHLORATE;
+            }
+        }
+        return NONE;
+    }
+
+    private int perceiveBromine(Environment env, int atom) {
+        int charge = env.charge[atom];
+        int degree = env.degree[atom];
+        if (charge == -1) {
+            if (isAcceptable(env, atom, BR_MINUS)) return BR_MINUS;
+        } else if (charge == 1) {
+            int maxOrder = env.maxOrder[atom];
+            if (maxOrder == DOUBLE) {
+                if (isAcceptable(env, atom, BR_PLUS_SP2)) return BR_PLUS_SP2;
+            } else if (maxOrder == SINGLE) {
+                if (isAcceptable(env, atom, BR_PLUS_SP3)) return BR_PLUS_SP3;
+            }
+        } else if (degree <= 1) {
+            if (isAcceptable(env, atom, BR)) return BR;
+        } else if (degree == 3) {
+            if (isAcceptable(env, atom, BR_3)) return BR_3;
+        }
+        return NONE;
+    }
+
+    /**
+     * The same checks as <code>CDKAtomTypeMatcher.isAcceptable()</code>, on
+     * the precomputed environment and atom type table.
+     */
+    private boolean isAcceptable(Environment env, int atom, int type) {
+        if (mode == CDKAtomTypeMatcher.REQUIRE_EXPLICIT_HYDROGENS) {
+            if (env.degree[atom] != typeNeighbourCount[type]) return false;
+        } else if (env.implicitHydrogens[atom] != -1) {
+            if (env.degree[atom] + env.implicitHydrogens[atom] > typeNeighbourCount[type])
+                return false;
+        }
+        if (typeHasPiBondCount[type] && env.maxOrder[atom] > typePiBondCount[type])
+            return false;
+        if (env.bondOrderSum[atom] > typeValency[type]) return false;
+        Integer charge = typeCharge[type];
+        return charge != null && charge.intValue() == env.charge[atom];
+    }
+
+    /**
+     * The local environment of all atoms of a container, computed in one
+     * pass over its bonds.
+     */
+    private static class Environment {
+
+        private final IAtomContainer container;
+        private final IAtom[] atoms;
+        private final Map<IAtom,Integer> indices;
+
+        private final int[] element;
+        private final boolean[] pseudo;
+        private final boolean[] hasCharge;
+        private final int[] charge;
+        private final Hybridization[] hybridization;
+        private final boolean[] aromatic;
+        /** The implicit hydrogen count, or -1 if unset. */
+        private final int[] implicitHydrogens;
+        private final int[] singleElectrons;
+
+        private final int[] degree;
+        private final int[] maxOrder;
+        private final int[] bondOrderSum;
+        private final int[] doubleBonds;
+        private final int[] doubleBondedOxygens;
+        private final int[] doubleBondedSulphurs;
+        private final int[] explicitHydrogens;
+        private final boolean[] aromaticBond;
+
+        // the bonds of each atom, in the order of the container
+        private final int[] firstBond;
+        private final int[] bondNeighbor;
+        private final int[] bondOrder;
+        private final boolean[] bondAromatic;
+
+        private boolean[] ringAtoms;
+
+        private Environment(IAtomContainer container, int atomCount) {
+            this.container = container;
+            atoms = new IAtom[atomCount];
+            indices = new IdentityHashMap<IAtom,Integer>(2 * atomCount);
+            element = new int[atomCount];
+            pseudo = new boolean[atomCount];
+            hasCharge = new boolean[atomCount];
+            charge = new int[atomCount];
+            hybridization = new Hybridization[atomCount];
+            aromatic = new boolean[atomCount];
+            implicitHydrogens = new int[atomCount];
+            singleElectrons = new int[atomCount];
+            degree = new int[atomCount];
+            maxOrder = new int[atomCount];
+            bondOrderSum = new int[atomCount];
+            doubleBonds = new int[atomCount];
+            doubleBondedOxygens = new int[atomCount];
+            doubleBondedSulphurs = new int[atomCount];
+            explicitHydrogens = new int[atomCount];
+            aromaticBond = new boolean[atomCount];
+            int bondCount = container.getBondCount();
+            firstBond = new int[atomCount + 1];
+            bondNeighbor = new int[2 * bondCount];
+            bondOrder = new int[2 * bondCount];
+            bondAromatic = new boolean[2 * bondCount];
+        }
+
+        /**
+         * Computes the environment of the atoms of the container, or returns
+         * null if the container has bonds the decision tree cannot handle,
+         * such as bonds without an order or with other than two atoms.
+         */
+        static Environment create(IAtomContainer container) {
+            int atomCount = container.getAtomCount();
+            int bondCount = container.getBondCount();
+            Environment env = new Environment(container, atomCount);
+            for (int i = 0; i < atomCount; i++) {
+                IAtom atom = container.getAtom(i);
+                String symbol = atom.getSymbol();
+                if (symbol == null || env.indices.put(atom, i) != null) return null;
+                env.atoms[i] = atom;
+                env.element[i] = element(symbol);
+                env.pseudo[i] = atom instanceof IPseudoAtom;
+                Integer charge = atom.getFormalCharge();
+                env.hasCharge[i] = charge != null;
+                env.charge[i] = charge == null ? 0 : charge;
+                env.hybridization[i] = atom.getHybridization();
+                env.aromatic[i] = atom.getFlag(CDKConstants.ISAROMATIC);
+                Integer hCount = atom.getImplicitHydrogenCount();
+                env.implicitHydrogens[i] = hCount == null ? -1 : hCount;
+            }
+            for (ISingleElectron electron : container.singleElectrons()) {
+                Integer index = env.indices.get(electron.getAtom());
+                if (index != null) env.singleElectrons[index]++;
+            }
+
+            int[] begin = new int[bondCount];
+            int[] end = new int[bondCount];
+            for (int i = 0; i < bondCount; i++) {
+                IBond bond = container.getBond(i);
+                if (bond.getAtomCount() != 2 || bond.getOrder() == null) return null;
+                Integer a = env.indices.get(bond.getAtom(0));
+                Integer b = env.indices.get(bond.getAtom(1));
+                if (a == null || b == null || a.intValue() == b.intValue()) return null;
+                begin[i] = a;
+                end[i] = b;
+                env.firstBond[a + 1]++;
+                env.firstBond[b + 1]++;
+            }
+            for (int i = 0; i < atomCount; i++) env.firstBond[i + 1] += env.firstBond[i];
+
+            int[] next = new int[atomCount];
+            System.arraycopy(env.firstBond, 0, next, 0, atomCount);
+            for (int i = 0; i < bondCount; i++) {
+                IBond bond = container.getBond(i);
+                int order = bond.getOrder().ordinal();
+                boolean aromatic = bond.getFlag(CDKConstants.ISAROMATIC);
+                env.addBond(begin[i], end[i], order, aromatic, next);
+                env.addBond(end[i], begin[i], order, aromatic, next);
+            }
+            return env;
+        }
+
+        private void addBond(int atom, int neighbor, int order, boolean aromatic, int[] next) {
+            int slot = next[atom]++;
+            bondNeighbor[slot] = neighbor;
+            bondOrder[slot] = order;
+            bondAromatic[slot] = aromatic;
+            degree[atom]++;
+            if (order > maxOrder[atom]) maxOrder[atom] = order;
+            bondOrderSum[atom] += order + 1;
+            if (aromatic) aromaticBond[atom] = true;
+            if (element[neighbor] == HYDROGEN) explicitHydrogens[atom]++;
+            if (order == DOUBLE) {
+                doubleBonds[atom]++;
+                if (element[neighbor] == OXYGEN) doubleBondedOxygens[atom]++;
+                else if (element[neighbor] == SULPHUR) doubleBondedSulphurs[atom]++;
+            }
+        }
+
+        private static int element(String symbol) {
+            if ("C".equals(symbol))  return CARBON;
+            if ("H".equals(symbol))  return HYDROGEN;
+            if ("N".equals(symbol))  return NITROGEN;
+            if ("O".equals(symbol))  return OXYGEN;
+            if ("F".equals(symbol))  return FLUORINE;
+            if ("Cl".equals(symbol)) return CHLORINE;
+            if ("Br".equals(symbol)) return BROMINE;
+            if ("S".equals(symbol))  return SULPHUR;
+            return OTHER;
+        }
+
+        int indexOf(IAtom atom) {
+            Integer index = indices.get(atom);
+            return index == null ? -1 : index;
+        }
+
+        boolean isRingAtom(int atom) {
+            if (ringAtoms == null) {
+                // one spanning tree for all atoms of the container
+                IAtomContainer cyclic = new SpanningTree(container).getCyclicFragmentsContainer();
+                ringAtoms = new boolean[atoms.length];
+                for (IAtom ringAtom : cyclic.atoms()) {
+                    Integer index = indices.get(ringAtom);
+                    if (index != null) ringAtoms[index] = true;
+                }
+            }
+            return ringAtoms[atom];
+        }
+
+        /**
+         * True if at least two neighbours, other than hydrogens, are sp2
+         * hybridized or have a double bond.
+         */
+        boolean bothNeighborsAreSp2(int atom) {
+            int count = 0;
+            for (int i = firstBond[atom]; i < firstBond[atom + 1] && count < 2; i++) {
+                int neighbor = bondNeighbor[i];
+                if (element[neighbor] == HYDROGEN) continue;
+                if (hybridization[neighbor] == Hybridization.SP2 || doubleBonds[neighbor] > 0)
+                    count++;
+            }
+            return count >= 2;
+        }
+
+        boolean firstTwoBondsAromatic(int atom) {
+            int first = firstBond[atom];
+            return bondAromatic[first] && bondAromatic[first + 1];
+        }
+
+        boolean isAmide(int atom) {
+            for (int i = firstBond[atom]; i < firstBond[atom + 1]; i++) {
+                int neighbor = bondNeighbor[i];
+                if (element[neighbor] == CARBON && doubleBondedOxygens[neighbor] == 1) return true;
+            }
+            return false;
+        }
+
+        boolean isThioAmide(int atom) {
+            for (int i = firstBond[atom]; i < firstBond[atom + 1]; i++) {
+                int neighbor = bondNeighbor[i];
+                if (element[neighbor] == CARBON && doubleBondedSulphurs[neighbor] == 1) return true;
+            }
+            return false;
+        }
+
+        /**
+         * True if the atom is one of the two oxygens of a carboxylate group.
+         */
+        boolean isCarboxylate(int atom) {
+            if (degree[atom] != 1) return false;
+            int carbon = bondNeighbor[firstBond[atom]];
+            if (element[carbon] != CARBON) return false;
+            int oxygens = 0;
+            int negativeOxygens = 0;
+            int doubleBondedOxygens = 0;
+            for (int i = firstBond[carbon]; i < firstBond[carbon + 1]; i++) {
+                int neighbor = bondNeighbor[i];
+                if (element[neighbor] != OXYGEN) continue;
+                oxygens++;
+                if (bondOrder[i] == SINGLE && hasCharge[neighbor] && charge[neighbor] == -1) {
+                    negativeOxygens++;
+                } else if (bondOrder[i] == DOUBLE) {
+                    doubleBondedOxygens++;
+                }
+            }
+            return oxygens == 2 && negativeOxygens == 1 && doubleBondedOxygens == 1;
+        }
+    }
+}
@@ -66,6 +66,10 @@ import org.openscience.cdk.tools.LoggingToolFactory;
  *  AtomType[] types = factory.getAtomTypes("C");
  *  </pre>
  *
+ *  <p>If the class path has a precompiled binary form of the list, with
+ *  the same name plus <code>.bin</code>, that is read instead, which is much
+ *  faster. See {@link BinaryConfigFormat}.
+ *
  * @cdk.module core
  * @cdk.githash
  *
@@ -94,6 +98,7 @@ public class AtomTypeFactory {
     private final static String TXT_EXTENSION = "txt";
     private final static String XML_EXTENSION = "xml";
     private final static String OWL_EXTENSION = "owl";
+    private final static String BIN_EXTENSION = "bin";
     
     private static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(AtomTypeFactory.class);
@@ -125,7 +130,7 @@ public class AtomTypeFactory {
      *
      * @see #getInstance(String, IChemObjectBuilder)
      * @param  ins                    InputStream containing the data
-     * @param  format                 String representing the possible formats ('xml' and 'txt')
+     * @param  format                 String representing the possible formats ('xml', 'txt', 'owl' and 'bin')
      * @param  builder                IChemObjectBuilder used to make IChemObject instances
      * @return                        The AtomTypeFactory for the given data file
      */
@@ -181,6 +186,16 @@ public class AtomTypeFactory {
 	 */
 	private void readConfiguration(String fileName, IChemObjectBuilder builder)
 	{
+		InputStream binary = this.getClass().getClassLoader().getResourceAsStream(
+		    fileName + BinaryConfigFormat.EXTENSION
+		);
+		if (binary != null) {
+			logger.info("Reading precompiled config file for ", fileName);
+			readConfiguration(binary, BIN_EXTENSION, builder);
+			if (atomTypes.size() > 0) return;
+			logger.warn("Could not read the precompiled config file, falling back to ", fileName);
+		}
+
 		logger.info("Reading config file from ", fileName);
 
 		InputStream ins;
@@ -212,6 +227,8 @@ public class AtomTypeFactory {
             format = XML_EXTENSION;
         } else if (fileName.endsWith(OWL_EXTENSION)) {
             format = OWL_EXTENSION;
+        } else if (fileName.endsWith(BIN_EXTENSION)) {
+            format = BIN_EXTENSION;
         }
         readConfiguration(ins, format, builder);
     }
@@ -230,6 +247,10 @@ public class AtomTypeFactory {
                 return (IAtomTypeConfigurator) this.getClass().getClassLoader().
                  loadClass("org.openscience.cdk.config.OWLBasedAtomTypeConfigurator").
                  newInstance();
+            } else if (format.equals(BIN_EXTENSION)) {
+                return (IAtomTypeConfigurator) this.getClass().getClassLoader().
+                 loadClass("org.openscience.cdk.config.BinaryAtomTypeConfigurator").
+                 newInstance();
             }
 		} catch (Exception exc) {
 			logger.error("Could not get instance of AtomTypeConfigurator for format ", format);
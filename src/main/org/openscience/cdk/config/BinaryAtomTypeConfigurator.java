@@ -0,0 +1,72 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+
+/**
+ * AtomType resource that reads the atom type configuration from a binary
+ * file made with {@link BinaryConfigFormat}.
+ *
+ * @cdk.module  core
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.config.BinaryAtomTypeConfiguratorTest")
+public class BinaryAtomTypeConfigurator implements IAtomTypeConfigurator {
+
+    private InputStream ins = null;
+
+    @TestMethod("testBinaryAtomTypeConfigurator")
+    public BinaryAtomTypeConfigurator() {
+    }
+
+    @TestMethod("testSetInputStream_InputStream")
+    public void setInputStream(InputStream ins) {
+        this.ins = ins;
+    }
+
+    /**
+     * Reads the atom types from the binary atom type list.
+     *
+     * @param builder IChemObjectBuilder used to construct the IAtomType's.
+     * @throws        IOException when a problem occurred with reading from the InputStream
+     * @return        A List with read IAtomType's.
+     */
+    @TestMethod("testReadAtomTypes_IChemObjectBuilder")
+    public List<IAtomType> readAtomTypes(IChemObjectBuilder builder) throws IOException {
+        if (ins == null) throw new IOException("There was a problem getting an input stream");
+        try {
+            return BinaryConfigFormat.readAtomTypes(ins, builder);
+        } finally {
+            ins.close();
+        }
+    }
+
+}
@@ -0,0 +1,372 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.config;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.config.isotopes.IsotopeReader;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IIsotope;
+
+/**
+ * Compact binary format for the atom type and isotope lists, which loads
+ * much faster than the XML and OWL files they are made from. The
+ * {@link AtomTypeFactory} and the {@link IsotopeFactory} look for a
+ * resource with the name of the data file plus {@link #EXTENSION}, for
+ * example <code>org/openscience/cdk/config/data/isotopes.xml.bin</code>,
+ * and read the data file only when there is none.
+ *
+ * <p>The binary resources are made at build time, with the {@link #main}
+ * method, from the same data files, so that they always hold the same
+ * atom types and isotopes:
+ * <pre>
+ * java org.openscience.cdk.config.BinaryConfigFormat build/configbin \
+ *   org/openscience/cdk/config/data/isotopes.xml \
+ *   org/openscience/cdk/dict/data/cdk-atom-types.owl
+ * </pre>
+ *
+ * <p>A file holds a header, with the format version and the kind of
+ * objects, followed by the fields of each object. The whole file is read
+ * into memory at once.
+ *
+ * @cdk.module  core
+ * @cdk.githash
+ * @cdk.keyword atom type
+ * @cdk.keyword isotope
+ */
+@TestClass("org.openscience.cdk.config.BinaryConfigFormatTest")
+public class BinaryConfigFormat {
+
+    /** The extension added to the name of a data file for its binary form. */
+    public final static String EXTENSION = ".bin";
+
+    private final static int MAGIC = 0x43444B42; // "CDKB"
+    private final static int VERSION = 1;
+
+    private final static int KIND_ISOTOPES = 1;
+    private final static int KIND_ATOM_TYPES = 2;
+
+    private final static int TYPE_STRING = 1;
+    private final static int TYPE_INTEGER = 2;
+    private final static int TYPE_DOUBLE = 3;
+    private final static int TYPE_BOOLEAN = 4;
+    private final static int TYPE_COLOR = 5;
+
+    private final static String ISOTOPES_FILE = "isotopes.xml";
+
+    private BinaryConfigFormat() {
+    }
+
+    /**
+     * Reads atom types written by {@link #writeAtomTypes(List, OutputStream)}.
+     *
+     * @param  ins     the stream to read from, which is not closed
+     * @param  builder the builder used to create the atom types
+     * @return         the atom types
+     * @throws IOException if the stream does not hold atom types in this format
+     */
+    @TestMethod("testAtomTypes")
+    public static List<IAtomType> readAtomTypes(InputStream ins, IChemObjectBuilder builder)
+        throws IOException {
+        DataInputStream input = open(ins, KIND_ATOM_TYPES);
+        int count = input.readInt();
+        List<IAtomType> atomTypes = new ArrayList<IAtomType>(count);
+        for (int i = 0; i < count; i++) {
+            IAtomType atomType = builder.newInstance(IAtomType.class, "R");
+            readIsotope(input, atomType);
+            atomType.setAtomTypeName(readString(input));
+            int order = input.readByte();
+            atomType.setMaxBondOrder(order == 0 ? null : IBond.Order.values()[order - 1]);
+            atomType.setBondOrderSum(readDouble(input));
+            atomType.setFormalCharge(readInteger(input));
+            atomType.setFormalNeighbourCount(readInteger(input));
+            int hybridization = input.readByte();
+            atomType.setHybridization(hybridization == 0
+                ? null : IAtomType.Hybridization.values()[hybridization - 1]);
+            atomType.setCovalentRadius(readDouble(input));
+            atomType.setValency(readInteger(input));
+            atomTypes.add(atomType);
+        }
+        return atomTypes;
+    }
+
+    /**
+     * Writes atom types in the binary format. The properties of the atom
+     * types may only have <code>String</code>, <code>Integer</code>,
+     * <code>Double</code>, <code>Boolean</code> and <code>Color</code>
+     * values.
+     *
+     * @param  atomTypes the atom types to write
+     * @param  out       the stream to write to, which is not closed
+     * @throws IOException if the atom types could not be written
+     */
+    @TestMethod("testAtomTypes")
+    public static void writeAtomTypes(List<IAtomType> atomTypes, OutputStream out)
+        throws IOException {
+        DataOutputStream output = create(out, KIND_ATOM_TYPES);
+        output.writeInt(atomTypes.size());
+        for (IAtomType atomType : atomTypes) {
+            writeIsotope(output, atomType);
+            writeString(output, atomType.getAtomTypeName());
+            IBond.Order order = atomType.getMaxBondOrder();
+            output.writeByte(order == null ? 0 : order.ordinal() + 1);
+            writeDouble(output, atomType.getBondOrderSum());
+            writeInteger(output, atomType.getFormalCharge());
+            writeInteger(output, atomType.getFormalNeighbourCount());
+            IAtomType.Hybridization hybridization = atomType.getHybridization();
+            output.writeByte(hybridization == null ? 0 : hybridization.ordinal() + 1);
+            writeDouble(output, atomType.getCovalentRadius());
+            writeInteger(output, atomType.getValency());
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads isotopes written by {@link #writeIsotopes(List, OutputStream)}.
+     *
+     * @param  ins     the stream to read from, which is not closed
+     * @param  builder the builder used to create the isotopes
+     * @return         the isotopes
+     * @throws IOException if the stream does not hold isotopes in this format
+     */
+    @TestMethod("testIsotopes")
+    public static List<IIsotope> readIsotopes(InputStream ins, IChemObjectBuilder builder)
+        throws IOException {
+        DataInputStream input = open(ins, KIND_ISOTOPES);
+        int count = input.readInt();
+        List<IIsotope> isotopes = new ArrayList<IIsotope>(count);
+        for (int i = 0; i < count; i++) {
+            IIsotope isotope = builder.newInstance(IIsotope.class, "R");
+            readIsotope(input, isotope);
+            isotopes.add(isotope);
+        }
+        return isotopes;
+    }
+
+    /**
+     * Writes isotopes in the binary format.
+     *
+     * @param  isotopes the isotopes to write
+     * @param  out      the stream to write to, which is not closed
+     * @throws IOException if the isotopes could not be written
+     */
+    @TestMethod("testIsotopes")
+    public static void writeIsotopes(List<IIsotope> isotopes, OutputStream out)
+        throws IOException {
+        DataOutputStream output = create(out, KIND_ISOTOPES);
+        output.writeInt(isotopes.size());
+        for (IIsotope isotope : isotopes) {
+            writeIsotope(output, isotope);
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes the binary form of data files, read as class path resources.
+     * The first argument is the output directory, and the others are the
+     * resource names of the atom type lists and of
+     * <code>isotopes.xml</code>. The files are written to the output
+     * directory, under the resource name plus {@link #EXTENSION}. The
+     * <code>org.openscience.cdk.DefaultChemObjectBuilder</code> is used to
+     * read the data files.
+     *
+     * @param  args      the output directory and the resource names
+     * @throws Exception if a data file could not be read or written
+     */
+    @TestMethod("testMain")
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Syntax: BinaryConfigFormat <output directory> <resource>...");
+            System.exit(1);
+        }
+        IChemObjectBuilder builder = (IChemObjectBuilder) Class.forName(
+            "org.openscience.cdk.DefaultChemObjectBuilder"
+        ).getMethod("getInstance").invoke(null);
+        for (int i = 1; i < args.length; i++) {
+            String resource = args[i];
+            InputStream ins = BinaryConfigFormat.class.getClassLoader().getResourceAsStream(resource);
+            if (ins == null) throw new IOException("Could not find the resource " + resource);
+            File file = new File(args[0], resource + EXTENSION);
+            file.getParentFile().mkdirs();
+            OutputStream out = new FileOutputStream(file);
+            try {
+                if (resource.endsWith(ISOTOPES_FILE)) {
+                    List<IIsotope> isotopes = new IsotopeReader(ins, builder).readIsotopes();
+                    writeIsotopes(isotopes, out);
+                } else {
+                    String format = resource.substring(resource.lastIndexOf('.') + 1);
+                    AtomTypeFactory factory = AtomTypeFactory.getInstance(ins, format, builder);
+                    if (factory.getSize() == 0)
+                        throw new IOException("Could not read atom types from " + resource);
+                    List<IAtomType> atomTypes = new ArrayList<IAtomType>();
+                    for (IAtomType atomType : factory.getAllAtomTypes()) atomTypes.add(atomType);
+                    writeAtomTypes(atomTypes, out);
+                }
+            } finally {
+                out.close();
+                ins.close();
+            }
+        }
+    }
+
+    private static void readIsotope(DataInputStream input, IIsotope isotope) throws IOException {
+        isotope.setID(readString(input));
+        isotope.setSymbol(readString(input));
+        isotope.setAtomicNumber(readInteger(input));
+        isotope.setExactMass(readDouble(input));
+        isotope.setNaturalAbundance(readDouble(input));
+        isotope.setMassNumber(readInteger(input));
+        boolean[] flags = new boolean[input.readByte()];
+        for (int i = 0; i < flags.length; i++) flags[i] = input.readBoolean();
+        isotope.setFlags(flags);
+        int propertyCount = input.readShort();
+        for (int i = 0; i < propertyCount; i++) {
+            String key = input.readUTF();
+            isotope.setProperty(key, readValue(input));
+        }
+    }
+
+    private static void writeIsotope(DataOutputStream output, IIsotope isotope) throws IOException {
+        writeString(output, isotope.getID());
+        writeString(output, isotope.getSymbol());
+        writeInteger(output, isotope.getAtomicNumber());
+        writeDouble(output, isotope.getExactMass());
+        writeDouble(output, isotope.getNaturalAbundance());
+        writeInteger(output, isotope.getMassNumber());
+        boolean[] flags = isotope.getFlags();
+        output.writeByte(flags.length);
+        for (boolean flag : flags) output.writeBoolean(flag);
+        Map<Object,Object> properties = isotope.getProperties();
+        output.writeShort(properties.size());
+        for (Map.Entry<Object,Object> property : properties.entrySet()) {
+            if (!(property.getKey() instanceof String))
+                throw new IOException("Cannot write the property key " + property.getKey());
+            output.writeUTF((String) property.getKey());
+            writeValue(output, property.getValue());
+        }
+    }
+
+    private static Object readValue(DataInputStream input) throws IOException {
+        int type = input.readByte();
+        switch (type) {
+            case TYPE_STRING:  return input.readUTF();
+            case TYPE_INTEGER: return input.readInt();
+            case TYPE_DOUBLE:  return input.readDouble();
+            case TYPE_BOOLEAN: return input.readBoolean();
+            case TYPE_COLOR:   return new Color(input.readInt(), true);
+            default:
+                throw new IOException("Unknown property type " + type);
+        }
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException {
+        if (value instanceof String) {
+            output.writeByte(TYPE_STRING);
+            output.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TYPE_INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            output.writeByte(TYPE_DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TYPE_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Color) {
+            output.writeByte(TYPE_COLOR);
+            output.writeInt(((Color) value).getRGB());
+        } else {
+            throw new IOException("Cannot write the property value " + value);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) output.writeUTF(value);
+    }
+
+    private static Integer readInteger(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readInt() : null;
+    }
+
+    private static void writeInteger(DataOutputStream output, Integer value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) output.writeInt(value);
+    }
+
+    private static Double readDouble(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readDouble() : null;
+    }
+
+    private static void writeDouble(DataOutputStream output, Double value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) output.writeDouble(value);
+    }
+
+    /**
+     * Reads the whole stream into memory and checks the header.
+     */
+    private static DataInputStream open(InputStream ins, int kind) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32768);
+        byte[] buffer = new byte[32768];
+        int length;
+        while ((length = ins.read(buffer)) != -1) bytes.write(buffer, 0, length);
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        if (bytes.size() < 6 || input.readInt() != MAGIC)
+            throw new IOException("Not a binary CDK data file");
+        int version = input.readByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported binary CDK data file version " + version);
+        if (input.readByte() != kind)
+            throw new IOException("The binary CDK data file holds other objects");
+        return input;
+    }
+
+    private static DataOutputStream create(OutputStream out, int kind) throws IOException {
+        DataOutputStream output = new DataOutputStream(out);
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeByte(kind);
+        return output;
+    }
+}
@@ -51,6 +51,8 @@ import java.util.List;
  * org.openscience.cdk.config.isotopes.xml in the cdk-standard
  * module. Part of the data in this file was collected from
  * the website <a href="http://www.webelements.org">webelements.org</a>.
+ * If the class path has the precompiled binary form of this file, that
+ * is read instead; see {@link BinaryConfigFormat}.
  *
  * <p>The use of this class is exemplified as follows. To get information 
  * about the major isotope of hydrogen, one can use this code:
@@ -88,12 +90,29 @@ public class IsotopeFactory
 	private IsotopeFactory(IChemObjectBuilder builder) throws IOException {
         logger.info("Creating new IsotopeFactory");
 
+        majorIsotopes = new HashMap<String, IIsotope>();
+
+        String configFile = "org/openscience/cdk/config/data/isotopes.xml";
+        InputStream binary = this.getClass().getClassLoader().getResourceAsStream(
+            configFile + BinaryConfigFormat.EXTENSION
+        );
+        if (binary != null) {
+            try {
+                isotopes = BinaryConfigFormat.readIsotopes(binary, builder);
+                return;
+            } catch (IOException exception) {
+                logger.warn("Could not read the precompiled isotopes, falling back to ", configFile);
+                logger.debug(exception);
+            } finally {
+                binary.close();
+            }
+        }
+
         InputStream ins;
         // ObjIn in = null;
         String errorMessage = "There was a problem getting org.openscience.cdk." +
                               "config.isotopes.xml as a stream";
         try {
-            String configFile = "org/openscience/cdk/config/data/isotopes.xml";
             if (debug) logger.debug("Getting stream for ", configFile);
             ins = this.getClass().getClassLoader().getResourceAsStream(configFile);
         } catch (Exception exception) {
@@ -112,8 +131,6 @@ public class IsotopeFactory
         /* for (int f = 0; f < isotopes.size(); f++) {
               Isotope isotope = (Isotope)isotopes.elementAt(f);
           } What's this loop for?? */
-
-        majorIsotopes = new HashMap<String, IIsotope>();
     }
 
 
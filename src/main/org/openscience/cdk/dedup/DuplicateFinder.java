@@ -0,0 +1,287 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.dedup;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Finds duplicate structures in large collections of molecules. Each
+ * molecule gets a canonical key, such as a canonical SMILES, and only the
+ * 128-bit MD5 hash of that key is kept, in an {@link OffHeapHashTable}, so
+ * that collections of many millions of molecules can be checked without
+ * keeping the molecules, or even their keys, on the heap.
+ *
+ * <p>The molecules are numbered from zero in the order they are added. For
+ * each molecule, {@link #add(IAtomContainer)} returns the number of the
+ * first molecule with the same key, or -1 if the molecule is new. For
+ * example, to report the duplicates in an SD file:
+ * <pre>
+ * DuplicateFinder finder = new DuplicateFinder(DuplicateFinder.canonicalSmiles());
+ * IteratingSDFReader reader = new IteratingSDFReader(
+ *   new FileReader(sdfFile), DefaultChemObjectBuilder.getInstance()
+ * );
+ * Map&lt;Long,List&lt;Long&gt;&gt; duplicates = finder.findDuplicates(reader);
+ * finder.close();
+ * </pre>
+ *
+ * <p>Other keys can be used by implementing {@link KeyGenerator}. For
+ * example, with the InChI module on the classpath:
+ * <pre>
+ * DuplicateFinder finder = new DuplicateFinder(new DuplicateFinder.KeyGenerator() {
+ *   public String getKey(IAtomContainer molecule) throws CDKException {
+ *     return InChIGeneratorFactory.getInstance().getInChIGenerator(molecule).getInchiKey();
+ *   }
+ * });
+ * </pre>
+ *
+ * <p>Molecules can be added from several threads at the same time, as long
+ * as the key generator is thread-safe.
+ *
+ * @cdk.module  smiles
+ * @cdk.githash
+ * @cdk.keyword duplicate
+ * @cdk.keyword canonicalization
+ *
+ * @see OffHeapHashTable
+ */
+@TestClass("org.openscience.cdk.dedup.DuplicateFinderTest")
+public class DuplicateFinder {
+
+    /**
+     * Computes the key that identifies a structure. Two molecules are
+     * duplicates when they have the same key.
+     */
+    public interface KeyGenerator {
+
+        /**
+         * Returns the key for the given molecule.
+         *
+         * @param  molecule the molecule
+         * @return          the key of the molecule
+         * @throws CDKException if no key can be computed for the molecule
+         */
+        public String getKey(IAtomContainer molecule) throws CDKException;
+    }
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(DuplicateFinder.class);
+
+    private static final int EXPECTED_SIZE = 1 << 16;
+
+    private static final ThreadLocal<MessageDigest> digests = new ThreadLocal<MessageDigest>() {
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException exception) {
+                throw new IllegalStateException("MD5 is not available", exception);
+            }
+        }
+    };
+
+    private final KeyGenerator generator;
+    private final OffHeapHashTable table;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+
+    /**
+     * Creates a finder that keeps its hash table in direct memory.
+     *
+     * @param generator the key generator
+     */
+    public DuplicateFinder(KeyGenerator generator) {
+        this(generator, null);
+    }
+
+    /**
+     * Creates a finder that keeps its hash table in memory mapped files in
+     * the given directory, so that it can be paged out to disk.
+     *
+     * @param generator      the key generator
+     * @param spillDirectory the directory for the hash table, or null to
+     *                       use direct memory
+     */
+    public DuplicateFinder(KeyGenerator generator, File spillDirectory) {
+        if (generator == null)
+            throw new IllegalArgumentException("A key generator is required");
+        this.generator = generator;
+        this.table = new OffHeapHashTable(EXPECTED_SIZE, spillDirectory);
+    }
+
+    /**
+     * Returns a key generator for canonical SMILES, with a
+     * {@link SmilesGenerator}.
+     *
+     * @return a thread-safe key generator
+     */
+    @TestMethod("testCanonicalSmiles")
+    public static KeyGenerator canonicalSmiles() {
+        final SmilesGenerator smilesGenerator = new SmilesGenerator();
+        return new KeyGenerator() {
+            public String getKey(IAtomContainer molecule) throws CDKException {
+                return smilesGenerator.createSMILES(molecule);
+            }
+        };
+    }
+
+    /**
+     * Adds the next molecule.
+     *
+     * @param  molecule the molecule
+     * @return          the number of the first molecule with the same key,
+     *                  or -1 if there is none
+     * @throws CDKException if no key can be computed for the molecule; the
+     *                      molecule still gets a number
+     */
+    @TestMethod("testAdd")
+    public long add(IAtomContainer molecule) throws CDKException {
+        long index = count.getAndIncrement();
+        return put(generator.getKey(molecule), index);
+    }
+
+    /**
+     * Adds the next molecule by its key.
+     *
+     * @param  key the key of the molecule
+     * @return     the number of the first molecule with the same key, or -1
+     *             if there is none
+     */
+    @TestMethod("testAddKey")
+    public long addKey(String key) {
+        return put(key, count.getAndIncrement());
+    }
+
+    /**
+     * Adds all molecules from the iterator, for example an iterating reader,
+     * and returns the groups of duplicates. Molecules for which no key can
+     * be computed are logged and skipped, but do get a number.
+     *
+     * @param  molecules the molecules to add
+     * @return           a map from the number of the first molecule of each
+     *                   group to the numbers of its later duplicates, in
+     *                   order
+     */
+    @TestMethod("testFindDuplicates")
+    public Map<Long,List<Long>> findDuplicates(Iterator<? extends IAtomContainer> molecules) {
+        Map<Long,List<Long>> duplicates = new TreeMap<Long,List<Long>>();
+        while (molecules.hasNext()) {
+            IAtomContainer molecule = molecules.next();
+            long index = count.getAndIncrement();
+            String key;
+            try {
+                key = generator.getKey(molecule);
+            } catch (CDKException exception) {
+                logger.warn("Could not compute a key for molecule ", index,
+                            ": ", exception.getMessage());
+                logger.debug(exception);
+                continue;
+            }
+            long first = put(key, index);
+            if (first < 0) continue;
+            List<Long> group = duplicates.get(first);
+            if (group == null) {
+                group = new ArrayList<Long>();
+                duplicates.put(first, group);
+            }
+            group.add(index);
+        }
+        return duplicates;
+    }
+
+    /**
+     * Returns the number of molecules added so far.
+     *
+     * @return the number of molecules
+     */
+    @TestMethod("testAdd")
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the number of molecules that were duplicates of an earlier one.
+     *
+     * @return the number of duplicates
+     */
+    @TestMethod("testAdd")
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    /**
+     * Returns the number of different keys added so far.
+     *
+     * @return the number of unique molecules
+     */
+    @TestMethod("testAdd")
+    public long getUniqueCount() {
+        return table.size();
+    }
+
+    /**
+     * Releases the hash table. The finder cannot be used afterwards.
+     */
+    @TestMethod("testSpillDirectory")
+    public void close() {
+        table.close();
+    }
+
+    private long put(String key, long index) {
+        byte[] hash = hash(key);
+        long first = table.putIfAbsent(toLong(hash, 0), toLong(hash, 8), index);
+        if (first >= 0) duplicateCount.getAndIncrement();
+        return first;
+    }
+
+    private static byte[] hash(String key) {
+        try {
+            return digests.get().digest(key.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException exception) {
+            throw new IllegalStateException("UTF-8 is not supported", exception);
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,264 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.dedup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+/**
+ * Open addressing hash table from 128-bit hashes to non-negative
+ * <code>long</code> values, stored outside the Java heap. Each entry takes
+ * 24 bytes, whatever the length of the key that was hashed, so that very
+ * large collections can be indexed without running out of heap.
+ *
+ * <p>The table is split into 256 segments, chosen by the highest bits of the
+ * hash. Each segment is a direct {@link ByteBuffer}, or, if a spill
+ * directory is given, a file in that directory mapped into memory, so that
+ * the operating system can page the table out to disk. A segment doubles
+ * its size when it is three quarters full. Operations on different segments
+ * can run in parallel; the table is thread-safe.
+ *
+ * <p>The table does not store the keys themselves: two keys with the same
+ * 128-bit hash are considered the same.
+ *
+ * @cdk.module  smiles
+ * @cdk.githash
+ * @cdk.keyword hash table
+ */
+@TestClass("org.openscience.cdk.dedup.OffHeapHashTableTest")
+public class OffHeapHashTable {
+
+    private static final int SEGMENT_BITS  = 8;
+    private static final int ENTRY_SIZE    = 24;
+    private static final int MIN_CAPACITY  = 64;
+    /** The largest number of entries that fits in one buffer. */
+    private static final int MAX_CAPACITY  = 1 << 26;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    private final File spillDirectory;
+
+    /**
+     * Creates a table in direct memory.
+     *
+     * @param expectedSize the number of entries that is expected
+     */
+    public OffHeapHashTable(long expectedSize) {
+        this(expectedSize, null);
+    }
+
+    /**
+     * Creates a table in memory mapped files in the given directory. The
+     * files are deleted by {@link #close()}.
+     *
+     * @param expectedSize   the number of entries that is expected
+     * @param spillDirectory the directory for the files, or null to use
+     *                       direct memory
+     */
+    public OffHeapHashTable(long expectedSize, File spillDirectory) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("The expected size must not be negative");
+        this.spillDirectory = spillDirectory;
+        long perSegment = (expectedSize >> SEGMENT_BITS) * 4 / 3 + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < perSegment && capacity < MAX_CAPACITY) capacity <<= 1;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    /**
+     * Adds an entry unless the table already has one for the hash.
+     *
+     * @param  high  the highest 64 bits of the hash
+     * @param  low   the lowest 64 bits of the hash
+     * @param  value the value to store, not negative
+     * @return the value already stored for the hash, or -1 if the entry
+     *         was added
+     */
+    @TestMethod("testPutIfAbsent")
+    public long putIfAbsent(long high, long low, long value) {
+        if (value < 0)
+            throw new IllegalArgumentException("The value must not be negative");
+        return segment(high).putIfAbsent(high, low, value);
+    }
+
+    /**
+     * Returns the value stored for the hash.
+     *
+     * @param  high the highest 64 bits of the hash
+     * @param  low  the lowest 64 bits of the hash
+     * @return the value, or -1 if the table has no entry for the hash
+     */
+    @TestMethod("testPutIfAbsent")
+    public long get(long high, long low) {
+        return segment(high).get(high, low);
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries in the table
+     */
+    @TestMethod("testPutIfAbsent")
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) size += segment.size();
+        return size;
+    }
+
+    /**
+     * Releases the segments, and deletes their files. The table cannot be
+     * used afterwards.
+     */
+    @TestMethod("testSpillDirectory")
+    public void close() {
+        for (Segment segment : segments) segment.close();
+    }
+
+    private Segment segment(long high) {
+        return segments[(int) (high >>> (64 - SEGMENT_BITS))];
+    }
+
+    /**
+     * Allocates a zeroed buffer for the given number of entries.
+     */
+    private Buffer allocate(int capacity) {
+        int bytes = capacity * ENTRY_SIZE;
+        if (spillDirectory == null)
+            return new Buffer(ByteBuffer.allocateDirect(bytes), null);
+        try {
+            File file = File.createTempFile("cdk-hashtable", ".tmp", spillDirectory);
+            file.deleteOnExit();
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(bytes);
+                return new Buffer(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes), file);
+            } finally {
+                raf.close();
+            }
+        } catch (IOException exception) {
+            throw new IllegalStateException("Could not create a hash table file in "
+                                            + spillDirectory, exception);
+        }
+    }
+
+    private static class Buffer {
+
+        private final ByteBuffer bytes;
+        private final File file;
+
+        Buffer(ByteBuffer bytes, File file) {
+            this.bytes = bytes;
+            this.file = file;
+        }
+
+        void release() {
+            if (file != null) file.delete();
+        }
+    }
+
+    /**
+     * One part of the table, with linear probing. An entry holds the hash
+     * and the value plus one, so that zero marks an empty slot.
+     */
+    private class Segment {
+
+        private Buffer buffer;
+        private int capacity;
+        private int size;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.buffer = allocate(capacity);
+        }
+
+        synchronized long putIfAbsent(long high, long low, long value) {
+            int slot = find(buffer.bytes, capacity, high, low);
+            ByteBuffer bytes = buffer.bytes;
+            int offset = slot * ENTRY_SIZE;
+            long stored = bytes.getLong(offset + 16);
+            if (stored != 0) return stored - 1;
+            bytes.putLong(offset, high);
+            bytes.putLong(offset + 8, low);
+            bytes.putLong(offset + 16, value + 1);
+            size++;
+            if (size > capacity / 4 * 3) grow();
+            return -1;
+        }
+
+        synchronized long get(long high, long low) {
+            int slot = find(buffer.bytes, capacity, high, low);
+            return buffer.bytes.getLong(slot * ENTRY_SIZE + 16) - 1;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void close() {
+            if (buffer != null) buffer.release();
+            buffer = null;
+        }
+
+        /**
+         * Returns the slot of the hash, or the empty slot where it belongs.
+         */
+        private int find(ByteBuffer bytes, int capacity, long high, long low) {
+            int mask = capacity - 1;
+            int slot = (int) (low ^ (low >>> 32)) & mask;
+            while (true) {
+                int offset = slot * ENTRY_SIZE;
+                if (bytes.getLong(offset + 16) == 0) return slot;
+                if (bytes.getLong(offset) == high && bytes.getLong(offset + 8) == low) return slot;
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void grow() {
+            if (capacity >= MAX_CAPACITY)
+                throw new IllegalStateException("The hash table segment is full");
+            int newCapacity = capacity << 1;
+            Buffer grown = allocate(newCapacity);
+            for (int i = 0; i < capacity; i++) {
+                int offset = i * ENTRY_SIZE;
+                long value = buffer.bytes.getLong(offset + 16);
+                if (value == 0) continue;
+                long high = buffer.bytes.getLong(offset);
+                long low = buffer.bytes.getLong(offset + 8);
+                int slot = find(grown.bytes, newCapacity, high, low);
+                grown.bytes.putLong(slot * ENTRY_SIZE, high);
+                grown.bytes.putLong(slot * ENTRY_SIZE + 8, low);
+                grown.bytes.putLong(slot * ENTRY_SIZE + 16, value);
+            }
+            buffer.release();
+            buffer = grown;
+            capacity = newCapacity;
+        }
+    }
+}
@@ -80,8 +80,23 @@ public class ExtendedFingerprinter implements IFingerprinter {
      * @param  searchDepth The desired depth of search
      */
     public ExtendedFingerprinter(int size, int searchDepth) {
+        this(size, searchDepth, true);
+    }
+
+    /**
+     * Constructs a fingerprint generator that creates fingerprints of
+     * the given size, using a generation algorithm with the given search
+     * depth.
+     *
+     * @param  size        The desired size of the fingerprint
+     * @param  searchDepth The desired depth of search
+     * @param  compatible  If true, the path bits are identical to those of
+     *                     earlier CDK versions
+     * @see    Fingerprinter#Fingerprinter(int, int, boolean)
+     */
+    public ExtendedFingerprinter(int size, int searchDepth, boolean compatible) {
         this.fingerprinter 
-            = new Fingerprinter(size-RESERVED_BITS, searchDepth);
+            = new Fingerprinter(size-RESERVED_BITS, searchDepth, compatible);
     }
 
     /**
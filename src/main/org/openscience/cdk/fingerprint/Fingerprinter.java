@@ -29,24 +29,15 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
-import org.openscience.cdk.interfaces.IPseudoAtom;
 import org.openscience.cdk.ringsearch.AllRingsFinder;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
-import org.openscience.cdk.tools.periodictable.PeriodicTable;
 
-import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  *  Generates a fingerprint for a given AtomContainer. Fingerprints are
@@ -104,26 +95,13 @@ public class Fingerprinter implements IFingerprinter {
 	
 	private int size;
 	private int searchDepth;
+	private PathHasher hasher;
 
 	static int debugCounter = 0;
 
 	private static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(Fingerprinter.class);
 
-	private static final Map<String, String> queryReplace 
-	        = new HashMap<String, String>() {
-        
-	    private static final long serialVersionUID = 1L;
-        
-	    {
-	        put("Cl", "X");    put("Br", "Z");
-	        put("Si", "Y");    put("As", "D");
-	        put("Li", "L");    put("Se", "E");
-	        put("Na", "G");    put("Ca", "J");
-	        put("Al", "A");
-	    }
-	};
-	
     /**
 	 * Creates a fingerprint generator of length <code>DEFAULT_SIZE</code>
 	 * and with a search depth of <code>DEFAULT_SEARCH_DEPTH</code>.
@@ -145,10 +123,27 @@ public class Fingerprinter implements IFingerprinter {
 	 * @param  searchDepth The desired depth of search
 	 */
 	public Fingerprinter(int size, int searchDepth) {
+		this(size, searchDepth, true);
+	}
+
+	/**
+	 * Constructs a fingerprint generator that creates fingerprints of
+	 * the given size, using a generation algorithm with the given search
+	 * depth. If <code>compatible</code> is false, paths are hashed as integer
+	 * codes instead of strings, which is faster but gives fingerprints
+	 * that differ from the ones of earlier CDK versions.
+	 *
+	 * @param  size        The desired size of the fingerprint
+	 * @param  searchDepth The desired depth of search
+	 * @param  compatible  If true, fingerprints are identical to those of
+	 *                     earlier CDK versions
+	 * @see    PathHasher
+	 */
+	public Fingerprinter(int size, int searchDepth, boolean compatible) {
 		this.size = size;
 		this.searchDepth = searchDepth;
-
-    }
+		this.hasher = new PathHasher(compatible);
+	}
 
     /**
      * Generates a fingerprint of the default size for the given AtomContainer.
@@ -179,7 +174,7 @@ public class Fingerprinter implements IFingerprinter {
 
         int[] hashes = findPathes(container, searchDepth);
         for (int hash : hashes) {
-            position = new java.util.Random(hash).nextInt(size);
+            position = getBitPosition(hash, size);
             bitSet.set(position);
         }
 
@@ -207,92 +202,34 @@ public class Fingerprinter implements IFingerprinter {
      * Get all paths of lengths 0 to the specified length.
      *
      * This method will find all paths upto length N starting from each
-     * atom in the molecule and return the unique set of such paths.
+     * atom in the molecule and return the hashes of the unique set of such
+     * paths. The paths are hashed with a {@link PathHasher}, without
+     * building a string per path.
      *
      * @param container The molecule to search
      * @param searchDepth The maximum path length desired
-     * @return A Map of path strings, keyed on themselves
+     * @return The hashes of the unique paths
      */
     protected int[] findPathes(IAtomContainer container, int searchDepth) {
-
-        List<StringBuffer> allPaths = new ArrayList<StringBuffer>();
-
-        Map<IAtom,Map<IAtom, IBond>> cache 
-            = new HashMap<IAtom, Map<IAtom,IBond>>();
-        
-        for (IAtom startAtom : container.atoms()) {
-                List<List<IAtom>> p 
-                    = PathTools.getPathsOfLengthUpto(container, 
-                                                     startAtom, 
-                                                     searchDepth);
-                for (List<IAtom> path : p) {
-                    StringBuffer sb = new StringBuffer();
-                    IAtom x = path.get(0);
-
-                    // TODO if we ever get more than 255 elements, this will 
-                    // fail maybe we should use 0 for pseudo atoms and 
-                    // malformed symbols?
-                    if (x instanceof IPseudoAtom)
-                        sb.append((char) PeriodicTable.getElementCount() + 1);
-                    else {
-                        Integer atnum = PeriodicTable.getAtomicNumber(x.getSymbol());
-                        if (atnum != null) sb.append(convertSymbol(x.getSymbol()));
-                        else sb.append((char) 
-                                       PeriodicTable.getElementCount() + 1);
-                    }
-
-                    for (int i = 1; i < path.size(); i++) {
-                        final IAtom[] y = {path.get(i)};
-                        Map<IAtom, IBond> m = cache.get( x );
-                        final IBond[] b = { m != null ? m.get( y[0] ) : null };
-                        if ( b[0] == null ) {
-                            b[0] = container.getBond(x, y[0]);
-                            cache.put( x, 
-                                       new HashMap<IAtom, IBond>() {
-                                {put(y[0], b[0]); }
-                            } );
-                                                }
-                     sb.append(getBondSymbol(b[0]));
-                     sb.append(convertSymbol(y[0].getSymbol()));
-                     x = y[0];
-                    }
-
-                    // we store the lexicographically lower one of the
-                    // string and its reverse
-                    StringBuffer revForm = new StringBuffer(sb);
-                    revForm.reverse();
-                    if (sb.toString().compareTo(revForm.toString()) <= 0)
-                        allPaths.add(sb);
-                    else allPaths.add(revForm);
-                }
-        }
-        // now lets clean stuff up
-        Set<String> cleanPath = new HashSet<String>();
-        for (StringBuffer s : allPaths) {
-            String s1 = s.toString().trim();
-            if (s1.equals("")) continue;
-            if (cleanPath.contains(s1)) continue;
-            String s2 = s.reverse().toString().trim();
-            if (cleanPath.contains(s2)) continue;
-            cleanPath.add(s2);
+        String[] bondSymbols = new String[container.getBondCount()];
+        for (int i = 0; i < bondSymbols.length; i++) {
+            bondSymbols[i] = getBondSymbol(container.getBond(i));
         }
-
-        // convert paths to hashes
-        int[] hashes = new int[cleanPath.size()];
-        int i= 0;
-        for (String s: cleanPath) hashes[i++] = s.hashCode();
-
-        return hashes;
+        return hasher.findPathHashes(container, searchDepth, bondSymbols);
     }
 
-    private String convertSymbol(String symbol) {
-
-        String returnSymbol = queryReplace.get( symbol );
-        return returnSymbol == null ? symbol
-                                    : returnSymbol;
+    /**
+     * Maps a path hash onto a bit in a fingerprint of the given size.
+     *
+     * @param hash  The hash of a path, as returned by {@link #findPathes(IAtomContainer, int)}
+     * @param size  The size of the fingerprint
+     * @return      The position of the bit to set
+     */
+    @TestMethod("testGetBitPosition_int_int")
+    protected int getBitPosition(int hash, int size) {
+        return hasher.getBitPosition(hash, size);
     }
 
-
 	/**
 	 *  Gets the bondSymbol attribute of the Fingerprinter class
 	 *
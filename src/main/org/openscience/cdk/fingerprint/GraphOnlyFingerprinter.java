@@ -30,8 +30,6 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 
 import java.util.BitSet;
-import java.util.Map;
-import java.util.Random;
 
 /**
  * Specialized version of the {@link Fingerprinter} which does not take bond orders
@@ -65,6 +63,17 @@ public class GraphOnlyFingerprinter extends Fingerprinter {
 		super(size, searchDepth);
 	}
 
+	/**
+	 * @param  size        The desired size of the fingerprint
+	 * @param  searchDepth The desired depth of search
+	 * @param  compatible  If true, fingerprints are identical to those of
+	 *                     earlier CDK versions
+	 * @see    Fingerprinter#Fingerprinter(int, int, boolean)
+	 */
+	public GraphOnlyFingerprinter(int size, int searchDepth, boolean compatible) {
+		super(size, searchDepth, compatible);
+	}
+
 	/**
 	 * Gets the bondSymbol attribute of the Fingerprinter class. Because we do
 	 * not consider bond orders to be important, we just return "";
@@ -81,7 +90,7 @@ public class GraphOnlyFingerprinter extends Fingerprinter {
 		int[] hashes = findPathes(container, super.getSearchDepth());
 		BitSet bitSet = new BitSet(size);
         for (int hash : hashes) {
-            bitSet.set(new Random(hash).nextInt(size));
+            bitSet.set(getBitPosition(hash, size));
         }
 		return bitSet;
 	}
@@ -33,6 +33,10 @@ import java.util.Map;
 /**
  * Interface for fingerprint calculators.
  *
+ * <p>Implementations are not required to be thread-safe, and most keep
+ * state between calls. Use one instance per thread, for example via
+ * {@link ParallelFingerprinter} when fingerprinting many molecules.
+ *
  * @author         egonw
  * @cdk.keyword    fingerprint
  * @cdk.module     core
@@ -30,7 +30,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -42,9 +41,7 @@ import org.openscience.cdk.graph.ConnectivityChecker;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IAtomContainerSet;
 import org.openscience.cdk.interfaces.IBond;
-import org.openscience.cdk.interfaces.IRingSet;
-import org.openscience.cdk.ringsearch.AllRingsFinder;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+import org.openscience.cdk.smiles.smarts.SMARTSPatternSet;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
@@ -75,6 +72,8 @@ public class MACCSFingerprinter implements IFingerprinter {
     private static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(MACCSFingerprinter.class);
     private MaccsKey[] keys = null;
+    private SMARTSPatternSet patterns = null;
+    private int[] patternBits = null;
 
     @TestMethod("testFingerprint")
     public MACCSFingerprinter() {
@@ -99,47 +98,31 @@ public class MACCSFingerprinter implements IFingerprinter {
         int bitsetLength = keys.length;
         BitSet fingerPrint = new BitSet(bitsetLength);
 
-        SMARTSQueryTool sqt = new SMARTSQueryTool("C");
-        for (int i = 0; i < keys.length; i++) {
-            String smarts = keys[i].getSmarts();
-            if (smarts.equals("?")) continue;
-            int count = keys[i].getCount();
-
-            sqt.setSmarts(smarts);
-            boolean status = sqt.matches(atomContainer);
-            if (status) {
-                if (count == 0) fingerPrint.set(i, true);
-                else {
-                   List<List<Integer>> matches = sqt.getUniqueMatchingAtoms();
-                    if (matches.size() > count) fingerPrint.set(i, true);
-                }
+        // the patterns are parsed once, on first use
+        if (patterns == null) {
+            List<String> smarts = new ArrayList<String>();
+            List<Integer> bits = new ArrayList<Integer>();
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].getSmarts().equals("?")) continue;
+                smarts.add(keys[i].getSmarts());
+                bits.add(i);
             }
+            patterns = new SMARTSPatternSet(smarts.toArray(new String[smarts.size()]));
+            patternBits = new int[bits.size()];
+            for (int i = 0; i < patternBits.length; i++) patternBits[i] = bits.get(i);
+        }
+        int[] matches = patterns.countUniqueMatches(atomContainer);
+        for (int i = 0; i < matches.length; i++) {
+            int bit = patternBits[i];
+            if (matches[i] > keys[bit].getCount()) fingerPrint.set(bit, true);
         }
 
         // at this point we have skipped the entries whose pattern is "?"
         // (bits 1,44,125,166) so let try and do those features by hand
 
         // bit 125 aromatic ring count > 1
-        AllRingsFinder ringFinder = new AllRingsFinder();
-        IRingSet rings = ringFinder.findAllRings(atomContainer);
-        int ringCount = 0;
-        for (int i = 0; i < rings.getAtomContainerCount(); i++) {
-            IAtomContainer ring = rings.getAtomContainer(i);
-            boolean allAromatic = true;
-            Iterator<IBond> bonds = ring.bonds().iterator();
-            while (bonds.hasNext()) {
-                IBond bond = bonds.next();
-                if (!bond.getFlag(CDKConstants.ISAROMATIC)) {
-                    allAromatic = false;
-                    break;
-                }
-            }
-            if (allAromatic) ringCount++;
-            if (ringCount > 1) {
-                fingerPrint.set(124, true);
-                break;
-            }
-        }
+        if (countIndependentAromaticRings(atomContainer) > 1) fingerPrint.set(124, true);
+
         // bit 166 (*).(*)
         IAtomContainerSet part 
             = ConnectivityChecker.partitionIntoMolecules(atomContainer);
@@ -161,6 +144,29 @@ public class MACCSFingerprinter implements IFingerprinter {
         else return 0;
     }
 
+    /**
+     * Counts the independent rings of aromatic bonds, that is, the aromatic
+     * bonds that close a ring with the aromatic bonds before them. There is
+     * more than one ring of only aromatic bonds exactly if there is more
+     * than one such bond, so the rings need not be listed.
+     */
+    private static int countIndependentAromaticRings(IAtomContainer atomContainer) {
+        int[] parent = new int[atomContainer.getAtomCount()];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+        int count = 0;
+        for (IBond bond : atomContainer.bonds()) {
+            if (!bond.getFlag(CDKConstants.ISAROMATIC) || bond.getAtomCount() != 2) continue;
+            int atom1 = atomContainer.getAtomNumber(bond.getAtom(0));
+            int atom2 = atomContainer.getAtomNumber(bond.getAtom(1));
+            if (atom1 < 0 || atom2 < 0) continue;
+            while (parent[atom1] != atom1) atom1 = parent[atom1];
+            while (parent[atom2] != atom2) atom2 = parent[atom2];
+            if (atom1 == atom2) count++;
+            else parent[atom1] = atom2;
+        }
+        return count;
+    }
+
     private MaccsKey[] readKeyDef() throws IOException, CDKException {
         List<MaccsKey> keys = new ArrayList<MaccsKey>();
         String filename = "org/openscience/cdk/fingerprint/data/maccs.txt";
@@ -0,0 +1,303 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fingerprint;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * Calculates fingerprints for a stream of molecules on a pool of worker
+ * threads. The molecules are taken from any {@link Iterator}, such as an
+ * {@link org.openscience.cdk.io.iterator.IteratingSDFReader} or
+ * {@link org.openscience.cdk.io.iterator.IteratingSMILESReader}, and the
+ * fingerprints are returned in the order of the input, each with the index
+ * of its record:
+ * <pre>
+ * ParallelFingerprinter service = new ParallelFingerprinter(
+ *     new ParallelFingerprinter.FingerprinterFactory() {
+ *         public IFingerprinter newFingerprinter() {
+ *             return new Fingerprinter(1024, 8);
+ *         }
+ *     }, 4
+ * );
+ * Iterator&lt;ParallelFingerprinter.Result&gt; results =
+ *     service.fingerprint(new IteratingSDFReader(in, builder));
+ * while (results.hasNext()) {
+ *     ParallelFingerprinter.Result result = results.next();
+ *     if (result.getFingerprint() != null)
+ *         store(result.getIndex(), result.getFingerprint());
+ * }
+ * service.shutdown();
+ * </pre>
+ *
+ * <p>The {@link IFingerprinter} implementations are not thread-safe. Each
+ * worker thread therefore creates its own fingerprinter with the given
+ * {@link FingerprinterFactory}, and uses it for all molecules it processes.
+ * Molecules are read on the thread that iterates over the results, and at
+ * most <code>queueSize</code> molecules are read ahead, so that a slow
+ * consumer does not cause the whole input to be read into memory.
+ *
+ * <p>A molecule for which the fingerprinter throws an exception does not
+ * end the stream; its {@link Result} has no fingerprint and holds the
+ * exception instead, wrapped in a {@link CDKException} if needed.
+ *
+ * @cdk.keyword    fingerprint
+ * @cdk.keyword    parallel
+ * @cdk.module     standard
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.fingerprint.ParallelFingerprinterTest")
+public class ParallelFingerprinter {
+
+    /**
+     * Creates the fingerprinter instances used by the worker threads.
+     */
+    public interface FingerprinterFactory {
+
+        /**
+         * Returns a new fingerprinter. It is only used by the calling
+         * thread.
+         *
+         * @return a new {@link IFingerprinter}
+         */
+        public IFingerprinter newFingerprinter();
+    }
+
+    /**
+     * The fingerprint of one input record.
+     */
+    public static class Result {
+
+        private final long index;
+        private final BitSet fingerprint;
+        private final CDKException exception;
+
+        private Result(long index, BitSet fingerprint, CDKException exception) {
+            this.index = index;
+            this.fingerprint = fingerprint;
+            this.exception = exception;
+        }
+
+        /**
+         * Returns the position of the molecule in the input, starting at 0.
+         *
+         * @return the record index
+         */
+        @TestMethod("testFingerprint_Iterator")
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the fingerprint, or null if it could not be calculated.
+         *
+         * @return the fingerprint of the molecule
+         */
+        @TestMethod("testFingerprint_Iterator")
+        public BitSet getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Returns the exception thrown while calculating the fingerprint,
+         * or null if there was none.
+         *
+         * @return the exception of the fingerprinter
+         */
+        @TestMethod("testFingerprint_Exception")
+        public CDKException getException() {
+            return exception;
+        }
+    }
+
+    private final FingerprinterFactory factory;
+    private final ExecutorService executor;
+    private final int queueSize;
+    private final ThreadLocal<IFingerprinter> fingerprinters;
+
+    /**
+     * Creates a service that uses the given number of worker threads, and
+     * reads at most four molecules per thread ahead.
+     *
+     * @param factory creates the fingerprinter of each worker thread
+     * @param threads the number of worker threads
+     */
+    public ParallelFingerprinter(FingerprinterFactory factory, int threads) {
+        this(factory, threads, 4 * threads);
+    }
+
+    /**
+     * Creates a service that uses the given number of worker threads.
+     *
+     * @param factory   creates the fingerprinter of each worker thread
+     * @param threads   the number of worker threads
+     * @param queueSize the maximum number of molecules read ahead of the
+     *                  results that have been consumed
+     */
+    public ParallelFingerprinter(FingerprinterFactory factory, int threads,
+                                 int queueSize) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed");
+        if (queueSize < 1)
+            throw new IllegalArgumentException("The queue size must be positive");
+        this.factory = factory;
+        this.queueSize = queueSize;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ParallelFingerprinter-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.fingerprinters = new ThreadLocal<IFingerprinter>() {
+            protected IFingerprinter initialValue() {
+                return ParallelFingerprinter.this.factory.newFingerprinter();
+            }
+        };
+    }
+
+    /**
+     * Creates a service that uses the given number of worker threads, where
+     * each thread uses a fingerprinter created with the public no-argument
+     * constructor of the given class.
+     *
+     * @param fingerprinterClass the {@link IFingerprinter} implementation
+     * @param threads            the number of worker threads
+     */
+    public ParallelFingerprinter(final Class<? extends IFingerprinter> fingerprinterClass,
+                                 int threads) {
+        this(new FingerprinterFactory() {
+            public IFingerprinter newFingerprinter() {
+                try {
+                    return fingerprinterClass.getConstructor().newInstance();
+                } catch (Exception exception) {
+                    throw new RuntimeException(
+                        "Could not instantiate " + fingerprinterClass.getName(),
+                        exception
+                    );
+                }
+            }
+        }, threads);
+    }
+
+    /**
+     * Calculates the fingerprints of all molecules of the given iterator.
+     * The molecules are read while the returned iterator is consumed, on
+     * the thread that consumes it.
+     *
+     * @param  molecules the molecules, for example an iterating reader
+     * @return the fingerprints, in the order of the input
+     */
+    @TestMethod("testFingerprint_Iterator")
+    public Iterator<Result> fingerprint(Iterator<? extends IAtomContainer> molecules) {
+        if (executor.isShutdown())
+            throw new IllegalStateException("The service has been shut down");
+        return new ResultIterator(molecules);
+    }
+
+    /**
+     * Stops the worker threads. Results that have not been consumed yet are
+     * still calculated.
+     */
+    @TestMethod("testShutdown")
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private class ResultIterator implements Iterator<Result> {
+
+        private final Iterator<? extends IAtomContainer> molecules;
+        private final LinkedList<Future<Result>> pending
+            = new LinkedList<Future<Result>>();
+        private long index = 0;
+
+        ResultIterator(Iterator<? extends IAtomContainer> molecules) {
+            this.molecules = molecules;
+        }
+
+        public boolean hasNext() {
+            fill();
+            return !pending.isEmpty();
+        }
+
+        public Result next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Future<Result> head = pending.removeFirst();
+            fill();
+            try {
+                return head.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a fingerprint", exception);
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                if (cause instanceof Error) throw (Error)cause;
+                throw new RuntimeException(cause);
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void fill() {
+            while (pending.size() < queueSize && molecules.hasNext()) {
+                final IAtomContainer molecule = molecules.next();
+                final long recordIndex = index++;
+                pending.addLast(executor.submit(new Callable<Result>() {
+                    public Result call() {
+                        if (molecule == null)
+                            return new Result(recordIndex, null,
+                                new CDKException("The reader did not return a molecule"));
+                        try {
+                            BitSet fingerprint = fingerprinters.get().getFingerprint(molecule);
+                            return new Result(recordIndex, fingerprint, null);
+                        } catch (CDKException exception) {
+                            return new Result(recordIndex, null, exception);
+                        } catch (RuntimeException exception) {
+                            return new Result(recordIndex, null, new CDKException(
+                                "Could not calculate the fingerprint: " + exception.getMessage(),
+                                exception
+                            ));
+                        }
+                    }
+                }));
+            }
+        }
+    }
+}
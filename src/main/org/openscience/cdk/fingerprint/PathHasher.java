@@ -0,0 +1,586 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fingerprint;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * Enumerates all linear paths up to a given length in a molecule and hashes
+ * them, without creating a string or list per path. Paths are walked
+ * depth-first over an index based snapshot of the connection table, the hash
+ * of a path and of its reverse are updated incrementally while walking, and
+ * the direction independent hash is collected in a primitive int set. Bit
+ * positions are derived from the hashes without creating
+ * {@link java.util.Random} objects.
+ *
+ * <p>Two modes are available. In <i>compatible</i> mode the hashes are the
+ * {@link String#hashCode()} values of the path strings used by the
+ * {@link Fingerprinter} so far, and {@link #getBitPosition(int, int)} gives
+ * the same bit as <code>new Random(hash).nextInt(size)</code>. Fingerprints
+ * are then bit-for-bit identical to earlier CDK versions. In the other mode
+ * atoms and bonds are hashed as integer codes with a 64 bit rolling hash,
+ * which is faster and gives fewer collisions, but does not reproduce older
+ * fingerprints.
+ *
+ * <p>Instances do not keep any state between calls and can be shared between
+ * threads.
+ *
+ * @cdk.keyword    fingerprint
+ * @cdk.module     standard
+ * @cdk.githash
+ * @see            Fingerprinter
+ */
+@TestClass("org.openscience.cdk.fingerprint.PathHasherTest")
+public class PathHasher {
+
+    /** Two character element symbols mapped unto single characters. */
+    private static final Map<String, String> queryReplace
+            = new HashMap<String, String>() {
+
+        private static final long serialVersionUID = 1L;
+
+        {
+            put("Cl", "X");    put("Br", "Z");
+            put("Si", "Y");    put("As", "D");
+            put("Li", "L");    put("Se", "E");
+            put("Na", "G");    put("Ca", "J");
+            put("Al", "A");
+        }
+    };
+
+    private final static long MULTIPLIER = 0x100000001B3L;
+    private final static long ATOM_SEED  = 0x9E3779B97F4A7C15L;
+    private final static long BOND_SEED  = 0xC2B2AE3D27D4EB4FL;
+
+    private final boolean compatible;
+
+    /**
+     * Creates a path hasher that reproduces the hashes and bit positions
+     * of the {@link Fingerprinter}.
+     */
+    public PathHasher() {
+        this(true);
+    }
+
+    /**
+     * Creates a path hasher.
+     *
+     * @param compatible if true, hashes and bit positions are identical to
+     *                   those of the string based {@link Fingerprinter}
+     */
+    public PathHasher(boolean compatible) {
+        this.compatible = compatible;
+    }
+
+    /**
+     * Returns whether this hasher reproduces the string based path hashes.
+     *
+     * @return true if in compatible mode
+     */
+    @TestMethod("testIsCompatible")
+    public boolean isCompatible() {
+        return compatible;
+    }
+
+    /**
+     * Returns the unique hashes of all paths of zero up to
+     * <code>searchDepth</code> bonds in the given container. A path and its
+     * reverse have the same hash.
+     *
+     * @param container   the molecule to search
+     * @param searchDepth the maximum path length, in bonds
+     * @param bondSymbols the symbol of each bond, indexed as the bonds of
+     *                    the container
+     * @return the unique path hashes, in no particular order
+     */
+    @TestMethod("testFindPathHashes_Compatible,testFindPathHashes_Reverse")
+    public int[] findPathHashes(IAtomContainer container, int searchDepth,
+                                String[] bondSymbols) {
+        Walker walker = compatible
+            ? new StringHashWalker(container, bondSymbols)
+            : new CodeHashWalker(container, bondSymbols);
+        walker.walk(searchDepth);
+        return walker.hashes.toArray();
+    }
+
+    /**
+     * Returns the unique hashes of all paths of zero up to
+     * <code>searchDepth</code> bonds in the given container, where atoms and
+     * bonds are identified by the given integer codes instead of by their
+     * symbols. Atoms with a negative code are left out, as if they and their
+     * bonds were not in the container. The hashes do not depend on whether
+     * this hasher is compatible.
+     *
+     * @param container   the molecule to search
+     * @param searchDepth the maximum path length, in bonds
+     * @param atomCodes   the code of each atom, indexed as the atoms of the
+     *                    container, or a negative code to leave it out
+     * @param bondCodes   the code of each bond, indexed as the bonds of the
+     *                    container
+     * @return the unique path hashes, in no particular order
+     */
+    @TestMethod("testFindPathHashes_Codes")
+    public int[] findPathHashes(IAtomContainer container, int searchDepth,
+                                int[] atomCodes, int[] bondCodes) {
+        Walker walker = new CodeHashWalker(container, atomCodes, bondCodes);
+        walker.walk(searchDepth);
+        return walker.hashes.toArray();
+    }
+
+    /**
+     * Maps a path hash onto a bit position in [0, size). In compatible mode
+     * this gives the same result as <code>new Random(hash).nextInt(size)</code>.
+     *
+     * @param hash the hash of a path
+     * @param size the length of the fingerprint
+     * @return the position of the bit to set
+     */
+    @TestMethod("testGetBitPosition")
+    public int getBitPosition(int hash, int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be positive");
+        if (compatible) return randomPosition(hash, size);
+        return (int) (((hash & 0xFFFFFFFFL) * size) >>> 32);
+    }
+
+    /**
+     * Same as <code>new java.util.Random(seed).nextInt(bound)</code>, using
+     * the linear congruential generator documented for that class.
+     */
+    private static int randomPosition(int seed, int bound) {
+        final long mask = (1L << 48) - 1;
+        long state = (seed ^ 0x5DEECE66DL) & mask;
+        state = (state * 0x5DEECE66DL + 0xBL) & mask;
+        int r = (int) (state >>> 17);
+        int m = bound - 1;
+        if ((bound & m) == 0)
+            return (int) ((bound * (long) r) >> 31);
+        for (int u = r; u - (r = u % bound) + m < 0; ) {
+            state = (state * 0x5DEECE66DL + 0xBL) & mask;
+            u = (int) (state >>> 17);
+        }
+        return r;
+    }
+
+    /**
+     * Maps two character element symbols unto unique single character
+     * equivalents.
+     */
+    private static String convertSymbol(String symbol) {
+        String returnSymbol = queryReplace.get(symbol);
+        return returnSymbol == null ? symbol : returnSymbol;
+    }
+
+    /**
+     * Depth-first walk over all simple paths of a snapshot of the container.
+     */
+    private static abstract class Walker {
+
+        final int[][] neighbours;
+        final int[][] neighbourBonds;
+        final IntSet  hashes = new IntSet();
+        private final boolean[] visited;
+
+        Walker(IAtomContainer container) {
+            int atomCount = container.getAtomCount();
+            Map<IAtom,Integer> index = new IdentityHashMap<IAtom,Integer>(2 * atomCount);
+            for (int i = 0; i < atomCount; i++)
+                if (!index.containsKey(container.getAtom(i)))
+                    index.put(container.getAtom(i), i);
+            int[] degree = new int[atomCount];
+            int[][] bondAtoms = new int[container.getBondCount()][];
+            for (int i = 0; i < container.getBondCount(); i++) {
+                IBond bond = container.getBond(i);
+                if (bond.getAtomCount() < 2) continue;
+                Integer a = index.get(bond.getAtom(0));
+                Integer b = index.get(bond.getAtom(1));
+                if (a == null || b == null || a.equals(b)) continue;
+                bondAtoms[i] = new int[]{a, b};
+                degree[a]++;
+                degree[b]++;
+            }
+            neighbours = new int[atomCount][];
+            neighbourBonds = new int[atomCount][];
+            for (int i = 0; i < atomCount; i++) {
+                neighbours[i] = new int[degree[i]];
+                neighbourBonds[i] = new int[degree[i]];
+                degree[i] = 0;
+            }
+            for (int i = 0; i < bondAtoms.length; i++) {
+                if (bondAtoms[i] == null) continue;
+                addNeighbour(bondAtoms[i][0], bondAtoms[i][1], i, degree);
+                addNeighbour(bondAtoms[i][1], bondAtoms[i][0], i, degree);
+            }
+            // trim rows that had duplicate bonds
+            for (int i = 0; i < atomCount; i++) {
+                if (degree[i] != neighbours[i].length) {
+                    int[] row = new int[degree[i]];
+                    System.arraycopy(neighbours[i], 0, row, 0, degree[i]);
+                    neighbours[i] = row;
+                    row = new int[degree[i]];
+                    System.arraycopy(neighbourBonds[i], 0, row, 0, degree[i]);
+                    neighbourBonds[i] = row;
+                }
+            }
+            visited = new boolean[atomCount];
+        }
+
+        /**
+         * A second bond between the same two atoms does not give new paths,
+         * and only the first one is used for the bond symbol.
+         */
+        private void addNeighbour(int atom, int neighbour, int bond, int[] degree) {
+            for (int i = 0; i < degree[atom]; i++)
+                if (neighbours[atom][i] == neighbour) return;
+            neighbours[atom][degree[atom]] = neighbour;
+            neighbourBonds[atom][degree[atom]] = bond;
+            degree[atom]++;
+        }
+
+        /**
+         * Leaves an atom out of all paths.
+         */
+        void exclude(int atom) {
+            visited[atom] = true;
+        }
+
+        void walk(int searchDepth) {
+            for (int atom = 0; atom < neighbours.length; atom++) {
+                if (visited[atom]) continue;
+                start(atom);
+                visited[atom] = true;
+                extend(atom, searchDepth);
+                visited[atom] = false;
+            }
+        }
+
+        private void extend(int atom, int depth) {
+            emit();
+            if (depth == 0) return;
+            int[] row = neighbours[atom];
+            for (int i = 0; i < row.length; i++) {
+                int next = row[i];
+                if (visited[next]) continue;
+                push(neighbourBonds[atom][i], next);
+                visited[next] = true;
+                extend(next, depth - 1);
+                visited[next] = false;
+                pop();
+            }
+        }
+
+        /** Resets the path to the single given atom. */
+        abstract void start(int atom);
+        /** Appends a bond and atom to the current path. */
+        abstract void push(int bond, int atom);
+        /** Undoes the last {@link #push(int, int)}. */
+        abstract void pop();
+        /** Adds the hash of the current path to {@link #hashes}. */
+        abstract void emit();
+    }
+
+    /**
+     * Hashes the path strings of the {@link Fingerprinter}, keeping only the
+     * characters in a reusable buffer. The {@link String#hashCode()} of the
+     * path and of its reverse are updated incrementally.
+     */
+    private static class StringHashWalker extends Walker {
+
+        private final String[] startSymbols;
+        private final String[] atomSymbols;
+        private final String[] bondSymbols;
+
+        private char[] buffer   = new char[64];
+        private int    length;
+        private int    forward;
+        private int    reverse;
+        private int    power;
+
+        /* saved state per depth, to undo push() */
+        private int[]  lengths  = new int[16];
+        private int[]  forwards = new int[16];
+        private int[]  reverses = new int[16];
+        private int[]  powers   = new int[16];
+        private int    depth;
+
+        StringHashWalker(IAtomContainer container, String[] bondSymbols) {
+            super(container);
+            this.bondSymbols = bondSymbols;
+            int atomCount = container.getAtomCount();
+            startSymbols = new String[atomCount];
+            atomSymbols = new String[atomCount];
+            // TODO if we ever get more than 255 elements, this will
+            // fail maybe we should use 0 for pseudo atoms and
+            // malformed symbols?
+            String unknown = String.valueOf(PeriodicTable.getElementCount() + 1);
+            for (int i = 0; i < atomCount; i++) {
+                IAtom atom = container.getAtom(i);
+                atomSymbols[i] = String.valueOf(convertSymbol(atom.getSymbol()));
+                if (atom instanceof IPseudoAtom
+                    || PeriodicTable.getAtomicNumber(atom.getSymbol()) == null) {
+                    startSymbols[i] = unknown;
+                } else {
+                    startSymbols[i] = atomSymbols[i];
+                }
+            }
+        }
+
+        void start(int atom) {
+            length  = 0;
+            forward = 0;
+            reverse = 0;
+            power   = 1;
+            depth   = 0;
+            append(startSymbols[atom]);
+        }
+
+        void push(int bond, int atom) {
+            if (depth == lengths.length) growStack();
+            lengths[depth]  = length;
+            forwards[depth] = forward;
+            reverses[depth] = reverse;
+            powers[depth]   = power;
+            depth++;
+            append(bondSymbols[bond]);
+            append(atomSymbols[atom]);
+        }
+
+        void pop() {
+            depth--;
+            length  = lengths[depth];
+            forward = forwards[depth];
+            reverse = reverses[depth];
+            power   = powers[depth];
+        }
+
+        private void append(String symbol) {
+            int n = symbol.length();
+            if (length + n > buffer.length) {
+                char[] newBuffer = new char[Math.max(2 * buffer.length, length + n)];
+                System.arraycopy(buffer, 0, newBuffer, 0, length);
+                buffer = newBuffer;
+            }
+            symbol.getChars(0, n, buffer, length);
+            for (int i = 0; i < n; i++) {
+                char c = buffer[length++];
+                forward = 31 * forward + c;
+                reverse = reverse + c * power;
+                power  *= 31;
+            }
+        }
+
+        private void growStack() {
+            int n = 2 * lengths.length;
+            lengths  = copyOf(lengths, n);
+            forwards = copyOf(forwards, n);
+            reverses = copyOf(reverses, n);
+            powers   = copyOf(powers, n);
+        }
+
+        void emit() {
+            // the Fingerprinter keeps the lexicographically higher one of
+            // the path string and its reverse
+            boolean reversed = true;
+            for (int i = 0, j = length - 1; i < j; i++, j--) {
+                if (buffer[i] != buffer[j]) {
+                    reversed = buffer[i] < buffer[j];
+                    break;
+                }
+            }
+            if (length > 0 && buffer[0] > ' ' && buffer[length - 1] > ' ') {
+                hashes.add(reversed ? reverse : forward);
+                return;
+            }
+            // the path strings are trimmed before hashing
+            int lo = 0;
+            int hi = length;
+            while (lo < hi && buffer[lo] <= ' ') lo++;
+            while (lo < hi && buffer[hi - 1] <= ' ') hi--;
+            if (lo == hi) return;
+            int hash = 0;
+            if (reversed) {
+                for (int i = hi - 1; i >= lo; i--) hash = 31 * hash + buffer[i];
+            } else {
+                for (int i = lo; i < hi; i++) hash = 31 * hash + buffer[i];
+            }
+            hashes.add(hash);
+        }
+    }
+
+    /**
+     * Hashes paths as sequences of integer atom and bond codes with a 64 bit
+     * polynomial hash. The smaller of the hashes of the path and its reverse
+     * is used, which makes the result independent of the walking direction.
+     */
+    private static class CodeHashWalker extends Walker {
+
+        private final long[] atomCodes;
+        private final long[] bondCodes;
+
+        private long   forward;
+        private long   reverse;
+        private long   power;
+
+        private long[] forwards = new long[16];
+        private long[] reverses = new long[16];
+        private long[] powers   = new long[16];
+        private int    depth;
+
+        CodeHashWalker(IAtomContainer container, String[] bondSymbols) {
+            super(container);
+            int atomCount = container.getAtomCount();
+            atomCodes = new long[atomCount];
+            int unknown = PeriodicTable.getElementCount() + 1;
+            for (int i = 0; i < atomCount; i++) {
+                IAtom atom = container.getAtom(i);
+                Integer number = atom instanceof IPseudoAtom
+                    ? null : PeriodicTable.getAtomicNumber(atom.getSymbol());
+                atomCodes[i] = (number == null ? unknown : number) * ATOM_SEED;
+            }
+            bondCodes = new long[bondSymbols.length];
+            for (int i = 0; i < bondSymbols.length; i++) {
+                int code = bondSymbols[i] == null ? 0 : bondSymbols[i].hashCode();
+                bondCodes[i] = (code + 1) * BOND_SEED;
+            }
+        }
+
+        CodeHashWalker(IAtomContainer container, int[] atomCodes, int[] bondCodes) {
+            super(container);
+            this.atomCodes = new long[atomCodes.length];
+            for (int i = 0; i < atomCodes.length; i++) {
+                if (atomCodes[i] < 0) exclude(i);
+                else this.atomCodes[i] = (atomCodes[i] + 1L) * ATOM_SEED;
+            }
+            this.bondCodes = new long[bondCodes.length];
+            for (int i = 0; i < bondCodes.length; i++)
+                this.bondCodes[i] = (bondCodes[i] + 1L) * BOND_SEED;
+        }
+
+        void start(int atom) {
+            forward = atomCodes[atom];
+            reverse = atomCodes[atom];
+            power   = MULTIPLIER;
+            depth   = 0;
+        }
+
+        void push(int bond, int atom) {
+            if (depth == powers.length) {
+                int n = 2 * powers.length;
+                forwards = copyOf(forwards, n);
+                reverses = copyOf(reverses, n);
+                powers   = copyOf(powers, n);
+            }
+            forwards[depth] = forward;
+            reverses[depth] = reverse;
+            powers[depth]   = power;
+            depth++;
+            append(bondCodes[bond]);
+            append(atomCodes[atom]);
+        }
+
+        void pop() {
+            depth--;
+            forward = forwards[depth];
+            reverse = reverses[depth];
+            power   = powers[depth];
+        }
+
+        private void append(long code) {
+            forward = forward * MULTIPLIER + code;
+            reverse = reverse + code * power;
+            power  *= MULTIPLIER;
+        }
+
+        void emit() {
+            long z = Math.min(forward, reverse);
+            // finalizer of the 64 bit MurmurHash3
+            z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+            z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+            z = z ^ (z >>> 33);
+            hashes.add((int) (z ^ (z >>> 32)));
+        }
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    private static long[] copyOf(long[] array, int length) {
+        long[] copy = new long[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    /**
+     * Open addressing hash set of primitive ints.
+     */
+    private static class IntSet {
+
+        private int[]   keys = new int[64];
+        private boolean[] used = new boolean[64];
+        private int     size;
+
+        void add(int key) {
+            int mask = keys.length - 1;
+            int h = key * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) return;
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            if (++size * 2 > keys.length) rehash();
+        }
+
+        private void rehash() {
+            int[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            keys = new int[2 * oldKeys.length];
+            used = new boolean[2 * oldKeys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++)
+                if (oldUsed[i]) add(oldKeys[i]);
+        }
+
+        int[] toArray() {
+            int[] array = new int[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++)
+                if (used[i]) array[n++] = keys[i];
+            return array;
+        }
+    }
+}
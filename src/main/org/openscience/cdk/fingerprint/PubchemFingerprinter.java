@@ -91,9 +91,14 @@ public class PubchemFingerprinter implements IFingerprinter {
 
     private byte[] m_bits;
 
+    // the number of different SMARTS patterns in the fingerprint
+    private static final int PATTERN_COUNT = 618;
+
     private SMARTSQueryTool sqt;
     public PubchemFingerprinter() {
     	sqt = new SMARTSQueryTool("C");
+    	// keep all patterns parsed, so that they are not parsed for every molecule
+    	sqt.setQueryCacheSize(PATTERN_COUNT);
         m_bits = new byte[(FP_SIZE + 7) >> 3];
     }
 
@@ -306,12 +311,9 @@ public class PubchemFingerprinter implements IFingerprinter {
             mol = m;
         }
 
-        public int countSubstructure(String smarts) throws CDKException {
+        public boolean hasSubstructure(String smarts) throws CDKException {
             sqt.setSmarts(smarts);
-            boolean status = sqt.matches(mol);
-            if (status) {
-                return sqt.getUniqueMatchingAtoms().size();
-            } else return 0;
+            return sqt.hasMatch(mol);
         }
     }
 
@@ -1095,133 +1097,133 @@ public class PubchemFingerprinter implements IFingerprinter {
         count.
       */
         b = 263;
-        if (cs.countSubstructure("[Li&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Li&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 264;
-        if (cs.countSubstructure("[Li]~[Li]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Li]~[Li]")) fp[b >> 3] |= MASK[b % 8];
         b = 265;
-        if (cs.countSubstructure("[Li]~[#5]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Li]~[#5]")) fp[b >> 3] |= MASK[b % 8];
         b = 266;
-        if (cs.countSubstructure("[Li]~[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Li]~[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 267;
-        if (cs.countSubstructure("[Li]~[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Li]~[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 268;
-        if (cs.countSubstructure("[Li]~[F]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Li]~[F]")) fp[b >> 3] |= MASK[b % 8];
         b = 269;
-        if (cs.countSubstructure("[Li]~[#15]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Li]~[#15]")) fp[b >> 3] |= MASK[b % 8];
         b = 270;
-        if (cs.countSubstructure("[Li]~[#16]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Li]~[#16]")) fp[b >> 3] |= MASK[b % 8];
         b = 271;
-        if (cs.countSubstructure("[Li]~[Cl]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Li]~[Cl]")) fp[b >> 3] |= MASK[b % 8];
         b = 272;
-        if (cs.countSubstructure("[#5&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 273;
-        if (cs.countSubstructure("[#5]~[#5]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[#5]")) fp[b >> 3] |= MASK[b % 8];
         b = 274;
-        if (cs.countSubstructure("[#5]~[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 275;
-        if (cs.countSubstructure("[#5]~[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 276;
-        if (cs.countSubstructure("[#5]~[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 277;
-        if (cs.countSubstructure("[#5]~[F]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[F]")) fp[b >> 3] |= MASK[b % 8];
         b = 278;
-        if (cs.countSubstructure("[#5]~[#14]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[#14]")) fp[b >> 3] |= MASK[b % 8];
         b = 279;
-        if (cs.countSubstructure("[#5]~[#15]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[#15]")) fp[b >> 3] |= MASK[b % 8];
         b = 280;
-        if (cs.countSubstructure("[#5]~[#16]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[#16]")) fp[b >> 3] |= MASK[b % 8];
         b = 281;
-        if (cs.countSubstructure("[#5]~[Cl]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[Cl]")) fp[b >> 3] |= MASK[b % 8];
         b = 282;
-        if (cs.countSubstructure("[#5]~[Br]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#5]~[Br]")) fp[b >> 3] |= MASK[b % 8];
         b = 283;
-        if (cs.countSubstructure("[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 284;
-        if (cs.countSubstructure("[#6]~[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 285;
-        if (cs.countSubstructure("[#6]~[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 286;
-        if (cs.countSubstructure("[#6]~[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 287;
-        if (cs.countSubstructure("[#6]~[F]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[F]")) fp[b >> 3] |= MASK[b % 8];
         b = 288;
-        if (cs.countSubstructure("[#6]~[Na]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[Na]")) fp[b >> 3] |= MASK[b % 8];
         b = 289;
-        if (cs.countSubstructure("[#6]~[Mg]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[Mg]")) fp[b >> 3] |= MASK[b % 8];
         b = 290;
-        if (cs.countSubstructure("[#6]~[Al]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[Al]")) fp[b >> 3] |= MASK[b % 8];
         b = 291;
-        if (cs.countSubstructure("[#6]~[#14]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[#14]")) fp[b >> 3] |= MASK[b % 8];
         b = 292;
-        if (cs.countSubstructure("[#6]~[#15]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[#15]")) fp[b >> 3] |= MASK[b % 8];
         b = 293;
-        if (cs.countSubstructure("[#6]~[#16]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[#16]")) fp[b >> 3] |= MASK[b % 8];
         b = 294;
-        if (cs.countSubstructure("[#6]~[Cl]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[Cl]")) fp[b >> 3] |= MASK[b % 8];
         b = 295;
-        if (cs.countSubstructure("[#6]~[#33]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[#33]")) fp[b >> 3] |= MASK[b % 8];
         b = 296;
-        if (cs.countSubstructure("[#6]~[#34]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[#34]")) fp[b >> 3] |= MASK[b % 8];
         b = 297;
-        if (cs.countSubstructure("[#6]~[Br]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[Br]")) fp[b >> 3] |= MASK[b % 8];
         b = 298;
-        if (cs.countSubstructure("[#6]~[I]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]~[I]")) fp[b >> 3] |= MASK[b % 8];
         b = 299;
-        if (cs.countSubstructure("[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 300;
-        if (cs.countSubstructure("[#7]~[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]~[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 301;
-        if (cs.countSubstructure("[#7]~[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]~[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 302;
-        if (cs.countSubstructure("[#7]~[F]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]~[F]")) fp[b >> 3] |= MASK[b % 8];
         b = 303;
-        if (cs.countSubstructure("[#7]~[#14]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]~[#14]")) fp[b >> 3] |= MASK[b % 8];
         b = 304;
-        if (cs.countSubstructure("[#7]~[#15]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]~[#15]")) fp[b >> 3] |= MASK[b % 8];
         b = 305;
-        if (cs.countSubstructure("[#7]~[#16]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]~[#16]")) fp[b >> 3] |= MASK[b % 8];
         b = 306;
-        if (cs.countSubstructure("[#7]~[Cl]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]~[Cl]")) fp[b >> 3] |= MASK[b % 8];
         b = 307;
-        if (cs.countSubstructure("[#7]~[Br]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]~[Br]")) fp[b >> 3] |= MASK[b % 8];
         b = 308;
-        if (cs.countSubstructure("[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 309;
-        if (cs.countSubstructure("[#8]~[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]~[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 310;
-        if (cs.countSubstructure("[#8]~[Mg]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]~[Mg]")) fp[b >> 3] |= MASK[b % 8];
         b = 311;
-        if (cs.countSubstructure("[#8]~[Na]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]~[Na]")) fp[b >> 3] |= MASK[b % 8];
         b = 312;
-        if (cs.countSubstructure("[#8]~[Al]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]~[Al]")) fp[b >> 3] |= MASK[b % 8];
         b = 313;
-        if (cs.countSubstructure("[#8]~[#14]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]~[#14]")) fp[b >> 3] |= MASK[b % 8];
         b = 314;
-        if (cs.countSubstructure("[#8]~[#15]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]~[#15]")) fp[b >> 3] |= MASK[b % 8];
         b = 315;
-        if (cs.countSubstructure("[#8]~[K]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]~[K]")) fp[b >> 3] |= MASK[b % 8];
         b = 316;
-        if (cs.countSubstructure("[F]~[#15]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[F]~[#15]")) fp[b >> 3] |= MASK[b % 8];
         b = 317;
-        if (cs.countSubstructure("[F]~[#16]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[F]~[#16]")) fp[b >> 3] |= MASK[b % 8];
         b = 318;
-        if (cs.countSubstructure("[Al&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Al&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 319;
-        if (cs.countSubstructure("[Al]~[Cl]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Al]~[Cl]")) fp[b >> 3] |= MASK[b % 8];
         b = 320;
-        if (cs.countSubstructure("[#14&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#14&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 321;
-        if (cs.countSubstructure("[#14]~[#14]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#14]~[#14]")) fp[b >> 3] |= MASK[b % 8];
         b = 322;
-        if (cs.countSubstructure("[#14]~[Cl]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#14]~[Cl]")) fp[b >> 3] |= MASK[b % 8];
         b = 323;
-        if (cs.countSubstructure("[#15&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#15&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 324;
-        if (cs.countSubstructure("[#15]~[#15]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#15]~[#15]")) fp[b >> 3] |= MASK[b % 8];
         b = 325;
-        if (cs.countSubstructure("[#33&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#33&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 326;
-        if (cs.countSubstructure("[#33]~[#33]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#33]~[#33]")) fp[b >> 3] |= MASK[b % 8];
 
         /*
         Section 4: Simple atom nearest neighbors.  These bits test for the
@@ -1230,183 +1232,183 @@ public class PubchemFingerprinter implements IFingerprinter {
         "~") is significant.
       */
         b = 327;
-        if (cs.countSubstructure("[#6](~Br)(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~Br)(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 328;
-        if (cs.countSubstructure("[#6](~Br)(~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~Br)(~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 329;
-        if (cs.countSubstructure("[#6&!H0]~[Br]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0]~[Br]")) fp[b >> 3] |= MASK[b % 8];
         b = 330;
-        if (cs.countSubstructure("[#6](~[Br])(:[c])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[Br])(:[c])")) fp[b >> 3] |= MASK[b % 8];
         b = 331;
-        if (cs.countSubstructure("[#6](~[Br])(:[n])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[Br])(:[n])")) fp[b >> 3] |= MASK[b % 8];
         b = 332;
-        if (cs.countSubstructure("[#6](~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 333;
-        if (cs.countSubstructure("[#6](~[#6])(~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 334;
-        if (cs.countSubstructure("[#6](~[#6])(~[#6])(~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#6])(~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 335;
-        if (cs.countSubstructure("[#6H1](~[#6])(~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6H1](~[#6])(~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 336;
-        if (cs.countSubstructure("[#6](~[#6])(~[#6])(~[#6])(~[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#6])(~[#6])(~[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 337;
-        if (cs.countSubstructure("[#6](~[#6])(~[#6])(~[#6])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#6])(~[#6])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 338;
-        if (cs.countSubstructure("[#6H1](~[#6])(~[#6])(~[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6H1](~[#6])(~[#6])(~[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 339;
-        if (cs.countSubstructure("[#6H1](~[#6])(~[#6])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6H1](~[#6])(~[#6])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 340;
-        if (cs.countSubstructure("[#6](~[#6])(~[#6])(~[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#6])(~[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 341;
-        if (cs.countSubstructure("[#6](~[#6])(~[#6])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#6])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 342;
-        if (cs.countSubstructure("[#6](~[#6])(~[Cl])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[Cl])")) fp[b >> 3] |= MASK[b % 8];
         b = 343;
-        if (cs.countSubstructure("[#6&!H0](~[#6])(~[Cl])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#6])(~[Cl])")) fp[b >> 3] |= MASK[b % 8];
         b = 344;
-        if (cs.countSubstructure("[#6H,#6H2,#6H3,#6H4]~[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6H,#6H2,#6H3,#6H4]~[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 345;
-        if (cs.countSubstructure("[#6&!H0](~[#6])(~[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#6])(~[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 346;
-        if (cs.countSubstructure("[#6&!H0](~[#6])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#6])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 347;
-        if (cs.countSubstructure("[#6H1](~[#6])(~[#8])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6H1](~[#6])(~[#8])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 348;
-        if (cs.countSubstructure("[#6&!H0](~[#6])(~[#15])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#6])(~[#15])")) fp[b >> 3] |= MASK[b % 8];
         b = 349;
-        if (cs.countSubstructure("[#6&!H0](~[#6])(~[#16])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#6])(~[#16])")) fp[b >> 3] |= MASK[b % 8];
         b = 350;
-        if (cs.countSubstructure("[#6](~[#6])(~[I])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[I])")) fp[b >> 3] |= MASK[b % 8];
         b = 351;
-        if (cs.countSubstructure("[#6](~[#6])(~[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 352;
-        if (cs.countSubstructure("[#6](~[#6])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 353;
-        if (cs.countSubstructure("[#6](~[#6])(~[#16])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#16])")) fp[b >> 3] |= MASK[b % 8];
         b = 354;
-        if (cs.countSubstructure("[#6](~[#6])(~[#14])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(~[#14])")) fp[b >> 3] |= MASK[b % 8];
         b = 355;
-        if (cs.countSubstructure("[#6](~[#6])(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 356;
-        if (cs.countSubstructure("[#6](~[#6])(:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 357;
-        if (cs.countSubstructure("[#6](~[#6])(:c)(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(:c)(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 358;
-        if (cs.countSubstructure("[#6](~[#6])(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 359;
-        if (cs.countSubstructure("[#6](~[#6])(:n)(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#6])(:n)(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 360;
-        if (cs.countSubstructure("[#6](~[Cl])(~[Cl])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[Cl])(~[Cl])")) fp[b >> 3] |= MASK[b % 8];
         b = 361;
-        if (cs.countSubstructure("[#6&!H0](~[Cl])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[Cl])")) fp[b >> 3] |= MASK[b % 8];
         b = 362;
-        if (cs.countSubstructure("[#6](~[Cl])(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[Cl])(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 363;
-        if (cs.countSubstructure("[#6](~[F])(~[F])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[F])(~[F])")) fp[b >> 3] |= MASK[b % 8];
         b = 364;
-        if (cs.countSubstructure("[#6](~[F])(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[F])(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 365;
-        if (cs.countSubstructure("[#6&!H0](~[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 366;
-        if (cs.countSubstructure("[#6&!H0](~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 367;
-        if (cs.countSubstructure("[#6&!H0](~[#8])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#8])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 368;
-        if (cs.countSubstructure("[#6&!H0](~[#16])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#16])")) fp[b >> 3] |= MASK[b % 8];
         b = 369;
-        if (cs.countSubstructure("[#6&!H0](~[#14])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](~[#14])")) fp[b >> 3] |= MASK[b % 8];
         b = 370;
-        if (cs.countSubstructure("[#6&!H0]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 371;
-        if (cs.countSubstructure("[#6&!H0](:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 372;
-        if (cs.countSubstructure("[#6&!H0](:c)(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](:c)(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 373;
-        if (cs.countSubstructure("[#6&!H0](:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 374;
-        if (cs.countSubstructure("[#6H3]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6H3]")) fp[b >> 3] |= MASK[b % 8];
         b = 375;
-        if (cs.countSubstructure("[#6](~[#7])(~[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#7])(~[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 376;
-        if (cs.countSubstructure("[#6](~[#7])(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#7])(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 377;
-        if (cs.countSubstructure("[#6](~[#7])(:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#7])(:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 378;
-        if (cs.countSubstructure("[#6](~[#7])(:c)(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#7])(:c)(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 379;
-        if (cs.countSubstructure("[#6](~[#7])(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#7])(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 380;
-        if (cs.countSubstructure("[#6](~[#8])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#8])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 381;
-        if (cs.countSubstructure("[#6](~[#8])(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#8])(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 382;
-        if (cs.countSubstructure("[#6](~[#8])(:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#8])(:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 383;
-        if (cs.countSubstructure("[#6](~[#16])(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](~[#16])(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 384;
-        if (cs.countSubstructure("[#6](:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 385;
-        if (cs.countSubstructure("[#6](:c)(:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](:c)(:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 386;
-        if (cs.countSubstructure("[#6](:c)(:c)(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](:c)(:c)(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 387;
-        if (cs.countSubstructure("[#6](:c)(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](:c)(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 388;
-        if (cs.countSubstructure("[#6](:c)(:n)(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](:c)(:n)(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 389;
-        if (cs.countSubstructure("[#6](:n)(:n)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](:n)(:n)")) fp[b >> 3] |= MASK[b % 8];
         b = 390;
-        if (cs.countSubstructure("[#7](~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 391;
-        if (cs.countSubstructure("[#7](~[#6])(~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](~[#6])(~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 392;
-        if (cs.countSubstructure("[#7&!H0](~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7&!H0](~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 393;
-        if (cs.countSubstructure("[#7&!H0](~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7&!H0](~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 394;
-        if (cs.countSubstructure("[#7&!H0](~[#6])(~[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7&!H0](~[#6])(~[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 395;
-        if (cs.countSubstructure("[#7](~[#6])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](~[#6])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 396;
-        if (cs.countSubstructure("[#7](~[#6])(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](~[#6])(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 397;
-        if (cs.countSubstructure("[#7](~[#6])(:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](~[#6])(:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 398;
-        if (cs.countSubstructure("[#7&!H0](~[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7&!H0](~[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 399;
-        if (cs.countSubstructure("[#7&!H0](:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7&!H0](:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 400;
-        if (cs.countSubstructure("[#7&!H0](:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7&!H0](:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 401;
-        if (cs.countSubstructure("[#7](~[#8])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](~[#8])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 402;
-        if (cs.countSubstructure("[#7](~[#8])(:o)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](~[#8])(:o)")) fp[b >> 3] |= MASK[b % 8];
         b = 403;
-        if (cs.countSubstructure("[#7](:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 404;
-        if (cs.countSubstructure("[#7](:c)(:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](:c)(:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 405;
-        if (cs.countSubstructure("[#8](~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8](~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 406;
-        if (cs.countSubstructure("[#8&!H0](~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8&!H0](~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 407;
-        if (cs.countSubstructure("[#8](~[#6])(~[#15])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8](~[#6])(~[#15])")) fp[b >> 3] |= MASK[b % 8];
         b = 408;
-        if (cs.countSubstructure("[#8&!H0](~[#16])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8&!H0](~[#16])")) fp[b >> 3] |= MASK[b % 8];
         b = 409;
-        if (cs.countSubstructure("[#8](:c)(:c)") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8](:c)(:c)")) fp[b >> 3] |= MASK[b % 8];
         b = 410;
-        if (cs.countSubstructure("[#15](~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#15](~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 411;
-        if (cs.countSubstructure("[#15](~[#8])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#15](~[#8])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 412;
-        if (cs.countSubstructure("[#16](~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16](~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 413;
-        if (cs.countSubstructure("[#16&!H0](~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16&!H0](~[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 414;
-        if (cs.countSubstructure("[#16](~[#6])(~[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16](~[#6])(~[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 415;
-        if (cs.countSubstructure("[#14](~[#6])(~[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#14](~[#6])(~[#6])")) fp[b >> 3] |= MASK[b % 8];
 
         /*
         Section 5: Detailed atom neighborhoods - These bits test for the
@@ -1418,93 +1420,93 @@ public class PubchemFingerprinter implements IFingerprinter {
       */
 
         b = 416;
-        if (cs.countSubstructure("[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 417;
-        if (cs.countSubstructure("[#6]#[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]#[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 418;
-        if (cs.countSubstructure("[#6]=,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 419;
-        if (cs.countSubstructure("[#6]#[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]#[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 420;
-        if (cs.countSubstructure("[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 421;
-        if (cs.countSubstructure("[#6]=,:[#16]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#16]")) fp[b >> 3] |= MASK[b % 8];
         b = 422;
-        if (cs.countSubstructure("[#7]=,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]=,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 423;
-        if (cs.countSubstructure("[#7]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 424;
-        if (cs.countSubstructure("[#7]=,:[#15]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]=,:[#15]")) fp[b >> 3] |= MASK[b % 8];
         b = 425;
-        if (cs.countSubstructure("[#15]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#15]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 426;
-        if (cs.countSubstructure("[#15]=,:[#15]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#15]=,:[#15]")) fp[b >> 3] |= MASK[b % 8];
         b = 427;
-        if (cs.countSubstructure("[#6](#[#6])(-,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](#[#6])(-,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 428;
-        if (cs.countSubstructure("[#6&!H0](#[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](#[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 429;
-        if (cs.countSubstructure("[#6](#[#7])(-,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](#[#7])(-,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 430;
-        if (cs.countSubstructure("[#6](-,:[#6])(-,:[#6])(=,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(-,:[#6])(=,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 431;
-        if (cs.countSubstructure("[#6](-,:[#6])(-,:[#6])(=,:[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(-,:[#6])(=,:[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 432;
-        if (cs.countSubstructure("[#6](-,:[#6])(-,:[#6])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(-,:[#6])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 433;
-        if (cs.countSubstructure("[#6](-,:[#6])([Cl])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])([Cl])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 434;
-        if (cs.countSubstructure("[#6&!H0](-,:[#6])(=,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](-,:[#6])(=,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 435;
-        if (cs.countSubstructure("[#6&!H0](-,:[#6])(=,:[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](-,:[#6])(=,:[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 436;
-        if (cs.countSubstructure("[#6&!H0](-,:[#6])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](-,:[#6])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 437;
-        if (cs.countSubstructure("[#6](-,:[#6])(-,:[#7])(=,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(-,:[#7])(=,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 438;
-        if (cs.countSubstructure("[#6](-,:[#6])(-,:[#7])(=,:[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(-,:[#7])(=,:[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 439;
-        if (cs.countSubstructure("[#6](-,:[#6])(-,:[#7])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(-,:[#7])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 440;
-        if (cs.countSubstructure("[#6](-,:[#6])(-,:[#8])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(-,:[#8])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 441;
-        if (cs.countSubstructure("[#6](-,:[#6])(=,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(=,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 442;
-        if (cs.countSubstructure("[#6](-,:[#6])(=,:[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(=,:[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 443;
-        if (cs.countSubstructure("[#6](-,:[#6])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#6])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 444;
-        if (cs.countSubstructure("[#6]([Cl])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]([Cl])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 445;
-        if (cs.countSubstructure("[#6&!H0](-,:[#7])(=,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](-,:[#7])(=,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 446;
-        if (cs.countSubstructure("[#6&!H0](=,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](=,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 447;
-        if (cs.countSubstructure("[#6&!H0](=,:[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](=,:[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 448;
-        if (cs.countSubstructure("[#6&!H0](=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0](=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 449;
-        if (cs.countSubstructure("[#6](-,:[#7])(=,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#7])(=,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 450;
-        if (cs.countSubstructure("[#6](-,:[#7])(=,:[#7])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#7])(=,:[#7])")) fp[b >> 3] |= MASK[b % 8];
         b = 451;
-        if (cs.countSubstructure("[#6](-,:[#7])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#7])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 452;
-        if (cs.countSubstructure("[#6](-,:[#8])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6](-,:[#8])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 453;
-        if (cs.countSubstructure("[#7](-,:[#6])(=,:[#6])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](-,:[#6])(=,:[#6])")) fp[b >> 3] |= MASK[b % 8];
         b = 454;
-        if (cs.countSubstructure("[#7](-,:[#6])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](-,:[#6])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 455;
-        if (cs.countSubstructure("[#7](-,:[#8])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7](-,:[#8])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 456;
-        if (cs.countSubstructure("[#15](-,:[#8])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#15](-,:[#8])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 457;
-        if (cs.countSubstructure("[#16](-,:[#6])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16](-,:[#6])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 458;
-        if (cs.countSubstructure("[#16](-,:[#8])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16](-,:[#8])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
         b = 459;
-        if (cs.countSubstructure("[#16](=,:[#8])(=,:[#8])") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16](=,:[#8])(=,:[#8])")) fp[b >> 3] |= MASK[b % 8];
 
         /*
         Section 6: Simple SMARTS patterns - These bits test for the presence
@@ -1513,523 +1515,523 @@ public class PubchemFingerprinter implements IFingerprinter {
         single and double bonds.
       */
         b = 460;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]#[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]#[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 461;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]=,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]=,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 462;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 463;
-        if (cs.countSubstructure("[#7]:[#6]-,:[#16&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]:[#6]-,:[#16&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 464;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 465;
-        if (cs.countSubstructure("[#8]=,:[#16]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#16]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 466;
-        if (cs.countSubstructure("[#7]#[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]#[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 467;
-        if (cs.countSubstructure("[#6]=,:[#7]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#7]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 468;
-        if (cs.countSubstructure("[#8]=,:[#16]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#16]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 469;
-        if (cs.countSubstructure("[#16]-,:[#16]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#16]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 470;
-        if (cs.countSubstructure("[#6]:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 471;
-        if (cs.countSubstructure("[#16]:[#6]:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]:[#6]:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 472;
-        if (cs.countSubstructure("[#6]:[#7]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]:[#7]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 473;
-        if (cs.countSubstructure("[#16]-,:[#6]:[#7]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#6]:[#7]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 474;
-        if (cs.countSubstructure("[#16]:[#6]:[#6]:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]:[#6]:[#6]:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 475;
-        if (cs.countSubstructure("[#16]-,:[#6]=,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#6]=,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 476;
-        if (cs.countSubstructure("[#6]-,:[#8]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#8]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 477;
-        if (cs.countSubstructure("[#7]-,:[#7]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#7]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 478;
-        if (cs.countSubstructure("[#16]-,:[#6]=,:[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#6]=,:[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 479;
-        if (cs.countSubstructure("[#16]-,:[#6]-,:[#16]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#6]-,:[#16]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 480;
-        if (cs.countSubstructure("[#6]:[#16]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]:[#16]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 481;
-        if (cs.countSubstructure("[#8]-,:[#16]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#16]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 482;
-        if (cs.countSubstructure("[#6]:[#7]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]:[#7]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 483;
-        if (cs.countSubstructure("[#7]-,:[#16]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#16]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 484;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#7]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#7]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 485;
-        if (cs.countSubstructure("[#7]:[#6]:[#6]:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]:[#6]:[#6]:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 486;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#7]:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#7]:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 487;
-        if (cs.countSubstructure("[#7]-,:[#6]=,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]=,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 488;
-        if (cs.countSubstructure("[#7]-,:[#6]=,:[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]=,:[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 489;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#16]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#16]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 490;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 491;
-        if (cs.countSubstructure("[#6]-,:[#7]:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#7]:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 492;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#8]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#8]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 493;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 494;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 495;
-        if (cs.countSubstructure("[#6]-,:[#7]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#7]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 496;
-        if (cs.countSubstructure("[#7]:[#7]-,:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]:[#7]-,:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 497;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 498;
-        if (cs.countSubstructure("[#8]-,:[#6]=,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]=,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 499;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#6]:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#6]:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 500;
-        if (cs.countSubstructure("[#6]-,:[#16]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#16]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 501;
-        if (cs.countSubstructure("[Cl]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 502;
-        if (cs.countSubstructure("[#7]-,:[#6]=,:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]=,:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 503;
-        if (cs.countSubstructure("[Cl]-,:[#6]:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 504;
-        if (cs.countSubstructure("[#7]:[#6]:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]:[#6]:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 505;
-        if (cs.countSubstructure("[Cl]-,:[#6]:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 506;
-        if (cs.countSubstructure("[#6]-,:[#6]:[#7]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]:[#7]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 507;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#16]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#16]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 508;
-        if (cs.countSubstructure("[#16]=,:[#6]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]=,:[#6]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 509;
-        if (cs.countSubstructure("[Br]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Br]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 510;
-        if (cs.countSubstructure("[#7&!H0]-,:[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7&!H0]-,:[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 511;
-        if (cs.countSubstructure("[#16]=,:[#6]-,:[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]=,:[#6]-,:[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 512;
-        if (cs.countSubstructure("[#6]-,:[#33]-[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#33]-[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 513;
-        if (cs.countSubstructure("[#16]:[#6]:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]:[#6]:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 514;
-        if (cs.countSubstructure("[#8]-,:[#7]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#7]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 515;
-        if (cs.countSubstructure("[#7]-,:[#7]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#7]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 516;
-        if (cs.countSubstructure("[#6H,#6H2,#6H3]=,:[#6H,#6H2,#6H3]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6H,#6H2,#6H3]=,:[#6H,#6H2,#6H3]")) fp[b >> 3] |= MASK[b % 8];
         b = 517;
-        if (cs.countSubstructure("[#7]-,:[#7]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#7]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 518;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#7]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#7]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 519;
-        if (cs.countSubstructure("[#7]=,:[#6]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]=,:[#6]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 520;
-        if (cs.countSubstructure("[#6]=,:[#6]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#6]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 521;
-        if (cs.countSubstructure("[#6]:[#7]-,:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]:[#7]-,:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 522;
-        if (cs.countSubstructure("[#6]-,:[#7]-,:[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#7]-,:[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 523;
-        if (cs.countSubstructure("[#7]:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 524;
-        if (cs.countSubstructure("[#6]-,:[#6]=,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]=,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 525;
-        if (cs.countSubstructure("[#33]-,:[#6]:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#33]-,:[#6]:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 526;
-        if (cs.countSubstructure("[Cl]-,:[#6]:[#6]-,:[Cl]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]:[#6]-,:[Cl]")) fp[b >> 3] |= MASK[b % 8];
         b = 527;
-        if (cs.countSubstructure("[#6]:[#6]:[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]:[#6]:[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 528;
-        if (cs.countSubstructure("[#7&!H0]-,:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7&!H0]-,:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 529;
-        if (cs.countSubstructure("[Cl]-,:[#6]-,:[#6]-,:[Cl]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]-,:[#6]-,:[Cl]")) fp[b >> 3] |= MASK[b % 8];
         b = 530;
-        if (cs.countSubstructure("[#7]:[#6]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]:[#6]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 531;
-        if (cs.countSubstructure("[#16]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 532;
-        if (cs.countSubstructure("[#16]-,:[#6]:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#6]:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 533;
-        if (cs.countSubstructure("[#16]-,:[#6]:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#6]:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 534;
-        if (cs.countSubstructure("[#16]-,:[#6]:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#6]:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 535;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 536;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 537;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 538;
-        if (cs.countSubstructure("[#7]=,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]=,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 539;
-        if (cs.countSubstructure("[#7]=,:[#6]-,:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]=,:[#6]-,:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 540;
-        if (cs.countSubstructure("[#6]-,:[#7]-,:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#7]-,:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 541;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 542;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 543;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 544;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 545;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 546;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 547;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 548;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 549;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 550;
-        if (cs.countSubstructure("[Cl]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 551;
-        if (cs.countSubstructure("[Cl]-,:[#6]-,:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]-,:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 552;
-        if (cs.countSubstructure("[#6]:[#6]-,:[#6]:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]:[#6]-,:[#6]:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 553;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 554;
-        if (cs.countSubstructure("[Br]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Br]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 555;
-        if (cs.countSubstructure("[#7]=,:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]=,:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 556;
-        if (cs.countSubstructure("[#6]=,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 557;
-        if (cs.countSubstructure("[#7]:[#6]-,:[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]:[#6]-,:[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 558;
-        if (cs.countSubstructure("[#8]=,:[#7]-,:c:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#7]-,:c:c")) fp[b >> 3] |= MASK[b % 8];
         b = 559;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 560;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 561;
-        if (cs.countSubstructure("[Cl]-,:[#6]-,:[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]-,:[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 562;
-        if (cs.countSubstructure("[Br]-,:[#6]-,:[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Br]-,:[#6]-,:[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 563;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 564;
-        if (cs.countSubstructure("[#6]=,:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 565;
-        if (cs.countSubstructure("[#6]:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 566;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 567;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 568;
-        if (cs.countSubstructure("N#[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("N#[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 569;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 570;
-        if (cs.countSubstructure("[#6]:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 571;
-        if (cs.countSubstructure("[#6&!H0]-,:[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0]-,:[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 572;
-        if (cs.countSubstructure("n:c:n:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("n:c:n:c")) fp[b >> 3] |= MASK[b % 8];
         b = 573;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 574;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 575;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 576;
-        if (cs.countSubstructure("[#7]=,:[#6]-,:[#6]:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]=,:[#6]-,:[#6]:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 577;
-        if (cs.countSubstructure("c:c-,:[#7]-,:c:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("c:c-,:[#7]-,:c:c")) fp[b >> 3] |= MASK[b % 8];
         b = 578;
-        if (cs.countSubstructure("[#6]-,:[#6]:[#6]-,:c:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]:[#6]-,:c:c")) fp[b >> 3] |= MASK[b % 8];
         b = 579;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 580;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 581;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 582;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 583;
-        if (cs.countSubstructure("[Cl]-,:[#6]:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 584;
-        if (cs.countSubstructure("c:c-,:[#6]=,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("c:c-,:[#6]=,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 585;
-        if (cs.countSubstructure("[#6]-,:[#6]:[#6]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]:[#6]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 586;
-        if (cs.countSubstructure("[#6]-,:[#16]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#16]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 587;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#6]-,:[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#6]-,:[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 588;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 589;
-        if (cs.countSubstructure("[#6]-,:[#6]:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 590;
-        if (cs.countSubstructure("[#6]-,:[#6]:[#6]-,:[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]:[#6]-,:[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 591;
-        if (cs.countSubstructure("[Cl]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 592;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 593;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 594;
-        if (cs.countSubstructure("[#6]-,:[#8]-,:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#8]-,:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 595;
-        if (cs.countSubstructure("c:c-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("c:c-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 596;
-        if (cs.countSubstructure("[#7]=,:[#6]-,:[#7]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]=,:[#6]-,:[#7]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 597;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:c:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:c:c")) fp[b >> 3] |= MASK[b % 8];
         b = 598;
-        if (cs.countSubstructure("[Cl]-,:[#6]:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 599;
-        if (cs.countSubstructure("[#6H,#6H2,#6H3]-,:[#6]=,:[#6H,#6H2,#6H3]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6H,#6H2,#6H3]-,:[#6]=,:[#6H,#6H2,#6H3]")) fp[b >> 3] |= MASK[b % 8];
         b = 600;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 601;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#6]:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#6]:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 602;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 603;
-        if (cs.countSubstructure("[#6]-,:c:c:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:c:c:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 604;
-        if (cs.countSubstructure("[#6]-,:[#8]-,:[#6]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#8]-,:[#6]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 605;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 606;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 607;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 608;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 609;
-        if (cs.countSubstructure("[Cl]-,:[#6]-,:[#6]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]-,:[#6]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 610;
-        if (cs.countSubstructure("[#6]-,:[#8]-,:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#8]-,:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 611;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 612;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#8]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#8]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 613;
-        if (cs.countSubstructure("[#6]-,:[#7]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#7]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 614;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#8]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#8]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 615;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 616;
-        if (cs.countSubstructure("c:c:n:n:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("c:c:n:n:c")) fp[b >> 3] |= MASK[b % 8];
         b = 617;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]-,:[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]-,:[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 618;
-        if (cs.countSubstructure("c:[#6]-,:[#6]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("c:[#6]-,:[#6]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 619;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]=,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]=,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 620;
-        if (cs.countSubstructure("c:c-,:[#8]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("c:c-,:[#8]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 621;
-        if (cs.countSubstructure("[#7]-,:[#6]:c:c:n") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:c:c:n")) fp[b >> 3] |= MASK[b % 8];
         b = 622;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#8]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#8]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 623;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 624;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 625;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 626;
-        if (cs.countSubstructure("[#6]-,:[#8]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#8]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 627;
-        if (cs.countSubstructure("[#8]=,:[#33]-,:[#6]:c:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#33]-,:[#6]:c:c")) fp[b >> 3] |= MASK[b % 8];
         b = 628;
-        if (cs.countSubstructure("[#6]-,:[#7]-,:[#6]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#7]-,:[#6]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 629;
-        if (cs.countSubstructure("[#16]-,:[#6]:c:c-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]-,:[#6]:c:c-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 630;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 631;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]-,:[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]-,:[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 632;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#8]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#8]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 633;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 634;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 635;
-        if (cs.countSubstructure("[#7]-,:[#7]-,:[#6]-,:[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#7]-,:[#6]-,:[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 636;
-        if (cs.countSubstructure("[#6]-,:[#7]-,:[#6]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#7]-,:[#6]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 637;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 638;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 639;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 640;
-        if (cs.countSubstructure("[#6]=,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 641;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 642;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 643;
-        if (cs.countSubstructure("[#6&!H0]-,:[#6]-,:[#7&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6&!H0]-,:[#6]-,:[#7&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 644;
-        if (cs.countSubstructure("[#6]-,:[#6]=,:[#7]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]=,:[#7]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 645;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#7]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#7]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 646;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#7]-,:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#7]-,:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 647;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#7]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#7]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 648;
-        if (cs.countSubstructure("[#8]=,:[#7]-,:[#6]:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#7]-,:[#6]:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 649;
-        if (cs.countSubstructure("[#8]=,:[#7]-,:c:c-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#7]-,:c:c-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 650;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#7]-,:[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#7]-,:[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 651;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 652;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 653;
-        if (cs.countSubstructure("[#8]-,:[#6]:[#6]:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]:[#6]:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 654;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#7]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#7]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 655;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 656;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#7]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#7]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 657;
-        if (cs.countSubstructure("[#6]-,:[#7]-,:[#6]:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#7]-,:[#6]:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 658;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#16]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#16]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 659;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#7]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#7]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 660;
-        if (cs.countSubstructure("[#6]-,:[#6]=,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]=,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 661;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#8]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#8]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 662;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 663;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 664;
-        if (cs.countSubstructure("[#6]-,:[#6]=,:[#6]-,:[#6]=,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]=,:[#6]-,:[#6]=,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 665;
-        if (cs.countSubstructure("[#7]-,:[#6]:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 666;
-        if (cs.countSubstructure("[#6]=,:[#6]-,:[#6]-,:[#8]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#6]-,:[#6]-,:[#8]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 667;
-        if (cs.countSubstructure("[#6]=,:[#6]-,:[#6]-,:[#8&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]=,:[#6]-,:[#6]-,:[#8&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 668;
-        if (cs.countSubstructure("[#6]-,:[#6]:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 669;
-        if (cs.countSubstructure("[Cl]-,:[#6]:[#6]-,:[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Cl]-,:[#6]:[#6]-,:[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 670;
-        if (cs.countSubstructure("[Br]-,:[#6]:c:c-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Br]-,:[#6]:c:c-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 671;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]=,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]=,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 672;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]=,:[#6&!H0]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]=,:[#6&!H0]")) fp[b >> 3] |= MASK[b % 8];
         b = 673;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]=,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]=,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 674;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#7]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#7]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 675;
-        if (cs.countSubstructure("[Br]-,:[#6]-,:[#6]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[Br]-,:[#6]-,:[#6]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 676;
-        if (cs.countSubstructure("[#7]#[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]#[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 677;
-        if (cs.countSubstructure("[#6]-,:[#6]=,:[#6]-,:[#6]:c") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]=,:[#6]-,:[#6]:c")) fp[b >> 3] |= MASK[b % 8];
         b = 678;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]=,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]=,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 679;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 680;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 681;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 682;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 683;
-        if (cs.countSubstructure("[#7]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 684;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 685;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 686;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 687;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 688;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 689;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 690;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 691;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 692;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 693;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 694;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]=,:[#8]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]=,:[#8]")) fp[b >> 3] |= MASK[b % 8];
         b = 695;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]")) fp[b >> 3] |= MASK[b % 8];
         b = 696;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 697;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#6])-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#6])-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 698;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 699;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#6])-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#6])-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 700;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#8]-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 701;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#8])-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#8])-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 702;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#7]-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 703;
-        if (cs.countSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#7])-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#7])-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 704;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 705;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#8])-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#8])-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 706;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](=,:[#8])-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](=,:[#8])-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 707;
-        if (cs.countSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#7])-,:[#6]") > 0)
+        if (cs.hasSubstructure("[#8]=,:[#6]-,:[#6]-,:[#6]-,:[#6]-,:[#6](-,:[#7])-,:[#6]"))
             fp[b >> 3] |= MASK[b % 8];
         b = 708;
-        if (cs.countSubstructure("[#6]-,:[#6](-,:[#6])-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6](-,:[#6])-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 709;
-        if (cs.countSubstructure("[#6]-,:[#6](-,:[#6])-,:[#6]-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6](-,:[#6])-,:[#6]-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 710;
-        if (cs.countSubstructure("[#6]-,:[#6]-,:[#6](-,:[#6])-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6]-,:[#6](-,:[#6])-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 711;
-        if (cs.countSubstructure("[#6]-,:[#6](-,:[#6])(-,:[#6])-,:[#6]-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6](-,:[#6])(-,:[#6])-,:[#6]-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
         b = 712;
-        if (cs.countSubstructure("[#6]-,:[#6](-,:[#6])-,:[#6](-,:[#6])-,:[#6]") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]-,:[#6](-,:[#6])-,:[#6](-,:[#6])-,:[#6]")) fp[b >> 3] |= MASK[b % 8];
 
         /*
         Section 7: Complex SMARTS patterns - These bits test for the presence
@@ -2038,341 +2040,341 @@ public class PubchemFingerprinter implements IFingerprinter {
       */
 
         b = 713;
-        if (cs.countSubstructure("[#6]c1ccc([#6])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1ccc([#6])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 714;
-        if (cs.countSubstructure("[#6]c1ccc([#8])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1ccc([#8])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 715;
-        if (cs.countSubstructure("[#6]c1ccc([#16])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1ccc([#16])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 716;
-        if (cs.countSubstructure("[#6]c1ccc([#7])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1ccc([#7])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 717;
-        if (cs.countSubstructure("[#6]c1ccc(Cl)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1ccc(Cl)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 718;
-        if (cs.countSubstructure("[#6]c1ccc(Br)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1ccc(Br)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 719;
-        if (cs.countSubstructure("[#8]c1ccc([#8])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1ccc([#8])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 720;
-        if (cs.countSubstructure("[#8]c1ccc([#16])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1ccc([#16])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 721;
-        if (cs.countSubstructure("[#8]c1ccc([#7])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1ccc([#7])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 722;
-        if (cs.countSubstructure("[#8]c1ccc(Cl)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1ccc(Cl)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 723;
-        if (cs.countSubstructure("[#8]c1ccc(Br)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1ccc(Br)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 724;
-        if (cs.countSubstructure("[#16]c1ccc([#16])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1ccc([#16])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 725;
-        if (cs.countSubstructure("[#16]c1ccc([#7])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1ccc([#7])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 726;
-        if (cs.countSubstructure("[#16]c1ccc(Cl)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1ccc(Cl)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 727;
-        if (cs.countSubstructure("[#16]c1ccc(Br)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1ccc(Br)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 728;
-        if (cs.countSubstructure("[#7]c1ccc([#7])cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]c1ccc([#7])cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 729;
-        if (cs.countSubstructure("[#7]c1ccc(Cl)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]c1ccc(Cl)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 730;
-        if (cs.countSubstructure("[#7]c1ccc(Br)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]c1ccc(Br)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 731;
-        if (cs.countSubstructure("Clc1ccc(Cl)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Clc1ccc(Cl)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 732;
-        if (cs.countSubstructure("Clc1ccc(Br)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Clc1ccc(Br)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 733;
-        if (cs.countSubstructure("Brc1ccc(Br)cc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Brc1ccc(Br)cc1")) fp[b >> 3] |= MASK[b % 8];
         b = 734;
-        if (cs.countSubstructure("[#6]c1cc([#6])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1cc([#6])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 735;
-        if (cs.countSubstructure("[#6]c1cc([#8])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1cc([#8])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 736;
-        if (cs.countSubstructure("[#6]c1cc([#16])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1cc([#16])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 737;
-        if (cs.countSubstructure("[#6]c1cc([#7])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1cc([#7])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 738;
-        if (cs.countSubstructure("[#6]c1cc(Cl)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1cc(Cl)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 739;
-        if (cs.countSubstructure("[#6]c1cc(Br)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1cc(Br)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 740;
-        if (cs.countSubstructure("[#8]c1cc([#8])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1cc([#8])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 741;
-        if (cs.countSubstructure("[#8]c1cc([#16])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1cc([#16])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 742;
-        if (cs.countSubstructure("[#8]c1cc([#7])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1cc([#7])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 743;
-        if (cs.countSubstructure("[#8]c1cc(Cl)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1cc(Cl)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 744;
-        if (cs.countSubstructure("[#8]c1cc(Br)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1cc(Br)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 745;
-        if (cs.countSubstructure("[#16]c1cc([#16])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1cc([#16])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 746;
-        if (cs.countSubstructure("[#16]c1cc([#7])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1cc([#7])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 747;
-        if (cs.countSubstructure("[#16]c1cc(Cl)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1cc(Cl)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 748;
-        if (cs.countSubstructure("[#16]c1cc(Br)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1cc(Br)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 749;
-        if (cs.countSubstructure("[#7]c1cc([#7])ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]c1cc([#7])ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 750;
-        if (cs.countSubstructure("[#7]c1cc(Cl)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]c1cc(Cl)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 751;
-        if (cs.countSubstructure("[#7]c1cc(Br)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]c1cc(Br)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 752;
-        if (cs.countSubstructure("Clc1cc(Cl)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Clc1cc(Cl)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 753;
-        if (cs.countSubstructure("Clc1cc(Br)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Clc1cc(Br)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 754;
-        if (cs.countSubstructure("Brc1cc(Br)ccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Brc1cc(Br)ccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 755;
-        if (cs.countSubstructure("[#6]c1c([#6])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1c([#6])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 756;
-        if (cs.countSubstructure("[#6]c1c([#8])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1c([#8])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 757;
-        if (cs.countSubstructure("[#6]c1c([#16])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1c([#16])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 758;
-        if (cs.countSubstructure("[#6]c1c([#7])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1c([#7])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 759;
-        if (cs.countSubstructure("[#6]c1c(Cl)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1c(Cl)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 760;
-        if (cs.countSubstructure("[#6]c1c(Br)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6]c1c(Br)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 761;
-        if (cs.countSubstructure("[#8]c1c([#8])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1c([#8])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 762;
-        if (cs.countSubstructure("[#8]c1c([#16])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1c([#16])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 763;
-        if (cs.countSubstructure("[#8]c1c([#7])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1c([#7])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 764;
-        if (cs.countSubstructure("[#8]c1c(Cl)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1c(Cl)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 765;
-        if (cs.countSubstructure("[#8]c1c(Br)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8]c1c(Br)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 766;
-        if (cs.countSubstructure("[#16]c1c([#16])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1c([#16])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 767;
-        if (cs.countSubstructure("[#16]c1c([#7])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1c([#7])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 768;
-        if (cs.countSubstructure("[#16]c1c(Cl)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1c(Cl)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 769;
-        if (cs.countSubstructure("[#16]c1c(Br)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16]c1c(Br)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 770;
-        if (cs.countSubstructure("[#7]c1c([#7])cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]c1c([#7])cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 771;
-        if (cs.countSubstructure("[#7]c1c(Cl)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]c1c(Cl)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 772;
-        if (cs.countSubstructure("[#7]c1c(Br)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7]c1c(Br)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 773;
-        if (cs.countSubstructure("Clc1c(Cl)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Clc1c(Cl)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 774;
-        if (cs.countSubstructure("Clc1c(Br)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Clc1c(Br)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 775;
-        if (cs.countSubstructure("Brc1c(Br)cccc1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Brc1c(Br)cccc1")) fp[b >> 3] |= MASK[b % 8];
         b = 776;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6][#6]([#6])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6][#6]([#6])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 777;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6][#6]([#8])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6][#6]([#8])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 778;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6][#6]([#16])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6][#6]([#16])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 779;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6][#6]([#7])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6][#6]([#7])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 780;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 781;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 782;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6][#6]([#8])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6][#6]([#8])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 783;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6][#6]([#16])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6][#6]([#16])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 784;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6][#6]([#7])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6][#6]([#7])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 785;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 786;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 787;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6][#6]([#16])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6][#6]([#16])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 788;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6][#6]([#7])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6][#6]([#7])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 789;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 790;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 791;
-        if (cs.countSubstructure("[#7][#6]1[#6][#6][#6]([#7])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6][#6][#6]([#7])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 792;
-        if (cs.countSubstructure("[#7][#6]1[#6][#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6][#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 793;
-        if (cs.countSubstructure("[#7][#6]1[#6][#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6][#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 794;
-        if (cs.countSubstructure("Cl[#6]1[#6][#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6][#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 795;
-        if (cs.countSubstructure("Cl[#6]1[#6][#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6][#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 796;
-        if (cs.countSubstructure("Br[#6]1[#6][#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Br[#6]1[#6][#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 797;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6]([#6])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6]([#6])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 798;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6]([#8])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6]([#8])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 799;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6]([#16])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6]([#16])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 800;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6]([#7])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6]([#7])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 801;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6](Cl)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6](Cl)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 802;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 803;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6]([#8])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6]([#8])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 804;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6]([#16])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6]([#16])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 805;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6]([#7])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6]([#7])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 806;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6](Cl)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6](Cl)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 807;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 808;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6]([#16])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6]([#16])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 809;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6]([#7])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6]([#7])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 810;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6](Cl)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6](Cl)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 811;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 812;
-        if (cs.countSubstructure("[#7][#6]1[#6][#6]([#7])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6][#6]([#7])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 813;
-        if (cs.countSubstructure("[#7][#6]1[#6][#6](Cl)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6][#6](Cl)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 814;
-        if (cs.countSubstructure("[#7][#6]1[#6][#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6][#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 815;
-        if (cs.countSubstructure("Cl[#6]1[#6][#6](Cl)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6][#6](Cl)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 816;
-        if (cs.countSubstructure("Cl[#6]1[#6][#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6][#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 817;
-        if (cs.countSubstructure("Br[#6]1[#6][#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Br[#6]1[#6][#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 818;
-        if (cs.countSubstructure("[#6][#6]1[#6]([#6])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6]([#6])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 819;
-        if (cs.countSubstructure("[#6][#6]1[#6]([#8])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6]([#8])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 820;
-        if (cs.countSubstructure("[#6][#6]1[#6]([#16])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6]([#16])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 821;
-        if (cs.countSubstructure("[#6][#6]1[#6]([#7])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6]([#7])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 822;
-        if (cs.countSubstructure("[#6][#6]1[#6](Cl)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6](Cl)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 823;
-        if (cs.countSubstructure("[#6][#6]1[#6](Br)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6](Br)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 824;
-        if (cs.countSubstructure("[#8][#6]1[#6]([#8])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6]([#8])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 825;
-        if (cs.countSubstructure("[#8][#6]1[#6]([#16])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6]([#16])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 826;
-        if (cs.countSubstructure("[#8][#6]1[#6]([#7])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6]([#7])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 827;
-        if (cs.countSubstructure("[#8][#6]1[#6](Cl)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6](Cl)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 828;
-        if (cs.countSubstructure("[#8][#6]1[#6](Br)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6](Br)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 829;
-        if (cs.countSubstructure("[#16][#6]1[#6]([#16])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6]([#16])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 830;
-        if (cs.countSubstructure("[#16][#6]1[#6]([#7])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6]([#7])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 831;
-        if (cs.countSubstructure("[#16][#6]1[#6](Cl)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6](Cl)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 832;
-        if (cs.countSubstructure("[#16][#6]1[#6](Br)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6](Br)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 833;
-        if (cs.countSubstructure("[#7][#6]1[#6]([#7])[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6]([#7])[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 834;
-        if (cs.countSubstructure("[#7][#6]1[#6](Cl)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6](Cl)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 835;
-        if (cs.countSubstructure("[#7][#6]1[#6](Br)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6](Br)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 836;
-        if (cs.countSubstructure("Cl[#6]1[#6](Cl)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6](Cl)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 837;
-        if (cs.countSubstructure("Cl[#6]1[#6](Br)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6](Br)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 838;
-        if (cs.countSubstructure("Br[#6]1[#6](Br)[#6][#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Br[#6]1[#6](Br)[#6][#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 839;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6]([#6])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6]([#6])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 840;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6]([#8])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6]([#8])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 841;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6]([#16])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6]([#16])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 842;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6]([#7])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6]([#7])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 843;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 844;
-        if (cs.countSubstructure("[#6][#6]1[#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 845;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6]([#8])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6]([#8])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 846;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6]([#16])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6]([#16])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 847;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6]([#7])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6]([#7])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 848;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 849;
-        if (cs.countSubstructure("[#8][#6]1[#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 850;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6]([#16])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6]([#16])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 851;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6]([#7])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6]([#7])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 852;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 853;
-        if (cs.countSubstructure("[#16][#6]1[#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 854;
-        if (cs.countSubstructure("[#7][#6]1[#6][#6]([#7])[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6][#6]([#7])[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 855;
-        if (cs.countSubstructure("[#7][#6]1[#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 856;
-        if (cs.countSubstructure("[#7][#6]1[#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 857;
-        if (cs.countSubstructure("Cl[#6]1[#6][#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6][#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 858;
-        if (cs.countSubstructure("Cl[#6]1[#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 859;
-        if (cs.countSubstructure("Br[#6]1[#6][#6](Br)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Br[#6]1[#6][#6](Br)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 860;
-        if (cs.countSubstructure("[#6][#6]1[#6]([#6])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6]([#6])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 861;
-        if (cs.countSubstructure("[#6][#6]1[#6]([#8])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6]([#8])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 862;
-        if (cs.countSubstructure("[#6][#6]1[#6]([#16])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6]([#16])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 863;
-        if (cs.countSubstructure("[#6][#6]1[#6]([#7])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6]([#7])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 864;
-        if (cs.countSubstructure("[#6][#6]1[#6](Cl)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6](Cl)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 865;
-        if (cs.countSubstructure("[#6][#6]1[#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#6][#6]1[#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 866;
-        if (cs.countSubstructure("[#8][#6]1[#6]([#8])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6]([#8])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 867;
-        if (cs.countSubstructure("[#8][#6]1[#6]([#16])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6]([#16])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 868;
-        if (cs.countSubstructure("[#8][#6]1[#6]([#7])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6]([#7])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 869;
-        if (cs.countSubstructure("[#8][#6]1[#6](Cl)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6](Cl)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 870;
-        if (cs.countSubstructure("[#8][#6]1[#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#8][#6]1[#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 871;
-        if (cs.countSubstructure("[#16][#6]1[#6]([#16])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6]([#16])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 872;
-        if (cs.countSubstructure("[#16][#6]1[#6]([#7])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6]([#7])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 873;
-        if (cs.countSubstructure("[#16][#6]1[#6](Cl)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6](Cl)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 874;
-        if (cs.countSubstructure("[#16][#6]1[#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#16][#6]1[#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 875;
-        if (cs.countSubstructure("[#7][#6]1[#6]([#7])[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6]([#7])[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 876;
-        if (cs.countSubstructure("[#7][#6]1[#6](Cl)[#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6](Cl)[#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 877;
-        if (cs.countSubstructure("[#7][#6]1[#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("[#7][#6]1[#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 878;
-        if (cs.countSubstructure("Cl[#6]1[#6](Cl)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6](Cl)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 879;
-        if (cs.countSubstructure("Cl[#6]1[#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Cl[#6]1[#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
         b = 880;
-        if (cs.countSubstructure("Br[#6]1[#6](Br)[#6][#6][#6]1") > 0) fp[b >> 3] |= MASK[b % 8];
+        if (cs.hasSubstructure("Br[#6]1[#6](Br)[#6][#6][#6]1")) fp[b >> 3] |= MASK[b % 8];
     }
 
 }
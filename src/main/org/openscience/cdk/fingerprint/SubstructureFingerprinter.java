@@ -31,10 +31,11 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+import org.openscience.cdk.smiles.smarts.SMARTSPatternSet;
 
 import java.util.BitSet;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * {@link IFingerprinter} that gives a bit set which has a size equal to the number
@@ -374,6 +375,8 @@ import java.util.Map;
 public class SubstructureFingerprinter implements IFingerprinter {
 
     private String[] smarts;
+    private SMARTSPatternSet patterns = null;
+    private ExecutorService executor = null;
 
     /**
      * Set up the fingerprinter to use the fragments from 
@@ -408,18 +411,24 @@ public class SubstructureFingerprinter implements IFingerprinter {
             throw new CDKException("No substructures were defined");
         }
 
-        int bitsetLength = smarts.length;
-        BitSet fingerPrint = new BitSet(bitsetLength);
-
-        SMARTSQueryTool sqt = new SMARTSQueryTool("C");
-        for (int i = 0; i < smarts.length; i++) {
-            String pattern = smarts[i];
-
-            sqt.setSmarts(pattern);
-            boolean status = sqt.matches(atomContainer);
-            if (status) fingerPrint.set(i, true);
+        // the patterns are parsed once, on first use
+        if (patterns == null) {
+            patterns = new SMARTSPatternSet(smarts);
+            patterns.setExecutor(executor);
         }
-        return fingerPrint;
+        return patterns.matches(atomContainer);
+    }
+
+    /**
+     * Sets the executor used to match the substructures in parallel.
+     *
+     * @param executor the executor, or null to match them in the calling thread
+     * @see SMARTSPatternSet#setExecutor(ExecutorService)
+     */
+    @TestMethod("testSetExecutor")
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        if (patterns != null) patterns.setExecutor(executor);
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,228 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fragment;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Counts in how many molecules each fragment occurs, fragmenting the
+ * molecules on a pool of worker threads with a
+ * {@link HashedExhaustiveFragmenter} per thread. The fragments are counted
+ * by their SMILES in one map, shared by all threads:
+ * <pre>
+ * FragmentFrequencyCounter counter = new FragmentFrequencyCounter(4);
+ * counter.count(new IteratingSDFReader(in, builder));
+ * Map&lt;String,Integer&gt; frequencies = counter.getFrequencies();
+ * counter.shutdown();
+ * </pre>
+ *
+ * <p>A fragment that occurs more than once in a molecule is counted once
+ * for that molecule. Molecules that cannot be fragmented are logged and
+ * skipped.
+ *
+ * @cdk.module  fragment
+ * @cdk.githash
+ * @cdk.keyword fragment
+ * @see HashedExhaustiveFragmenter
+ */
+@TestClass("org.openscience.cdk.fragment.FragmentFrequencyCounterTest")
+public class FragmentFrequencyCounter {
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(FragmentFrequencyCounter.class);
+
+    private final ConcurrentMap<String, AtomicInteger> frequencies =
+        new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicLong moleculeCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final ExecutorService executor;
+    private final int queueSize;
+    private final ThreadLocal<HashedExhaustiveFragmenter> fragmenters;
+
+    /**
+     * Creates a counter for fragments of at least six atoms, that uses the
+     * given number of worker threads and reads at most four molecules per
+     * thread ahead.
+     *
+     * @param threads the number of worker threads
+     */
+    public FragmentFrequencyCounter(int threads) {
+        this(threads, 6, 4 * threads);
+    }
+
+    /**
+     * Creates a counter that uses the given number of worker threads.
+     *
+     * @param threads     the number of worker threads
+     * @param minFragSize the smallest size of the fragments that are counted
+     * @param queueSize   the maximum number of molecules read ahead of the
+     *                    ones that have been fragmented
+     */
+    public FragmentFrequencyCounter(int threads, final int minFragSize, int queueSize) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed");
+        if (queueSize < 1)
+            throw new IllegalArgumentException("The queue size must be positive");
+        this.queueSize = queueSize;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "FragmentFrequencyCounter-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.fragmenters = new ThreadLocal<HashedExhaustiveFragmenter>() {
+            protected HashedExhaustiveFragmenter initialValue() {
+                return new HashedExhaustiveFragmenter(minFragSize);
+            }
+        };
+    }
+
+    /**
+     * Fragments all molecules of the given iterator, and adds their
+     * fragments to the counts. The molecules are read on the calling
+     * thread, and the method returns when all of them have been counted.
+     *
+     * @param  molecules the molecules, for example an iterating reader
+     * @throws InterruptedException if the calling thread is interrupted
+     *                              while it waits for the worker threads
+     */
+    @TestMethod("testCount")
+    public void count(Iterator<? extends IAtomContainer> molecules) throws InterruptedException {
+        if (executor.isShutdown())
+            throw new IllegalStateException("The counter has been shut down");
+        final Semaphore slots = new Semaphore(queueSize);
+        while (molecules.hasNext()) {
+            final IAtomContainer molecule = molecules.next();
+            slots.acquire();
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        add(molecule);
+                    } finally {
+                        slots.release();
+                    }
+                }
+            });
+        }
+        slots.acquire(queueSize);
+        slots.release(queueSize);
+    }
+
+    private void add(IAtomContainer molecule) {
+        long index = moleculeCount.getAndIncrement();
+        String[] fragments;
+        try {
+            HashedExhaustiveFragmenter fragmenter = fragmenters.get();
+            fragmenter.generateFragments(molecule);
+            fragments = fragmenter.getFragments();
+        } catch (Exception exception) {
+            logger.warn("Could not fragment molecule ", index, ": ", exception.getMessage());
+            logger.debug(exception);
+            failureCount.getAndIncrement();
+            return;
+        }
+        for (String fragment : fragments) {
+            AtomicInteger frequency = frequencies.get(fragment);
+            if (frequency == null) {
+                AtomicInteger created = new AtomicInteger();
+                frequency = frequencies.putIfAbsent(fragment, created);
+                if (frequency == null) frequency = created;
+            }
+            frequency.getAndIncrement();
+        }
+    }
+
+    /**
+     * Returns the number of molecules that contain the fragment.
+     *
+     * @param  smiles the SMILES of the fragment, as made by the fragmenter
+     * @return        the number of molecules, or zero if the fragment has
+     *                not been seen
+     */
+    @TestMethod("testCount")
+    public int getFrequency(String smiles) {
+        AtomicInteger frequency = frequencies.get(smiles);
+        return frequency == null ? 0 : frequency.get();
+    }
+
+    /**
+     * Returns the fragments seen so far, by SMILES, with the number of
+     * molecules that contain them.
+     *
+     * @return a sorted copy of the counts
+     */
+    @TestMethod("testCount")
+    public Map<String, Integer> getFrequencies() {
+        Map<String, Integer> copy = new TreeMap<String, Integer>();
+        for (Map.Entry<String, AtomicInteger> entry : frequencies.entrySet())
+            copy.put(entry.getKey(), entry.getValue().get());
+        return copy;
+    }
+
+    /**
+     * Returns the number of molecules counted so far, including those that
+     * could not be fragmented.
+     *
+     * @return the number of molecules
+     */
+    @TestMethod("testCount")
+    public long getMoleculeCount() {
+        return moleculeCount.get();
+    }
+
+    /**
+     * Returns the number of molecules that could not be fragmented.
+     *
+     * @return the number of failed molecules
+     */
+    @TestMethod("testCount")
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    @TestMethod("testShutdown")
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,548 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fragment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.SpanningTree;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Generates the same fragments as the {@link ExhaustiveFragmenter}, but
+ * without making a container and a SMILES for every split.
+ * <p/>
+ * Only bonds that are not in a ring are broken, so every fragment holds all
+ * bonds of the parent between its atoms, and keeps all rings of its atoms.
+ * A fragment is therefore fully described by the set of parent atoms it
+ * holds, which is kept as a bit mask. Splits that give a set that was seen
+ * before are dropped at once. The other sets get a hash that does not depend
+ * on the atom order, computed by Morgan-like refinement of atom invariants
+ * (element, charge, hydrogen count, aromaticity, mass number and smallest
+ * ring size) over the bond orders. A set with a new hash becomes a fragment
+ * without further checks.
+ * <p/>
+ * The hash is not canonical: different fragments may share it. A set whose
+ * hash was seen before is therefore compared by SMILES with the fragments
+ * that have this hash, as the {@link ExhaustiveFragmenter} compares all
+ * fragments, and only dropped if one of them is the same. SMILES are created
+ * once per fragment, for these comparisons or when they are asked for.
+ * <p/>
+ * The atoms of a fragment are added in the order the
+ * {@link ExhaustiveFragmenter} adds them, so that a fragment gets the same
+ * SMILES from both. One difference remains: when the
+ * {@link ExhaustiveFragmenter} reaches the same atoms through different
+ * splits, the atom orders may differ, and it may return that fragment twice
+ * with two different SMILES. This class returns it once, with the SMILES of
+ * the first split.
+ *
+ * @cdk.module  fragment
+ * @cdk.githash
+ * @cdk.keyword fragment
+ * @see ExhaustiveFragmenter
+ */
+@TestClass("org.openscience.cdk.fragment.HashedExhaustiveFragmenterTest")
+public class HashedExhaustiveFragmenter implements IFragmenter {
+
+    private static final int DEFAULT_MIN_FRAG_SIZE = 6;
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(HashedExhaustiveFragmenter.class);
+
+    private final SmilesGenerator smilesGenerator = new SmilesGenerator(true);
+    private int minFragSize;
+
+    // the fragments of the last molecule, in the order they were found
+    private final List<IAtomContainer> fragments = new ArrayList<IAtomContainer>();
+    private final Set<AtomSet> seenSets = new HashSet<AtomSet>();
+    private final Map<Long, List<IAtomContainer>> seenHashes = new HashMap<Long, List<IAtomContainer>>();
+    private final Map<IAtomContainer, String> fragmentSmiles = new IdentityHashMap<IAtomContainer, String>();
+    private Map<String, IAtomContainer> fragMap = null;
+
+    // the parent molecule
+    private IAtom[] parentAtoms;
+    private IBond[] parentBonds;
+    private Map<IAtom, Integer> atomIndex;
+    private Map<IBond, Integer> bondIndex;
+    private int[] bondBegin, bondEnd;
+    private int[][] neighbours, neighbourBonds;
+    private boolean[] ringBond;
+    private long[] atomInvariants, bondInvariants;
+
+    // scratch space, indexed by parent atom
+    private int[] degree, queue;
+    private long[] colors, nextColors, sorted;
+
+    /**
+     * Instantiate fragmenter with default minimum fragment size.
+     */
+    @TestMethod("testSameAsExhaustiveFragmenter")
+    public HashedExhaustiveFragmenter() {
+        this(DEFAULT_MIN_FRAG_SIZE);
+    }
+
+    /**
+     * Instantiate fragmenter with user specified minimum fragment size.
+     *
+     * @param minFragSize the minimum fragment size desired
+     */
+    @TestMethod("testMinSize")
+    public HashedExhaustiveFragmenter(int minFragSize) {
+        this.minFragSize = minFragSize;
+    }
+
+    /**
+     * Set the minimum fragment size.
+     *
+     * @param minFragSize the smallest size fragment that will be returned
+     */
+    @TestMethod("testMinSize")
+    public void setMinimumFragmentSize(int minFragSize) {
+        this.minFragSize = minFragSize;
+    }
+
+    /**
+     * Generate fragments for the input molecule.
+     *
+     * @param atomContainer The input molecule.
+     */
+    @TestMethod("testSameAsExhaustiveFragmenter")
+    public void generateFragments(IAtomContainer atomContainer) throws CDKException {
+        fragments.clear();
+        seenSets.clear();
+        seenHashes.clear();
+        fragmentSmiles.clear();
+        fragMap = null;
+        if (atomContainer.getBondCount() < 3) return;
+
+        prepare(atomContainer);
+        long[] all = new long[(atomContainer.getAtomCount() + 63) >> 6];
+        for (int i = 0; i < atomContainer.getAtomCount(); i++) all[i >> 6] |= 1L << i;
+        run(atomContainer, all);
+        logger.debug("Found ", fragments.size(), " fragments in ",
+                     seenSets.size(), " atom sets");
+    }
+
+    /**
+     * Get the fragments generated as SMILES strings.
+     *
+     * @return a String[] of the fragments.
+     */
+    @TestMethod("testSameAsExhaustiveFragmenter")
+    public String[] getFragments() {
+        return getFragMap().keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Get the fragments generated as {@link IAtomContainer} objects.
+     *
+     * @return a IAtomContainer[] of the fragments.
+     */
+    @TestMethod("testGetFragmentsAsContainers")
+    public IAtomContainer[] getFragmentsAsContainers() {
+        return getFragMap().values().toArray(new IAtomContainer[0]);
+    }
+
+    private Map<String, IAtomContainer> getFragMap() {
+        if (fragMap == null) {
+            fragMap = new HashMap<String, IAtomContainer>();
+            for (IAtomContainer fragment : fragments) {
+                String smiles = getSmiles(fragment);
+                if (!fragMap.containsKey(smiles)) fragMap.put(smiles, fragment);
+            }
+        }
+        return fragMap;
+    }
+
+    private String getSmiles(IAtomContainer fragment) {
+        String smiles = fragmentSmiles.get(fragment);
+        if (smiles == null) {
+            smiles = smilesGenerator.createSMILES(fragment);
+            fragmentSmiles.put(fragment, smiles);
+        }
+        return smiles;
+    }
+
+    /**
+     * Checks that no earlier fragment with the same hash has the SMILES of
+     * the given fragment, and if so remembers it under its hash.
+     */
+    private boolean isNewFragment(IAtomContainer fragment, long hash) {
+        List<IAtomContainer> sameHash = seenHashes.get(hash);
+        if (sameHash == null) {
+            sameHash = new ArrayList<IAtomContainer>(1);
+            seenHashes.put(hash, sameHash);
+        } else {
+            String smiles = getSmiles(fragment);
+            for (IAtomContainer other : sameHash)
+                if (smiles.equals(getSmiles(other))) return false;
+        }
+        sameHash.add(fragment);
+        return true;
+    }
+
+    /**
+     * Splits the fragment with the given atoms at each bond that is not in a
+     * ring and not terminal, and then splits the new fragments further.
+     */
+    private void run(IAtomContainer atomContainer, long[] atoms) {
+        if (atomContainer.getBondCount() < 3) return;
+
+        for (IAtom atom : atomContainer.atoms()) {
+            int i = atomIndex.get(atom);
+            degree[i] = 0;
+            for (int neighbour : neighbours[i])
+                if (contains(atoms, neighbour)) degree[i]++;
+        }
+
+        // the bonds of each atom, in the bond order of this container
+        int[][] incident = new int[parentAtoms.length][];
+        for (IAtom atom : atomContainer.atoms()) {
+            int i = atomIndex.get(atom);
+            incident[i] = new int[degree[i]];
+            degree[i] = 0;
+        }
+        for (IBond bond : atomContainer.bonds()) {
+            int b = bondIndex.get(bond);
+            incident[bondBegin[b]][degree[bondBegin[b]]++] = b;
+            incident[bondEnd[b]][degree[bondEnd[b]]++] = b;
+        }
+
+        List<long[]> newSets = new ArrayList<long[]>();
+        List<IAtomContainer> newFragments = new ArrayList<IAtomContainer>();
+        for (IBond bond : atomContainer.bonds()) {
+            int b = bondIndex.get(bond);
+            if (ringBond[b] || degree[bondBegin[b]] == 1 || degree[bondEnd[b]] == 1) continue;
+            for (int side = 0; side < 2; side++) {
+                int atom = side == 0 ? bondBegin[b] : bondEnd[b];
+                long[] part = new long[atoms.length];
+                int size = collect(atoms, atom, b, part);
+                if (size <= 2 || size == atomContainer.getAtomCount() || size < minFragSize)
+                    continue;
+                if (!seenSets.add(new AtomSet(part))) continue;
+
+                IAtomContainer fragment = makeAtomContainer(atomContainer, incident, atom, b);
+                if (!isNewFragment(fragment, hash(part, size))) continue;
+                fragments.add(fragment);
+                newSets.add(part);
+                newFragments.add(fragment);
+            }
+        }
+
+        for (int i = 0; i < newFragments.size(); i++) {
+            IAtomContainer fragment = newFragments.get(i);
+            if (fragment.getAtomCount() < minFragSize) continue;
+            run(fragment, newSets.get(i));
+        }
+    }
+
+    /**
+     * Makes a container with the atoms that can be reached from the start
+     * atom without crossing the excluded bond, and all bonds between them.
+     * The atoms and bonds are added in the order in which
+     * {@link FragmentUtils#splitMolecule(IAtomContainer, IBond)} adds them:
+     * the SMILES generator breaks ties by the atom order, and this order
+     * gives the fragments the SMILES the {@link ExhaustiveFragmenter} gives them.
+     */
+    private IAtomContainer makeAtomContainer(IAtomContainer atomContainer, int[][] incident,
+                                             int start, int excludedBond) {
+        List<Integer> bonds = new ArrayList<Integer>();
+        boolean[] traversed = new boolean[parentBonds.length];
+        traversed[excludedBond] = true;
+        traverse(incident, start, bonds, traversed);
+
+        IAtomContainer fragment = atomContainer.getBuilder().newInstance(IAtomContainer.class);
+        boolean[] added = new boolean[parentAtoms.length];
+        fragment.addAtom(parentAtoms[start]);
+        added[start] = true;
+        for (int b : bonds) {
+            if (!added[bondBegin[b]]) {
+                fragment.addAtom(parentAtoms[bondBegin[b]]);
+                added[bondBegin[b]] = true;
+            }
+            if (!added[bondEnd[b]]) {
+                fragment.addAtom(parentAtoms[bondEnd[b]]);
+                added[bondEnd[b]] = true;
+            }
+            fragment.addBond(parentBonds[b]);
+        }
+        return fragment;
+    }
+
+    /**
+     * Lists the bonds that can be reached from the atom in depth first
+     * order, as {@link FragmentUtils#traverse(IAtomContainer, IAtom, List)}
+     * does.
+     */
+    private void traverse(int[][] incident, int atom, List<Integer> bonds, boolean[] traversed) {
+        for (int b : incident[atom]) {
+            if (traversed[b]) continue;
+            traversed[b] = true;
+            bonds.add(b);
+            int next = bondBegin[b] == atom ? bondEnd[b] : bondBegin[b];
+            if (incident[next].length == 1) continue;
+            traverse(incident, next, bonds, traversed);
+        }
+    }
+
+    /**
+     * Collects the atoms of the given set that can be reached from the start
+     * atom without crossing the excluded bond.
+     *
+     * @return the number of atoms collected
+     */
+    private int collect(long[] atoms, int start, int excludedBond, long[] part) {
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        part[start >> 6] |= 1L << start;
+        while (head < tail) {
+            int atom = queue[head++];
+            for (int j = 0; j < neighbours[atom].length; j++) {
+                int neighbour = neighbours[atom][j];
+                if (neighbourBonds[atom][j] == excludedBond || !contains(atoms, neighbour)
+                    || contains(part, neighbour)) continue;
+                part[neighbour >> 6] |= 1L << neighbour;
+                queue[tail++] = neighbour;
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Returns a hash of the fragment with the given atoms that does not
+     * depend on the order of the atoms. The atom invariants are refined with
+     * those of the neighbours until the number of different values no longer
+     * grows. Not private, so that the tests can make hashes collide.
+     */
+    @TestMethod("testHashCollisions,testHash_arraylong_int")
+    long hash(long[] atoms, int size) {
+        int count = 0;
+        for (int i = 0; i < atomInvariants.length; i++) {
+            if (!contains(atoms, i)) continue;
+            queue[count++] = i;
+            colors[i] = atomInvariants[i];
+        }
+
+        int classes = countClasses(count);
+        for (int round = 0; round < size; round++) {
+            for (int k = 0; k < count; k++) {
+                int atom = queue[k];
+                long sum = 0;
+                for (int j = 0; j < neighbours[atom].length; j++) {
+                    int neighbour = neighbours[atom][j];
+                    if (!contains(atoms, neighbour)) continue;
+                    sum += mix(colors[neighbour] * 31 + bondInvariants[neighbourBonds[atom][j]]);
+                }
+                nextColors[atom] = mix(colors[atom] ^ mix(sum));
+            }
+            long[] swap = colors;
+            colors = nextColors;
+            nextColors = swap;
+            int next = countClasses(count);
+            if (next <= classes) break;
+            classes = next;
+        }
+
+        long hash = mix(size);
+        for (int k = 0; k < count; k++) hash += mix(colors[queue[k]]);
+        return hash;
+    }
+
+    private int countClasses(int count) {
+        for (int k = 0; k < count; k++) sorted[k] = colors[queue[k]];
+        Arrays.sort(sorted, 0, count);
+        int classes = count == 0 ? 0 : 1;
+        for (int k = 1; k < count; k++)
+            if (sorted[k] != sorted[k - 1]) classes++;
+        return classes;
+    }
+
+    /**
+     * Indexes the atoms and bonds of the parent molecule, finds the ring
+     * bonds and the smallest ring of each atom, and computes the invariants
+     * that are used by the hash.
+     */
+    private void prepare(IAtomContainer atomContainer) {
+        int atomCount = atomContainer.getAtomCount();
+        int bondCount = atomContainer.getBondCount();
+        atomIndex = new IdentityHashMap<IAtom, Integer>();
+        bondIndex = new IdentityHashMap<IBond, Integer>();
+        parentAtoms = new IAtom[atomCount];
+        parentBonds = new IBond[bondCount];
+        for (int i = 0; i < atomCount; i++) {
+            parentAtoms[i] = atomContainer.getAtom(i);
+            atomIndex.put(parentAtoms[i], i);
+        }
+
+        IAtomContainer cyclic = new SpanningTree(atomContainer).getCyclicFragmentsContainer();
+        Map<IBond, Boolean> cyclicBonds = new IdentityHashMap<IBond, Boolean>();
+        for (IBond bond : cyclic.bonds()) cyclicBonds.put(bond, Boolean.TRUE);
+
+        bondBegin = new int[bondCount];
+        bondEnd = new int[bondCount];
+        ringBond = new boolean[bondCount];
+        bondInvariants = new long[bondCount];
+        int[] counts = new int[atomCount];
+        for (int b = 0; b < bondCount; b++) {
+            IBond bond = atomContainer.getBond(b);
+            parentBonds[b] = bond;
+            bondIndex.put(bond, b);
+            bondBegin[b] = atomIndex.get(bond.getAtom(0));
+            bondEnd[b] = atomIndex.get(bond.getAtom(1));
+            counts[bondBegin[b]]++;
+            counts[bondEnd[b]]++;
+            ringBond[b] = cyclicBonds.containsKey(bond);
+            bondInvariants[b] = mix((bond.getOrder() == null ? 0 : bond.getOrder().ordinal() + 1)
+                                    + (bond.getFlag(CDKConstants.ISAROMATIC) ? 16 : 0));
+        }
+        neighbours = new int[atomCount][];
+        neighbourBonds = new int[atomCount][];
+        for (int i = 0; i < atomCount; i++) {
+            neighbours[i] = new int[counts[i]];
+            neighbourBonds[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int b = 0; b < bondCount; b++) {
+            int begin = bondBegin[b], end = bondEnd[b];
+            neighbours[begin][counts[begin]] = end;
+            neighbourBonds[begin][counts[begin]++] = b;
+            neighbours[end][counts[end]] = begin;
+            neighbourBonds[end][counts[end]++] = b;
+        }
+
+        degree = new int[atomCount];
+        queue = new int[atomCount];
+        colors = new long[atomCount];
+        nextColors = new long[atomCount];
+        sorted = new long[atomCount];
+        atomInvariants = new long[atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            IAtom atom = atomContainer.getAtom(i);
+            long invariant = atom.getSymbol() == null ? 0 : atom.getSymbol().hashCode();
+            invariant = invariant * 31 + valueOf(atom.getFormalCharge());
+            invariant = invariant * 31 + valueOf(atom.getImplicitHydrogenCount());
+            invariant = invariant * 31 + valueOf(atom.getMassNumber());
+            invariant = invariant * 31 + (atom.getFlag(CDKConstants.ISAROMATIC) ? 1 : 0);
+            invariant = invariant * 31 + smallestRing(i);
+            atomInvariants[i] = mix(invariant);
+        }
+    }
+
+    /**
+     * Returns the size of the smallest ring through the atom, or zero if the
+     * atom is not in a ring. A breadth first search labels each atom with the
+     * neighbour of the start atom it was reached through; the first bond
+     * between two different labels closes the smallest ring.
+     */
+    private int smallestRing(int start) {
+        boolean inRing = false;
+        for (int bond : neighbourBonds[start]) inRing |= ringBond[bond];
+        if (!inRing) return 0;
+
+        int atomCount = neighbours.length;
+        int[] distance = new int[atomCount];
+        int[] branch = new int[atomCount];
+        Arrays.fill(distance, -1);
+        distance[start] = 0;
+        int head = 0, tail = 0;
+        for (int j = 0; j < neighbours[start].length; j++) {
+            if (!ringBond[neighbourBonds[start][j]]) continue;
+            int neighbour = neighbours[start][j];
+            distance[neighbour] = 1;
+            branch[neighbour] = neighbour;
+            queue[tail++] = neighbour;
+        }
+        int best = Integer.MAX_VALUE;
+        while (head < tail) {
+            int atom = queue[head++];
+            if (2 * distance[atom] + 1 >= best) break;
+            for (int j = 0; j < neighbours[atom].length; j++) {
+                if (!ringBond[neighbourBonds[atom][j]]) continue;
+                int neighbour = neighbours[atom][j];
+                if (neighbour == start) continue;
+                if (distance[neighbour] < 0) {
+                    distance[neighbour] = distance[atom] + 1;
+                    branch[neighbour] = branch[atom];
+                    queue[tail++] = neighbour;
+                } else if (branch[neighbour] != branch[atom]) {
+                    best = Math.min(best, distance[atom] + distance[neighbour] + 1);
+                }
+            }
+        }
+        return best == Integer.MAX_VALUE ? 0 : best;
+    }
+
+    private static int valueOf(Integer value) {
+        return value == null ? -1 : value;
+    }
+
+    private static boolean contains(long[] atoms, int atom) {
+        return (atoms[atom >> 6] & (1L << atom)) != 0;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb53a7f3c2a1bL;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * A set of parent atoms, as a bit mask, that can be used as a key.
+     */
+    private static class AtomSet {
+
+        private final long[] bits;
+        private final int hashCode;
+
+        AtomSet(long[] bits) {
+            this.bits = bits;
+            this.hashCode = Arrays.hashCode(bits);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object object) {
+            return object instanceof AtomSet && Arrays.equals(bits, ((AtomSet) object).bits);
+        }
+    }
+}
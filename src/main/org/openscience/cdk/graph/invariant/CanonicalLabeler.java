@@ -27,25 +27,29 @@
  *  */
 package org.openscience.cdk.graph.invariant;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.math.Primes;
 import org.openscience.cdk.smiles.InvPair;
 import org.openscience.cdk.tools.periodictable.PeriodicTable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.List;
-
 /**
  * Canonically labels an atom container implementing
  * the algorithm published in David Weininger et.al. {@cdk.cite WEI89}.
- * The Collections.sort() method uses a merge sort which is 
- * stable and runs in n log(n).
+ * The invariants are kept in primitive arrays, indexed by the position
+ * of the atom in the container, and ordered with a stable merge sort
+ * which runs in n log(n).
+ *
+ * <p>The labeler holds no state between calls, so one instance can be
+ * used by several threads at the same time, as long as they label
+ * different atom containers.
  *
  * @cdk.module standard
  * @cdk.githash
@@ -62,13 +66,10 @@ public class CanonicalLabeler {
   }
 
   /**
-   * Canonically label the fragment.  The labels are set as atom property InvPair.CANONICAL_LABEL of type Integer, indicating the canonical order.
+   * Canonically label the fragment.  The labels are set as atom property InvPair.CANONICAL_LABEL of type Long, indicating the canonical order.
    * This is an implementation of the algorithm published in
    * David Weininger et.al. {@cdk.cite WEI89}.
    * 
-   * <p>The Collections.sort() method uses a merge sort which is 
-   * stable and runs in n log(n).
-   * 
    * <p>It is assumed that a chemicaly valid AtomContainer is provided: 
    * this method does not check
    * the correctness of the AtomContainer. Negative H counts will 
@@ -76,163 +77,174 @@ public class CanonicalLabeler {
    * @param atomContainer The molecule to label
    */
   @TestMethod("testCanonLabel_IAtomContainer,testSomeMoleculeWithDifferentStartingOrder")
-  public synchronized void canonLabel(IAtomContainer atomContainer) {
-    if (atomContainer.getAtomCount() == 0)
+  public void canonLabel(IAtomContainer atomContainer) {
+    int n = atomContainer.getAtomCount();
+    if (n == 0)
     	return;
-    if (atomContainer.getAtomCount() == 1) {
-    	atomContainer.getAtom(0).setProperty(InvPair.CANONICAL_LABEL, 1);
+
+    int[][] neighbours = getNeighbours(atomContainer);
+    long[] curr = createInvarLabel(atomContainer, neighbours);
+    long[] last = new long[n];
+    int[] primes = new int[n];
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) order[i] = i;
+
+    // steps 3 to 7, until every atom has its own rank
+    while (true) {
+      sort(order, last, curr);
+      rank(order, last, curr, primes);
+      if (!isInvPart(order, last, curr)) {
+        primeProduct(neighbours, last, curr, primes);
+      } else if (curr[order[n - 1]] < n) {
+        breakTies(order, curr, primes);
+        primeProduct(neighbours, last, curr, primes);
+      } else {
+        break;
+      }
     }
-      
-    ArrayList vect = createInvarLabel(atomContainer);
-    step3(vect, atomContainer);
-  }
 
-  /**
-   * @param v the invariance pair vector
-   */
-  private void step2(ArrayList v, IAtomContainer atoms) {
-    primeProduct(v, atoms);
-    step3(v, atoms);
+    for (int i = 0; i < n; i++) {
+      atomContainer.getAtom(i).setProperty(InvPair.CANONICAL_LABEL, Long.valueOf(curr[i]));
+    }
   }
 
   /**
-   * @param v the invariance pair vector
+   * Lists the indices of the connected atoms of each atom.
    */
-  private void step3(ArrayList v, IAtomContainer atoms) {
-    sortArrayList(v);
-    rankArrayList(v);
-    if (!isInvPart(v)) {
-      step2(v, atoms);
-    } else {
-      //On first pass save, partitioning as symmetry classes.
-        if (((InvPair) v.get(v.size()-1)).getCurr() < v.size()) {
-            breakTies(v);
-            step2(v, atoms);
-        }
-        // now apply the ranking
-        for (Object aV : v) {
-            ((InvPair) aV).commit();
-        }
+  private int[][] getNeighbours(IAtomContainer atomContainer) {
+    int n = atomContainer.getAtomCount();
+    Map<IAtom,Integer> indices = new IdentityHashMap<IAtom,Integer>(2 * n);
+    for (int i = 0; i < n; i++) indices.put(atomContainer.getAtom(i), i);
+    int[] degree = new int[n];
+    int[][] ends = new int[atomContainer.getBondCount()][];
+    int b = 0;
+    for (IBond bond : atomContainer.bonds()) {
+      Integer a1 = indices.get(bond.getAtom(0));
+      Integer a2 = indices.get(bond.getAtom(1));
+      if (a1 == null || a2 == null) continue;
+      ends[b++] = new int[]{a1, a2};
+      degree[a1]++;
+      degree[a2]++;
+    }
+    int[][] neighbours = new int[n][];
+    for (int i = 0; i < n; i++) neighbours[i] = new int[degree[i]];
+    int[] filled = new int[n];
+    for (int i = 0; i < b; i++) {
+      int a1 = ends[i][0];
+      int a2 = ends[i][1];
+      neighbours[a1][filled[a1]++] = a2;
+      neighbours[a2][filled[a2]++] = a1;
     }
+    return neighbours;
   }
 
   /**
-   * Create initial invariant labeling corresponds to step 1
+   * Create initial invariant labeling corresponds to step 1. The invariant
+   * of an atom is the decimal concatenation of its number of connections,
+   * number of non H bonds, atomic number, sign of charge, absolute charge
+   * and hydrogen count.
    *
-   * @return ArrayList containting the
+   * @return the initial invariants of the atoms
    */
-  private ArrayList createInvarLabel(IAtomContainer atomContainer) {
-    java.util.Iterator atoms = atomContainer.atoms().iterator();
-    IAtom a;
-    StringBuffer inv;
-    ArrayList vect = new ArrayList();
-    while(atoms.hasNext()) {
-      a = (IAtom)atoms.next();
-      inv = new StringBuffer();
-      inv.append(atomContainer.getConnectedAtomsList(a).size() +
-              (a.getImplicitHydrogenCount() == CDKConstants.UNSET ? 0 : a.getImplicitHydrogenCount())); //Num connections
-      inv.append(atomContainer.getConnectedAtomsList(a).size());                        //Num of non H bonds
-      inv.append(PeriodicTable.getAtomicNumber(a.getSymbol()));
-        
+  private long[] createInvarLabel(IAtomContainer atomContainer, int[][] neighbours) {
+    long[] invariants = new long[neighbours.length];
+    for (int i = 0; i < neighbours.length; i++) {
+      IAtom a = atomContainer.getAtom(i);
+      int hydrogens = a.getImplicitHydrogenCount() == CDKConstants.UNSET ? 0 : a.getImplicitHydrogenCount();
+      Integer atomicNumber = PeriodicTable.getAtomicNumber(a.getSymbol());
       Double charge = a.getCharge();
-        if (charge == CDKConstants.UNSET) charge = 0.0;
-      if (charge < 0)                                                        //Sign of charge
-        inv.append(1);
-      else
-        inv.append(0);                                                              //Absolute charge
-      inv.append((int)Math.abs( (a.getFormalCharge() == CDKConstants.UNSET ? 0.0 : a.getFormalCharge())));                                     //Hydrogen count
-      inv.append((a.getImplicitHydrogenCount() == CDKConstants.UNSET ? 0 : a.getImplicitHydrogenCount()));
-      vect.add(new InvPair(Long.parseLong(inv.toString()), a));
+      if (charge == CDKConstants.UNSET) charge = 0.0;
+      long inv = 0;
+      inv = append(inv, neighbours[i].length + hydrogens);                   //Num connections
+      inv = append(inv, neighbours[i].length);                               //Num of non H bonds
+      inv = append(inv, atomicNumber == null ? 0 : atomicNumber);
+      inv = append(inv, charge < 0 ? 1 : 0);                                  //Sign of charge
+      inv = append(inv, Math.abs(a.getFormalCharge() == CDKConstants.UNSET   //Absolute charge
+                                 ? 0 : a.getFormalCharge()));
+      inv = append(inv, hydrogens);                                           //Hydrogen count
+      invariants[i] = inv;
     }
-    return vect;
+    return invariants;
+  }
+
+  /**
+   * Appends the decimal digits of a value to a number.
+   */
+  private static long append(long number, int value) {
+    if (value < 0)
+      throw new NumberFormatException("Negative value in atom invariant: " + value);
+    long shift = 10;
+    while (shift <= value) shift *= 10;
+    return number * shift + value;
   }
 
   /**
    * Calculates the product of the neighbouring primes.
-   *
-   * @param v the invariance pair vector
    */
-  private void primeProduct(ArrayList v, IAtomContainer atomContainer) {
-    Iterator it = v.iterator();
-    Iterator n;
-    InvPair inv;
-    IAtom a;
-    long summ;
-    while (it.hasNext()) {
-      inv = (InvPair) it.next();
-      List neighbour = atomContainer.getConnectedAtomsList(inv.getAtom());
-      n = neighbour.iterator();
-      summ = 1;
-      while (n.hasNext()) {
-        a = (IAtom) n.next();
-        int next = ((InvPair)a.getProperty(InvPair.INVARIANCE_PAIR)).getPrime();
-        summ = summ * next;
-      }
-      inv.setLast(inv.getCurr());
-      inv.setCurr(summ);
+  private void primeProduct(int[][] neighbours, long[] last, long[] curr, int[] primes) {
+    for (int i = 0; i < neighbours.length; i++) {
+      long summ = 1;
+      for (int neighbour : neighbours[i]) summ = summ * primes[neighbour];
+      last[i] = curr[i];
+      curr[i] = summ;
     }
   }
 
   /**
-   * Sorts the vector according to the current invariance, corresponds to step 3
-   *
-   * @param v the invariance pair vector
-   * @cdk.todo    can this be done in one loop?
+   * Sorts the atoms according to the last and current invariance, corresponds
+   * to step 3. The sort is stable, so atoms with the same invariants keep
+   * their relative order.
    */
-  private void sortArrayList(ArrayList v) {
-    Collections.sort(v, new Comparator() {
-      public int compare(Object o1, Object o2) {
-        return (int) (((InvPair) o1).getCurr() - ((InvPair) o2).getCurr());
-      }
-    });
-    Collections.sort(v, new Comparator() {
-      public int compare(Object o1, Object o2) {
-        return (int) (((InvPair) o1).getLast() - ((InvPair) o2).getLast());
+  private void sort(int[] order, long[] last, long[] curr) {
+    int[] buffer = new int[order.length];
+    for (int width = 1; width < order.length; width *= 2) {
+      for (int lo = 0; lo < order.length - width; lo += 2 * width) {
+        int mid = lo + width;
+        int hi = Math.min(lo + 2 * width, order.length);
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) {
+          if (compare(order[j], order[i], last, curr) < 0) buffer[k++] = order[j++];
+          else buffer[k++] = order[i++];
+        }
+        while (i < mid) buffer[k++] = order[i++];
+        while (j < hi) buffer[k++] = order[j++];
+        System.arraycopy(buffer, lo, order, lo, hi - lo);
       }
-    });
+    }
+  }
+
+  private static int compare(int a, int b, long[] last, long[] curr) {
+    if (last[a] != last[b]) return last[a] < last[b] ? -1 : 1;
+    if (curr[a] != curr[b]) return curr[a] < curr[b] ? -1 : 1;
+    return 0;
   }
 
   /**
-   * Rank atomic vector, corresponds to step 4.
-   *
-   *  @param v the invariance pair vector
+   * Rank the sorted atoms, corresponds to step 4.
    */
-  private void rankArrayList(ArrayList v) {
+  private void rank(int[] order, long[] last, long[] curr, int[] primes) {
+    int[] ranks = new int[order.length];
     int num = 1;
-    int[] temp = new int[v.size()];
-    InvPair last = (InvPair) v.get(0);
-    Iterator it = v.iterator();
-    InvPair curr;
-    for (int x = 0; it.hasNext(); x++) {
-      curr = (InvPair) it.next();
-      if (!last.equals(curr)) {
-        num++;
-      }
-      temp[x] = num;
-      last = curr;
+    for (int x = 0; x < order.length; x++) {
+      if (x > 0 && compare(order[x - 1], order[x], last, curr) != 0) num++;
+      ranks[x] = num;
     }
-    it = v.iterator();
-    for (int x = 0; it.hasNext(); x++) {
-      curr = (InvPair) it.next();
-      curr.setCurr(temp[x]);
-      curr.setPrime();
+    for (int x = 0; x < order.length; x++) {
+      curr[order[x]] = ranks[x];
+      primes[order[x]] = Primes.getPrimeAt(ranks[x] - 1);
     }
   }
 
   /**
-   * Checks to see if the vector is invariantely partitioned
+   * Checks to see if the atoms are invariantely partitioned.
    *
-   * @param v the invariance pair vector
-   * @return true if the vector is invariantely partitioned, false otherwise
+   * @return true if the atoms are invariantely partitioned, false otherwise
    */
-  private boolean isInvPart(ArrayList v) {
-    if (((InvPair) v.get(v.size()-1)).getCurr() == v.size())
+  private boolean isInvPart(int[] order, long[] last, long[] curr) {
+    if (curr[order[order.length - 1]] == order.length)
       return true;
-    Iterator it = v.iterator();
-    InvPair curr;
-    while (it.hasNext()) {
-      curr = (InvPair) it.next();
-      if (curr.getCurr() != curr.getLast())
+    for (int i = 0; i < curr.length; i++) {
+      if (curr[i] != last[i])
         return false;
     }
     return true;
@@ -240,27 +252,21 @@ public class CanonicalLabeler {
 
   /**
    * Break ties. Corresponds to step 7
-   *
-   * @param v the invariance pair vector
    */
-  private void breakTies(ArrayList v) {
-    Iterator it = v.iterator();
-    InvPair curr;
-    InvPair last = null;
+  private void breakTies(int[] order, long[] curr, int[] primes) {
     int tie = 0;
     boolean found = false;
-    for (int x = 0; it.hasNext(); x++) {
-      curr = (InvPair) it.next();
-      curr.setCurr(curr.getCurr() * 2);
-      curr.setPrime();
-      if (x != 0 && !found && curr.getCurr() == last.getCurr()) {
+    for (int x = 0; x < order.length; x++) {
+      int atom = order[x];
+      curr[atom] = curr[atom] * 2;
+      primes[atom] = Primes.getPrimeAt((int) curr[atom] - 1);
+      if (x != 0 && !found && curr[atom] == curr[order[x - 1]]) {
         tie = x - 1;
         found = true;
       }
-      last = curr;
     }
-    curr = (InvPair) v.get(tie);
-    curr.setCurr(curr.getCurr() - 1);
-    curr.setPrime();
+    int atom = order[tie];
+    curr[atom] = curr[atom] - 1;
+    primes[atom] = Primes.getPrimeAt((int) curr[atom] - 1);
   }
 }
@@ -34,6 +34,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
 import javax.vecmath.Point2d;
@@ -65,8 +66,6 @@ import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 /**
  * Reads content from MDL molfiles and SD files. 
  * It can read a {@link IAtomContainer} or {@link IChemModel} from an MDL molfile, and
@@ -112,8 +111,11 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
 
     //Keep track of atoms and the lines they were on in the atom block.
     private List<IAtom> atomsByLinePosition;
-    // Pattern to remove trailing space (String.trim() will remove leading space, which we don't want)
-    private static final Pattern TRAILING_SPACE = Pattern.compile("\\s+$");
+    // powers of ten that are exactly represented by a double
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
     
     public MDLV2000Reader() {
         this(new StringReader(""));
@@ -239,7 +241,7 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                 logger.debug("line: ", line);
                 // apparently, this is a SDF file, continue with 
                 // reading mol files
-		str = new String(line);
+		str = line;
 		if (str.equals("$$$$")) {
 		    m = readAtomContainer(chemFile.getBuilder().newInstance(IAtomContainer.class));
 		    
@@ -440,6 +442,7 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
             bonds = Integer.parseInt(line.substring(3, 6).trim());
             logger.debug("Bondcount: " + bonds);
             List<IBond> bondList = new ArrayList<IBond>();
+            double[] coordinates = new double[3 * atoms];
 
             // read ATOM block
             logger.info("Reading atom block");
@@ -448,21 +451,23 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
             int atomBlockLineNumber=0;
             for (int f = 0; f < atoms; f++) {
                 line = input.readLine(); linecount++; atomBlockLineNumber++;
-                Matcher trailingSpaceMatcher = TRAILING_SPACE.matcher(line);
-                if(trailingSpaceMatcher.find()){
+                int trailingSpace = trailingSpaceStart(line);
+                if (trailingSpace < line.length()) {
                     handleError("Trailing space found",
                                 linecount,
-                                trailingSpaceMatcher.start(), trailingSpaceMatcher.end());
-                    line = trailingSpaceMatcher.replaceAll("");
+                                trailingSpace, line.length());
+                    line = line.substring(0, trailingSpace);
                 }
-                x = Double.parseDouble(line.substring(0, 10).trim());
-                y = Double.parseDouble(line.substring(10, 20).trim());
-                z = Double.parseDouble(line.substring(20, 30).trim());
+                x = parseDouble(line, 0, 10);
+                y = parseDouble(line, 10, 20);
+                z = parseDouble(line, 20, 30);
                 // *all* values should be zero, not just the sum
                 totalX += Math.abs(x);
                 totalY += Math.abs(y);
                 totalZ += Math.abs(z);
-                logger.debug("Coordinates: " + x + "; " + y + "; " + z);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Coordinates: " + x + "; " + y + "; " + z);
+                }
                 String element = line.substring(31, Math.min(line.length(), 34)).trim();
                 if(line.length() < 34){
                     handleError("Element atom type does not follow V2000 format type should of length three" +
@@ -516,16 +521,17 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                     atom.setSymbol(element);
                 }
 
-                // store as 3D for now, convert to 2D (if totalZ == 0.0) later
-                atom.setPoint3d(new Point3d(x, y, z));
+                // store the coordinates for now, and set them as 2D or 3D
+                // once all atoms are read
+                coordinates[3 * f] = x;
+                coordinates[3 * f + 1] = y;
+                coordinates[3 * f + 2] = z;
                 
                 // parse further fields
                 if(line.length() >= 36){
-                String massDiffString = line.substring(34,36).trim();
-                logger.debug("Mass difference: ", massDiffString);
                 if (!(atom instanceof IPseudoAtom)) {
                     try {
-                        int massDiff = Integer.parseInt(massDiffString);
+                        int massDiff = parseInt(line, 34, 36);
                         if (massDiff != 0) {
                             IIsotope major = IsotopeFactory.getInstance(molecule.getBuilder()).getMajorIsotope(element);
                             atom.setMassNumber(major.getMassNumber() + massDiff);
@@ -575,9 +581,8 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                 }
                 
                 if(line.length() >= 39){
-                String chargeCodeString = line.substring(36,39).trim();
-                logger.debug("Atom charge code: ", chargeCodeString);
-                int chargeCode = Integer.parseInt(chargeCodeString);
+                int chargeCode = parseInt(line, 36, 39);
+                logger.debug("Atom charge code: ", chargeCode);
                 if (chargeCode == 0) {
                     // uncharged species
                 } else if (chargeCode == 1) {
@@ -598,20 +603,18 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                     handleError("Atom charge is missing", linecount, 36, 39);
                 }
                 
-                try {
+                if (line.length() >= 63) {
                     // read the mmm field as position 61-63
-                    String reactionAtomIDString = line.substring(60,63).trim();
-                    logger.debug("Parsing mapping id: ", reactionAtomIDString);
                     try {
-                        int reactionAtomID = Integer.parseInt(reactionAtomIDString);
+                        int reactionAtomID = parseInt(line, 60, 63);
                         if (reactionAtomID != 0) {
                             atom.setProperty(CDKConstants.ATOM_ATOM_MAPPING, reactionAtomID);
                         }
                     } catch (Exception exception) {
-                        logger.error("Mapping number ", reactionAtomIDString, " is not an integer.");
+                        logger.error("Mapping number ", line.substring(60,63).trim(), " is not an integer.");
                         logger.debug(exception);
                     }
-                } catch (Exception exception) {
+                } else {
                     // older mol files don't have all these fields...
                     logger.warn("A few fields are missing. Older MDL MOL file?");
                 }
@@ -629,24 +632,23 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                 atomsByLinePosition.add(atom);
             }
             
-            // convert to 2D, if totalZ == 0
+            // set the coordinates as 2D, if totalZ == 0
             if (totalX == 0.0 && totalY == 0.0 && totalZ == 0.0) {
                 logger.info("All coordinates are 0.0");
                 if(atomList.size()==1) {
+                    atomList.get(0).setPoint3d(new Point3d(x, y, z));
                     atomList.get(0).setPoint2d(new Point2d(x,y));              
-                }else{
-                    for (IAtom atomToUpdate : atomList) {
-                        atomToUpdate.setPoint3d(null);
-                    }
                 }
             } else if (totalZ == 0.0 && !forceReadAs3DCoords.isSet()) {
                 logger.info("Total 3D Z is 0.0, interpreting it as a 2D structure");
-                for (IAtom atomToUpdate : atomList) {
-                    Point3d p3d = atomToUpdate.getPoint3d();
-                    if (p3d != null) {
-                        atomToUpdate.setPoint2d(new Point2d(p3d.x, p3d.y));
-                        atomToUpdate.setPoint3d(null);
-                    }
+                for (int f = 0; f < atomList.size(); f++) {
+                    atomList.get(f).setPoint2d(new Point2d(coordinates[3 * f], coordinates[3 * f + 1]));
+                }
+            } else {
+                for (int f = 0; f < atomList.size(); f++) {
+                    atomList.get(f).setPoint3d(new Point3d(
+                        coordinates[3 * f], coordinates[3 * f + 1], coordinates[3 * f + 2]
+                    ));
                 }
             }
             
@@ -655,13 +657,11 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
 		    int queryBondCount=0;
             for (int f = 0; f < bonds; f++) {
                 line = input.readLine(); linecount++;
-                atom1 = Integer.parseInt(line.substring(0, 3).trim());
-                atom2 = Integer.parseInt(line.substring(3, 6).trim());
-                order = Integer.parseInt(line.substring(6, 9).trim());
+                atom1 = parseInt(line, 0, 3);
+                atom2 = parseInt(line, 3, 6);
+                order = parseInt(line, 6, 9);
                 if (line.length() >= 12) {
-                	int mdlStereo = line.length() > 12
-                		? Integer.parseInt(line.substring(9, 12).trim())
-                		: Integer.parseInt(line.substring(9).trim());
+                	int mdlStereo = parseInt(line, 9, 12);
                     if (mdlStereo == 1) {
                         // MDL up bond
                         stereo = IBond.Stereo.UP;
@@ -767,13 +767,11 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                 if (line.startsWith("M  CHG")) {
                     // FIXME: if this is encountered for the first time, all
                     // atom charges should be set to zero first!
-                    int infoCount = Integer.parseInt(line.substring(6,9).trim());
-                    StringTokenizer st = new StringTokenizer(line.substring(9));
+                    int infoCount = parseInt(line, 6, 9);
+                    IntTokenizer st = new IntTokenizer(line, 9);
                     for (int i=1; i <= infoCount; i++) {
-                        String token = st.nextToken();
-                        int atomNumber = Integer.parseInt(token.trim());
-                        token = st.nextToken();
-                        int charge = Integer.parseInt(token.trim());
+                        int atomNumber = st.nextInt();
+                        int charge = st.nextInt();
                         outputContainer.getAtom(atomNumber - 1).setFormalCharge(charge);
                     }
                 }  else if (line.matches("A\\s{1,4}\\d+")) {
@@ -820,12 +818,11 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
 
                 } else if (line.startsWith("M  ISO")) {
                     try {
-                        String countString = line.substring(6,10).trim();
-                        int infoCount = Integer.parseInt(countString);
-                        StringTokenizer st = new StringTokenizer(line.substring(10));
+                        int infoCount = parseInt(line, 6, 10);
+                        IntTokenizer st = new IntTokenizer(line, 10);
                         for (int i=1; i <= infoCount; i++) {
-                            int atomNumber = Integer.parseInt(st.nextToken().trim());
-                            int absMass = Integer.parseInt(st.nextToken().trim());
+                            int atomNumber = st.nextInt();
+                            int absMass = st.nextInt();
                             if (absMass != 0) { 
                                 IAtom isotope = outputContainer.getAtom(atomNumber - 1);
                                 isotope.setMassNumber(absMass);
@@ -843,12 +840,11 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                     }
                 } else if (line.startsWith("M  RAD")) {
                     try {
-                        String countString = line.substring(6,9).trim();
-                        int infoCount = Integer.parseInt(countString);
-                        StringTokenizer st = new StringTokenizer(line.substring(9));
+                        int infoCount = parseInt(line, 6, 9);
+                        IntTokenizer st = new IntTokenizer(line, 9);
                         for (int i=1; i <= infoCount; i++) {
-                            int atomNumber = Integer.parseInt(st.nextToken().trim());
-                            int spinMultiplicity = Integer.parseInt(st.nextToken().trim());
+                            int atomNumber = st.nextInt();
+                            int spinMultiplicity = st.nextInt();
                             if (spinMultiplicity > 1) {
                                 IAtom radical = outputContainer.getAtom(atomNumber - 1);
                                 for (int j=2; j <= spinMultiplicity; j++) {
@@ -1000,5 +996,110 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
         }
         return buffer.toString();
     }
-}
 
+    /**
+     * Returns the position at which the whitespace at the end of the line
+     * starts, or the length of the line if it does not end with whitespace.
+     */
+    private static int trailingSpaceStart(String line) {
+        int end = line.length();
+        while (end > 0 && isWhitespace(line.charAt(end - 1))) end--;
+        return end;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Parses the integer in the given columns of the line. This gives the same
+     * result as <code>Integer.parseInt(line.substring(start, end).trim())</code>,
+     * without creating the intermediate strings.
+     */
+    private static int parseInt(String line, int start, int end) {
+        if (end > line.length()) return Integer.parseInt(line.substring(start, end).trim());
+        while (start < end && line.charAt(start) <= ' ') start++;
+        while (end > start && line.charAt(end - 1) <= ' ') end--;
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 9) return Integer.parseInt(line.substring(start, end));
+        int value = 0;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') return Integer.parseInt(line.substring(start, end));
+            value = 10 * value + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses the decimal number in the given columns of the line. This gives the
+     * same result as <code>Double.parseDouble(line.substring(start, end).trim())</code>,
+     * without creating the intermediate strings. Numbers with up to 15 digits
+     * are divided by an exact power of ten, which rounds them correctly; other
+     * notations are left to {@link Double#parseDouble(String)}.
+     */
+    private static double parseDouble(String line, int start, int end) {
+        if (end > line.length()) return Double.parseDouble(line.substring(start, end).trim());
+        while (start < end && line.charAt(start) <= ' ') start++;
+        while (end > start && line.charAt(end - 1) <= ' ') end--;
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = 10 * mantissa + (c - '0');
+                digits++;
+                if (point) decimals++;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return Double.parseDouble(line.substring(start, end));
+            }
+        }
+        if (digits == 0 || digits > 15 || decimals >= POWERS_OF_TEN.length)
+            return Double.parseDouble(line.substring(start, end));
+        double value = mantissa / POWERS_OF_TEN[decimals];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads the whitespace separated integers of a property line, like a
+     * {@link StringTokenizer} on the rest of the line would.
+     */
+    private static class IntTokenizer {
+
+        private final String line;
+        private int position;
+
+        IntTokenizer(String line, int start) {
+            if (start > line.length()) throw new StringIndexOutOfBoundsException(start);
+            this.line = line;
+            this.position = start;
+        }
+
+        int nextInt() {
+            while (position < line.length() && isDelimiter(line.charAt(position))) position++;
+            if (position == line.length()) throw new NoSuchElementException();
+            int start = position;
+            while (position < line.length() && !isDelimiter(line.charAt(position))) position++;
+            return parseInt(line, start, position);
+        }
+
+        private static boolean isDelimiter(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+        }
+    }
+}
@@ -28,7 +28,33 @@ import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.tools.DataFeatures;
 
 /**
- * 
+ * Format for fingerprint files. Besides the textual fingerprints, this
+ * describes the binary fingerprint database written by the
+ * <code>org.openscience.cdk.similarity.FingerprintDatabaseWriter</code>
+ * and memory-mapped by the
+ * <code>org.openscience.cdk.similarity.FingerprintDatabase</code>.
+ *
+ * <p>All values of the binary file are stored big-endian:
+ * <table border="1">
+ *   <tr><th>Offset</th><th>Type</th><th>Content</th></tr>
+ *   <tr><td>0</td><td>int</td><td>the magic number {@link #MAGIC}, "CDKF"</td></tr>
+ *   <tr><td>4</td><td>int</td><td>the format version, {@link #VERSION}</td></tr>
+ *   <tr><td>8</td><td>int</td><td>the fingerprint size <i>n</i> in bits</td></tr>
+ *   <tr><td>12</td><td>int</td><td>the number of 64-bit words <i>w</i> per fingerprint</td></tr>
+ *   <tr><td>16</td><td>long</td><td>the number of records <i>m</i></td></tr>
+ *   <tr><td>24</td><td>long[<i>n</i>+2]</td><td>the popcount table: entry <i>c</i>
+ *       is the index of the first record with <i>c</i> bits set, and the last
+ *       entry is <i>m</i></td></tr>
+ *   <tr><td>24+8(<i>n</i>+2)</td><td><i>m</i> records</td><td>the records, sorted by
+ *       popcount</td></tr>
+ * </table>
+ *
+ * <p>Each record is 8(<i>w</i>+1) bytes long: a long with the record id,
+ * followed by the <i>w</i> words of the fingerprint, where bit <i>i</i> is
+ * bit <i>i</i> mod 64 of word <i>i</i>/64. The popcount of a record is
+ * given by the popcount table, so that all records with a popcount
+ * in a given range are stored in one contiguous block.
+ *
  * @author Miguel Rojas
  * 
  * @cdk.module ioformats
@@ -38,6 +64,15 @@ import org.openscience.cdk.tools.DataFeatures;
 @TestClass("org.openscience.cdk.io.formats.FingerprintFormatTest")
 public class FingerprintFormat implements IChemFormat {
 
+    /** The magic number at the start of a binary fingerprint database, "CDKF". */
+    public static final int MAGIC = 0x43444B46;
+
+    /** The version of the binary fingerprint database layout. */
+    public static final int VERSION = 1;
+
+    /** The length of the fixed part of the header of a binary fingerprint database, in bytes. */
+    public static final int HEADER_LENGTH = 24;
+
 	private static IResourceFormat myself = null;
 	
     private FingerprintFormat() {}
@@ -1,8 +1,14 @@
 package org.openscience.cdk.io.iterator;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.openscience.cdk.CDKConstants;
@@ -11,6 +17,8 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
 
 /**
  * Iterate over conformers of a collection of molecules stored in SDF format.
@@ -28,6 +36,12 @@ import org.openscience.cdk.interfaces.IChemObjectBuilder;
  * the future the class will allow the user to perform the check using either the title or a more
  * rigorous (but more time-consuming) graph isomorphism check.
  * <p/>
+ * Only the first conformer of each molecule is read as a complete molecule. For the
+ * following conformers with the same title, the reader only parses the coordinates in
+ * the atom block, and adds them directly to the packed coordinates of the
+ * {@link ConformerContainer}. Conformers that are not in the MDL V2000 format, or that
+ * do not have the same number of atoms, are read completely.
+ * <p/>
  * Example usage is
  * <pre>
  * String filename = "/Users/rguha/conf2.sdf";
@@ -50,50 +64,62 @@ import org.openscience.cdk.interfaces.IChemObjectBuilder;
  */
 @TestClass("org.openscience.cdk.io.iterator.IteratingMDLConformerReaderTest")
 public class IteratingMDLConformerReader implements Iterator {
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(IteratingMDLConformerReader.class);
+
+    private BufferedReader input;
     private IteratingSDFReader imdlr;
     private ConformerContainer container;
     private IAtomContainer lastMol = null;
+    /** The number of atoms of the current molecule. */
+    private int atomCount;
+    /** The coordinates of the conformer being read. */
+    private double[] coordinates = new double[0];
 
     private boolean hasNext = false;
     private boolean nextIsKnown = false;
 
     @TestMethod("testSDF")
     public IteratingMDLConformerReader(Reader in, IChemObjectBuilder builder) {
-        imdlr = new IteratingSDFReader(in, builder);
-        container = new ConformerContainer();
+        input = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        imdlr = new IteratingSDFReader(new StringReader(""), builder);
     }
 
     @TestMethod("testSDF")
     public IteratingMDLConformerReader(InputStream in, IChemObjectBuilder builder) {
-        imdlr = new IteratingSDFReader(in, builder);
-        container = new ConformerContainer();
+        this(new InputStreamReader(in), builder);
     }
 
     @TestMethod("testSDF")
     public boolean hasNext() {
+        if (nextIsKnown) return hasNext;
 
-        boolean slurpedConformers = false;
-        if (lastMol != null)
+        container = null;
+        if (lastMol != null) {
             container = new ConformerContainer(lastMol);
+            atomCount = lastMol.getAtomCount();
+            lastMol = null;
+        }
 
-
-        if (!nextIsKnown) {
-            while (imdlr.hasNext()) {
-                slurpedConformers = true;
-                IAtomContainer mol = (IAtomContainer) imdlr.next();
-                if (container.size() == 0) container.add(mol);
-                else {
-                    if (container.getTitle().equals(mol.getProperty(CDKConstants.TITLE))) container.add(mol);
-                    else {
-                        lastMol = mol;
-                        hasNext = true;
-                        break;
-                    }
-                }
+        List<String> record;
+        while ((record = readRecord()) != null) {
+            if (container != null && addCoordinates(record)) continue;
+            IAtomContainer mol = readMolecule(record);
+            if (mol == null) break;
+            if (container == null) {
+                container = new ConformerContainer();
+                container.add(mol);
+                atomCount = mol.getAtomCount();
+            } else if (container.getTitle().equals(mol.getProperty(CDKConstants.TITLE))) {
+                container.add(mol);
+            } else {
+                lastMol = mol;
+                break;
             }
-            hasNext = container.size() > 0 && slurpedConformers;
         }
 
+        hasNext = container != null && container.size() > 0;
         if (!hasNext) container = null;
         nextIsKnown = true;
         return hasNext;
@@ -106,12 +132,83 @@ public class IteratingMDLConformerReader implements Iterator {
         if (!hasNext) throw new NoSuchElementException();
 
 
-        return container;  //To change body of implemented methods use File | Settings | File Templates.
+        return container;
     }
 
     @TestMethod("testRemove")
     public void remove() {
         throw new UnsupportedOperationException();
     }
-}
 
+    /**
+     * Reads the lines of the next SD record, up to and including the
+     * <code>$$$$</code> line, or null at the end of the input.
+     */
+    private List<String> readRecord() {
+        List<String> lines = new ArrayList<String>();
+        try {
+            String line;
+            while ((line = input.readLine()) != null) {
+                lines.add(line);
+                if (line.trim().equals("$$$$")) return lines;
+            }
+        } catch (IOException exception) {
+            logger.error("Error while reading next molecule: " + exception.getMessage());
+            logger.debug(exception);
+        }
+        for (String line : lines) {
+            if (line.trim().length() > 0) return lines;
+        }
+        return null;
+    }
+
+    /**
+     * Reads a complete molecule from the record, with the
+     * {@link IteratingSDFReader}.
+     */
+    private IAtomContainer readMolecule(List<String> record) {
+        StringBuilder text = new StringBuilder();
+        for (String line : record) text.append(line).append('\n');
+        imdlr.setReader(new StringReader(text.toString()));
+        return imdlr.hasNext() ? (IAtomContainer) imdlr.next() : null;
+    }
+
+    /**
+     * Adds the coordinates in the record to the current conformers, if the
+     * record is a V2000 molfile with the same title and number of atoms
+     * and with 3D coordinates.
+     *
+     * @return false if the record must be read as a complete molecule
+     */
+    private boolean addCoordinates(List<String> record) {
+        if (record.size() < 4 + atomCount) return false;
+        String title = record.get(0).length() > 0 ? record.get(0) : null;
+        if (title == null || !title.equals(container.getTitle())) return false;
+        String counts = record.get(3);
+        if (counts.contains("V3000") || counts.contains("v3000")) return false;
+        if (!counts.contains("V2000") && !counts.contains("v2000")) return false;
+        if (coordinates.length < 3 * atomCount) coordinates = new double[3 * atomCount];
+        double totalZ = 0.0;
+        try {
+            if (Integer.parseInt(counts.substring(0, 3).trim()) != atomCount) return false;
+            for (int i = 0; i < atomCount; i++) {
+                String line = record.get(4 + i);
+                coordinates[3 * i] = Double.parseDouble(line.substring(0, 10).trim());
+                coordinates[3 * i + 1] = Double.parseDouble(line.substring(10, 20).trim());
+                coordinates[3 * i + 2] = Double.parseDouble(line.substring(20, 30).trim());
+                totalZ += Math.abs(coordinates[3 * i + 2]);
+            }
+        } catch (RuntimeException exception) {
+            return false;
+        }
+        // 2D coordinates, which the MDL reader does not read as 3D
+        if (totalZ == 0.0) return false;
+        boolean end = false;
+        for (int i = 4 + atomCount; i < record.size() && !end; i++) {
+            end = record.get(i).trim().equals("M  END");
+        }
+        if (!end) return false;
+        container.addCoordinates(coordinates, 0);
+        return true;
+    }
+}
@@ -0,0 +1,523 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.config.IsotopeFactory;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.io.ISimpleChemObjectReader;
+import org.openscience.cdk.io.ReaderFactory;
+import org.openscience.cdk.io.formats.IChemFormat;
+import org.openscience.cdk.io.formats.IResourceFormat;
+import org.openscience.cdk.io.formats.MDLFormat;
+import org.openscience.cdk.io.formats.MDLV2000Format;
+import org.openscience.cdk.io.formats.MDLV3000Format;
+import org.openscience.cdk.io.setting.BooleanIOSetting;
+import org.openscience.cdk.io.setting.IOSetting;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+/**
+ * Iterating MDL SDF reader that parses the molecules on a pool of worker
+ * threads. It returns the same molecules, with the same SD tag data, as the
+ * {@link IteratingSDFReader}, in the order of the file.
+ *
+ * <p>The SD file is read on a separate thread, which only splits it into
+ * records at the <code>$$$$</code> lines. Each record is then parsed by a
+ * worker thread, with its own <code>MDLV2000Reader</code> or
+ * <code>MDLV3000Reader</code>. At most <code>queueSize</code> records are
+ * read ahead of the molecules returned by {@link #next()}, so that the
+ * memory use stays bounded when the molecules are consumed more slowly
+ * than they are parsed. The threads are started by the first call to
+ * {@link #hasNext()}, and the IO settings, reader mode and error handler
+ * must be set before that. The error handler is called on the worker
+ * threads.
+ *
+ * <p>Example use:
+ * <pre>
+ * ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+ *   new InputStreamReader(new FileInputStream(sdfFile)),
+ *   DefaultChemObjectBuilder.getInstance(), false, 8
+ * );
+ * while (reader.hasNext()) {
+ *   IAtomContainer molecule = reader.next();
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * <p>The reader should be closed when it is not read to the end, to stop
+ * the threads.
+ *
+ * @cdk.module io
+ * @cdk.githash
+ *
+ * @see org.openscience.cdk.io.iterator.IteratingSDFReader
+ *
+ * @cdk.keyword    file format, SDF
+ * @cdk.keyword    parallel
+ */
+@TestClass("org.openscience.cdk.io.iterator.ParallelIteratingSDFReaderTest")
+public class ParallelIteratingSDFReader extends DefaultIteratingChemObjectReader<IAtomContainer> {
+
+    private static ILoggingTool logger =
+        LoggingToolFactory.createLoggingTool(ParallelIteratingSDFReader.class);
+
+    private static final Pattern MDL_VERSION     = Pattern.compile("[vV](2000|3000)");
+    private static final Pattern M_END           = Pattern.compile("M\\s\\sEND");
+    private static final Pattern SDF_FIELD_START = Pattern.compile("\\A>\\s");
+    private static final String  SDF_RECORD_SEPARATOR = "$$$$";
+
+    /** Marks the end of the input in the queue of parsed records. */
+    private static final Future<Record> END_OF_INPUT = new FutureTask<Record>(
+        new Callable<Record>() {
+            public Record call() {
+                return null;
+            }
+        }
+    );
+
+    private BufferedReader input;
+    private final IChemObjectBuilder builder;
+    private final int threads;
+    private final int queueSize;
+    private boolean skip;
+
+    private BlockingQueue<Future<Record>> queue;
+    private ExecutorService workers;
+    private Thread splitter;
+    private ThreadLocal<Map<IChemFormat, ISimpleChemObjectReader>> readers;
+
+    private boolean nextAvailableIsKnown;
+    private boolean hasNext;
+    private boolean finished;
+    private IAtomContainer nextMolecule;
+    private IChemFormat currentFormat;
+
+    private BooleanIOSetting forceReadAs3DCoords;
+
+    /**
+     * Constructs a new reader that uses one worker thread per available
+     * processor.
+     *
+     * @param in      the Reader to read from
+     * @param builder the builder
+     */
+    public ParallelIteratingSDFReader(Reader in, IChemObjectBuilder builder) {
+        this(in, builder, false, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new reader that uses one worker thread per available
+     * processor.
+     *
+     * @param in      the InputStream to read from
+     * @param builder the builder
+     */
+    public ParallelIteratingSDFReader(InputStream in, IChemObjectBuilder builder) {
+        this(new InputStreamReader(in), builder);
+    }
+
+    /**
+     * Constructs a new reader that reads at most four records per worker
+     * thread ahead. If skip is set to false the reader stops at the first
+     * broken molecule, otherwise it continues with the next record, as the
+     * {@link IteratingSDFReader} does.
+     *
+     * @param in      the Reader to read from
+     * @param builder the builder
+     * @param skip    whether to skip null molecules
+     * @param threads the number of worker threads
+     */
+    public ParallelIteratingSDFReader(Reader in, IChemObjectBuilder builder, boolean skip, int threads) {
+        this(in, builder, skip, threads, 4 * threads);
+    }
+
+    /**
+     * Constructs a new reader.
+     *
+     * @param in        the Reader to read from
+     * @param builder   the builder
+     * @param skip      whether to skip null molecules
+     * @param threads   the number of worker threads
+     * @param queueSize the maximum number of records read ahead of the
+     *                  molecules that have been returned
+     */
+    public ParallelIteratingSDFReader(Reader in, IChemObjectBuilder builder, boolean skip,
+                                      int threads, int queueSize) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed");
+        if (queueSize < 1)
+            throw new IllegalArgumentException("The queue size must be positive");
+        this.builder = builder;
+        this.threads = threads;
+        this.queueSize = queueSize;
+        setReader(in);
+        initIOSettings();
+        setSkip(skip);
+    }
+
+    @TestMethod("testGetFormat")
+    public IResourceFormat getFormat() {
+        return currentFormat;
+    }
+
+    /**
+     * Indicate whether the reader should skip over SDF records that cause
+     * problems. If true the reader will fetch the next molecule.
+     *
+     * @param skip ignore error molecules continue reading
+     */
+    @TestMethod("testSkip")
+    public void setSkip(boolean skip) {
+        this.skip = skip;
+    }
+
+    /**
+     * Returns true if another IAtomContainer can be read.
+     */
+    @TestMethod("testSDF")
+    public boolean hasNext() {
+        if (nextAvailableIsKnown) {
+            return hasNext;
+        }
+        nextAvailableIsKnown = true;
+        hasNext = false;
+        nextMolecule = null;
+        if (finished) {
+            return false;
+        }
+        if (splitter == null) {
+            start();
+        }
+
+        try {
+            Future<Record> future;
+            while ((future = queue.take()) != END_OF_INPUT) {
+                Record record;
+                try {
+                    record = future.get();
+                } catch (ExecutionException exception) {
+                    logger.error("Error while reading next molecule: " +
+                                 exception.getCause().getMessage());
+                    logger.debug(exception.getCause());
+                    if (skip) continue;
+                    break;
+                }
+                // a record without a molfile, as in an empty entry
+                if (record == null) continue;
+                currentFormat = record.format;
+                nextMolecule = record.molecule;
+                hasNext = true;
+                return true;
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        // reached end of file, a broken molecule, or were interrupted
+        stop();
+        finished = true;
+        return false;
+    }
+
+    /**
+     * Returns the next IAtomContainer.
+     */
+    @TestMethod("testSDF")
+    public IAtomContainer next() {
+        if (!nextAvailableIsKnown) {
+            hasNext();
+        }
+        nextAvailableIsKnown = false;
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+        return nextMolecule;
+    }
+
+    /**
+     * Stops the threads and closes the input.
+     */
+    @TestMethod("testClose")
+    public void close() throws IOException {
+        stop();
+        finished = true;
+        input.close();
+    }
+
+    @TestMethod("testSetReader_Reader")
+    public void setReader(Reader reader) {
+        stop();
+        if (reader instanceof BufferedReader) {
+            input = (BufferedReader)reader;
+        } else {
+            input = new BufferedReader(reader);
+        }
+        nextMolecule = null;
+        nextAvailableIsKnown = false;
+        hasNext = false;
+        finished = false;
+    }
+
+    @TestMethod("testSetReader_InputStream")
+    public void setReader(InputStream reader) {
+        setReader(new InputStreamReader(reader));
+    }
+
+    private void initIOSettings() {
+        forceReadAs3DCoords = new BooleanIOSetting("ForceReadAs3DCoordinates", IOSetting.Importance.LOW,
+          "Should coordinates always be read as 3D?",
+          "false");
+        addSetting(forceReadAs3DCoords);
+    }
+
+    @TestMethod("testCustomizeJob")
+    public void customizeJob() {
+        fireIOSettingQuestion(forceReadAs3DCoords);
+    }
+
+    /**
+     * Starts the thread that splits the input into records, and the worker
+     * threads that parse them.
+     */
+    private void start() {
+        // load the isotope data before the workers need it concurrently
+        try {
+            IsotopeFactory.getInstance(builder);
+        } catch (IOException exception) {
+            logger.warn("Could not load the isotope data: ", exception.getMessage());
+        }
+        final ReaderFactory factory = new ReaderFactory();
+        readers = new ThreadLocal<Map<IChemFormat, ISimpleChemObjectReader>>() {
+            protected Map<IChemFormat, ISimpleChemObjectReader> initialValue() {
+                return new HashMap<IChemFormat, ISimpleChemObjectReader>(5);
+            }
+        };
+        queue = new ArrayBlockingQueue<Future<Record>>(queueSize);
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ParallelIteratingSDFReader-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final BufferedReader in = input;
+        final BlockingQueue<Future<Record>> records = queue;
+        final ExecutorService executor = workers;
+        splitter = new Thread(new Runnable() {
+            public void run() {
+                split(in, records, executor, factory);
+            }
+        }, "ParallelIteratingSDFReader-split");
+        splitter.setDaemon(true);
+        splitter.start();
+    }
+
+    /**
+     * Stops the threads, dropping the records that have been read ahead.
+     */
+    private void stop() {
+        if (splitter == null) return;
+        splitter.interrupt();
+        workers.shutdownNow();
+        queue.clear();
+        splitter = null;
+        workers = null;
+        queue = null;
+        readers = null;
+    }
+
+    /**
+     * Reads the input up to the end, and hands each record to the workers
+     * in the order of the file. Blocks while the queue is full.
+     */
+    private void split(BufferedReader in, BlockingQueue<Future<Record>> records,
+                       ExecutorService executor, final ReaderFactory factory) {
+        try {
+            try {
+                StringBuilder buffer = new StringBuilder(10000);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (SDF_RECORD_SEPARATOR.equals(line.trim())) {
+                        records.put(submit(executor, factory, buffer.toString()));
+                        buffer.setLength(0);
+                    } else {
+                        buffer.append(line).append('\n');
+                    }
+                }
+                if (buffer.toString().trim().length() > 0) {
+                    records.put(submit(executor, factory, buffer.toString()));
+                }
+            } catch (IOException exception) {
+                logger.error("Error while reading next molecule: " +
+                             exception.getMessage());
+                logger.debug(exception);
+            } catch (RejectedExecutionException exception) {
+                // the reader was closed
+                return;
+            }
+            records.put(END_OF_INPUT);
+        } catch (InterruptedException exception) {
+            // the reader was closed
+        }
+    }
+
+    private Future<Record> submit(ExecutorService executor, final ReaderFactory factory,
+                                  final String record) {
+        return executor.submit(new Callable<Record>() {
+            public Record call() throws Exception {
+                return parse(factory, record);
+            }
+        });
+    }
+
+    /**
+     * Parses one SD file record, that is the molfile followed by the SD tag
+     * data. Returns null if the record holds no molfile.
+     */
+    private Record parse(ReaderFactory factory, String record) throws Exception {
+        BufferedReader lines = new BufferedReader(new StringReader(record));
+        StringBuilder molfile = new StringBuilder(record.length());
+        IChemFormat format = (IChemFormat)MDLFormat.getInstance();
+        String line;
+        while ((line = lines.readLine()) != null) {
+            molfile.append(line).append('\n');
+            Matcher versionMatcher = MDL_VERSION.matcher(line);
+            if (versionMatcher.find()) {
+                format = "3000".equals(versionMatcher.group(1))
+                        ? (IChemFormat) MDLV3000Format.getInstance()
+                        : (IChemFormat) MDLV2000Format.getInstance();
+            }
+            if (M_END.matcher(line.trim()).matches()) break;
+        }
+        if (line == null) return null;
+
+        ISimpleChemObjectReader reader = getReader(factory, format);
+        if (reader == null)
+            throw new CDKException("No reader available for " + format.getFormatName());
+        reader.setReader(new StringReader(molfile.toString()));
+        IAtomContainer molecule = (IAtomContainer)reader.read(builder.newInstance(IAtomContainer.class));
+        if (molecule == null)
+            throw new CDKException("The molfile could not be read");
+        readDataBlockInto(lines, molecule);
+        return new Record(molecule, format);
+    }
+
+    /**
+     * Returns the reader of the current worker thread for the given format.
+     */
+    private ISimpleChemObjectReader getReader(ReaderFactory factory, IChemFormat format) {
+        Map<IChemFormat, ISimpleChemObjectReader> readerMap = readers.get();
+        ISimpleChemObjectReader reader = readerMap.get(format);
+        if (reader == null) {
+            synchronized (factory) {
+                reader = factory.createReader(format);
+            }
+            if (reader == null) return null;
+            reader.setErrorHandler(this.errorHandler);
+            reader.setReaderMode(this.mode);
+            if (format instanceof MDLV2000Format) {
+                reader.addSettings(getSettings());
+            }
+            readerMap.put(format, reader);
+        }
+        return reader;
+    }
+
+    /**
+     * Reads the SD tag data the same way as the {@link IteratingSDFReader}:
+     * the values of a field are the non-empty lines after its header,
+     * concatenated.
+     */
+    private static void readDataBlockInto(BufferedReader lines, IAtomContainer m) throws IOException {
+        String fieldName = null;
+        String str;
+        while ((str = lines.readLine()) != null) {
+            if (!SDF_FIELD_START.matcher(str).find()) continue;
+            fieldName = extractFieldName(fieldName, str);
+            while (str != null && str.startsWith("> ")) {
+                str = lines.readLine();
+            }
+            StringBuilder data = new StringBuilder();
+            while (str != null && str.trim().length() > 0) {
+                data.append(str);
+                str = lines.readLine();
+                if (str != null) str = str.trim();
+            }
+            if (fieldName != null) {
+                m.setProperty(fieldName, data.toString());
+            }
+        }
+    }
+
+    private static String extractFieldName(String fieldName, String str) {
+        int index = str.indexOf('<');
+        if (index != -1) {
+            int index2 = str.indexOf('>', index);
+            if (index2 != -1) {
+                fieldName = str.substring(index + 1, index2);
+            }
+        }
+        return fieldName;
+    }
+
+    /**
+     * A parsed molecule with the format of its molfile.
+     */
+    private static class Record {
+
+        private final IAtomContainer molecule;
+        private final IChemFormat format;
+
+        Record(IAtomContainer molecule, IChemFormat format) {
+            this.molecule = molecule;
+            this.format = format;
+        }
+    }
+}
@@ -25,13 +25,21 @@
  */
 package org.openscience.cdk.io.random;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
@@ -50,9 +58,14 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 /**
  * Random access to text files of compounds. 
  * Reads the file as a text and builds an index file, if the index file doesn't already exist.
- * The index stores offset, length and a third field reserved for future use.
+ * The index stores offset, length and number of atoms (-1 if not available) of each record.
  * Subsequent access for a record N uses this index to seek the record and return the molecule.
  * Useful for very big files.
+ * <p/>
+ * The index is a binary file which is mapped into memory, so that it does not take
+ * space on the heap. It is built by scanning parts of the file on several threads.
+ * Records are read with positional reads, and {@link #getRecord(int)} may be called
+ * by several threads at the same time.
  *  
  * @author     Nina Jeliazkova <nina@acad.bg>
  * @cdk.module io
@@ -64,21 +77,54 @@ public abstract class RandomAccessReader
     protected static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(RandomAccessReader.class);
     protected RandomAccessFile raFile;
+    protected FileChannel channel;
     protected IOSetting[] headerOptions = null;
     private final String filename;
     protected ISimpleChemObjectReader chemObjectReader;
-    protected int indexVersion=1;
+    protected int indexVersion=2;
+
+    /* "CDKI", the first four bytes of an index file */
+    private static final int INDEX_MAGIC = 0x43444B49;
     /*
+     * Each index entry holds
+     *   the record offset in file (long)
+     *   the record length (int)
+     *   the number of atoms, if available, or -1 (int)
+     */
+    private static final int ENTRY_SIZE = 16;
+    /* the size of the parts of the file that are scanned in parallel, changed by the tests only */
+    static int chunkSize = 16 * 1024 * 1024;
+
+    private ByteBuffer indexBuffer = null;
+    private int indexStart = 0;
+    /**
      * index[record][0]  - record offset in file
      * index[record][1]  - record length
      * index[record][2]  - number of atoms (if available)
+     *
+     * @deprecated The index is now kept in a memory-mapped buffer. This array
+     *             is null until it is filled by {@link #getIndex()}.
      */
-    protected long[][] index=null;
+    @Deprecated
+    protected long[][] index = null;
     protected int records;
+    protected int maxRecordLength;
     protected int currentRecord = 0;
+    /**
+     * @deprecated Records are now read into a buffer of their own. This array
+     *             still gets the length of the longest record.
+     */
+    @Deprecated
     protected byte[] b;
     protected IChemObjectBuilder builder;
     protected boolean indexCreated = false;
+
+    private final ThreadLocal<ISimpleChemObjectReader> threadReaders =
+        new ThreadLocal<ISimpleChemObjectReader>() {
+            protected ISimpleChemObjectReader initialValue() {
+                return createChemObjectReader();
+            }
+        };
     
     /**
      * Reads the file and builds an index file, if the index file doesn't already exist.
@@ -106,6 +152,7 @@ public abstract class RandomAccessReader
         setChemObjectReader(createChemObjectReader());
         if (listener != null) addChemObjectIOListener(listener);
         raFile = new RandomAccessFile(file,"r");
+        channel = raFile.getChannel();
         records = 0;
         setIndexCreated(false);
         indexTheFile();
@@ -134,6 +181,25 @@ public abstract class RandomAccessReader
             return  processContent();
         }
     }
+
+    /**
+     * Returns the object at given record No., without changing the current record.
+     * Unlike {@link #readRecord(int)}, this method may be called by several threads
+     * at the same time: each thread parses the records with its own reader, created
+     * by {@link #createChemObjectReader()}.
+     *
+     * @param record the zero-based record number
+     * @return the object read from the record
+     * @throws Exception if the record could not be read
+     */
+    @TestMethod("testGetRecord,testGetRecord_Concurrent")
+    public IChemObject getRecord(int record) throws Exception {
+        String buffer = readContent(record);
+        ISimpleChemObjectReader reader = threadReaders.get();
+        reader.setReader(new StringReader(buffer));
+        return processContent(reader);
+    }
+
     /**
      * Reads the record text content into a String.
      *
@@ -150,10 +216,13 @@ public abstract class RandomAccessReader
         }
         //fireFrameRead();
 
-        raFile.seek(index[record][0]);
-        int length = (int)index[record][1];
-        raFile.read(b,0,length);    	
-        return new String(b,0,length);
+        int entry = indexStart + record * ENTRY_SIZE;
+        long offset = indexBuffer.getLong(entry);
+        ByteBuffer buffer = ByteBuffer.allocate(indexBuffer.getInt(entry + 8));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) break;
+        }
+        return new String(buffer.array(), 0, buffer.position());
     }
     /**
      * The reader is already set to read the record buffer, 
@@ -161,10 +230,24 @@ public abstract class RandomAccessReader
      * @throws CDKException
      */
     protected IChemObject processContent() throws CDKException {
-        return chemObjectReader.read(builder.newInstance(IChemFile.class));
+        return processContent(chemObjectReader);
     }
 
+    /**
+     * Reads the object from a reader that is already set to read the record buffer.
+     *
+     * @param reader the reader to read the object with
+     * @return the object read
+     * @throws CDKException if the object could not be read
+     */
+    protected IChemObject processContent(ISimpleChemObjectReader reader) throws CDKException {
+        return reader.read(builder.newInstance(IChemFile.class));
+    }
 
+    /**
+     * @deprecated The index is no longer kept in an array.
+     */
+    @Deprecated
     protected long[][] resize(long[][] index, int newLength) {
         long[][] newIndex = new long[newLength][3];
         for (int i=0; i < index.length;i++) {
@@ -173,93 +256,111 @@ public abstract class RandomAccessReader
             newIndex[i][2] = index[i][2];
         }
         return newIndex;
-                                      
-    }    
+    }
+
+    /**
+     * Copies the index into the {@link #index} array, the first time it is called
+     * after the index has been built or loaded.
+     *
+     * @return the offset, length and number of atoms of each record
+     * @deprecated The index is now kept in a memory-mapped buffer; use
+     *             {@link #readContent(int)} to read a record.
+     */
+    @Deprecated
+    protected synchronized long[][] getIndex() {
+        if (index == null) {
+            long[][] copy = new long[records][3];
+            for (int i = 0; i < records; i++) {
+                int entry = indexStart + i * ENTRY_SIZE;
+                copy[i][0] = indexBuffer.getLong(entry);
+                copy[i][1] = indexBuffer.getInt(entry + 8);
+                copy[i][2] = indexBuffer.getInt(entry + 12);
+            }
+            index = copy;
+        }
+        return index;
+    }
+
     protected abstract boolean isRecordEnd(String line);
-        
+
+    /**
+     * Returns true if the line, given as bytes of the file without the line
+     * terminator, ends a record. Called while building the index; the default
+     * implementation converts the line to a String and calls
+     * {@link #isRecordEnd(String)}.
+     *
+     * @param line   a buffer holding the line
+     * @param offset the offset of the line in the buffer
+     * @param length the length of the line
+     * @return true if the line ends a record
+     */
+    protected boolean isRecordEnd(byte[] line, int offset, int length) {
+        return isRecordEnd(new String(line, offset, length));
+    }
+
+    /**
+     * Writes the index to the given file.
+     *
+     * @param file the index file
+     * @throws Exception if the index could not be written
+     */
     protected synchronized void saveIndex(File file) throws Exception {
     	if (records == 0) {file.delete(); return;}
-        FileWriter out = new FileWriter(file);
-        out.write(Integer.toString(indexVersion));
-        out.write('\n');
-        out.write(filename);
-        out.write('\n');
-        out.write(Long.toString(raFile.length()));
-        out.write('\n');
-        out.write(Integer.toString(records));
-        out.write('\n');
-        for (int i=0; i < records;i++) {
-            out.write(Long.toString(index[i][0]));
-            out.write('\t');
-            out.write(Long.toString(index[i][1]));
-            out.write('\t');
-            out.write(Long.toString(index[i][2]));
-            out.write('\n');
+        FileChannel out = new FileOutputStream(file).getChannel();
+        try {
+            ByteBuffer buffer = indexBuffer.duplicate();
+            buffer.clear();
+            while (buffer.hasRemaining()) out.write(buffer);
+        } finally {
+            out.close();
         }
-        out.write(Integer.toString(records));
-        out.write('\n');
-        out.write(filename);
-        out.write('\n');
-        out.close();
     }
-    
+
+    /**
+     * Maps the index in the given file into memory, after checking that it
+     * belongs to the file being read.
+     *
+     * @param file the index file
+     * @throws Exception if the index is not valid for the file being read
+     */
     protected synchronized void loadIndex(File file) throws Exception {
-    	BufferedReader in = new BufferedReader(new FileReader(file));
-        String version = in.readLine();
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        ByteBuffer buffer;
         try {
-	        if (Integer.parseInt(version) != indexVersion) {
-	        	in.close();
-	        	throw new Exception("Expected index version "+indexVersion+" instead of "+version);
-	        }
-        } catch (Exception x) {
-        	in.close();
-        	throw new Exception("Invalid index version "+version);        	
+            if (in.length() > Integer.MAX_VALUE)
+                throw new Exception("Index too large: " + file.getAbsolutePath());
+            buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+        } finally {
+            in.close();
         }
-        String fileIndexed = in.readLine();
-        if (!filename.equals(fileIndexed)) {
-        	in.close();
+        if (buffer.limit() < 28 || buffer.getInt(0) != INDEX_MAGIC)
+            throw new Exception("Invalid index " + file.getAbsolutePath());
+        int version = buffer.getInt(4);
+        if (version != indexVersion)
+            throw new Exception("Expected index version "+indexVersion+" instead of "+version);
+        long fileLength = buffer.getLong(8);
+        if (fileLength != raFile.length())
+            throw new Exception("Index for file of size " + fileLength + " found instead of "+raFile.length());
+        int indexLength = buffer.getInt(16);
+        if (indexLength <= 0)
+            throw new Exception("Index of zero lenght! "+file.getAbsolutePath());
+        int nameLength = buffer.getInt(24);
+        if (nameLength < 0 || 28 + nameLength > buffer.limit())
+            throw new Exception("Invalid index " + file.getAbsolutePath());
+        byte[] name = new byte[nameLength];
+        buffer.position(28);
+        buffer.get(name);
+        String fileIndexed = new String(name, "UTF-8");
+        if (!filename.equals(fileIndexed))
         	throw new Exception("Index for " + fileIndexed + " found instead of "+filename + ". Creating new index.");
-        }
-        String line = in.readLine();
-        int fileLength = Integer.parseInt(line);
-        if (fileLength != raFile.length()) {
-        	in.close();
-        	throw new Exception("Index for file of size " + fileLength + " found instead of "+raFile.length());
-        }
-        line = in.readLine();
-        int indexLength = Integer.parseInt(line);
-        if (indexLength <= 0 ) {
-        	in.close();
-        	throw new Exception("Index of zero lenght! "+file.getAbsolutePath());
-        }
-        index = new long[indexLength][3];
-        records = 0;
-        int maxRecordLength = 0;
-        for (int i=0; i < index.length;i++) {
-        	line = in.readLine();
-        	String[] result = line.split("\t");
-        	for (int j=0;j<3;j++) 
-        		try {
-        			index[i][j] = Long.parseLong(result[j]);
-
-        		} catch (Exception x) {
-        			in.close();
-        			throw new Exception("Error reading index! "+result[j],x);
-        		}
-    		        		
-            if (maxRecordLength < index[records][1]) 
-                maxRecordLength = (int) index[records][1];
-            records++;
-        }
-        
-        line = in.readLine();
-        int indexLength2 = Integer.parseInt(line);
-        if (indexLength2 <= 0 ) {in.close(); throw new Exception("Index of zero lenght!");}
-        if (indexLength2 != indexLength ) { in.close(); throw new Exception("Wrong index length!");}
-        line = in.readLine();
-        if (!line.equals(filename)) {in.close(); throw new Exception("Index for " + line + " found instead of "+filename);}
-        in.close();
-        
+        if (buffer.limit() != 28 + nameLength + (long) indexLength * ENTRY_SIZE)
+            throw new Exception("Wrong index length!");
+
+        indexBuffer = buffer;
+        indexStart = 28 + nameLength;
+        index = null;
+        records = indexLength;
+        maxRecordLength = buffer.getInt(20);
         b = new byte[maxRecordLength];
         //fireFrameRead();
     }
@@ -279,44 +380,62 @@ public abstract class RandomAccessReader
     		}
     	indexCreated = false;    		
         long now = System.currentTimeMillis();
-        int recordLength = 1000;
-        int maxRecords = 1;
-        int maxRecordLength = 0;
-        maxRecords = (int)raFile.length()/recordLength;
-        if (maxRecords == 0) maxRecords = 1;
-        index = new long[maxRecords][3];
-
-        String s = null;
-        long start = 0;
-        long end = 0;
-        raFile.seek(0);
+        long length = raFile.length();
+        final int size = chunkSize;
+        int chunks = (int) ((length + size - 1) / size);
+        int threads = Math.max(1, Math.min(chunks, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RandomAccessReader-index");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        List<int[]> bounds = new ArrayList<int[]>(chunks);
+        try {
+            List<Future<int[]>> futures = new ArrayList<Future<int[]>>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                final long from = (long) i * size;
+                final long to = Math.min(length, from + size);
+                futures.add(executor.submit(new Callable<int[]>() {
+                    public int[] call() throws IOException {
+                        return scanChunk(from, to);
+                    }
+                }));
+            }
+            for (Future<int[]> future : futures) bounds.add(future.get());
+        } catch (ExecutionException failure) {
+            IOException exception = new IOException("Could not index " + filename);
+            exception.initCause(failure.getCause());
+            throw exception;
+        } finally {
+            executor.shutdown();
+        }
+
+        byte[] name = filename.getBytes("UTF-8");
         records = 0;
-        recordLength = 0;
-        while ((s = raFile.readLine()) != null) {
-            if (start == -1) start = raFile.getFilePointer(); 
-            if (isRecordEnd(s)) {
-                //fireFrameRead();
-                if (records >= maxRecords) {
-                    double averageLength = recordLength/records;
-                    //records + (rf.length()-rf.getFilePointer())/averageLength
-                    index = resize(index,records + 
-                            (int) (records + (raFile.length()-records*raFile.getFilePointer())/recordLength));
-            	}
-                end += 4;
-                index[records][0] = start;
-                index[records][1] = end - start;
-                index[records][2] = -1;
-                if (maxRecordLength < index[records][1]) 
-                    maxRecordLength = (int) index[records][1];
-                records++;
-                recordLength += end-start; 
-               
-                start = raFile.getFilePointer();
-            } else {
-                end = raFile.getFilePointer(); 
+        for (int[] chunk : bounds) records += chunk[0] / 2;
+        if (28L + name.length + (long) records * ENTRY_SIZE > Integer.MAX_VALUE)
+            throw new IOException("Too many records to index in " + filename);
+        indexStart = 28 + name.length;
+        indexBuffer = ByteBuffer.allocateDirect(indexStart + records * ENTRY_SIZE);
+        indexBuffer.putInt(INDEX_MAGIC).putInt(indexVersion).putLong(length).putInt(records);
+        indexBuffer.putInt(0).putInt(name.length).put(name);
+        index = null;
+        maxRecordLength = 0;
+        long start = 0;
+        for (int i = 0; i < bounds.size(); i++) {
+            int[] chunk = bounds.get(i);
+            long chunkStart = (long) i * size;
+            for (int j = 1; j < chunk[0]; j += 2) {
+                long end = chunkStart + chunk[j];
+                int recordLength = (int) (end - start);
+                indexBuffer.putLong(start).putInt(recordLength).putInt(-1);
+                if (maxRecordLength < recordLength) maxRecordLength = recordLength;
+                start = chunkStart + chunk[j + 1];
             }
-            
         }
+        indexBuffer.putInt(20, maxRecordLength);
         b = new byte[maxRecordLength];
         //fireFrameRead();
         logger.info("Index created in "+ (System.currentTimeMillis()-now) + " ms.");
@@ -327,6 +446,85 @@ public abstract class RandomAccessReader
         }
     }
 
+    /**
+     * Finds the ends of the records whose last line starts between the given
+     * positions of the file. The result holds the number of values used,
+     * followed by pairs of the end of the record and the start of the next one,
+     * both relative to <code>from</code>.
+     */
+    private int[] scanChunk(long from, long to) throws IOException {
+        FileBytes bytes = new FileBytes();
+        long position = from;
+        // skip the end of a line that starts before this part
+        if (from > 0) {
+            position = from - 1;
+            int c;
+            do {
+                c = bytes.get(position++);
+            } while (c >= 0 && c != '\n' && c != '\r');
+            if (c == '\r' && bytes.get(position) == '\n') position++;
+        }
+        int[] found = new int[65];
+        int count = 1;
+        byte[] line = new byte[128];
+        while (position < to) {
+            long lineStart = position;
+            int lineLength = 0;
+            int c;
+            while ((c = bytes.get(position)) >= 0 && c != '\n' && c != '\r') {
+                if (lineLength == line.length) {
+                    byte[] longer = new byte[2 * line.length];
+                    System.arraycopy(line, 0, longer, 0, lineLength);
+                    line = longer;
+                }
+                line[lineLength++] = (byte) c;
+                position++;
+            }
+            if (c >= 0) {
+                position++;
+                if (c == '\r' && bytes.get(position) == '\n') position++;
+            }
+            if (isRecordEnd(line, 0, lineLength)) {
+                if (count + 2 > found.length) {
+                    int[] longer = new int[2 * found.length];
+                    System.arraycopy(found, 0, longer, 0, count);
+                    found = longer;
+                }
+                found[count++] = (int) (lineStart + lineLength - from);
+                found[count++] = (int) (position - from);
+            }
+            if (c < 0) break;
+        }
+        found[0] = count;
+        return found;
+    }
+
+    /**
+     * Reads the bytes of the file through a buffer of its own, so that
+     * several threads can scan the file at the same time.
+     */
+    private class FileBytes {
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private long start = 0;
+        private int length = 0;
+
+        /**
+         * Returns the byte at the given position of the file, or -1 at its end.
+         */
+        int get(long position) throws IOException {
+            if (position < start || position >= start + length) {
+                buffer.clear();
+                int read = 0;
+                while (read == 0) read = channel.read(buffer, position);
+                start = position;
+                length = Math.max(read, 0);
+                if (read < 0) return -1;
+            }
+            return buffer.get((int) (position - start)) & 0xFF;
+        }
+    }
+
     /**
      * Opens the file index <filename>_cdk.index</filename> in a temporary folder, as specified by "java.io.tmpdir" property.
      * 
@@ -456,7 +654,6 @@ public abstract class RandomAccessReader
         	setIndexCreated(false);
         	makeIndex();
             currentRecord = 0;
-            raFile.seek(index[0][0]);
         	setIndexCreated(true);
         } catch (Exception x) {
         	setIndexCreated(true);
@@ -72,6 +72,11 @@ public class RandomAccessSDFReader extends RandomAccessReader {
     protected boolean isRecordEnd(String line) {
         return line.equals("$$$$");
     }
+    @TestMethod("testIsRecordEnd_arraybyte_int_int")
+    protected boolean isRecordEnd(byte[] line, int offset, int length) {
+        return length == 4 && line[offset] == '$' && line[offset + 1] == '$'
+            && line[offset + 2] == '$' && line[offset + 3] == '$';
+    }
     /* (non-Javadoc)
      * @see org.openscience.cdk.io.IChemObjectIO#getFormat()
      */
@@ -79,12 +84,12 @@ public class RandomAccessSDFReader extends RandomAccessReader {
     public IResourceFormat getFormat() {
         return MDLFormat.getInstance();
     }
-    protected IChemObject processContent() throws CDKException {
+    protected IChemObject processContent(ISimpleChemObjectReader reader) throws CDKException {
         	/*
-            return chemObjectReader.read(builder.newInstance(IMolecule.class));
+            return reader.read(builder.newInstance(IMolecule.class));
             */
             //read(IMolecule) doesn't read properties ...
-            IChemObject co = chemObjectReader.read(builder.newInstance(IChemFile.class));
+            IChemObject co = reader.read(builder.newInstance(IChemFile.class));
             if (co instanceof IChemFile) {
                 int c = ((IChemFile) co).getChemSequenceCount();
                 for (int i=0; i <c;i++) {
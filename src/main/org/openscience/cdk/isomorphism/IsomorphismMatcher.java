@@ -0,0 +1,430 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.cdk.isomorphism.mcss.RGraph;
+import org.openscience.cdk.isomorphism.mcss.RMap;
+
+/**
+ * Performs the structure comparisons of the {@link UniversalIsomorphismTester}
+ * with the {@link IsomorphismOptions} of the matcher, instead of the timeout
+ * shared by all users of the static methods. A matcher keeps no state
+ * between calls, so that one matcher can be used by any number of threads
+ * at the same time, and matchers with different timeouts do not affect each
+ * other:
+ * <pre>
+ * final IsomorphismMatcher matcher = new IsomorphismMatcher(
+ *     new IsomorphismOptions().setTimeout(1000)
+ * );
+ * Future&lt;Boolean&gt; result = executor.submit(new Callable&lt;Boolean&gt;() {
+ *     public Boolean call() throws CDKException {
+ *         return matcher.isSubgraph(molecule, query);
+ *     }
+ * });
+ * </pre>
+ *
+ * <p>Unlike the static methods, which return the solutions found so far, a
+ * matcher throws a {@link CDKException} when a search reaches its timeout.
+ * A search is also aborted with a {@link CDKException} when the thread doing
+ * it is interrupted, for example by <code>Future.cancel(true)</code>. The
+ * interrupted status of the thread is left set.
+ *
+ * @cdk.module  standard
+ * @cdk.githash
+ * @see         UniversalIsomorphismTester
+ */
+@TestClass("org.openscience.cdk.isomorphism.IsomorphismMatcherTest")
+public class IsomorphismMatcher {
+
+    private final IsomorphismOptions options;
+    private final boolean abortOnTimeout;
+
+    /**
+     * Creates a matcher without a timeout or a limit on the number of
+     * solutions.
+     */
+    public IsomorphismMatcher() {
+        this(new IsomorphismOptions());
+    }
+
+    /**
+     * Creates a matcher with the given options.
+     *
+     * @param options the search options, which are copied
+     */
+    public IsomorphismMatcher(IsomorphismOptions options) {
+        this(options, true);
+    }
+
+    /**
+     * Creates a matcher that, if <code>abortOnTimeout</code> is false, returns
+     * the solutions found when the timeout is reached, like the static methods
+     * of the {@link UniversalIsomorphismTester} do.
+     */
+    IsomorphismMatcher(IsomorphismOptions options, boolean abortOnTimeout) {
+        this.options = new IsomorphismOptions(options);
+        this.abortOnTimeout = abortOnTimeout;
+    }
+
+    /**
+     * Returns a copy of the options of this matcher.
+     *
+     * @return the options
+     */
+    @TestMethod("testGetOptions")
+    public IsomorphismOptions getOptions() {
+        return new IsomorphismOptions(options);
+    }
+
+    /**
+     * Tests if g1 and g2 are isomorph.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 second molecule. May be an {@link IQueryAtomContainer}.
+     * @return true if the 2 molecule are isomorph
+     * @throws CDKException if the first molecule is an instance of IQueryAtomContainer,
+     *                      or if the search timed out or was interrupted
+     */
+    @TestMethod("testIsIsomorph_IAtomContainer_IAtomContainer")
+    public boolean isIsomorph(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        checkTarget(g1);
+        if (g2.getAtomCount() != g1.getAtomCount()) return false;
+        // check single atom case
+        if (g2.getAtomCount() == 1) {
+            IAtom atom = g1.getAtom(0);
+            IAtom atom2 = g2.getAtom(0);
+            if (atom instanceof IQueryAtom) {
+                return ((IQueryAtom)atom).matches(atom2);
+            } else if (atom2 instanceof IQueryAtom) {
+                return ((IQueryAtom)atom2).matches(atom);
+            } else {
+                return atom2.getSymbol().equals(atom.getSymbol());
+            }
+        }
+        return getIsomorphMap(g1, g2) != null;
+    }
+
+    /**
+     * Returns the first isomorph mapping found or null.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 second molecule. May be an {@link IQueryAtomContainer}.
+     * @return the first isomorph mapping found projected of g1. This is a List of
+     *         RMap objects containing Ids of matching bonds.
+     * @throws CDKException if the first molecule is an instance of IQueryAtomContainer,
+     *                      or if the search timed out or was interrupted
+     */
+    @TestMethod("testIsIsomorph_IAtomContainer_IAtomContainer")
+    public List<RMap> getIsomorphMap(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        checkTarget(g1);
+        return first(search(g1, g2, UniversalIsomorphismTester.getBitSet(g1),
+                            UniversalIsomorphismTester.getBitSet(g2), false, false));
+    }
+
+    /**
+     * Returns the first isomorph 'atom mapping' found for g2 in g1.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 second molecule. May be an {@link IQueryAtomContainer}.
+     * @return the first isomorph atom mapping found projected on g1.
+     *         This is a List of RMap objects containing Ids of matching atoms.
+     * @throws CDKException if the first molecule is an instance of IQueryAtomContainer,
+     *                      or if the search timed out or was interrupted
+     */
+    @TestMethod("testIsIsomorph_IAtomContainer_IAtomContainer")
+    public List<RMap> getIsomorphAtomsMap(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        checkTarget(g1);
+        List<RMap> list = UniversalIsomorphismTester.checkSingleAtomCases(g1, g2);
+        if (list == null) {
+            return UniversalIsomorphismTester.makeAtomsMapOfBondsMap(getIsomorphMap(g1, g2), g1, g2);
+        } else if (list.isEmpty()) {
+            return null;
+        } else {
+            return list;
+        }
+    }
+
+    /**
+     * Returns all the isomorph 'mappings' found between two atom containers.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 second molecule. May be an {@link IQueryAtomContainer}.
+     * @return the list of all the 'mappings'
+     * @throws CDKException if the search timed out or was interrupted
+     */
+    @TestMethod("testGetIsomorphMaps_IAtomContainer_IAtomContainer")
+    public List<List<RMap>> getIsomorphMaps(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        return search(g1, g2, UniversalIsomorphismTester.getBitSet(g1),
+                      UniversalIsomorphismTester.getBitSet(g2), true, true);
+    }
+
+    /**
+     * Returns all the subgraph 'bond mappings' found for g2 in g1. If the
+     * query is a single atom, the {@link RMap}s map atoms instead, as
+     * described for {@link UniversalIsomorphismTester#getSubgraphMaps}.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 second molecule. May be an {@link IQueryAtomContainer}.
+     * @return the list of all the 'mappings' found projected of g1
+     * @throws CDKException if the search timed out or was interrupted
+     */
+    @TestMethod("testGetSubgraphMaps_IAtomContainer_IAtomContainer")
+    public List<List<RMap>> getSubgraphMaps(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        return search(g1, g2, new BitSet(), UniversalIsomorphismTester.getBitSet(g2), true, true);
+    }
+
+    /**
+     * Returns the first subgraph 'bond mapping' found for g2 in g1.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 second molecule. May be an {@link IQueryAtomContainer}.
+     * @return the first subgraph bond mapping found projected on g1. This is a
+     *         {@link List} of {@link RMap} objects containing Ids of matching bonds.
+     * @throws CDKException if the search timed out or was interrupted
+     */
+    @TestMethod("testIsSubgraph_IAtomContainer_IAtomContainer")
+    public List<RMap> getSubgraphMap(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        return first(search(g1, g2, new BitSet(), UniversalIsomorphismTester.getBitSet(g2),
+                            false, false));
+    }
+
+    /**
+     * Returns all subgraph 'atom mappings' found for g2 in g1.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 substructure to be mapped. May be an {@link IQueryAtomContainer}.
+     * @return all subgraph atom mappings found projected on g1. This is a
+     *         {@link List} of {@link RMap} objects containing Ids of matching atoms.
+     * @throws CDKException if the first molecule is an instance of IQueryAtomContainer,
+     *                      or if the search timed out or was interrupted
+     */
+    @TestMethod("testGetSubgraphMaps_IAtomContainer_IAtomContainer")
+    public List<List<RMap>> getSubgraphAtomsMaps(IAtomContainer g1, IAtomContainer g2)
+        throws CDKException {
+        List<RMap> list = UniversalIsomorphismTester.checkSingleAtomCases(g1, g2);
+        if (list == null) {
+            return UniversalIsomorphismTester.makeAtomsMapsOfBondsMaps(getSubgraphMaps(g1, g2), g1, g2);
+        } else {
+            List<List<RMap>> atomsMap = new ArrayList<List<RMap>>();
+            atomsMap.add(list);
+            return atomsMap;
+        }
+    }
+
+    /**
+     * Returns the first subgraph 'atom mapping' found for g2 in g1, or null
+     * if g2 is not a substructure of g1.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 substructure to be mapped. May be an {@link IQueryAtomContainer}.
+     * @return the first subgraph atom mapping found projected on g1.
+     *         This is a {@link List} of {@link RMap} objects containing Ids of matching atoms.
+     * @throws CDKException if the first molecule is an instance of IQueryAtomContainer,
+     *                      or if the search timed out or was interrupted
+     */
+    @TestMethod("testIsSubgraph_IAtomContainer_IAtomContainer")
+    public List<RMap> getSubgraphAtomsMap(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        List<RMap> list = UniversalIsomorphismTester.checkSingleAtomCases(g1, g2);
+        if (list == null) {
+            return UniversalIsomorphismTester.makeAtomsMapOfBondsMap(getSubgraphMap(g1, g2), g1, g2);
+        } else if (list.isEmpty()) {
+            return null;
+        } else {
+            return list;
+        }
+    }
+
+    /**
+     * Tests if g2 a subgraph of g1.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 second molecule. May be an {@link IQueryAtomContainer}.
+     * @return true if g2 a subgraph on g1
+     * @throws CDKException if the first molecule is an instance of IQueryAtomContainer,
+     *                      or if the search timed out or was interrupted
+     */
+    @TestMethod("testIsSubgraph_IAtomContainer_IAtomContainer")
+    public boolean isSubgraph(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        checkTarget(g1);
+        if (g2.getAtomCount() > g1.getAtomCount()) return false;
+        // test for single atom case
+        if (g2.getAtomCount() == 1) {
+            IAtom atom = g2.getAtom(0);
+            for (int i = 0; i < g1.getAtomCount(); i++) {
+                IAtom atom2 = g1.getAtom(i);
+                if (atom instanceof IQueryAtom) {
+                    if (((IQueryAtom)atom).matches(atom2)) return true;
+                } else if (atom2 instanceof IQueryAtom) {
+                    if (((IQueryAtom)atom2).matches(atom)) return true;
+                } else {
+                    if (atom2.getSymbol().equals(atom.getSymbol())) return true;
+                }
+            }
+            return false;
+        }
+        if (!UniversalIsomorphismTester.testSubgraphHeuristics(g1, g2)) return false;
+        return getSubgraphMap(g1, g2) != null;
+    }
+
+    /**
+     * Returns all the maximal common substructure between two atom containers.
+     * If a maximum number of solutions is set, the overlaps are chosen from
+     * the solutions found before the search stopped.
+     *
+     * @param  g1 first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2 second molecule. May be an {@link IQueryAtomContainer}.
+     * @return the list of all the maximal common substructure
+     *         found projected of g1 (list of AtomContainer )
+     * @throws CDKException if the search timed out or was interrupted
+     */
+    @TestMethod("testGetOverlaps_IAtomContainer_IAtomContainer")
+    public List<IAtomContainer> getOverlaps(IAtomContainer g1, IAtomContainer g2) throws CDKException {
+        List<List<RMap>> rMapsList = search(g1, g2, new BitSet(), new BitSet(), true, false);
+
+        // projection on G1
+        List<IAtomContainer> graphList = UniversalIsomorphismTester.projectList(
+            rMapsList, g1, UniversalIsomorphismTester.ID1
+        );
+
+        // reduction of set of solution (isomorphism and substructure
+        // with different 'mappings'
+        return getMaximum(graphList);
+    }
+
+    /**
+     * General {@link RGraph} parsing method. The search is done with a new
+     * {@link RGraph} configured with the options of this matcher.
+     *
+     * @param  g1               first molecule. Must not be an {@link IQueryAtomContainer}.
+     * @param  g2               second molecule. May be an {@link IQueryAtomContainer}.
+     * @param  c1               initial condition ( bonds from g1 that
+     *                          must be contains in the solution )
+     * @param  c2               initial condition ( bonds from g2 that
+     *                          must be contains in the solution )
+     * @param  findAllStructure if false stop at the first structure found
+     * @param  findAllMap       if true search all the 'mappings' for one same
+     *                          structure
+     * @return a List of Lists of {@link RMap} objects that represent the search solutions
+     * @throws CDKException if the search timed out or was interrupted
+     */
+    @TestMethod("testSearch")
+    public List<List<RMap>> search(IAtomContainer g1, IAtomContainer g2, BitSet c1, BitSet c2,
+                                   boolean findAllStructure, boolean findAllMap) throws CDKException {
+        // remember start time
+        long start = System.currentTimeMillis();
+        if (options.isFirstMatchOnly()) findAllStructure = false;
+        int maxSolutions = options.isFirstMatchOnly() ? 1 : options.getMaxSolutions();
+
+        // handle single query atom case separately
+        if (g2.getAtomCount() == 1) {
+            List<List<RMap>> matches = new ArrayList<List<RMap>>();
+            IAtom queryAtom = g2.getAtom(0);
+
+            // we can have a IQueryAtomContainer *or* an IAtomContainer
+            for (IAtom atom : g1.atoms()) {
+                boolean match = queryAtom instanceof IQueryAtom
+                              ? ((IQueryAtom)queryAtom).matches(atom)
+                              : queryAtom.getSymbol().equals(atom.getSymbol());
+                if (match) {
+                    List<RMap> lmap = new ArrayList<RMap>();
+                    lmap.add(new RMap(g1.getAtomNumber(atom), 0));
+                    matches.add(lmap);
+                    if (maxSolutions != -1 && matches.size() >= maxSolutions) break;
+                }
+            }
+            return matches;
+        }
+
+        // build the RGraph corresponding to this problem
+        RGraph rGraph = UniversalIsomorphismTester.buildRGraph(g1, g2);
+        rGraph.setTimeout(options.getTimeout());
+        rGraph.setStart(start);
+        if (findAllStructure) rGraph.setMaxSolutions(maxSolutions);
+        rGraph.setInterruptible(abortOnTimeout);
+
+        // parse the RGraph with the given constrains and options
+        rGraph.parse(c1, c2, findAllStructure, findAllMap);
+        if (abortOnTimeout) {
+            if (rGraph.isInterrupted())
+                throw new CDKException("The search was interrupted");
+            if (rGraph.isTimedOut())
+                throw new CDKException("The search timed out after " + options.getTimeout() + " ms");
+        }
+
+        // conversions of RGraph's internal solutions to G1/G2 mappings
+        List<List<RMap>> rMapsList = new ArrayList<List<RMap>>();
+        for (BitSet set : rGraph.getSolutions()) {
+            rMapsList.add(rGraph.bitSetToRMap(set));
+        }
+        return rMapsList;
+    }
+
+    /**
+     * Removes all redundant solution.
+     *
+     * @param  graphList the list of structure to clean
+     * @return the list cleaned
+     * @throws CDKException if there is a problem in obtaining subgraphs
+     */
+    private List<IAtomContainer> getMaximum(List<IAtomContainer> graphList) throws CDKException {
+        List<IAtomContainer> reducedGraphList = new ArrayList<IAtomContainer>();
+        reducedGraphList.addAll(graphList);
+
+        for (int i = 0; i < graphList.size(); i++) {
+            IAtomContainer gi = graphList.get(i);
+
+            for (int j = i + 1; j < graphList.size(); j++) {
+                IAtomContainer gj = graphList.get(j);
+
+                // Gi included in Gj or Gj included in Gi then
+                // reduce the irrelevant solution
+                if (isSubgraph(gj, gi)) {
+                    reducedGraphList.remove(gi);
+                } else if (isSubgraph(gi, gj)) {
+                    reducedGraphList.remove(gj);
+                }
+            }
+        }
+        return reducedGraphList;
+    }
+
+    private static List<RMap> first(List<List<RMap>> rMapsList) {
+        return rMapsList.isEmpty() ? null : rMapsList.get(0);
+    }
+
+    private static void checkTarget(IAtomContainer g1) throws CDKException {
+        if (g1 instanceof IQueryAtomContainer)
+            throw new CDKException("The first IAtomContainer must not be an IQueryAtomContainer");
+    }
+}
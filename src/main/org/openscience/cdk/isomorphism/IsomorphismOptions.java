@@ -0,0 +1,140 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+/**
+ * The search options of an {@link IsomorphismMatcher}. The setters return
+ * the options, so that they can be chained:
+ * <pre>
+ * IsomorphismMatcher matcher = new IsomorphismMatcher(
+ *     new IsomorphismOptions().setTimeout(500).setMaxSolutions(100)
+ * );
+ * </pre>
+ * The matcher takes a copy of the options, so that changing them later does
+ * not affect matchers that were already created.
+ *
+ * @cdk.module  standard
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.isomorphism.IsomorphismOptionsTest")
+public class IsomorphismOptions {
+
+    private long timeout = -1;
+    private int maxSolutions = -1;
+    private boolean firstMatchOnly = false;
+
+    /**
+     * Creates options without a timeout or a limit on the number of
+     * solutions.
+     */
+    public IsomorphismOptions() {
+    }
+
+    /**
+     * Creates a copy of the given options.
+     *
+     * @param options the options to copy
+     */
+    public IsomorphismOptions(IsomorphismOptions options) {
+        this.timeout = options.timeout;
+        this.maxSolutions = options.maxSolutions;
+        this.firstMatchOnly = options.firstMatchOnly;
+    }
+
+    /**
+     * Sets the time after which a search is aborted. The time is counted
+     * from the start of each call to the matcher.
+     *
+     * @param  timeout the time in milliseconds, or -1 for no timeout
+     * @return these options
+     */
+    @TestMethod("testSetTimeout_long")
+    public IsomorphismOptions setTimeout(long timeout) {
+        if (timeout < -1)
+            throw new IllegalArgumentException("The timeout must be -1 or positive");
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Returns the time after which a search is aborted.
+     *
+     * @return the time in milliseconds, or -1 for no timeout
+     */
+    @TestMethod("testSetTimeout_long")
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the maximum number of solutions a search looks for. Once that
+     * many are found, the search stops and returns them.
+     *
+     * @param  maxSolutions the maximum number of solutions, or -1 for no limit
+     * @return these options
+     */
+    @TestMethod("testSetMaxSolutions_int")
+    public IsomorphismOptions setMaxSolutions(int maxSolutions) {
+        if (maxSolutions == 0 || maxSolutions < -1)
+            throw new IllegalArgumentException("The maximum number of solutions must be -1 or positive");
+        this.maxSolutions = maxSolutions;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of solutions a search looks for.
+     *
+     * @return the maximum number of solutions, or -1 for no limit
+     */
+    @TestMethod("testSetMaxSolutions_int")
+    public int getMaxSolutions() {
+        return maxSolutions;
+    }
+
+    /**
+     * Sets whether the searches for all mappings stop at the first one.
+     * Methods such as {@link IsomorphismMatcher#getSubgraphMaps} then return
+     * at most one mapping.
+     *
+     * @param  firstMatchOnly true to stop at the first mapping
+     * @return these options
+     */
+    @TestMethod("testSetFirstMatchOnly_boolean")
+    public IsomorphismOptions setFirstMatchOnly(boolean firstMatchOnly) {
+        this.firstMatchOnly = firstMatchOnly;
+        return this;
+    }
+
+    /**
+     * Returns whether the searches for all mappings stop at the first one.
+     *
+     * @return true if the searches stop at the first mapping
+     */
+    @TestMethod("testSetFirstMatchOnly_boolean")
+    public boolean isFirstMatchOnly() {
+        return firstMatchOnly;
+    }
+}
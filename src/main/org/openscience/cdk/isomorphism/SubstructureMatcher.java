@@ -0,0 +1,382 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.IQueryBond;
+
+/**
+ * Finds the substructures of a target that match a query, by mapping the
+ * query atom by atom onto the target and backtracking, in the manner of
+ * the VF2 algorithm {@cdk.cite Cordella04}. Unlike the
+ * {@link UniversalIsomorphismTester}, no graph of compatible bond pairs is
+ * built, and the search stops as soon as it has found what is asked for:
+ * <pre>
+ * SubstructureMatcher matcher = new SubstructureMatcher(SMARTSParser.parse("C(=O)O"));
+ * boolean found = matcher.matches(molecule);
+ * int count = matcher.countMatches(molecule);
+ * List&lt;int[]&gt; mappings = matcher.getMatches(molecule);
+ * </pre>
+ *
+ * <p>A mapping is an array with, for each query atom, the index of the
+ * target atom it is mapped on. Two query atoms are never mapped on the
+ * same target atom, and two bonded query atoms are mapped on two bonded
+ * target atoms whose bond matches the query bond. The target may have
+ * more bonds between the mapped atoms than the query.
+ *
+ * <p>For each target, the query atoms are first matched against all
+ * target atoms, and then ordered so that the atom with the fewest
+ * candidates comes first, and each next atom is bonded to as many atoms
+ * placed before it as possible. An atom is then only tried on the
+ * neighbours of the target atom its first placed neighbour is mapped on.
+ *
+ * <p>Query atoms and bonds that are {@link IQueryAtom}s and
+ * {@link IQueryBond}s are matched with their <code>matches</code> method.
+ * Other atoms match atoms with the same symbol, and other bonds match bonds
+ * with the same order or that are both aromatic. A matcher can be used
+ * for any number of targets, but not by several threads at the same time
+ * when its query atoms depend on the target, as recursive SMARTS atoms do.
+ *
+ * @cdk.module  standard
+ * @cdk.githash
+ * @cdk.keyword substructure search
+ * @see         UniversalIsomorphismTester
+ */
+@TestClass("org.openscience.cdk.isomorphism.SubstructureMatcherTest")
+public class SubstructureMatcher {
+
+    private final IAtom[] queryAtoms;
+    private final int[][] queryNeighbours;
+    private final IBond[][] queryNeighbourBonds;
+
+    /**
+     * Creates a matcher for the given query. Later changes to the query are
+     * not seen by the matcher.
+     *
+     * @param query the query, usually an IQueryAtomContainer
+     */
+    public SubstructureMatcher(IAtomContainer query) {
+        int atomCount = query.getAtomCount();
+        queryAtoms = new IAtom[atomCount];
+        Map<IAtom, Integer> index = new IdentityHashMap<IAtom, Integer>();
+        for (int i = 0; i < atomCount; i++) {
+            queryAtoms[i] = query.getAtom(i);
+            index.put(queryAtoms[i], i);
+        }
+        queryNeighbours = new int[atomCount][];
+        queryNeighbourBonds = new IBond[atomCount][];
+        adjacency(query, index, queryNeighbours, queryNeighbourBonds);
+    }
+
+    /**
+     * Returns the number of atoms of the query.
+     *
+     * @return the number of query atoms
+     */
+    @TestMethod("testGetMatches")
+    public int getQueryAtomCount() {
+        return queryAtoms.length;
+    }
+
+    /**
+     * Tests if the query is a substructure of the target. The search stops
+     * at the first mapping.
+     *
+     * @param  target the target molecule
+     * @return true if the query matches the target
+     */
+    @TestMethod("testMatches")
+    public boolean matches(IAtomContainer target) {
+        return new Search(target, 1, false).run() != 0;
+    }
+
+    /**
+     * Returns the first mapping of the query on the target.
+     *
+     * @param  target the target molecule
+     * @return the index of the target atom of each query atom, or null if
+     *         the query does not match
+     */
+    @TestMethod("testMatches")
+    public int[] getFirstMatch(IAtomContainer target) {
+        Search search = new Search(target, 1, true);
+        search.run();
+        return search.mappings.isEmpty() ? null : search.mappings.get(0);
+    }
+
+    /**
+     * Counts the mappings of the query on the target, without storing
+     * them.
+     *
+     * @param  target the target molecule
+     * @return the number of mappings
+     */
+    @TestMethod("testCountMatches")
+    public int countMatches(IAtomContainer target) {
+        return new Search(target, Integer.MAX_VALUE, false).run();
+    }
+
+    /**
+     * Returns all mappings of the query on the target.
+     *
+     * @param  target the target molecule
+     * @return the mappings, each with the index of the target atom of each query atom
+     */
+    @TestMethod("testGetMatches")
+    public List<int[]> getMatches(IAtomContainer target) {
+        Search search = new Search(target, Integer.MAX_VALUE, true);
+        search.run();
+        return search.mappings;
+    }
+
+    /**
+     * Fills the neighbour tables of the container, with the atom indices
+     * of the neighbours of each atom and the bonds to them. Bonds to atoms
+     * that are not in the container are left out.
+     */
+    private static void adjacency(IAtomContainer container, Map<IAtom, Integer> index,
+                                  int[][] neighbours, IBond[][] neighbourBonds) {
+        int atomCount = neighbours.length;
+        int bondCount = container.getBondCount();
+        int[] begin = new int[bondCount], end = new int[bondCount];
+        int[] degree = new int[atomCount];
+        for (int b = 0; b < bondCount; b++) {
+            IBond bond = container.getBond(b);
+            Integer atom0 = index.get(bond.getAtom(0));
+            Integer atom1 = index.get(bond.getAtom(1));
+            if (atom0 == null || atom1 == null) {
+                begin[b] = -1;
+                continue;
+            }
+            begin[b] = atom0;
+            end[b] = atom1;
+            degree[begin[b]]++;
+            degree[end[b]]++;
+        }
+        for (int i = 0; i < atomCount; i++) {
+            neighbours[i] = new int[degree[i]];
+            neighbourBonds[i] = new IBond[degree[i]];
+            degree[i] = 0;
+        }
+        for (int b = 0; b < bondCount; b++) {
+            if (begin[b] < 0) continue;
+            IBond bond = container.getBond(b);
+            neighbours[begin[b]][degree[begin[b]]] = end[b];
+            neighbourBonds[begin[b]][degree[begin[b]]++] = bond;
+            neighbours[end[b]][degree[end[b]]] = begin[b];
+            neighbourBonds[end[b]][degree[end[b]]++] = bond;
+        }
+    }
+
+    private static boolean matches(IAtom queryAtom, IAtom atom) {
+        if (queryAtom instanceof IQueryAtom)
+            return ((IQueryAtom)queryAtom).matches(atom);
+        return queryAtom.getSymbol().equals(atom.getSymbol());
+    }
+
+    private static boolean matches(IBond queryBond, IBond bond) {
+        if (queryBond instanceof IQueryBond)
+            return ((IQueryBond)queryBond).matches(bond);
+        return queryBond.getOrder() == bond.getOrder()
+            || (queryBond.getFlag(CDKConstants.ISAROMATIC) && bond.getFlag(CDKConstants.ISAROMATIC));
+    }
+
+    /**
+     * The state of the search of the query in one target.
+     */
+    private class Search {
+
+        private final int limit;
+        private final boolean store;
+        private final List<int[]> mappings = new ArrayList<int[]>();
+        private int count = 0;
+
+        private final int[][] neighbours;
+        private final IBond[][] neighbourBonds;
+        private final boolean[][] candidates;
+        private final int[] candidateCounts;
+
+        // the query atoms in the order they are mapped; for each, the placed
+        // query atom whose target neighbours are tried, or -1 to try all
+        // target atoms, and the placed query atoms it is bonded to
+        private final int[] order;
+        private final int[] parent;
+        private final int[][] placedNeighbours;
+        private final IBond[][] placedBonds;
+
+        private final int[] mapping;
+        private final boolean[] used;
+
+        Search(IAtomContainer target, int limit, boolean store) {
+            this.limit = limit;
+            this.store = store;
+            int queryCount = queryAtoms.length;
+            int atomCount = target.getAtomCount();
+            Map<IAtom, Integer> index = new IdentityHashMap<IAtom, Integer>();
+            for (int i = 0; i < atomCount; i++) index.put(target.getAtom(i), i);
+            neighbours = new int[atomCount][];
+            neighbourBonds = new IBond[atomCount][];
+            adjacency(target, index, neighbours, neighbourBonds);
+
+            candidates = new boolean[queryCount][atomCount];
+            candidateCounts = new int[queryCount];
+            for (int q = 0; q < queryCount; q++) {
+                for (int t = 0; t < atomCount; t++) {
+                    if (neighbours[t].length >= queryNeighbours[q].length
+                        && SubstructureMatcher.matches(queryAtoms[q], target.getAtom(t))) {
+                        candidates[q][t] = true;
+                        candidateCounts[q]++;
+                    }
+                }
+            }
+
+            order = new int[queryCount];
+            parent = new int[queryCount];
+            placedNeighbours = new int[queryCount][];
+            placedBonds = new IBond[queryCount][];
+            mapping = new int[queryCount];
+            used = new boolean[atomCount];
+        }
+
+        /**
+         * Runs the search.
+         *
+         * @return the number of mappings found, at most the limit
+         */
+        int run() {
+            if (queryAtoms.length == 0 || queryAtoms.length > used.length)
+                return 0;
+            for (int q = 0; q < queryAtoms.length; q++)
+                if (candidateCounts[q] == 0) return 0;
+            plan();
+            map(0);
+            return count;
+        }
+
+        /**
+         * Orders the query atoms: the next atom is the one bonded to most
+         * placed atoms, and of those the one with the fewest candidates.
+         */
+        private void plan() {
+            int queryCount = queryAtoms.length;
+            int[] position = new int[queryCount];
+            int[] placedCount = new int[queryCount];
+            Arrays.fill(position, -1);
+            for (int k = 0; k < queryCount; k++) {
+                int best = -1;
+                for (int q = 0; q < queryCount; q++) {
+                    if (position[q] >= 0) continue;
+                    if (best < 0 || placedCount[q] > placedCount[best]
+                        || (placedCount[q] == placedCount[best]
+                            && candidateCounts[q] < candidateCounts[best]))
+                        best = q;
+                }
+                order[k] = best;
+                position[best] = k;
+                parent[k] = -1;
+                placedNeighbours[k] = new int[placedCount[best]];
+                placedBonds[k] = new IBond[placedCount[best]];
+                int n = 0;
+                for (int j = 0; j < queryNeighbours[best].length; j++) {
+                    int neighbour = queryNeighbours[best][j];
+                    if (position[neighbour] >= 0) {
+                        if (parent[k] < 0) parent[k] = neighbour;
+                        placedNeighbours[k][n] = neighbour;
+                        placedBonds[k][n++] = queryNeighbourBonds[best][j];
+                    } else {
+                        placedCount[neighbour]++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Maps the query atom at the given position, and those after it.
+         *
+         * @return false if the search must stop
+         */
+        private boolean map(int k) {
+            if (k == order.length) {
+                count++;
+                if (store) mappings.add(mapping.clone());
+                return count < limit;
+            }
+            int q = order[k];
+            if (parent[k] < 0) {
+                for (int t = 0; t < used.length; t++)
+                    if (feasible(k, q, t)) {
+                        if (!extend(k, q, t)) return false;
+                    }
+            } else {
+                int[] around = neighbours[mapping[parent[k]]];
+                for (int t : around)
+                    if (feasible(k, q, t)) {
+                        if (!extend(k, q, t)) return false;
+                    }
+            }
+            return true;
+        }
+
+        private boolean extend(int k, int q, int t) {
+            mapping[q] = t;
+            used[t] = true;
+            boolean more = map(k + 1);
+            used[t] = false;
+            return more;
+        }
+
+        /**
+         * Tests if the query atom can be mapped on the target atom, given
+         * the atoms placed before it.
+         */
+        private boolean feasible(int k, int q, int t) {
+            if (used[t] || !candidates[q][t]) return false;
+            int[] placed = placedNeighbours[k];
+            for (int j = 0; j < placed.length; j++) {
+                IBond bond = bond(t, mapping[placed[j]]);
+                if (bond == null || !SubstructureMatcher.matches(placedBonds[k][j], bond))
+                    return false;
+            }
+            return true;
+        }
+
+        private IBond bond(int atom1, int atom2) {
+            int[] around = neighbours[atom1];
+            for (int j = 0; j < around.length; j++)
+                if (around[j] == atom2) return neighbourBonds[atom1][j];
+            return null;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.FingerprinterTool;
+import org.openscience.cdk.fingerprint.PathHasher;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.SymbolAndChargeQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.SymbolChargeIDQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AliphaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AtomicNumberAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.LogicalOperatorAtom;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * Screens out targets that cannot contain a substructure query, before the
+ * much more expensive subgraph search is done. The screen is a path
+ * fingerprint over element symbols only: every path of atoms with a known
+ * element in the query must be a path in any target that contains the
+ * query, so that a target whose fingerprint lacks a bit of the query
+ * fingerprint cannot match.
+ *
+ * <p>The target fingerprints can be calculated once and used for any
+ * number of queries:
+ * <pre>
+ * SubstructureScreen screen = new SubstructureScreen();
+ * List&lt;SMARTSQueryTool&gt; filters = ...;
+ * for (SMARTSQueryTool filter : filters) filter.setScreen(screen);
+ * for (IAtomContainer molecule : library) {
+ *     BitSet fingerprint = screen.getFingerprint(molecule);
+ *     for (SMARTSQueryTool filter : filters) {
+ *         if (filter.matches(molecule, fingerprint)) ...
+ *     }
+ * }
+ * System.out.println(screen.getScreenedOutCount() + " of " +
+ *                    screen.getCandidateCount() + " screened out");
+ * </pre>
+ *
+ * <p>Bond orders, aromaticity, charges and query atoms without a single
+ * element, such as <code>*</code> or <code>[C,N]</code> in SMARTS, do not
+ * contribute to the query fingerprint, so that the screen never rejects a
+ * target that matches. The counters are shared by all threads using the
+ * screen.
+ *
+ * @cdk.keyword    fingerprint
+ * @cdk.keyword    substructure search
+ * @cdk.module     smarts
+ * @cdk.githash
+ * @see            UniversalIsomorphismTester
+ */
+@TestClass("org.openscience.cdk.isomorphism.SubstructureScreenTest")
+public class SubstructureScreen {
+
+    private final int size;
+    private final int searchDepth;
+    private final PathHasher hasher = new PathHasher(false);
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong screenedOut = new AtomicLong();
+
+    /**
+     * Creates a screen with 1024 bit fingerprints of paths up to six bonds.
+     */
+    @TestMethod("testSubstructureScreen")
+    public SubstructureScreen() {
+        this(1024, 6);
+    }
+
+    /**
+     * Creates a screen.
+     *
+     * @param size        the number of bits of the fingerprints
+     * @param searchDepth the maximum length of the paths, in bonds
+     */
+    @TestMethod("testSubstructureScreen_int_int")
+    public SubstructureScreen(int size, int searchDepth) {
+        if (size < 1)
+            throw new IllegalArgumentException("The fingerprint size must be positive");
+        this.size = size;
+        this.searchDepth = searchDepth;
+    }
+
+    /**
+     * Calculates the screening fingerprint of a target molecule.
+     *
+     * @param  molecule the target
+     * @return the fingerprint
+     */
+    @TestMethod("testGetFingerprint_IAtomContainer")
+    public BitSet getFingerprint(IAtomContainer molecule) {
+        int[] atomCodes = new int[molecule.getAtomCount()];
+        for (int i = 0; i < atomCodes.length; i++)
+            atomCodes[i] = getAtomicNumber(molecule.getAtom(i).getSymbol());
+        return fingerprint(molecule, atomCodes);
+    }
+
+    /**
+     * Calculates the screening fingerprint of a query. The query may be an
+     * {@link org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer},
+     * for example a parsed SMARTS query, or a plain molecule.
+     *
+     * @param  query the query
+     * @return the fingerprint
+     */
+    @TestMethod("testGetQueryFingerprint_IAtomContainer")
+    public BitSet getQueryFingerprint(IAtomContainer query) {
+        int[] atomCodes = new int[query.getAtomCount()];
+        for (int i = 0; i < atomCodes.length; i++)
+            atomCodes[i] = getAtomicNumber(getElement(query.getAtom(i)));
+        return fingerprint(query, atomCodes);
+    }
+
+    /**
+     * Checks whether a target may contain the query, and counts the result.
+     *
+     * @param  queryFingerprint  the fingerprint of the query
+     * @param  targetFingerprint the fingerprint of the target
+     * @return false if the target cannot contain the query
+     */
+    @TestMethod("testIsCandidate_BitSet_BitSet")
+    public boolean isCandidate(BitSet queryFingerprint, BitSet targetFingerprint) {
+        candidates.incrementAndGet();
+        if (FingerprinterTool.isSubset(targetFingerprint, queryFingerprint))
+            return true;
+        screenedOut.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Screens the target and, if it passes, tests with the
+     * {@link UniversalIsomorphismTester} whether the query is a subgraph of
+     * the target.
+     *
+     * @param  target            the target molecule
+     * @param  targetFingerprint the fingerprint of the target
+     * @param  query             the query
+     * @param  queryFingerprint  the fingerprint of the query
+     * @return true if the query is a subgraph of the target
+     * @throws CDKException if the subgraph search fails
+     */
+    @TestMethod("testIsSubgraph_IAtomContainer_BitSet_IAtomContainer_BitSet")
+    public boolean isSubgraph(IAtomContainer target, BitSet targetFingerprint,
+                              IAtomContainer query, BitSet queryFingerprint)
+        throws CDKException {
+        return isCandidate(queryFingerprint, targetFingerprint)
+            && UniversalIsomorphismTester.isSubgraph(target, query);
+    }
+
+    /**
+     * Returns the number of targets screened.
+     *
+     * @return the number of calls to {@link #isCandidate(BitSet, BitSet)}
+     */
+    @TestMethod("testGetCandidateCount")
+    public long getCandidateCount() {
+        return candidates.get();
+    }
+
+    /**
+     * Returns the number of targets that were rejected by the screen.
+     *
+     * @return the number of targets screened out
+     */
+    @TestMethod("testGetScreenedOutCount")
+    public long getScreenedOutCount() {
+        return screenedOut.get();
+    }
+
+    /**
+     * Sets the counters back to zero.
+     */
+    @TestMethod("testResetCounts")
+    public void resetCounts() {
+        candidates.set(0);
+        screenedOut.set(0);
+    }
+
+    /**
+     * Returns the element a query atom requires, or null if it allows atoms
+     * of more than one element.
+     */
+    private static String getElement(IAtom atom) {
+        String symbol = null;
+        if (!(atom instanceof IQueryAtom)) {
+            symbol = atom.getSymbol();
+        } else if (atom instanceof AliphaticSymbolAtom
+                   || atom instanceof AromaticSymbolAtom
+                   || atom instanceof SymbolAndChargeQueryAtom
+                   || atom instanceof SymbolChargeIDQueryAtom) {
+            symbol = atom.getSymbol();
+        } else if (atom instanceof AtomicNumberAtom) {
+            Integer number = atom.getAtomicNumber();
+            symbol = number == null ? null : PeriodicTable.getSymbol(number);
+        } else if (atom instanceof LogicalOperatorAtom) {
+            LogicalOperatorAtom logical = (LogicalOperatorAtom)atom;
+            IQueryAtom right = logical.getRight();
+            String left = getElement(logical.getLeft());
+            if (right == null) {
+                if (!"not".equals(logical.getOperator())) symbol = left;
+            } else if ("and".equals(logical.getOperator())) {
+                symbol = left != null ? left : getElement(right);
+            } else if ("or".equals(logical.getOperator())) {
+                if (left != null && left.equals(getElement(right))) symbol = left;
+            }
+        }
+        return symbol;
+    }
+
+    /**
+     * Returns the atomic number of an element, or -1 for other symbols,
+     * including the R of pseudo atoms which the periodic table lists as 0.
+     */
+    private static int getAtomicNumber(String symbol) {
+        Integer number = symbol == null ? null : PeriodicTable.getAtomicNumber(symbol);
+        return number == null || number < 1 ? -1 : number;
+    }
+
+    /**
+     * Sets the bits of the paths of atoms with a known element. The bonds
+     * are all the same, only the elements of the paths count.
+     */
+    private BitSet fingerprint(IAtomContainer container, int[] atomCodes) {
+        int[] bondCodes = new int[container.getBondCount()];
+        BitSet fingerprint = new BitSet(size);
+        for (int hash : hasher.findPathHashes(container, searchDepth, atomCodes, bondCodes))
+            fingerprint.set(hasher.getBitPosition(hash, size));
+        return fingerprint;
+    }
+}
@@ -29,6 +29,8 @@
 package org.openscience.cdk.isomorphism;
 
 import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -100,6 +102,12 @@ import java.util.Map;
  * code and the same sequence of method calls for matching multi-atom query structures will
  * work for single atom query structures as well.
  * </p>
+ * <p>
+ * The static methods share one timeout, set with {@link #setTimeout(long)}.
+ * Searches that run concurrently with different timeouts, limits on the
+ * number of solutions, or that need to be cancelled, should use an
+ * {@link IsomorphismMatcher} instead.
+ * </p>
  *
  * @author      Stephane Werner from IXELIS mail@ixelis.net
  * @cdk.created 2002-07-17
@@ -107,12 +115,12 @@ import java.util.Map;
  * @cdk.module  standard
  * @cdk.githash
  */
+@TestClass("org.openscience.cdk.isomorphism.UniversalIsomorphismTesterTest")
 public class UniversalIsomorphismTester {
 
   final static int ID1 = 0;
   final static int ID2 = 1;
-  private static long start;
-  private static long timeout=-1;
+  private static volatile long timeout=-1;
 
   ///////////////////////////////////////////////////////////////////////////
   //                            Query Methods
@@ -135,28 +143,7 @@ public class UniversalIsomorphismTester {
    * @throws     CDKException if the first molecule is an instance of IQueryAtomContainer
    */
   public static boolean isIsomorph(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-	  if (g1 instanceof IQueryAtomContainer)
-		  throw new CDKException(
-		      "The first IAtomContainer must not be an IQueryAtomContainer"
-		  );
-	  
-	  if (g2.getAtomCount() != g1.getAtomCount()) return false;
-      // check single atom case
-      if (g2.getAtomCount() == 1) {
-          IAtom atom = g1.getAtom(0);
-          IAtom atom2 = g2.getAtom(0);
-		  if (atom instanceof IQueryAtom) {
-			  IQueryAtom qAtom = (IQueryAtom)atom;
-              return qAtom.matches(g2.getAtom(0));
-		  } else if (atom2 instanceof IQueryAtom) {
-              IQueryAtom qAtom = (IQueryAtom)atom2;
-              return qAtom.matches(g1.getAtom(0));
-          } else {
-			  String atomSymbol = atom.getSymbol();
-              return g1.getAtom(0).getSymbol().equals(atomSymbol);
-		  }
-      }
-	  return (getIsomorphMap(g1, g2) != null);
+    return matcher().isIsomorph(g1, g2);
   }
 
 
@@ -168,20 +155,7 @@ public class UniversalIsomorphismTester {
    * @return     the first isomorph mapping found projected of g1. This is a List of RMap objects containing Ids of matching bonds.
    */
   public static List<RMap> getIsomorphMap(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-	  if (g1 instanceof IQueryAtomContainer)
-		  throw new CDKException(
-		      "The first IAtomContainer must not be an IQueryAtomContainer"
-		  );
-	  
-    List<RMap> result = null;
-
-    List<List<RMap>> rMapsList = search(g1, g2, getBitSet(g1), getBitSet(g2), false, false);
-
-    if (!rMapsList.isEmpty()) {
-      result = rMapsList.get(0);
-    }
-
-    return result;
+    return matcher().getIsomorphMap(g1, g2);
   }
 
 
@@ -195,19 +169,7 @@ public class UniversalIsomorphismTester {
    * @throws CDKException if the first molecules is not an instance of {@link IQueryAtomContainer}
    */
   public static List<RMap> getIsomorphAtomsMap(IAtomContainer g1, IAtomContainer g2)  throws CDKException {
-	  if (g1 instanceof IQueryAtomContainer)
-		  throw new CDKException(
-		      "The first IAtomContainer must not be an IQueryAtomContainer"
-		  );
-	  
-      List<RMap> list = checkSingleAtomCases(g1, g2);
-      if (list == null) {
-          return makeAtomsMapOfBondsMap(UniversalIsomorphismTester.getIsomorphMap(g1, g2), g1, g2);
-      } else if (list.isEmpty()) {
-          return null;
-      } else {
-          return list;
-      }
+    return matcher().getIsomorphAtomsMap(g1, g2);
   }
 
 
@@ -220,7 +182,7 @@ public class UniversalIsomorphismTester {
    * @return     the list of all the 'mappings'
    */
   public static List<List<RMap>> getIsomorphMaps(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-    return search(g1, g2, getBitSet(g1), getBitSet(g2), true, true);
+    return matcher().getIsomorphMaps(g1, g2);
   }
 
 
@@ -247,7 +209,7 @@ public class UniversalIsomorphismTester {
    * @see #makeAtomsMapsOfBondsMaps(List, IAtomContainer, IAtomContainer)
    */
   public static List<List<RMap>> getSubgraphMaps(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-    return search(g1, g2, new BitSet(), getBitSet(g2), true, true);
+    return matcher().getSubgraphMaps(g1, g2);
   }
 
 
@@ -260,14 +222,7 @@ public class UniversalIsomorphismTester {
    *             {@link RMap} objects containing Ids of matching bonds.
    */
   public static List<RMap> getSubgraphMap(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-    List<RMap> result = null;
-    List<List<RMap>> rMapsList = search(g1, g2, new BitSet(), getBitSet(g2), false, false);
-
-    if (!rMapsList.isEmpty()) {
-      result = rMapsList.get(0);
-    }
-
-    return result;
+    return matcher().getSubgraphMap(g1, g2);
   }
 
 
@@ -284,16 +239,7 @@ public class UniversalIsomorphismTester {
   public static List<List<RMap>> getSubgraphAtomsMaps(IAtomContainer g1,
 		                                              IAtomContainer g2)
     throws CDKException {
-      List<RMap> list = checkSingleAtomCases(g1, g2);
-      if (list == null) {
-          return makeAtomsMapsOfBondsMaps(
-              UniversalIsomorphismTester.getSubgraphMaps(g1, g2), g1, g2
-          );
-      } else {
-          List<List<RMap>> atomsMap = new ArrayList<List<RMap>>();
-          atomsMap.add(list);
-          return atomsMap;
-      }
+    return matcher().getSubgraphAtomsMaps(g1, g2);
   }
 
   /**
@@ -308,14 +254,7 @@ public class UniversalIsomorphismTester {
   public static List<RMap> getSubgraphAtomsMap(IAtomContainer g1,
                                                IAtomContainer g2)
       throws CDKException {
-      List<RMap> list = checkSingleAtomCases(g1, g2);
-      if (list == null) {
-          return makeAtomsMapOfBondsMap(UniversalIsomorphismTester.getSubgraphMap(g1, g2), g1, g2);
-      } else if (list.isEmpty()) {
-          return null;
-      } else {
-          return list;
-      }
+    return matcher().getSubgraphAtomsMap(g1, g2);
   }
 
   /**
@@ -326,31 +265,7 @@ public class UniversalIsomorphismTester {
    * @return     true if g2 a subgraph on g1
    */
   public static boolean isSubgraph(IAtomContainer g1, IAtomContainer g2)  throws CDKException{
-	  if (g1 instanceof IQueryAtomContainer)
-		  throw new CDKException(
-		      "The first IAtomContainer must not be an IQueryAtomContainer"
-		  );
-	  
-      if (g2.getAtomCount() > g1.getAtomCount()) return false;
-      // test for single atom case
-      if (g2.getAtomCount() == 1) {
-          IAtom atom = g2.getAtom(0);
-		  for (int i=0; i<g1.getAtomCount(); i++) {
-		      IAtom atom2 = g1.getAtom(i);
-		      if (atom instanceof IQueryAtom) {
-		    	  IQueryAtom qAtom = (IQueryAtom)atom;
-		    	  if (qAtom.matches(atom2)) return true;
-		      } else if (atom2 instanceof IQueryAtom) {
-                  IQueryAtom qAtom = (IQueryAtom)atom2;
-                  if (qAtom.matches(atom)) return true;
-              } else {
-		    	  if (atom2.getSymbol().equals(atom.getSymbol())) return true;
-		      }
-		  }
-          return false;
-      }
-      if (!testSubgraphHeuristics(g1, g2)) return false;
-	  return (getSubgraphMap(g1, g2) != null);
+    return matcher().isSubgraph(g1, g2);
   }
 
 
@@ -366,16 +281,7 @@ public class UniversalIsomorphismTester {
    *             found projected of g1 (list of AtomContainer )
    */
   public static List<IAtomContainer> getOverlaps(IAtomContainer g1, IAtomContainer g2) throws CDKException{
-      start=System.currentTimeMillis();
-      List<List<RMap>> rMapsList = search(g1, g2, new BitSet(), new BitSet(), true, false);
-
-      // projection on G1
-      List<IAtomContainer> graphList = projectList(rMapsList, g1, ID1);
-
-      // reduction of set of solution (isomorphism and substructure
-      // with different 'mappings'
-
-      return getMaximum(graphList);
+    return matcher().getOverlaps(g1, g2);
   }
 
 
@@ -440,54 +346,7 @@ public class UniversalIsomorphismTester {
    */
   public static List<List<RMap>> search(IAtomContainer g1, IAtomContainer g2, BitSet c1,
 		  BitSet c2, boolean findAllStructure, boolean findAllMap)  throws CDKException{
-	  // remember start time
-	  start = System.currentTimeMillis();
-	  
-      // handle single query atom case separately
-      if (g2.getAtomCount() == 1) {
-          List<List<RMap>> matches = new ArrayList<List<RMap>>();
-          IAtom queryAtom = g2.getAtom(0);
-
-          // we can have a IQueryAtomContainer *or* an IAtomContainer
-          if (queryAtom instanceof IQueryAtom) {
-              IQueryAtom qAtom = (IQueryAtom) queryAtom;
-              for (IAtom atom : g1.atoms()) {
-                  if (qAtom.matches(atom)) {
-                      List<RMap> lmap = new ArrayList<RMap>();
-                      lmap.add(new RMap(g1.getAtomNumber(atom), 0));
-                      matches.add(lmap);
-                  }
-              }
-          } else {
-              for (IAtom atom : g1.atoms()) {
-                  if (queryAtom.getSymbol().equals(atom.getSymbol())) {
-                      List<RMap> lmap = new ArrayList<RMap>();
-                      lmap.add(new RMap(g1.getAtomNumber(atom), 0));
-                      matches.add(lmap);
-                  }
-              }
-          }
-          return matches;
-      }
-
-	  // reset result
-	  List<List<RMap>> rMapsList = new ArrayList<List<RMap>>();
-
-	  // build the RGraph corresponding to this problem
-	  RGraph rGraph = buildRGraph(g1, g2); 
-	  // Set time data
-	  rGraph.setTimeout(UniversalIsomorphismTester.timeout);
-	  rGraph.setStart(UniversalIsomorphismTester.start);
-	  // parse the RGraph with the given constrains and options
-	  rGraph.parse(c1, c2, findAllStructure, findAllMap);
-	  List<BitSet> solutionList = rGraph.getSolutions();
-
-	  // conversions of RGraph's internal solutions to G1/G2 mappings
-      for (BitSet set : solutionList) {
-          rMapsList.add(rGraph.bitSetToRMap(set));
-      }
-
-	  return rMapsList;
+    return matcher().search(g1, g2, c1, c2, findAllStructure, findAllMap);
   }
 
   //////////////////////////////////////
@@ -572,35 +431,6 @@ public class UniversalIsomorphismTester {
     return graphList;
   }
 
-  /**
-   * Removes all redundant solution.
-   *
-   * @param  graphList  the list of structure to clean
-   * @return            the list cleaned
-   * @throws CDKException if there is a problem in obtaining subgraphs
-   */
-  private static List<IAtomContainer> getMaximum(List<IAtomContainer> graphList) throws CDKException {
-    List<IAtomContainer> reducedGraphList = new ArrayList<IAtomContainer>();
-    reducedGraphList.addAll(graphList);
-
-    for (int i = 0; i < graphList.size(); i++) {
-      IAtomContainer gi = graphList.get(i);
-
-      for (int j = i + 1; j < graphList.size(); j++) {
-        IAtomContainer gj = graphList.get(j);
-
-        // Gi included in Gj or Gj included in Gi then
-        // reduce the irrelevant solution
-        if (isSubgraph(gj, gi)) {
-            reducedGraphList.remove(gi);
-        } else if (isSubgraph(gi, gj)) {
-            reducedGraphList.remove(gj);
-        }
-      }
-    }
-    return reducedGraphList;
-  }
-
   /**
    *  Checks for single atom cases before doing subgraph/isomorphism search.
    *
@@ -987,7 +817,8 @@ public class UniversalIsomorphismTester {
    * @return    true if the subgraph ac2 has a chance to be a subgraph of ac1
    * @throws CDKException if the first molecule is an instance of {@link IQueryAtomContainer}
    */
-  private static boolean testSubgraphHeuristics(IAtomContainer ac1, IAtomContainer ac2)
+  @TestMethod("testTestSubgraphHeuristics_IAtomContainer_IAtomContainer")
+  static boolean testSubgraphHeuristics(IAtomContainer ac1, IAtomContainer ac2)
   	throws CDKException {
 	  if (ac1 instanceof IQueryAtomContainer)
 		  throw new CDKException(
@@ -1084,12 +915,22 @@ public class UniversalIsomorphismTester {
   
   /**
    * Sets the time in milliseconds until the substructure search will be breaked.
+   * The timeout is shared by all callers of the static methods; use an
+   * {@link IsomorphismMatcher} for searches with their own timeout.
    * @param timeout
    * Time in milliseconds. -1 to ignore the timeout.
    */
   public static void setTimeout(long timeout) {
 	  UniversalIsomorphismTester.timeout = timeout;
   }
+
+  /**
+   * Returns a matcher for the static methods, which uses the timeout set with
+   * {@link #setTimeout(long)} and returns the solutions found when it is reached.
+   */
+  private static IsomorphismMatcher matcher() {
+	  return new IsomorphismMatcher(new IsomorphismOptions().setTimeout(Math.max(timeout, -1)), false);
+  }
   
 }
 
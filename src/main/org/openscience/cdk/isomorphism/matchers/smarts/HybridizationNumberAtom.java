@@ -92,4 +92,14 @@ public class HybridizationNumberAtom extends SMARTSAtom {
         return ("HybridizationNumberAtom(" + hybridization.toString() + ")");
     }
 
+    /**
+     * Returns the hybridization of the atoms this atom matches.
+     *
+     * @return the hybridization, or null if the hybridization number was
+     *         not between 1 and 8
+     */
+    public Hybridization getQueryHybridization() {
+        return hybridization;
+    }
+
 }
\ No newline at end of file
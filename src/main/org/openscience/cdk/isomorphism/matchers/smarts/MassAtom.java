@@ -51,7 +51,7 @@ public class MassAtom extends SMARTSAtom{
      * @see org.openscience.cdk.isomorphism.matchers.smarts.SMARTSAtom#matches(org.openscience.cdk.interfaces.IAtom)
      */
     public boolean matches(IAtom atom){
-        return atom.getMassNumber()==this.getMassNumber();
+        return atom.getMassNumber() != null && atom.getMassNumber().equals(this.getMassNumber());
     }
     /* (non-Javadoc)
      * @see org.openscience.cdk.PseudoAtom#toString()
@@ -70,4 +70,13 @@ public class PeriodicGroupNumberAtom extends SMARTSAtom {
 		return ("PeriodicGroupNumberAtom(" + this.groupNumber + ")");
 	}
 
+
+	/**
+	 * Returns the periodic group number of the atoms this atom matches.
+	 *
+	 * @return the periodic group number
+	 */
+	public int getGroupNumber() {
+		return groupNumber;
+	}
 }
\ No newline at end of file
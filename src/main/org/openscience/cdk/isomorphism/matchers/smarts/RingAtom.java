@@ -78,4 +78,13 @@ public class RingAtom extends SMARTSAtom {
 	public String toString() {
 		return ("RingAtom(" + ringSize + ")");
 	}
+
+	/**
+	 * Returns the size of the rings this atom matches atoms in.
+	 *
+	 * @return the ring size
+	 */
+	public int getRingSize() {
+		return ringSize;
+	}
 }
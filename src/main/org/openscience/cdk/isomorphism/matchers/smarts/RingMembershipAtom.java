@@ -53,4 +53,13 @@ public class RingMembershipAtom extends SMARTSAtom {
         }
 		return false;
 	}
+
+	/**
+	 * Returns the number of SSSR rings of the atoms this atom matches.
+	 *
+	 * @return the number of SSSR rings
+	 */
+	public int getNumSSSR() {
+		return numSSSR;
+	}
 }
@@ -51,11 +51,19 @@ public class SmallestRingAtom extends SMARTSAtom {
 			if (rings == null || rings.size() == 0) {
 				return false;
 			}
-			Collections.sort(rings);
-			if ((rings.get(0)).intValue() == smallestRingSize) {
-				return true;
-			}
+			// the target may be matched from several threads, so the
+			// ring sizes are not sorted in place
+			return Collections.min(rings).intValue() == smallestRingSize;
 		}
 		return false;
 	}
+
+	/**
+	 * Returns the smallest ring size of the atoms this atom matches.
+	 *
+	 * @return the smallest ring size
+	 */
+	public int getSmallestRingSize() {
+		return smallestRingSize;
+	}
 }
@@ -32,6 +32,9 @@ import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
 /**
   * This class implements the Resolution Graph (RGraph).
   * The RGraph is a graph based representation of the search problem.
@@ -94,6 +97,7 @@ import java.util.List;
   * @cdk.module  standard
  * @cdk.githash
   */
+@TestClass("org.openscience.cdk.isomorphism.mcss.RGraphTest")
 public class RGraph
 {
     // an RGraph is a list of RGraph nodes
@@ -129,6 +133,10 @@ public class RGraph
     
     private long timeout = -1;
     private long start;
+    private int maxSolutions = -1;
+    private boolean interruptible = false;
+    private boolean timedOut = false;
+    private boolean interrupted = false;
     
     /**
      * Constructor for the RGraph object and creates an empty RGraph.
@@ -225,8 +233,12 @@ public class RGraph
      */
     public void parse(BitSet c1, BitSet c2, boolean findAllStructure, boolean findAllMap)
     {
-        // initialize the list of solution
+        // initialize the list of solution and the search state
         solutionList.clear();
+        stop = false;
+        nbIteration = 0;
+        timedOut = false;
+        interrupted = false;
         
         // builds the set of starting nodes
         // according to the constrains
@@ -259,6 +271,12 @@ public class RGraph
         
         // Test whether the timeout is reached. Stop searching.
         if(this.timeout > -1 && (System.currentTimeMillis() - this.start) > this.timeout) {
+        	timedOut = true;
+        	stop = true;
+        }
+        // Test whether the thread was interrupted. Stop searching.
+        if(interruptible && Thread.currentThread().isInterrupted()) {
+        	interrupted = true;
         	stop = true;
         }
 
@@ -385,6 +403,12 @@ public class RGraph
                 // if it is really a new solution add it to the 
                 // list of current solution
                 solutionList.add(traversed);
+
+                // stop if we have as many solutions as asked for
+                if(maxSolutions != -1 && solutionList.size() >= maxSolutions)
+                {
+                    stop = true;
+                }
             }
 
             if(!findAllStructure)
@@ -642,6 +666,47 @@ public class RGraph
 	 */
 	public void setStart(long start) {
 		this.start = start;
-	}   
+	}
+
+	/**
+	 * Sets the maximum number of solutions. The parsing stops as soon as
+	 * that many solutions were found.
+	 * @param maxSolutions
+	 * The maximum number of solutions. -1 for no maximum.
+	 */
+	@TestMethod("testSetMaxSolutions_int")
+	public void setMaxSolutions(int maxSolutions) {
+		this.maxSolutions = maxSolutions;
+	}
+
+	/**
+	 * Sets whether the parsing stops when the thread doing it is
+	 * interrupted. The interrupted status of the thread is left set.
+	 * @param interruptible
+	 * true to stop on interruption
+	 */
+	@TestMethod("testSetInterruptible_boolean")
+	public void setInterruptible(boolean interruptible) {
+		this.interruptible = interruptible;
+	}
+
+	/**
+	 * Returns whether the last parsing was stopped by the timeout.
+	 * @return true if the timeout was reached
+	 */
+	@TestMethod("testIsTimedOut")
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	/**
+	 * Returns whether the last parsing was stopped by an interruption
+	 * of the thread.
+	 * @return true if the thread was interrupted
+	 */
+	@TestMethod("testIsInterrupted")
+	public boolean isInterrupted() {
+		return interrupted;
+	}
 }
 
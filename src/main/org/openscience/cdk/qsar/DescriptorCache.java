@@ -0,0 +1,504 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
+import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.PathTools;
+import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.ringsearch.RingSearch;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
+
+/**
+ * Caches the preprocessing results that several molecular descriptors need,
+ * so that they are computed once per molecule instead of once per descriptor.
+ * The cache holds the adjacency matrix, the topological distance matrices
+ * with and without hydrogens, the smallest set of smallest rings, and the
+ * outcome of atom type perception and of the aromaticity detection that
+ * follows it.
+ * <p/>
+ * A cache is attached to a molecule as a property, which the
+ * {@link DescriptorEngine} does for the duration of
+ * {@link DescriptorEngine#process(IAtomContainer)}:
+ * <pre>
+ * boolean attached = DescriptorCache.attach(molecule);
+ * try {
+ *     // calculate descriptors
+ * } finally {
+ *     if (attached) DescriptorCache.detach(molecule);
+ * }
+ * </pre>
+ * Because cloning a molecule copies its properties, the copies descriptors
+ * make still find the cache. The cache remembers the structure of the molecule
+ * it was attached to. Atom types and aromaticity are only taken from it for
+ * containers that have the same atoms, bonds, charges, hydrogen counts and
+ * ring and aromaticity flags, in the same order. The distances and rings only
+ * depend on the bonds, and are also taken from it for a container to which
+ * atoms with a single bond each have been appended, such as the hydrogens
+ * added by {@link AtomContainerManipulator#convertImplicitToExplicitHydrogens(IAtomContainer)}.
+ * For any other container, including a molecule that a descriptor has
+ * otherwise modified, the values are computed as if there were no cache.
+ * <p/>
+ * The cached matrices are shared, and must not be modified by the caller.
+ * The lazy computations are synchronized, so that the copies of a molecule
+ * may be processed on several threads.
+ *
+ * @cdk.module qsarmolecular
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.qsar.DescriptorCacheTest")
+public class DescriptorCache {
+
+    /** The property key under which the cache is attached to a molecule. */
+    public static final String CACHE_KEY = "org.openscience.cdk.qsar.DescriptorCache";
+
+    /** The distance {@link PathTools#computeFloydAPSP(int[][])} gives unconnected atoms. */
+    private static final int UNCONNECTED = 999999999;
+
+    private final Structure structure;
+    private final int atomCount;
+    private final int[] bondAtoms;
+
+    private int[][] adjacencyMatrix;
+    private int[][] topologicalDistances;
+    private int[][] heavyAtomDistances;
+    private int[][] sssr;
+
+    private IAtomType[] atomTypes;
+    private boolean aromatic;
+    private boolean[] atomFlags;
+    private boolean[] bondFlags;
+
+    private DescriptorCache(IAtomContainer container) {
+        this.structure = new Structure(container);
+        this.atomCount = container.getAtomCount();
+        this.bondAtoms = bondAtoms(container);
+    }
+
+    /**
+     * Attaches a new cache to the given molecule, unless it already has one.
+     *
+     * @param  container the molecule to attach the cache to
+     * @return true if a cache was attached, false if the molecule already had one
+     */
+    @TestMethod("testAttach")
+    public static boolean attach(IAtomContainer container) {
+        if (container.getProperty(CACHE_KEY) instanceof DescriptorCache) return false;
+        container.setProperty(CACHE_KEY, new DescriptorCache(container));
+        return true;
+    }
+
+    /**
+     * Removes the cache from the given molecule.
+     *
+     * @param container the molecule to remove the cache from
+     */
+    @TestMethod("testAttach")
+    public static void detach(IAtomContainer container) {
+        container.removeProperty(CACHE_KEY);
+    }
+
+    /**
+     * Returns the adjacency matrix of the container, as computed by
+     * {@link AdjacencyMatrix#getMatrix(IAtomContainer)}.
+     *
+     * @param  container the container to get the matrix for
+     * @return the adjacency matrix, which must not be modified
+     */
+    @TestMethod("testGetAdjacencyMatrix")
+    public static int[][] getAdjacencyMatrix(IAtomContainer container) {
+        DescriptorCache cache = lookupBonds(container);
+        if (cache == null || cache.atomCount != container.getAtomCount())
+            return AdjacencyMatrix.getMatrix(container);
+        synchronized (cache) {
+            if (cache.adjacencyMatrix == null)
+                cache.adjacencyMatrix = AdjacencyMatrix.getMatrix(container);
+            return cache.adjacencyMatrix;
+        }
+    }
+
+    /**
+     * Returns the topological distances between the atoms of the container,
+     * as computed by {@link PathTools#computeFloydAPSP(int[][])} from the
+     * adjacency matrix. For a container with appended atoms, the cached
+     * distances are extended to those atoms.
+     *
+     * @param  container the container to get the distances for
+     * @return the distance matrix, which must not be modified
+     */
+    @TestMethod("testGetTopologicalDistances,testAppendedHydrogens")
+    public static int[][] getTopologicalDistances(IAtomContainer container) {
+        DescriptorCache cache = lookupBonds(container);
+        if (cache == null) return PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(container));
+        int[][] distances;
+        synchronized (cache) {
+            if (cache.topologicalDistances == null)
+                cache.topologicalDistances = PathTools.computeFloydAPSP(cache.adjacency());
+            distances = cache.topologicalDistances;
+        }
+        return cache.atomCount == container.getAtomCount() ? distances : cache.extend(distances, container);
+    }
+
+    /**
+     * Returns the topological distances between the atoms of the container
+     * after removing its hydrogens with
+     * {@link AtomContainerManipulator#removeHydrogens(IAtomContainer)}. The rows
+     * and columns follow the order of the remaining atoms.
+     *
+     * @param  container the container to get the distances for
+     * @return the distance matrix, which must not be modified
+     */
+    @TestMethod("testGetHeavyAtomDistances")
+    public static int[][] getHeavyAtomDistances(IAtomContainer container) {
+        DescriptorCache cache = lookup(container);
+        if (cache == null) return computeHeavyAtomDistances(container);
+        synchronized (cache) {
+            if (cache.heavyAtomDistances == null)
+                cache.heavyAtomDistances = computeHeavyAtomDistances(container);
+            return cache.heavyAtomDistances;
+        }
+    }
+
+    /**
+     * Returns a smallest set of smallest rings of the container, as found by
+     * {@link RingSearch#getSSSR()}. Like
+     * {@link org.openscience.cdk.ringsearch.SSSRFinder#findSSSR()}, this flags
+     * the ring atoms with {@link CDKConstants#ISINRING}. The rings are perceived
+     * once per molecule and rebuilt from the atoms and bonds of each container.
+     *
+     * @param  container the container to get the rings for
+     * @return the rings, as a new ring set
+     */
+    @TestMethod("testGetSSSR,testAppendedHydrogens")
+    public static IRingSet getSSSR(IAtomContainer container) {
+        DescriptorCache cache = lookupBonds(container);
+        RingSearch search = RingSearch.getInstance(container);
+        int[][] rings;
+        if (cache == null) {
+            rings = search.getSSSR();
+        } else {
+            synchronized (cache) {
+                if (cache.sssr == null) cache.sssr = search.getSSSR();
+                rings = cache.sssr;
+            }
+        }
+        for (int[] ring : rings)
+            for (int atom : ring) container.getAtom(atom).setFlag(CDKConstants.ISINRING, true);
+        return search.toRingSet(rings);
+    }
+
+    /**
+     * Perceives the atom types of the container, which is the same as calling
+     * {@link AtomContainerManipulator#percieveAtomTypesAndConfigureAtoms(IAtomContainer)}.
+     * When the container has a matching cache, the atom types found for the first
+     * container are applied instead of perceiving them again.
+     *
+     * @param  container the container to configure
+     * @return the atom type of each atom, or null for pseudo atoms and atoms
+     *         without a matching type. The array must not be modified
+     * @throws CDKException if the atom types could not be perceived
+     */
+    @TestMethod("testPerceiveAtomTypes")
+    public static IAtomType[] perceiveAtomTypes(IAtomContainer container) throws CDKException {
+        DescriptorCache cache = lookup(container);
+        if (cache == null) return matchAtomTypes(container);
+        synchronized (cache) {
+            cache.configureAtomTypes(container);
+            return cache.atomTypes;
+        }
+    }
+
+    /**
+     * Perceives the atom types of the container and then detects its aromaticity,
+     * which is the same as calling
+     * {@link AtomContainerManipulator#percieveAtomTypesAndConfigureAtoms(IAtomContainer)}
+     * followed by {@link CDKHueckelAromaticityDetector#detectAromaticity(IAtomContainer)}.
+     * When the container has a matching cache, the atom types and flags found for
+     * the first container are applied instead of perceiving them again.
+     *
+     * @param  container the container to configure
+     * @return true if some aromaticity was found
+     * @throws CDKException if the atom types or aromaticity could not be perceived
+     */
+    @TestMethod("testPerceiveAtomTypesAndAromaticity")
+    public static boolean perceiveAtomTypesAndAromaticity(IAtomContainer container) throws CDKException {
+        DescriptorCache cache = lookup(container);
+        if (cache == null) {
+            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
+            return CDKHueckelAromaticityDetector.detectAromaticity(container);
+        }
+        synchronized (cache) {
+            cache.configureAtomTypes(container);
+            if (cache.atomFlags == null) {
+                cache.detectAromaticity(container);
+            } else {
+                cache.configureAromaticity(container);
+            }
+            return cache.aromatic;
+        }
+    }
+
+    /**
+     * Returns the cache attached to the container if it matches its structure.
+     */
+    private static DescriptorCache lookup(IAtomContainer container) {
+        Object property = container.getProperty(CACHE_KEY);
+        if (!(property instanceof DescriptorCache)) return null;
+        DescriptorCache cache = (DescriptorCache) property;
+        return cache.structure.equals(new Structure(container)) ? cache : null;
+    }
+
+    /**
+     * Returns the cache attached to the container if it has the bonds of the
+     * molecule the cache was attached to, followed by nothing but bonds that
+     * each connect one of the original atoms to one of the appended atoms.
+     */
+    private static DescriptorCache lookupBonds(IAtomContainer container) {
+        Object property = container.getProperty(CACHE_KEY);
+        if (!(property instanceof DescriptorCache)) return null;
+        DescriptorCache cache = (DescriptorCache) property;
+        int count = cache.atomCount;
+        int appended = container.getAtomCount() - count;
+        int[] bonds = bondAtoms(container);
+        if (appended < 0 || bonds.length != cache.bondAtoms.length + 2 * appended) return null;
+        for (int i = 0; i < cache.bondAtoms.length; i++)
+            if (bonds[i] != cache.bondAtoms[i]) return null;
+        boolean[] bonded = new boolean[appended];
+        for (int i = cache.bondAtoms.length; i < bonds.length; i += 2) {
+            int atom = Math.max(bonds[i], bonds[i + 1]) - count;
+            if (Math.min(bonds[i], bonds[i + 1]) < 0 || Math.min(bonds[i], bonds[i + 1]) >= count
+                || atom < 0 || bonded[atom])
+                return null;
+            bonded[atom] = true;
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the indices of the atoms of each bond, two per bond, with -1 for
+     * a missing atom or one that is not in the container.
+     */
+    private static int[] bondAtoms(IAtomContainer container) {
+        Map<IAtom, Integer> indices = new HashMap<IAtom, Integer>();
+        for (int i = 0; i < container.getAtomCount(); i++)
+            indices.put(container.getAtom(i), i);
+        int[] bonds = new int[2 * container.getBondCount()];
+        for (int i = 0; i < container.getBondCount(); i++) {
+            IBond bond = container.getBond(i);
+            bonds[2 * i] = Structure.index(indices, bond.getAtomCount() == 2 ? bond.getAtom(0) : null);
+            bonds[2 * i + 1] = Structure.index(indices, bond.getAtomCount() == 2 ? bond.getAtom(1) : null);
+        }
+        return bonds;
+    }
+
+    /**
+     * Builds the adjacency matrix of the molecule the cache was attached to.
+     */
+    private int[][] adjacency() {
+        int[][] matrix = new int[atomCount][atomCount];
+        for (int i = 0; i < bondAtoms.length; i += 2) {
+            if (bondAtoms[i] < 0 || bondAtoms[i + 1] < 0) continue;
+            matrix[bondAtoms[i]][bondAtoms[i + 1]] = 1;
+            matrix[bondAtoms[i + 1]][bondAtoms[i]] = 1;
+        }
+        return matrix;
+    }
+
+    /**
+     * Extends the distances between the original atoms to the appended atoms
+     * of the container, which are each one bond away from their neighbour.
+     */
+    private int[][] extend(int[][] distances, IAtomContainer container) {
+        int size = container.getAtomCount();
+        int[] bonds = bondAtoms(container);
+        int[] neighbour = new int[size];
+        for (int i = 0; i < atomCount; i++) neighbour[i] = i;
+        for (int i = bondAtoms.length; i < bonds.length; i += 2)
+            neighbour[Math.max(bonds[i], bonds[i + 1])] = Math.min(bonds[i], bonds[i + 1]);
+        int[][] extended = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int distance = distances[neighbour[i]][neighbour[j]];
+                if (i == j) {
+                    extended[i][j] = 0;
+                } else if (distance == UNCONNECTED) {
+                    extended[i][j] = UNCONNECTED;
+                } else {
+                    extended[i][j] = distance + (i < atomCount ? 0 : 1) + (j < atomCount ? 0 : 1);
+                }
+            }
+        }
+        return extended;
+    }
+
+    private static int[][] computeHeavyAtomDistances(IAtomContainer container) {
+        IAtomContainer local = AtomContainerManipulator.removeHydrogens(container);
+        return PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(local));
+    }
+
+    /**
+     * Perceives and configures the atom types of the container, skipping pseudo
+     * atoms, as {@link AtomContainerManipulator#percieveAtomTypesAndConfigureAtoms(IAtomContainer)}
+     * does.
+     */
+    private static IAtomType[] matchAtomTypes(IAtomContainer container) throws CDKException {
+        CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(container.getBuilder());
+        IAtomType[] types = new IAtomType[container.getAtomCount()];
+        for (int i = 0; i < types.length; i++) {
+            IAtom atom = container.getAtom(i);
+            if (!(atom instanceof IPseudoAtom)) {
+                IAtomType matched = matcher.findMatchingAtomType(container, atom);
+                if (matched != null) AtomTypeManipulator.configure(atom, matched);
+                types[i] = matched;
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Configures the container with the remembered atom types, perceiving them
+     * first if needed.
+     */
+    private void configureAtomTypes(IAtomContainer container) throws CDKException {
+        if (atomTypes == null) {
+            atomTypes = matchAtomTypes(container);
+            return;
+        }
+        for (int i = 0; i < atomTypes.length; i++)
+            if (atomTypes[i] != null) AtomTypeManipulator.configure(container.getAtom(i), atomTypes[i]);
+    }
+
+    /**
+     * Detects the aromaticity of the typed container, and remembers the outcome.
+     */
+    private void detectAromaticity(IAtomContainer container) throws CDKException {
+        boolean found = CDKHueckelAromaticityDetector.detectAromaticity(container);
+
+        boolean[] atoms = new boolean[2 * container.getAtomCount()];
+        for (int i = 0; i < container.getAtomCount(); i++) {
+            IAtom atom = container.getAtom(i);
+            atoms[2 * i] = atom.getFlag(CDKConstants.ISAROMATIC);
+            atoms[2 * i + 1] = atom.getFlag(CDKConstants.ISINRING);
+        }
+        boolean[] bonds = new boolean[2 * container.getBondCount()];
+        for (int i = 0; i < container.getBondCount(); i++) {
+            IBond bond = container.getBond(i);
+            bonds[2 * i] = bond.getFlag(CDKConstants.ISAROMATIC);
+            bonds[2 * i + 1] = bond.getFlag(CDKConstants.ISINRING);
+        }
+        this.atomFlags = atoms;
+        this.bondFlags = bonds;
+        this.aromatic = found;
+    }
+
+    /**
+     * Applies the remembered aromaticity to the container.
+     */
+    private void configureAromaticity(IAtomContainer container) {
+        for (int i = 0; i < container.getAtomCount(); i++) {
+            IAtom atom = container.getAtom(i);
+            atom.setFlag(CDKConstants.ISAROMATIC, atomFlags[2 * i]);
+            atom.setFlag(CDKConstants.ISINRING, atomFlags[2 * i + 1]);
+        }
+        for (int i = 0; i < container.getBondCount(); i++) {
+            IBond bond = container.getBond(i);
+            bond.setFlag(CDKConstants.ISAROMATIC, bondFlags[2 * i]);
+            bond.setFlag(CDKConstants.ISINRING, bondFlags[2 * i + 1]);
+        }
+    }
+
+    /**
+     * The parts of a molecule that the cached values depend on: the element,
+     * atom type, charge, hybridization, hydrogen count and flags of each atom,
+     * and the atoms, order and flags of each bond, by index.
+     */
+    private static class Structure {
+
+        private final String[] labels;
+        private final int[] values;
+
+        Structure(IAtomContainer container) {
+            int atomCount = container.getAtomCount();
+            int bondCount = container.getBondCount();
+            labels = new String[2 * atomCount];
+            values = new int[4 + 4 * atomCount + 4 * bondCount];
+            int n = 0;
+            values[n++] = atomCount;
+            values[n++] = bondCount;
+            values[n++] = container.getLonePairCount();
+            values[n++] = container.getSingleElectronCount();
+            Map<IAtom, Integer> indices = new HashMap<IAtom, Integer>();
+            for (int i = 0; i < atomCount; i++) {
+                IAtom atom = container.getAtom(i);
+                indices.put(atom, i);
+                labels[2 * i] = atom.getSymbol();
+                labels[2 * i + 1] = atom.getAtomTypeName();
+                values[n++] = atom.getFormalCharge() == null ? Integer.MIN_VALUE : atom.getFormalCharge();
+                values[n++] = atom.getImplicitHydrogenCount() == null ? Integer.MIN_VALUE : atom.getImplicitHydrogenCount();
+                values[n++] = atom.getHybridization() == null ? -1 : atom.getHybridization().ordinal();
+                values[n++] = flags(atom.getFlag(CDKConstants.ISAROMATIC), atom.getFlag(CDKConstants.ISINRING));
+            }
+            for (int i = 0; i < bondCount; i++) {
+                IBond bond = container.getBond(i);
+                values[n++] = index(indices, bond.getAtomCount() > 0 ? bond.getAtom(0) : null);
+                values[n++] = index(indices, bond.getAtomCount() > 1 ? bond.getAtom(1) : null);
+                values[n++] = bond.getAtomCount() * 16 + (bond.getOrder() == null ? 15 : bond.getOrder().ordinal());
+                values[n++] = flags(bond.getFlag(CDKConstants.ISAROMATIC), bond.getFlag(CDKConstants.ISINRING));
+            }
+        }
+
+        private static int index(Map<IAtom, Integer> indices, IAtom atom) {
+            Integer index = indices.get(atom);
+            return index == null ? -1 : index;
+        }
+
+        private static int flags(boolean aromatic, boolean inRing) {
+            return (aromatic ? 1 : 0) | (inRing ? 2 : 0);
+        }
+
+        public boolean equals(Object object) {
+            if (!(object instanceof Structure)) return false;
+            Structure other = (Structure) object;
+            return Arrays.equals(values, other.values) && Arrays.equals(labels, other.labels);
+        }
+
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+    }
+}
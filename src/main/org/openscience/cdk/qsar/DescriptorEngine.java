@@ -46,6 +46,10 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -184,7 +188,9 @@ public class DescriptorEngine {
      * The results for a given descriptor as well as associated parameters and
      * specifications are used to create a <code>DescriptorValue</code>
      * object which is then added to the molecule as a property keyed
-     * on the <code>DescriptorSpecification</code> object for that descriptor
+     * on the <code>DescriptorSpecification</code> object for that descriptor.
+     * While the descriptors are calculated, a {@link DescriptorCache} is attached to
+     * the molecule, so that they share the preprocessing steps they have in common.
      *
      * @param molecule The molecule for which we want to calculate descriptors
      * @throws CDKException if an error occured during descriptor calculation or the descriptors and/or
@@ -196,11 +202,97 @@ public class DescriptorEngine {
         if (speclist.size() != descriptors.size())
             throw new CDKException("Number of specs and descriptors do not match");
 
+        boolean attached = DescriptorCache.attach(molecule);
+        try {
+            calculate(molecule, null);
+        } finally {
+            if (attached) DescriptorCache.detach(molecule);
+        }
+    }
+
+    /**
+     * Calculates all available (or only those specified) descriptors for a molecule,
+     * evaluating the molecular descriptors concurrently on the given executor.
+     * <p/>
+     * Each molecular descriptor is calculated on its own copy of the molecule, so that
+     * descriptors which modify the molecule do not affect each other. The results are
+     * added to the molecule as properties, as done by {@link #process(IAtomContainer)}.
+     * Atomic and bond descriptors are calculated on the calling thread.
+     * <p/>
+     * The descriptor instances of this engine are shared by the tasks, so one engine
+     * must not process several molecules at the same time. Use a
+     * {@link ParallelDescriptorEngine} to process many molecules in parallel.
+     *
+     * @param molecule The molecule for which we want to calculate descriptors
+     * @param executor The executor that runs the molecular descriptors
+     * @throws CDKException if an error occured during descriptor calculation or the descriptors and/or
+     *                      specifications have not been initialized
+     */
+    @TestMethod(value="testProcess_ExecutorService")
+    public void process(IAtomContainer molecule, ExecutorService executor) throws CDKException {
+
+        if (descriptors == null || speclist == null) throw new CDKException("Descriptors have not been instantiated");
+        if (speclist.size() != descriptors.size())
+            throw new CDKException("Number of specs and descriptors do not match");
+
+        boolean attached = DescriptorCache.attach(molecule);
+        try {
+            calculate(molecule, submit(molecule, executor));
+        } finally {
+            if (attached) DescriptorCache.detach(molecule);
+        }
+    }
 
+    /**
+     * Submits the molecular descriptors to the executor, each with its own copy of
+     * the molecule. The list has a null entry for the other descriptors.
+     */
+    private List<Future<DescriptorValue>> submit(IAtomContainer molecule, ExecutorService executor) throws CDKException {
+        List<Future<DescriptorValue>> values = new ArrayList<Future<DescriptorValue>>();
+        for (IDescriptor descriptor : descriptors) {
+            if (descriptor instanceof IMolecularDescriptor) {
+                final IMolecularDescriptor molecularDescriptor = (IMolecularDescriptor) descriptor;
+                final IAtomContainer copy;
+                try {
+                    copy = (IAtomContainer) molecule.clone();
+                } catch (CloneNotSupportedException exception) {
+                    throw new CDKException("Could not copy the molecule", exception);
+                }
+                values.add(executor.submit(new Callable<DescriptorValue>() {
+                    public DescriptorValue call() {
+                        return molecularDescriptor.calculate(copy);
+                    }
+                }));
+            } else {
+                values.add(null);
+            }
+        }
+        return values;
+    }
+
+    private DescriptorValue getValue(Future<DescriptorValue> value, IDescriptor descriptor) throws CDKException {
+        try {
+            return value.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Interrupted while calculating descriptors", exception);
+        } catch (ExecutionException exception) {
+            throw new CDKException("Could not calculate descriptor value for: "
+                    + descriptor.getClass().getName(), exception.getCause());
+        }
+    }
+
+    /**
+     * Calculates the descriptors and adds their values as properties. The values of the
+     * molecular descriptors are taken from the given list, if it is not null.
+     */
+    private void calculate(IAtomContainer molecule, List<Future<DescriptorValue>> values) throws CDKException {
         for (int i = 0; i < descriptors.size(); i++) {
             IDescriptor descriptor = descriptors.get(i);
             if (descriptor instanceof IMolecularDescriptor) {
-                DescriptorValue value = ((IMolecularDescriptor) descriptor).calculate(molecule);
+                DescriptorValue value = values == null
+                    ? ((IMolecularDescriptor) descriptor).calculate(molecule)
+                    : getValue(values.get(i), descriptor);
                 if (value.getException() == null) molecule.setProperty(speclist.get(i), value);
                 else {
                     logger.error("Could not calculate descriptor value for: ", descriptor.getClass().getName());
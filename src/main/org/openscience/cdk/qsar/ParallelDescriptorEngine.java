@@ -0,0 +1,386 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.openscience.cdk.IImplementationSpecification;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.qsar.result.BooleanResult;
+import org.openscience.cdk.qsar.result.DoubleArrayResult;
+import org.openscience.cdk.qsar.result.DoubleResult;
+import org.openscience.cdk.qsar.result.IDescriptorResult;
+import org.openscience.cdk.qsar.result.IntegerArrayResult;
+import org.openscience.cdk.qsar.result.IntegerResult;
+
+/**
+ * Calculates the molecular descriptors of a {@link DescriptorEngine} for a
+ * stream of molecules on a pool of worker threads. The molecules are taken
+ * from any {@link Iterator}, such as an
+ * {@link org.openscience.cdk.io.iterator.IteratingSDFReader}, and each
+ * molecule gives one dense row of values, in the order of the input:
+ * <pre>
+ * DescriptorEngine engine = new DescriptorEngine(DescriptorEngine.MOLECULAR);
+ * ParallelDescriptorEngine service = new ParallelDescriptorEngine(engine, 4);
+ * String[] columns = service.getColumnNames();
+ * Iterator&lt;ParallelDescriptorEngine.Result&gt; results =
+ *     service.process(new IteratingSDFReader(in, builder));
+ * while (results.hasNext()) {
+ *     double[] row = results.next().getValues();
+ *     ...
+ * }
+ * service.shutdown();
+ * </pre>
+ *
+ * <p>The row holds the values of the molecular descriptors in the order of
+ * {@link DescriptorEngine#getDescriptorSpecifications()}, each taking as many
+ * columns as the length of its {@link IMolecularDescriptor#getDescriptorResultType()}.
+ * Boolean values are 1 or 0, and the values of a descriptor that could not
+ * be calculated are <code>NaN</code>. Atomic and bond descriptors of the
+ * engine are ignored.
+ *
+ * <p>The descriptors are not thread-safe. Each worker thread therefore
+ * creates its own instances of the descriptor classes, with the parameters
+ * of the descriptors of the engine, and uses them for all molecules it
+ * processes. Molecules are read on the thread that iterates over the
+ * results, and at most <code>queueSize</code> molecules are read ahead.
+ * The descriptors may modify the molecules, as with
+ * {@link DescriptorEngine#process(IAtomContainer)}, but the values are not
+ * added to them as properties.
+ *
+ * @cdk.keyword    descriptor
+ * @cdk.keyword    parallel
+ * @cdk.module     qsarmolecular
+ * @cdk.githash
+ * @see            org.openscience.cdk.fingerprint.ParallelFingerprinter
+ */
+@TestClass("org.openscience.cdk.qsar.ParallelDescriptorEngineTest")
+public class ParallelDescriptorEngine {
+
+    /**
+     * The descriptor values of one input record.
+     */
+    public static class Result {
+
+        private final long index;
+        private final double[] values;
+        private final CDKException exception;
+
+        private Result(long index, double[] values, CDKException exception) {
+            this.index = index;
+            this.values = values;
+            this.exception = exception;
+        }
+
+        /**
+         * Returns the position of the molecule in the input, starting at 0.
+         *
+         * @return the record index
+         */
+        @TestMethod("testProcess_Iterator")
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the descriptor values of the molecule, in the order of
+         * {@link ParallelDescriptorEngine#getColumnNames()}.
+         *
+         * @return the row of values, NaN for those that could not be calculated
+         */
+        @TestMethod("testProcess_Iterator")
+        public double[] getValues() {
+            return values;
+        }
+
+        /**
+         * Returns the first exception of a descriptor that could not be
+         * calculated, or null if all were.
+         *
+         * @return the exception of the first failing descriptor
+         */
+        @TestMethod("testProcess_Exception")
+        public CDKException getException() {
+            return exception;
+        }
+    }
+
+    private final List<IMolecularDescriptor> descriptors;
+    private final int[] offsets;
+    private final String[] columnNames;
+    private final ExecutorService executor;
+    private final int queueSize;
+    private final ThreadLocal<List<IMolecularDescriptor>> workerDescriptors;
+
+    /**
+     * Creates a service that uses the given number of worker threads, and
+     * reads at most four molecules per thread ahead.
+     *
+     * @param engine  the engine with the descriptors to calculate
+     * @param threads the number of worker threads
+     */
+    public ParallelDescriptorEngine(DescriptorEngine engine, int threads) {
+        this(engine, threads, 4 * threads);
+    }
+
+    /**
+     * Creates a service that uses the given number of worker threads. The
+     * descriptors of the engine are copied, so that later changes to the
+     * engine do not affect the service.
+     *
+     * @param engine    the engine with the descriptors to calculate
+     * @param threads   the number of worker threads
+     * @param queueSize the maximum number of molecules read ahead of the
+     *                  results that have been consumed
+     */
+    public ParallelDescriptorEngine(DescriptorEngine engine, int threads, int queueSize) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed");
+        if (queueSize < 1)
+            throw new IllegalArgumentException("The queue size must be positive");
+        this.descriptors = new ArrayList<IMolecularDescriptor>();
+        for (IDescriptor descriptor : engine.getDescriptorInstances()) {
+            if (descriptor instanceof IMolecularDescriptor)
+                descriptors.add((IMolecularDescriptor) descriptor);
+        }
+        if (descriptors.isEmpty())
+            throw new IllegalArgumentException("The engine has no molecular descriptors");
+
+        List<String> names = new ArrayList<String>();
+        this.offsets = new int[descriptors.size() + 1];
+        for (int i = 0; i < descriptors.size(); i++) {
+            IMolecularDescriptor descriptor = descriptors.get(i);
+            int length = descriptor.getDescriptorResultType().length();
+            String[] descriptorNames = descriptor.getDescriptorNames();
+            for (int j = 0; j < length; j++) {
+                if (descriptorNames != null && descriptorNames.length == length)
+                    names.add(descriptorNames[j]);
+                else
+                    names.add(getName(descriptor.getSpecification()) + "." + (j + 1));
+            }
+            offsets[i + 1] = offsets[i] + length;
+        }
+        this.columnNames = names.toArray(new String[names.size()]);
+
+        this.queueSize = queueSize;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ParallelDescriptorEngine-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.workerDescriptors = new ThreadLocal<List<IMolecularDescriptor>>() {
+            protected List<IMolecularDescriptor> initialValue() {
+                return copyDescriptors();
+            }
+        };
+    }
+
+    /**
+     * Returns the names of the columns of the rows.
+     *
+     * @return one name per value of a row
+     */
+    @TestMethod("testGetColumnNames")
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * Calculates the descriptors of all molecules of the given iterator.
+     * The molecules are read while the returned iterator is consumed, on
+     * the thread that consumes it.
+     *
+     * @param  molecules the molecules, for example an iterating reader
+     * @return the rows of descriptor values, in the order of the input
+     */
+    @TestMethod("testProcess_Iterator")
+    public Iterator<Result> process(Iterator<? extends IAtomContainer> molecules) {
+        if (executor.isShutdown())
+            throw new IllegalStateException("The service has been shut down");
+        return new ResultIterator(molecules);
+    }
+
+    /**
+     * Stops the worker threads. Results that have not been consumed yet are
+     * still calculated.
+     */
+    @TestMethod("testShutdown")
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private Result calculate(long index, IAtomContainer molecule) {
+        if (molecule == null)
+            return new Result(index, null,
+                new CDKException("The reader did not return a molecule"));
+        double[] row = new double[columnNames.length];
+        CDKException exception = null;
+        List<IMolecularDescriptor> instances = workerDescriptors.get();
+        boolean attached = DescriptorCache.attach(molecule);
+        try {
+            for (int i = 0; i < instances.size(); i++) {
+                IMolecularDescriptor descriptor = instances.get(i);
+                Exception failure;
+                try {
+                    DescriptorValue value = descriptor.calculate(molecule);
+                    failure = value.getException();
+                    if (failure == null) failure = setValues(row, i, value.getValue());
+                } catch (RuntimeException runtimeException) {
+                    failure = runtimeException;
+                }
+                if (failure != null) {
+                    Arrays.fill(row, offsets[i], offsets[i + 1], Double.NaN);
+                    if (exception == null)
+                        exception = failure instanceof CDKException
+                            ? (CDKException) failure
+                            : new CDKException("Could not calculate descriptor value for: "
+                                               + descriptor.getClass().getName(), failure);
+                }
+            }
+        } finally {
+            if (attached) DescriptorCache.detach(molecule);
+        }
+        return new Result(index, row, exception);
+    }
+
+    /**
+     * Copies the values of a descriptor result into its columns of the row.
+     */
+    private CDKException setValues(double[] row, int descriptor, IDescriptorResult result) {
+        int offset = offsets[descriptor];
+        int length = offsets[descriptor + 1] - offset;
+        Arrays.fill(row, offset, offset + length, Double.NaN);
+        if (result instanceof DoubleResult) {
+            if (length > 0) row[offset] = ((DoubleResult) result).doubleValue();
+        } else if (result instanceof IntegerResult) {
+            if (length > 0) row[offset] = ((IntegerResult) result).intValue();
+        } else if (result instanceof BooleanResult) {
+            if (length > 0) row[offset] = ((BooleanResult) result).booleanValue() ? 1 : 0;
+        } else if (result instanceof DoubleArrayResult) {
+            DoubleArrayResult array = (DoubleArrayResult) result;
+            for (int i = 0; i < Math.min(length, array.length()); i++)
+                row[offset + i] = array.get(i);
+        } else if (result instanceof IntegerArrayResult) {
+            IntegerArrayResult array = (IntegerArrayResult) result;
+            for (int i = 0; i < Math.min(length, array.length()); i++)
+                row[offset + i] = array.get(i);
+        } else {
+            return new CDKException("Unknown descriptor result: " + result);
+        }
+        return null;
+    }
+
+    /**
+     * Creates new instances of the descriptors, with the same parameters.
+     */
+    private List<IMolecularDescriptor> copyDescriptors() {
+        List<IMolecularDescriptor> copies = new ArrayList<IMolecularDescriptor>();
+        for (IMolecularDescriptor descriptor : descriptors) {
+            try {
+                IMolecularDescriptor copy = descriptor.getClass().getConstructor().newInstance();
+                Object[] parameters = descriptor.getParameters();
+                if (parameters != null && parameters.length > 0)
+                    copy.setParameters(parameters.clone());
+                copies.add(copy);
+            } catch (Exception exception) {
+                throw new RuntimeException(
+                    "Could not instantiate " + descriptor.getClass().getName(),
+                    exception
+                );
+            }
+        }
+        return copies;
+    }
+
+    private static String getName(IImplementationSpecification specification) {
+        String reference = specification.getSpecificationReference();
+        return reference.substring(reference.lastIndexOf('#') + 1);
+    }
+
+    private class ResultIterator implements Iterator<Result> {
+
+        private final Iterator<? extends IAtomContainer> molecules;
+        private final LinkedList<Future<Result>> pending
+            = new LinkedList<Future<Result>>();
+        private long index = 0;
+
+        ResultIterator(Iterator<? extends IAtomContainer> molecules) {
+            this.molecules = molecules;
+        }
+
+        public boolean hasNext() {
+            fill();
+            return !pending.isEmpty();
+        }
+
+        public Result next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Future<Result> head = pending.removeFirst();
+            fill();
+            try {
+                return head.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for descriptor values", exception);
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                if (cause instanceof Error) throw (Error)cause;
+                throw new RuntimeException(cause);
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void fill() {
+            while (pending.size() < queueSize && molecules.hasNext()) {
+                final IAtomContainer molecule = molecules.next();
+                final long recordIndex = index++;
+                pending.addLast(executor.submit(new Callable<Result>() {
+                    public Result call() {
+                        return calculate(recordIndex, molecule);
+                    }
+                }));
+            }
+        }
+    }
+}
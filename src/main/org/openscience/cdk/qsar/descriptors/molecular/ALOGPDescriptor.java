@@ -32,6 +32,7 @@ import org.openscience.cdk.interfaces.IAtomType;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IRing;
 import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.qsar.DescriptorCache;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
@@ -1995,7 +1996,7 @@ public class ALOGPDescriptor implements IMolecularDescriptor {
         IAtomContainer container;
         try {
             container = (IAtomContainer) atomContainer.clone();
-            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(container);
+            DescriptorCache.perceiveAtomTypes(container);
             CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(container.getBuilder());
             hAdder.addImplicitHydrogens(container);
             AtomContainerManipulator.convertImplicitToExplicitHydrogens(container);
@@ -34,10 +34,9 @@ import org.openscience.cdk.charges.GasteigerPEPEPartialCharges;
 import org.openscience.cdk.charges.Polarizability;
 import org.openscience.cdk.config.IsotopeFactory;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.qsar.DescriptorCache;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
@@ -328,7 +327,7 @@ public class BCUTDescriptor implements IMolecularDescriptor {
 
         // add H's in case they're not present
         try {
-            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(molecule);
+            DescriptorCache.perceiveAtomTypes(molecule);
             CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(molecule.getBuilder());
             hAdder.addImplicitHydrogens(molecule);
             AtomContainerManipulator.convertImplicitToExplicitHydrogens(molecule);
@@ -413,7 +412,7 @@ public class BCUTDescriptor implements IMolecularDescriptor {
         double[] eval2 = eigenDecomposition.getRealEigenvalues();
 
 
-        int[][] topoDistance = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(molecule));
+        int[][] topoDistance = DescriptorCache.getTopologicalDistances(molecule);
 
         // get polarizability weighted BCUT
         Polarizability pol = new Polarizability();
@@ -24,28 +24,27 @@ import java.util.List;
 
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.exception.InvalidSmilesException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IPseudoAtom;
 import org.openscience.cdk.interfaces.IRingSet;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
+import org.openscience.cdk.qsar.DescriptorCache;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
 import org.openscience.cdk.qsar.result.DoubleArrayResult;
 import org.openscience.cdk.qsar.result.DoubleArrayResultType;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
-import org.openscience.cdk.ringsearch.SSSRFinder;
 import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.tools.CDKHydrogenAdder;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
-import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
 
 
 /**
@@ -149,17 +148,16 @@ public class ChiChainDescriptor implements IMolecularDescriptor {
 
         // we don't make a clone, since removeHydrogens returns a deep copy
         IAtomContainer localAtomContainer = AtomContainerManipulator.removeHydrogens(container);
-        CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(container.getBuilder());
-        Iterator<IAtom> atoms = localAtomContainer.atoms().iterator();
-        while (atoms.hasNext()) {
-            IAtom atom = atoms.next();
-            IAtomType type;
-            try {
-                type = matcher.findMatchingAtomType(localAtomContainer, atom);
-                AtomTypeManipulator.configure(atom, type);
-            } catch (Exception e) {
+        IAtomType[] types;
+        try {
+            types = DescriptorCache.perceiveAtomTypes(localAtomContainer);
+        } catch (CDKException e) {
+            return getDummyDescriptorValue(new CDKException("Error in atom typing: " + e.getMessage()));
+        }
+        for (int i = 0; i < types.length; i++) {
+            IAtom atom = localAtomContainer.getAtom(i);
+            if (types[i] == null && !(atom instanceof IPseudoAtom))
                 return getDummyDescriptorValue(new CDKException("Error in atom typing: " + atom));
-            }            
         }
         CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(container.getBuilder());
         try {
@@ -229,8 +227,7 @@ public class ChiChainDescriptor implements IMolecularDescriptor {
     private List order3(IAtomContainer container) {
         List<List<Integer>> ret = new ArrayList<List<Integer>>();
 
-        SSSRFinder sssrf = new SSSRFinder(container);
-        IRingSet rings = sssrf.findSSSR();
+        IRingSet rings = DescriptorCache.getSSSR(container);
 
         int nring = rings.getAtomContainerCount();
         for (int i = 0; i < nring; i++) {
@@ -22,9 +22,8 @@ package org.openscience.cdk.qsar.descriptors.molecular;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.qsar.DescriptorCache;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
@@ -147,8 +146,7 @@ public class EccentricConnectivityIndexDescriptor implements IMolecularDescripto
         IAtomContainer local = AtomContainerManipulator.removeHydrogens(container);
 
         int natom = local.getAtomCount();
-        int[][] admat = AdjacencyMatrix.getMatrix(local);
-        int[][] distmat = PathTools.computeFloydAPSP(admat);
+        int[][] distmat = DescriptorCache.getHeavyAtomDistances(container);
         
         int eccenindex = 0;
         for (int i = 0; i < natom; i++) {
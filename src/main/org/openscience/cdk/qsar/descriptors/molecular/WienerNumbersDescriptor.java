@@ -22,9 +22,9 @@ package org.openscience.cdk.qsar.descriptors.molecular;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.PathTools;
 import org.openscience.cdk.graph.matrix.ConnectionMatrix;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.qsar.DescriptorCache;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
@@ -155,8 +155,7 @@ public class WienerNumbersDescriptor implements IMolecularDescriptor {
         double wienerPolarityNumber = 0; //wienerPol
 
 
-        matr = ConnectionMatrix.getMatrix(AtomContainerManipulator.removeHydrogens(atomContainer));        
-        int[][] distances = PathTools.computeFloydAPSP(matr);
+        int[][] distances = DescriptorCache.getHeavyAtomDistances(atomContainer);
 
         int partial;
         for (int i = 0; i < distances.length; i++) {
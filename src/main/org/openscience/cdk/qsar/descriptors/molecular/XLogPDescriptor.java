@@ -36,6 +36,7 @@ import org.openscience.cdk.isomorphism.matchers.smarts.AnyOrderQueryBond;
 import org.openscience.cdk.isomorphism.matchers.smarts.AromaticAtom;
 import org.openscience.cdk.isomorphism.matchers.smarts.AromaticQueryBond;
 import org.openscience.cdk.isomorphism.mcss.RMap;
+import org.openscience.cdk.qsar.DescriptorCache;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
@@ -209,7 +210,7 @@ public class XLogPDescriptor implements IMolecularDescriptor {
         IAtomContainer ac;
         try {
             ac = (IAtomContainer) atomContainer.clone();
-            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(ac);
+            DescriptorCache.perceiveAtomTypes(ac);
             CDKHydrogenAdder hAdder = CDKHydrogenAdder.getInstance(ac.getBuilder());
             hAdder.addImplicitHydrogens(ac);
             AtomContainerManipulator.convertImplicitToExplicitHydrogens(ac);
@@ -219,7 +220,7 @@ public class XLogPDescriptor implements IMolecularDescriptor {
             return getDummyDescriptorValue(e);
         }
 
-        IRingSet rs = (IRingSet) new SSSRFinder(ac).findSSSR();
+        IRingSet rs = DescriptorCache.getSSSR(ac);
         IRingSet atomRingSet=null;
         if (checkAromaticity) {
             try {                
@@ -0,0 +1,797 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.ringsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IRing;
+import org.openscience.cdk.interfaces.IRingSet;
+
+/**
+ * Ring perception on a snapshot of the connection table of a molecule. The
+ * atoms and bonds are numbered as in the container, and the snapshot holds
+ * for each atom the indices of its neighbours and of the bonds to them, so
+ * that the searches below work on integer arrays only.
+ *
+ * <p>On construction, the ring bonds are found as the bonds that are not a
+ * bridge of the molecular graph, in one depth first search, and the ring
+ * atoms and ring systems follow from them. A Smallest Set of Smallest Rings
+ * (a minimum cycle basis) is then selected for each ring system from the
+ * candidate rings of {@cdk.cite HOR87}, formed by a shortest path from an
+ * atom to both ends of a bond. The candidates are taken shortest first, and
+ * kept if they are independent of the rings kept before.
+ *
+ * <p>The relevant rings, the rings contained in some SSSR, and the
+ * essential rings, those contained in every SSSR, are found among all
+ * rings up to the size of the largest ring of the SSSR. All rings up to a
+ * given size are listed by a depth first search that stops at paths that
+ * cannot be closed within that size. These results are computed when
+ * first asked for, and kept.
+ *
+ * <p>Rings are returned as the indices of their atoms in ring order, and
+ * can be converted to an {@link IRingSet} with {@link #toRingSet(int[][])}.
+ * The returned arrays are shared and must not be modified.
+ * <pre>
+ * RingSearch rings = RingSearch.getInstance(molecule);
+ * if (rings.isInRing(0)) {
+ *     IRingSet sssr = rings.toRingSet(rings.getSSSR());
+ * }
+ * </pre>
+ *
+ * <p>Instances obtained with {@link #getInstance(IAtomContainer)} are kept
+ * for as long as the container is in use, and are given again as long as
+ * the container has the same atoms and bonds, in the same order. A ring
+ * search does not change the molecule, and can be used by several threads
+ * at the same time.
+ *
+ * @cdk.module  standard
+ * @cdk.githash
+ * @cdk.keyword ring perception
+ * @cdk.keyword SSSR
+ * @see         SSSRFinder
+ * @see         AllRingsFinder
+ */
+@TestClass("org.openscience.cdk.ringsearch.RingSearchTest")
+public class RingSearch {
+
+    /** The maximum number of rings of a ring system listed by {@link #getAllRings(int)}. */
+    public static final int MAX_RING_COUNT = 50000;
+
+    // the ring searches of the containers in use
+    private static final Map<IAtomContainer, RingSearch> cache =
+        Collections.synchronizedMap(new WeakHashMap<IAtomContainer, RingSearch>());
+
+    private static final Comparator<int[]> BY_SIZE = new Comparator<int[]>() {
+        public int compare(int[] ring1, int[] ring2) {
+            return ring1.length - ring2.length;
+        }
+    };
+
+    private final IChemObjectBuilder builder;
+    private final IAtom[] atoms;
+    private final IBond[] bonds;
+    // the atoms of each bond when the snapshot was taken
+    private final IAtom[] bondAtoms;
+    private final int[][] neighbours;
+    private final int[][] neighbourBonds;
+
+    private final boolean[] ringBonds;
+    // the ring system of each atom, or -1
+    private final int[] ringSystems;
+    private final RingSystem[] systems;
+    private final int[][] sssr;
+
+    private int[][] relevantRings = null;
+    private int[][] essentialRings = null;
+    // all rings up to the given size
+    private int[][] allRings = null;
+    private int allRingsSize = 0;
+
+    /**
+     * Takes a snapshot of the container and perceives its ring bonds, ring
+     * systems and SSSR.
+     *
+     * @param container the molecule
+     */
+    public RingSearch(IAtomContainer container) {
+        builder = container.getBuilder();
+        int atomCount = container.getAtomCount();
+        int bondCount = container.getBondCount();
+        atoms = new IAtom[atomCount];
+        bonds = new IBond[bondCount];
+        bondAtoms = new IAtom[2 * bondCount];
+        Map<IAtom, Integer> index = new IdentityHashMap<IAtom, Integer>(2 * atomCount);
+        for (int i = 0; i < atomCount; i++) {
+            atoms[i] = container.getAtom(i);
+            index.put(atoms[i], i);
+        }
+
+        // the bonds between two different atoms of the container, leaving
+        // out any further bonds between the same atoms
+        int[] degree = new int[atomCount];
+        int[] ends = new int[2 * bondCount];
+        Arrays.fill(ends, -1);
+        for (int b = 0; b < bondCount; b++) {
+            bonds[b] = container.getBond(b);
+            if (bonds[b].getAtomCount() != 2) continue;
+            bondAtoms[2 * b] = bonds[b].getAtom(0);
+            bondAtoms[2 * b + 1] = bonds[b].getAtom(1);
+            Integer atom0 = index.get(bondAtoms[2 * b]);
+            Integer atom1 = index.get(bondAtoms[2 * b + 1]);
+            if (atom0 == null || atom1 == null || atom0.equals(atom1)) continue;
+            ends[2 * b] = atom0;
+            ends[2 * b + 1] = atom1;
+            degree[atom0]++;
+            degree[atom1]++;
+        }
+        neighbours = new int[atomCount][];
+        neighbourBonds = new int[atomCount][];
+        for (int i = 0; i < atomCount; i++) {
+            neighbours[i] = new int[degree[i]];
+            neighbourBonds[i] = new int[degree[i]];
+            degree[i] = 0;
+        }
+        for (int b = 0; b < bondCount; b++) {
+            int atom0 = ends[2 * b], atom1 = ends[2 * b + 1];
+            if (atom0 < 0 || isBonded(atom0, atom1, degree[atom0])) continue;
+            neighbours[atom0][degree[atom0]] = atom1;
+            neighbourBonds[atom0][degree[atom0]++] = b;
+            neighbours[atom1][degree[atom1]] = atom0;
+            neighbourBonds[atom1][degree[atom1]++] = b;
+        }
+        for (int i = 0; i < atomCount; i++) {
+            if (degree[i] < neighbours[i].length) {
+                neighbours[i] = copy(neighbours[i], degree[i]);
+                neighbourBonds[i] = copy(neighbourBonds[i], degree[i]);
+            }
+        }
+
+        ringBonds = new boolean[bondCount];
+        findRingBonds();
+        ringSystems = new int[atomCount];
+        systems = findRingSystems();
+
+        List<int[]> rings = new ArrayList<int[]>();
+        for (RingSystem system : systems) {
+            for (int[] ring : system.sssr) rings.add(system.toAtoms(ring));
+        }
+        Collections.sort(rings, BY_SIZE);
+        sssr = rings.toArray(new int[rings.size()][]);
+    }
+
+    /**
+     * Returns the ring search of a container, from an earlier call if the
+     * container still has the same atoms and bonds.
+     *
+     * @param  container the molecule
+     * @return the ring search of the molecule
+     */
+    @TestMethod("testGetInstance")
+    public static RingSearch getInstance(IAtomContainer container) {
+        RingSearch search = cache.get(container);
+        if (search == null || !search.isSnapshotOf(container)) {
+            search = new RingSearch(container);
+            cache.put(container, search);
+        }
+        return search;
+    }
+
+    /**
+     * Checks whether the container has the atoms and bonds it had when the
+     * snapshot was taken.
+     *
+     * @param  container the molecule
+     * @return true if the snapshot is still up to date
+     */
+    @TestMethod("testGetInstance")
+    public boolean isSnapshotOf(IAtomContainer container) {
+        if (container.getAtomCount() != atoms.length || container.getBondCount() != bonds.length)
+            return false;
+        for (int i = 0; i < atoms.length; i++)
+            if (container.getAtom(i) != atoms[i]) return false;
+        for (int b = 0; b < bonds.length; b++) {
+            IBond bond = container.getBond(b);
+            if (bond != bonds[b]) return false;
+            if (bondAtoms[2 * b] != null
+                && (bond.getAtomCount() != 2 || bond.getAtom(0) != bondAtoms[2 * b]
+                    || bond.getAtom(1) != bondAtoms[2 * b + 1]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of atoms of the molecule.
+     *
+     * @return the number of atoms
+     */
+    @TestMethod("testRingMembership")
+    public int getAtomCount() {
+        return atoms.length;
+    }
+
+    /**
+     * Tests if an atom is in a ring.
+     *
+     * @param  atom the index of the atom
+     * @return true if the atom is in a ring
+     */
+    @TestMethod("testRingMembership")
+    public boolean isInRing(int atom) {
+        return ringSystems[atom] >= 0;
+    }
+
+    /**
+     * Tests if a bond is in a ring.
+     *
+     * @param  bond the index of the bond
+     * @return true if the bond is in a ring
+     */
+    @TestMethod("testRingMembership")
+    public boolean isRingBond(int bond) {
+        return ringBonds[bond];
+    }
+
+    /**
+     * Returns the number of ring systems, the sets of rings joined by
+     * shared atoms.
+     *
+     * @return the number of ring systems
+     */
+    @TestMethod("testRingSystems")
+    public int getRingSystemCount() {
+        return systems.length;
+    }
+
+    /**
+     * Returns the ring system of each atom, numbered from 0.
+     *
+     * @return the ring system of each atom, or -1 for atoms not in a ring
+     */
+    @TestMethod("testRingSystems")
+    public int[] getRingSystems() {
+        return ringSystems;
+    }
+
+    /**
+     * Returns a Smallest Set of Smallest Rings, smallest rings first. The
+     * set is not uniquely defined, but the ring sizes are.
+     *
+     * @return the atoms of each ring, in ring order
+     */
+    @TestMethod("testGetSSSR")
+    public int[][] getSSSR() {
+        return sssr;
+    }
+
+    /**
+     * Returns the relevant rings, that is, the rings that are contained in
+     * some SSSR, smallest rings first.
+     *
+     * @return the atoms of each ring, in ring order
+     * @throws CDKException if a ring system has more than {@link #MAX_RING_COUNT}
+     *                      rings up to the size of its largest SSSR ring
+     */
+    @TestMethod("testGetRelevantRings")
+    public synchronized int[][] getRelevantRings() throws CDKException {
+        if (relevantRings == null) findRelevantRings();
+        return relevantRings;
+    }
+
+    /**
+     * Returns the essential rings, that is, the rings that are contained in
+     * every SSSR, smallest rings first.
+     *
+     * @return the atoms of each ring, in ring order
+     * @throws CDKException if a ring system has more than {@link #MAX_RING_COUNT}
+     *                      rings up to the size of its largest SSSR ring
+     */
+    @TestMethod("testGetEssentialRings")
+    public synchronized int[][] getEssentialRings() throws CDKException {
+        if (essentialRings == null) findRelevantRings();
+        return essentialRings;
+    }
+
+    /**
+     * Returns all rings of up to a given size, smallest rings first.
+     *
+     * @param  maxRingSize the size of the largest rings to list
+     * @return the atoms of each ring, in ring order
+     * @throws CDKException if a ring system has more than {@link #MAX_RING_COUNT} such rings
+     */
+    @TestMethod("testGetAllRings")
+    public synchronized int[][] getAllRings(int maxRingSize) throws CDKException {
+        maxRingSize = Math.min(maxRingSize, atoms.length);
+        if (allRings == null || maxRingSize > allRingsSize) {
+            List<int[]> rings = new ArrayList<int[]>();
+            for (RingSystem system : systems) system.findRings(maxRingSize, rings);
+            Collections.sort(rings, BY_SIZE);
+            allRings = rings.toArray(new int[rings.size()][]);
+            allRingsSize = maxRingSize;
+        }
+        int count = 0;
+        while (count < allRings.length && allRings[count].length <= maxRingSize) count++;
+        if (count == allRings.length) return allRings;
+        int[][] rings = new int[count][];
+        System.arraycopy(allRings, 0, rings, 0, count);
+        return rings;
+    }
+
+    /**
+     * Returns all rings, smallest rings first.
+     *
+     * @return the atoms of each ring, in ring order
+     * @throws CDKException if a ring system has more than {@link #MAX_RING_COUNT} rings
+     */
+    @TestMethod("testGetAllRings")
+    public int[][] getAllRings() throws CDKException {
+        return getAllRings(atoms.length);
+    }
+
+    /**
+     * Converts rings to a ring set of the atoms and bonds of the molecule.
+     *
+     * @param  rings the atoms of each ring, in ring order
+     * @return the ring set
+     */
+    @TestMethod("testToRingSet")
+    public IRingSet toRingSet(int[][] rings) {
+        IRingSet ringSet = builder.newInstance(IRingSet.class);
+        for (int[] ring : rings) {
+            IRing container = builder.newInstance(IRing.class);
+            IAtom[] ringAtoms = new IAtom[ring.length];
+            for (int i = 0; i < ring.length; i++) {
+                ringAtoms[i] = atoms[ring[i]];
+                container.addElectronContainer(bonds[bond(ring[i], ring[(i + 1) % ring.length])]);
+            }
+            container.setAtoms(ringAtoms);
+            ringSet.addAtomContainer(container);
+        }
+        return ringSet;
+    }
+
+    /**
+     * Copies the start of an array into a new array of the given length.
+     */
+    private static int[] copy(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    /**
+     * Tests if an atom is among the first neighbours of another.
+     */
+    private boolean isBonded(int atom1, int atom2, int count) {
+        for (int j = 0; j < count; j++)
+            if (neighbours[atom1][j] == atom2) return true;
+        return false;
+    }
+
+    /**
+     * Returns the index of the bond between two atoms.
+     */
+    private int bond(int atom1, int atom2) {
+        for (int j = 0; j < neighbours[atom1].length; j++)
+            if (neighbours[atom1][j] == atom2) return neighbourBonds[atom1][j];
+        return -1;
+    }
+
+    /**
+     * Marks the bonds that are not a bridge, with a depth first search that
+     * keeps for each atom the earliest discovered atom it reaches by at most
+     * one bond outside the search tree.
+     */
+    private void findRingBonds() {
+        int atomCount = atoms.length;
+        int[] discovered = new int[atomCount];
+        int[] low = new int[atomCount];
+        int[] parentBond = new int[atomCount];
+        int[] next = new int[atomCount];
+        int[] stack = new int[atomCount];
+        int time = 0;
+        for (int root = 0; root < atomCount; root++) {
+            if (discovered[root] != 0) continue;
+            int top = 0;
+            stack[0] = root;
+            discovered[root] = low[root] = ++time;
+            parentBond[root] = -1;
+            while (top >= 0) {
+                int atom = stack[top];
+                if (next[atom] < neighbours[atom].length) {
+                    int neighbour = neighbours[atom][next[atom]];
+                    int bond = neighbourBonds[atom][next[atom]++];
+                    if (bond == parentBond[atom]) continue;
+                    if (discovered[neighbour] == 0) {
+                        discovered[neighbour] = low[neighbour] = ++time;
+                        parentBond[neighbour] = bond;
+                        stack[++top] = neighbour;
+                    } else {
+                        // a bond back to an atom on the current path
+                        if (discovered[neighbour] < discovered[atom]) ringBonds[bond] = true;
+                        low[atom] = Math.min(low[atom], discovered[neighbour]);
+                    }
+                } else if (--top >= 0) {
+                    int parent = stack[top];
+                    low[parent] = Math.min(low[parent], low[atom]);
+                    if (low[atom] <= discovered[parent]) ringBonds[parentBond[atom]] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Numbers the ring systems, as the sets of atoms joined by ring bonds,
+     * and finds their SSSR.
+     */
+    private RingSystem[] findRingSystems() {
+        Arrays.fill(ringSystems, -1);
+        List<RingSystem> found = new ArrayList<RingSystem>();
+        int[] queue = new int[atoms.length];
+        // the number of each atom and ring bond within its ring system
+        int[] localAtoms = new int[atoms.length];
+        int[] localBonds = new int[bonds.length];
+        for (int start = 0; start < atoms.length; start++) {
+            if (ringSystems[start] >= 0) continue;
+            boolean inRing = false;
+            for (int bond : neighbourBonds[start]) inRing |= ringBonds[bond];
+            if (!inRing) continue;
+            int id = found.size();
+            int size = 0;
+            queue[size++] = start;
+            ringSystems[start] = id;
+            for (int head = 0; head < size; head++) {
+                int atom = queue[head];
+                for (int j = 0; j < neighbours[atom].length; j++) {
+                    int neighbour = neighbours[atom][j];
+                    if (ringBonds[neighbourBonds[atom][j]] && ringSystems[neighbour] < 0) {
+                        ringSystems[neighbour] = id;
+                        queue[size++] = neighbour;
+                    }
+                }
+            }
+            int[] systemAtoms = copy(queue, size);
+            Arrays.sort(systemAtoms);
+            found.add(new RingSystem(systemAtoms, localAtoms, localBonds));
+        }
+        return found.toArray(new RingSystem[found.size()]);
+    }
+
+    /**
+     * Finds the relevant and the essential rings of all ring systems.
+     */
+    private void findRelevantRings() throws CDKException {
+        List<int[]> relevant = new ArrayList<int[]>();
+        List<int[]> essential = new ArrayList<int[]>();
+        for (RingSystem system : systems) system.findRelevantRings(relevant, essential);
+        Collections.sort(relevant, BY_SIZE);
+        Collections.sort(essential, BY_SIZE);
+        relevantRings = relevant.toArray(new int[relevant.size()][]);
+        essentialRings = essential.toArray(new int[essential.size()][]);
+    }
+
+    /**
+     * A set of atoms joined by ring bonds. Its atoms and ring bonds are
+     * numbered from 0, and its rings are kept as the local numbers of their
+     * atoms.
+     */
+    private final class RingSystem {
+
+        final int[] systemAtoms;
+        final int[][] localNeighbours;
+        final int[][] localBonds;
+        final int bondCount;
+        // the length of the shortest path between any two atoms
+        final int[][] distances;
+        // the SSSR, smallest rings first, and the bonds of each ring
+        final int[][] sssr;
+        final long[][] sssrBonds;
+
+        RingSystem(int[] systemAtoms, int[] localAtoms, int[] localBondNumbers) {
+            this.systemAtoms = systemAtoms;
+            int size = systemAtoms.length;
+            for (int i = 0; i < size; i++) localAtoms[systemAtoms[i]] = i;
+            localNeighbours = new int[size][];
+            localBonds = new int[size][];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int atom = systemAtoms[i];
+                int degree = 0;
+                for (int bond : neighbourBonds[atom]) if (ringBonds[bond]) degree++;
+                localNeighbours[i] = new int[degree];
+                localBonds[i] = new int[degree];
+                degree = 0;
+                for (int j = 0; j < neighbours[atom].length; j++) {
+                    int bond = neighbourBonds[atom][j];
+                    if (!ringBonds[bond]) continue;
+                    int neighbour = localAtoms[neighbours[atom][j]];
+                    // the bond is numbered from the first of its atoms
+                    if (neighbour > i) localBondNumbers[bond] = count++;
+                    localNeighbours[i][degree] = neighbour;
+                    localBonds[i][degree++] = bond;
+                }
+            }
+            for (int i = 0; i < size; i++)
+                for (int j = 0; j < localBonds[i].length; j++)
+                    localBonds[i][j] = localBondNumbers[localBonds[i][j]];
+            bondCount = count;
+
+            // a shortest path tree from each atom, and the candidate rings
+            // formed by the paths to both ends of a bond, as their size, the
+            // root and the two atoms, grouped by size
+            distances = new int[size][];
+            int[][] parents = new int[size][];
+            int[] queue = new int[size];
+            int[] branch = new int[size];
+            int[] candidates = new int[16];
+            int candidateCount = 0;
+            int[] sizeCounts = new int[size + 2];
+            for (int root = 0; root < size; root++) {
+                int[] distance = new int[size];
+                int[] parent = new int[size];
+                Arrays.fill(distance, -1);
+                distance[root] = 0;
+                parent[root] = -1;
+                branch[root] = -1;
+                int queued = 0;
+                queue[queued++] = root;
+                for (int head = 0; head < queued; head++) {
+                    int atom = queue[head];
+                    for (int neighbour : localNeighbours[atom]) {
+                        if (distance[neighbour] < 0) {
+                            distance[neighbour] = distance[atom] + 1;
+                            parent[neighbour] = atom;
+                            branch[neighbour] = atom == root ? neighbour : branch[atom];
+                            queue[queued++] = neighbour;
+                        }
+                    }
+                }
+                distances[root] = distance;
+                parents[root] = parent;
+
+                for (int atom1 = 0; atom1 < size; atom1++) {
+                    for (int atom2 : localNeighbours[atom1]) {
+                        if (atom2 < atom1 || parent[atom1] == atom2 || parent[atom2] == atom1) continue;
+                        // the paths may only share the root
+                        if (atom1 != root && atom2 != root && branch[atom1] == branch[atom2]) continue;
+                        if (candidateCount + 4 > candidates.length)
+                            candidates = copy(candidates, 2 * candidates.length);
+                        int ringSize = distance[atom1] + distance[atom2] + 1;
+                        candidates[candidateCount++] = ringSize;
+                        candidates[candidateCount++] = root;
+                        candidates[candidateCount++] = atom1;
+                        candidates[candidateCount++] = atom2;
+                        sizeCounts[ringSize + 1]++;
+                    }
+                }
+            }
+            int[] order = new int[candidateCount / 4];
+            for (int i = 1; i < sizeCounts.length; i++) sizeCounts[i] += sizeCounts[i - 1];
+            for (int c = 0; c < candidateCount; c += 4) order[sizeCounts[candidates[c]]++] = c;
+
+            // the shortest independent candidates
+            int rank = bondCount - size + 1;
+            sssr = new int[rank][];
+            sssrBonds = new long[rank][];
+            Basis basis = new Basis(bondCount, rank);
+            int found = 0;
+            for (int k = 0; k < order.length && found < rank; k++) {
+                int c = order[k];
+                int[] ring = candidateRing(parents[candidates[c + 1]], candidates[c + 2],
+                                           candidates[c + 3], candidates[c]);
+                long[] ringBonds = bondSet(ring);
+                if (basis.add(ringBonds)) {
+                    sssr[found] = ring;
+                    sssrBonds[found++] = ringBonds;
+                }
+            }
+        }
+
+        /**
+         * Joins the paths from the root to both ends of a bond to a ring.
+         */
+        private int[] candidateRing(int[] parent, int atom1, int atom2, int length) {
+            int[] ring = new int[length];
+            int root = atom1;
+            while (parent[root] >= 0) root = parent[root];
+            // the root and the path to the first atom, in reverse
+            int count = 0;
+            for (int atom = atom1; atom >= 0; atom = parent[atom]) count++;
+            int i = count;
+            for (int atom = atom1; atom >= 0; atom = parent[atom]) ring[--i] = atom;
+            for (int atom = atom2; atom != root; atom = parent[atom]) ring[count++] = atom;
+            return ring;
+        }
+
+        /**
+         * Returns the ring bonds of a ring, as a bit set.
+         */
+        long[] bondSet(int[] ring) {
+            long[] set = new long[(bondCount + 63) >> 6];
+            for (int i = 0; i < ring.length; i++) {
+                int atom = ring[i], next = ring[(i + 1) % ring.length];
+                for (int j = 0; j < localNeighbours[atom].length; j++) {
+                    if (localNeighbours[atom][j] == next) {
+                        int bond = localBonds[atom][j];
+                        set[bond >> 6] |= 1L << bond;
+                        break;
+                    }
+                }
+            }
+            return set;
+        }
+
+        int[] toAtoms(int[] ring) {
+            int[] ringAtoms = new int[ring.length];
+            for (int i = 0; i < ring.length; i++) ringAtoms[i] = systemAtoms[ring[i]];
+            return ringAtoms;
+        }
+
+        /**
+         * Lists the rings of up to the given size, in local numbers, with
+         * their atoms in ring order. Each ring is listed once, from its
+         * lowest numbered atom, which is followed by the lower numbered of
+         * its two neighbours in the ring.
+         */
+        List<int[]> findLocalRings(int maxRingSize) throws CDKException {
+            List<int[]> rings = new ArrayList<int[]>();
+            int size = systemAtoms.length;
+            int[] path = new int[size];
+            boolean[] onPath = new boolean[size];
+            for (int start = 0; start < size; start++) {
+                path[0] = start;
+                onPath[start] = true;
+                extendPath(path, 1, onPath, maxRingSize, rings);
+                onPath[start] = false;
+            }
+            return rings;
+        }
+
+        private void extendPath(int[] path, int length, boolean[] onPath,
+                                int maxRingSize, List<int[]> rings) throws CDKException {
+            int start = path[0], atom = path[length - 1];
+            for (int neighbour : localNeighbours[atom]) {
+                if (neighbour == start) {
+                    if (length >= 3 && path[1] < atom) {
+                        if (rings.size() == MAX_RING_COUNT)
+                            throw new CDKException("More than " + MAX_RING_COUNT + " rings");
+                        rings.add(copy(path, length));
+                    }
+                } else if (neighbour > start && !onPath[neighbour]
+                           && length + distances[neighbour][start] <= maxRingSize) {
+                    path[length] = neighbour;
+                    onPath[neighbour] = true;
+                    extendPath(path, length + 1, onPath, maxRingSize, rings);
+                    onPath[neighbour] = false;
+                }
+            }
+        }
+
+        void findRings(int maxRingSize, List<int[]> rings) throws CDKException {
+            for (int[] ring : findLocalRings(maxRingSize)) rings.add(toAtoms(ring));
+        }
+
+        /**
+         * A ring is relevant if it is not the sum of smaller rings, that is,
+         * of the smaller rings of the SSSR, which span all smaller rings. A
+         * ring of the SSSR is essential if it is not the sum of smaller rings
+         * and of other rings of the same size.
+         */
+        void findRelevantRings(List<int[]> relevant, List<int[]> essential) throws CDKException {
+            int largest = sssr[sssr.length - 1].length;
+            List<int[]> rings = findLocalRings(largest);
+            Collections.sort(rings, BY_SIZE);
+            long[][] ringBonds = new long[rings.size()][];
+            for (int r = 0; r < rings.size(); r++) ringBonds[r] = bondSet(rings.get(r));
+
+            int smaller = 0;
+            int next = 0;
+            for (int size = 3; size <= largest; size++) {
+                while (smaller < sssr.length && sssr[smaller].length < size) smaller++;
+                Basis basis = new Basis(bondCount, smaller);
+                for (int i = 0; i < smaller; i++) basis.add(sssrBonds[i]);
+                List<long[]> sameSize = new ArrayList<long[]>();
+                for (; next < rings.size() && rings.get(next).length == size; next++) {
+                    if (!basis.spans(ringBonds[next])) {
+                        relevant.add(toAtoms(rings.get(next)));
+                        sameSize.add(ringBonds[next]);
+                    }
+                }
+                for (int i = smaller; i < sssr.length && sssr[i].length == size; i++) {
+                    Basis others = new Basis(bondCount, smaller + sameSize.size());
+                    for (int j = 0; j < smaller; j++) others.add(sssrBonds[j]);
+                    for (long[] ring : sameSize)
+                        if (!Arrays.equals(ring, sssrBonds[i])) others.add(ring);
+                    if (!others.spans(sssrBonds[i])) essential.add(toAtoms(sssr[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets of bonds, as bit sets, reduced to a basis of the space they span
+     * under symmetric difference, by Gaussian elimination.
+     */
+    private static final class Basis {
+
+        private final long[][] rows;
+        private final int[] pivots;
+        private final long[] work;
+        private int count = 0;
+
+        Basis(int bondCount, int maxRank) {
+            rows = new long[maxRank][];
+            pivots = new int[maxRank];
+            work = new long[(bondCount + 63) >> 6];
+        }
+
+        /** Reduces the set by the rows into the work array. */
+        private void reduce(long[] set) {
+            System.arraycopy(set, 0, work, 0, work.length);
+            for (int r = 0; r < count; r++) {
+                int pivot = pivots[r];
+                if ((work[pivot >> 6] & (1L << pivot)) == 0) continue;
+                long[] row = rows[r];
+                for (int w = 0; w < work.length; w++) work[w] ^= row[w];
+            }
+        }
+
+        boolean spans(long[] set) {
+            reduce(set);
+            for (long word : work) if (word != 0) return false;
+            return true;
+        }
+
+        /**
+         * Adds a set, if it is independent of the sets added before.
+         *
+         * @return true if the set was independent
+         */
+        boolean add(long[] set) {
+            if (count == rows.length) return false;
+            reduce(set);
+            for (int w = 0; w < work.length; w++) {
+                if (work[w] != 0) {
+                    pivots[count] = (w << 6) + Long.numberOfTrailingZeros(work[w]);
+                    rows[count++] = work.clone();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
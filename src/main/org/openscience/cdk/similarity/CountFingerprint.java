@@ -0,0 +1,134 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.similarity;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+/**
+ * A feature,count fingerprint, as returned by
+ * {@link org.openscience.cdk.fingerprint.IFingerprinter#getRawFingerprint(org.openscience.cdk.interfaces.IAtomContainer)},
+ * stored as two primitive arrays so that {@link PackedSimilarity} can
+ * compare fingerprints by merging them, without any lookups.
+ *
+ * <p>Each feature is kept as the hash code of its string, in increasing
+ * order. Features with the same hash code are counted as one feature.
+ *
+ * @cdk.keyword    fingerprint
+ * @cdk.keyword    similarity
+ * @cdk.module     fingerprint
+ * @cdk.githash
+ * @see PackedSimilarity
+ */
+@TestClass("org.openscience.cdk.similarity.PackedSimilarityTest")
+public class CountFingerprint {
+
+    final int[] features;
+    final int[] counts;
+    private final long totalCount;
+    private final double squaredNorm;
+
+    /**
+     * Creates the fingerprint of a feature map.
+     *
+     * @param features the counts of the features
+     */
+    @TestMethod("testTanimoto_CountFingerprint")
+    public CountFingerprint(Map<String, Integer> features) {
+        long[] entries = new long[features.size()];
+        int n = 0;
+        for (Map.Entry<String, Integer> entry : features.entrySet()) {
+            int count = entry.getValue();
+            if (count < 0)
+                throw new IllegalArgumentException("Negative count of feature " + entry.getKey());
+            entries[n++] = ((long)entry.getKey().hashCode() << 32) | count;
+        }
+        // sorting the hash in the high bits orders the entries by feature
+        Arrays.sort(entries);
+
+        int[] hashes = new int[n];
+        int[] values = new int[n];
+        int size = 0;
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            int hash = (int)(entries[i] >> 32);
+            int count = (int)entries[i];
+            if (size > 0 && hashes[size - 1] == hash) {
+                values[size - 1] += count;
+            } else {
+                hashes[size] = hash;
+                values[size++] = count;
+            }
+            total += count;
+        }
+        this.features = trim(hashes, size);
+        this.counts = trim(values, size);
+        this.totalCount = total;
+        double norm = 0;
+        for (int i = 0; i < size; i++) norm += (double)counts[i] * counts[i];
+        this.squaredNorm = norm;
+    }
+
+    /**
+     * Returns the first elements of the array, without copying it if all are used.
+     */
+    private static int[] trim(int[] array, int size) {
+        if (size == array.length) return array;
+        int[] trimmed = new int[size];
+        System.arraycopy(array, 0, trimmed, 0, size);
+        return trimmed;
+    }
+
+    /**
+     * Returns the number of distinct features.
+     *
+     * @return the number of features
+     */
+    @TestMethod("testTanimoto_CountFingerprint")
+    public int size() {
+        return features.length;
+    }
+
+    /**
+     * Returns the sum of the counts of all features.
+     *
+     * @return the total count
+     */
+    @TestMethod("testTanimoto_CountFingerprint")
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the sum of the squared counts of all features.
+     *
+     * @return the squared norm of the count vector
+     */
+    @TestMethod("testCosine_CountFingerprint")
+    public double getSquaredNorm() {
+        return squaredNorm;
+    }
+}
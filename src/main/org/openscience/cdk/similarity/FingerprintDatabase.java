@@ -0,0 +1,550 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.similarity;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.io.formats.FingerprintFormat;
+
+/**
+ * Searches a binary fingerprint database, as written by the
+ * {@link FingerprintDatabaseWriter}, for the fingerprints that are most
+ * similar to a query fingerprint:
+ * <pre>
+ * FingerprintDatabase database = new FingerprintDatabase(new File("library.fpt"));
+ * BitSet query = new ExtendedFingerprinter().getFingerprint(molecule);
+ * for (FingerprintDatabase.Hit hit : database.findNearest(query, 10)) {
+ *     System.out.println(hit.getId() + " " + hit.getSimilarity());
+ * }
+ * database.close();
+ * </pre>
+ *
+ * <p>The similarity is the {@link Tanimoto} coefficient. The file is
+ * memory-mapped, so that the fingerprints are not held on the heap, and
+ * is searched by a pool of worker threads. Because the records are sorted
+ * by popcount, only the records with a popcount <i>b</i> for which the
+ * bound min(<i>a</i>,<i>b</i>)/max(<i>a</i>,<i>b</i>) on the Tanimoto
+ * coefficient with a query of popcount <i>a</i> can reach the threshold
+ * are compared with the query {@cdk.cite SWAMIDASS2007}. The top-<i>k</i>
+ * search starts with the popcounts with the highest bound and stops as
+ * soon as that bound is below the <i>k</i>-th best similarity found.
+ *
+ * <p>Two fingerprints without any bits set have a similarity of 0. Hits
+ * with the same similarity are ordered by their record index. The
+ * searches may be run from several threads at the same time.
+ *
+ * @cdk.keyword    fingerprint
+ * @cdk.keyword    similarity
+ * @cdk.keyword    tanimoto
+ * @cdk.module     fingerprint
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.similarity.FingerprintDatabaseTest")
+public class FingerprintDatabase implements Closeable {
+
+    /**
+     * A record of the database that is similar to the query.
+     */
+    public static class Hit {
+
+        private final long index;
+        private final long id;
+        private final float similarity;
+
+        private Hit(long index, long id, float similarity) {
+            this.index = index;
+            this.id = id;
+            this.similarity = similarity;
+        }
+
+        /**
+         * Returns the position of the record in the database, which can be
+         * passed to {@link FingerprintDatabase#getFingerprint(long)}.
+         *
+         * @return the record index
+         */
+        @TestMethod("testFindNearest")
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the id the record was written with.
+         *
+         * @return the record id
+         */
+        @TestMethod("testFindSimilar")
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Returns the Tanimoto coefficient of the record and the query.
+         *
+         * @return the similarity
+         */
+        @TestMethod("testFindSimilar")
+        public float getSimilarity() {
+            return similarity;
+        }
+    }
+
+    /** Orders hits by decreasing similarity, and then by record index. */
+    private static final Comparator<Hit> ORDER = new Comparator<Hit>() {
+        public int compare(Hit hit1, Hit hit2) {
+            return compareTo(hit1.similarity, hit1.index, hit2.similarity, hit2.index);
+        }
+    };
+
+    /** The maximum number of records compared by a worker in one go. */
+    private static final int CHUNK_RECORDS = 1 << 14;
+
+    private final int size;
+    private final int wordCount;
+    private final int recordLongs;
+    private final long recordCount;
+    private final long[] popcountStart;
+    private final LongBuffer[] segments;
+    private final int segmentRecords;
+    private final int threads;
+    private final ExecutorService executor;
+
+    /**
+     * Opens the database with one worker thread per processor.
+     *
+     * @param file the database file
+     * @throws IOException if the file cannot be read or is not a fingerprint database
+     */
+    public FingerprintDatabase(File file) throws IOException {
+        this(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Opens the database with the given number of worker threads.
+     *
+     * @param file    the database file
+     * @param threads the number of threads a search is run on
+     * @throws IOException if the file cannot be read or is not a fingerprint database
+     */
+    public FingerprintDatabase(File file, int threads) throws IOException {
+        this(file, threads, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Opens the database, mapping at most the given number of records per
+     * buffer. A single buffer cannot hold more than 2GB.
+     */
+    FingerprintDatabase(File file, int threads, int maxSegmentRecords) throws IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed");
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(FingerprintFormat.HEADER_LENGTH);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != FingerprintFormat.MAGIC)
+                throw new IOException("Not a fingerprint database: " + file);
+            int version = header.getInt();
+            if (version != FingerprintFormat.VERSION)
+                throw new IOException("Unsupported fingerprint database version: " + version);
+            this.size = header.getInt();
+            this.wordCount = header.getInt();
+            this.recordCount = header.getLong();
+            if (size < 1 || wordCount != (size + 63) / 64 || recordCount < 0)
+                throw new IOException("Corrupt fingerprint database header: " + file);
+            this.recordLongs = wordCount + 1;
+
+            ByteBuffer table = ByteBuffer.allocate(8 * (size + 2));
+            readFully(channel, table, FingerprintFormat.HEADER_LENGTH);
+            table.flip();
+            this.popcountStart = new long[size + 2];
+            table.asLongBuffer().get(popcountStart);
+            if (popcountStart[0] != 0 || popcountStart[size + 1] != recordCount)
+                throw new IOException("Corrupt fingerprint database popcount table: " + file);
+
+            long dataStart = FingerprintFormat.HEADER_LENGTH + table.capacity();
+            long recordBytes = 8L * recordLongs;
+            if (channel.size() < dataStart + recordCount * recordBytes)
+                throw new IOException("Truncated fingerprint database: " + file);
+            this.segmentRecords = (int)Math.max(1, Math.min(
+                maxSegmentRecords, Integer.MAX_VALUE / recordBytes
+            ));
+            int segmentCount = (int)((recordCount + segmentRecords - 1) / segmentRecords);
+            this.segments = new LongBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long first = (long)i * segmentRecords;
+                long records = Math.min(segmentRecords, recordCount - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                          dataStart + first * recordBytes,
+                                          records * recordBytes).asLongBuffer();
+            }
+        } finally {
+            // the mapping stays valid after the channel is closed
+            input.close();
+        }
+
+        this.threads = threads;
+        this.executor = threads == 1 ? null : Executors.newFixedThreadPool(threads,
+            new ThreadFactory() {
+                private int count = 0;
+                public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "FingerprintDatabase-" + (++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+        );
+    }
+
+    /**
+     * Returns the number of bits of the fingerprints in the database.
+     *
+     * @return the fingerprint size
+     */
+    @TestMethod("testWrite_long_BitSet")
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of records in the database.
+     *
+     * @return the number of records
+     */
+    @TestMethod("testWrite_long_BitSet")
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the id of the record at the given index.
+     *
+     * @param  index the record index, from 0 to {@link #getRecordCount()}
+     * @return the id the record was written with
+     */
+    @TestMethod("testWrite_long_BitSet")
+    public long getId(long index) {
+        checkIndex(index);
+        return segments[(int)(index / segmentRecords)]
+            .get((int)(index % segmentRecords) * recordLongs);
+    }
+
+    /**
+     * Returns the fingerprint of the record at the given index.
+     *
+     * @param  index the record index, from 0 to {@link #getRecordCount()}
+     * @return the fingerprint
+     */
+    @TestMethod("testWrite_long_BitSet")
+    public BitSet getFingerprint(long index) {
+        checkIndex(index);
+        LongBuffer segment = segments[(int)(index / segmentRecords)];
+        int offset = (int)(index % segmentRecords) * recordLongs + 1;
+        BitSet fingerprint = new BitSet(size);
+        for (int i = 0; i < wordCount; i++) {
+            long word = segment.get(offset + i);
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                fingerprint.set(i * 64 + bit);
+                word &= word - 1;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns all records with a Tanimoto coefficient of at least the given
+     * threshold, the most similar first.
+     *
+     * @param  query     the query fingerprint
+     * @param  threshold the minimal similarity, larger than 0
+     * @return the hits
+     * @throws CDKException if the query is larger than the fingerprints of the database
+     */
+    @TestMethod("testFindSimilar")
+    public List<Hit> findSimilar(BitSet query, float threshold) throws CDKException {
+        if (!(threshold > 0 && threshold <= 1))
+            throw new IllegalArgumentException("The threshold must be in (0,1]");
+        final long[] words = queryWords(query);
+        final int popcount = popcount(words);
+
+        final List<Unit> units = new ArrayList<Unit>();
+        for (int c = 0; c <= size; c++) {
+            if (bound(popcount, c) >= threshold)
+                addUnits(units, c, 0f);
+        }
+        final float minimum = threshold;
+        List<List<Hit>> results = run(units, new Worker<List<Hit>>() {
+            public List<Hit> search(AtomicInteger next) {
+                List<Hit> hits = new ArrayList<Hit>();
+                for (int u = next.getAndIncrement(); u < units.size(); u = next.getAndIncrement()) {
+                    Unit unit = units.get(u);
+                    for (long index = unit.from; index < unit.to; index++) {
+                        float similarity = similarity(words, popcount, index, unit.popcount);
+                        if (similarity >= minimum)
+                            hits.add(new Hit(index, getId(index), similarity));
+                    }
+                }
+                return hits;
+            }
+        });
+        List<Hit> hits = new ArrayList<Hit>();
+        for (List<Hit> result : results)
+            hits.addAll(result);
+        Collections.sort(hits, ORDER);
+        return hits;
+    }
+
+    /**
+     * Returns the <code>k</code> records with the highest Tanimoto
+     * coefficient, the most similar first. Fewer hits are returned if the
+     * database has fewer records.
+     *
+     * @param  query the query fingerprint
+     * @param  k     the number of hits
+     * @return the hits
+     * @throws CDKException if the query is larger than the fingerprints of the database
+     */
+    @TestMethod("testFindNearest")
+    public List<Hit> findNearest(BitSet query, final int k) throws CDKException {
+        if (k < 1)
+            throw new IllegalArgumentException("At least one hit must be requested");
+        final long[] words = queryWords(query);
+        final int popcount = popcount(words);
+
+        // the popcounts with the highest bound come first, so that a
+        // worker can stop at the first unit that cannot improve its hits
+        Integer[] order = new Integer[size + 1];
+        for (int c = 0; c <= size; c++) order[c] = c;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer c1, Integer c2) {
+                return Float.compare(bound(popcount, c2), bound(popcount, c1));
+            }
+        });
+        final List<Unit> units = new ArrayList<Unit>();
+        for (Integer c : order)
+            addUnits(units, c, bound(popcount, c));
+
+        // the k-th best similarity of any worker, as float bits
+        final AtomicInteger cutoff = new AtomicInteger(Float.floatToIntBits(0f));
+        List<PriorityQueue<Hit>> results = run(units, new Worker<PriorityQueue<Hit>>() {
+            public PriorityQueue<Hit> search(AtomicInteger next) {
+                // the worst hit is at the head of the queue
+                PriorityQueue<Hit> hits = new PriorityQueue<Hit>(k, Collections.reverseOrder(ORDER));
+                for (int u = next.getAndIncrement(); u < units.size(); u = next.getAndIncrement()) {
+                    Unit unit = units.get(u);
+                    if (unit.bound < Float.intBitsToFloat(cutoff.get()))
+                        break;
+                    for (long index = unit.from; index < unit.to; index++) {
+                        float similarity = similarity(words, popcount, index, unit.popcount);
+                        if (hits.size() == k) {
+                            Hit worst = hits.peek();
+                            if (compareTo(similarity, index, worst.similarity, worst.index) >= 0)
+                                continue;
+                            hits.poll();
+                        }
+                        hits.add(new Hit(index, getId(index), similarity));
+                    }
+                    if (hits.size() == k)
+                        raise(cutoff, hits.peek().similarity);
+                }
+                return hits;
+            }
+        });
+        List<Hit> hits = new ArrayList<Hit>();
+        for (PriorityQueue<Hit> result : results)
+            hits.addAll(result);
+        Collections.sort(hits, ORDER);
+        return hits.size() > k ? new ArrayList<Hit>(hits.subList(0, k)) : hits;
+    }
+
+    /**
+     * Stops the worker threads. The mapped file is released once the
+     * database is garbage collected.
+     */
+    @TestMethod("testFindSimilar")
+    public void close() {
+        if (executor != null) executor.shutdown();
+    }
+
+    /**
+     * Copies the bits of a fingerprint into an array of 64-bit words.
+     *
+     * @return the popcount of the fingerprint
+     */
+    @TestMethod("testToWords_BitSet_arraylong")
+    static int toWords(BitSet fingerprint, long[] words) {
+        Arrays.fill(words, 0L);
+        int popcount = 0;
+        for (int bit = fingerprint.nextSetBit(0); bit >= 0; bit = fingerprint.nextSetBit(bit + 1)) {
+            words[bit >>> 6] |= 1L << bit;
+            popcount++;
+        }
+        return popcount;
+    }
+
+    /**
+     * The upper bound of the Tanimoto coefficient of two fingerprints with
+     * the given popcounts.
+     */
+    private static float bound(int popcount1, int popcount2) {
+        int max = Math.max(popcount1, popcount2);
+        return max == 0 ? 0f : (float)Math.min(popcount1, popcount2) / max;
+    }
+
+    private static int compareTo(float similarity1, long index1, float similarity2, long index2) {
+        if (similarity1 != similarity2)
+            return similarity1 > similarity2 ? -1 : 1;
+        return index1 < index2 ? -1 : (index1 == index2 ? 0 : 1);
+    }
+
+    private static void raise(AtomicInteger cutoff, float similarity) {
+        int bits = Float.floatToIntBits(similarity);
+        // the bits of non-negative floats are ordered like the floats
+        for (int current = cutoff.get(); bits > current; current = cutoff.get()) {
+            if (cutoff.compareAndSet(current, bits)) return;
+        }
+    }
+
+    private static int popcount(long[] words) {
+        int popcount = 0;
+        for (long word : words) popcount += Long.bitCount(word);
+        return popcount;
+    }
+
+    private float similarity(long[] query, int queryPopcount, long index, int popcount) {
+        LongBuffer segment = segments[(int)(index / segmentRecords)];
+        int offset = (int)(index % segmentRecords) * recordLongs + 1;
+        int common = 0;
+        for (int i = 0; i < wordCount; i++)
+            common += Long.bitCount(query[i] & segment.get(offset + i));
+        int union = queryPopcount + popcount - common;
+        return union == 0 ? 0f : (float)common / union;
+    }
+
+    private long[] queryWords(BitSet query) throws CDKException {
+        if (query.length() > size)
+            throw new CDKException("The query has more than " + size + " bits");
+        long[] words = new long[wordCount];
+        toWords(query, words);
+        return words;
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= recordCount)
+            throw new IndexOutOfBoundsException("No record " + index);
+    }
+
+    /** Splits the records with the given popcount into units of work. */
+    private void addUnits(List<Unit> units, int popcount, float bound) {
+        for (long from = popcountStart[popcount]; from < popcountStart[popcount + 1];
+             from += CHUNK_RECORDS) {
+            long to = Math.min(from + CHUNK_RECORDS, popcountStart[popcount + 1]);
+            units.add(new Unit(popcount, from, to, bound));
+        }
+    }
+
+    private <T> List<T> run(List<Unit> units, final Worker<T> worker) {
+        final AtomicInteger next = new AtomicInteger();
+        List<T> results = new ArrayList<T>();
+        int workers = Math.min(threads, units.size());
+        if (workers <= 1 || executor == null) {
+            results.add(worker.search(next));
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<Future<T>>();
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(new Callable<T>() {
+                public T call() {
+                    return worker.search(next);
+                }
+            }));
+        }
+        try {
+            for (Future<T> future : futures)
+                results.add(future.get());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while searching the fingerprints", exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+            if (cause instanceof Error) throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+        return results;
+    }
+
+    /** Searches the units taken from a shared counter. */
+    private interface Worker<T> {
+        T search(AtomicInteger next);
+    }
+
+    /** A block of records with the same popcount. */
+    private static class Unit {
+        final int popcount;
+        final long from;
+        final long to;
+        final float bound;
+
+        Unit(int popcount, long from, long to, float bound) {
+            this.popcount = popcount;
+            this.from = from;
+            this.to = to;
+            this.bound = bound;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+        throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of the fingerprint database");
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.similarity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.IFingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.formats.FingerprintFormat;
+
+/**
+ * Writes fingerprints to a binary fingerprint database, which can be
+ * searched with the {@link FingerprintDatabase}. The layout of the file is
+ * described by the {@link FingerprintFormat}.
+ * <pre>
+ * FingerprintDatabaseWriter writer = new FingerprintDatabaseWriter(
+ *     new File("library.fpt"), new ExtendedFingerprinter()
+ * );
+ * IteratingSDFReader reader = new IteratingSDFReader(in, builder);
+ * while (reader.hasNext()) {
+ *     writer.write(reader.next());
+ * }
+ * writer.close();
+ * </pre>
+ *
+ * <p>The records are first written to a temporary file next to the
+ * database, in the order they are given. When the writer is closed, they
+ * are sorted by popcount into the database file, so that only a constant
+ * amount of memory is used, whatever the number of records.
+ *
+ * @cdk.keyword    fingerprint
+ * @cdk.keyword    similarity
+ * @cdk.module     fingerprint
+ * @cdk.githash
+ */
+@TestClass("org.openscience.cdk.similarity.FingerprintDatabaseTest")
+public class FingerprintDatabaseWriter implements Closeable {
+
+    /** The number of records that are buffered per popcount while sorting. */
+    private static final int BUCKET_BUFFER_RECORDS = 64;
+
+    private final File file;
+    private final int size;
+    private final int wordCount;
+    private final IFingerprinter fingerprinter;
+    private final File temporaryFile;
+    private final long[] popcounts;
+    private final long[] words;
+    private DataOutputStream temporary;
+    private long recordCount = 0;
+
+    /**
+     * Creates a writer for fingerprints of the given size, which are given
+     * as {@link BitSet}s with {@link #write(long, BitSet)}.
+     *
+     * @param file the database file, which is overwritten
+     * @param size the number of bits of the fingerprints
+     * @throws IOException if the temporary file cannot be created
+     */
+    public FingerprintDatabaseWriter(File file, int size) throws IOException {
+        this(file, size, null);
+    }
+
+    /**
+     * Creates a writer for the fingerprints calculated by the given
+     * fingerprinter, for molecules given with {@link #write(IAtomContainer)}.
+     *
+     * @param file          the database file, which is overwritten
+     * @param fingerprinter the fingerprinter that calculates the fingerprints
+     * @throws IOException if the temporary file cannot be created
+     */
+    public FingerprintDatabaseWriter(File file, IFingerprinter fingerprinter)
+        throws IOException {
+        this(file, fingerprinter.getSize(), fingerprinter);
+    }
+
+    private FingerprintDatabaseWriter(File file, int size, IFingerprinter fingerprinter)
+        throws IOException {
+        if (size < 1)
+            throw new IllegalArgumentException("The fingerprint size must be positive");
+        this.file = file;
+        this.size = size;
+        this.wordCount = (size + 63) / 64;
+        this.fingerprinter = fingerprinter;
+        this.popcounts = new long[size + 1];
+        this.words = new long[wordCount];
+        File directory = file.getAbsoluteFile().getParentFile();
+        this.temporaryFile = File.createTempFile("cdk-fingerprints", ".tmp", directory);
+        this.temporary = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(temporaryFile), 1 << 16
+        ));
+    }
+
+    /**
+     * Calculates the fingerprint of the given molecule and adds it to the
+     * database. The record id is the number of records written before.
+     *
+     * @param  molecule the molecule to add
+     * @return the id of the record
+     * @throws CDKException if the fingerprint cannot be calculated or written
+     */
+    @TestMethod("testFindSimilar")
+    public long write(IAtomContainer molecule) throws CDKException {
+        if (fingerprinter == null)
+            throw new CDKException("The writer was created without a fingerprinter");
+        long id = recordCount;
+        write(id, fingerprinter.getFingerprint(molecule));
+        return id;
+    }
+
+    /**
+     * Adds a fingerprint to the database.
+     *
+     * @param id          the id of the record, for example the index of the
+     *                    molecule in the input file
+     * @param fingerprint the fingerprint
+     * @throws CDKException if the fingerprint has bits beyond the fingerprint
+     *                      size, or if it cannot be written
+     */
+    @TestMethod("testWrite_long_BitSet")
+    public void write(long id, BitSet fingerprint) throws CDKException {
+        if (temporary == null)
+            throw new CDKException("The writer has been closed");
+        if (fingerprint.length() > size)
+            throw new CDKException("The fingerprint has more than " + size + " bits");
+        int popcount = FingerprintDatabase.toWords(fingerprint, words);
+        try {
+            temporary.writeLong(id);
+            for (long word : words)
+                temporary.writeLong(word);
+        } catch (IOException exception) {
+            throw new CDKException("Could not write the fingerprint: " + exception.getMessage(),
+                                   exception);
+        }
+        popcounts[popcount]++;
+        recordCount++;
+    }
+
+    /**
+     * Returns the number of records written so far.
+     *
+     * @return the number of records
+     */
+    @TestMethod("testWrite_long_BitSet")
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Sorts the records into the database file and removes the temporary
+     * file. Closing a closed writer has no effect.
+     *
+     * @throws IOException if the database file cannot be written
+     */
+    @TestMethod("testFindSimilar")
+    public void close() throws IOException {
+        if (temporary == null) return;
+        temporary.close();
+        temporary = null;
+        try {
+            sort();
+        } finally {
+            temporaryFile.delete();
+        }
+    }
+
+    private void sort() throws IOException {
+        int recordBytes = 8 * (wordCount + 1);
+        long[] next = new long[size + 2];
+        for (int c = 0; c <= size; c++)
+            next[c + 1] = next[c] + popcounts[c];
+
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(0);
+            FileChannel channel = output.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(
+                FingerprintFormat.HEADER_LENGTH + 8 * next.length
+            );
+            header.putInt(FingerprintFormat.MAGIC);
+            header.putInt(FingerprintFormat.VERSION);
+            header.putInt(size);
+            header.putInt(wordCount);
+            header.putLong(recordCount);
+            for (long start : next)
+                header.putLong(start);
+            header.flip();
+            writeFully(channel, header, 0);
+            long dataStart = header.capacity();
+
+            // scatter the records to their popcount block, buffering a few
+            // records per popcount to keep the number of writes down
+            ByteBuffer[] buffers = new ByteBuffer[size + 1];
+            long[] flushed = new long[size + 1];
+            System.arraycopy(next, 0, flushed, 0, size + 1);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(temporaryFile), 1 << 16
+            ));
+            try {
+                for (long record = 0; record < recordCount; record++) {
+                    long id = input.readLong();
+                    int popcount = 0;
+                    for (int i = 0; i < wordCount; i++) {
+                        words[i] = input.readLong();
+                        popcount += Long.bitCount(words[i]);
+                    }
+                    ByteBuffer buffer = buffers[popcount];
+                    if (buffer == null) {
+                        long records = Math.min(BUCKET_BUFFER_RECORDS, popcounts[popcount]);
+                        buffer = ByteBuffer.allocate((int)records * recordBytes);
+                        buffers[popcount] = buffer;
+                    }
+                    buffer.putLong(id);
+                    for (long word : words)
+                        buffer.putLong(word);
+                    if (!buffer.hasRemaining()) {
+                        flushed[popcount] += flush(channel, buffer,
+                            dataStart + flushed[popcount] * recordBytes, recordBytes);
+                    }
+                }
+            } finally {
+                input.close();
+            }
+            for (int c = 0; c <= size; c++) {
+                if (buffers[c] != null && buffers[c].position() > 0)
+                    flush(channel, buffers[c], dataStart + flushed[c] * recordBytes, recordBytes);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private static int flush(FileChannel channel, ByteBuffer buffer, long position,
+                             int recordBytes) throws IOException {
+        buffer.flip();
+        int records = buffer.remaining() / recordBytes;
+        writeFully(channel, buffer, position);
+        buffer.clear();
+        return records;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+        throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+}
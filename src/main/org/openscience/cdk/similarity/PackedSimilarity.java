@@ -0,0 +1,458 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.similarity;
+
+import java.util.BitSet;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+/**
+ * Similarity coefficients of fingerprints that are packed into arrays of
+ * 64-bit words, and of {@link CountFingerprint}s. Unlike {@link Tanimoto},
+ * the methods do not allocate: the common bits of two fingerprints are
+ * counted word by word with {@link Long#bitCount(long)}, and the batch
+ * methods take the popcounts of the fingerprints, computed once with
+ * {@link #cardinalities(long[][])}, and write into an array of the caller:
+ * <pre>
+ * long[][] library = new long[molecules.size()][];
+ * for (int i = 0; i &lt; library.length; i++)
+ *     library[i] = PackedSimilarity.pack(fingerprinter.getFingerprint(molecules.get(i)), 1024);
+ * int[] cardinalities = PackedSimilarity.cardinalities(library);
+ * float[] scores = new float[library.length];
+ * PackedSimilarity.tanimoto(query, PackedSimilarity.cardinality(query),
+ *                           library, cardinalities, scores);
+ * </pre>
+ *
+ * <p>With <i>a</i> and <i>b</i> the popcounts of two fingerprints and
+ * <i>c</i> the number of bits they have in common, the coefficients are:
+ * <ul>
+ * <li>Tanimoto: <i>c</i> / (<i>a</i> + <i>b</i> - <i>c</i>)</li>
+ * <li>Dice: 2<i>c</i> / (<i>a</i> + <i>b</i>)</li>
+ * <li>Tversky: <i>c</i> / (&alpha;(<i>a</i> - <i>c</i>) + &beta;(<i>b</i> - <i>c</i>) + <i>c</i>)</li>
+ * <li>cosine: <i>c</i> / &radic;(<i>ab</i>)</li>
+ * </ul>
+ * A coefficient whose denominator is zero, for example of two fingerprints
+ * without any bits set, is 0. All fingerprints that are compared must have
+ * the same number of words.
+ *
+ * @cdk.keyword    fingerprint
+ * @cdk.keyword    similarity
+ * @cdk.keyword    tanimoto
+ * @cdk.module     fingerprint
+ * @cdk.githash
+ * @see CountFingerprint
+ */
+@TestClass("org.openscience.cdk.similarity.PackedSimilarityTest")
+public class PackedSimilarity {
+
+    private static final int TANIMOTO = 0;
+    private static final int DICE = 1;
+    private static final int TVERSKY = 2;
+    private static final int COSINE = 3;
+
+    private PackedSimilarity() {
+    }
+
+    /**
+     * Packs a fingerprint into an array of 64-bit words. Bit <i>i</i> of
+     * the fingerprint is bit <i>i</i> mod 64 of word <i>i</i> / 64.
+     *
+     * @param  fingerprint the fingerprint
+     * @param  size        the number of bits of the fingerprint
+     * @return             the words
+     */
+    @TestMethod("testPack")
+    public static long[] pack(BitSet fingerprint, int size) {
+        if (fingerprint.length() > size)
+            throw new IllegalArgumentException("The fingerprint has more than " + size + " bits");
+        long[] words = new long[(size + 63) >>> 6];
+        FingerprintDatabase.toWords(fingerprint, words);
+        return words;
+    }
+
+    /**
+     * Returns the number of bits set in a packed fingerprint.
+     *
+     * @param  fingerprint the packed fingerprint
+     * @return             the popcount
+     */
+    @TestMethod("testPack")
+    public static int cardinality(long[] fingerprint) {
+        int cardinality = 0;
+        for (long word : fingerprint) cardinality += Long.bitCount(word);
+        return cardinality;
+    }
+
+    /**
+     * Returns the number of bits set in each of the packed fingerprints.
+     *
+     * @param  fingerprints the packed fingerprints
+     * @return              the popcounts
+     */
+    @TestMethod("testTanimoto_OneToMany")
+    public static int[] cardinalities(long[][] fingerprints) {
+        int[] cardinalities = new int[fingerprints.length];
+        for (int i = 0; i < fingerprints.length; i++)
+            cardinalities[i] = cardinality(fingerprints[i]);
+        return cardinalities;
+    }
+
+    /**
+     * Returns the number of bits that are set in both packed fingerprints.
+     *
+     * @param  fingerprint1 the first packed fingerprint
+     * @param  fingerprint2 the second packed fingerprint
+     * @return              the popcount of the intersection
+     */
+    @TestMethod("testTanimoto")
+    public static int common(long[] fingerprint1, long[] fingerprint2) {
+        if (fingerprint1.length != fingerprint2.length)
+            throw new IllegalArgumentException("Fingerprints must have the same number of words");
+        int common = 0;
+        for (int i = 0; i < fingerprint1.length; i++)
+            common += Long.bitCount(fingerprint1[i] & fingerprint2[i]);
+        return common;
+    }
+
+    /**
+     * Evaluates the Tanimoto coefficient of two packed fingerprints.
+     *
+     * @param  fingerprint1 the first packed fingerprint
+     * @param  fingerprint2 the second packed fingerprint
+     * @return              the Tanimoto coefficient
+     */
+    @TestMethod("testTanimoto")
+    public static float tanimoto(long[] fingerprint1, long[] fingerprint2) {
+        return score(TANIMOTO, common(fingerprint1, fingerprint2),
+                     cardinality(fingerprint1), cardinality(fingerprint2), 0f, 0f);
+    }
+
+    /**
+     * Evaluates the Dice coefficient of two packed fingerprints.
+     *
+     * @param  fingerprint1 the first packed fingerprint
+     * @param  fingerprint2 the second packed fingerprint
+     * @return              the Dice coefficient
+     */
+    @TestMethod("testDice")
+    public static float dice(long[] fingerprint1, long[] fingerprint2) {
+        return score(DICE, common(fingerprint1, fingerprint2),
+                     cardinality(fingerprint1), cardinality(fingerprint2), 0f, 0f);
+    }
+
+    /**
+     * Evaluates the Tversky index of two packed fingerprints. With both
+     * weights 1 it is the Tanimoto coefficient, and with both weights 0.5
+     * the Dice coefficient.
+     *
+     * @param  fingerprint1 the first packed fingerprint, for example the query
+     * @param  fingerprint2 the second packed fingerprint
+     * @param  alpha        the weight of the bits only set in the first fingerprint
+     * @param  beta         the weight of the bits only set in the second fingerprint
+     * @return              the Tversky index
+     */
+    @TestMethod("testTversky")
+    public static float tversky(long[] fingerprint1, long[] fingerprint2, float alpha, float beta) {
+        return score(TVERSKY, common(fingerprint1, fingerprint2),
+                     cardinality(fingerprint1), cardinality(fingerprint2), alpha, beta);
+    }
+
+    /**
+     * Evaluates the cosine coefficient of two packed fingerprints.
+     *
+     * @param  fingerprint1 the first packed fingerprint
+     * @param  fingerprint2 the second packed fingerprint
+     * @return              the cosine coefficient
+     */
+    @TestMethod("testCosine")
+    public static float cosine(long[] fingerprint1, long[] fingerprint2) {
+        return score(COSINE, common(fingerprint1, fingerprint2),
+                     cardinality(fingerprint1), cardinality(fingerprint2), 0f, 0f);
+    }
+
+    /**
+     * Evaluates the Tanimoto coefficients of a query and each of the
+     * targets.
+     *
+     * @param query               the packed query fingerprint
+     * @param queryCardinality    the popcount of the query
+     * @param targets             the packed target fingerprints
+     * @param targetCardinalities the popcounts of the targets
+     * @param result              receives the coefficient of target <i>i</i> at index <i>i</i>
+     */
+    @TestMethod("testTanimoto_OneToMany")
+    public static void tanimoto(long[] query, int queryCardinality,
+                                long[][] targets, int[] targetCardinalities, float[] result) {
+        oneToMany(TANIMOTO, query, queryCardinality, targets, targetCardinalities, 0f, 0f, result, 0);
+    }
+
+    /**
+     * Evaluates the Dice coefficients of a query and each of the targets.
+     *
+     * @param query               the packed query fingerprint
+     * @param queryCardinality    the popcount of the query
+     * @param targets             the packed target fingerprints
+     * @param targetCardinalities the popcounts of the targets
+     * @param result              receives the coefficient of target <i>i</i> at index <i>i</i>
+     */
+    @TestMethod("testDice")
+    public static void dice(long[] query, int queryCardinality,
+                            long[][] targets, int[] targetCardinalities, float[] result) {
+        oneToMany(DICE, query, queryCardinality, targets, targetCardinalities, 0f, 0f, result, 0);
+    }
+
+    /**
+     * Evaluates the Tversky indices of a query and each of the targets.
+     *
+     * @param query               the packed query fingerprint
+     * @param queryCardinality    the popcount of the query
+     * @param targets             the packed target fingerprints
+     * @param targetCardinalities the popcounts of the targets
+     * @param alpha               the weight of the bits only set in the query
+     * @param beta                the weight of the bits only set in the target
+     * @param result              receives the index of target <i>i</i> at index <i>i</i>
+     */
+    @TestMethod("testTversky")
+    public static void tversky(long[] query, int queryCardinality,
+                               long[][] targets, int[] targetCardinalities,
+                               float alpha, float beta, float[] result) {
+        oneToMany(TVERSKY, query, queryCardinality, targets, targetCardinalities, alpha, beta, result, 0);
+    }
+
+    /**
+     * Evaluates the cosine coefficients of a query and each of the targets.
+     *
+     * @param query               the packed query fingerprint
+     * @param queryCardinality    the popcount of the query
+     * @param targets             the packed target fingerprints
+     * @param targetCardinalities the popcounts of the targets
+     * @param result              receives the coefficient of target <i>i</i> at index <i>i</i>
+     */
+    @TestMethod("testCosine")
+    public static void cosine(long[] query, int queryCardinality,
+                              long[][] targets, int[] targetCardinalities, float[] result) {
+        oneToMany(COSINE, query, queryCardinality, targets, targetCardinalities, 0f, 0f, result, 0);
+    }
+
+    /**
+     * Evaluates the Tanimoto coefficients of each query and each target.
+     *
+     * @param queries             the packed query fingerprints
+     * @param queryCardinalities  the popcounts of the queries
+     * @param targets             the packed target fingerprints
+     * @param targetCardinalities the popcounts of the targets
+     * @param result              receives the coefficient of query <i>i</i> and
+     *                            target <i>j</i> at index <i>i</i> * targets.length + <i>j</i>
+     */
+    @TestMethod("testTanimoto_ManyToMany")
+    public static void tanimoto(long[][] queries, int[] queryCardinalities,
+                                long[][] targets, int[] targetCardinalities, float[] result) {
+        manyToMany(TANIMOTO, queries, queryCardinalities, targets, targetCardinalities, 0f, 0f, result);
+    }
+
+    /**
+     * Evaluates the Dice coefficients of each query and each target.
+     *
+     * @param queries             the packed query fingerprints
+     * @param queryCardinalities  the popcounts of the queries
+     * @param targets             the packed target fingerprints
+     * @param targetCardinalities the popcounts of the targets
+     * @param result              receives the coefficient of query <i>i</i> and
+     *                            target <i>j</i> at index <i>i</i> * targets.length + <i>j</i>
+     */
+    @TestMethod("testDice")
+    public static void dice(long[][] queries, int[] queryCardinalities,
+                            long[][] targets, int[] targetCardinalities, float[] result) {
+        manyToMany(DICE, queries, queryCardinalities, targets, targetCardinalities, 0f, 0f, result);
+    }
+
+    /**
+     * Evaluates the Tversky indices of each query and each target.
+     *
+     * @param queries             the packed query fingerprints
+     * @param queryCardinalities  the popcounts of the queries
+     * @param targets             the packed target fingerprints
+     * @param targetCardinalities the popcounts of the targets
+     * @param alpha               the weight of the bits only set in the query
+     * @param beta                the weight of the bits only set in the target
+     * @param result              receives the index of query <i>i</i> and
+     *                            target <i>j</i> at index <i>i</i> * targets.length + <i>j</i>
+     */
+    @TestMethod("testTversky")
+    public static void tversky(long[][] queries, int[] queryCardinalities,
+                               long[][] targets, int[] targetCardinalities,
+                               float alpha, float beta, float[] result) {
+        manyToMany(TVERSKY, queries, queryCardinalities, targets, targetCardinalities, alpha, beta, result);
+    }
+
+    /**
+     * Evaluates the cosine coefficients of each query and each target.
+     *
+     * @param queries             the packed query fingerprints
+     * @param queryCardinalities  the popcounts of the queries
+     * @param targets             the packed target fingerprints
+     * @param targetCardinalities the popcounts of the targets
+     * @param result              receives the coefficient of query <i>i</i> and
+     *                            target <i>j</i> at index <i>i</i> * targets.length + <i>j</i>
+     */
+    @TestMethod("testCosine")
+    public static void cosine(long[][] queries, int[] queryCardinalities,
+                              long[][] targets, int[] targetCardinalities, float[] result) {
+        manyToMany(COSINE, queries, queryCardinalities, targets, targetCardinalities, 0f, 0f, result);
+    }
+
+    /**
+     * Evaluates the Tanimoto coefficient of two count fingerprints, the sum
+     * of the smaller counts of each feature over the sum of the larger ones.
+     *
+     * @param  fingerprint1 the first count fingerprint
+     * @param  fingerprint2 the second count fingerprint
+     * @return              the Tanimoto coefficient
+     */
+    @TestMethod("testTanimoto_CountFingerprint")
+    public static float tanimoto(CountFingerprint fingerprint1, CountFingerprint fingerprint2) {
+        long common = commonCount(fingerprint1, fingerprint2);
+        long union = fingerprint1.getTotalCount() + fingerprint2.getTotalCount() - common;
+        return union == 0 ? 0f : (float)common / union;
+    }
+
+    /**
+     * Evaluates the Tanimoto coefficients of a count fingerprint and each
+     * of the targets.
+     *
+     * @param query   the query count fingerprint
+     * @param targets the target count fingerprints
+     * @param result  receives the coefficient of target <i>i</i> at index <i>i</i>
+     */
+    @TestMethod("testTanimoto_CountFingerprint")
+    public static void tanimoto(CountFingerprint query, CountFingerprint[] targets, float[] result) {
+        checkResult(result, targets.length);
+        for (int i = 0; i < targets.length; i++)
+            result[i] = tanimoto(query, targets[i]);
+    }
+
+    /**
+     * Evaluates the Dice coefficient of two count fingerprints, twice the
+     * sum of the smaller counts of each feature over the sum of all counts.
+     *
+     * @param  fingerprint1 the first count fingerprint
+     * @param  fingerprint2 the second count fingerprint
+     * @return              the Dice coefficient
+     */
+    @TestMethod("testDice_CountFingerprint")
+    public static float dice(CountFingerprint fingerprint1, CountFingerprint fingerprint2) {
+        long total = fingerprint1.getTotalCount() + fingerprint2.getTotalCount();
+        return total == 0 ? 0f : 2f * commonCount(fingerprint1, fingerprint2) / total;
+    }
+
+    /**
+     * Evaluates the cosine coefficient of two count fingerprints, taken as
+     * vectors of counts.
+     *
+     * @param  fingerprint1 the first count fingerprint
+     * @param  fingerprint2 the second count fingerprint
+     * @return              the cosine coefficient
+     */
+    @TestMethod("testCosine_CountFingerprint")
+    public static float cosine(CountFingerprint fingerprint1, CountFingerprint fingerprint2) {
+        int[] features1 = fingerprint1.features, features2 = fingerprint2.features;
+        int[] counts1 = fingerprint1.counts, counts2 = fingerprint2.counts;
+        double product = 0;
+        for (int i = 0, j = 0; i < features1.length && j < features2.length; ) {
+            if (features1[i] < features2[j]) i++;
+            else if (features1[i] > features2[j]) j++;
+            else product += (double)counts1[i++] * counts2[j++];
+        }
+        double norms = Math.sqrt(fingerprint1.getSquaredNorm() * fingerprint2.getSquaredNorm());
+        return norms == 0 ? 0f : (float)(product / norms);
+    }
+
+    /** Sums the smaller count of each feature the fingerprints have in common. */
+    private static long commonCount(CountFingerprint fingerprint1, CountFingerprint fingerprint2) {
+        int[] features1 = fingerprint1.features, features2 = fingerprint2.features;
+        int[] counts1 = fingerprint1.counts, counts2 = fingerprint2.counts;
+        long common = 0;
+        for (int i = 0, j = 0; i < features1.length && j < features2.length; ) {
+            if (features1[i] < features2[j]) i++;
+            else if (features1[i] > features2[j]) j++;
+            else common += Math.min(counts1[i++], counts2[j++]);
+        }
+        return common;
+    }
+
+    private static void oneToMany(int coefficient, long[] query, int queryCardinality,
+                                  long[][] targets, int[] targetCardinalities,
+                                  float alpha, float beta, float[] result, int offset) {
+        if (targetCardinalities.length != targets.length)
+            throw new IllegalArgumentException("One cardinality per target is needed");
+        checkResult(result, offset + targets.length);
+        int words = query.length;
+        for (int t = 0; t < targets.length; t++) {
+            long[] target = targets[t];
+            if (target.length != words)
+                throw new IllegalArgumentException("Fingerprints must have the same number of words");
+            int common = 0;
+            for (int i = 0; i < words; i++)
+                common += Long.bitCount(query[i] & target[i]);
+            result[offset + t] = score(coefficient, common, queryCardinality,
+                                       targetCardinalities[t], alpha, beta);
+        }
+    }
+
+    private static void manyToMany(int coefficient, long[][] queries, int[] queryCardinalities,
+                                   long[][] targets, int[] targetCardinalities,
+                                   float alpha, float beta, float[] result) {
+        if (queryCardinalities.length != queries.length)
+            throw new IllegalArgumentException("One cardinality per query is needed");
+        checkResult(result, queries.length * targets.length);
+        for (int q = 0; q < queries.length; q++)
+            oneToMany(coefficient, queries[q], queryCardinalities[q], targets, targetCardinalities,
+                      alpha, beta, result, q * targets.length);
+    }
+
+    private static float score(int coefficient, int common, int cardinality1, int cardinality2,
+                               float alpha, float beta) {
+        float denominator;
+        switch (coefficient) {
+            case TANIMOTO:
+                denominator = cardinality1 + cardinality2 - common;
+                break;
+            case DICE:
+                denominator = 0.5f * (cardinality1 + cardinality2);
+                break;
+            case TVERSKY:
+                denominator = alpha * (cardinality1 - common) + beta * (cardinality2 - common) + common;
+                break;
+            default:
+                denominator = (float)Math.sqrt((double)cardinality1 * cardinality2);
+                break;
+        }
+        return denominator == 0 ? 0f : common / denominator;
+    }
+
+    private static void checkResult(float[] result, int length) {
+        if (result.length < length)
+            throw new IllegalArgumentException("The result array must hold at least " + length + " values");
+    }
+}
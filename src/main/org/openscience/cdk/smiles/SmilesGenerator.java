@@ -80,6 +80,11 @@ import java.util.Vector;
  * In absence of such configuration it is possible that different forms
  * of the same molecule will not result in the same canonical SMILES.
  *
+ * <p>The generator is thread-safe: each SMILES is created with its own
+ * state, so one generator can be used by several threads at the same time,
+ * as long as they do not work on the same molecule. Rings passed with
+ * {@link #setRings(IRingSet)} are used by the next SMILES that is created.
+ *
  * @author         Oliver Horlacher
  * @author         Stefan Kuhn (chiral smiles)
  * @cdk.created    2002-02-26
@@ -118,7 +123,7 @@ public class SmilesGenerator
 	/**
 	 *  The canonical labler
 	 */
-	private CanonicalLabeler canLabler = new CanonicalLabeler();
+	private static final CanonicalLabeler canLabler = new CanonicalLabeler();
 	private final String RING_CONFIG = "stereoconfig";
 	private final String UP = "up";
 	private final String DOWN = "down";
@@ -137,6 +142,17 @@ public class SmilesGenerator
 		this.useAromaticityFlag=useAromaticityFlag;
 	}
 
+	/**
+	 *  Creates a generator for a single SMILES, with the settings of the given
+	 *  generator. The state of the depth first search is kept in this copy, so
+	 *  that several threads can use the same generator.
+	 */
+	private SmilesGenerator(SmilesGenerator settings, IRingSet rings) {
+		this.useAromaticityFlag = settings.useAromaticityFlag;
+		this.ringFinder = settings.ringFinder;
+		this.rings = rings;
+	}
+
 	/**
 	 *  Tells if a certain bond is center of a valid double bond configuration.
 	 *
@@ -199,7 +215,7 @@ public class SmilesGenerator
      * @return the SMILES representation of the molecule
      */
     @TestMethod("testCisResorcinol,testEthylPropylPhenantren,testAlanin")
-    public synchronized String createSMILES(IAtomContainer molecule)
+    public String createSMILES(IAtomContainer molecule)
 	{
 		try
 		{
@@ -218,7 +234,7 @@ public class SmilesGenerator
      * @return the SMILES representation of the reaction
      * @throws org.openscience.cdk.exception.CDKException if there is an error during SMILES generation
      */
-	public synchronized String createSMILES(IReaction reaction) throws CDKException
+	public String createSMILES(IReaction reaction) throws CDKException
 	{
 		StringBuffer reactionSMILES = new StringBuffer();
 		IAtomContainerSet reactants = reaction.getReactants();
@@ -283,7 +299,7 @@ public class SmilesGenerator
      * @return the SMILES representation of the molecule
 	 */
     @TestMethod("testAlaSMILES,testSugarSMILES")
-    public synchronized String createChiralSMILES(IAtomContainer molecule, boolean[] doubleBondConfiguration) throws CDKException
+    public String createChiralSMILES(IAtomContainer molecule, boolean[] doubleBondConfiguration) throws CDKException
 	{
 		return (createSMILES(molecule, true, doubleBondConfiguration));
 	}
@@ -314,7 +330,7 @@ public class SmilesGenerator
      * @see                             org.openscience.cdk.graph.invariant.CanonicalLabeler#canonLabel(IAtomContainer)
      * @return the SMILES representation of the molecule
      */
-	public synchronized String createSMILES(IAtomContainer molecule, boolean chiral, boolean doubleBondConfiguration[]) throws CDKException
+	public String createSMILES(IAtomContainer molecule, boolean chiral, boolean doubleBondConfiguration[]) throws CDKException
 	{
 	    IAtomContainerSet moleculeSet = ConnectivityChecker.partitionIntoMolecules(molecule);
 		if (moleculeSet.getAtomContainerCount() > 1)
@@ -365,12 +381,23 @@ public class SmilesGenerator
      * @return the SMILES representation of the molecule
 	 */
 	@TestMethod("testCreateSMILESWithoutCheckForMultipleMolecules_withDetectAromaticity,testCreateSMILESWithoutCheckForMultipleMolecules_withoutDetectAromaticity")
-	public synchronized String createSMILESWithoutCheckForMultipleMolecules(IAtomContainer molecule, boolean chiral, boolean doubleBondConfiguration[]) throws CDKException
+	public String createSMILESWithoutCheckForMultipleMolecules(IAtomContainer molecule, boolean chiral, boolean doubleBondConfiguration[]) throws CDKException
 	{
 		if (molecule.getAtomCount() == 0)
 		{
 			return "";
 		}
+		IRingSet ringsOfMolecule = rings;
+		rings = null;
+		return new SmilesGenerator(this, ringsOfMolecule).generate(molecule, chiral, doubleBondConfiguration);
+	}
+
+	/**
+	 *  Generates the SMILES of a connected molecule with the state of this
+	 *  generator, which is only used for one call.
+	 */
+	private String generate(IAtomContainer molecule, boolean chiral, boolean doubleBondConfiguration[]) throws CDKException
+	{
 		canLabler.canonLabel(molecule);
 		brokenBonds.clear();
 		ringMarker = 0;
@@ -395,9 +422,15 @@ public class SmilesGenerator
 		    if(rings == null){
     			if (ringFinder == null)
     			{
-    				ringFinder = new AllRingsFinder();
+    				rings = new AllRingsFinder().findAllRings(molecule);
+    			} else
+    			{
+    				// a ring finder set by the user may be shared between threads
+    				synchronized (ringFinder)
+    				{
+    					rings = ringFinder.findAllRings(molecule);
+    				}
     			}
-    			rings = ringFinder.findAllRings(molecule);
 		    }
 		    AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(molecule);
 		    CDKHueckelAromaticityDetector.detectAromaticity(molecule);
@@ -89,6 +89,25 @@ import org.openscience.cdk.tools.periodictable.PeriodicTable;
 public class SmilesParser {
 
 	private final static String HAS_HARDCODED_HYDROGEN_COUNT = "SmilesParser.HasHardcodedHydrogenCount";
+
+    /**
+     * Default valences of the elements in the 'organic subset', used to
+     * derive the implicit hydrogen counts without atom typing.
+     */
+    private static final Map<String,int[]> DEFAULT_VALENCES = new HashMap<String,int[]>();
+    static {
+        DEFAULT_VALENCES.put("H", new int[]{1});
+        DEFAULT_VALENCES.put("B", new int[]{3});
+        DEFAULT_VALENCES.put("C", new int[]{4});
+        DEFAULT_VALENCES.put("N", new int[]{3, 5});
+        DEFAULT_VALENCES.put("O", new int[]{2});
+        DEFAULT_VALENCES.put("P", new int[]{3, 5});
+        DEFAULT_VALENCES.put("S", new int[]{2, 4, 6});
+        DEFAULT_VALENCES.put("F", new int[]{1});
+        DEFAULT_VALENCES.put("Cl", new int[]{1});
+        DEFAULT_VALENCES.put("Br", new int[]{1});
+        DEFAULT_VALENCES.put("I", new int[]{1});
+    }
 	
 	private static ILoggingTool logger =
 	    LoggingToolFactory.createLoggingTool(SmilesParser.class);
@@ -110,6 +129,12 @@ public class SmilesParser {
      */
     private boolean preservingAromaticity=false;
 
+    /*
+     * Boolean to switch off atom typing, hydrogen adding with the CDKHydrogenAdder and aromaticity detection,
+     * leaving only the connection table with implicit hydrogen counts and the aromaticity given by the Smiles.
+     */
+    private boolean perceivingAtomTypes=true;
+
 	/**
 	 * Constructor for the SmilesParser object.
 	 * 
@@ -250,6 +275,44 @@ public class SmilesParser {
 		    molecule.addStereoElement(l4Chiral);
 		}
 
+        if (perceivingAtomTypes) {
+            perceive(molecule);
+        } else {
+            addDefaultImplicitHydrogens(molecule);
+            markAromaticBonds(molecule);
+        }
+
+		return molecule;
+	}
+
+    /**
+     * Perceives the atom types, implicit hydrogen counts and aromaticity of a
+     * molecule, as {@link #parseSmiles(String)} does unless atom type
+     * perception is switched off with {@link #setPerceivingAtomTypes(boolean)}.
+     * This allows to parse SMILES in bulk and do the perception later, only
+     * for the molecules that need it. The implicit hydrogen counts of the atoms
+     * outside brackets are recalculated and, unless aromaticity is preserved,
+     * the aromaticity flags given by the SMILES are replaced by the perceived
+     * ones.
+     *
+     * @param molecule a molecule returned by this parser
+     */
+    @TestMethod("testPerceiveAtomTypesAndAromaticity")
+    public void perceiveAtomTypesAndAromaticity(IAtomContainer molecule) {
+        for (IAtom atom : molecule.atoms()) {
+            if (atom.getProperty(HAS_HARDCODED_HYDROGEN_COUNT) == null)
+                atom.setImplicitHydrogenCount((Integer)CDKConstants.UNSET);
+        }
+        if (!preservingAromaticity) {
+            for (IAtom atom : molecule.atoms())
+                atom.setFlag(CDKConstants.ISAROMATIC, false);
+            for (IBond bond : molecule.bonds())
+                bond.setFlag(CDKConstants.ISAROMATIC, false);
+        }
+        perceive(molecule);
+    }
+
+    private void perceive(IAtomContainer molecule) {
         // perceive atom types
         CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(molecule.getBuilder());
         int i = 0;
@@ -275,17 +338,9 @@ public class SmilesParser {
             this.perceiveAromaticity(molecule);
         }
         else  {
-            for (IBond bond : molecule.bonds() ) {
-                if(!bond.getFlag(CDKConstants.ISAROMATIC) &&
-                    bond.getAtom(0).getFlag(CDKConstants.ISAROMATIC) &&
-                    bond.getAtom(1).getFlag(CDKConstants.ISAROMATIC)) {
-                       bond.setFlag(CDKConstants.ISAROMATIC,true);
-                   }
-            }
+            markAromaticBonds(molecule);
         }
-
-		return molecule;
-	}
+    }
 
 	/**
 	 * This routine parses the smiles string into a molecule but does not add hydrogens, saturate, or perceive aromaticity
@@ -357,7 +412,7 @@ public class SmilesParser {
 									currentSymbol = currentSymbol.toUpperCase();
 									atom = builder.newInstance(IAtom.class,currentSymbol);
 									atom.setHybridization(Hybridization.SP2);
-                                    if (preservingAromaticity ) {
+                                    if (preservingAromaticity || !perceivingAtomTypes) {
                                         atom.setFlag(CDKConstants.ISAROMATIC, true);
                                     }
 								} else
@@ -385,7 +440,7 @@ public class SmilesParser {
 						bond = builder.newInstance(IBond.class,atom, lastNode, bondStatus);
                         if (bondIsAromatic) {
                             bond.setFlag(CDKConstants.ISAROMATIC, true);
-                            if (preservingAromaticity) {
+                            if (preservingAromaticity || !perceivingAtomTypes) {
                                 bond.getAtom(0).setFlag(CDKConstants.ISAROMATIC, true);
                                 bond.getAtom(1).setFlag(CDKConstants.ISAROMATIC, true);
                             }
@@ -795,7 +850,7 @@ public class SmilesParser {
 					        if (hcount > 0) {
 					            atom.setImplicitHydrogenCount(hcount - 1);
 					        }
-					        if (preservingAromaticity )
+					        if (preservingAromaticity || !perceivingAtomTypes)
 					            atom.setFlag(CDKConstants.ISAROMATIC, true);
 					    }
 					    else
@@ -999,6 +1054,42 @@ public class SmilesParser {
 		}
 	}
 
+    /**
+     * Sets the implicit hydrogen counts of the atoms outside brackets with the
+     * SMILES rule: the lowest default valence that is at least the sum of the
+     * bond orders, where an aromatic atom counts one more, minus that sum.
+     */
+    private void addDefaultImplicitHydrogens(IAtomContainer container) {
+        for (IAtom atom : container.atoms()) {
+            if (atom.getProperty(HAS_HARDCODED_HYDROGEN_COUNT) != null) continue;
+            int[] valences = DEFAULT_VALENCES.get(atom.getSymbol());
+            int hydrogens = 0;
+            if (valences != null && !(atom instanceof IPseudoAtom)) {
+                int bondOrderSum = atom.getFlag(CDKConstants.ISAROMATIC) ? 1 : 0;
+                for (IBond bond : container.getConnectedBondsList(atom)) {
+                    bondOrderSum += (int)BondManipulator.destroyBondOrder(bond.getOrder());
+                }
+                for (int valence : valences) {
+                    if (valence >= bondOrderSum) {
+                        hydrogens = valence - bondOrderSum;
+                        break;
+                    }
+                }
+            }
+            atom.setImplicitHydrogenCount(hydrogens);
+        }
+    }
+
+    private void markAromaticBonds(IAtomContainer molecule) {
+        for (IBond bond : molecule.bonds() ) {
+            if(!bond.getFlag(CDKConstants.ISAROMATIC) &&
+                bond.getAtom(0).getFlag(CDKConstants.ISAROMATIC) &&
+                bond.getAtom(1).getFlag(CDKConstants.ISAROMATIC)) {
+                   bond.setFlag(CDKConstants.ISAROMATIC,true);
+               }
+        }
+    }
+
 	private void perceiveAromaticity(IAtomContainer m) {
 	    IAtomContainerSet moleculeSet = ConnectivityChecker.partitionIntoMolecules(m);
 		logger.debug("#mols ", moleculeSet.getAtomContainerCount());
@@ -1035,6 +1126,33 @@ public class SmilesParser {
     public boolean isPreservingAromaticity() {
         return preservingAromaticity;
     }
+
+    /**
+     * Makes the Smiles parser skip atom typing, hydrogen adding with the
+     * {@link CDKHydrogenAdder} and aromaticity detection, which take most of
+     * the time of parsing. The molecules then only have the connection table,
+     * with the implicit hydrogen counts of the Smiles and the aromaticity
+     * flags of the lowercase atoms and the bonds between them. The perception
+     * can be done later with {@link #perceiveAtomTypesAndAromaticity(IAtomContainer)}.
+     * Default true.
+     *
+     * @param perceivingAtomTypes false to only parse the connection table
+     */
+    @TestMethod("testPerceivingAtomTypes")
+    public void setPerceivingAtomTypes(boolean perceivingAtomTypes) {
+        this.perceivingAtomTypes = perceivingAtomTypes;
+    }
+
+    /**
+     * Gets the (default true) setting to perceive atom types and aromaticity
+     * while parsing.
+     *
+     * @return true or false indicating if atom types are perceived
+     */
+    @TestMethod("testPerceivingAtomTypes")
+    public boolean isPerceivingAtomTypes() {
+        return perceivingAtomTypes;
+    }
 	
 }
 
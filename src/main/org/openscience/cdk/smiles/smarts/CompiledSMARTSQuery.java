@@ -0,0 +1,915 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType.Hybridization;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.AliphaticAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AliphaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AnyAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AnyOrderQueryBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticOrSingleQueryBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticQueryBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AtomicNumberAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.ChiralityAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.DegreeAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.ExplicitConnectionAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.FormalChargeAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.HybridizationNumberAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.HydrogenAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.ImplicitHCountAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.LogicalOperatorAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.LogicalOperatorBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.MassAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.NonCHHeavyAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.OrderQueryBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.PeriodicGroupNumberAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.RecursiveSmartsAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.RingAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.RingBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.RingIdentifierAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.RingMembershipAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.SmallestRingAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.TotalConnectionAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.TotalHCountAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.TotalRingConnectionAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.TotalValencyAtom;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * A SMARTS query compiled for matching against {@link SMARTSTarget}s. The
+ * parser gives each query atom and bond as a tree of SMARTS atoms and bonds
+ * joined by {@link LogicalOperatorAtom}s and {@link LogicalOperatorBond}s,
+ * which read the target atoms through their properties. Compiling turns
+ * each tree into a predicate over the feature tables of the target, in
+ * which nested and- and or-expressions are flattened, constant parts are
+ * folded, the feature tests of a conjunction are merged into one list of
+ * integer comparisons, and the cheaper tests are done first:
+ * <pre>
+ * CompiledSMARTSQuery query = new CompiledSMARTSQuery(SMARTSParser.parse("[C;H2;R1]"));
+ * int count = query.countMatches(new SMARTSTarget(molecule));
+ * </pre>
+ *
+ * <p>The query is searched for atom by atom, as by the
+ * {@link org.openscience.cdk.isomorphism.SubstructureMatcher}, and gives
+ * the same mappings. A recursive SMARTS is compiled as a query of its own,
+ * and is only searched for, anchored on the target atom, when one of the
+ * atoms it applies to is tried. Its outcome for that atom is remembered
+ * for the rest of the match.
+ *
+ * <p>Atoms and bonds the compiler does not know, such as
+ * {@link org.openscience.cdk.isomorphism.matchers.smarts.ConnectionCountAtom}
+ * and {@link org.openscience.cdk.isomorphism.matchers.smarts.StereoBond},
+ * are matched with their own <code>matches</code> method against the atoms
+ * and bonds of the initialized copy held by the target. A compiled query
+ * keeps no state between matches, and can be used by several threads at
+ * the same time.
+ *
+ * @cdk.module  smarts
+ * @cdk.githash
+ * @cdk.keyword SMARTS
+ * @see         SMARTSQueryTool
+ */
+@TestClass("org.openscience.cdk.smiles.smarts.CompiledSMARTSQueryTest")
+public class CompiledSMARTSQuery {
+
+    private final IQueryAtomContainer query;
+    private final Predicate[] atoms;
+    private final int[][] queryNeighbours;
+    private final Predicate[][] queryNeighbourBonds;
+
+    // the index of this query among the query and its recursive queries,
+    // and their number, which is only complete for the outer query
+    private final int id;
+    private final int queryCount;
+
+    // the order in which the atoms are mapped when the first atom is
+    // anchored, as for a recursive query
+    private final Plan anchoredPlan;
+
+    /**
+     * Compiles a query.
+     *
+     * @param query the query, as given by the SMARTS parser
+     */
+    @TestMethod("testCompiledSMARTSQuery_IQueryAtomContainer")
+    public CompiledSMARTSQuery(IQueryAtomContainer query) {
+        this(query, new int[1]);
+    }
+
+    private CompiledSMARTSQuery(IQueryAtomContainer query, int[] counter) {
+        this.query = query;
+        this.id = counter[0]++;
+        int atomCount = query.getAtomCount();
+        Map<IAtom, Integer> index = new IdentityHashMap<IAtom, Integer>();
+        atoms = new Predicate[atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            index.put(query.getAtom(i), i);
+            atoms[i] = compileAtom(query.getAtom(i), counter);
+        }
+
+        // bonds to atoms outside the query are left out, as the parser adds
+        // the bonds of recursive SMARTS to the outer query as well
+        int[] degree = new int[atomCount];
+        List<int[]> ends = new ArrayList<int[]>();
+        List<Predicate> bonds = new ArrayList<Predicate>();
+        for (IBond bond : query.bonds()) {
+            Integer atom0 = index.get(bond.getAtom(0));
+            Integer atom1 = index.get(bond.getAtom(1));
+            if (atom0 == null || atom1 == null) continue;
+            ends.add(new int[]{atom0, atom1});
+            bonds.add(compileBond(bond));
+            degree[atom0]++;
+            degree[atom1]++;
+        }
+        queryNeighbours = new int[atomCount][];
+        queryNeighbourBonds = new Predicate[atomCount][];
+        for (int i = 0; i < atomCount; i++) {
+            queryNeighbours[i] = new int[degree[i]];
+            queryNeighbourBonds[i] = new Predicate[degree[i]];
+            degree[i] = 0;
+        }
+        for (int b = 0; b < ends.size(); b++) {
+            int atom0 = ends.get(b)[0], atom1 = ends.get(b)[1];
+            queryNeighbours[atom0][degree[atom0]] = atom1;
+            queryNeighbourBonds[atom0][degree[atom0]++] = bonds.get(b);
+            queryNeighbours[atom1][degree[atom1]] = atom0;
+            queryNeighbourBonds[atom1][degree[atom1]++] = bonds.get(b);
+        }
+        queryCount = counter[0];
+        anchoredPlan = atomCount == 0 ? null : plan(null);
+    }
+
+    /**
+     * Returns the query this query was compiled from.
+     *
+     * @return the query
+     */
+    @TestMethod("testGetQuery")
+    public IQueryAtomContainer getQuery() {
+        return query;
+    }
+
+    /**
+     * Tests if the query matches the target. The search stops at the first
+     * mapping.
+     *
+     * @param  target the prepared target
+     * @return true if the query matches the target
+     */
+    @TestMethod("testMatches_SMARTSTarget")
+    public boolean matches(SMARTSTarget target) {
+        return new Search(new Context(target, queryCount), -1, 1, false).run() != 0;
+    }
+
+    /**
+     * Returns the first mapping of the query on the target.
+     *
+     * @param  target the prepared target
+     * @return the index of the target atom of each query atom, or null if
+     *         the query does not match
+     */
+    @TestMethod("testGetFirstMatch_SMARTSTarget")
+    public int[] getFirstMatch(SMARTSTarget target) {
+        Search search = new Search(new Context(target, queryCount), -1, 1, true);
+        search.run();
+        return search.mappings.isEmpty() ? null : search.mappings.get(0);
+    }
+
+    /**
+     * Counts the mappings of the query on the target, without storing them.
+     *
+     * @param  target the prepared target
+     * @return the number of mappings
+     */
+    @TestMethod("testCountMatches_SMARTSTarget")
+    public int countMatches(SMARTSTarget target) {
+        return new Search(new Context(target, queryCount), -1, Integer.MAX_VALUE, false).run();
+    }
+
+    /**
+     * Returns all mappings of the query on the target.
+     *
+     * @param  target the prepared target
+     * @return the mappings, each with the index of the target atom of each query atom
+     */
+    @TestMethod("testGetMatches_SMARTSTarget")
+    public List<int[]> getMatches(SMARTSTarget target) {
+        Search search = new Search(new Context(target, queryCount), -1, Integer.MAX_VALUE, true);
+        search.run();
+        return search.mappings;
+    }
+
+    /**
+     * Tests if the query matches with its first atom on the given target atom.
+     */
+    private boolean matchesAt(Context context, int atom) {
+        return new Search(context, atom, 1, false).run() != 0;
+    }
+
+    /**
+     * Orders the query atoms: the next atom is the one bonded to most placed
+     * atoms, and of those the one with the fewest candidates. Without
+     * candidate counts, the first atom comes first, and ties are broken on
+     * the atom index.
+     */
+    private Plan plan(int[] candidateCounts) {
+        int atomCount = atoms.length;
+        Plan plan = new Plan(atomCount);
+        int[] position = new int[atomCount];
+        int[] placedCount = new int[atomCount];
+        Arrays.fill(position, -1);
+        for (int k = 0; k < atomCount; k++) {
+            int best = -1;
+            for (int q = 0; q < atomCount; q++) {
+                if (position[q] >= 0) continue;
+                if (best < 0 || placedCount[q] > placedCount[best]
+                    || (candidateCounts != null && placedCount[q] == placedCount[best]
+                        && candidateCounts[q] < candidateCounts[best]))
+                    best = q;
+            }
+            plan.order[k] = best;
+            position[best] = k;
+            plan.parent[k] = -1;
+            plan.placedNeighbours[k] = new int[placedCount[best]];
+            plan.placedBonds[k] = new Predicate[placedCount[best]];
+            int n = 0;
+            for (int j = 0; j < queryNeighbours[best].length; j++) {
+                int neighbour = queryNeighbours[best][j];
+                if (position[neighbour] >= 0) {
+                    if (plan.parent[k] < 0) plan.parent[k] = neighbour;
+                    plan.placedNeighbours[k][n] = neighbour;
+                    plan.placedBonds[k][n++] = queryNeighbourBonds[best][j];
+                } else {
+                    placedCount[neighbour]++;
+                }
+            }
+        }
+        return plan;
+    }
+
+    private Predicate compileAtom(IAtom atom, int[] counter) {
+        if (atom instanceof LogicalOperatorAtom) {
+            LogicalOperatorAtom operator = (LogicalOperatorAtom)atom;
+            Predicate left = compileAtom((IAtom)operator.getLeft(), counter);
+            if (operator.getRight() == null)
+                return "not".equals(operator.getOperator()) ? not(left) : left;
+            Predicate right = compileAtom((IAtom)operator.getRight(), counter);
+            if ("and".equals(operator.getOperator())) return and(left, right);
+            if ("or".equals(operator.getOperator())) return or(left, right);
+            return Constant.FALSE;
+        } else if (atom instanceof RecursiveSmartsAtom) {
+            IQueryAtomContainer recursiveQuery = ((RecursiveSmartsAtom)atom).getRecursiveQuery();
+            if (recursiveQuery.getAtomCount() == 1)
+                return compileAtom(recursiveQuery.getAtom(0), counter);
+            return new Recursive(new CompiledSMARTSQuery(recursiveQuery, counter));
+        } else if (atom instanceof RingIdentifierAtom) {
+            return compileAtom((IAtom)((RingIdentifierAtom)atom).getAtom(), counter);
+        } else if (atom instanceof AliphaticSymbolAtom) {
+            return and(element(atom), atomFeature(SMARTSTarget.AROMATIC, 0));
+        } else if (atom instanceof AromaticSymbolAtom) {
+            return and(element(atom), atomFeature(SMARTSTarget.AROMATIC, 1));
+        } else if (atom instanceof AliphaticAtom) {
+            return atomFeature(SMARTSTarget.AROMATIC, 0);
+        } else if (atom instanceof AromaticAtom) {
+            return atomFeature(SMARTSTarget.AROMATIC, 1);
+        } else if (atom instanceof AnyAtom) {
+            // hydrogens only with a mass number
+            return not(and(atomFeature(SMARTSTarget.ATOMIC_NUMBER, 1),
+                           atomFeature(SMARTSTarget.MASS_NUMBER, SMARTSTarget.UNSET)));
+        } else if (atom instanceof NonCHHeavyAtom) {
+            return not(or(atomFeature(SMARTSTarget.ATOMIC_NUMBER, 6),
+                          atomFeature(SMARTSTarget.ATOMIC_NUMBER, 1)));
+        } else if (atom instanceof AtomicNumberAtom) {
+            Integer atomicNumber = atom.getAtomicNumber();
+            if (atomicNumber != null && atomicNumber > 0)
+                return atomFeature(SMARTSTarget.ATOMIC_NUMBER, atomicNumber);
+        } else if (atom instanceof FormalChargeAtom || atom instanceof DegreeAtom) {
+            if (atom.getFormalCharge() != null)
+                return atomFeature(SMARTSTarget.FORMAL_CHARGE, atom.getFormalCharge());
+        } else if (atom instanceof MassAtom) {
+            if (atom.getMassNumber() != null)
+                return atomFeature(SMARTSTarget.MASS_NUMBER, atom.getMassNumber());
+        } else if (atom instanceof TotalHCountAtom) {
+            return atomFeature(SMARTSTarget.TOTAL_HYDROGEN_COUNT, ((TotalHCountAtom)atom).getHC(atom));
+        } else if (atom instanceof ImplicitHCountAtom) {
+            // a zero count never matches
+            int count = atom.getImplicitHydrogenCount() == null ? 0 : atom.getImplicitHydrogenCount();
+            return count == 0 ? Constant.FALSE : atomFeature(SMARTSTarget.IMPLICIT_HYDROGEN_COUNT, count);
+        } else if (atom instanceof ExplicitConnectionAtom) {
+            return atomFeature(SMARTSTarget.EXPLICIT_CONNECTION_COUNT,
+                               ((ExplicitConnectionAtom)atom).getNumOfConnection());
+        } else if (atom instanceof TotalConnectionAtom) {
+            int count = ((TotalConnectionAtom)atom).getTC(atom);
+            return count == 0 ? Constant.FALSE : atomFeature(SMARTSTarget.TOTAL_CONNECTION_COUNT, count);
+        } else if (atom instanceof TotalRingConnectionAtom) {
+            // only ring atoms match, and their count is taken as 0 when
+            // the query atom itself is not flagged as a ring atom
+            Integer count = (Integer)atom.getProperty(CDKConstants.RING_CONNECTIONS);
+            if (!atom.getFlag(CDKConstants.ISINRING) || count == null || count == 0) return Constant.FALSE;
+            return and(atomFeature(SMARTSTarget.IN_RING, 1), atomFeature(SMARTSTarget.RING_CONNECTION_COUNT, count));
+        } else if (atom instanceof TotalValencyAtom) {
+            if (atom.getValency() == null || atom.getValency() == 0) return Constant.FALSE;
+            return atomFeature(SMARTSTarget.VALENCE, atom.getValency());
+        } else if (atom instanceof HybridizationNumberAtom) {
+            Hybridization hybridization = ((HybridizationNumberAtom)atom).getQueryHybridization();
+            return atomFeature(SMARTSTarget.HYBRIDIZATION, hybridization == null ? 0 : hybridization.ordinal() + 1);
+        } else if (atom instanceof PeriodicGroupNumberAtom) {
+            int group = ((PeriodicGroupNumberAtom)atom).getGroupNumber();
+            return group <= 0 ? Constant.FALSE : atomFeature(SMARTSTarget.PERIODIC_GROUP, group);
+        } else if (atom instanceof RingMembershipAtom) {
+            return atomFeature(SMARTSTarget.SMALLEST_RING_COUNT, ((RingMembershipAtom)atom).getNumSSSR());
+        } else if (atom instanceof SmallestRingAtom) {
+            int size = ((SmallestRingAtom)atom).getSmallestRingSize();
+            return size <= 0 ? Constant.FALSE : atomFeature(SMARTSTarget.SMALLEST_RING_SIZE, size);
+        } else if (atom instanceof RingAtom) {
+            return new RingSize(((RingAtom)atom).getRingSize());
+        } else if (atom instanceof HydrogenAtom) {
+            return new Hydrogen(atom.getMassNumber());
+        } else if (atom instanceof ChiralityAtom) {
+            // chirality is not matched
+            return Constant.TRUE;
+        }
+        return new AtomFallback(atom);
+    }
+
+    private Predicate compileBond(IBond bond) {
+        if (bond instanceof LogicalOperatorBond) {
+            LogicalOperatorBond operator = (LogicalOperatorBond)bond;
+            Predicate left = compileBond((IBond)operator.getLeft());
+            if (operator.getRight() == null)
+                return "not".equals(operator.getOperator()) ? not(left) : left;
+            Predicate right = compileBond((IBond)operator.getRight());
+            if ("and".equals(operator.getOperator())) return and(left, right);
+            if ("or".equals(operator.getOperator())) return or(left, right);
+            return Constant.FALSE;
+        } else if (bond instanceof AnyOrderQueryBond) {
+            return Constant.TRUE;
+        } else if (bond instanceof AromaticQueryBond) {
+            return bondFeature(SMARTSTarget.BOND_AROMATIC, 1);
+        } else if (bond instanceof AromaticOrSingleQueryBond) {
+            return or(bondFeature(SMARTSTarget.BOND_AROMATIC, 1), bondOrder(IBond.Order.SINGLE));
+        } else if (bond instanceof RingBond) {
+            return bondFeature(SMARTSTarget.BOND_IN_RING, 1);
+        } else if (bond instanceof OrderQueryBond) {
+            if (bond.getFlag(CDKConstants.ISAROMATIC))
+                return bondFeature(SMARTSTarget.BOND_AROMATIC, 1);
+            return and(bondFeature(SMARTSTarget.BOND_AROMATIC, 0), bondOrder(bond.getOrder()));
+        } else if (!(bond instanceof IQueryBond)) {
+            // as matched by the SubstructureMatcher
+            Predicate order = bondOrder(bond.getOrder());
+            return bond.getFlag(CDKConstants.ISAROMATIC)
+                 ? or(order, bondFeature(SMARTSTarget.BOND_AROMATIC, 1)) : order;
+        }
+        return new BondFallback((IQueryBond)bond);
+    }
+
+    private static Predicate element(IAtom atom) {
+        Integer atomicNumber = PeriodicTable.getAtomicNumber(atom.getSymbol());
+        if (atomicNumber == null) return new AtomFallback(atom);
+        return atomFeature(SMARTSTarget.ATOMIC_NUMBER, atomicNumber);
+    }
+
+    private static Predicate atomFeature(int feature, int value) {
+        return new Features(Context.ATOM_TABLE, new int[]{feature}, new int[]{value});
+    }
+
+    private static Predicate bondFeature(int feature, int value) {
+        return new Features(Context.BOND_TABLE, new int[]{feature}, new int[]{value});
+    }
+
+    private static Predicate bondOrder(IBond.Order order) {
+        return bondFeature(SMARTSTarget.BOND_ORDER, order == null ? 0 : order.ordinal() + 1);
+    }
+
+    private static Predicate not(Predicate predicate) {
+        if (predicate == Constant.TRUE) return Constant.FALSE;
+        if (predicate == Constant.FALSE) return Constant.TRUE;
+        if (predicate instanceof Not) return ((Not)predicate).predicate;
+        return new Not(predicate);
+    }
+
+    /**
+     * Joins two predicates in a conjunction, merging nested conjunctions
+     * and their feature tests.
+     */
+    private static Predicate and(Predicate left, Predicate right) {
+        List<Predicate> terms = new ArrayList<Predicate>();
+        for (Predicate predicate : new Predicate[]{left, right}) {
+            if (predicate == Constant.FALSE) return Constant.FALSE;
+            if (predicate == Constant.TRUE) continue;
+            if (predicate instanceof And) terms.addAll(Arrays.asList(((And)predicate).terms));
+            else terms.add(predicate);
+        }
+        // the feature tests of each table are merged into one
+        for (int i = 0; i < terms.size(); i++) {
+            if (!(terms.get(i) instanceof Features)) continue;
+            for (int j = terms.size() - 1; j > i; j--) {
+                if (terms.get(j) instanceof Features
+                    && ((Features)terms.get(j)).table == ((Features)terms.get(i)).table) {
+                    terms.set(i, ((Features)terms.get(i)).join((Features)terms.remove(j)));
+                }
+            }
+        }
+        if (terms.isEmpty()) return Constant.TRUE;
+        if (terms.size() == 1) return terms.get(0);
+        return new And(sort(terms));
+    }
+
+    /**
+     * Joins two predicates in a disjunction, merging nested disjunctions.
+     */
+    private static Predicate or(Predicate left, Predicate right) {
+        List<Predicate> terms = new ArrayList<Predicate>();
+        for (Predicate predicate : new Predicate[]{left, right}) {
+            if (predicate == Constant.TRUE) return Constant.TRUE;
+            if (predicate == Constant.FALSE) continue;
+            if (predicate instanceof Or) terms.addAll(Arrays.asList(((Or)predicate).terms));
+            else terms.add(predicate);
+        }
+        if (terms.isEmpty()) return Constant.FALSE;
+        if (terms.size() == 1) return terms.get(0);
+        return new Or(sort(terms));
+    }
+
+    /**
+     * Orders the terms of a conjunction or disjunction cheapest first; the
+     * predicates have no side effects, so the order does not change the
+     * outcome.
+     */
+    private static Predicate[] sort(List<Predicate> terms) {
+        Predicate[] sorted = terms.toArray(new Predicate[terms.size()]);
+        for (int i = 1; i < sorted.length; i++) {
+            Predicate term = sorted[i];
+            int j = i;
+            for (; j > 0 && sorted[j - 1].cost() > term.cost(); j--)
+                sorted[j] = sorted[j - 1];
+            sorted[j] = term;
+        }
+        return sorted;
+    }
+
+    /**
+     * The order in which the query atoms are mapped: for each position, the
+     * query atom, the placed query atom whose target neighbours are tried,
+     * or -1 to try all target atoms, and the placed atoms it is bonded to.
+     */
+    private static final class Plan {
+        final int[] order;
+        final int[] parent;
+        final int[][] placedNeighbours;
+        final Predicate[][] placedBonds;
+
+        Plan(int atomCount) {
+            order = new int[atomCount];
+            parent = new int[atomCount];
+            placedNeighbours = new int[atomCount][];
+            placedBonds = new Predicate[atomCount][];
+        }
+    }
+
+    /**
+     * The state of one match of a query and its recursive queries in a
+     * target: the feature tables, and the candidate atoms and outcomes of
+     * recursive queries found so far.
+     */
+    static final class Context {
+
+        static final int ATOM_TABLE = 0;
+        static final int BOND_TABLE = 1;
+
+        final SMARTSTarget target;
+        final int[][][] tables;
+
+        // per query, for each query atom and target atom: 0 if not yet
+        // known, 1 if the target atom is a candidate, 2 if not
+        private final byte[][][] candidates;
+        // per recursive query, for each target atom: 0 if not yet known, 1
+        // if the query matches on the atom, 2 if not
+        private final byte[][] anchored;
+
+        Context(SMARTSTarget target, int queryCount) {
+            this.target = target;
+            this.tables = new int[][][]{target.atomFeatures, target.bondFeatures};
+            this.candidates = new byte[queryCount][][];
+            this.anchored = new byte[queryCount][];
+        }
+    }
+
+    /**
+     * A test on an atom or a bond of the target.
+     */
+    abstract static class Predicate {
+
+        abstract boolean matches(Context context, int index);
+
+        /** A rough measure of the work the test takes. */
+        int cost() {
+            return 1;
+        }
+    }
+
+    private static final class Constant extends Predicate {
+
+        static final Constant TRUE = new Constant(true);
+        static final Constant FALSE = new Constant(false);
+
+        private final boolean value;
+
+        private Constant(boolean value) {
+            this.value = value;
+        }
+
+        boolean matches(Context context, int index) {
+            return value;
+        }
+    }
+
+    /**
+     * Tests a number of features of one table for equality with given
+     * values.
+     */
+    private static final class Features extends Predicate {
+
+        final int table;
+        private final int[] features;
+        private final int[] values;
+
+        Features(int table, int[] features, int[] values) {
+            this.table = table;
+            this.features = features;
+            this.values = values;
+        }
+
+        Features join(Features other) {
+            int length = features.length + other.features.length;
+            int[] joinedFeatures = new int[length];
+            int[] joinedValues = new int[length];
+            System.arraycopy(features, 0, joinedFeatures, 0, features.length);
+            System.arraycopy(values, 0, joinedValues, 0, values.length);
+            System.arraycopy(other.features, 0, joinedFeatures, features.length, other.features.length);
+            System.arraycopy(other.values, 0, joinedValues, values.length, other.values.length);
+            return new Features(table, joinedFeatures, joinedValues);
+        }
+
+        boolean matches(Context context, int index) {
+            int[][] columns = context.tables[table];
+            for (int i = 0; i < features.length; i++)
+                if (columns[features[i]][index] != values[i]) return false;
+            return true;
+        }
+    }
+
+    private static final class And extends Predicate {
+
+        final Predicate[] terms;
+        private final int cost;
+
+        And(Predicate[] terms) {
+            this.terms = terms;
+            int sum = 0;
+            for (Predicate term : terms) sum += term.cost();
+            this.cost = sum;
+        }
+
+        boolean matches(Context context, int index) {
+            for (Predicate term : terms)
+                if (!term.matches(context, index)) return false;
+            return true;
+        }
+
+        int cost() {
+            return cost;
+        }
+    }
+
+    private static final class Or extends Predicate {
+
+        final Predicate[] terms;
+        private final int cost;
+
+        Or(Predicate[] terms) {
+            this.terms = terms;
+            int sum = 0;
+            for (Predicate term : terms) sum += term.cost();
+            this.cost = sum;
+        }
+
+        boolean matches(Context context, int index) {
+            for (Predicate term : terms)
+                if (term.matches(context, index)) return true;
+            return false;
+        }
+
+        int cost() {
+            return cost;
+        }
+    }
+
+    private static final class Not extends Predicate {
+
+        final Predicate predicate;
+
+        Not(Predicate predicate) {
+            this.predicate = predicate;
+        }
+
+        boolean matches(Context context, int index) {
+            return !predicate.matches(context, index);
+        }
+
+        int cost() {
+            return predicate.cost();
+        }
+    }
+
+    /**
+     * Matches atoms in a ring of the given size.
+     */
+    private static final class RingSize extends Predicate {
+
+        private final int size;
+
+        RingSize(int size) {
+            this.size = size;
+        }
+
+        boolean matches(Context context, int index) {
+            for (int ringSize : context.target.ringSizes[index])
+                if (ringSize == size) return true;
+            return false;
+        }
+
+        int cost() {
+            return 2;
+        }
+    }
+
+    /**
+     * Matches the hydrogens that are not implicit, as {@link HydrogenAtom}
+     * does: protons, hydrogens bonded to hydrogens or to more than one atom,
+     * and hydrogens of the given mass number.
+     */
+    private static final class Hydrogen extends Predicate {
+
+        private final Integer massNumber;
+
+        Hydrogen(Integer massNumber) {
+            this.massNumber = massNumber;
+        }
+
+        boolean matches(Context context, int index) {
+            int[] atomicNumbers = context.tables[Context.ATOM_TABLE][SMARTSTarget.ATOMIC_NUMBER];
+            if (atomicNumbers[index] != 1) return false;
+            if (context.tables[Context.ATOM_TABLE][SMARTSTarget.FORMAL_CHARGE][index] == 1) return true;
+            for (int neighbour : context.target.neighbours[index])
+                if (atomicNumbers[neighbour] == 1) return true;
+            Integer neighbourCount = context.target.getContainer().getAtom(index).getFormalNeighbourCount();
+            if (neighbourCount != null && neighbourCount > 1) return true;
+            int mass = context.tables[Context.ATOM_TABLE][SMARTSTarget.MASS_NUMBER][index];
+            if (mass != SMARTSTarget.UNSET) return massNumber != null && massNumber == mass;
+            return massNumber != null && massNumber == 1;
+        }
+
+        int cost() {
+            return 3;
+        }
+    }
+
+    /**
+     * Matches the atoms on which a recursive query matches with its first
+     * atom. The outcome for each atom is kept in the context.
+     */
+    private static final class Recursive extends Predicate {
+
+        private final CompiledSMARTSQuery query;
+
+        Recursive(CompiledSMARTSQuery query) {
+            this.query = query;
+        }
+
+        boolean matches(Context context, int index) {
+            byte[] outcomes = context.anchored[query.id];
+            if (outcomes == null) {
+                outcomes = new byte[context.target.getAtomCount()];
+                context.anchored[query.id] = outcomes;
+            }
+            if (outcomes[index] == 0)
+                outcomes[index] = query.matchesAt(context, index) ? (byte)1 : (byte)2;
+            return outcomes[index] == 1;
+        }
+
+        int cost() {
+            return 100;
+        }
+    }
+
+    /**
+     * Matches an atom the compiler does not know with its own method.
+     */
+    private static final class AtomFallback extends Predicate {
+
+        private final IAtom atom;
+
+        AtomFallback(IAtom atom) {
+            this.atom = atom;
+        }
+
+        boolean matches(Context context, int index) {
+            IAtom target = context.target.getContainer().getAtom(index);
+            if (atom instanceof IQueryAtom) return ((IQueryAtom)atom).matches(target);
+            return atom.getSymbol().equals(target.getSymbol());
+        }
+
+        int cost() {
+            return 4;
+        }
+    }
+
+    /**
+     * Matches a bond the compiler does not know with its own method.
+     */
+    private static final class BondFallback extends Predicate {
+
+        private final IQueryBond bond;
+
+        BondFallback(IQueryBond bond) {
+            this.bond = bond;
+        }
+
+        boolean matches(Context context, int index) {
+            return bond.matches(context.target.getContainer().getBond(index));
+        }
+
+        int cost() {
+            return 4;
+        }
+    }
+
+    /**
+     * The search of the query in one target, either anywhere, or with the
+     * first query atom on a given target atom.
+     */
+    private final class Search {
+
+        private final Context context;
+        private final int anchor;
+        private final int limit;
+        private final boolean store;
+        private final List<int[]> mappings = new ArrayList<int[]>();
+        private int count = 0;
+
+        private final int[][] neighbours;
+        private final int[][] neighbourBonds;
+        private final byte[][] candidates;
+        private Plan plan;
+
+        private final int[] mapping;
+        private final boolean[] used;
+
+        Search(Context context, int anchor, int limit, boolean store) {
+            this.context = context;
+            this.anchor = anchor;
+            this.limit = limit;
+            this.store = store;
+            int atomCount = context.target.getAtomCount();
+            neighbours = context.target.neighbours;
+            neighbourBonds = context.target.neighbourBonds;
+            if (context.candidates[id] == null)
+                context.candidates[id] = new byte[atoms.length][atomCount];
+            candidates = context.candidates[id];
+            mapping = new int[atoms.length];
+            used = new boolean[atomCount];
+        }
+
+        /**
+         * Runs the search.
+         *
+         * @return the number of mappings found, at most the limit
+         */
+        int run() {
+            if (atoms.length == 0 || atoms.length > used.length)
+                return 0;
+            if (anchor >= 0) {
+                plan = anchoredPlan;
+            } else {
+                int[] candidateCounts = new int[atoms.length];
+                for (int q = 0; q < atoms.length; q++) {
+                    for (int t = 0; t < used.length; t++)
+                        if (candidate(q, t)) candidateCounts[q]++;
+                    if (candidateCounts[q] == 0) return 0;
+                }
+                plan = plan(candidateCounts);
+            }
+            map(0);
+            return count;
+        }
+
+        /**
+         * Tests, and remembers, if the target atom has enough neighbours and
+         * matches the query atom.
+         */
+        private boolean candidate(int q, int t) {
+            if (candidates[q][t] == 0) {
+                boolean match = neighbours[t].length >= queryNeighbours[q].length
+                                && atoms[q].matches(context, t);
+                candidates[q][t] = match ? (byte)1 : (byte)2;
+            }
+            return candidates[q][t] == 1;
+        }
+
+        /**
+         * Maps the query atom at the given position, and those after it.
+         *
+         * @return false if the search must stop
+         */
+        private boolean map(int k) {
+            if (k == plan.order.length) {
+                count++;
+                if (store) mappings.add(mapping.clone());
+                return count < limit;
+            }
+            int q = plan.order[k];
+            if (k == 0 && anchor >= 0) {
+                return !feasible(k, q, anchor) || extend(k, q, anchor);
+            } else if (plan.parent[k] < 0) {
+                for (int t = 0; t < used.length; t++)
+                    if (feasible(k, q, t)) {
+                        if (!extend(k, q, t)) return false;
+                    }
+            } else {
+                for (int t : neighbours[mapping[plan.parent[k]]])
+                    if (feasible(k, q, t)) {
+                        if (!extend(k, q, t)) return false;
+                    }
+            }
+            return true;
+        }
+
+        private boolean extend(int k, int q, int t) {
+            mapping[q] = t;
+            used[t] = true;
+            boolean more = map(k + 1);
+            used[t] = false;
+            return more;
+        }
+
+        /**
+         * Tests if the query atom can be mapped on the target atom, given
+         * the atoms placed before it.
+         */
+        private boolean feasible(int k, int q, int t) {
+            if (used[t] || !candidate(q, t)) return false;
+            int[] placed = plan.placedNeighbours[k];
+            for (int j = 0; j < placed.length; j++) {
+                int bond = bond(t, mapping[placed[j]]);
+                if (bond < 0 || !plan.placedBonds[k][j].matches(context, bond))
+                    return false;
+            }
+            return true;
+        }
+
+        private int bond(int atom1, int atom2) {
+            int[] around = neighbours[atom1];
+            for (int j = 0; j < around.length; j++)
+                if (around[j] == atom2) return neighbourBonds[atom1][j];
+            return -1;
+        }
+    }
+}
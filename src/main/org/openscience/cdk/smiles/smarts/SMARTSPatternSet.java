@@ -0,0 +1,276 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.FingerprinterTool;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.SubstructureScreen;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
+import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
+import org.openscience.cdk.smiles.smarts.parser.TokenMgrError;
+
+/**
+ * Matches a fixed set of SMARTS patterns against molecules, as done by the
+ * key based fingerprinters. Unlike a {@link SMARTSQueryTool} that is given
+ * one pattern after the other, the patterns are parsed and compiled to
+ * {@link CompiledSMARTSQuery}s once, when the set is created, and each
+ * molecule is initialized (ring perception, aromaticity etc.) once for all
+ * patterns.
+ *
+ * <p>Before a pattern is searched for, the elements of its atoms are
+ * checked against the molecule with a {@link SubstructureScreen}, so that
+ * patterns that need an element or a path of elements the molecule does
+ * not have are skipped:
+ * <pre>
+ * SMARTSPatternSet patterns = new SMARTSPatternSet(new String[]{
+ *     "[OH]c", "C(=O)[OH]", "[NX3;H2]"
+ * });
+ * BitSet present = patterns.matches(molecule);
+ * int[] counts = patterns.countUniqueMatches(molecule);
+ * </pre>
+ *
+ * <p>The molecule is initialized in place, unless it is given as a
+ * {@link SMARTSTarget}, which is left unchanged and can be matched by
+ * several pattern sets.
+ *
+ * <p>With an executor set by {@link #setExecutor(ExecutorService)} the
+ * patterns are divided over its threads. The molecule is only read while
+ * the patterns are matched, but a pattern set is not thread-safe itself,
+ * and must not be used for two molecules at the same time.
+ *
+ * @cdk.module  smarts
+ * @cdk.githash
+ * @cdk.keyword SMARTS
+ * @cdk.keyword substructure search
+ * @see         SMARTSQueryTool
+ */
+@TestClass("org.openscience.cdk.smiles.smarts.SMARTSPatternSetTest")
+public class SMARTSPatternSet {
+
+    // the number of patterns matched by one task of the executor
+    private static final int CHUNK_SIZE = 64;
+
+    private final String[] smarts;
+    private final QueryAtomContainer[] queries;
+    private final CompiledSMARTSQuery[] compiled;
+    private final BitSet[] queryFingerprints;
+    private final SubstructureScreen screen = new SubstructureScreen();
+    private ExecutorService executor = null;
+
+    /**
+     * Parses a set of SMARTS patterns.
+     *
+     * @param smarts the patterns
+     * @throws CDKException if a pattern cannot be parsed
+     */
+    @TestMethod("testSMARTSPatternSet_arrayString, testInvalidSmarts")
+    public SMARTSPatternSet(String[] smarts) throws CDKException {
+        this.smarts = smarts.clone();
+        queries = new QueryAtomContainer[smarts.length];
+        compiled = new CompiledSMARTSQuery[smarts.length];
+        queryFingerprints = new BitSet[smarts.length];
+        for (int i = 0; i < smarts.length; i++) {
+            try {
+                queries[i] = SMARTSParser.parse(smarts[i]);
+            } catch (IllegalArgumentException exception) {
+                throw new CDKException("Error parsing SMARTS " + smarts[i], exception);
+            } catch (TokenMgrError error) {
+                throw new CDKException("Error parsing SMARTS " + smarts[i], error);
+            }
+            compiled[i] = new CompiledSMARTSQuery(queries[i]);
+            queryFingerprints[i] = screen.getQueryFingerprint(queries[i]);
+        }
+    }
+
+    /**
+     * Returns the number of patterns in the set.
+     *
+     * @return the number of patterns
+     */
+    @TestMethod("testGetPatternCount")
+    public int getPatternCount() {
+        return smarts.length;
+    }
+
+    /**
+     * Returns a pattern of the set.
+     *
+     * @param  index the index of the pattern
+     * @return the SMARTS of the pattern
+     */
+    @TestMethod("testGetSmarts_int")
+    public String getSmarts(int index) {
+        return smarts[index];
+    }
+
+    /**
+     * Sets the executor that matches the patterns in parallel.
+     *
+     * @param executor the executor, or null to match the patterns in the
+     *                 calling thread
+     */
+    @TestMethod("testSetExecutor_ExecutorService")
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Checks which patterns are present in a molecule.
+     *
+     * @param  molecule the target molecule
+     * @return a bit set with the bits of the matching patterns set
+     * @throws CDKException if there is an error in ring, aromaticity or isomorphism perception
+     */
+    @TestMethod("testMatches_IAtomContainer")
+    public BitSet matches(IAtomContainer molecule) throws CDKException {
+        return matches(initialize(molecule));
+    }
+
+    /**
+     * Checks which patterns are present in a prepared target.
+     *
+     * @param  target the prepared target
+     * @return a bit set with the bits of the matching patterns set
+     * @throws CDKException if there is an error in isomorphism perception
+     */
+    @TestMethod("testMatches_SMARTSTarget")
+    public BitSet matches(SMARTSTarget target) throws CDKException {
+        int[] counts = evaluate(target, false);
+        BitSet matches = new BitSet(counts.length);
+        for (int i = 0; i < counts.length; i++)
+            if (counts[i] != 0) matches.set(i);
+        return matches;
+    }
+
+    /**
+     * Counts the unique matches of each pattern in a molecule, that is, the
+     * number of different sets of atoms matched, as given by
+     * {@link SMARTSQueryTool#getUniqueMatchingAtoms()}.
+     *
+     * @param  molecule the target molecule
+     * @return the number of unique matches of each pattern
+     * @throws CDKException if there is an error in ring, aromaticity or isomorphism perception
+     */
+    @TestMethod("testCountUniqueMatches_IAtomContainer")
+    public int[] countUniqueMatches(IAtomContainer molecule) throws CDKException {
+        return countUniqueMatches(initialize(molecule));
+    }
+
+    /**
+     * Counts the unique matches of each pattern in a prepared target.
+     *
+     * @param  target the prepared target
+     * @return the number of unique matches of each pattern
+     * @throws CDKException if there is an error in isomorphism perception
+     * @see    #countUniqueMatches(IAtomContainer)
+     */
+    @TestMethod("testCountUniqueMatches_SMARTSTarget")
+    public int[] countUniqueMatches(SMARTSTarget target) throws CDKException {
+        return evaluate(target, true);
+    }
+
+    /**
+     * Initializes the molecule itself, rather than a copy, and wraps it as a target.
+     */
+    private static SMARTSTarget initialize(IAtomContainer molecule) throws CDKException {
+        SMARTSQueryTool.initializeMolecule(molecule);
+        return new SMARTSTarget(molecule, molecule);
+    }
+
+    /**
+     * Matches all patterns against the target.
+     */
+    private int[] evaluate(final SMARTSTarget target, final boolean count) throws CDKException {
+        final BitSet fingerprint = screen.getFingerprint(target.getContainer());
+        final int[] results = new int[smarts.length];
+        if (executor == null || smarts.length <= CHUNK_SIZE) {
+            evaluate(target, fingerprint, count, 0, smarts.length, results);
+            return results;
+        }
+
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int start = 0; start < smarts.length; start += CHUNK_SIZE) {
+            final int from = start;
+            final int to = Math.min(start + CHUNK_SIZE, smarts.length);
+            futures.add(executor.submit(new Callable<Object>() {
+                public Object call() throws CDKException {
+                    evaluate(target, fingerprint, count, from, to, results);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Object> future : futures) future.get();
+        } catch (InterruptedException e) {
+            for (Future<Object> future : futures) future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CDKException("Interrupted while matching SMARTS patterns", e);
+        } catch (ExecutionException e) {
+            for (Future<Object> future : futures) future.cancel(true);
+            if (e.getCause() instanceof CDKException)
+                throw (CDKException)e.getCause();
+            throw new CDKException("Error matching SMARTS patterns: " + e.getCause(), e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Matches the patterns from <code>from</code> up to <code>to</code>.
+     */
+    private void evaluate(SMARTSTarget target, BitSet fingerprint, boolean count,
+                          int from, int to, int[] results) {
+        for (int i = from; i < to; i++) {
+            if (!FingerprinterTool.isSubset(fingerprint, queryFingerprints[i])) continue;
+            if (!count) {
+                results[i] = compiled[i].matches(target) ? 1 : 0;
+            } else if (queries[i].getAtomCount() == 1) {
+                results[i] = compiled[i].countMatches(target);
+            } else {
+                results[i] = countUniqueMatches(compiled[i].getMatches(target));
+            }
+        }
+    }
+
+    private static int countUniqueMatches(List<int[]> mappings) {
+        Set<BitSet> atomSets = new HashSet<BitSet>();
+        for (int[] mapping : mappings) {
+            BitSet atoms = new BitSet();
+            for (int atom : mapping) atoms.set(atom);
+            atomSets.add(atoms);
+        }
+        return atomSets.size();
+    }
+}
@@ -21,6 +21,7 @@
 package org.openscience.cdk.smiles.smarts;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -36,15 +37,14 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.isomorphism.SubstructureScreen;
 import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
-import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
 import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.smarts.HydrogenAtom;
 import org.openscience.cdk.isomorphism.matchers.smarts.LogicalOperatorAtom;
 import org.openscience.cdk.isomorphism.matchers.smarts.RecursiveSmartsAtom;
 import org.openscience.cdk.isomorphism.mcss.RMap;
-import org.openscience.cdk.ringsearch.AllRingsFinder;
-import org.openscience.cdk.ringsearch.SSSRFinder;
+import org.openscience.cdk.ringsearch.RingSearch;
 import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
 import org.openscience.cdk.smiles.smarts.parser.TokenMgrError;
 import org.openscience.cdk.tools.ILoggingTool;
@@ -99,6 +99,18 @@ import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
  * rings. As a result, it does not properly detect aromaticity in polycyclic systems such as
  * <code>[O-]C(=O)c1ccccc1c2c3ccc([O-])cc3oc4cc(=O)ccc24</code>. Thus SMARTS patterns that depend on proper aromaticity
  * detection may not work correctly in such polycyclic systems</li> </ul>
+ * <h3>Matching</h3> Patterns are compiled to a {@link CompiledSMARTSQuery}, and matched atom by atom against the feature
+ * tables of the initialized molecule, in the same way as by the {@link
+ * org.openscience.cdk.isomorphism.SubstructureMatcher}. Recursive SMARTS are only searched for on the atoms they are
+ * tried on, and each of those once per match. When only the presence or the number of matches is needed, {@link #hasMatch(IAtomContainer)} and {@link
+ * #countMatches(IAtomContainer)} stop at the first match or do not store the matches. The bond based search of the
+ * {@link UniversalIsomorphismTester} can still be used with {@link #setUseRGraph(boolean)}. Both give the same unique
+ * matches, but the RGraph may return one mapping for a single bond pattern that matches a bond both ways, and its
+ * mappings list the atoms in the order of the matched bonds rather than of the query atoms.
+ * <p/>
+ * To match many patterns against the same molecule, the molecule can be prepared once as a {@link SMARTSTarget}, and
+ * matched with {@link #matches(SMARTSTarget)}, {@link #hasMatch(SMARTSTarget)} and {@link
+ * #countMatches(SMARTSTarget)}. These leave the molecule itself unchanged.
  *
  * @author Rajarshi Guha
  * @cdk.created 2007-04-08
@@ -116,12 +128,19 @@ public class SMARTSQueryTool {
     private String smarts;
     private IAtomContainer atomContainer = null;
     private QueryAtomContainer query = null;
+    private CompiledSMARTSQuery compiled = null;
+    private SMARTSTarget target = null;
+    private boolean useRGraph = false;
 
     private List<List<Integer>> matchingAtoms = null;
+    private int matchCount = 0;
+
+    private SubstructureScreen screen = null;
+    private BitSet queryFingerprint = null;
 
-    // a simplistic cache to store parsed SMARTS queries
+    // a simplistic cache to store parsed and compiled SMARTS queries
     private int MAX_ENTRIES = 20;
-    Map<String, QueryAtomContainer> cache = new LinkedHashMap<String, QueryAtomContainer>(MAX_ENTRIES + 1, .75F, true) {
+    Map<String, CompiledSMARTSQuery> cache = new LinkedHashMap<String, CompiledSMARTSQuery>(MAX_ENTRIES + 1, .75F, true) {
         public boolean removeEldestEntry(Map.Entry eldest) {
             return size() > MAX_ENTRIES;
         }
@@ -213,36 +232,182 @@ public class SMARTSQueryTool {
      */
     @TestMethod("testQueryTool, testQueryToolSingleAtomCase, testQuery")
     public boolean matches(IAtomContainer atomContainer, boolean forceInitialization) throws CDKException {
+        prepare(atomContainer, forceInitialization);
+        return match();
+    }
+
+    /**
+     * Perform a SMARTS match against a prepared target, and check whether the query is present in it. <p/> The
+     * mappings of the query atoms are saved as by {@link #matches(org.openscience.cdk.interfaces.IAtomContainer)}, with
+     * the indices of the atoms of the target molecule. The molecule itself is not initialized nor modified.
+     *
+     * @param target The prepared target
+     * @return true if the pattern is found in the target molecule, false otherwise
+     * @throws CDKException if there is an error in isomorphism perception
+     * @see #hasMatch(SMARTSTarget)
+     * @see #countMatches(SMARTSTarget)
+     */
+    @TestMethod("testMatches_SMARTSTarget")
+    public boolean matches(SMARTSTarget target) throws CDKException {
+        prepare(target);
+        return match();
+    }
 
-        if (this.atomContainer == atomContainer) {
-            if (forceInitialization) initializeMolecule();
+    /**
+     * Matches the query against the prepared target container, saving the mappings.
+     */
+    private boolean match() throws CDKException {
+        if (useRGraph && query.getAtomCount() > 1) {
+            initializeRecursiveSmarts(query, this.atomContainer);
+            List bondMapping = UniversalIsomorphismTester.getSubgraphMaps(this.atomContainer, query);
+            matchingAtoms = getAtomMappings(bondMapping, this.atomContainer);
         } else {
-            this.atomContainer = atomContainer;
-            initializeMolecule();
+            matchingAtoms = new ArrayList<List<Integer>>();
+            for (int[] mapping : compiled.getMatches(target))
+                matchingAtoms.add(toList(mapping));
         }
 
-        // First calculate the recursive smarts
-        initializeRecursiveSmarts(this.atomContainer);
+        matchCount = matchingAtoms.size();
+        return matchCount != 0;
+    }
 
-        // lets see if we have a single atom query
-        if (query.getAtomCount() == 1) {
-            // lets get the query atom
-            IQueryAtom queryAtom = (IQueryAtom) query.getAtom(0);
+    /**
+     * Checks whether the query is present in the target molecule, stopping at the first match. <p/> Afterwards {@link
+     * #countMatches()} is 0 or 1, and {@link #getMatchingAtoms()} holds the first match, if any. The molecule is
+     * initialized as by {@link #matches(org.openscience.cdk.interfaces.IAtomContainer)}.
+     *
+     * @param atomContainer The target molecule
+     * @return true if the pattern is found in the target molecule, false otherwise
+     * @throws CDKException if there is an error in ring, aromaticity or isomorphism perception
+     */
+    @TestMethod("testHasMatch_IAtomContainer")
+    public boolean hasMatch(IAtomContainer atomContainer) throws CDKException {
+        prepare(atomContainer, false);
+        return firstMatch();
+    }
 
-            matchingAtoms = new ArrayList<List<Integer>>();
-            for (IAtom atom : this.atomContainer.atoms()) {
-                if (queryAtom.matches(atom)) {
-                    List<Integer> tmp = new ArrayList<Integer>();
-                    tmp.add(this.atomContainer.getAtomNumber(atom));
-                    matchingAtoms.add(tmp);
-                }
+    /**
+     * Checks whether the query is present in a prepared target, stopping at the first match, as {@link
+     * #hasMatch(org.openscience.cdk.interfaces.IAtomContainer)} does. The molecule itself is not modified.
+     *
+     * @param target The prepared target
+     * @return true if the pattern is found in the target molecule, false otherwise
+     * @throws CDKException if there is an error in isomorphism perception
+     */
+    @TestMethod("testHasMatch_SMARTSTarget")
+    public boolean hasMatch(SMARTSTarget target) throws CDKException {
+        prepare(target);
+        return firstMatch();
+    }
+
+    /**
+     * Looks for the first match of the query in the prepared target container.
+     */
+    private boolean firstMatch() throws CDKException {
+        matchingAtoms = new ArrayList<List<Integer>>();
+        if (useRGraph && query.getAtomCount() > 1) {
+            initializeRecursiveSmarts(query, this.atomContainer);
+            List<RMap> atomMap = UniversalIsomorphismTester.getSubgraphAtomsMap(this.atomContainer, query);
+            if (atomMap != null) {
+                List<Integer> atoms = new ArrayList<Integer>();
+                for (RMap map : atomMap) atoms.add(map.getId1());
+                matchingAtoms.add(atoms);
             }
         } else {
-            List bondMapping = UniversalIsomorphismTester.getSubgraphMaps(this.atomContainer, query);
-            matchingAtoms = getAtomMappings(bondMapping, this.atomContainer);
+            int[] mapping = compiled.getFirstMatch(target);
+            if (mapping != null) matchingAtoms.add(toList(mapping));
+        }
+        matchCount = matchingAtoms.size();
+        return matchCount != 0;
+    }
+
+    /**
+     * Counts the matches of the query in the target molecule, without storing them. <p/> Afterwards {@link
+     * #countMatches()} returns the same number, and {@link #getMatchingAtoms()} returns null. The molecule is
+     * initialized as by {@link #matches(org.openscience.cdk.interfaces.IAtomContainer)}.
+     *
+     * @param atomContainer The target molecule
+     * @return The number of times the pattern was found in the target molecule
+     * @throws CDKException if there is an error in ring, aromaticity or isomorphism perception
+     */
+    @TestMethod("testCountMatches_IAtomContainer")
+    public int countMatches(IAtomContainer atomContainer) throws CDKException {
+        prepare(atomContainer, false);
+        return count();
+    }
+
+    /**
+     * Counts the matches of the query in a prepared target, without storing them, as {@link
+     * #countMatches(org.openscience.cdk.interfaces.IAtomContainer)} does. The molecule itself is not modified.
+     *
+     * @param target The prepared target
+     * @return The number of times the pattern was found in the target molecule
+     * @throws CDKException if there is an error in isomorphism perception
+     */
+    @TestMethod("testCountMatches_SMARTSTarget")
+    public int countMatches(SMARTSTarget target) throws CDKException {
+        prepare(target);
+        return count();
+    }
+
+    /**
+     * Counts the matches of the query in the prepared target container.
+     */
+    private int count() throws CDKException {
+        if (useRGraph && query.getAtomCount() > 1) {
+            match();
+        } else {
+            matchCount = compiled.countMatches(target);
         }
+        matchingAtoms = null;
+        return matchCount;
+    }
 
-        return matchingAtoms.size() != 0;
+    /**
+     * Sets whether patterns of more than one atom are matched with the bond based search of the {@link
+     * UniversalIsomorphismTester}, instead of atom by atom. The default is false.
+     *
+     * @param useRGraph true to use the RGraph based search
+     */
+    @TestMethod("testSetUseRGraph_boolean")
+    public void setUseRGraph(boolean useRGraph) {
+        this.useRGraph = useRGraph;
+    }
+
+    /**
+     * Perform a SMARTS match on a target of which the screening fingerprint has been calculated with the
+     * {@link SubstructureScreen} set with {@link #setScreen(SubstructureScreen)}. Targets that cannot contain the
+     * pattern are rejected on their fingerprint, without the ring perception, aromaticity detection and subgraph
+     * search of {@link #matches(org.openscience.cdk.interfaces.IAtomContainer)}.
+     *
+     * @param atomContainer     The target molecule
+     * @param targetFingerprint The screening fingerprint of the target
+     * @return true if the pattern is found in the target molecule, false otherwise
+     * @throws CDKException if there is an error in ring, aromaticity or isomorphism perception
+     * @see SubstructureScreen#getFingerprint(org.openscience.cdk.interfaces.IAtomContainer)
+     */
+    @TestMethod("testMatches_IAtomContainer_BitSet")
+    public boolean matches(IAtomContainer atomContainer, BitSet targetFingerprint) throws CDKException {
+        if (screen == null)
+            throw new CDKException("No SubstructureScreen has been set");
+        if (!screen.isCandidate(queryFingerprint, targetFingerprint)) {
+            matchingAtoms = new ArrayList<List<Integer>>();
+            matchCount = 0;
+            return false;
+        }
+        return matches(atomContainer);
+    }
+
+    /**
+     * Sets the screen used by {@link #matches(org.openscience.cdk.interfaces.IAtomContainer, BitSet)}. The screen
+     * keeps count of the targets it rejected, and can be shared by several query tools.
+     *
+     * @param screen The screen, or null to remove it
+     */
+    @TestMethod("testSetScreen_SubstructureScreen")
+    public void setScreen(SubstructureScreen screen) {
+        this.screen = screen;
+        this.queryFingerprint = screen == null ? null : screen.getQueryFingerprint(query);
     }
 
     /**
@@ -253,7 +418,7 @@ public class SMARTSQueryTool {
      */
     @TestMethod("testQueryTool")
     public int countMatches() {
-        return matchingAtoms.size();
+        return matchCount;
     }
 
     /**
@@ -306,15 +471,38 @@ public class SMARTSQueryTool {
         return ret;
     }
 
+    /**
+     * Initializes the target molecule and takes its feature tables, unless it was initialized by the previous call.
+     */
+    private void prepare(IAtomContainer atomContainer, boolean forceInitialization) throws CDKException {
+        if (this.atomContainer != atomContainer || forceInitialization || target == null) {
+            this.atomContainer = atomContainer;
+            initializeMolecule(atomContainer);
+            target = new SMARTSTarget(atomContainer, atomContainer);
+        }
+    }
+
+    /**
+     * Takes a prepared target, and its initialized copy as the target container. A later call with the molecule itself
+     * still initializes the molecule, as it is a different container.
+     */
+    private void prepare(SMARTSTarget target) throws CDKException {
+        this.target = target;
+        this.atomContainer = target.getContainer();
+    }
+
     /**
      * Prepare the target molecule for analysis. <p/> We perform ring perception and aromaticity detection and set up
-     * the appropriate properties. Right now, this function is called each time we need to do a query and this is
-     * inefficient.
+     * the appropriate properties. This is done whenever a query is matched against a different molecule; a {@link
+     * SMARTSTarget} is initialized once for any number of queries. The rings are taken from the {@link RingSearch} of
+     * the molecule, which is kept for as long as the molecule does not change. For ring systems with too many rings to
+     * list, the ring sizes of the atoms only include rings up to the size of the largest SSSR ring.
      *
-     * @throws CDKException if there is a problem in ring perception or aromaticity detection, which is usually related
-     *                      to a timeout in the ring finding code.
+     * @param atomContainer the target molecule
+     * @throws CDKException if there is a problem in ring perception or aromaticity detection
      */
-    private void initializeMolecule() throws CDKException {
+    @TestMethod("testInitializeMolecule_IAtomContainer")
+    static void initializeMolecule(IAtomContainer atomContainer) throws CDKException {
         // Code copied from
         // org.openscience.cdk.qsar.descriptors.atomic.AtomValenceDescriptor;
         Map<String, Integer> valencesTable = new HashMap<String, Integer>();
@@ -361,36 +549,44 @@ public class SMARTSQueryTool {
         valencesTable.put("Co", 2);
 
         // do all ring perception
-        AllRingsFinder arf = new AllRingsFinder();
-        IRingSet allRings;
+        RingSearch ringSearch = RingSearch.getInstance(atomContainer);
+        int[][] allRings;
+        IRingSet sssr;
         try {
-            allRings = arf.findAllRings(atomContainer);
+            try {
+                allRings = ringSearch.getAllRings();
+            } catch (CDKException e) {
+                // too many rings to list, as in large fused polycycles: take
+                // those up to the size of the largest SSSR ring
+                logger.debug(e.toString());
+                int[][] smallestRings = ringSearch.getSSSR();
+                allRings = ringSearch.getAllRings(smallestRings[smallestRings.length - 1].length);
+            }
+            // sets SSSR information
+            sssr = ringSearch.toRingSet(ringSearch.getEssentialRings());
         } catch (CDKException e) {
             logger.debug(e.toString());
             throw new CDKException(e.toString(), e);
         }
 
-        // sets SSSR information
-        SSSRFinder finder = new SSSRFinder(atomContainer);
-        IRingSet sssr = finder.findEssentialRings();
+        // add a property to each ring atom that will be an array of
+        // Integers, indicating what size ring the given atom belongs to
+        List<List<Integer>> ringSizes = new ArrayList<List<Integer>>(atomContainer.getAtomCount());
+        for (int i = 0; i < atomContainer.getAtomCount(); i++) ringSizes.add(null);
+        for (int[] ring : allRings) {
+            for (int atom : ring) {
+                if (ringSizes.get(atom) == null) ringSizes.set(atom, new ArrayList<Integer>());
+                ringSizes.get(atom).add(ring.length);
+            }
+        }
 
-        for (IAtom atom : atomContainer.atoms()) {
+        for (int index = 0; index < atomContainer.getAtomCount(); index++) {
+            IAtom atom = atomContainer.getAtom(index);
 
-            // add a property to each ring atom that will be an array of
-            // Integers, indicating what size ring the given atom belongs to
             // Add SSSR ring counts
-            if (allRings.contains(atom)) { // it's in a ring
+            if (ringSearch.isInRing(index)) { // it's in a ring
                 atom.setFlag(CDKConstants.ISINRING, true);
-                // lets find which ring sets it is a part of
-                List<Integer> ringsizes = new ArrayList<Integer>();
-                IRingSet currentRings = allRings.getRings(atom);
-                int min = 0;
-                for (int i = 0; i < currentRings.getAtomContainerCount(); i++) {
-                    int size = currentRings.getAtomContainer(i).getAtomCount();
-                    if (min > size) min = size;
-                    ringsizes.add(size);
-                }
-                atom.setProperty(CDKConstants.RING_SIZES, ringsizes);
+                atom.setProperty(CDKConstants.RING_SIZES, ringSizes.get(index));
                 atom.setProperty(CDKConstants.SMALLEST_RINGS, sssr.getRings(atom));
             } else {
                 atom.setFlag(CDKConstants.ISINRING, false);
@@ -417,9 +613,9 @@ public class SMARTSQueryTool {
             }
         }
 
-        for (IBond bond : atomContainer.bonds()) {
-            if (allRings.getRings(bond).getAtomContainerCount() > 0) {
-                bond.setFlag(CDKConstants.ISINRING, true);
+        for (int index = 0; index < atomContainer.getBondCount(); index++) {
+            if (ringSearch.isRingBond(index)) {
+                atomContainer.getBond(index).setFlag(CDKConstants.ISINRING, true);
             }
         }
 
@@ -453,10 +649,12 @@ public class SMARTSQueryTool {
      * We loop over the SMARTS atoms in the query and associate the target molecule with each of the SMARTS atoms that
      * need it
      *
+     * @param query
      * @param atomContainer
      * @throws CDKException
      */
-    private void initializeRecursiveSmarts(IAtomContainer atomContainer) throws CDKException {
+    @TestMethod("testInitializeRecursiveSmarts_QueryAtomContainer_IAtomContainer")
+    static void initializeRecursiveSmarts(QueryAtomContainer query, IAtomContainer atomContainer) throws CDKException {
         for (IAtom atom : query.atoms()) {
             initializeRecursiveSmartsAtom(atom, atomContainer);
         }
@@ -469,14 +667,19 @@ public class SMARTSQueryTool {
      * @param atomContainer
      * @throws CDKException
      */
-    private void initializeRecursiveSmartsAtom(IAtom atom, IAtomContainer atomContainer) throws CDKException {
+    private static void initializeRecursiveSmartsAtom(IAtom atom, IAtomContainer atomContainer) throws CDKException {
         if (atom instanceof LogicalOperatorAtom) {
             initializeRecursiveSmartsAtom(((LogicalOperatorAtom) atom).getLeft(), atomContainer);
             if (((LogicalOperatorAtom) atom).getRight() != null) {
                 initializeRecursiveSmartsAtom(((LogicalOperatorAtom) atom).getRight(), atomContainer);
             }
         } else if (atom instanceof RecursiveSmartsAtom) {
-            ((RecursiveSmartsAtom) atom).setAtomContainer(atomContainer);
+            RecursiveSmartsAtom recursiveAtom = (RecursiveSmartsAtom) atom;
+            recursiveAtom.setAtomContainer(atomContainer);
+            // recursive smarts may be nested
+            for (IAtom recursiveQueryAtom : recursiveAtom.getRecursiveQuery().atoms()) {
+                initializeRecursiveSmartsAtom(recursiveQueryAtom, atomContainer);
+            }
         } else if (atom instanceof HydrogenAtom) {
             ((HydrogenAtom) atom).setAtomContainer(atomContainer);
         }
@@ -484,14 +687,22 @@ public class SMARTSQueryTool {
 
     private void initializeQuery() throws CDKException {
         matchingAtoms = null;
-        query = cache.get(smarts);
-        if (query == null) {
-            query = SMARTSParser.parse(smarts);
-            cache.put(smarts, query);
+        compiled = cache.get(smarts);
+        if (compiled == null) {
+            compiled = new CompiledSMARTSQuery(SMARTSParser.parse(smarts));
+            cache.put(smarts, compiled);
         }
+        query = (QueryAtomContainer) compiled.getQuery();
+        if (screen != null) queryFingerprint = screen.getQueryFingerprint(query);
     }
 
 
+    private static List<Integer> toList(int[] mapping) {
+        List<Integer> atoms = new ArrayList<Integer>(mapping.length);
+        for (int atom : mapping) atoms.add(atom);
+        return atoms;
+    }
+
     private List<List<Integer>> getAtomMappings(List bondMapping, IAtomContainer atomContainer) {
         List<List<Integer>> atomMapping = new ArrayList<List<Integer>>();
 
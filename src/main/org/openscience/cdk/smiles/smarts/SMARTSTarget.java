@@ -0,0 +1,387 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * A target molecule prepared for SMARTS matching. The ring perception,
+ * aromaticity detection and atom typing that {@link SMARTSQueryTool} needs
+ * are done once, when the target is created, on a copy of the molecule, so
+ * that the molecule itself is left unchanged. The results are kept in
+ * arrays indexed like the atoms and bonds of the molecule:
+ * <pre>
+ * SMARTSTarget target = new SMARTSTarget(molecule);
+ * for (String smarts : filters) {
+ *     sqt.setSmarts(smarts);
+ *     if (sqt.hasMatch(target)) ...
+ * }
+ * </pre>
+ *
+ * <p>A target is not changed by matching, and can be matched by any number
+ * of query tools, also from different threads. Changes made to the
+ * molecule after the target was created are not seen by the target.
+ *
+ * @cdk.module  smarts
+ * @cdk.githash
+ * @cdk.keyword SMARTS
+ * @see         SMARTSQueryTool#matches(SMARTSTarget)
+ */
+@TestClass("org.openscience.cdk.smiles.smarts.SMARTSTargetTest")
+public class SMARTSTarget {
+
+    // the columns of the atom and bond feature tables read by the compiled
+    // queries, see CompiledSMARTSQuery
+    static final int ATOMIC_NUMBER = 0;
+    static final int AROMATIC = 1;
+    static final int IN_RING = 2;
+    static final int FORMAL_CHARGE = 3;
+    static final int MASS_NUMBER = 4;
+    static final int IMPLICIT_HYDROGEN_COUNT = 5;
+    static final int TOTAL_HYDROGEN_COUNT = 6;
+    static final int TOTAL_CONNECTION_COUNT = 7;
+    static final int EXPLICIT_CONNECTION_COUNT = 8;
+    static final int RING_CONNECTION_COUNT = 9;
+    static final int VALENCE = 10;
+    static final int HYBRIDIZATION = 11;
+    static final int PERIODIC_GROUP = 12;
+    static final int SMALLEST_RING_COUNT = 13;
+    static final int SMALLEST_RING_SIZE = 14;
+    private static final int ATOM_FEATURE_COUNT = 15;
+
+    static final int BOND_ORDER = 0;
+    static final int BOND_AROMATIC = 1;
+    static final int BOND_IN_RING = 2;
+    private static final int BOND_FEATURE_COUNT = 3;
+
+    /** The value of an unset formal charge or mass number. */
+    static final int UNSET = Integer.MIN_VALUE;
+
+    private static final int[] NO_RINGS = new int[0];
+
+    private final IAtomContainer molecule;
+    private final IAtomContainer container;
+
+    /** The atom features, indexed by feature and then by atom. */
+    final int[][] atomFeatures;
+    /** The bond features, indexed by feature and then by bond. */
+    final int[][] bondFeatures;
+    /** The sizes of all rings of each atom, smallest first. */
+    final int[][] ringSizes;
+    /** The neighbours of each atom, and the bonds to them. */
+    final int[][] neighbours;
+    final int[][] neighbourBonds;
+
+    /**
+     * Prepares a molecule for SMARTS matching.
+     *
+     * @param  molecule the target molecule, which is not modified
+     * @throws CDKException if there is a problem in ring perception or aromaticity detection
+     */
+    @TestMethod("testSMARTSTarget_IAtomContainer, testMoleculeNotModified")
+    public SMARTSTarget(IAtomContainer molecule) throws CDKException {
+        this(molecule, initializedCopy(molecule));
+    }
+
+    /**
+     * Creates a target from a container that has been initialized with
+     * {@link SMARTSQueryTool#initializeMolecule(IAtomContainer)}: a copy
+     * of the molecule, or the molecule itself when it may be modified.
+     */
+    @TestMethod("testSMARTSTarget_IAtomContainer_IAtomContainer")
+    SMARTSTarget(IAtomContainer molecule, IAtomContainer container) {
+        this.molecule = molecule;
+        this.container = container;
+        int atomCount = container.getAtomCount();
+        int bondCount = container.getBondCount();
+        atomFeatures = new int[ATOM_FEATURE_COUNT][atomCount];
+        bondFeatures = new int[BOND_FEATURE_COUNT][bondCount];
+        ringSizes = new int[atomCount][];
+        neighbours = new int[atomCount][];
+        neighbourBonds = new int[atomCount][];
+        fillAtoms();
+        fillBonds();
+    }
+
+    private static IAtomContainer initializedCopy(IAtomContainer molecule) throws CDKException {
+        IAtomContainer copy;
+        try {
+            copy = (IAtomContainer)molecule.clone();
+        } catch (CloneNotSupportedException exception) {
+            throw new CDKException("Could not copy the target molecule", exception);
+        }
+        SMARTSQueryTool.initializeMolecule(copy);
+        return copy;
+    }
+
+    /**
+     * Reads the atom properties and flags set by the initialization of the
+     * container into the atom feature table.
+     */
+    private void fillAtoms() {
+        int[][] table = atomFeatures;
+        for (int i = 0; i < ringSizes.length; i++) {
+            IAtom atom = container.getAtom(i);
+            Integer atomicNumber = PeriodicTable.getAtomicNumber(atom.getSymbol());
+            table[ATOMIC_NUMBER][i] = atomicNumber == null ? 0 : atomicNumber;
+            table[AROMATIC][i] = atom.getFlag(CDKConstants.ISAROMATIC) ? 1 : 0;
+            table[IN_RING][i] = atom.getFlag(CDKConstants.ISINRING) ? 1 : 0;
+            table[FORMAL_CHARGE][i] = atom.getFormalCharge() == null ? UNSET : atom.getFormalCharge();
+            table[MASS_NUMBER][i] = atom.getMassNumber() == null ? UNSET : atom.getMassNumber();
+            table[IMPLICIT_HYDROGEN_COUNT][i] = intValue(atom.getImplicitHydrogenCount());
+            table[TOTAL_HYDROGEN_COUNT][i] = intValue(atom.getProperty(CDKConstants.TOTAL_H_COUNT));
+            table[TOTAL_CONNECTION_COUNT][i] = intValue(atom.getProperty(CDKConstants.TOTAL_CONNECTIONS));
+            table[EXPLICIT_CONNECTION_COUNT][i] = table[TOTAL_CONNECTION_COUNT][i] - table[TOTAL_HYDROGEN_COUNT][i];
+            table[RING_CONNECTION_COUNT][i] = intValue(atom.getProperty(CDKConstants.RING_CONNECTIONS));
+            table[VALENCE][i] = intValue(atom.getValency());
+            table[HYBRIDIZATION][i] = atom.getHybridization() == null ? 0 : atom.getHybridization().ordinal() + 1;
+            Integer group = atomicNumber == null ? null : PeriodicTable.getGroup(atom.getSymbol());
+            table[PERIODIC_GROUP][i] = group == null ? 0 : group;
+
+            ringSizes[i] = NO_RINGS;
+            if (table[IN_RING][i] == 1) {
+                List<?> sizes = (List<?>)atom.getProperty(CDKConstants.RING_SIZES);
+                if (sizes != null) {
+                    ringSizes[i] = new int[sizes.size()];
+                    for (int j = 0; j < ringSizes[i].length; j++)
+                        ringSizes[i][j] = ((Integer)sizes.get(j)).intValue();
+                    Arrays.sort(ringSizes[i]);
+                    if (ringSizes[i].length != 0) table[SMALLEST_RING_SIZE][i] = ringSizes[i][0];
+                }
+                IRingSet smallestRings = (IRingSet)atom.getProperty(CDKConstants.SMALLEST_RINGS);
+                if (smallestRings != null)
+                    table[SMALLEST_RING_COUNT][i] = smallestRings.getAtomContainerCount();
+            }
+        }
+    }
+
+    /**
+     * Fills the bond feature table and the neighbour lists. Bonds to atoms
+     * that are not in the container are left out of the neighbour lists.
+     */
+    private void fillBonds() {
+        Map<IAtom, Integer> index = new IdentityHashMap<IAtom, Integer>();
+        for (int i = 0; i < ringSizes.length; i++) index.put(container.getAtom(i), i);
+        int bondCount = bondFeatures[0].length;
+        int[] begin = new int[bondCount], end = new int[bondCount];
+        int[] degree = new int[ringSizes.length];
+        for (int b = 0; b < bondCount; b++) {
+            IBond bond = container.getBond(b);
+            bondFeatures[BOND_ORDER][b] = bond.getOrder() == null ? 0 : bond.getOrder().ordinal() + 1;
+            bondFeatures[BOND_AROMATIC][b] = bond.getFlag(CDKConstants.ISAROMATIC) ? 1 : 0;
+            bondFeatures[BOND_IN_RING][b] = bond.getFlag(CDKConstants.ISINRING) ? 1 : 0;
+            Integer atom0 = index.get(bond.getAtom(0));
+            Integer atom1 = index.get(bond.getAtom(1));
+            if (atom0 == null || atom1 == null) {
+                begin[b] = -1;
+                continue;
+            }
+            begin[b] = atom0;
+            end[b] = atom1;
+            degree[begin[b]]++;
+            degree[end[b]]++;
+        }
+        for (int i = 0; i < degree.length; i++) {
+            neighbours[i] = new int[degree[i]];
+            neighbourBonds[i] = new int[degree[i]];
+            degree[i] = 0;
+        }
+        for (int b = 0; b < bondCount; b++) {
+            if (begin[b] < 0) continue;
+            neighbours[begin[b]][degree[begin[b]]] = end[b];
+            neighbourBonds[begin[b]][degree[begin[b]]++] = b;
+            neighbours[end[b]][degree[end[b]]] = begin[b];
+            neighbourBonds[end[b]][degree[end[b]]++] = b;
+        }
+    }
+
+    private static int intValue(Object value) {
+        return value == null ? 0 : ((Integer)value).intValue();
+    }
+
+    /**
+     * Returns the molecule this target was prepared for.
+     *
+     * @return the target molecule
+     */
+    @TestMethod("testGetMolecule")
+    public IAtomContainer getMolecule() {
+        return molecule;
+    }
+
+    /**
+     * Returns the initialized copy of the molecule that the SMARTS atoms
+     * are matched against.
+     */
+    @TestMethod("testGetContainer")
+    IAtomContainer getContainer() {
+        return container;
+    }
+
+    /**
+     * Returns the number of atoms of the target.
+     *
+     * @return the number of atoms
+     */
+    @TestMethod("testGetAtomCount")
+    public int getAtomCount() {
+        return ringSizes.length;
+    }
+
+    /**
+     * Tests if an atom is aromatic.
+     *
+     * @param  atom the index of the atom
+     * @return true if the atom is aromatic
+     */
+    @TestMethod("testIsAromatic_int")
+    public boolean isAromatic(int atom) {
+        return atomFeatures[AROMATIC][atom] == 1;
+    }
+
+    /**
+     * Tests if an atom is in a ring.
+     *
+     * @param  atom the index of the atom
+     * @return true if the atom is in a ring
+     */
+    @TestMethod("testIsInRing_int")
+    public boolean isInRing(int atom) {
+        return atomFeatures[IN_RING][atom] == 1;
+    }
+
+    /**
+     * Returns the sizes of all rings an atom is in, smallest first. The
+     * returned array must not be changed.
+     *
+     * @param  atom the index of the atom
+     * @return the ring sizes, an empty array if the atom is not in a ring
+     */
+    @TestMethod("testGetRingSizes_int")
+    public int[] getRingSizes(int atom) {
+        return ringSizes[atom];
+    }
+
+    /**
+     * Returns the size of the smallest ring an atom is in.
+     *
+     * @param  atom the index of the atom
+     * @return the smallest ring size, or 0 if the atom is not in a ring
+     */
+    @TestMethod("testGetSmallestRingSize_int")
+    public int getSmallestRingSize(int atom) {
+        return atomFeatures[SMALLEST_RING_SIZE][atom];
+    }
+
+    /**
+     * Returns the number of rings of the smallest set of smallest rings
+     * an atom is in.
+     *
+     * @param  atom the index of the atom
+     * @return the number of smallest rings
+     */
+    @TestMethod("testGetSmallestRingCount_int")
+    public int getSmallestRingCount(int atom) {
+        return atomFeatures[SMALLEST_RING_COUNT][atom];
+    }
+
+    /**
+     * Returns the number of ring atoms an atom is bonded to.
+     *
+     * @param  atom the index of the atom
+     * @return the number of bonded ring atoms
+     */
+    @TestMethod("testGetRingConnectionCount_int")
+    public int getRingConnectionCount(int atom) {
+        return atomFeatures[RING_CONNECTION_COUNT][atom];
+    }
+
+    /**
+     * Returns the number of implicit and explicit hydrogens of an atom.
+     *
+     * @param  atom the index of the atom
+     * @return the total hydrogen count
+     */
+    @TestMethod("testGetTotalHydrogenCount_int")
+    public int getTotalHydrogenCount(int atom) {
+        return atomFeatures[TOTAL_HYDROGEN_COUNT][atom];
+    }
+
+    /**
+     * Returns the number of connections of an atom, including those to
+     * implicit hydrogens.
+     *
+     * @param  atom the index of the atom
+     * @return the total connection count
+     */
+    @TestMethod("testGetTotalConnectionCount_int")
+    public int getTotalConnectionCount(int atom) {
+        return atomFeatures[TOTAL_CONNECTION_COUNT][atom];
+    }
+
+    /**
+     * Returns the valence of an atom, as given by its atom type.
+     *
+     * @param  atom the index of the atom
+     * @return the valence, or 0 if it is not known
+     */
+    @TestMethod("testGetValence_int")
+    public int getValence(int atom) {
+        return atomFeatures[VALENCE][atom];
+    }
+
+    /**
+     * Tests if a bond is aromatic.
+     *
+     * @param  bond the index of the bond
+     * @return true if the bond is aromatic
+     */
+    @TestMethod("testIsAromaticBond_int")
+    public boolean isAromaticBond(int bond) {
+        return bondFeatures[BOND_AROMATIC][bond] == 1;
+    }
+
+    /**
+     * Tests if a bond is in a ring.
+     *
+     * @param  bond the index of the bond
+     * @return true if the bond is in a ring
+     */
+    @TestMethod("testIsRingBond_int")
+    public boolean isRingBond(int bond) {
+        return bondFeatures[BOND_IN_RING][bond] == 1;
+    }
+}
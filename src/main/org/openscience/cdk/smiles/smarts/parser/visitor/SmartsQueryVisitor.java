@@ -440,13 +440,21 @@ public class SmartsQueryVisitor implements SMARTSParserVisitor {
 	}
 
 	public Object visit(ASTRecursiveSmartsExpression node, Object data) {
+		// a recursive smarts may be nested in another one, that is
+		// continued when this one is done
+		IQueryAtomContainer outerQuery = rsQuery;
+		RingIdentifierAtom[] outerRingAtoms = recursiveRingAtoms;
+		boolean outerParsingRS = isParsingRS;
 		rsQuery = new QueryAtomContainer();
 		recursiveRingAtoms = new RingIdentifierAtom[10];
 		isParsingRS = true;
 		node.jjtGetChild(0).jjtAccept(this, null);
-		isParsingRS = false;
+		IQueryAtomContainer recursiveQuery = rsQuery;
+		rsQuery = outerQuery;
+		recursiveRingAtoms = outerRingAtoms;
+		isParsingRS = outerParsingRS;
 
-        return new RecursiveSmartsAtom(rsQuery);
+        return new RecursiveSmartsAtom(recursiveQuery);
 	}
 
 	public ASTStart getRoot(Node node) {
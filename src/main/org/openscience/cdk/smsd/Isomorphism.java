@@ -182,6 +182,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
     private double bondInSensitiveTimeOut = 1.00;//mins
     private boolean subGraph = false;
     private boolean matchBonds = false;
+    private transient volatile TimeOut timeOut = new TimeOut(-1);
 
     /**
      * This is the algorithm factory and entry port for all the MCS algorithm in the Isomorphism
@@ -206,12 +207,13 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         allBondMCS = new ArrayList<Map<IBond, IBond>>();
         firstBondMCS = new HashMap<IBond, IBond>();
 
-        setTime(bondTypeFlag);
         setMatchBonds(bondTypeFlag);
     }
 
     private synchronized void mcsBuilder(MolHandler mol1, MolHandler mol2) {
 
+        startTimeOut();
+
         int rBondCount = mol1.getMolecule().getBondCount();
         int pBondCount = mol2.getMolecule().getBondCount();
 
@@ -234,6 +236,8 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private synchronized void mcsBuilder(IQueryAtomContainer mol1, IAtomContainer mol2) {
 
+        startTimeOut();
+
         int rBondCount = mol1.getBondCount();
         int pBondCount = mol2.getBondCount();
 
@@ -331,7 +335,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private synchronized void cdkMCSAlgorithm() {
         CDKMCSHandler mcs = null;
-        mcs = new CDKMCSHandler();
+        mcs = new CDKMCSHandler(timeOut);
 
         if (queryMol == null) {
             mcs.set(rMol, pMol);
@@ -352,7 +356,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private synchronized void cdkSubgraphAlgorithm() {
         CDKSubGraphHandler mcs = null;
-        mcs = new CDKSubGraphHandler();
+        mcs = new CDKSubGraphHandler(timeOut);
 
         if (queryMol == null) {
             mcs.set(rMol, pMol);
@@ -374,7 +378,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private synchronized void mcsPlusAlgorithm() {
         MCSPlusHandler mcs = null;
-        mcs = new MCSPlusHandler();
+        mcs = new MCSPlusHandler(timeOut);
 
         if (queryMol == null) {
             mcs.set(rMol, pMol);
@@ -394,7 +398,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private void vfLibMCS() {
         VFlibMCSHandler mcs = null;
-        mcs = new VFlibMCSHandler();
+        mcs = new VFlibMCSHandler(timeOut);
         if (queryMol == null) {
             mcs.set(rMol, pMol);
         } else {
@@ -412,7 +416,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private void subStructureHandler() {
         VFlibSubStructureHandler subGraphTurboSearch = null;
-        subGraphTurboSearch = new VFlibSubStructureHandler();
+        subGraphTurboSearch = new VFlibSubStructureHandler(timeOut);
         if (queryMol == null) {
             subGraphTurboSearch.set(rMol, pMol);
         } else {
@@ -430,7 +434,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
 
     private void turboSubStructureHandler() {
         VFlibTurboHandler subGraphTurboSearch = null;
-        subGraphTurboSearch = new VFlibTurboHandler();
+        subGraphTurboSearch = new VFlibTurboHandler(timeOut);
         if (queryMol == null) {
             subGraphTurboSearch.set(rMol, pMol);
         } else {
@@ -552,22 +556,53 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         vfLibMCS();
     }
 
-    private void setTime(boolean bondTypeFlag) {
-        if (bondTypeFlag) {
-            TimeOut tmo = TimeOut.getInstance();
-            tmo.setTimeOut(getBondSensitiveTimeOut());
+    /**
+     * Starts the time out of a search, with the bond sensitive or bond
+     * insensitive time out of this instance.
+     */
+    private void startTimeOut() {
+        if (timeOut == null) {
+            timeOut = new TimeOut(-1);
+        }
+        if (isMatchBonds()) {
+            timeOut.setTimeOut(getBondSensitiveTimeOut());
         } else {
-            TimeOut tmo = TimeOut.getInstance();
-            tmo.setTimeOut(getBondInSensitiveTimeOut());
+            timeOut.setTimeOut(getBondInSensitiveTimeOut());
         }
+        timeOut.start();
     }
 
+    /**
+     * Returns true if the last search of this instance ran out of time or
+     * was cancelled, and fell back to a faster algorithm.
+     * @return true if the search timed out
+     */
+    @TestMethod("testIsTimeOut")
     public boolean isTimeOut() {
-        return TimeOut.getInstance().isTimeOutFlag();
+        return timeOut != null && timeOut.isTimeOutFlag();
     }
 
+    /**
+     * Clears the time out flag of this instance.
+     */
+    @TestMethod("testIsTimeOut")
     public void resetTimeOut() {
-        TimeOut.getInstance().setTimeOutFlag(false);
+        if (timeOut != null) {
+            timeOut.setTimeOutFlag(false);
+        }
+    }
+
+    /**
+     * Asks the search of this instance to stop as soon as possible. The
+     * search keeps the mappings found so far. It may be called from any
+     * thread, and it cancels all later searches of this instance too.
+     */
+    @TestMethod("testCancel")
+    public void cancel() {
+        if (timeOut == null) {
+            timeOut = new TimeOut(-1);
+        }
+        timeOut.cancel();
     }
 
     private void clearMaps() {
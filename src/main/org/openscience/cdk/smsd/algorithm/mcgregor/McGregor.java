@@ -34,6 +34,7 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.helper.BinaryTree;
 
 /**
@@ -71,6 +72,7 @@ public final class McGregor {
     };
     private boolean newMatrix = false;
     private boolean bondMatch = false;
+    private TimeOut timeOut = null;
 
     /**
      * Constructor for the McGregor algorithm.
@@ -434,7 +436,8 @@ public final class McGregor {
 //        //check possible mappings:
         boolean furtherMappingFlag = McGregorChecks.isFurtherMappingPossible(source, target, mcGregorHelper, isBondMatch());
 
-        if (neighborBondNumA == 0 || neighborBondNumB == 0 || mappingCheckFlag || !furtherMappingFlag) {
+        if (neighborBondNumA == 0 || neighborBondNumB == 0 || mappingCheckFlag || !furtherMappingFlag
+                || isCancelled()) {
             setFinalMappings(mappedAtoms, mappedAtomCount);
             return 0;
         }
@@ -478,7 +481,7 @@ public final class McGregor {
         List<String> c_bond_setA = mcGregorHelper.getCBondSetA();
         List<String> c_bond_setB = mcGregorHelper.getCBondSetB();
 
-        while (!BESTARCS_copy.empty()) {
+        while (!BESTARCS_copy.empty() && !isCancelled()) {
 
             List<Integer> MARCS_vector = new ArrayList<Integer>(BESTARCS_copy.peek());
             List<Integer> new_Mapping = findMcGregorMapping(MARCS_vector, mcGregorHelper);
@@ -1011,4 +1014,18 @@ public final class McGregor {
     private void setBondMatch(boolean bondMatch) {
         this.bondMatch = bondMatch;
     }
+
+    /**
+     * Sets the time out of the search. Once it is cancelled, the search
+     * keeps the mappings found so far and stops extending them. Expiry is
+     * left to the caller, which checks it between the searches.
+     * @param timeOut the time out, or null for none
+     */
+    public void setTimeOut(TimeOut timeOut) {
+        this.timeOut = timeOut;
+    }
+
+    private boolean isCancelled() {
+        return timeOut != null && timeOut.isCancelled();
+    }
 }
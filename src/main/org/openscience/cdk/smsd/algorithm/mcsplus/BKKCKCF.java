@@ -28,7 +28,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
 import org.openscience.cdk.annotations.TestClass;
-import org.openscience.cdk.smsd.tools.TimeManager;
 
 /**
  * This class implements Bron-Kerbosch clique detection algorithm as it is
@@ -66,7 +65,6 @@ public class BKKCKCF {
      * @param D_edges_org D-Edges set of prohibited edges
      */
     protected BKKCKCF(List<Integer> comp_graph_nodes_org, List<Integer> C_edges_org, List<Integer> D_edges_org) {
-        MCSPlus.setTimeManager(new TimeManager());
         this.compGraphNodes = comp_graph_nodes_org;
         this.cEdges = C_edges_org;
         this.dEdges = D_edges_org;
@@ -58,6 +58,7 @@ public final class GenerateCompatibilityGraph {
     private IAtomContainer source = null;
     private IAtomContainer target = null;
     private boolean shouldMatchBonds = false;
+    private final LabelContainer labelContainer = new LabelContainer();
 
     /**
     * Default constructor added 
@@ -106,7 +107,6 @@ public final class GenerateCompatibilityGraph {
         List<List<Integer>> label_list = new ArrayList<List<Integer>>();
 
         for (int i = 0; i < atomCont.getAtomCount(); i++) {
-            LabelContainer labelContainer = LabelContainer.getInstance();
             ArrayList<Integer> label = new ArrayList<Integer>(7);
 //            label.setSize(7);
 
@@ -262,7 +262,6 @@ public final class GenerateCompatibilityGraph {
         int count_nodes = 1;
         List<String> map = new ArrayList<String>();
         compGraphNodesCZero = new ArrayList<Integer>(); //Initialize the compGraphNodesCZero List
-        LabelContainer labelContainer = LabelContainer.getInstance();
         compGraphNodes.clear();
 
         for (int i = 0; i < source.getAtomCount(); i++) {
@@ -45,35 +45,24 @@ import org.openscience.cdk.smsd.tools.TimeManager;
 @TestClass("org.openscience.cdk.smsd.SMSDBondSensitiveTest")
 public class MCSPlus {
 
-    /**
-    * Default constructor added 
-    */
-    public MCSPlus(){
-        
-    }
-
+    private final TimeOut timeOut;
     private static TimeManager timeManager = null;
 
     /**
-     * @return the timeout
-     */
-    protected synchronized static double getTimeout() {
-        return TimeOut.getInstance().getTimeOut();
-    }
-
-    /**
-     * @return the timeManager
-     */
-    protected synchronized static TimeManager getTimeManager() {
-        return timeManager;
+    * Default constructor added, using the default time out of
+    * {@link TimeOut#getInstance()}.
+    */
+    public MCSPlus(){
+        this(new TimeOut(TimeOut.getInstance().getTimeOut()));
     }
 
     /**
-     * @param aTimeManager the timeManager to set
+     * Creates an MCS plus search that stops when the given time out expires
+     * or is cancelled.
+     * @param timeOut the time out of this search
      */
-    protected synchronized static void setTimeManager(TimeManager aTimeManager) {
-        TimeOut.getInstance().setTimeOutFlag(false);
-        timeManager = aTimeManager;
+    public MCSPlus(TimeOut timeOut) {
+        this.timeOut = timeOut;
     }
 
     /**
@@ -98,6 +87,7 @@ public class MCSPlus {
 //            System.err.println("C_edges: " + C_edges.size());
 //            System.out.println("D_edges: " + D_edges.size());
 
+            timeOut.start();
             BKKCKCF init = new BKKCKCF(comp_graph_nodes, C_edges, D_edges);
             maxCliqueSet = init.getMaxCliqueSet();
 
@@ -112,6 +102,7 @@ public class MCSPlus {
                 int clique_size = clique_List.size();
                 if (clique_size < ac1.getAtomCount() && clique_size < ac2.getAtomCount()) {
                     McGregor mgit = new McGregor(ac1, ac2, mappings, shouldMatchBonds);
+                    mgit.setTimeOut(timeOut);
                     mgit.startMcGregorIteration(mgit.getMCSSize(), clique_List, comp_graph_nodes);
                     mappings = mgit.getMappings();
                     mgit = null;
@@ -119,7 +110,7 @@ public class MCSPlus {
                     mappings = ExactMapping.extractMapping(mappings, comp_graph_nodes, clique_List);
                 }
                 maxCliqueSet.pop();
-                if (isTimeOut()) {
+                if (timeOut.isTimeOut()) {
                     break;
                 }
             }
@@ -129,8 +120,47 @@ public class MCSPlus {
         return mappings;
     }
 
+    /**
+     * @return the timeout
+     * @deprecated each search has its own {@link TimeOut}; this returns the
+     *             default time out of {@link TimeOut#getInstance()}
+     */
+    @Deprecated
+    protected static double getTimeout() {
+        return TimeOut.getInstance().getTimeOut();
+    }
+
+    /**
+     * @return the timeManager
+     * @deprecated the searches no longer use this time manager, they are
+     *             given a {@link TimeOut}
+     */
+    @Deprecated
+    protected synchronized static TimeManager getTimeManager() {
+        return timeManager;
+    }
+
+    /**
+     * @param aTimeManager the timeManager to set
+     * @deprecated the searches no longer use this time manager, they are
+     *             given a {@link TimeOut}
+     */
+    @Deprecated
+    protected synchronized static void setTimeManager(TimeManager aTimeManager) {
+        TimeOut.getInstance().setTimeOutFlag(false);
+        timeManager = aTimeManager;
+    }
+
+    /**
+     * Checks the time manager set with {@link #setTimeManager(TimeManager)}
+     * against the default time out of {@link TimeOut#getInstance()}.
+     * @return true if the default time out has expired
+     * @deprecated check the {@link TimeOut} given to the search instead
+     */
+    @Deprecated
     public synchronized static boolean isTimeOut() {
-        if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
+        if (getTimeout() > -1 && getTimeManager() != null
+                && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
             TimeOut.getInstance().setTimeOutFlag(true);
             return true;
         }
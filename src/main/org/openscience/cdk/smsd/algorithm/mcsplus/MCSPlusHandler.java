@@ -35,6 +35,7 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.cdk.smsd.filters.PostFilter;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.helper.FinalMappings;
 import org.openscience.cdk.smsd.interfaces.AbstractMCSAlgorithm;
 import org.openscience.cdk.smsd.interfaces.IMCSBase;
@@ -50,18 +51,30 @@ import org.openscience.cdk.smsd.tools.MolHandler;
 @TestClass("org.openscience.cdk.smsd.SMSDBondSensitiveTest")
 public class MCSPlusHandler extends AbstractMCSAlgorithm implements IMCSBase {
 
-    private static List<Map<IAtom, IAtom>> allAtomMCS = null;
-    private static Map<IAtom, IAtom> atomsMCS = null;
-    private static Map<Integer, Integer> firstMCS = null;
-    private static List<Map<Integer, Integer>> allMCS = null;
+    private List<Map<IAtom, IAtom>> allAtomMCS = null;
+    private Map<IAtom, IAtom> atomsMCS = null;
+    private Map<Integer, Integer> firstMCS = null;
+    private List<Map<Integer, Integer>> allMCS = null;
+    private final FinalMappings finalMappings = new FinalMappings();
     private IAtomContainer source = null;
     private IAtomContainer target = null;
     private boolean flagExchange = false;
+    private final TimeOut timeOut;
 
     /**
-     * Constructor for the MCS Plus algorithm class
+     * Constructor for the MCS Plus algorithm class, using the default time
+     * out of {@link TimeOut#getInstance()}.
      */
     public MCSPlusHandler() {
+        this(new TimeOut(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     * Constructor for the MCS Plus algorithm class
+     * @param timeOut the time out of the searches
+     */
+    public MCSPlusHandler(TimeOut timeOut) {
+        this.timeOut = timeOut;
         allAtomMCS = new ArrayList<Map<IAtom, IAtom>>();
         atomsMCS = new HashMap<IAtom, IAtom>();
         firstMCS = new TreeMap<Integer, Integer>();
@@ -101,12 +114,12 @@ public class MCSPlusHandler extends AbstractMCSAlgorithm implements IMCSBase {
         List<List<Integer>> mappings = null;
         try {
             if (source.getAtomCount() >= target.getAtomCount()) {
-                mappings = new MCSPlus().getOverlaps(source, target, shouldMatchBonds);
+                mappings = new MCSPlus(timeOut).getOverlaps(source, target, shouldMatchBonds);
             } else {
                 flagExchange = true;
-                mappings = new MCSPlus().getOverlaps(target, source, shouldMatchBonds);
+                mappings = new MCSPlus(timeOut).getOverlaps(target, source, shouldMatchBonds);
             }
-            PostFilter.filter(mappings);
+            PostFilter.filter(mappings, finalMappings);
             setAllMapping();
             setAllAtomMapping();
             setFirstMapping();
@@ -119,7 +132,7 @@ public class MCSPlusHandler extends AbstractMCSAlgorithm implements IMCSBase {
     private synchronized void setAllMapping() {
         try {
 
-            List<Map<Integer, Integer>> final_solution = FinalMappings.getInstance().getFinalMapping();
+            List<Map<Integer, Integer>> final_solution = finalMappings.getFinalMapping();
             int counter = 0;
             for (Map<Integer, Integer> solution : final_solution) {
 //                System.out.println("Number of MCS solution: " + solution);
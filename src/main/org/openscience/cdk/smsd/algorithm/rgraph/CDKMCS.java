@@ -242,7 +242,23 @@ public class CDKMCS {
      * @throws CDKException
      */
     public static List<List<CDKRMap>> getIsomorphMaps(IAtomContainer sourceGraph, IAtomContainer targetGraph, boolean shouldMatchBonds) throws CDKException {
-        return search(sourceGraph, targetGraph, getBitSet(sourceGraph), getBitSet(targetGraph), true, true, shouldMatchBonds);
+        return getIsomorphMaps(sourceGraph, targetGraph, shouldMatchBonds, defaultTimeOut());
+    }
+
+    /**
+     * Returns all the isomorph 'mappings' found between two
+     * atom containers, within the given time out.
+     *
+     * @param  sourceGraph  first molecule. Must not be an IQueryAtomContainer.
+     * @param  targetGraph  second molecule. May be an IQueryAtomContainer.
+     * @param shouldMatchBonds
+     * @param timeOut the time out of the search
+     * @return     the list of all the 'mappings'
+     * @throws CDKException
+     */
+    public static List<List<CDKRMap>> getIsomorphMaps(IAtomContainer sourceGraph, IAtomContainer targetGraph,
+            boolean shouldMatchBonds, TimeOut timeOut) throws CDKException {
+        return search(sourceGraph, targetGraph, getBitSet(sourceGraph), getBitSet(targetGraph), true, true, shouldMatchBonds, timeOut);
     }
 
     /////
@@ -258,7 +274,23 @@ public class CDKMCS {
      * @throws CDKException
      */
     public static List<List<CDKRMap>> getSubgraphMaps(IAtomContainer sourceGraph, IAtomContainer targetGraph, boolean shouldMatchBonds) throws CDKException {
-        return search(sourceGraph, targetGraph, new BitSet(), getBitSet(targetGraph), true, true, shouldMatchBonds);
+        return getSubgraphMaps(sourceGraph, targetGraph, shouldMatchBonds, defaultTimeOut());
+    }
+
+    /**
+     * Returns all the subgraph 'bondA1 mappings' found for targetGraph in sourceGraph,
+     * within the given time out.
+     *
+     * @param  sourceGraph  first molecule. Must not be an IQueryAtomContainer.
+     * @param  targetGraph  second molecule. May be an IQueryAtomContainer.
+     * @param shouldMatchBonds
+     * @param timeOut the time out of the search
+     * @return     the list of all the 'mappings' found projected of sourceGraph
+     * @throws CDKException
+     */
+    public static List<List<CDKRMap>> getSubgraphMaps(IAtomContainer sourceGraph, IAtomContainer targetGraph,
+            boolean shouldMatchBonds, TimeOut timeOut) throws CDKException {
+        return search(sourceGraph, targetGraph, new BitSet(), getBitSet(targetGraph), true, true, shouldMatchBonds, timeOut);
     }
 
     /**
@@ -295,10 +327,28 @@ public class CDKMCS {
     public static List<List<CDKRMap>> getSubgraphAtomsMaps(IAtomContainer sourceGraph,
             IAtomContainer targetGraph, boolean shouldMatchBonds)
             throws CDKException {
+        return getSubgraphAtomsMaps(sourceGraph, targetGraph, shouldMatchBonds, defaultTimeOut());
+    }
+
+    /**
+     * Returns all subgraph 'atom mappings' found for targetGraph in sourceGraph,
+     * within the given time out.
+     *
+     * @param  sourceGraph  first molecule. Must not be an IQueryAtomContainer.
+     * @param  targetGraph  second molecule. May be an IQueryAtomContainer.
+     * @param shouldMatchBonds
+     * @param timeOut the time out of the search
+     * @return     all subgraph atom mappings found projected on sourceGraph. This is atom
+     *             List of CDKRMap objects containing Ids of matching atoms.
+     * @throws CDKException
+     */
+    public static List<List<CDKRMap>> getSubgraphAtomsMaps(IAtomContainer sourceGraph,
+            IAtomContainer targetGraph, boolean shouldMatchBonds, TimeOut timeOut)
+            throws CDKException {
         List<CDKRMap> list = checkSingleAtomCases(sourceGraph, targetGraph);
         if (list == null) {
             return makeAtomsMapsOfBondsMaps(
-                    CDKMCS.getSubgraphMaps(sourceGraph, targetGraph, shouldMatchBonds), sourceGraph, targetGraph);
+                    CDKMCS.getSubgraphMaps(sourceGraph, targetGraph, shouldMatchBonds, timeOut), sourceGraph, targetGraph);
         } else {
             List<List<CDKRMap>> atomsMap = new ArrayList<List<CDKRMap>>();
             atomsMap.add(list);
@@ -465,6 +515,34 @@ public class CDKMCS {
     public static List<List<CDKRMap>> search(IAtomContainer sourceGraph, IAtomContainer targetGraph,
             BitSet sourceBitSet, BitSet targetBitSet, boolean findAllStructure, boolean findAllMap,
             boolean shouldMatchBonds) throws CDKException {
+        return search(sourceGraph, targetGraph, sourceBitSet, targetBitSet,
+                findAllStructure, findAllMap, shouldMatchBonds, defaultTimeOut());
+    }
+
+    /**
+     * General CDKRGraph parsing method (usually not used directly)
+     * This method is the entry point for the recursive search
+     * adapted to the atom container input. The search stops when the
+     * given time out expires or is cancelled, and the time out is
+     * restarted for each search.
+     *
+     * @param  sourceGraph                first molecule. Must not be an IQueryAtomContainer.
+     * @param  targetGraph                second molecule. May be an IQueryAtomContainer.
+     * @param  sourceBitSet                initial condition ( bonds from sourceGraph that
+     *                           must be contains in the solution )
+     * @param  targetBitSet                initial condition ( bonds from targetGraph that
+     *                           must be contains in the solution )
+     * @param  findAllStructure  if false stop at the first structure found
+     * @param  findAllMap        if true search all the 'mappings' for one same
+     *                           structure
+     * @param shouldMatchBonds
+     * @param timeOut the time out of the search
+     * @return                   atom List of Lists of CDKRMap objects that represent the search solutions
+     * @throws CDKException
+     */
+    public static List<List<CDKRMap>> search(IAtomContainer sourceGraph, IAtomContainer targetGraph,
+            BitSet sourceBitSet, BitSet targetBitSet, boolean findAllStructure, boolean findAllMap,
+            boolean shouldMatchBonds, TimeOut timeOut) throws CDKException {
 
 
         // handle single query atom case separately
@@ -498,9 +576,9 @@ public class CDKMCS {
         List<List<CDKRMap>> rMapsList = new ArrayList<List<CDKRMap>>();
         // build the CDKRGraph corresponding to this problem
         CDKRGraph rGraph = buildRGraph(sourceGraph, targetGraph, shouldMatchBonds);
-        setTimeManager(new TimeManager());
+        timeOut.start();
         // parse the CDKRGraph with the given constrains and options
-        rGraph.parse(sourceBitSet, targetBitSet, findAllStructure, findAllMap, getTimeManager());
+        rGraph.parse(sourceBitSet, targetBitSet, findAllStructure, findAllMap, timeOut);
         List<BitSet> solutionList = rGraph.getSolutions();
 
         // conversions of CDKRGraph's internal solutions to G1/G2 mappings
@@ -1156,31 +1234,56 @@ public class CDKMCS {
 
     /**
      * @return the timeout
+     * @deprecated each search has its own {@link TimeOut}; this returns the
+     *             default time out of {@link TimeOut#getInstance()}
      */
-    protected synchronized static double getTimeout() {
+    @Deprecated
+    protected static double getTimeout() {
         return TimeOut.getInstance().getTimeOut();
     }
 
     /**
      * @return the timeManager
+     * @deprecated the searches no longer use this time manager, they are
+     *             given a {@link TimeOut}
      */
+    @Deprecated
     protected synchronized static TimeManager getTimeManager() {
         return timeManager;
     }
 
     /**
      * @param aTimeManager the timeManager to set
+     * @deprecated the searches no longer use this time manager, they are
+     *             given a {@link TimeOut}
      */
+    @Deprecated
     protected synchronized static void setTimeManager(TimeManager aTimeManager) {
         TimeOut.getInstance().setTimeOutFlag(false);
         timeManager = aTimeManager;
     }
 
+    /**
+     * Checks the time manager set with {@link #setTimeManager(TimeManager)}
+     * against the default time out of {@link TimeOut#getInstance()}.
+     * @return true if the default time out has expired
+     * @deprecated check the {@link TimeOut} given to the search instead
+     */
+    @Deprecated
     public synchronized static boolean isTimeOut() {
-        if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
+        if (getTimeout() > -1 && getTimeManager() != null
+                && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
             TimeOut.getInstance().setTimeOutFlag(true);
             return true;
         }
         return false;
     }
+
+    /**
+     * Returns a time out for one search, with the default time out of
+     * {@link TimeOut#getInstance()}.
+     */
+    private static TimeOut defaultTimeOut() {
+        return new TimeOut(TimeOut.getInstance().getTimeOut());
+    }
 }
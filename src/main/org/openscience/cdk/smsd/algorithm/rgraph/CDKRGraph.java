@@ -35,6 +35,7 @@ import java.util.Iterator;
 import java.util.List;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.tools.TimeManager;
 
 /**
@@ -126,7 +127,8 @@ public class CDKRGraph {
     private boolean stop = false;
     private int nbIteration = 0;
     private BitSet graphBitSet = null;
-    // -1 for infinite search and one min is 1
+    // the time out of the current search
+    private TimeOut timeOut = null;
 
     /**
      * Constructor for the CDKRGraph object and creates an empty CDKRGraph.
@@ -138,7 +140,7 @@ public class CDKRGraph {
     }
 
     private boolean checkTimeOut() throws CDKException {
-        if (CDKMCS.isTimeOut()) {
+        if (timeOut != null && timeOut.isTimeOut()) {
             setStop(true);
             return true;
         }
@@ -206,6 +208,23 @@ public class CDKRGraph {
         getGraphBitSet().set(getGraph().size() - 1);
     }
 
+    /**
+     *  Parsing of the CDKRGraph with the default time out of
+     *  {@link TimeOut#getInstance()}, counted from this call.
+     *
+     * @param  sourceBitSet  constrain on the graph G1
+     * @param  targetBitSet  constrain on the graph G2
+     * @param  findAllStructure true if we want all results to be generated
+     * @param  findAllMap true is we want all possible 'mappings'
+     * @param timeManager not used
+     * @throws CDKException
+     * @deprecated use {@link #parse(BitSet, BitSet, boolean, boolean, TimeOut)}
+     */
+    @Deprecated
+    public void parse(BitSet sourceBitSet, BitSet targetBitSet, boolean findAllStructure, boolean findAllMap, TimeManager timeManager) throws CDKException {
+        parse(sourceBitSet, targetBitSet, findAllStructure, findAllMap, new TimeOut(TimeOut.getInstance().getTimeOut()));
+    }
+
     /**
      *  Parsing of the CDKRGraph. This is the main method
      *  to perform a query. Given the constrains sourceBitSet and targetBitSet
@@ -219,10 +238,11 @@ public class CDKRGraph {
      * @param  targetBitSet  constrain on the graph G2
      * @param  findAllStructure true if we want all results to be generated
      * @param  findAllMap true is we want all possible 'mappings'
-     * @param timeManager
+     * @param timeOut the time out of the search, or null for none
      * @throws CDKException
      */
-    public void parse(BitSet sourceBitSet, BitSet targetBitSet, boolean findAllStructure, boolean findAllMap, TimeManager timeManager) throws CDKException {
+    public void parse(BitSet sourceBitSet, BitSet targetBitSet, boolean findAllStructure, boolean findAllMap, TimeOut timeOut) throws CDKException {
+        this.timeOut = timeOut;
         // initialize the list of solution
         checkTimeOut();
         // initialize the list of solution
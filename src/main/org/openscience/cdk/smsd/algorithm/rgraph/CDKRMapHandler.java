@@ -34,7 +34,7 @@ import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
-import org.openscience.cdk.smsd.helper.FinalMappings;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.tools.manipulator.BondManipulator;
 
 /**
@@ -53,43 +53,74 @@ import org.openscience.cdk.tools.manipulator.BondManipulator;
 public class CDKRMapHandler {
 
 
+    private final TimeOut timeOut;
+
+    /**
+     * Creates a handler using the default time out of
+     * {@link TimeOut#getInstance()}.
+     */
     public CDKRMapHandler(){
-        
+        this(new TimeOut(TimeOut.getInstance().getTimeOut()));
+    }
+
+    /**
+     * Creates a handler whose searches stop when the given time out expires
+     * or is cancelled.
+     * @param timeOut the time out of the searches
+     */
+    public CDKRMapHandler(TimeOut timeOut) {
+        this.timeOut = timeOut;
     }
     /**
      * Returns source molecule
      * @return the source
+     * @deprecated each handler keeps its own molecules; this returns the
+     *             source of the last search of any handler, or the one
+     *             set with {@link #setSource(IAtomContainer)}
      */
+    @Deprecated
     public static IAtomContainer getSource() {
-        return source;
+        return lastSource;
     }
 
     /**
      * Set source molecule
      * @param aSource the source to set
+     * @deprecated each handler keeps its own molecules; this only changes
+     *             what {@link #getSource()} returns
      */
+    @Deprecated
     public static void setSource(IAtomContainer aSource) {
-        source = aSource;
+        lastSource = aSource;
     }
 
     /**
      * Returns target molecule
      * @return the target
+     * @deprecated each handler keeps its own molecules; this returns the
+     *             target of the last search of any handler, or the one
+     *             set with {@link #setTarget(IAtomContainer)}
      */
+    @Deprecated
     public static IAtomContainer getTarget() {
-        return target;
+        return lastTarget;
     }
 
     /**
      * Set target molecule
      * @param aTarget the target to set
+     * @deprecated each handler keeps its own molecules; this only changes
+     *             what {@link #getTarget()} returns
      */
+    @Deprecated
     public static void setTarget(IAtomContainer aTarget) {
-        target = aTarget;
+        lastTarget = aTarget;
     }
     private List<Map<Integer, Integer>> mappings;
-    private static IAtomContainer source;
-    private static IAtomContainer target;
+    private IAtomContainer source;
+    private IAtomContainer target;
+    private static IAtomContainer lastSource;
+    private static IAtomContainer lastTarget;
     private boolean timeoutFlag = false;
 
     /**
@@ -101,41 +132,40 @@ public class CDKRMapHandler {
      */
     public void calculateOverlapsAndReduce(IAtomContainer Molecule1, IAtomContainer Molecule2, boolean shouldMatchBonds) throws CDKException {
 
-        setSource(Molecule1);
-        setTarget(Molecule2);
+        source = Molecule1;
+        target = Molecule2;
+        setSource(source);
+        setTarget(target);
 
         setMappings(new ArrayList<Map<Integer, Integer>>());
 
 
-        if ((getSource().getAtomCount() == 1) || (getTarget().getAtomCount() == 1)) {
-            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(getSource(), getTarget());
+        if ((source.getAtomCount() == 1) || (target.getAtomCount() == 1)) {
+            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(source, target);
             int nAtomsMatched = overlaps.size();
             nAtomsMatched = (nAtomsMatched > 0) ? 1 : 0;
             if (nAtomsMatched > 0) {
                 /*UnComment this to get one Unique Mapping*/
                 //List reducedList = removeRedundantMappingsForSingleAtomCase(overlaps);
                 //int counter = 0;
-                identifySingleAtomsMatchedParts(overlaps, getSource(), getTarget());
+                identifySingleAtomsMatchedParts(overlaps, source, target);
 
             }
 
         } else {
-            List<List<CDKRMap>> overlaps = CDKMCS.search(getSource(), getTarget(), new BitSet(), new BitSet(), true, true, shouldMatchBonds);
+            List<List<CDKRMap>> overlaps = CDKMCS.search(source, target, new BitSet(), new BitSet(), true, true, shouldMatchBonds, timeOut);
 
             List<List<CDKRMap>> reducedList = removeSubGraph(overlaps);
             Stack<List<CDKRMap>> allMaxOverlaps = getAllMaximum(reducedList);
             while (!allMaxOverlaps.empty()) {
 //                System.out.println("source: " + source.getAtomCount() + ", target: " + target.getAtomCount() + ", overl: " + allMaxOverlaps.peek().size());
-                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), getSource(), getTarget());
+                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), source, target);
 //                System.out.println("size of maxOverlaps: " + maxOverlapsAtoms.size());
-                identifyMatchedParts(maxOverlapsAtoms, getSource(), getTarget());
+                identifyMatchedParts(maxOverlapsAtoms, source, target);
 //                identifyMatchedParts(allMaxOverlaps.peek(), source, target);
                 allMaxOverlaps.pop();
             }
         }
-
-        FinalMappings.getInstance().set(getMappings());
-
     }
 
     /**
@@ -149,38 +179,39 @@ public class CDKRMapHandler {
      */
     public void calculateOverlapsAndReduceExactMatch(IAtomContainer Molecule1, IAtomContainer Molecule2, boolean shouldMatchBonds) throws CDKException {
 
-        setSource(Molecule1);
-        setTarget(Molecule2);
+        source = Molecule1;
+        target = Molecule2;
+        setSource(source);
+        setTarget(target);
 
         setMappings(new ArrayList<Map<Integer, Integer>>());
 
         //System.out.println("Searching: ");
         //List overlaps = UniversalIsomorphismTesterBondTypeInSensitive.getSubgraphAtomsMap(source, target);
 
-        if ((getSource().getAtomCount() == 1) || (getTarget().getAtomCount() == 1)) {
+        if ((source.getAtomCount() == 1) || (target.getAtomCount() == 1)) {
 
-            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(getSource(), getTarget());
+            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(source, target);
             int nAtomsMatched = overlaps.size();
             nAtomsMatched = (nAtomsMatched > 0) ? 1 : 0;
             if (nAtomsMatched > 0) {
-                identifySingleAtomsMatchedParts(overlaps, getSource(), getTarget());
+                identifySingleAtomsMatchedParts(overlaps, source, target);
             }
 
         } else {
 
             List<List<CDKRMap>> overlaps =
-                    CDKMCS.search(getSource(), getTarget(), new BitSet(), new BitSet(), true, true, shouldMatchBonds);
+                    CDKMCS.search(source, target, new BitSet(), new BitSet(), true, true, shouldMatchBonds, timeOut);
 
             List<List<CDKRMap>> reducedList = removeSubGraph(overlaps);
             Stack<List<CDKRMap>> allMaxOverlaps = getAllMaximum(reducedList);
 
             while (!allMaxOverlaps.empty()) {
-                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), getSource(), getTarget());
-                identifyMatchedParts(maxOverlapsAtoms, getSource(), getTarget());
+                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), source, target);
+                identifyMatchedParts(maxOverlapsAtoms, source, target);
                 allMaxOverlaps.pop();
             }
         }
-        FinalMappings.getInstance().set(getMappings());
     }
 
     /**
@@ -194,38 +225,39 @@ public class CDKRMapHandler {
      */
     public void calculateSubGraphs(IAtomContainer Molecule1, IAtomContainer Molecule2, boolean shouldMatchBonds) throws CDKException {
 
-        setSource(Molecule1);
-        setTarget(Molecule2);
+        source = Molecule1;
+        target = Molecule2;
+        setSource(source);
+        setTarget(target);
 
         setMappings(new ArrayList<Map<Integer, Integer>>());
 
         //System.out.println("Searching: ");
         //List overlaps = UniversalIsomorphismTesterBondTypeInSensitive.getSubgraphAtomsMap(source, target);
 
-        if ((getSource().getAtomCount() == 1) || (getTarget().getAtomCount() == 1)) {
+        if ((source.getAtomCount() == 1) || (target.getAtomCount() == 1)) {
 
-            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(getSource(), getTarget());
+            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(source, target);
             int nAtomsMatched = overlaps.size();
             nAtomsMatched = (nAtomsMatched > 0) ? 1 : 0;
             if (nAtomsMatched > 0) {
-                identifySingleAtomsMatchedParts(overlaps, getSource(), getTarget());
+                identifySingleAtomsMatchedParts(overlaps, source, target);
             }
 
         } else {
 
             List<List<CDKRMap>> overlaps =
-                    CDKMCS.getSubgraphMaps(getSource(), getTarget(), shouldMatchBonds);
+                    CDKMCS.getSubgraphMaps(source, target, shouldMatchBonds, timeOut);
 
             List<List<CDKRMap>> reducedList = removeSubGraph(overlaps);
             Stack<List<CDKRMap>> allMaxOverlaps = getAllMaximum(reducedList);
 
             while (!allMaxOverlaps.empty()) {
-                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), getSource(), getTarget());
-                identifyMatchedParts(maxOverlapsAtoms, getSource(), getTarget());
+                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), source, target);
+                identifyMatchedParts(maxOverlapsAtoms, source, target);
                 allMaxOverlaps.pop();
             }
         }
-        FinalMappings.getInstance().set(getMappings());
     }
 
     /**
@@ -239,38 +271,39 @@ public class CDKRMapHandler {
      */
     public void calculateIsomorphs(IAtomContainer Molecule1, IAtomContainer Molecule2, boolean shouldMatchBonds) throws CDKException {
 
-        setSource(Molecule1);
-        setTarget(Molecule2);
+        source = Molecule1;
+        target = Molecule2;
+        setSource(source);
+        setTarget(target);
 
         setMappings(new ArrayList<Map<Integer, Integer>>());
 
         //System.out.println("Searching: ");
         //List overlaps = UniversalIsomorphismTesterBondTypeInSensitive.getSubgraphAtomsMap(source, target);
 
-        if ((getSource().getAtomCount() == 1) || (getTarget().getAtomCount() == 1)) {
+        if ((source.getAtomCount() == 1) || (target.getAtomCount() == 1)) {
 
-            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(getSource(), getTarget());
+            List<CDKRMap> overlaps = CDKMCS.checkSingleAtomCases(source, target);
             int nAtomsMatched = overlaps.size();
             nAtomsMatched = (nAtomsMatched > 0) ? 1 : 0;
             if (nAtomsMatched > 0) {
-                identifySingleAtomsMatchedParts(overlaps, getSource(), getTarget());
+                identifySingleAtomsMatchedParts(overlaps, source, target);
             }
 
         } else {
 
             List<List<CDKRMap>> overlaps =
-                    CDKMCS.getIsomorphMaps(getSource(), getTarget(), shouldMatchBonds);
+                    CDKMCS.getIsomorphMaps(source, target, shouldMatchBonds, timeOut);
 
             List<List<CDKRMap>> reducedList = removeSubGraph(overlaps);
             Stack<List<CDKRMap>> allMaxOverlaps = getAllMaximum(reducedList);
 
             while (!allMaxOverlaps.empty()) {
-                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), getSource(), getTarget());
-                identifyMatchedParts(maxOverlapsAtoms, getSource(), getTarget());
+                List<List<CDKRMap>> maxOverlapsAtoms = makeAtomsMapOfBondsMap(allMaxOverlaps.peek(), source, target);
+                identifyMatchedParts(maxOverlapsAtoms, source, target);
                 allMaxOverlaps.pop();
             }
         }
-        FinalMappings.getInstance().set(getMappings());
     }
 
     /**
@@ -43,6 +43,7 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.map.VFMCSMapper;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.interfaces.AbstractMCSAlgorithm;
 import org.openscience.cdk.smsd.interfaces.IMCSBase;
 import org.openscience.cdk.smsd.tools.MolHandler;
@@ -67,12 +68,12 @@ import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 @TestClass("org.openscience.cdk.smsd.algorithm.vflib.VFlibMCSHandlerTest")
 public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
 
-    private static List<Map<IAtom, IAtom>> allAtomMCS = null;
-    private static Map<IAtom, IAtom> atomsMCS = null;
-    private static List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
-    private static Map<Integer, Integer> firstMCS = null;
-    private static List<Map<Integer, Integer>> allMCS = null;
-    private static List<Map<Integer, Integer>> allMCSCopy = null;
+    private List<Map<IAtom, IAtom>> allAtomMCS = null;
+    private Map<IAtom, IAtom> atomsMCS = null;
+    private List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
+    private Map<Integer, Integer> firstMCS = null;
+    private List<Map<Integer, Integer>> allMCS = null;
+    private List<Map<Integer, Integer>> allMCSCopy = null;
     private List<Map<INode, IAtom>> vfLibSolutions = null;
     private IQueryAtomContainer queryMol = null;
     private IAtomContainer mol1 = null;
@@ -83,12 +84,22 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
     private int countP = 0;
     private final static ILoggingTool Logger =
             LoggingToolFactory.createLoggingTool(VFlibMCSHandler.class);
+    private final TimeOut timeOut;
 
     /**
      * Constructor for an extended VF Algorithm for the MCS search
      */
     @TestMethod("setMCSAlgorithm")
     public VFlibMCSHandler() {
+        this(null);
+    }
+
+    /**
+     * Constructor for an extended VF Algorithm for the MCS search
+     * @param timeOut the search stops when it is cancelled, may be null
+     */
+    public VFlibMCSHandler(TimeOut timeOut) {
+        this.timeOut = timeOut;
         allAtomMCS = new ArrayList<Map<IAtom, IAtom>>();
         allAtomMCSCopy = new ArrayList<Map<IAtom, IAtom>>();
         atomsMCS = new HashMap<IAtom, IAtom>();
@@ -224,7 +235,7 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
         vfLibSolutions = new ArrayList<Map<INode, IAtom>>();
         if (queryMol != null) {
             query = new QueryCompiler(queryMol).compile();
-            mapper = new VFMCSMapper(query);
+            mapper = new VFMCSMapper(query, timeOut);
             List<Map<INode, IAtom>> maps = mapper.getMaps(getProductMol());
             if (maps != null) {
                 vfLibSolutions.addAll(maps);
@@ -232,7 +243,7 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
             setVFMappings(true, query);
         } else if (countR <= countP) {
             query = new QueryCompiler(mol1, isBondMatchFlag()).compile();
-            mapper = new VFMCSMapper(query);
+            mapper = new VFMCSMapper(query, timeOut);
             List<Map<INode, IAtom>> maps = mapper.getMaps(getProductMol());
             if (maps != null) {
                 vfLibSolutions.addAll(maps);
@@ -240,7 +251,7 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
             setVFMappings(true, query);
         } else {
             query = new QueryCompiler(getProductMol(), isBondMatchFlag()).compile();
-            mapper = new VFMCSMapper(query);
+            mapper = new VFMCSMapper(query, timeOut);
             List<Map<INode, IAtom>> maps = mapper.getMaps(getReactantMol());
             if (maps != null) {
                 vfLibSolutions.addAll(maps);
@@ -275,6 +286,7 @@ public class VFlibMCSHandler extends AbstractMCSAlgorithm implements IMCSBase {
                     }
                 }
             }
+            mgit.setTimeOut(timeOut);
             mgit.startMcGregorIteration(mgit.getMCSSize(), tMapping); //Start McGregor search
             mappings = mgit.getMappings();
             mgit = null;
@@ -41,6 +41,7 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.map.VFMapper;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.interfaces.AbstractSubGraph;
 import org.openscience.cdk.smsd.interfaces.IMCSBase;
 import org.openscience.cdk.smsd.tools.MolHandler;
@@ -66,12 +67,12 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 @TestClass("org.openscience.cdk.smsd.algorithm.vflib.VFlibTurboHandlerTest")
 public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBase {
 
-    private static List<Map<IAtom, IAtom>> allAtomMCS = null;
-    private static Map<IAtom, IAtom> atomsMCS = null;
-    private static List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
-    private static Map<Integer, Integer> firstMCS = null;
-    private static List<Map<Integer, Integer>> allMCS = null;
-    private static List<Map<Integer, Integer>> allMCSCopy = null;
+    private List<Map<IAtom, IAtom>> allAtomMCS = null;
+    private Map<IAtom, IAtom> atomsMCS = null;
+    private List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
+    private Map<Integer, Integer> firstMCS = null;
+    private List<Map<Integer, Integer>> allMCS = null;
+    private List<Map<Integer, Integer>> allMCSCopy = null;
     private IQueryAtomContainer queryMol = null;
     private IAtomContainer mol1 = null;
     private IAtomContainer mol2 = null;
@@ -80,12 +81,22 @@ public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBa
     private boolean bond_Match_Flag = false;
     private final static ILoggingTool Logger =
             LoggingToolFactory.createLoggingTool(VFlibSubStructureHandler.class);
+    private final TimeOut timeOut;
 
     /**
      * Constructor for an extended VF Algorithm for the MCS search
      */
     @TestMethod("setMCSAlgorithm")
     public VFlibSubStructureHandler() {
+        this(null);
+    }
+
+    /**
+     * Constructor for an extended VF Algorithm for the MCS search
+     * @param timeOut the search stops when it is cancelled, may be null
+     */
+    public VFlibSubStructureHandler(TimeOut timeOut) {
+        this.timeOut = timeOut;
         allAtomMCS = new ArrayList<Map<IAtom, IAtom>>();
         allAtomMCSCopy = new ArrayList<Map<IAtom, IAtom>>();
         atomsMCS = new HashMap<IAtom, IAtom>();
@@ -189,7 +200,7 @@ public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBa
         vfLibSolutions = new ArrayList<Map<INode, IAtom>>();
         if (queryMol != null) {
             query = new QueryCompiler(queryMol).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, timeOut);
             if (mapper.hasMap(getProductMol())) {
                 List<Map<INode, IAtom>> maps = mapper.getMaps(getProductMol());
                 if (maps != null) {
@@ -199,7 +210,7 @@ public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBa
             setVFMappings(true, query);
         } else if (getReactantMol().getAtomCount() <= getProductMol().getAtomCount()) {
             query = new QueryCompiler(mol1, isBondMatchFlag()).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, timeOut);
             if (mapper.hasMap(getProductMol())) {
                 List<Map<INode, IAtom>> maps = mapper.getMaps(getProductMol());
                 if (maps != null) {
@@ -209,7 +220,7 @@ public class VFlibSubStructureHandler extends AbstractSubGraph implements IMCSBa
             setVFMappings(true, query);
         } else {
             query = new QueryCompiler(getProductMol(), isBondMatchFlag()).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, timeOut);
             if (mapper.hasMap(getReactantMol())) {
                 List<Map<INode, IAtom>> maps = mapper.getMaps(getReactantMol());
                 if (maps != null) {
@@ -42,6 +42,7 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.map.VFMapper;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.interfaces.AbstractSubGraph;
 import org.openscience.cdk.smsd.interfaces.IMCSBase;
 import org.openscience.cdk.smsd.tools.MolHandler;
@@ -67,12 +68,12 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 @TestClass("org.openscience.cdk.smsd.algorithm.vflib.VFlibTurboHandlerTest")
 public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
 
-    private static List<Map<IAtom, IAtom>> allAtomMCS = null;
-    private static Map<IAtom, IAtom> atomsMCS = null;
-    private static List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
-    private static Map<Integer, Integer> firstMCS = null;
-    private static List<Map<Integer, Integer>> allMCS = null;
-    private static List<Map<Integer, Integer>> allMCSCopy = null;
+    private List<Map<IAtom, IAtom>> allAtomMCS = null;
+    private Map<IAtom, IAtom> atomsMCS = null;
+    private List<Map<IAtom, IAtom>> allAtomMCSCopy = null;
+    private Map<Integer, Integer> firstMCS = null;
+    private List<Map<Integer, Integer>> allMCS = null;
+    private List<Map<Integer, Integer>> allMCSCopy = null;
     private IQueryAtomContainer queryMol = null;
     private IAtomContainer mol1 = null;
     private IAtomContainer mol2 = null;
@@ -81,12 +82,22 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
     private boolean bond_Match_Flag = false;
     private final static ILoggingTool Logger =
             LoggingToolFactory.createLoggingTool(VFlibTurboHandler.class);
+    private final TimeOut timeOut;
 
     /**
      * Constructor for an extended VF Algorithm for the MCS search
      */
     @TestMethod("setMCSAlgorithm")
     public VFlibTurboHandler() {
+        this(null);
+    }
+
+    /**
+     * Constructor for an extended VF Algorithm for the MCS search
+     * @param timeOut the search stops when it is cancelled, may be null
+     */
+    public VFlibTurboHandler(TimeOut timeOut) {
+        this.timeOut = timeOut;
         allAtomMCS = new ArrayList<Map<IAtom, IAtom>>();
         allAtomMCSCopy = new ArrayList<Map<IAtom, IAtom>>();
         atomsMCS = new HashMap<IAtom, IAtom>();
@@ -195,7 +206,7 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
         vfLibSolutions = new HashMap<INode, IAtom>();
         if (queryMol != null) {
             query = new QueryCompiler(queryMol).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, timeOut);
             if (mapper.hasMap(getProductMol())) {
                 Map<INode, IAtom> map = mapper.getFirstMap(getProductMol());
                 if (map != null) {
@@ -205,7 +216,7 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
             setVFMappings(true, query);
         } else if (getReactantMol().getAtomCount() <= getProductMol().getAtomCount()) {
             query = new QueryCompiler(mol1, isBondMatchFlag()).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, timeOut);
             if (mapper.hasMap(getProductMol())) {
                 Map<INode, IAtom> map = mapper.getFirstMap(getProductMol());
                 if (map != null) {
@@ -215,7 +226,7 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
             setVFMappings(true, query);
         } else {
             query = new QueryCompiler(getProductMol(), isBondMatchFlag()).compile();
-            mapper = new VFMapper(query);
+            mapper = new VFMapper(query, timeOut);
             if (mapper.hasMap(getReactantMol())) {
                 Map<INode, IAtom> map = mapper.getFirstMap(getReactantMol());
                 if (map != null) {
@@ -230,6 +241,7 @@ public class VFlibTurboHandler extends AbstractSubGraph implements IMCSBase {
         List<List<Integer>> mappings = new ArrayList<List<Integer>>();
         for (Map<Integer, Integer> firstPassMappings : allMCSCopy) {
             McGregor mgit = new McGregor(getReactantMol(), getProductMol(), mappings, isBondMatchFlag());
+            mgit.setTimeOut(timeOut);
             mgit.startMcGregorIteration(mgit.getMCSSize(), firstPassMappings); //Start McGregor search
             mappings = mgit.getMappings();
             mgit = null;
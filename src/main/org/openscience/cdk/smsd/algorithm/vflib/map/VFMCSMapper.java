@@ -79,25 +79,35 @@ public class VFMCSMapper implements IMapper {
     private IQuery query = null;
     private List<Map<INode, IAtom>> maps = null;
     private int currentMCSSize = -1;
+    private final TimeOut timeOut;
     private static TimeManager timeManager = null;
 
     /**
      * @return the timeout
+     * @deprecated each search has its own {@link TimeOut}; this returns the
+     *             default time out of {@link TimeOut#getInstance()}
      */
+    @Deprecated
     protected synchronized static double getTimeout() {
         return TimeOut.getInstance().getTimeOut();
     }
 
     /**
      * @return the timeManager
+     * @deprecated the searches no longer use this time manager, they are
+     *             given a {@link TimeOut}
      */
+    @Deprecated
     protected synchronized static TimeManager getTimeManager() {
         return timeManager;
     }
 
     /**
      * @param aTimeManager the timeManager to set
+     * @deprecated the searches no longer use this time manager, they are
+     *             given a {@link TimeOut}
      */
+    @Deprecated
     protected synchronized static void setTimeManager(TimeManager aTimeManager) {
         TimeOut.getInstance().setTimeOutFlag(false);
         timeManager = aTimeManager;
@@ -108,7 +118,16 @@ public class VFMCSMapper implements IMapper {
      * @param query
      */
     public VFMCSMapper(IQuery query) {
-        setTimeManager(new TimeManager());
+        this(query, null);
+    }
+
+    /**
+     *
+     * @param query
+     * @param timeOut the search stops when it is cancelled, may be null
+     */
+    public VFMCSMapper(IQuery query, TimeOut timeOut) {
+        this.timeOut = timeOut;
         this.query = query;
         this.maps = new ArrayList<Map<INode, IAtom>>();
     }
@@ -119,7 +138,17 @@ public class VFMCSMapper implements IMapper {
      * @param bondMatcher 
      */
     public VFMCSMapper(IAtomContainer queryMolecule, boolean bondMatcher) {
-        setTimeManager(new TimeManager());
+        this(queryMolecule, bondMatcher, null);
+    }
+
+    /**
+     *
+     * @param queryMolecule
+     * @param bondMatcher
+     * @param timeOut the search stops when it is cancelled, may be null
+     */
+    public VFMCSMapper(IAtomContainer queryMolecule, boolean bondMatcher, TimeOut timeOut) {
+        this.timeOut = timeOut;
         this.query = new QueryCompiler(queryMolecule, bondMatcher).compile();
         this.maps = new ArrayList<Map<INode, IAtom>>();
     }
@@ -228,7 +257,7 @@ public class VFMCSMapper implements IMapper {
             addMapping(state);
         }
 
-        while (state.hasNextCandidate()) {
+        while (!isCancelled() && state.hasNextCandidate()) {
             Match candidate = state.nextCandidate();
             if (state.isMatchFeasible(candidate)) {
                 IState nextState = state.nextState(candidate);
@@ -249,7 +278,7 @@ public class VFMCSMapper implements IMapper {
         }
 
         boolean found = false;
-        while (!found && state.hasNextCandidate()) {
+        while (!found && !isCancelled() && state.hasNextCandidate()) {
             Match candidate = state.nextCandidate();
             if (state.isMatchFeasible(candidate)) {
                 IState nextState = state.nextState(candidate);
@@ -269,11 +298,23 @@ public class VFMCSMapper implements IMapper {
         return false;
     }
 
+    /**
+     * Checks the time manager set with {@link #setTimeManager(TimeManager)}
+     * against the default time out of {@link TimeOut#getInstance()}.
+     * @return true if the default time out has expired
+     * @deprecated check the {@link TimeOut} given to the search instead
+     */
+    @Deprecated
     public synchronized static boolean isTimeOut() {
-        if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
+        if (getTimeout() > -1 && getTimeManager() != null
+                && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
             TimeOut.getInstance().setTimeOutFlag(true);
             return true;
         }
         return false;
     }
+
+    private boolean isCancelled() {
+        return timeOut != null && timeOut.isCancelled();
+    }
 }
@@ -31,6 +31,7 @@ import java.util.TreeMap;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.smsd.helper.FinalMappings;
+import org.openscience.cdk.smsd.interfaces.IFinalMapping;
 
 /**
  * Class that cleans redundant mappings from the solution set.
@@ -58,7 +59,19 @@ public class PostFilter {
      */
     @TestMethod("testFilter")
     public static List<Map<Integer, Integer>> filter(List<List<Integer>> mappings) {
-        FinalMappings final_MAPPINGS = FinalMappings.getInstance();
+        return filter(mappings, FinalMappings.getInstance());
+    }
+
+    /**
+     * Removes redundant mapping(s) and stores the remaining ones in the
+     * given mappings of a search.
+     *
+     * @param mappings
+     * @param final_MAPPINGS the mappings of the search
+     * @return Filtered non-redundant mappings
+     */
+    @TestMethod("testFilter")
+    public static List<Map<Integer, Integer>> filter(List<List<Integer>> mappings, IFinalMapping final_MAPPINGS) {
         if (mappings != null && !mappings.isEmpty()) {
             final_MAPPINGS.set(removeRedundantMapping(mappings));
             mappings.clear();
@@ -26,9 +26,23 @@ package org.openscience.cdk.smsd.global;
 
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.smsd.tools.TimeManager;
 
 /**
- * Class that manages MCS timeout.
+ * Class that manages MCS timeout. Each {@link org.openscience.cdk.smsd.Isomorphism}
+ * run has its own TimeOut, so that searches in different threads have
+ * independent time budgets and can be cancelled one by one. The algorithms
+ * check the TimeOut while they search and stop cooperatively once it has
+ * expired or was cancelled:
+ * <pre>
+ * TimeOut timeOut = new TimeOut(0.5);
+ * timeOut.start();
+ * ...
+ * if (timeOut.isTimeOut()) break;
+ * </pre>
+ * The shared instance returned by {@link #getInstance()} only holds the
+ * default time out for runs that are not given one.
+ *
  * @cdk.module smsd
  * @cdk.githash
  * @author Syed Asad Rahman <asad@ebi.ac.uk>
@@ -37,11 +51,14 @@ import org.openscience.cdk.annotations.TestMethod;
 public class TimeOut {
 
     private static TimeOut instance = null;
-    private double time = -1;
-    private boolean timeOutFlag = false;
+    private volatile double time = -1;
+    private volatile boolean timeOutFlag = false;
+    private volatile boolean cancelled = false;
+    private volatile TimeManager timeManager = new TimeManager();
 
     /**
-     * Get Instance of the timeout. This starts the timeout counter.
+     * Get the shared instance of the timeout, which holds the default time
+     * out of the searches.
      * @return Instance
      */
     @TestMethod("testGetInstance")
@@ -56,6 +73,56 @@ public class TimeOut {
     protected TimeOut() {
     }
 
+    /**
+     * Creates a timeout for one search. The time is counted from the
+     * creation of the timeout or from the last call to {@link #start()}.
+     * @param timeout cutoff value in minutes, -1 for infinite
+     */
+    @TestMethod("testTimeOut_double")
+    public TimeOut(double timeout) {
+        this.time = timeout;
+    }
+
+    /**
+     * Restarts the time counter and clears the timeout flag.
+     */
+    @TestMethod("testStart")
+    public void start() {
+        timeManager = new TimeManager();
+        timeOutFlag = false;
+    }
+
+    /**
+     * Checks whether the time has run out or the search was cancelled, and
+     * sets the timeout flag if so.
+     * @return true if the search should stop
+     */
+    @TestMethod("testIsTimeOut")
+    public boolean isTimeOut() {
+        if (cancelled || (time > -1 && timeManager.getElapsedTimeInMinutes() > time)) {
+            timeOutFlag = true;
+        }
+        return timeOutFlag;
+    }
+
+    /**
+     * Asks the search using this timeout to stop as soon as possible. May
+     * be called from any thread.
+     */
+    @TestMethod("testCancel")
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Return true if {@link #cancel()} was called.
+     * @return true if cancelled
+     */
+    @TestMethod("testCancel")
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     /**
      * set cutoff value for time out eg. -1 for infinite and 0.23 for
      * 23 seconds.
@@ -41,15 +41,20 @@ import org.openscience.cdk.smsd.interfaces.IFinalMapping;
 @TestClass("org.openscience.cdk.smsd.helper.FinalMappingsTest")
 public class FinalMappings implements IFinalMapping {
 
-    private static List<Map<Integer, Integer>> mappings = null;
+    private final List<Map<Integer, Integer>> mappings;
     private static FinalMappings instance = null;
 
-    protected FinalMappings() {
+    /**
+     * Creates an empty store of mappings. Each search keeps its own store,
+     * so that concurrent searches do not overwrite each other's mappings.
+     */
+    public FinalMappings() {
         mappings = new ArrayList<Map<Integer, Integer>>();
     }
 
     /**
-     * Stores mapping solutions
+     * Returns a shared store of mappings. The SMSD handlers do not use it,
+     * they keep their own {@link #FinalMappings()} instance.
      * @return instance of this object
      */
     @TestMethod("testGetInstance")
@@ -95,7 +100,7 @@ public class FinalMappings implements IFinalMapping {
      */
     @TestMethod("testClear")
     synchronized public void clear() {
-        FinalMappings.mappings.clear();
+        mappings.clear();
     }
 
     /**
@@ -43,7 +43,12 @@ public class LabelContainer {
     private int labelCounter = 0;
     private static LabelContainer instance = null;
 
-    protected LabelContainer() {
+    /**
+     * Creates a label container that only holds the labels "X" and "R".
+     * Labels are only comparable between atoms labelled by the same
+     * container.
+     */
+    public LabelContainer() {
 
         // System.err.println("List Initialized");
         labelMap = new ArrayList<String>();
@@ -52,7 +57,8 @@ public class LabelContainer {
     }
 
     /**
-     * Create ids from atom labels
+     * Returns a shared label container. The compatibility graphs do not use
+     * it, they label their atoms with their own container.
      * @return instance of this object
      */
     @TestMethod("testGetInstance")
@@ -22,7 +22,6 @@
  */
 package org.openscience.cdk.smsd.tools;
 
-import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -196,7 +195,9 @@ import org.openscience.cdk.smsd.helper.BondEnergy;
 public class BondEnergies {
 
     private static Map<Integer, BondEnergy> bondEngergies = null;
-    private static BondEnergies instance = null;
+    // built when the class is initialised and only read afterwards, so
+    // concurrent searches look up energies without taking a lock
+    private static final BondEnergies instance = new BondEnergies();
 
     /**
      * Returns Singleton pattern instance for the Bond Energy class
@@ -204,19 +205,15 @@ public class BondEnergies {
      * @throws CDKException 
      */
     @TestMethod("testGetInstance")
-    public synchronized static BondEnergies getInstance()
+    public static BondEnergies getInstance()
             throws CDKException {
-        if (null == instance) {
-            instance = new BondEnergies();
-        }
-
         return instance;
     }
 
     protected BondEnergies() {
 
         int key = 1;
-        bondEngergies = Collections.synchronizedSortedMap(new TreeMap<Integer, BondEnergy>());
+        bondEngergies = new TreeMap<Integer, BondEnergy>();
 
 //      =========Hydrogen Block==============
         key = setHydrogenBlock(key);
@@ -0,0 +1,146 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.AbstractAtomContainerTest;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.ITestObjectBuilder;
+
+/**
+ * Checks the functionality of the AdjacencyAtomContainer.
+ *
+ * @cdk.module test-data
+ */
+public class AdjacencyAtomContainerTest extends AbstractAtomContainerTest {
+
+    @BeforeClass public static void setUp() {
+        setTestObjectBuilder(
+            new ITestObjectBuilder() {
+                public IChemObject newTestObject() {
+                    return new AdjacencyAtomContainer();
+                }
+            }
+        );
+    }
+
+    @Test public void testAdjacencyAtomContainer() {
+        IAtomContainer container = new AdjacencyAtomContainer();
+        Assert.assertEquals(0, container.getAtomCount());
+        Assert.assertEquals(0, container.getBondCount());
+    }
+
+    @Test public void testAdjacencyAtomContainer_int_int_int_int() {
+        IAtomContainer container = new AdjacencyAtomContainer(5,6,1,2);
+        Assert.assertEquals(0, container.getAtomCount());
+        Assert.assertEquals(0, container.getElectronContainerCount());
+    }
+
+    @Test public void testAdjacencyAtomContainer_IAtomContainer() {
+        IAtomContainer acetone = createAcetone(new AtomContainer());
+        IAtomContainer container = new AdjacencyAtomContainer(acetone);
+        Assert.assertEquals(4, container.getAtomCount());
+        Assert.assertEquals(3, container.getBondCount());
+        Assert.assertEquals(3, container.getConnectedAtomsCount(container.getAtom(0)));
+        Assert.assertEquals(3, container.getAtomNumber(container.getAtom(3)));
+    }
+
+    @Test public void testNeighboursAfterRemoveAtom() {
+        IAtomContainer acetone = createAcetone(new AdjacencyAtomContainer());
+        IAtom c1 = acetone.getAtom(0);
+        IAtom c3 = acetone.getAtom(2);
+        IAtom o = acetone.getAtom(3);
+        acetone.removeAtomAndConnectedElectronContainers(c3);
+        Assert.assertEquals(3, acetone.getAtomCount());
+        Assert.assertEquals(2, acetone.getAtomNumber(o));
+        Assert.assertEquals(-1, acetone.getAtomNumber(c3));
+        Assert.assertEquals(2, acetone.getConnectedAtomsCount(c1));
+        Assert.assertNull(acetone.getBond(c1, c3));
+        Assert.assertEquals(IBond.Order.DOUBLE, acetone.getMaximumBondOrder(c1));
+    }
+
+    @Test public void testNeighboursAfterBondsBeforeAtoms() {
+        IAtomContainer container = new AdjacencyAtomContainer();
+        IAtom c1 = new Atom("C");
+        IAtom c2 = new Atom("C");
+        IBond bond = new Bond(c1, c2);
+        container.addBond(bond);
+        container.addAtom(c1);
+        container.addAtom(c2);
+        Assert.assertEquals(bond, container.getBond(c2, c1));
+        Assert.assertEquals(1, container.getConnectedBondsCount(1));
+    }
+
+    @Test public void testNeighboursAfterBondAtomReplaced() {
+        IAtomContainer acetone = createAcetone(new AdjacencyAtomContainer());
+        IAtom c1 = acetone.getAtom(0);
+        IAtom c2 = acetone.getAtom(1);
+        IAtom o = acetone.getAtom(3);
+        // query once so that the adjacency index is built
+        Assert.assertEquals(1, acetone.getConnectedAtomsCount(c2));
+        IBond bond = acetone.getBond(c1, c2);
+        bond.setAtom(o, 0);
+        Assert.assertEquals(2, acetone.getConnectedAtomsCount(o));
+        Assert.assertEquals(2, acetone.getConnectedAtomsCount(c1));
+        Assert.assertEquals(bond, acetone.getBond(c2, o));
+    }
+
+    @Test public void testNeighbourOrder() {
+        IAtomContainer reference = createAcetone(new AtomContainer());
+        IAtomContainer container = new AdjacencyAtomContainer(reference);
+        container.removeBond(1);
+        reference.removeBond(1);
+        for (IAtom atom : reference.atoms()) {
+            List<IAtom> expected = reference.getConnectedAtomsList(atom);
+            List<IAtom> actual = container.getConnectedAtomsList(atom);
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    @Test public void testClone_Independent() throws Exception {
+        IAtomContainer acetone = createAcetone(new AdjacencyAtomContainer());
+        IAtomContainer clone = (IAtomContainer)acetone.clone();
+        clone.removeAtomAndConnectedElectronContainers(clone.getAtom(2));
+        Assert.assertEquals(3, acetone.getConnectedAtomsCount(acetone.getAtom(0)));
+        Assert.assertEquals(3, acetone.getAtomNumber(acetone.getAtom(3)));
+        Assert.assertEquals(2, clone.getConnectedAtomsCount(clone.getAtom(0)));
+    }
+
+    private IAtomContainer createAcetone(IAtomContainer acetone) {
+        IAtom c1 = acetone.getBuilder().newInstance(IAtom.class,"C");
+        IAtom c2 = acetone.getBuilder().newInstance(IAtom.class,"C");
+        IAtom c3 = acetone.getBuilder().newInstance(IAtom.class,"C");
+        IAtom o = acetone.getBuilder().newInstance(IAtom.class,"O");
+        acetone.addAtom(c1);
+        acetone.addAtom(c2);
+        acetone.addAtom(c3);
+        acetone.addAtom(o);
+        acetone.addBond(acetone.getBuilder().newInstance(IBond.class,c1, c2, IBond.Order.SINGLE));
+        acetone.addBond(acetone.getBuilder().newInstance(IBond.class,c1, o, IBond.Order.DOUBLE));
+        acetone.addBond(acetone.getBuilder().newInstance(IBond.class,c1, c3, IBond.Order.SINGLE));
+        return acetone;
+    }
+}
@@ -1,5 +1,6 @@
 package org.openscience.cdk;
 
+import java.nio.DoubleBuffer;
 import java.util.Iterator;
 import java.util.Random;
 
@@ -333,5 +334,56 @@ public class ConformerContainerTest extends CDKTestCase {
         Assert.assertNotNull(container);
         Assert.assertEquals(1, container.size());
     }
-    
+
+    @Test public void testAddCoordinates_arraydouble_int() {
+        ConformerContainer container = new ConformerContainer(base);
+        double[] coordinates = new double[3 * natom + 1];
+        for (int i = 0; i < natom; i++) {
+            Point3d p = confs[0].getAtom(i).getPoint3d();
+            coordinates[3 * i + 1] = p.x;
+            coordinates[3 * i + 2] = p.y;
+            coordinates[3 * i + 3] = p.z;
+        }
+        container.addCoordinates(coordinates, 1);
+        Assert.assertEquals(2, container.size());
+        Assert.assertEquals(1, container.indexOf(confs[0]));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testAddCoordinates_Empty() {
+        new ConformerContainer().addCoordinates(new double[3 * natom], 0);
+    }
+
+    @Test public void testGetCoordinates_int() {
+        ConformerContainer container = new ConformerContainer(confs);
+        DoubleBuffer coordinates = container.getCoordinates(2);
+        Assert.assertEquals(3 * natom, coordinates.remaining());
+        Assert.assertTrue(coordinates.isReadOnly());
+        for (int i = 0; i < natom; i++) {
+            Point3d p = confs[2].getAtom(i).getPoint3d();
+            Assert.assertEquals(p.x, coordinates.get(3 * i), 0.0);
+            Assert.assertEquals(p.y, coordinates.get(3 * i + 1), 0.0);
+            Assert.assertEquals(p.z, coordinates.get(3 * i + 2), 0.0);
+        }
+    }
+
+    @Test public void testGetPoint3d_int_int() {
+        ConformerContainer container = new ConformerContainer(confs);
+        Point3d expected = confs[3].getAtom(4).getPoint3d();
+        Point3d actual = container.getPoint3d(3, 4);
+        Assert.assertEquals(expected.x, actual.x, 0.0);
+        Assert.assertEquals(expected.y, actual.y, 0.0);
+        Assert.assertEquals(expected.z, actual.z, 0.0);
+    }
+
+    @Test public void testGetRMSD_int_int() {
+        ConformerContainer container = new ConformerContainer(confs);
+        Assert.assertEquals(0.0, container.getRMSD(1, 1), 0.0);
+        double sum = 0.0;
+        for (int i = 0; i < natom; i++) {
+            sum += confs[0].getAtom(i).getPoint3d().distanceSquared(confs[1].getAtom(i).getPoint3d());
+        }
+        Assert.assertEquals(Math.sqrt(sum / natom), container.getRMSD(0, 1), 1e-10);
+        Assert.assertEquals(container.getRMSD(0, 1), container.getRMSD(1, 0), 0.0);
+    }
 }
@@ -0,0 +1,170 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.atomtype;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.PseudoAtom;
+import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.io.iterator.IteratingSDFReader;
+import org.openscience.cdk.templates.MoleculeFactory;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+
+/**
+ * Checks that the {@link CompiledCDKAtomTypeMatcher} perceives the same atom
+ * types as the {@link CDKAtomTypeMatcher}.
+ *
+ * @cdk.module test-core
+ */
+public class CompiledCDKAtomTypeMatcherTest extends CDKTestCase {
+
+    private static final IChemObjectBuilder builder = DefaultChemObjectBuilder.getInstance();
+
+    private void assertSameTypes(IAtomContainer container, int mode) throws Exception {
+        IAtomType[] expected = CDKAtomTypeMatcher.getInstance(builder, mode)
+            .findMatchingAtomType(container);
+        CompiledCDKAtomTypeMatcher matcher = CompiledCDKAtomTypeMatcher.getInstance(builder, mode);
+        IAtomType[] actual = matcher.findMatchingAtomType(container);
+        Assert.assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertSame("atom " + i, expected[i], actual[i]);
+            Assert.assertSame("atom " + i, expected[i],
+                              matcher.findMatchingAtomType(container, container.getAtom(i)));
+        }
+    }
+
+    private void assertSameTypes(IAtomContainer container) throws Exception {
+        assertSameTypes(container, CDKAtomTypeMatcher.REQUIRE_NOTHING);
+        assertSameTypes(container, CDKAtomTypeMatcher.REQUIRE_EXPLICIT_HYDROGENS);
+    }
+
+    @Test public void testGetInstance_IChemObjectBuilder() throws Exception {
+        CompiledCDKAtomTypeMatcher matcher = CompiledCDKAtomTypeMatcher.getInstance(builder);
+        Assert.assertNotNull(matcher);
+        Assert.assertSame(matcher, CompiledCDKAtomTypeMatcher.getInstance(builder));
+    }
+
+    @Test public void testGetInstance_IChemObjectBuilder_int() throws Exception {
+        CompiledCDKAtomTypeMatcher matcher = CompiledCDKAtomTypeMatcher.getInstance(
+            builder, CDKAtomTypeMatcher.REQUIRE_EXPLICIT_HYDROGENS
+        );
+        Assert.assertNotNull(matcher);
+        Assert.assertNotSame(matcher, CompiledCDKAtomTypeMatcher.getInstance(builder));
+    }
+
+    @Test public void testFindMatchingAtomType_IAtomContainer_IAtom() throws Exception {
+        IAtomContainer mol = new AtomContainer();
+        IAtom atom = new Atom("C");
+        atom.setHybridization(IAtomType.Hybridization.SP3);
+        mol.addAtom(atom);
+        IAtomType type = CompiledCDKAtomTypeMatcher.getInstance(builder)
+            .findMatchingAtomType(mol, atom);
+        Assert.assertEquals("C.sp3", type.getAtomTypeName());
+    }
+
+    @Test public void testFindMatchingAtomType_IAtomContainer() throws Exception {
+        IAtomContainer mol = new AtomContainer();
+        mol.addAtom(new Atom("C"));
+        mol.addAtom(new Atom("O"));
+        mol.addAtom(new Atom("O"));
+        mol.getAtom(2).setFormalCharge(-1);
+        mol.addBond(0, 1, IBond.Order.DOUBLE);
+        mol.addBond(0, 2, IBond.Order.SINGLE);
+        IAtomType[] types = CompiledCDKAtomTypeMatcher.getInstance(builder)
+            .findMatchingAtomType(mol);
+        Assert.assertEquals("C.sp2", types[0].getAtomTypeName());
+        Assert.assertEquals("O.sp2.co2", types[1].getAtomTypeName());
+        Assert.assertEquals("O.minus.co2", types[2].getAtomTypeName());
+    }
+
+    @Test public void testUntypedAtom() throws Exception {
+        IAtomContainer mol = new AtomContainer();
+        for (int i = 0; i < 6; i++) mol.addAtom(new Atom("C"));
+        for (int i = 1; i < 6; i++) mol.addBond(0, i, IBond.Order.SINGLE);
+        Assert.assertNull(CompiledCDKAtomTypeMatcher.getInstance(builder)
+            .findMatchingAtomType(mol)[0]);
+        assertSameTypes(mol);
+    }
+
+    @Test public void testOtherElements() throws Exception {
+        IAtomContainer mol = new AtomContainer();
+        mol.addAtom(new Atom("C"));
+        mol.addAtom(new Atom("S"));
+        mol.addAtom(new Atom("Na"));
+        mol.addAtom(new PseudoAtom("R"));
+        mol.addBond(0, 1, IBond.Order.SINGLE);
+        mol.addBond(1, 3, IBond.Order.SINGLE);
+        mol.getAtom(2).setFormalCharge(1);
+        IAtomType[] types = CompiledCDKAtomTypeMatcher.getInstance(builder)
+            .findMatchingAtomType(mol);
+        Assert.assertEquals("S.3", types[1].getAtomTypeName());
+        Assert.assertEquals("Na.plus", types[2].getAtomTypeName());
+        Assert.assertEquals("X", types[3].getAtomTypeName());
+        assertSameTypes(mol);
+    }
+
+    @Test public void testTemplates() throws Exception {
+        IAtomContainer[] molecules = {
+            MoleculeFactory.makeAlphaPinene(), MoleculeFactory.makeIndole(),
+            MoleculeFactory.makePyrrole(), MoleculeFactory.makePyrroleAnion(),
+            MoleculeFactory.makeImidazole(), MoleculeFactory.makeOxazole(),
+            MoleculeFactory.makePyridineOxide(), MoleculeFactory.makeThiazole(),
+            MoleculeFactory.makeAzulene(), MoleculeFactory.makeSteran()
+        };
+        for (IAtomContainer mol : molecules) {
+            assertSameTypes(mol);
+            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(mol);
+            CDKHueckelAromaticityDetector.detectAromaticity(mol);
+            assertSameTypes(mol);
+        }
+    }
+
+    @Test public void testSDFile() throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(
+            "data/mdl/pcoretest1.sdf"
+        );
+        IteratingSDFReader reader = new IteratingSDFReader(new InputStreamReader(ins), builder);
+        int count = 0;
+        while (reader.hasNext()) {
+            IAtomContainer mol = (IAtomContainer)reader.next();
+            assertSameTypes(mol);
+            AtomContainerManipulator.convertImplicitToExplicitHydrogens(mol);
+            assertSameTypes(mol);
+            count++;
+        }
+        reader.close();
+        Assert.assertTrue(count > 0);
+    }
+}
@@ -0,0 +1,87 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.silent.ChemObject;
+
+/**
+ * Checks the functionality of the {@link BinaryAtomTypeConfigurator}.
+ *
+ * @cdk.module test-core
+ */
+public class BinaryAtomTypeConfiguratorTest extends CDKTestCase {
+
+    @Test
+    public void testBinaryAtomTypeConfigurator() {
+        BinaryAtomTypeConfigurator configurator = new BinaryAtomTypeConfigurator();
+        Assert.assertNotNull(configurator);
+    }
+
+    @Test
+    public void testReadAtomTypes_IChemObjectBuilder() throws Exception {
+        AtomTypeFactory factory = AtomTypeFactory.getInstance(
+            this.getClass().getClassLoader().getResourceAsStream(
+                "org/openscience/cdk/dict/data/cdk-atom-types.owl"
+            ), "owl", new ChemObject().getBuilder()
+        );
+        List<IAtomType> expected = Arrays.asList(factory.getAllAtomTypes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryConfigFormat.writeAtomTypes(expected, out);
+
+        BinaryAtomTypeConfigurator configurator = new BinaryAtomTypeConfigurator();
+        configurator.setInputStream(new ByteArrayInputStream(out.toByteArray()));
+        List<IAtomType> atomTypes = configurator.readAtomTypes(new ChemObject().getBuilder());
+        Assert.assertEquals(expected.size(), atomTypes.size());
+        Assert.assertEquals(expected.get(0).getAtomTypeName(), atomTypes.get(0).getAtomTypeName());
+    }
+
+    @Test
+    public void testSetInputStream_InputStream() throws Exception {
+        testReadAtomTypes_IChemObjectBuilder();
+    }
+
+    @Test
+    public void testGetInstance_Binary() throws Exception {
+        AtomTypeFactory factory = AtomTypeFactory.getInstance(
+            this.getClass().getClassLoader().getResourceAsStream(
+                "org/openscience/cdk/config/data/structgen_atomtypes.xml"
+            ), "xml", new ChemObject().getBuilder()
+        );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryConfigFormat.writeAtomTypes(Arrays.asList(factory.getAllAtomTypes()), out);
+        AtomTypeFactory binary = AtomTypeFactory.getInstance(
+            new ByteArrayInputStream(out.toByteArray()), "bin", new ChemObject().getBuilder()
+        );
+        Assert.assertEquals(factory.getSize(), binary.getSize());
+        Assert.assertEquals(factory.getAtomTypes("C").length, binary.getAtomTypes("C").length);
+    }
+}
@@ -0,0 +1,167 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.config.isotopes.IsotopeReader;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IIsotope;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+/**
+ * Checks the functionality of the {@link BinaryConfigFormat}.
+ *
+ * @cdk.module test-core
+ */
+public class BinaryConfigFormatTest extends CDKTestCase {
+
+    private static final IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
+
+    private InputStream open(String resource) {
+        return this.getClass().getClassLoader().getResourceAsStream(resource);
+    }
+
+    private List<IAtomType> readAtomTypes(String resource) {
+        String format = resource.substring(resource.lastIndexOf('.') + 1);
+        AtomTypeFactory factory = AtomTypeFactory.getInstance(open(resource), format, builder);
+        return new ArrayList<IAtomType>(Arrays.asList(factory.getAllAtomTypes()));
+    }
+
+    private void assertSameIsotope(IIsotope expected, IIsotope actual) {
+        Assert.assertEquals(expected.getID(), actual.getID());
+        Assert.assertEquals(expected.getSymbol(), actual.getSymbol());
+        Assert.assertEquals(expected.getAtomicNumber(), actual.getAtomicNumber());
+        Assert.assertEquals(expected.getExactMass(), actual.getExactMass());
+        Assert.assertEquals(expected.getNaturalAbundance(), actual.getNaturalAbundance());
+        Assert.assertEquals(expected.getMassNumber(), actual.getMassNumber());
+        Assert.assertTrue(Arrays.equals(expected.getFlags(), actual.getFlags()));
+        Assert.assertEquals(expected.getProperties(), actual.getProperties());
+    }
+
+    private void assertSameAtomType(IAtomType expected, IAtomType actual) {
+        assertSameIsotope(expected, actual);
+        Assert.assertEquals(expected.getAtomTypeName(), actual.getAtomTypeName());
+        Assert.assertEquals(expected.getMaxBondOrder(), actual.getMaxBondOrder());
+        Assert.assertEquals(expected.getBondOrderSum(), actual.getBondOrderSum());
+        Assert.assertEquals(expected.getFormalCharge(), actual.getFormalCharge());
+        Assert.assertEquals(expected.getFormalNeighbourCount(), actual.getFormalNeighbourCount());
+        Assert.assertEquals(expected.getHybridization(), actual.getHybridization());
+        Assert.assertEquals(expected.getCovalentRadius(), actual.getCovalentRadius());
+        Assert.assertEquals(expected.getValency(), actual.getValency());
+    }
+
+    private void assertRoundTrip(List<IAtomType> expected) throws Exception {
+        Assert.assertNotSame(0, expected.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryConfigFormat.writeAtomTypes(expected, out);
+        List<IAtomType> actual = BinaryConfigFormat.readAtomTypes(
+            new ByteArrayInputStream(out.toByteArray()), builder
+        );
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameAtomType(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test public void testAtomTypes() throws Exception {
+        assertRoundTrip(readAtomTypes("org/openscience/cdk/dict/data/cdk-atom-types.owl"));
+        assertRoundTrip(readAtomTypes("org/openscience/cdk/config/data/structgen_atomtypes.xml"));
+        assertRoundTrip(readAtomTypes("org/openscience/cdk/config/data/mm2_atomtypes.xml"));
+        assertRoundTrip(readAtomTypes("org/openscience/cdk/config/data/mmff94_atomtypes.xml"));
+    }
+
+    /**
+     * The jmol list has colors as properties.
+     */
+    @Test public void testAtomTypes_Colors() throws Exception {
+        List<IAtomType> atomTypes = readAtomTypes("org/openscience/cdk/config/data/jmol_atomtypes.txt");
+        Assert.assertNotNull(atomTypes.get(0).getProperty("org.openscience.cdk.renderer.color"));
+        assertRoundTrip(atomTypes);
+    }
+
+    @Test public void testIsotopes() throws Exception {
+        List<IIsotope> expected = new IsotopeReader(
+            open("org/openscience/cdk/config/data/isotopes.xml"), builder
+        ).readIsotopes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryConfigFormat.writeIsotopes(expected, out);
+        List<IIsotope> actual = BinaryConfigFormat.readIsotopes(
+            new ByteArrayInputStream(out.toByteArray()), builder
+        );
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameIsotope(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadIsotopes_AtomTypes() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryConfigFormat.writeAtomTypes(
+            readAtomTypes("org/openscience/cdk/config/data/structgen_atomtypes.xml"), out
+        );
+        BinaryConfigFormat.readIsotopes(new ByteArrayInputStream(out.toByteArray()), builder);
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadAtomTypes_XML() throws Exception {
+        BinaryConfigFormat.readAtomTypes(
+            open("org/openscience/cdk/config/data/structgen_atomtypes.xml"), builder
+        );
+    }
+
+    @Test public void testMain() throws Exception {
+        File directory = File.createTempFile("cdk", "bin");
+        Assert.assertTrue(directory.delete());
+        String atomTypeList = "org/openscience/cdk/config/data/structgen_atomtypes.xml";
+        String isotopeList = "org/openscience/cdk/config/data/isotopes.xml";
+        BinaryConfigFormat.main(new String[]{directory.getPath(), atomTypeList, isotopeList});
+
+        File file = new File(directory, atomTypeList + BinaryConfigFormat.EXTENSION);
+        InputStream ins = new FileInputStream(file);
+        List<IAtomType> atomTypes = BinaryConfigFormat.readAtomTypes(ins, builder);
+        ins.close();
+        Assert.assertEquals(readAtomTypes(atomTypeList).size(), atomTypes.size());
+        Assert.assertTrue(file.delete());
+
+        file = new File(directory, isotopeList + BinaryConfigFormat.EXTENSION);
+        ins = new FileInputStream(file);
+        Assert.assertEquals(IsotopeFactory.getInstance(builder).getSize(),
+                            BinaryConfigFormat.readIsotopes(ins, builder).size());
+        ins.close();
+        Assert.assertTrue(file.delete());
+    }
+}
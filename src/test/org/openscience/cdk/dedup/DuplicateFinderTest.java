@@ -0,0 +1,131 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.dedup;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.iterator.IteratingSDFReader;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-smiles
+ */
+public class DuplicateFinderTest extends CDKTestCase {
+
+    private static final SmilesParser parser =
+        new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    private static List<IAtomContainer> parse(String... smiles) throws Exception {
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        for (String s : smiles) molecules.add(parser.parseSmiles(s));
+        return molecules;
+    }
+
+    @Test public void testCanonicalSmiles() throws Exception {
+        DuplicateFinder.KeyGenerator generator = DuplicateFinder.canonicalSmiles();
+        Assert.assertEquals(generator.getKey(parser.parseSmiles("OCC")),
+                            generator.getKey(parser.parseSmiles("C(O)C")));
+        Assert.assertFalse(generator.getKey(parser.parseSmiles("OCC")).equals(
+                           generator.getKey(parser.parseSmiles("COC"))));
+    }
+
+    @Test public void testAdd() throws Exception {
+        DuplicateFinder finder = new DuplicateFinder(DuplicateFinder.canonicalSmiles());
+        List<IAtomContainer> molecules = parse("CCO", "COC", "OCC", "C1CCCCC1", "C(O)C", "C(CC1)CCC1");
+        long[] expected = {-1, -1, 0, -1, 0, 3};
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], finder.add(molecules.get(i)));
+        }
+        Assert.assertEquals(6, finder.getCount());
+        Assert.assertEquals(3, finder.getUniqueCount());
+        Assert.assertEquals(3, finder.getDuplicateCount());
+        finder.close();
+    }
+
+    @Test public void testAddKey() throws Exception {
+        DuplicateFinder finder = new DuplicateFinder(DuplicateFinder.canonicalSmiles());
+        Assert.assertEquals(-1, finder.addKey("XLYOFNOQVPJJNP-UHFFFAOYSA-N"));
+        Assert.assertEquals(-1, finder.addKey("LFQSCWFLJHTTHZ-UHFFFAOYSA-N"));
+        Assert.assertEquals(0, finder.addKey("XLYOFNOQVPJJNP-UHFFFAOYSA-N"));
+        Assert.assertEquals(-1, finder.add(parser.parseSmiles("C")));
+        Assert.assertEquals(4, finder.getCount());
+        finder.close();
+    }
+
+    @Test public void testFindDuplicates() throws Exception {
+        DuplicateFinder finder = new DuplicateFinder(new DuplicateFinder.KeyGenerator() {
+            public String getKey(IAtomContainer molecule) throws CDKException {
+                if (molecule.getAtomCount() > 3) throw new CDKException("Too large");
+                return DuplicateFinder.canonicalSmiles().getKey(molecule);
+            }
+        });
+        List<IAtomContainer> molecules = parse("CCO", "CCCC", "OCC", "CC", "C(C)O", "CCCC", "CC");
+        Map<Long,List<Long>> expected = new HashMap<Long,List<Long>>();
+        expected.put(0L, Arrays.asList(2L, 4L));
+        expected.put(3L, Arrays.asList(6L));
+        Assert.assertEquals(expected, finder.findDuplicates(molecules.iterator()));
+        Assert.assertEquals(7, finder.getCount());
+        Assert.assertEquals(2, finder.getUniqueCount());
+        finder.close();
+    }
+
+    @Test public void testFindDuplicates_SDF() throws Exception {
+        String filename = "data/mdl/test2.sdf";
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(filename);
+        IteratingSDFReader reader = new IteratingSDFReader(
+            new InputStreamReader(ins), DefaultChemObjectBuilder.getInstance()
+        );
+        DuplicateFinder finder = new DuplicateFinder(DuplicateFinder.canonicalSmiles());
+        Map<Long,List<Long>> duplicates = finder.findDuplicates(reader);
+        reader.close();
+        Assert.assertEquals(6, finder.getCount());
+        Assert.assertEquals(finder.getDuplicateCount(), finder.getCount() - finder.getUniqueCount());
+        Assert.assertEquals(0, duplicates.size());
+        finder.close();
+    }
+
+    @Test public void testSpillDirectory() throws Exception {
+        File directory = File.createTempFile("cdk", "spill");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+        DuplicateFinder finder = new DuplicateFinder(DuplicateFinder.canonicalSmiles(), directory);
+        Assert.assertEquals(-1, finder.add(parser.parseSmiles("CCN")));
+        Assert.assertEquals(0, finder.add(parser.parseSmiles("NCC")));
+        finder.close();
+        Assert.assertEquals(0, directory.list().length);
+        Assert.assertTrue(directory.delete());
+    }
+}
@@ -0,0 +1,95 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.dedup;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+
+/**
+ * @cdk.module test-smiles
+ */
+public class OffHeapHashTableTest extends CDKTestCase {
+
+    @Test public void testPutIfAbsent() {
+        OffHeapHashTable table = new OffHeapHashTable(0);
+        Assert.assertEquals(-1, table.get(1, 2));
+        Assert.assertEquals(-1, table.putIfAbsent(1, 2, 0));
+        Assert.assertEquals(-1, table.putIfAbsent(1, 3, 7));
+        Assert.assertEquals(-1, table.putIfAbsent(Long.MIN_VALUE, 2, 8));
+        Assert.assertEquals(0, table.putIfAbsent(1, 2, 9));
+        Assert.assertEquals(0, table.get(1, 2));
+        Assert.assertEquals(7, table.get(1, 3));
+        Assert.assertEquals(8, table.get(Long.MIN_VALUE, 2));
+        Assert.assertEquals(3, table.size());
+        table.close();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPutIfAbsent_NegativeValue() {
+        new OffHeapHashTable(0).putIfAbsent(1, 2, -1);
+    }
+
+    /**
+     * Adds enough entries to make the segments grow several times.
+     */
+    @Test public void testGrow() {
+        OffHeapHashTable table = new OffHeapHashTable(0);
+        Random random = new Random(42);
+        int n = 100000;
+        long[] highs = new long[n];
+        long[] lows = new long[n];
+        for (int i = 0; i < n; i++) {
+            highs[i] = random.nextLong();
+            lows[i] = random.nextLong();
+            Assert.assertEquals(-1, table.putIfAbsent(highs[i], lows[i], i));
+        }
+        Assert.assertEquals(n, table.size());
+        for (int i = 0; i < n; i++) {
+            Assert.assertEquals(i, table.get(highs[i], lows[i]));
+            Assert.assertEquals(i, table.putIfAbsent(highs[i], lows[i], n));
+        }
+        Assert.assertEquals(n, table.size());
+        table.close();
+    }
+
+    @Test public void testSpillDirectory() throws Exception {
+        File directory = File.createTempFile("cdk", "spill");
+        Assert.assertTrue(directory.delete());
+        Assert.assertTrue(directory.mkdir());
+        OffHeapHashTable table = new OffHeapHashTable(0, directory);
+        Assert.assertTrue(directory.list().length > 0);
+        for (int i = 0; i < 50000; i++) {
+            Assert.assertEquals(-1, table.putIfAbsent(i * 0x9E3779B97F4A7C15L, i, i));
+        }
+        for (int i = 0; i < 50000; i++) {
+            Assert.assertEquals(i, table.get(i * 0x9E3779B97F4A7C15L, i));
+        }
+        table.close();
+        Assert.assertEquals(0, directory.list().length);
+        Assert.assertTrue(directory.delete());
+    }
+}
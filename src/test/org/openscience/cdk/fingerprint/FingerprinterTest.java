@@ -92,6 +92,19 @@ public class FingerprinterTest extends AbstractFixedLengthFingerprinterTest {
 		Assert.assertEquals(fingerprinter.getSize(), bs.size());
 	}
 
+	@Test public void testGetBitPosition_int_int() throws java.lang.Exception {
+		Fingerprinter fingerprinter = new Fingerprinter();
+		Fingerprinter fast = new Fingerprinter(1024, 8, false);
+		int[] hashes = {0, 1, -1, 42, "C-C=O".hashCode(), Integer.MIN_VALUE, Integer.MAX_VALUE};
+		for (int hash : hashes) {
+			// the compatible mapping is the one of earlier CDK versions
+			Assert.assertEquals(new java.util.Random(hash).nextInt(1024),
+			                    fingerprinter.getBitPosition(hash, 1024));
+			int position = fast.getBitPosition(hash, 1024);
+			Assert.assertTrue(position >= 0 && position < 1024);
+		}
+	}
+
 	@Test public void testFingerprinter() throws java.lang.Exception
 	{
 		Fingerprinter fingerprinter = new Fingerprinter();
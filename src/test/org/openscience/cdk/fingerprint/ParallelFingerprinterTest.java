@@ -0,0 +1,131 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fingerprint;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-standard
+ */
+public class ParallelFingerprinterTest extends CDKTestCase {
+
+    private static List<IAtomContainer> makeMolecules() {
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 10; i++) {
+            molecules.add(MoleculeFactory.makeIndole());
+            molecules.add(MoleculeFactory.makePyrrole());
+            molecules.add(MoleculeFactory.makeAlkane(i + 1));
+            molecules.add(MoleculeFactory.makeBenzene());
+        }
+        return molecules;
+    }
+
+    @Test public void testFingerprint_Iterator() throws Exception {
+        List<IAtomContainer> molecules = makeMolecules();
+        List<BitSet> expected = new ArrayList<BitSet>();
+        Fingerprinter fingerprinter = new Fingerprinter();
+        for (IAtomContainer molecule : makeMolecules())
+            expected.add(fingerprinter.getFingerprint(molecule));
+
+        ParallelFingerprinter service = new ParallelFingerprinter(Fingerprinter.class, 3);
+        Iterator<ParallelFingerprinter.Result> results = service.fingerprint(molecules.iterator());
+        int count = 0;
+        while (results.hasNext()) {
+            ParallelFingerprinter.Result result = results.next();
+            Assert.assertEquals(count, result.getIndex());
+            Assert.assertNull(result.getException());
+            Assert.assertEquals(expected.get(count), result.getFingerprint());
+            count++;
+        }
+        Assert.assertEquals(molecules.size(), count);
+        service.shutdown();
+    }
+
+    @Test public void testFingerprint_Factory() throws Exception {
+        ParallelFingerprinter service = new ParallelFingerprinter(
+            new ParallelFingerprinter.FingerprinterFactory() {
+                public IFingerprinter newFingerprinter() {
+                    return new Fingerprinter(512, 6);
+                }
+            }, 2, 1
+        );
+        Iterator<ParallelFingerprinter.Result> results = service.fingerprint(makeMolecules().iterator());
+        Assert.assertTrue(results.hasNext());
+        BitSet fingerprint = results.next().getFingerprint();
+        Assert.assertEquals(new Fingerprinter(512, 6).getFingerprint(MoleculeFactory.makeIndole()),
+                            fingerprint);
+        service.shutdown();
+    }
+
+    @Test public void testFingerprint_Exception() throws Exception {
+        ParallelFingerprinter service = new ParallelFingerprinter(
+            new ParallelFingerprinter.FingerprinterFactory() {
+                public IFingerprinter newFingerprinter() {
+                    return new IFingerprinter() {
+                        public BitSet getFingerprint(IAtomContainer container) throws CDKException {
+                            if (container.getAtomCount() == 6)
+                                throw new CDKException("six atoms");
+                            return new BitSet();
+                        }
+                        public Map<String, Integer> getRawFingerprint(IAtomContainer container) {
+                            throw new UnsupportedOperationException();
+                        }
+                        public int getSize() {
+                            return 0;
+                        }
+                    };
+                }
+            }, 2
+        );
+        Iterator<ParallelFingerprinter.Result> results = service.fingerprint(makeMolecules().iterator());
+        int failures = 0;
+        while (results.hasNext()) {
+            ParallelFingerprinter.Result result = results.next();
+            if (result.getException() != null) {
+                Assert.assertNull(result.getFingerprint());
+                failures++;
+            }
+        }
+        // ten benzenes and one hexane
+        Assert.assertEquals(11, failures);
+        service.shutdown();
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testShutdown() {
+        ParallelFingerprinter service = new ParallelFingerprinter(Fingerprinter.class, 1);
+        service.shutdown();
+        service.fingerprint(makeMolecules().iterator());
+    }
+}
@@ -0,0 +1,166 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fingerprint;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.graph.AtomContainerAtomPermutor;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-standard
+ */
+public class PathHasherTest extends CDKTestCase {
+
+    @Test public void testIsCompatible() {
+        Assert.assertTrue(new PathHasher().isCompatible());
+        Assert.assertTrue(new PathHasher(true).isCompatible());
+        Assert.assertFalse(new PathHasher(false).isCompatible());
+    }
+
+    @Test public void testGetBitPosition() {
+        PathHasher hasher = new PathHasher();
+        Random random = new Random(42);
+        int[] sizes = {1, 7, 64, 999, 1024, 1024 - 25, 881, Integer.MAX_VALUE};
+        for (int i = 0; i < 10000; i++) {
+            int hash = random.nextInt();
+            for (int size : sizes) {
+                Assert.assertEquals(new Random(hash).nextInt(size),
+                                    hasher.getBitPosition(hash, size));
+            }
+        }
+    }
+
+    @Test public void testGetBitPosition_Range() {
+        PathHasher hasher = new PathHasher(false);
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            int position = hasher.getBitPosition(random.nextInt(), 1021);
+            Assert.assertTrue(position >= 0 && position < 1021);
+        }
+    }
+
+    /**
+     * Propylamine, C-C-C-N, gives the path strings of the Fingerprinter,
+     * where each path and its reverse are stored as the lexicographically
+     * higher one.
+     */
+    @Test public void testFindPathHashes_Compatible() {
+        IAtomContainer pamine = makePropylAmine();
+        int[] hashes = new PathHasher().findPathHashes(pamine, 8, bondSymbols(pamine));
+        String[] paths = {"C", "N", "C-C", "N-C", "C-C-C", "N-C-C", "N-C-C-C"};
+        Set<Integer> expected = new HashSet<Integer>();
+        for (String path : paths) expected.add(path.hashCode());
+        Assert.assertEquals(expected, toSet(hashes));
+    }
+
+    @Test public void testFindPathHashes_SearchDepth() {
+        IAtomContainer pamine = makePropylAmine();
+        int[] hashes = new PathHasher().findPathHashes(pamine, 1, bondSymbols(pamine));
+        Set<Integer> expected = new HashSet<Integer>();
+        for (String path : new String[]{"C", "N", "C-C", "N-C"})
+            expected.add(path.hashCode());
+        Assert.assertEquals(expected, toSet(hashes));
+    }
+
+    @Test public void testFindPathHashes_Reverse() throws Exception {
+        IAtomContainer indole = MoleculeFactory.makeIndole();
+        PathHasher hasher = new PathHasher(false);
+        Set<Integer> expected = toSet(hasher.findPathHashes(indole, 8, bondSymbols(indole)));
+        AtomContainerAtomPermutor permutor = new AtomContainerAtomPermutor(indole);
+        for (int i = 0; i < 10 && permutor.hasNext(); i++) {
+            IAtomContainer permutation = (IAtomContainer)permutor.next();
+            Assert.assertEquals(expected,
+                toSet(hasher.findPathHashes(permutation, 8, bondSymbols(permutation))));
+        }
+    }
+
+    @Test public void testFindPathHashes_Distinguishes() {
+        IAtomContainer pamine = makePropylAmine();
+        IAtomContainer butane = makePropylAmine();
+        butane.getAtom(3).setSymbol("C");
+        PathHasher hasher = new PathHasher(false);
+        Set<Integer> amineHashes = toSet(hasher.findPathHashes(pamine, 8, bondSymbols(pamine)));
+        Set<Integer> butaneHashes = toSet(hasher.findPathHashes(butane, 8, bondSymbols(butane)));
+        Assert.assertEquals(7, amineHashes.size());
+        Assert.assertEquals(4, butaneHashes.size());
+        Assert.assertFalse(amineHashes.containsAll(butaneHashes));
+    }
+
+    @Test public void testFindPathHashes_Codes() {
+        IAtomContainer pamine = makePropylAmine();
+        PathHasher hasher = new PathHasher();
+        int[] bondCodes = new int[pamine.getBondCount()];
+        Set<Integer> all = toSet(hasher.findPathHashes(pamine, 8, new int[]{6, 6, 6, 7}, bondCodes));
+        Assert.assertEquals(7, all.size());
+        Assert.assertEquals(all, toSet(new PathHasher(false).findPathHashes(
+            pamine, 8, new int[]{6, 6, 6, 7}, bondCodes)));
+        // leaving out the middle carbon leaves C, N and C-N
+        Set<Integer> split = toSet(hasher.findPathHashes(pamine, 8, new int[]{6, -1, 6, 7}, bondCodes));
+        Assert.assertEquals(3, split.size());
+        Assert.assertTrue(all.containsAll(split));
+    }
+
+    @Test public void testFingerprinter_NotCompatible() throws Exception {
+        Fingerprinter fingerprinter = new Fingerprinter(1024, 8, false);
+        BitSet bs = fingerprinter.getFingerprint(MoleculeFactory.makeIndole());
+        BitSet bs1 = fingerprinter.getFingerprint(MoleculeFactory.makePyrrole());
+        Assert.assertTrue(FingerprinterTool.isSubset(bs, bs1));
+        Assert.assertFalse(FingerprinterTool.isSubset(bs1, bs));
+    }
+
+    private static Set<Integer> toSet(int[] hashes) {
+        Set<Integer> set = new HashSet<Integer>();
+        for (int hash : hashes) set.add(hash);
+        Assert.assertEquals("hashes are not unique: " + Arrays.toString(hashes),
+                            hashes.length, set.size());
+        return set;
+    }
+
+    private static String[] bondSymbols(IAtomContainer container) {
+        Fingerprinter fingerprinter = new Fingerprinter();
+        String[] symbols = new String[container.getBondCount()];
+        for (int i = 0; i < symbols.length; i++)
+            symbols[i] = fingerprinter.getBondSymbol(container.getBond(i));
+        return symbols;
+    }
+
+    private static IAtomContainer makePropylAmine() {
+        IAtomContainer mol = MoleculeFactory.makeAlkane(3);
+        IAtom n = mol.getBuilder().newInstance(IAtom.class, "N");
+        mol.addAtom(n);
+        mol.addBond(mol.getBuilder().newInstance(IBond.class,
+            mol.getAtom(2), n, IBond.Order.SINGLE));
+        return mol;
+    }
+}
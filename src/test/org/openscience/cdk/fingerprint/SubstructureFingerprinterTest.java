@@ -30,6 +30,8 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.smiles.SmilesParser;
 
 import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @cdk.module test-fingerprint
@@ -106,5 +108,22 @@ public class SubstructureFingerprinterTest extends AbstractFixedLengthFingerprin
     	SubstructureFingerprinter printer = new SubstructureFingerprinter(smarts);
     	Assert.assertEquals(printer.getSubstructure(1), smarts[1]);
     }
-}
 
+    @Test
+    public void testSetExecutor() throws Exception {
+        SubstructureFingerprinter serial = new KlekotaRothFingerprinter();
+        SubstructureFingerprinter parallel = new KlekotaRothFingerprinter();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            parallel.setExecutor(executor);
+            SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+            for (String smiles : new String[]{"c1ccccc1CCC", "OC(=O)C(N)Cc1c[nH]c2ccccc12", "CC(=O)OC(=O)C"}) {
+                BitSet fp = serial.getFingerprint(sp.parseSmiles(smiles));
+                Assert.assertFalse(fp.isEmpty());
+                Assert.assertEquals(fp, parallel.getFingerprint(sp.parseSmiles(smiles)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fragment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-fragment
+ */
+public class FragmentFrequencyCounterTest extends CDKTestCase {
+
+    @Test
+    public void testCount() throws Exception {
+        SmilesParser smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 20; i++) {
+            molecules.add(smilesParser.parseSmiles("c1ccccc1Cc1ccccc1"));
+            molecules.add(smilesParser.parseSmiles("C1CCCCC1CC"));
+        }
+        FragmentFrequencyCounter counter = new FragmentFrequencyCounter(3, 6, 2);
+        counter.count(molecules.iterator());
+        counter.shutdown();
+
+        Assert.assertEquals(40, counter.getMoleculeCount());
+        Assert.assertEquals(0, counter.getFailureCount());
+        Assert.assertEquals(20, counter.getFrequency("c1ccccc1"));
+        Assert.assertEquals(20, counter.getFrequency("Cc1ccccc1"));
+        Assert.assertEquals(20, counter.getFrequency("C1CCCCC1"));
+        Assert.assertEquals(0, counter.getFrequency("CCC"));
+        Map<String, Integer> frequencies = counter.getFrequencies();
+        Assert.assertEquals(3, frequencies.size());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testShutdown() throws Exception {
+        FragmentFrequencyCounter counter = new FragmentFrequencyCounter(1);
+        counter.shutdown();
+        counter.count(new ArrayList<IAtomContainer>().iterator());
+    }
+}
@@ -0,0 +1,166 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.fragment;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.graph.AtomContainerAtomPermutor;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-fragment
+ */
+public class HashedExhaustiveFragmenterTest extends CDKTestCase {
+
+    static SmilesParser smilesParser;
+
+    @BeforeClass
+    public static void setup() {
+        smilesParser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+    }
+
+    private String[] sorted(String[] fragments) {
+        String[] copy = fragments.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    public void testSameAsExhaustiveFragmenter() throws Exception {
+        String[] smiles = {
+            "CCC",
+            "C1CCCC1",
+            "C1CCCCC1CC",
+            "c1ccccc1CC",
+            "c1ccccc1Cc1ccccc1",
+            "c1ccccc1c1ccccc1",
+            "C1(c2ccccc2)(CC(CC1)CCc1ccccc1)CC1C=CC=C1",
+            "CC(C)Cc1ccc(cc1)C(C)C(=O)O",
+            "CN1C(=O)N(C)c2ncn(C)c2C1=O",
+            "O=C(Nc1ccccc1)C(CCN2CCCCC2)c3ccccc3",
+            "c1ccc(cc1)CCCCc1ccc(cc1)OCCN1CCOCC1"
+        };
+        ExhaustiveFragmenter exhaustive = new ExhaustiveFragmenter();
+        HashedExhaustiveFragmenter hashed = new HashedExhaustiveFragmenter();
+        for (String input : smiles) {
+            exhaustive.generateFragments(smilesParser.parseSmiles(input));
+            hashed.generateFragments(smilesParser.parseSmiles(input));
+            Assert.assertArrayEquals(input,
+                                     sorted(exhaustive.getFragments()),
+                                     sorted(hashed.getFragments()));
+        }
+    }
+
+    /**
+     * Below the default minimum size small fragments, such as the acetyl
+     * group, must get the same SMILES as from the {@link ExhaustiveFragmenter}.
+     */
+    @Test
+    public void testSameAsExhaustiveFragmenter_SmallFragments() throws Exception {
+        String input = "CC(=O)Oc1ccccc1C(=O)NC1N=CC(=[S]1)[N+](=O)[O-]";
+        for (int minSize = 3; minSize < 6; minSize++) {
+            ExhaustiveFragmenter exhaustive = new ExhaustiveFragmenter(minSize);
+            HashedExhaustiveFragmenter hashed = new HashedExhaustiveFragmenter(minSize);
+            exhaustive.generateFragments(smilesParser.parseSmiles(input));
+            hashed.generateFragments(smilesParser.parseSmiles(input));
+            Assert.assertArrayEquals(input + " " + minSize,
+                                     sorted(exhaustive.getFragments()),
+                                     sorted(hashed.getFragments()));
+        }
+    }
+
+    /**
+     * The hash of a set of atoms must not depend on the order of the atoms.
+     */
+    @Test
+    public void testHash_arraylong_int() throws Exception {
+        IAtomContainer mol = smilesParser.parseSmiles("CC(C)Cc1ccc(cc1)C(C)C(=O)O");
+        long[] all = {(1L << mol.getAtomCount()) - 1};
+        HashedExhaustiveFragmenter fragmenter = new HashedExhaustiveFragmenter();
+        fragmenter.generateFragments(mol);
+        long hash = fragmenter.hash(all, mol.getAtomCount());
+
+        AtomContainerAtomPermutor permutor = new AtomContainerAtomPermutor(mol);
+        for (int i = 0; i < 5 && permutor.hasNext(); i++) {
+            fragmenter.generateFragments(permutor.next());
+            Assert.assertEquals(hash, fragmenter.hash(all, mol.getAtomCount()));
+        }
+
+        fragmenter.generateFragments(smilesParser.parseSmiles("CCCCc1ccc(cc1)C(C)C(=O)O"));
+        Assert.assertTrue(hash != fragmenter.hash(all, mol.getAtomCount()));
+    }
+
+    /**
+     * Fragments with the same hash must only be merged if they are the same.
+     */
+    @Test
+    public void testHashCollisions() throws Exception {
+        ExhaustiveFragmenter exhaustive = new ExhaustiveFragmenter();
+        HashedExhaustiveFragmenter colliding = new HashedExhaustiveFragmenter() {
+            long hash(long[] atoms, int size) {
+                return 0;
+            }
+        };
+        for (String input : new String[]{"C1(c2ccccc2)(CC(CC1)CCc1ccccc1)CC1C=CC=C1",
+                                         "O=C(Nc1ccccc1)C(CCN2CCCCC2)c3ccccc3"}) {
+            exhaustive.generateFragments(smilesParser.parseSmiles(input));
+            colliding.generateFragments(smilesParser.parseSmiles(input));
+            Assert.assertArrayEquals(input,
+                                     sorted(exhaustive.getFragments()),
+                                     sorted(colliding.getFragments()));
+        }
+    }
+
+    @Test
+    public void testGetFragmentsAsContainers() throws Exception {
+        HashedExhaustiveFragmenter fragmenter = new HashedExhaustiveFragmenter();
+        fragmenter.generateFragments(smilesParser.parseSmiles("C1(c2ccccc2)(CC(CC1)CCc1ccccc1)CC1C=CC=C1"));
+        Assert.assertEquals(26, fragmenter.getFragments().length);
+        IAtomContainer[] containers = fragmenter.getFragmentsAsContainers();
+        Assert.assertEquals(26, containers.length);
+        for (IAtomContainer container : containers)
+            Assert.assertTrue(container.getAtomCount() >= 6);
+    }
+
+    @Test
+    public void testMinSize() throws Exception {
+        IAtomContainer mol = smilesParser.parseSmiles("C1CCCC1C2CCCCC2");
+        HashedExhaustiveFragmenter fragmenter = new HashedExhaustiveFragmenter(5);
+        fragmenter.setMinimumFragmentSize(6);
+        fragmenter.generateFragments(mol);
+        String[] frags = fragmenter.getFragments();
+        Assert.assertEquals(1, frags.length);
+        Assert.assertEquals("C1CCCCC1", frags[0]);
+
+        fragmenter.setMinimumFragmentSize(5);
+        fragmenter.generateFragments(mol);
+        Assert.assertArrayEquals(new String[]{"C1CCCC1", "C1CCCCC1"},
+                                 sorted(fragmenter.getFragments()));
+    }
+}
@@ -35,6 +35,7 @@ import org.openscience.cdk.ChemFile;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
 import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IPseudoAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IAtomType;
 import org.openscience.cdk.interfaces.IBond;
@@ -43,6 +44,7 @@ import org.openscience.cdk.io.CMLReader;
 import org.openscience.cdk.io.CMLWriter;
 import org.openscience.cdk.io.IChemObjectReader.Mode;
 import org.openscience.cdk.io.MDLReader;
+import org.openscience.cdk.io.MDLV2000Reader;
 import org.openscience.cdk.smiles.InvPair;
 import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.tools.CDKHydrogenAdder;
@@ -184,4 +186,39 @@ public class CanonicalLabelerTest extends CDKTestCase {
         Assert.assertSame(ac.getAtom(0).getProperty(InvPair.CANONICAL_LABEL),ac2.getAtom(1).getProperty(InvPair.CANONICAL_LABEL));
         Assert.assertSame(ac.getAtom(1).getProperty(InvPair.CANONICAL_LABEL),ac2.getAtom(0).getProperty(InvPair.CANONICAL_LABEL));
     }
+
+    /**
+     * Prime products of large molecules do not fit in an int, and must
+     * still be ordered correctly.
+     */
+    @Test
+    public void testCanonLabel_LargeInvariants() throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream("data/mdl/cpsa-uncharged.sdf");
+        MDLV2000Reader reader = new MDLV2000Reader(ins);
+        IAtomContainer molecule = reader.read(new AtomContainer());
+        labeler.canonLabel(molecule);
+        assertLabelsArePermutation(molecule);
+    }
+
+    @Test
+    public void testCanonLabel_PseudoAtom() throws Exception {
+        IAtomContainer ac = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
+        ac.addAtom(ac.getBuilder().newInstance(IPseudoAtom.class,"R"));
+        ac.addAtom(ac.getBuilder().newInstance(IAtom.class,"C"));
+        ac.addAtom(ac.getBuilder().newInstance(IAtom.class,"O"));
+        ac.addBond(0,1,IBond.Order.SINGLE);
+        ac.addBond(1,2,IBond.Order.SINGLE);
+        labeler.canonLabel(ac);
+        assertLabelsArePermutation(ac);
+    }
+
+    private void assertLabelsArePermutation(IAtomContainer molecule) {
+        boolean[] seen = new boolean[molecule.getAtomCount() + 1];
+        for (IAtom atom : molecule.atoms()) {
+            int label = ((Long)atom.getProperty(InvPair.CANONICAL_LABEL)).intValue();
+            Assert.assertTrue(label >= 1 && label <= molecule.getAtomCount());
+            Assert.assertFalse(seen[label]);
+            seen[label] = true;
+        }
+    }
 }
@@ -993,4 +993,65 @@ public class MDLV2000ReaderTest extends SimpleChemObjectReaderTest {
         
     }
     
+    /**
+     * The fixed column fields are parsed without creating strings; check they
+     * give exactly the values <code>Double.parseDouble</code> and
+     * <code>Integer.parseInt</code> give.
+     */
+    @Test public void testFieldParsing() throws Exception {
+        String mdl =
+                "fields.mol\n" +
+                "\n" +
+                "\n" +
+                "  3  2  0  0  0                 1 V2000\n" +
+                "   -0.0000    0.1000 1234.5678 C   0  0  0  0  0  0  0  0  0  0  0  0\n" +
+                "1.23456789    -7.000   +0.3333 N   0  5  0  0  0  0  0  0  0  0  0  0\n" +
+                "     1.5E1       .25        3. O   2  0  0  0  0  0  0  0  0  0  0  0\n" +
+                "  1  2  2  0  0  0\n" +
+                "  2  3  1  1\n" +
+                "M  CHG  2   1  -1   3   1\n" +
+                "M  RAD  1   2   2\n" +
+                "M  END\n";
+        MDLV2000Reader reader = new MDLV2000Reader(new StringReader(mdl));
+        IAtomContainer molecule = reader.read(new AtomContainer());
+        reader.close();
+        Assert.assertEquals(3, molecule.getAtomCount());
+        Assert.assertEquals(Double.parseDouble("-0.0000"), molecule.getAtom(0).getPoint3d().x, 0.0);
+        Assert.assertEquals(Double.parseDouble("0.1000"), molecule.getAtom(0).getPoint3d().y, 0.0);
+        Assert.assertEquals(Double.parseDouble("1234.5678"), molecule.getAtom(0).getPoint3d().z, 0.0);
+        Assert.assertEquals(Double.parseDouble("1.23456789"), molecule.getAtom(1).getPoint3d().x, 0.0);
+        Assert.assertEquals(Double.parseDouble("-7.000"), molecule.getAtom(1).getPoint3d().y, 0.0);
+        Assert.assertEquals(Double.parseDouble("+0.3333"), molecule.getAtom(1).getPoint3d().z, 0.0);
+        Assert.assertEquals(15.0, molecule.getAtom(2).getPoint3d().x, 0.0);
+        Assert.assertEquals(0.25, molecule.getAtom(2).getPoint3d().y, 0.0);
+        Assert.assertEquals(3.0, molecule.getAtom(2).getPoint3d().z, 0.0);
+        Assert.assertEquals(18, molecule.getAtom(2).getMassNumber().intValue());
+        Assert.assertEquals(-1, molecule.getAtom(0).getFormalCharge().intValue());
+        Assert.assertEquals(1, molecule.getAtom(2).getFormalCharge().intValue());
+        Assert.assertEquals(1, molecule.getConnectedSingleElectronsCount(molecule.getAtom(1)));
+        Assert.assertEquals(IBond.Order.DOUBLE, molecule.getBond(0).getOrder());
+        Assert.assertEquals(IBond.Stereo.UP, molecule.getBond(1).getStereo());
+    }
+
+    @Test public void testReadAs2D() throws Exception {
+        String mdl =
+                "flat.mol\n" +
+                "\n" +
+                "\n" +
+                "  2  1  0  0  0                 1 V2000\n" +
+                "    1.5000   -2.2500    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n" +
+                "    0.0000    0.7500    0.0000 O   0  0  0  0  0  0  0  0  0  0  0  0\n" +
+                "  1  2  1  0  0  0\n" +
+                "M  END\n";
+        MDLV2000Reader reader = new MDLV2000Reader(new StringReader(mdl));
+        IAtomContainer molecule = reader.read(new AtomContainer());
+        reader.close();
+        for (IAtom atom : molecule.atoms()) {
+            Assert.assertNotNull(atom.getPoint2d());
+            Assert.assertNull(atom.getPoint3d());
+        }
+        Assert.assertEquals(-2.25, molecule.getAtom(0).getPoint2d().y, 0.0);
+        Assert.assertEquals(0.75, molecule.getAtom(1).getPoint2d().y, 0.0);
+    }
+
 }
@@ -1,12 +1,17 @@
 package org.openscience.cdk.io.iterator;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.vecmath.Point3d;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.ConformerContainer;
 import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
@@ -63,4 +68,33 @@ public class IteratingMDLConformerReaderTest extends CDKTestCase {
         reader.remove();
 
     }
+
+    @Test public void testCoordinates() {
+        String filename = "data/mdl/iterconftest.sdf";
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(filename);
+        IteratingSDFReader sdfReader = new IteratingSDFReader(ins, DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        while (sdfReader.hasNext()) molecules.add((IAtomContainer) sdfReader.next());
+
+        ins = this.getClass().getClassLoader().getResourceAsStream(filename);
+        IteratingMDLConformerReader reader = new IteratingMDLConformerReader(
+            ins, DefaultChemObjectBuilder.getInstance()
+        );
+        int index = 0;
+        while (reader.hasNext()) {
+            ConformerContainer confContainer = (ConformerContainer) reader.next();
+            for (IAtomContainer conformer : confContainer) {
+                IAtomContainer molecule = molecules.get(index++);
+                Assert.assertEquals(molecule.getAtomCount(), conformer.getAtomCount());
+                for (int i = 0; i < molecule.getAtomCount(); i++) {
+                    Point3d expected = molecule.getAtom(i).getPoint3d();
+                    Point3d actual = conformer.getAtom(i).getPoint3d();
+                    Assert.assertEquals(expected.x, actual.x, 0.0);
+                    Assert.assertEquals(expected.y, actual.y, 0.0);
+                    Assert.assertEquals(expected.z, actual.z, 0.0);
+                }
+            }
+        }
+        Assert.assertEquals(molecules.size(), index);
+    }
 }
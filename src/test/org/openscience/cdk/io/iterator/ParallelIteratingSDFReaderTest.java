@@ -0,0 +1,225 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.io.iterator;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.io.formats.MDLV2000Format;
+import org.openscience.cdk.io.listener.PropertiesListener;
+
+/**
+ * TestCase for the parallel iterating SD file reader.
+ *
+ * @cdk.module test-io
+ */
+public class ParallelIteratingSDFReaderTest extends CDKTestCase {
+
+    private static final IChemObjectBuilder builder = DefaultChemObjectBuilder.getInstance();
+
+    private InputStreamReader open(String filename) {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(filename);
+        return new InputStreamReader(ins);
+    }
+
+    private List<IAtomContainer> readSerial(String filename, boolean skip) throws Exception {
+        IteratingSDFReader reader = new IteratingSDFReader(open(filename), builder, skip);
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        while (reader.hasNext()) molecules.add(reader.next());
+        reader.close();
+        return molecules;
+    }
+
+    private List<IAtomContainer> readParallel(String filename, boolean skip,
+                                              int threads, int queueSize) throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+            open(filename), builder, skip, threads, queueSize
+        );
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        while (reader.hasNext()) molecules.add(reader.next());
+        reader.close();
+        return molecules;
+    }
+
+    private void assertSameMolecules(List<IAtomContainer> expected, List<IAtomContainer> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            IAtomContainer e = expected.get(i);
+            IAtomContainer a = actual.get(i);
+            Assert.assertEquals(e.getAtomCount(), a.getAtomCount());
+            Assert.assertEquals(e.getBondCount(), a.getBondCount());
+            for (int j = 0; j < e.getAtomCount(); j++)
+                Assert.assertEquals(e.getAtom(j).getSymbol(), a.getAtom(j).getSymbol());
+            Assert.assertEquals(e.getProperties(), a.getProperties());
+        }
+    }
+
+    @Test public void testSDF() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+            open("data/mdl/test2.sdf"), builder, false, 3
+        );
+        int molCount = 0;
+        while (reader.hasNext()) {
+            Assert.assertTrue(reader.hasNext());
+            Assert.assertNotNull(reader.next());
+            molCount++;
+        }
+        Assert.assertEquals(6, molCount);
+        Assert.assertFalse(reader.hasNext());
+        try {
+            reader.next();
+            Assert.fail("Expected a NoSuchElementException");
+        } catch (NoSuchElementException exception) {
+            // expected
+        }
+        reader.close();
+    }
+
+    @Test public void testSameAsIteratingSDFReader() throws Exception {
+        String[] files = {
+            "data/mdl/test.sdf", "data/mdl/test2.sdf", "data/mdl/emptyStructures.sdf",
+            "data/mdl/weirdprops.sdf", "data/mdl/pcoretest1.sdf", "data/mdl/bug682233.mol"
+        };
+        for (String file : files) {
+            List<IAtomContainer> expected = readSerial(file, false);
+            assertSameMolecules(expected, readParallel(file, false, 4, 16));
+            // a single slot in the queue makes the split thread wait for the consumer
+            assertSameMolecules(expected, readParallel(file, false, 3, 1));
+        }
+    }
+
+    @Test public void testReadDataItems() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+            open("data/mdl/test.sdf"), builder
+        );
+        IAtomContainer m = reader.next();
+        Assert.assertEquals("2-methylbenzo-1,4-quinone", m.getProperty(CDKConstants.TITLE));
+        Assert.assertEquals("1", m.getProperty("E_NSC"));
+        Assert.assertEquals("553-97-9", m.getProperty("E_CAS"));
+        m = reader.next();
+        Assert.assertEquals("120-78-5", m.getProperty("E_CAS"));
+        reader.close();
+    }
+
+    @Test public void testGetFormat() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+            open("data/mdl/test2.sdf"), builder
+        );
+        while (reader.hasNext()) {
+            reader.next();
+            Assert.assertEquals(MDLV2000Format.getInstance(), reader.getFormat());
+        }
+        reader.close();
+    }
+
+    /**
+     * @cdk.bug 3488307
+     */
+    @Test public void testSkip() throws Exception {
+        String filename = "data/mdl/bug3488307.sdf";
+        Assert.assertEquals(3, readParallel(filename, true, 2, 2).size());
+        Assert.assertEquals(readSerial(filename, false).size(),
+                            readParallel(filename, false, 2, 2).size());
+    }
+
+    @Test public void testClose() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+            open("data/mdl/test2.sdf"), builder, false, 2, 1
+        );
+        Assert.assertTrue(reader.hasNext());
+        reader.next();
+        reader.close();
+        Assert.assertFalse(reader.hasNext());
+    }
+
+    @Test public void testSetReader_Reader() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+            new StringReader(""), builder, false, 2
+        );
+        Assert.assertFalse(reader.hasNext());
+        reader.setReader(open("data/mdl/test2.sdf"));
+        int molCount = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            molCount++;
+        }
+        Assert.assertEquals(6, molCount);
+    }
+
+    @Test public void testSetReader_InputStream() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+            new StringReader(""), builder, false, 2
+        );
+        reader.setReader(this.getClass().getClassLoader().getResourceAsStream("data/mdl/test.sdf"));
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals("553-97-9", reader.next().getProperty("E_CAS"));
+        reader.close();
+    }
+
+    @Test public void testForceReadAs3DCoordinates() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+            open("data/mdl/no3dStructures.sdf"), builder, false, 2
+        );
+        reader.getSetting("ForceReadAs3DCoordinates").setSetting("true");
+        int molCount = 0;
+        while (reader.hasNext()) {
+            IAtomContainer mol = reader.next();
+            Assert.assertNull(mol.getAtom(0).getPoint2d());
+            Assert.assertNotNull(mol.getAtom(0).getPoint3d());
+            molCount++;
+        }
+        Assert.assertEquals(2, molCount);
+    }
+
+    @Test public void testCustomizeJob() throws Exception {
+        ParallelIteratingSDFReader reader = new ParallelIteratingSDFReader(
+            open("data/mdl/no3dStructures.sdf"), builder, false, 2
+        );
+        Properties prop = new Properties();
+        prop.setProperty("ForceReadAs3DCoordinates", "true");
+        reader.addChemObjectIOListener(new PropertiesListener(prop));
+        reader.customizeJob();
+        Assert.assertEquals("true", reader.getSetting("ForceReadAs3DCoordinates").getSetting());
+        int molCount = 0;
+        while (reader.hasNext()) {
+            IAtomContainer mol = reader.next();
+            Assert.assertNull(mol.getAtom(0).getPoint2d());
+            Assert.assertNotNull(mol.getAtom(0).getPoint3d());
+            molCount++;
+        }
+        Assert.assertEquals(2, molCount);
+        reader.close();
+    }
+}
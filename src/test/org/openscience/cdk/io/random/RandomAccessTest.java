@@ -25,6 +25,13 @@
 package org.openscience.cdk.io.random;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -71,4 +78,121 @@ public class RandomAccessTest extends CDKTestCase {
         }
         rf.close();
     }
+
+    @Test public void testGetRecord() throws Exception {
+        File f = new File("src/test/data/mdl/test2.sdf");
+        RandomAccessReader rf = new RandomAccessSDFReader(
+            f,DefaultChemObjectBuilder.getInstance());
+        for (int i=0; i < rf.size(); i++) {
+            IChemObject expected = rf.readRecord(i);
+            IChemObject actual = rf.getRecord(i);
+            Assert.assertEquals(expected.getProperty("MDLNUMBER"), actual.getProperty("MDLNUMBER"));
+            Assert.assertEquals(((IAtomContainer)expected).getAtomCount(),
+                                ((IAtomContainer)actual).getAtomCount());
+        }
+        Assert.assertEquals(rf.size()-1, rf.getCurrentRecord());
+        rf.getRecord(0);
+        Assert.assertEquals(rf.size()-1, rf.getCurrentRecord());
+        rf.close();
+    }
+
+    @Test public void testGetRecord_Concurrent() throws Exception {
+        File f = new File("src/test/data/mdl/test2.sdf");
+        final RandomAccessReader rf = new RandomAccessSDFReader(
+            f,DefaultChemObjectBuilder.getInstance());
+        String[] mdlnumbers = new String[rf.size()];
+        for (int i=0; i < rf.size(); i++)
+            mdlnumbers[i] = (String) rf.readRecord(i).getProperty("MDLNUMBER");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int i=0; i < 200; i++) {
+            final int record = i % rf.size();
+            futures.add(executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return rf.getRecord(record).getProperty("MDLNUMBER");
+                }
+            }));
+        }
+        for (int i=0; i < futures.size(); i++)
+            Assert.assertEquals(mdlnumbers[i % rf.size()], futures.get(i).get());
+        executor.shutdown();
+        rf.close();
+    }
+
+    /**
+     * Indexes the same file scanned in parts of many sizes, with mixed line
+     * terminators, and checks the index is loaded again from the index file.
+     */
+    @Test public void testIndex() throws Exception {
+        File f = File.createTempFile("cdk-random", ".sdf");
+        f.deleteOnExit();
+        String[] records = {
+            "a\n\n\n  0  0  0  0  0  0  0  0  0  0999 V2000\nM  END\n> <ID>\n1\n\n$$$$",
+            "b\r\n\r\n\r\n  0  0  0  0  0  0  0  0  0  0999 V2000\r\nM  END\r\n> <ID>\r\n2\r\n\r\n$$$$",
+            "c\n\n\n  0  0  0  0  0  0  0  0  0  0999 V2000\nM  END\n> <ID>\n3\n\n$$$$"
+        };
+        FileWriter out = new FileWriter(f);
+        out.write(records[0] + "\n" + records[1] + "\r\n" + records[2] + "\n");
+        out.close();
+        int defaultChunkSize = RandomAccessReader.chunkSize;
+        try {
+            for (int size = 1; size < 120; size++) {
+                RandomAccessReader.getIndexFile(f.getAbsolutePath()).delete();
+                RandomAccessReader.chunkSize = size;
+                RandomAccessReader rf = new RandomAccessSDFReader(
+                    f,DefaultChemObjectBuilder.getInstance());
+                Assert.assertEquals(3, rf.size());
+                for (int i=0; i < records.length; i++)
+                    Assert.assertEquals(records[i], rf.readContent(i));
+                rf.close();
+            }
+        } finally {
+            RandomAccessReader.chunkSize = defaultChunkSize;
+        }
+        RandomAccessReader rf = new RandomAccessSDFReader(
+            f,DefaultChemObjectBuilder.getInstance());
+        Assert.assertTrue(RandomAccessReader.getIndexFile(f.getAbsolutePath()).exists());
+        Assert.assertEquals(3, rf.size());
+        Assert.assertEquals("3", rf.readRecord(2).getProperty("ID"));
+        rf.close();
+        RandomAccessReader.getIndexFile(f.getAbsolutePath()).delete();
+    }
+    @SuppressWarnings("deprecation")
+    @Test public void testGetIndex() throws Exception {
+        File f = new File("src/test/data/mdl/test2.sdf");
+        RandomAccessReader rf = new RandomAccessSDFReader(
+            f,DefaultChemObjectBuilder.getInstance());
+        Assert.assertNull(rf.index);
+        long[][] index = rf.getIndex();
+        Assert.assertSame(index, rf.index);
+        Assert.assertEquals(rf.size(), index.length);
+        Assert.assertEquals(0, index[0][0]);
+        for (int i=0; i < index.length; i++) {
+            Assert.assertEquals(rf.readContent(i).length(), index[i][1]);
+            Assert.assertEquals(-1, index[i][2]);
+            Assert.assertTrue(rf.b.length >= index[i][1]);
+        }
+        long[][] resized = rf.resize(index, index.length + 1);
+        Assert.assertEquals(index.length + 1, resized.length);
+        Assert.assertEquals(index[1][0], resized[1][0]);
+        rf.close();
+    }
+    @Test public void testIsRecordEnd_arraybyte_int_int() throws Exception {
+        File f = new File("src/test/data/mdl/test2.sdf");
+        RandomAccessReader rf = new RandomAccessSDFReader(
+            f,DefaultChemObjectBuilder.getInstance());
+        byte[] line = "xx$$$$\r\n$$$$$".getBytes("US-ASCII");
+        Assert.assertTrue(rf.isRecordEnd(line, 2, 4));
+        Assert.assertTrue(rf.isRecordEnd(line, 8, 4));
+        Assert.assertFalse(rf.isRecordEnd(line, 2, 3));
+        Assert.assertFalse(rf.isRecordEnd(line, 1, 4));
+        Assert.assertFalse(rf.isRecordEnd(line, 8, 5));
+        Assert.assertFalse(rf.isRecordEnd(line, 0, 0));
+        // agrees with the String based test
+        for (int offset = 0; offset < line.length; offset++)
+            for (int length = 0; offset + length <= line.length; length++)
+                Assert.assertEquals(rf.isRecordEnd(new String(line, offset, length, "US-ASCII")),
+                                    rf.isRecordEnd(line, offset, length));
+        rf.close();
+    }
 }
@@ -0,0 +1,272 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.ChemFile;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.atomtype.CDKAtomTypeMatcher;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.ISimpleChemObjectReader;
+import org.openscience.cdk.io.MDLV2000Reader;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.templates.MoleculeFactory;
+import org.openscience.cdk.tools.CDKHydrogenAdder;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
+import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
+
+/**
+ * @cdk.module test-standard
+ */
+public class IsomorphismMatcherTest extends CDKTestCase {
+
+    private static final String[] SMILES = {
+        "CCCCCC", "C1CCCCC1", "CC(C)C", "CCO", "OCCO", "CC(=O)O", "C1CCC1", "CC1CCCC1C", "N"
+    };
+
+    @Test public void testGetOptions() {
+        IsomorphismOptions options = new IsomorphismOptions().setTimeout(100);
+        IsomorphismMatcher matcher = new IsomorphismMatcher(options);
+        options.setTimeout(200);
+        Assert.assertEquals(100, matcher.getOptions().getTimeout());
+        matcher.getOptions().setTimeout(300);
+        Assert.assertEquals(100, matcher.getOptions().getTimeout());
+    }
+
+    @Test public void testIsSubgraph_IAtomContainer_IAtomContainer() throws Exception {
+        IsomorphismMatcher matcher = new IsomorphismMatcher();
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer amine = sp.parseSmiles("CCCCCN");
+        IAtomContainer query = sp.parseSmiles("CCN");
+        Assert.assertTrue(matcher.isSubgraph(amine, query));
+        Assert.assertFalse(matcher.isSubgraph(query, amine));
+        Assert.assertFalse(matcher.isSubgraph(sp.parseSmiles("CCCCC"), query));
+        Assert.assertEquals(2, matcher.getSubgraphMap(amine, query).size());
+        Assert.assertEquals(3, matcher.getSubgraphAtomsMap(amine, query).size());
+        Assert.assertNull(matcher.getSubgraphMap(sp.parseSmiles("CCCCC"), query));
+    }
+
+    @Test public void testIsIsomorph_IAtomContainer_IAtomContainer() throws Exception {
+        IsomorphismMatcher matcher = new IsomorphismMatcher();
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        Assert.assertTrue(matcher.isIsomorph(sp.parseSmiles("CCO"), sp.parseSmiles("OCC")));
+        Assert.assertFalse(matcher.isIsomorph(sp.parseSmiles("CCO"), sp.parseSmiles("CCN")));
+        Assert.assertFalse(matcher.isIsomorph(sp.parseSmiles("C"), sp.parseSmiles("N")));
+        Assert.assertEquals(3, matcher.getIsomorphAtomsMap(sp.parseSmiles("CCO"), sp.parseSmiles("OCC")).size());
+    }
+
+    @Test(expected=CDKException.class)
+    public void testIsSubgraph_QueryAsTarget() throws Exception {
+        IAtomContainer pyrrole = MoleculeFactory.makePyrrole();
+        new IsomorphismMatcher().isSubgraph(
+            QueryAtomContainerCreator.createBasicQueryContainer(pyrrole), pyrrole
+        );
+    }
+
+    /**
+     * Without options, the matcher must find the same mappings as the
+     * static methods.
+     */
+    @Test public void testSearch() throws Exception {
+        IsomorphismMatcher matcher = new IsomorphismMatcher();
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        for (String target : SMILES) {
+            for (String query : SMILES) {
+                IAtomContainer g1 = sp.parseSmiles(target);
+                IAtomContainer g2 = sp.parseSmiles(query);
+                Assert.assertEquals(UniversalIsomorphismTester.isSubgraph(g1, g2),
+                                    matcher.isSubgraph(g1, g2));
+                Assert.assertEquals(UniversalIsomorphismTester.getSubgraphAtomsMaps(g1, g2).size(),
+                                    matcher.getSubgraphAtomsMaps(g1, g2).size());
+                Assert.assertEquals(UniversalIsomorphismTester.isIsomorph(g1, g2),
+                                    matcher.isIsomorph(g1, g2));
+                Assert.assertEquals(
+                    UniversalIsomorphismTester.search(g1, g2, new BitSet(), new BitSet(), true, true).size(),
+                    matcher.search(g1, g2, new BitSet(), new BitSet(), true, true).size()
+                );
+            }
+        }
+    }
+
+    @Test public void testGetSubgraphMaps_IAtomContainer_IAtomContainer() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer hexane = sp.parseSmiles("CCCCCC");
+        IAtomContainer propane = sp.parseSmiles("CCC");
+        IAtomContainer carbon = sp.parseSmiles("C");
+        Assert.assertEquals(8, new IsomorphismMatcher().getSubgraphMaps(hexane, propane).size());
+        Assert.assertEquals(6, new IsomorphismMatcher().getSubgraphMaps(hexane, carbon).size());
+
+        IsomorphismMatcher limited = new IsomorphismMatcher(new IsomorphismOptions().setMaxSolutions(3));
+        Assert.assertEquals(3, limited.getSubgraphMaps(hexane, propane).size());
+        Assert.assertEquals(3, limited.getSubgraphAtomsMaps(hexane, propane).size());
+        Assert.assertEquals(3, limited.getSubgraphMaps(hexane, carbon).size());
+        Assert.assertEquals(2, limited.getSubgraphMaps(propane, propane).size());
+
+        IsomorphismMatcher first = new IsomorphismMatcher(new IsomorphismOptions().setFirstMatchOnly(true));
+        Assert.assertEquals(1, first.getSubgraphMaps(hexane, propane).size());
+        Assert.assertEquals(1, first.getSubgraphMaps(hexane, carbon).size());
+        Assert.assertTrue(first.isSubgraph(hexane, propane));
+    }
+
+    @Test public void testGetIsomorphMaps_IAtomContainer_IAtomContainer() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer cyclohexane = sp.parseSmiles("C1CCCCC1");
+        Assert.assertEquals(12, new IsomorphismMatcher().getIsomorphMaps(cyclohexane, cyclohexane).size());
+        IsomorphismMatcher limited = new IsomorphismMatcher(new IsomorphismOptions().setMaxSolutions(5));
+        Assert.assertEquals(5, limited.getIsomorphMaps(cyclohexane, cyclohexane).size());
+    }
+
+    @Test public void testGetOverlaps_IAtomContainer_IAtomContainer() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer g1 = sp.parseSmiles("CCCCOCC");
+        IAtomContainer g2 = sp.parseSmiles("CCOCCCC");
+        List<IAtomContainer> expected = UniversalIsomorphismTester.getOverlaps(g1, g2);
+        List<IAtomContainer> overlaps = new IsomorphismMatcher().getOverlaps(g1, g2);
+        Assert.assertEquals(expected.size(), overlaps.size());
+        Assert.assertEquals(expected.get(0).getAtomCount(), overlaps.get(0).getAtomCount());
+    }
+
+    @Test public void testTimeout() throws Exception {
+        IAtomContainer[] molecules = readTimeoutMolecules();
+        IAtomContainer query = QueryAtomContainerCreator.createAnyAtomForPseudoAtomQueryContainer(molecules[1]);
+        IsomorphismMatcher matcher = new IsomorphismMatcher(new IsomorphismOptions().setTimeout(200));
+        long start = System.currentTimeMillis();
+        try {
+            matcher.getSubgraphAtomsMaps(molecules[0], query);
+            Assert.fail("The search should have timed out");
+        } catch (CDKException exception) {
+            // expected
+        }
+        // the search must last much longer than two seconds if the timeout does not work
+        Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test public void testInterrupt() throws Exception {
+        IAtomContainer[] molecules = readTimeoutMolecules();
+        IAtomContainer query = QueryAtomContainerCreator.createAnyAtomForPseudoAtomQueryContainer(molecules[1]);
+        Thread.currentThread().interrupt();
+        try {
+            new IsomorphismMatcher().getSubgraphAtomsMaps(molecules[0], query);
+            Assert.fail("The search should have been interrupted");
+        } catch (CDKException exception) {
+            // expected
+        } finally {
+            Assert.assertTrue(Thread.interrupted());
+        }
+    }
+
+    /**
+     * A search that times out must not affect the searches other threads do
+     * with another matcher at the same time.
+     */
+    @Test public void testConcurrentSearches() throws Exception {
+        final IAtomContainer[] molecules = readTimeoutMolecules();
+        final IAtomContainer query = QueryAtomContainerCreator.createAnyAtomForPseudoAtomQueryContainer(molecules[1]);
+        final IsomorphismMatcher timed = new IsomorphismMatcher(new IsomorphismOptions().setTimeout(300));
+        final IsomorphismMatcher matcher = new IsomorphismMatcher();
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        final List<IAtomContainer> targets = new ArrayList<IAtomContainer>();
+        final List<IAtomContainer> queries = new ArrayList<IAtomContainer>();
+        List<Integer> expected = new ArrayList<Integer>();
+        for (String target : SMILES) {
+            for (String smiles : SMILES) {
+                targets.add(sp.parseSmiles(target));
+                queries.add(sp.parseSmiles(smiles));
+                expected.add(UniversalIsomorphismTester.getSubgraphMaps(
+                    targets.get(targets.size() - 1), queries.get(queries.size() - 1)).size());
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> slow = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 2; i++) {
+                slow.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        try {
+                            timed.getSubgraphMaps(molecules[0], query);
+                            return false;
+                        } catch (CDKException exception) {
+                            return true;
+                        }
+                    }
+                }));
+            }
+            List<Future<Integer>> fast = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < targets.size(); i++) {
+                final int index = i;
+                fast.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        return matcher.getSubgraphMaps(targets.get(index), queries.get(index)).size();
+                    }
+                }));
+            }
+            for (int i = 0; i < fast.size(); i++)
+                Assert.assertEquals(expected.get(i), fast.get(i).get());
+            for (Future<Boolean> timedOut : slow)
+                Assert.assertTrue(timedOut.get());
+        } catch (ExecutionException exception) {
+            throw new RuntimeException(exception.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private IAtomContainer[] readTimeoutMolecules() throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(
+            "data/mdl/UITTimeout.sdf"
+        );
+        ISimpleChemObjectReader reader = new MDLV2000Reader(ins);
+        ChemFile content = (ChemFile)reader.read(new ChemFile());
+        List<IAtomContainer> containers = ChemFileManipulator.getAllAtomContainers(content);
+        IAtomContainer[] molecules = new IAtomContainer[2];
+        for (int j = 0; j < 2; j++) {
+            IAtomContainer container = containers.get(j);
+            CDKAtomTypeMatcher matcher = CDKAtomTypeMatcher.getInstance(container.getBuilder());
+            CDKHydrogenAdder adder = CDKHydrogenAdder.getInstance(container.getBuilder());
+            for (IAtom atom : container.atoms()) {
+                AtomTypeManipulator.configure(atom, matcher.findMatchingAtomType(container, atom));
+                adder.addImplicitHydrogens(container, atom);
+            }
+            AtomContainerManipulator.convertImplicitToExplicitHydrogens(container);
+            molecules[j] = container;
+        }
+        return molecules;
+    }
+}
@@ -0,0 +1,80 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+
+/**
+ * @cdk.module test-standard
+ */
+public class IsomorphismOptionsTest extends CDKTestCase {
+
+    @Test public void testIsomorphismOptions() {
+        IsomorphismOptions options = new IsomorphismOptions();
+        Assert.assertEquals(-1, options.getTimeout());
+        Assert.assertEquals(-1, options.getMaxSolutions());
+        Assert.assertFalse(options.isFirstMatchOnly());
+    }
+
+    @Test public void testIsomorphismOptions_IsomorphismOptions() {
+        IsomorphismOptions options = new IsomorphismOptions()
+            .setTimeout(10).setMaxSolutions(5).setFirstMatchOnly(true);
+        IsomorphismOptions copy = new IsomorphismOptions(options);
+        options.setTimeout(20);
+        Assert.assertEquals(10, copy.getTimeout());
+        Assert.assertEquals(5, copy.getMaxSolutions());
+        Assert.assertTrue(copy.isFirstMatchOnly());
+    }
+
+    @Test public void testSetTimeout_long() {
+        IsomorphismOptions options = new IsomorphismOptions();
+        Assert.assertSame(options, options.setTimeout(100));
+        Assert.assertEquals(100, options.getTimeout());
+        options.setTimeout(-1);
+        Assert.assertEquals(-1, options.getTimeout());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetTimeout_Negative() {
+        new IsomorphismOptions().setTimeout(-2);
+    }
+
+    @Test public void testSetMaxSolutions_int() {
+        IsomorphismOptions options = new IsomorphismOptions();
+        Assert.assertSame(options, options.setMaxSolutions(3));
+        Assert.assertEquals(3, options.getMaxSolutions());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSetMaxSolutions_Zero() {
+        new IsomorphismOptions().setMaxSolutions(0);
+    }
+
+    @Test public void testSetFirstMatchOnly_boolean() {
+        IsomorphismOptions options = new IsomorphismOptions();
+        Assert.assertSame(options, options.setFirstMatchOnly(true));
+        Assert.assertTrue(options.isFirstMatchOnly());
+    }
+}
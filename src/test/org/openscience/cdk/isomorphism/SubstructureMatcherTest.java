@@ -0,0 +1,153 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
+import org.openscience.cdk.isomorphism.mcss.RMap;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-standard
+ */
+public class SubstructureMatcherTest extends CDKTestCase {
+
+    private static final String[] SMILES = {
+        "CCCCCC", "C1CCCCC1", "CC(C)C", "CCO", "OCCO", "CC(=O)O", "C1CCC1", "CC1CCCC1C",
+        "CC(C)(C)C", "C=CC=C", "CCN(CC)CC", "OC(=O)C(O)C(O)C(=O)O"
+    };
+
+    private final SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    private SubstructureMatcher matcher(String smiles) throws Exception {
+        return new SubstructureMatcher(
+            QueryAtomContainerCreator.createSymbolAndBondOrderQueryContainer(parser.parseSmiles(smiles))
+        );
+    }
+
+    @Test public void testMatches() throws Exception {
+        IAtomContainer target = parser.parseSmiles("CC(=O)OCC");
+        SubstructureMatcher matcher = matcher("C(=O)O");
+        Assert.assertTrue(matcher.matches(target));
+        int[] mapping = matcher.getFirstMatch(target);
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, mapping);
+        Assert.assertFalse(matcher("C=C").matches(target));
+        Assert.assertNull(matcher("C=C").getFirstMatch(target));
+        Assert.assertFalse(matcher("CCCCCCC").matches(target));
+    }
+
+    /**
+     * The three bonds of a triangle are pairwise adjacent, like those of a
+     * star, but a triangle is not a substructure of a star.
+     */
+    @Test public void testMatches_Triangle() throws Exception {
+        Assert.assertFalse(matcher("C1CC1").matches(parser.parseSmiles("CC(C)C")));
+        Assert.assertTrue(matcher("C1CC1").matches(parser.parseSmiles("CC1CC1")));
+    }
+
+    @Test public void testCountMatches() throws Exception {
+        Assert.assertEquals(12, matcher("C1CCCCC1").countMatches(parser.parseSmiles("C1CCCCC1")));
+        Assert.assertEquals(6, matcher("CC(C)C").countMatches(parser.parseSmiles("CC(C)C")));
+        Assert.assertEquals(2, matcher("CO").countMatches(parser.parseSmiles("OCCO")));
+        Assert.assertEquals(0, matcher("CN").countMatches(parser.parseSmiles("OCCO")));
+    }
+
+    /**
+     * The unique atom sets of the mappings are those of the bond mappings of
+     * the {@link UniversalIsomorphismTester}. Three membered rings are left
+     * out as the bond mappings can not tell them from a star.
+     */
+    @Test public void testGetMatches() throws Exception {
+        for (String querySmiles : SMILES) {
+            IAtomContainer queryMolecule = parser.parseSmiles(querySmiles);
+            if (queryMolecule.getBondCount() < 2) continue;
+            QueryAtomContainer query =
+                QueryAtomContainerCreator.createSymbolAndBondOrderQueryContainer(queryMolecule);
+            SubstructureMatcher matcher = new SubstructureMatcher(query);
+            Assert.assertEquals(query.getAtomCount(), matcher.getQueryAtomCount());
+            for (String targetSmiles : SMILES) {
+                IAtomContainer target = parser.parseSmiles(targetSmiles);
+                List<int[]> mappings = matcher.getMatches(target);
+                Assert.assertEquals(mappings.size(), matcher.countMatches(target));
+                Set<Set<Integer>> atoms = new HashSet<Set<Integer>>();
+                for (int[] mapping : mappings) {
+                    Set<Integer> set = new HashSet<Integer>();
+                    for (int q = 0; q < mapping.length; q++) {
+                        Assert.assertTrue(query.getAtom(q).getSymbol().equals(
+                            target.getAtom(mapping[q]).getSymbol()));
+                        set.add(mapping[q]);
+                    }
+                    Assert.assertEquals(mapping.length, set.size());
+                    for (IBond bond : query.bonds()) {
+                        Assert.assertNotNull(target.getBond(
+                            target.getAtom(mapping[query.getAtomNumber(bond.getAtom(0))]),
+                            target.getAtom(mapping[query.getAtomNumber(bond.getAtom(1))])
+                        ));
+                    }
+                    atoms.add(set);
+                }
+                Set<Set<Integer>> expected = new HashSet<Set<Integer>>();
+                for (List<RMap> map : UniversalIsomorphismTester.getSubgraphMaps(target, query)) {
+                    Set<Integer> set = new HashSet<Integer>();
+                    for (RMap rmap : map) {
+                        IBond bond = target.getBond(rmap.getId1());
+                        set.add(target.getAtomNumber(bond.getAtom(0)));
+                        set.add(target.getAtomNumber(bond.getAtom(1)));
+                    }
+                    expected.add(set);
+                }
+                Assert.assertEquals(querySmiles + " in " + targetSmiles, expected, atoms);
+                Assert.assertEquals(!expected.isEmpty(), matcher.matches(target));
+            }
+        }
+    }
+
+    @Test public void testGetMatches_Disconnected() throws Exception {
+        List<int[]> mappings = matcher("C.O").getMatches(parser.parseSmiles("OCCO"));
+        Assert.assertEquals(4, mappings.size());
+        Assert.assertEquals(0, matcher("C.C.C").countMatches(parser.parseSmiles("CC")));
+    }
+
+    /**
+     * Bonds to atoms that are not in the query are ignored.
+     */
+    @Test public void testMatches_BondToAtomNotInQuery() throws Exception {
+        IAtomContainer query = parser.parseSmiles("CO");
+        IAtomContainer other = parser.parseSmiles("N");
+        query.addBond(DefaultChemObjectBuilder.getInstance().newInstance(
+            IBond.class, query.getAtom(1), other.getAtom(0)));
+        SubstructureMatcher matcher = new SubstructureMatcher(query);
+        Assert.assertTrue(matcher.matches(parser.parseSmiles("CCO")));
+        Assert.assertEquals(1, matcher.countMatches(parser.parseSmiles("CCO")));
+    }
+}
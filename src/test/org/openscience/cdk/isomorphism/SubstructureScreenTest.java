@@ -0,0 +1,196 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.isomorphism;
+
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class SubstructureScreenTest extends CDKTestCase {
+
+    private static final String[] SMARTS = {
+        "O=CO", "c1ccccc1", "[#7]", "[N;!R]C=O", "[C,N]~O", "*~*~[Cl]", "[$(C=O)]N",
+        "[OH]c", "C(=O)[O-]", "[#6]1~[#6]~[#6]~[#6]~[#6]~[#6]~1", "[S,P](=O)", "Br",
+        "n1ccccc1", "[!C;!c]", "C#N", "[CX4][NX3]", "a1aaaaa1", "c-,:c"
+    };
+
+    private static final String[] SMILES = {
+        "CC(=O)OC(=O)C", "c1ccccc1O", "c1ccncc1", "CC(=O)NC", "ClCCCl", "OC(=O)CC[O-]",
+        "CCS(=O)(=O)N", "c1ccc2ccccc2c1", "CC#N", "BrC1CCCCC1", "NCCCc1ccccc1", "C[N+](C)(C)C"
+    };
+
+    @Test public void testGetFingerprint_IAtomContainer() {
+        SubstructureScreen screen = new SubstructureScreen();
+        BitSet indole = screen.getFingerprint(MoleculeFactory.makeIndole());
+        BitSet pyrrole = screen.getFingerprint(MoleculeFactory.makePyrrole());
+        Assert.assertTrue(indole.cardinality() > 0);
+        Assert.assertTrue(screen.isCandidate(pyrrole, indole));
+        Assert.assertFalse(screen.isCandidate(indole, pyrrole));
+    }
+
+    @Test public void testGetFingerprint_PseudoAtom() {
+        SubstructureScreen screen = new SubstructureScreen();
+        IAtomContainer pyrrole = MoleculeFactory.makePyrrole();
+        IAtomContainer substituted = MoleculeFactory.makePyrrole();
+        IPseudoAtom r = substituted.getBuilder().newInstance(IPseudoAtom.class, "R");
+        substituted.addAtom(r);
+        substituted.addBond(0, substituted.getAtomCount() - 1,
+                            IBond.Order.SINGLE);
+        Assert.assertEquals(screen.getFingerprint(pyrrole), screen.getFingerprint(substituted));
+    }
+
+    @Test public void testGetQueryFingerprint_IAtomContainer() throws Exception {
+        SubstructureScreen screen = new SubstructureScreen();
+        // atoms that allow more than one element are not part of the screen
+        Assert.assertEquals(new BitSet(), screen.getQueryFingerprint(SMARTSParser.parse("[C,N]")));
+        Assert.assertEquals(new BitSet(), screen.getQueryFingerprint(SMARTSParser.parse("*")));
+        Assert.assertEquals(new BitSet(), screen.getQueryFingerprint(SMARTSParser.parse("[!C]")));
+        // atoms and aromatic atoms of one element are
+        BitSet carbon = screen.getQueryFingerprint(SMARTSParser.parse("C"));
+        Assert.assertEquals(1, carbon.cardinality());
+        Assert.assertEquals(carbon, screen.getQueryFingerprint(SMARTSParser.parse("c")));
+        Assert.assertEquals(carbon, screen.getQueryFingerprint(SMARTSParser.parse("[#6]")));
+        Assert.assertEquals(carbon, screen.getQueryFingerprint(SMARTSParser.parse("[C;R]")));
+        Assert.assertEquals(carbon, screen.getQueryFingerprint(SMARTSParser.parse("[C,C]")));
+        Assert.assertEquals(carbon, screen.getQueryFingerprint(SMARTSParser.parse("C*")));
+        Assert.assertEquals(3, screen.getQueryFingerprint(SMARTSParser.parse("C=O")).cardinality());
+    }
+
+    @Test public void testSubstructureScreen() {
+        SubstructureScreen screen = new SubstructureScreen();
+        Assert.assertEquals(0, screen.getCandidateCount());
+        Assert.assertEquals(0, screen.getScreenedOutCount());
+        Assert.assertTrue(screen.getFingerprint(MoleculeFactory.makeIndole()).length() <= 1024);
+    }
+
+    @Test public void testSubstructureScreen_int_int() {
+        SubstructureScreen screen = new SubstructureScreen(16, 1);
+        BitSet indole = screen.getFingerprint(MoleculeFactory.makeIndole());
+        Assert.assertTrue(indole.length() <= 16);
+        // paths of one bond only: C, N, C-C and C-N
+        Assert.assertTrue(indole.cardinality() <= 4);
+        IAtomContainer pyrrole = MoleculeFactory.makePyrrole();
+        Assert.assertEquals(screen.getFingerprint(pyrrole),
+                            screen.getQueryFingerprint(pyrrole));
+        Assert.assertTrue(screen.isCandidate(screen.getQueryFingerprint(pyrrole), indole));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubstructureScreen_int_int_ZeroSize() {
+        new SubstructureScreen(0, 6);
+    }
+
+    @Test public void testIsCandidate_BitSet_BitSet() {
+        SubstructureScreen screen = new SubstructureScreen();
+        BitSet indole = screen.getFingerprint(MoleculeFactory.makeIndole());
+        BitSet pyrrole = screen.getFingerprint(MoleculeFactory.makePyrrole());
+        Assert.assertTrue(screen.isCandidate(pyrrole, indole));
+        Assert.assertFalse(screen.isCandidate(indole, pyrrole));
+        Assert.assertTrue(screen.isCandidate(indole, indole));
+        Assert.assertTrue(screen.isCandidate(new BitSet(), pyrrole));
+    }
+
+    @Test public void testGetCandidateCount() {
+        SubstructureScreen screen = new SubstructureScreen();
+        BitSet indole = screen.getFingerprint(MoleculeFactory.makeIndole());
+        BitSet pyrrole = screen.getFingerprint(MoleculeFactory.makePyrrole());
+        screen.isCandidate(pyrrole, indole);
+        screen.isCandidate(indole, pyrrole);
+        screen.isCandidate(indole, indole);
+        Assert.assertEquals(3, screen.getCandidateCount());
+    }
+
+    @Test public void testGetScreenedOutCount() {
+        SubstructureScreen screen = new SubstructureScreen();
+        BitSet indole = screen.getFingerprint(MoleculeFactory.makeIndole());
+        BitSet pyrrole = screen.getFingerprint(MoleculeFactory.makePyrrole());
+        screen.isCandidate(pyrrole, indole);
+        Assert.assertEquals(0, screen.getScreenedOutCount());
+        screen.isCandidate(indole, pyrrole);
+        Assert.assertEquals(1, screen.getScreenedOutCount());
+    }
+
+    @Test public void testResetCounts() {
+        SubstructureScreen screen = new SubstructureScreen();
+        BitSet indole = screen.getFingerprint(MoleculeFactory.makeIndole());
+        BitSet pyrrole = screen.getFingerprint(MoleculeFactory.makePyrrole());
+        screen.isCandidate(indole, pyrrole);
+        screen.resetCounts();
+        Assert.assertEquals(0, screen.getCandidateCount());
+        Assert.assertEquals(0, screen.getScreenedOutCount());
+    }
+
+    @Test public void testIsSubgraph_IAtomContainer_BitSet_IAtomContainer_BitSet() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        SubstructureScreen screen = new SubstructureScreen();
+        IAtomContainer amine = sp.parseSmiles("CCCCCN");
+        IAtomContainer pentane = sp.parseSmiles("CCCCC");
+        IAtomContainer query = sp.parseSmiles("CCN");
+        BitSet amineFingerprint = screen.getFingerprint(amine);
+        BitSet pentaneFingerprint = screen.getFingerprint(pentane);
+        BitSet queryFingerprint = screen.getQueryFingerprint(query);
+        Assert.assertTrue(screen.isSubgraph(amine, amineFingerprint, query, queryFingerprint));
+        Assert.assertFalse(screen.isSubgraph(pentane, pentaneFingerprint, query, queryFingerprint));
+        Assert.assertEquals(2, screen.getCandidateCount());
+        Assert.assertEquals(1, screen.getScreenedOutCount());
+    }
+
+    /**
+     * The screen must never reject a target that matches.
+     */
+    @Test public void testScreenDoesNotChangeMatches() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        SubstructureScreen screen = new SubstructureScreen();
+        int matches = 0;
+        for (String smarts : SMARTS) {
+            SMARTSQueryTool plain = new SMARTSQueryTool(smarts);
+            SMARTSQueryTool screened = new SMARTSQueryTool(smarts);
+            screened.setScreen(screen);
+            for (String smiles : SMILES) {
+                IAtomContainer target = sp.parseSmiles(smiles);
+                boolean expected = plain.matches(target);
+                Assert.assertEquals(smarts + " on " + smiles, expected,
+                    screened.matches(target, screen.getFingerprint(target)));
+                if (expected) {
+                    Assert.assertEquals(plain.countMatches(), screened.countMatches());
+                    matches++;
+                }
+            }
+        }
+        Assert.assertTrue(matches > 0);
+        Assert.assertTrue(screen.getScreenedOutCount() > 0);
+    }
+}
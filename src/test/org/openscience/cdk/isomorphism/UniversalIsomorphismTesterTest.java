@@ -658,5 +658,31 @@ public class UniversalIsomorphismTesterTest extends CDKTestCase
         Assert.assertFalse("C**C should not match SCCS", res);
     }
 
+    @Test
+    public void testTestSubgraphHeuristics_IAtomContainer_IAtomContainer() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer pyridine = sp.parseSmiles("c1ccncc1");
+        IAtomContainer pyrimidine = sp.parseSmiles("c1cncnc1");
+        IAtomContainer methylpyrimidine = sp.parseSmiles("Cc1cncnc1");
+        IAtomContainer propane = sp.parseSmiles("CCC");
+        IAtomContainer butane = sp.parseSmiles("CCCC");
+        Assert.assertTrue(UniversalIsomorphismTester.testSubgraphHeuristics(methylpyrimidine, pyridine));
+        Assert.assertTrue(UniversalIsomorphismTester.testSubgraphHeuristics(butane, propane));
+        // more nitrogens in the query than in the target
+        Assert.assertFalse(UniversalIsomorphismTester.testSubgraphHeuristics(pyridine, pyrimidine));
+        // more carbons in the query than in the target
+        Assert.assertFalse(UniversalIsomorphismTester.testSubgraphHeuristics(pyrimidine, pyridine));
+        // more single bonds in the query than in the target
+        Assert.assertFalse(UniversalIsomorphismTester.testSubgraphHeuristics(propane, butane));
+        Assert.assertFalse(UniversalIsomorphismTester.testSubgraphHeuristics(pyridine, propane));
+    }
+
+    @Test(expected=CDKException.class)
+    public void testTestSubgraphHeuristics_IQueryAtomContainer() throws Exception {
+        IAtomContainer query = QueryAtomContainerCreator.createAnyAtomContainer(
+            MoleculeFactory.makeBenzene(), false
+        );
+        UniversalIsomorphismTester.testSubgraphHeuristics(query, MoleculeFactory.makeBenzene());
+    }
 }
 
@@ -20,9 +20,14 @@
  */
 package org.openscience.cdk.isomorphism.mcss;
 
+import java.util.BitSet;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.UniversalIsomorphismTester;
+import org.openscience.cdk.templates.MoleculeFactory;
 
 /**
  * @cdk.module test-standard
@@ -34,6 +39,62 @@ public class RGraphTest extends CDKTestCase {
 		Assert.assertNotNull(graph);
 	}
 
+	@Test public void testSetMaxSolutions_int() throws Exception {
+		IAtomContainer benzene = MoleculeFactory.makeBenzene();
+		RGraph graph = UniversalIsomorphismTester.buildRGraph(benzene, benzene);
+		graph.parse(new BitSet(), new BitSet(), true, true);
+		Assert.assertEquals(6, graph.getSolutions().size());
+
+		graph.setMaxSolutions(3);
+		graph.parse(new BitSet(), new BitSet(), true, true);
+		Assert.assertEquals(3, graph.getSolutions().size());
+	}
+
+	@Test public void testIsTimedOut() throws Exception {
+		IAtomContainer benzene = MoleculeFactory.makeBenzene();
+		RGraph graph = UniversalIsomorphismTester.buildRGraph(benzene, benzene);
+		graph.parse(new BitSet(), new BitSet(), true, true);
+		Assert.assertFalse(graph.isTimedOut());
+
+		graph.setTimeout(0);
+		graph.setStart(System.currentTimeMillis() - 10);
+		graph.parse(new BitSet(), new BitSet(), true, true);
+		Assert.assertTrue(graph.isTimedOut());
+		Assert.assertTrue(graph.getSolutions().size() < 6);
+	}
+
+	@Test public void testSetInterruptible_boolean() throws Exception {
+		IAtomContainer benzene = MoleculeFactory.makeBenzene();
+		RGraph graph = UniversalIsomorphismTester.buildRGraph(benzene, benzene);
+		Thread.currentThread().interrupt();
+		try {
+			graph.parse(new BitSet(), new BitSet(), true, true);
+			Assert.assertEquals(6, graph.getSolutions().size());
+
+			graph.setInterruptible(true);
+			graph.parse(new BitSet(), new BitSet(), true, true);
+			Assert.assertTrue(graph.getSolutions().size() < 6);
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+	@Test public void testIsInterrupted() throws Exception {
+		IAtomContainer benzene = MoleculeFactory.makeBenzene();
+		RGraph graph = UniversalIsomorphismTester.buildRGraph(benzene, benzene);
+		graph.setInterruptible(true);
+		graph.parse(new BitSet(), new BitSet(), true, true);
+		Assert.assertFalse(graph.isInterrupted());
+
+		Thread.currentThread().interrupt();
+		try {
+			graph.parse(new BitSet(), new BitSet(), true, true);
+			Assert.assertTrue(graph.isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
 }
 
 
@@ -28,8 +28,11 @@ import org.openscience.cdk.atomtype.CDKAtomTypeMatcherFilesTest;
 import org.openscience.cdk.atomtype.CDKAtomTypeMatcherSMILESTest;
 import org.openscience.cdk.atomtype.CDKAtomTypeMatcherTest;
 import org.openscience.cdk.atomtype.CDKAtomTypeMatcherTestFileReposTest;
+import org.openscience.cdk.atomtype.CompiledCDKAtomTypeMatcherTest;
 import org.openscience.cdk.atomtype.RepeatedCDKAtomTypeMatcherSMILESTest;
 import org.openscience.cdk.config.AtomTypeFactoryTest;
+import org.openscience.cdk.config.BinaryAtomTypeConfiguratorTest;
+import org.openscience.cdk.config.BinaryConfigFormatTest;
 import org.openscience.cdk.config.CDKBasedAtomTypeConfiguratorTest;
 import org.openscience.cdk.config.IsotopeFactoryTest;
 import org.openscience.cdk.config.OWLBasedAtomTypeConfiguratorTest;
@@ -78,6 +81,8 @@ import org.openscience.cdk.tools.periodictable.PeriodicTableTest;
     CDKBasedAtomTypeConfiguratorTest.class,
     TXTBasedAtomTypeConfiguratorTest.class,
     OWLBasedAtomTypeConfiguratorTest.class,
+    BinaryAtomTypeConfiguratorTest.class,
+    BinaryConfigFormatTest.class,
     AtomTypeReaderTest.class,
     AtomTypeHandlerTest.class,
     OWLAtomTypeReaderTest.class,
@@ -91,6 +96,7 @@ import org.openscience.cdk.tools.periodictable.PeriodicTableTest;
 
     // the CDK atom typer
     CDKAtomTypeMatcherTest.class,
+    CompiledCDKAtomTypeMatcherTest.class,
     CDKAtomTypeMatcherTestFileReposTest.class,
     CDKAtomTypeMatcherFilesTest.class,
     CDKAtomTypeMatcherSMILESTest.class,
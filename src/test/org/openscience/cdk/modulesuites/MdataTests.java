@@ -26,6 +26,7 @@ package org.openscience.cdk.modulesuites;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
+import org.openscience.cdk.AdjacencyAtomContainerTest;
 import org.openscience.cdk.AminoAcidTest;
 import org.openscience.cdk.AtomContainerSetTest;
 import org.openscience.cdk.AtomContainerTest;
@@ -80,6 +81,7 @@ import org.openscience.cdk.protein.data.PDBStructureTest;
         
     AminoAcidTest.class,
     AtomContainerTest.class,
+    AdjacencyAtomContainerTest.class,
     AtomParityTest.class,
     AtomTest.class,
     AtomTypeTest.class,
@@ -30,7 +30,9 @@ import org.openscience.cdk.fingerprint.KlekotaRothFingerprinterTest;
 import org.openscience.cdk.fingerprint.MACCSFingerprinterTest;
 import org.openscience.cdk.fingerprint.PubchemFingerprinterTest;
 import org.openscience.cdk.similarity.DistanceMomentTest;
+import org.openscience.cdk.similarity.FingerprintDatabaseTest;
 import org.openscience.cdk.similarity.LingoSimilarityTest;
+import org.openscience.cdk.similarity.PackedSimilarityTest;
 import org.openscience.cdk.similarity.TanimotoTest;
 
 /**
@@ -49,6 +51,8 @@ import org.openscience.cdk.similarity.TanimotoTest;
     DistanceMomentTest.class,
     TanimotoTest.class,
     LingoSimilarityTest.class,
+    FingerprintDatabaseTest.class,
+    PackedSimilarityTest.class,
     KlekotaRothFingerprinterTest.class
 })
 public class MfingerprintTests {}
@@ -23,7 +23,9 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.FragmentCoverageTest;
 import org.openscience.cdk.fragment.ExhaustiveFragmenterTest;
+import org.openscience.cdk.fragment.FragmentFrequencyCounterTest;
 import org.openscience.cdk.fragment.FragmentUtilsTest;
+import org.openscience.cdk.fragment.HashedExhaustiveFragmenterTest;
 import org.openscience.cdk.fragment.MurckoFragmenterTest;
 
 /**
@@ -35,6 +37,8 @@ import org.openscience.cdk.fragment.MurckoFragmenterTest;
 
     MurckoFragmenterTest.class,
     ExhaustiveFragmenterTest.class,
-    FragmentUtilsTest.class
+    FragmentUtilsTest.class,
+    HashedExhaustiveFragmenterTest.class,
+    FragmentFrequencyCounterTest.class
 })
 public class MfragmentTests {}
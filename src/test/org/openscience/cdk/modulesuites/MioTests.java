@@ -63,6 +63,7 @@ import org.openscience.cdk.io.XYZWriterTest;
 import org.openscience.cdk.io.cml.CMLIOTests;
 import org.openscience.cdk.io.iterator.IteratingMDLConformerReaderTest;
 import org.openscience.cdk.io.iterator.IteratingSDFReaderTest;
+import org.openscience.cdk.io.iterator.ParallelIteratingSDFReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCCompoundASNReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCCompoundXMLReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCSubstancesXMLReaderTest;
@@ -115,6 +116,7 @@ import org.openscience.cdk.io.program.Mopac7WriterTest;
 
         // cdk.io.iterator package
     IteratingSDFReaderTest.class,
+    ParallelIteratingSDFReaderTest.class,
     IteratingMDLConformerReaderTest.class,
     IteratingPCCompoundASNReaderTest.class,
     IteratingPCCompoundXMLReaderTest.class,
@@ -24,8 +24,10 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.QsarmolecularCoverageTest;
 import org.openscience.cdk.graph.matrix.TopologicalMatrixTest;
+import org.openscience.cdk.qsar.DescriptorCacheTest;
 import org.openscience.cdk.qsar.DescriptorEngineTest;
 import org.openscience.cdk.qsar.DescriptorNamesTest;
+import org.openscience.cdk.qsar.ParallelDescriptorEngineTest;
 import org.openscience.cdk.qsar.descriptors.molecular.ALOGPDescriptorTest;
 import org.openscience.cdk.qsar.descriptors.molecular.APolDescriptorTest;
 import org.openscience.cdk.qsar.descriptors.molecular.AcidicGroupCountDescriptorTest;
@@ -90,6 +92,8 @@ import org.openscience.cdk.qsar.descriptors.molecular.ZagrebIndexDescriptorTest;
     ChiIndexUtilsTest.class,
     DescriptorEngineTest.class,
     DescriptorNamesTest.class,
+    DescriptorCacheTest.class,
+    ParallelDescriptorEngineTest.class,
 
 //      from cdk.test.qsar.molecular
     AcidicGroupCountDescriptorTest.class,
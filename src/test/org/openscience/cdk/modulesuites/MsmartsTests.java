@@ -25,7 +25,11 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.SmartsCoverageTest;
 import org.openscience.cdk.isomorphism.SMARTSTest;
+import org.openscience.cdk.isomorphism.SubstructureScreenTest;
+import org.openscience.cdk.smiles.smarts.CompiledSMARTSQueryTest;
+import org.openscience.cdk.smiles.smarts.SMARTSPatternSetTest;
 import org.openscience.cdk.smiles.smarts.SMARTSQueryToolTest;
+import org.openscience.cdk.smiles.smarts.SMARTSTargetTest;
 import org.openscience.cdk.smiles.smarts.parser.ParserTest;
 import org.openscience.cdk.smiles.smarts.parser.RecursiveTest;
 import org.openscience.cdk.smiles.smarts.parser.SMARTSSearchTest;
@@ -46,6 +50,10 @@ import org.openscience.cdk.smiles.smarts.parser.visitor.SmartsQueryVisitorTest;
     RecursiveTest.class,
     SmartsDumpVisitorTest.class,
     SmartsQueryVisitorTest.class,
-    SMARTSQueryToolTest.class
+    SMARTSQueryToolTest.class,
+    SMARTSPatternSetTest.class,
+    SMARTSTargetTest.class,
+    CompiledSMARTSQueryTest.class,
+    SubstructureScreenTest.class
 })
 public class MsmartsTests {}
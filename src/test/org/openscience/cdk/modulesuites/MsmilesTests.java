@@ -27,6 +27,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.SmilesCoverageTest;
+import org.openscience.cdk.dedup.DuplicateFinderTest;
+import org.openscience.cdk.dedup.OffHeapHashTableTest;
 import org.openscience.cdk.fingerprint.LingoFingerprinterTest;
 import org.openscience.cdk.io.MoSSOutputReaderTest;
 import org.openscience.cdk.io.SMILESReaderTest;
@@ -51,6 +53,8 @@ import org.openscience.cdk.normalize.NormalizerTest;
     SmilesParserTest.class,
     SmilesGeneratorTest.class,
     NormalizerTest.class,
-    LingoFingerprinterTest.class
+    LingoFingerprinterTest.class,
+    OffHeapHashTableTest.class,
+    DuplicateFinderTest.class
 })
 public class MsmilesTests {}
@@ -34,6 +34,8 @@ import org.openscience.cdk.fingerprint.FingerprinterTest;
 import org.openscience.cdk.fingerprint.FingerprinterToolTest;
 import org.openscience.cdk.fingerprint.GraphOnlyFingerprinterTest;
 import org.openscience.cdk.fingerprint.HybridizationFingerprinterTest;
+import org.openscience.cdk.fingerprint.ParallelFingerprinterTest;
+import org.openscience.cdk.fingerprint.PathHasherTest;
 import org.openscience.cdk.geometry.BondToolsTest;
 import org.openscience.cdk.geometry.CrystalGeometryToolsTest;
 import org.openscience.cdk.geometry.volume.VABCVolumeTest;
@@ -50,7 +52,10 @@ import org.openscience.cdk.graph.matrix.ConnectionMatrixTest;
 import org.openscience.cdk.graph.rebond.BsptTest;
 import org.openscience.cdk.graph.rebond.PointTest;
 import org.openscience.cdk.graph.rebond.RebondToolTest;
+import org.openscience.cdk.isomorphism.IsomorphismMatcherTest;
+import org.openscience.cdk.isomorphism.IsomorphismOptionsTest;
 import org.openscience.cdk.isomorphism.IsomorphismTesterTest;
+import org.openscience.cdk.isomorphism.SubstructureMatcherTest;
 import org.openscience.cdk.isomorphism.UniversalIsomorphismTesterTest;
 import org.openscience.cdk.isomorphism.mcss.RGraphTest;
 import org.openscience.cdk.isomorphism.mcss.RMapTest;
@@ -75,6 +80,7 @@ import org.openscience.cdk.ringsearch.AllRingsFinderTest;
 import org.openscience.cdk.ringsearch.PathTest;
 import org.openscience.cdk.ringsearch.QueueTest;
 import org.openscience.cdk.ringsearch.RingPartitionerTest;
+import org.openscience.cdk.ringsearch.RingSearchTest;
 import org.openscience.cdk.ringsearch.SSSRFinderTest;
 import org.openscience.cdk.ringsearch.cyclebasis.CycleBasisTest;
 import org.openscience.cdk.ringsearch.cyclebasis.SimpleCycleBasisTest;
@@ -120,12 +126,16 @@ import org.openscience.cdk.validate.ProblemMarkerTest;
     ConnectivityCheckerTest.class,
     UniversalIsomorphismTesterTest.class,
     IsomorphismTesterTest.class,
+    IsomorphismMatcherTest.class,
+    IsomorphismOptionsTest.class,
+    SubstructureMatcherTest.class,
     RMapTest.class,
     RGraphTest.class,
     RNodeTest.class,
     MathToolsTest.class,
     AllRingsFinderTest.class,
     RingPartitionerTest.class,
+    RingSearchTest.class,
     SimpleCycleTest.class,
     SimpleCycleBasisTest.class,
     CycleBasisTest.class,
@@ -146,6 +156,8 @@ import org.openscience.cdk.validate.ProblemMarkerTest;
     HybridizationFingerprinterTest.class,
     GraphOnlyFingerprinterTest.class,
     FingerprinterToolTest.class,
+    PathHasherTest.class,
+    ParallelFingerprinterTest.class,
     ProblemMarkerTest.class,
     BondToolsTest.class,
     UnsupportedChemObjectExceptionTest.class,
@@ -0,0 +1,199 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
+import org.openscience.cdk.graph.PathTools;
+import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.ringsearch.SSSRFinder;
+import org.openscience.cdk.tools.CDKHydrogenAdder;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+
+/**
+ * @cdk.module test-qsarmolecular
+ */
+public class DescriptorCacheTest extends CDKTestCase {
+
+    private static IAtomContainer parse(String smiles) throws Exception {
+        return new SmilesParser(DefaultChemObjectBuilder.getInstance()).parseSmiles(smiles);
+    }
+
+    @Test public void testAttach() throws Exception {
+        IAtomContainer molecule = parse("CCO");
+        Assert.assertTrue(DescriptorCache.attach(molecule));
+        Assert.assertFalse(DescriptorCache.attach(molecule));
+        Assert.assertNotNull(molecule.getProperty(DescriptorCache.CACHE_KEY));
+        DescriptorCache.detach(molecule);
+        Assert.assertNull(molecule.getProperty(DescriptorCache.CACHE_KEY));
+    }
+
+    @Test public void testGetAdjacencyMatrix() throws Exception {
+        IAtomContainer molecule = parse("CC(C)CO");
+        DescriptorCache.attach(molecule);
+        int[][] matrix = DescriptorCache.getAdjacencyMatrix(molecule);
+        Assert.assertArrayEquals(AdjacencyMatrix.getMatrix(molecule), matrix);
+        Assert.assertSame(matrix, DescriptorCache.getAdjacencyMatrix(molecule));
+        Assert.assertSame(matrix, DescriptorCache.getAdjacencyMatrix((IAtomContainer) molecule.clone()));
+    }
+
+    @Test public void testGetTopologicalDistances() throws Exception {
+        IAtomContainer molecule = parse("CC(C)CO");
+        int[][] expected = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(molecule));
+        Assert.assertArrayEquals(expected, DescriptorCache.getTopologicalDistances(molecule));
+        DescriptorCache.attach(molecule);
+        int[][] distances = DescriptorCache.getTopologicalDistances(molecule);
+        Assert.assertArrayEquals(expected, distances);
+        Assert.assertSame(distances, DescriptorCache.getTopologicalDistances((IAtomContainer) molecule.clone()));
+    }
+
+    @Test public void testGetHeavyAtomDistances() throws Exception {
+        IAtomContainer molecule = parse("[H]OC([H])([H])C");
+        IAtomContainer local = AtomContainerManipulator.removeHydrogens(molecule);
+        int[][] expected = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(local));
+        DescriptorCache.attach(molecule);
+        int[][] distances = DescriptorCache.getHeavyAtomDistances(molecule);
+        Assert.assertEquals(3, distances.length);
+        Assert.assertArrayEquals(expected, distances);
+        Assert.assertSame(distances, DescriptorCache.getHeavyAtomDistances(molecule));
+    }
+
+    /**
+     * A modified container must not get the values cached for the original.
+     */
+    @Test public void testModifiedContainer() throws Exception {
+        IAtomContainer molecule = parse("CCCC");
+        DescriptorCache.attach(molecule);
+        int[][] distances = DescriptorCache.getTopologicalDistances(molecule);
+        IAtomContainer modified = (IAtomContainer) molecule.clone();
+        modified.removeBond(2);
+        modified.addBond(0, 3, CDKConstants.BONDORDER_SINGLE);
+        int[][] changed = DescriptorCache.getTopologicalDistances(modified);
+        Assert.assertNotSame(distances, changed);
+        Assert.assertEquals(3, distances[0][3]);
+        Assert.assertEquals(1, changed[0][3]);
+    }
+
+    @Test public void testPerceiveAtomTypesAndAromaticity() throws Exception {
+        IAtomContainer expected = parse("Oc1ccccc1C1CC1");
+        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(expected);
+        Assert.assertTrue(CDKHueckelAromaticityDetector.detectAromaticity(expected));
+
+        IAtomContainer molecule = parse("Oc1ccccc1C1CC1");
+        DescriptorCache.attach(molecule);
+        IAtomContainer first = (IAtomContainer) molecule.clone();
+        IAtomContainer second = (IAtomContainer) molecule.clone();
+        Assert.assertTrue(DescriptorCache.perceiveAtomTypesAndAromaticity(first));
+        Assert.assertTrue(DescriptorCache.perceiveAtomTypesAndAromaticity(second));
+        for (IAtomContainer actual : new IAtomContainer[]{first, second}) {
+            for (int i = 0; i < expected.getAtomCount(); i++) {
+                Assert.assertEquals(expected.getAtom(i).getAtomTypeName(), actual.getAtom(i).getAtomTypeName());
+                Assert.assertEquals(expected.getAtom(i).getHybridization(), actual.getAtom(i).getHybridization());
+                Assert.assertEquals(expected.getAtom(i).getFlag(CDKConstants.ISAROMATIC),
+                                    actual.getAtom(i).getFlag(CDKConstants.ISAROMATIC));
+                Assert.assertEquals(expected.getAtom(i).getFlag(CDKConstants.ISINRING),
+                                    actual.getAtom(i).getFlag(CDKConstants.ISINRING));
+            }
+            for (int i = 0; i < expected.getBondCount(); i++) {
+                Assert.assertEquals(expected.getBond(i).getFlag(CDKConstants.ISAROMATIC),
+                                    actual.getBond(i).getFlag(CDKConstants.ISAROMATIC));
+            }
+        }
+    }
+
+    @Test public void testPerceiveAtomTypes() throws Exception {
+        IAtomContainer expected = parse("OC(=O)C=C");
+        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(expected);
+
+        IAtomContainer molecule = parse("OC(=O)C=C");
+        DescriptorCache.attach(molecule);
+        IAtomContainer first = (IAtomContainer) molecule.clone();
+        IAtomContainer second = (IAtomContainer) molecule.clone();
+        IAtomType[] types = DescriptorCache.perceiveAtomTypes(first);
+        Assert.assertSame(types, DescriptorCache.perceiveAtomTypes(second));
+        for (int i = 0; i < expected.getAtomCount(); i++) {
+            Assert.assertEquals(expected.getAtom(i).getAtomTypeName(), types[i].getAtomTypeName());
+            Assert.assertEquals(expected.getAtom(i).getAtomTypeName(), second.getAtom(i).getAtomTypeName());
+            Assert.assertEquals(expected.getAtom(i).getHybridization(), second.getAtom(i).getHybridization());
+        }
+    }
+
+    @Test public void testGetSSSR() throws Exception {
+        IAtomContainer molecule = parse("C1CC2CCC1C2");
+        IRingSet expected = new SSSRFinder(parse("C1CC2CCC1C2")).findSSSR();
+        DescriptorCache.attach(molecule);
+        IAtomContainer clone = (IAtomContainer) molecule.clone();
+        IRingSet rings = DescriptorCache.getSSSR(clone);
+        Assert.assertEquals(expected.getAtomContainerCount(), rings.getAtomContainerCount());
+        for (int i = 0; i < rings.getAtomContainerCount(); i++) {
+            IAtomContainer ring = rings.getAtomContainer(i);
+            Assert.assertEquals(expected.getAtomContainer(i).getAtomCount(), ring.getAtomCount());
+            Assert.assertEquals(ring.getAtomCount(), ring.getBondCount());
+            for (int j = 0; j < ring.getAtomCount(); j++) {
+                Assert.assertTrue(clone.contains(ring.getAtom(j)));
+                Assert.assertTrue(ring.getAtom(j).getFlag(CDKConstants.ISINRING));
+                Assert.assertTrue(clone.contains(ring.getBond(j)));
+            }
+        }
+    }
+
+    /**
+     * Explicit hydrogens appended to a copy still get the cached rings and distances.
+     */
+    @Test public void testAppendedHydrogens() throws Exception {
+        IAtomContainer molecule = parse("OC1CC1");
+        DescriptorCache.attach(molecule);
+        int[][] distances = DescriptorCache.getTopologicalDistances(molecule);
+
+        IAtomContainer local = (IAtomContainer) molecule.clone();
+        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(local);
+        CDKHydrogenAdder.getInstance(local.getBuilder()).addImplicitHydrogens(local);
+        AtomContainerManipulator.convertImplicitToExplicitHydrogens(local);
+        Assert.assertEquals(10, local.getAtomCount());
+
+        int[][] expected = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(local));
+        int[][] extended = DescriptorCache.getTopologicalDistances(local);
+        Assert.assertArrayEquals(expected, extended);
+        Assert.assertSame(distances, DescriptorCache.getTopologicalDistances((IAtomContainer) molecule.clone()));
+
+        IRingSet rings = DescriptorCache.getSSSR(local);
+        Assert.assertEquals(1, rings.getAtomContainerCount());
+        Assert.assertEquals(3, rings.getAtomContainer(0).getAtomCount());
+        Assert.assertTrue(local.contains(rings.getAtomContainer(0).getAtom(0)));
+
+        // a bond between two appended atoms is a different graph
+        local.addAtom(local.getBuilder().newInstance(IAtom.class, "H"));
+        local.addBond(9, 10, CDKConstants.BONDORDER_SINGLE);
+        Assert.assertArrayEquals(PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(local)),
+                                 DescriptorCache.getTopologicalDistances(local));
+    }
+}
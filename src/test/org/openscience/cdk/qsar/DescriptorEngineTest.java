@@ -23,10 +23,16 @@
  */
 package org.openscience.cdk.qsar;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.IImplementationSpecification;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.modeling.builder3d.ModelBuilder3D;
 import org.openscience.cdk.modeling.builder3d.TemplateHandler3D;
@@ -141,5 +147,31 @@ public class    DescriptorEngineTest extends CDKTestCase {
         engine.process(molecule);
 
     }
-}
 
+    @Test
+    public void testProcess_ExecutorService() throws Exception {
+        List<String> classNames = Arrays.asList(
+            "org.openscience.cdk.qsar.descriptors.molecular.AtomCountDescriptor",
+            "org.openscience.cdk.qsar.descriptors.molecular.ZagrebIndexDescriptor",
+            "org.openscience.cdk.qsar.descriptors.molecular.WienerNumbersDescriptor",
+            "org.openscience.cdk.qsar.descriptors.molecular.RotatableBondsCountDescriptor"
+        );
+        DescriptorEngine engine = new DescriptorEngine(classNames);
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer serial = sp.parseSmiles("CCC(=O)Nc1ccccc1CO");
+        IAtomContainer parallel = sp.parseSmiles("CCC(=O)Nc1ccccc1CO");
+        engine.process(serial);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            engine.process(parallel, executor);
+        } finally {
+            executor.shutdown();
+        }
+        for (IImplementationSpecification spec : engine.getDescriptorSpecifications()) {
+            DescriptorValue expected = (DescriptorValue) serial.getProperty(spec);
+            DescriptorValue actual = (DescriptorValue) parallel.getProperty(spec);
+            Assert.assertNotNull(actual);
+            Assert.assertEquals(expected.getValue().toString(), actual.getValue().toString());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.qsar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.qsar.result.DoubleArrayResult;
+import org.openscience.cdk.qsar.result.DoubleResult;
+import org.openscience.cdk.qsar.result.IntegerResult;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-qsarmolecular
+ */
+public class ParallelDescriptorEngineTest extends CDKTestCase {
+
+    private static final String[] SMILES = {
+        "CCO", "c1ccccc1", "CCC(=O)Nc1ccccc1CO", "CC(C)CC(=O)O", "C1CCCCC1N", "ClC(Cl)Cl"
+    };
+
+    private static DescriptorEngine makeEngine() {
+        return new DescriptorEngine(Arrays.asList(
+            "org.openscience.cdk.qsar.descriptors.molecular.AtomCountDescriptor",
+            "org.openscience.cdk.qsar.descriptors.molecular.ZagrebIndexDescriptor",
+            "org.openscience.cdk.qsar.descriptors.molecular.WienerNumbersDescriptor",
+            "org.openscience.cdk.qsar.descriptors.molecular.RotatableBondsCountDescriptor"
+        ));
+    }
+
+    private static List<IAtomContainer> makeMolecules() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 5; i++) {
+            for (String smiles : SMILES)
+                molecules.add(sp.parseSmiles(smiles));
+        }
+        return molecules;
+    }
+
+    @Test public void testGetColumnNames() {
+        ParallelDescriptorEngine service = new ParallelDescriptorEngine(makeEngine(), 2);
+        String[] names = service.getColumnNames();
+        Assert.assertEquals(5, names.length);
+        Assert.assertEquals("nAtom", names[0]);
+        Assert.assertEquals("Zagreb", names[1]);
+        Assert.assertEquals("WPATH", names[2]);
+        Assert.assertEquals("WPOL", names[3]);
+        Assert.assertEquals("nRotB", names[4]);
+        service.shutdown();
+    }
+
+    @Test public void testProcess_Iterator() throws Exception {
+        DescriptorEngine engine = makeEngine();
+        List<double[]> expected = new ArrayList<double[]>();
+        for (IAtomContainer molecule : makeMolecules()) {
+            engine.process(molecule);
+            List<Double> row = new ArrayList<Double>();
+            for (Object spec : engine.getDescriptorSpecifications()) {
+                Object value = ((DescriptorValue) molecule.getProperty(spec)).getValue();
+                if (value instanceof IntegerResult) {
+                    row.add((double) ((IntegerResult) value).intValue());
+                } else if (value instanceof DoubleResult) {
+                    row.add(((DoubleResult) value).doubleValue());
+                } else {
+                    DoubleArrayResult array = (DoubleArrayResult) value;
+                    for (int i = 0; i < array.length(); i++) row.add(array.get(i));
+                }
+            }
+            double[] values = new double[row.size()];
+            for (int i = 0; i < values.length; i++) values[i] = row.get(i);
+            expected.add(values);
+        }
+
+        ParallelDescriptorEngine service = new ParallelDescriptorEngine(engine, 3);
+        Iterator<ParallelDescriptorEngine.Result> results = service.process(makeMolecules().iterator());
+        int count = 0;
+        while (results.hasNext()) {
+            ParallelDescriptorEngine.Result result = results.next();
+            Assert.assertEquals(count, result.getIndex());
+            Assert.assertNull(result.getException());
+            Assert.assertArrayEquals(expected.get(count), result.getValues(), 0.0001);
+            count++;
+        }
+        Assert.assertEquals(expected.size(), count);
+        service.shutdown();
+    }
+
+    @Test public void testProcess_Exception() throws Exception {
+        List<IAtomContainer> molecules = makeMolecules();
+        molecules.add(1, null);
+        ParallelDescriptorEngine service = new ParallelDescriptorEngine(makeEngine(), 2, 1);
+        Iterator<ParallelDescriptorEngine.Result> results = service.process(molecules.iterator());
+        Assert.assertNull(results.next().getException());
+        ParallelDescriptorEngine.Result failed = results.next();
+        Assert.assertEquals(1, failed.getIndex());
+        Assert.assertNull(failed.getValues());
+        Assert.assertNotNull(failed.getException());
+        Assert.assertNull(results.next().getException());
+        service.shutdown();
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testShutdown() throws Exception {
+        ParallelDescriptorEngine service = new ParallelDescriptorEngine(makeEngine(), 1);
+        service.shutdown();
+        service.process(makeMolecules().iterator());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNoMolecularDescriptors() {
+        new ParallelDescriptorEngine(new DescriptorEngine(new ArrayList<String>()), 1);
+    }
+}
@@ -349,5 +349,29 @@ public class AcidicGroupCountDescriptorTest extends MolecularDescriptorTest {
             (IntegerResult)descriptor.calculate(mol).getValue();
         Assert.assertEquals(2, result.intValue());
     }
+
+    /**
+     * An anion without a neighbouring cation is matched by the nested
+     * recursive SMARTS [$([*;-;!$(*~[*;+])])].
+     */
+    @Test public void testCarboxylate() throws Exception {
+        SmilesParser sp = new SmilesParser(
+            SilentChemObjectBuilder.getInstance()
+        );
+        IAtomContainer mol = sp.parseSmiles("CC(=O)[O-]");
+        IntegerResult result =
+            (IntegerResult)descriptor.calculate(mol).getValue();
+        Assert.assertEquals(1, result.intValue());
+    }
+
+    @Test public void testChlorideCounterIon() throws Exception {
+        SmilesParser sp = new SmilesParser(
+            SilentChemObjectBuilder.getInstance()
+        );
+        IAtomContainer mol = sp.parseSmiles("C[N+](C)(C)C.[Cl-]");
+        IntegerResult result =
+            (IntegerResult)descriptor.calculate(mol).getValue();
+        Assert.assertEquals(1, result.intValue());
+    }
 }
 
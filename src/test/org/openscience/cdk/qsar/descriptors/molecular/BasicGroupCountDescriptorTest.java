@@ -95,5 +95,20 @@ public class BasicGroupCountDescriptorTest extends MolecularDescriptorTest {
         // two SMARTS matches
         Assert.assertEquals(2, result.intValue());
     }
+
+    /**
+     * The quaternary nitrogen of carbamoylcholine is both a tertiary amine
+     * and a cation without a neighbouring anion, which the nested recursive
+     * SMARTS [$([*;+;!$(*~[*;-])])] tests for.
+     */
+    @Test public void testCarbamoylcholine() throws Exception {
+        SmilesParser sp = new SmilesParser(
+            SilentChemObjectBuilder.getInstance()
+        );
+        IAtomContainer mol = sp.parseSmiles("C(C[N+](C)(C)C)OC(=O)N");
+        IntegerResult result =
+            (IntegerResult)descriptor.calculate(mol).getValue();
+        Assert.assertEquals(2, result.intValue());
+    }
 }
 
@@ -0,0 +1,179 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.ringsearch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IRing;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-standard
+ */
+public class RingSearchTest extends CDKTestCase {
+
+    private static final String C60 =
+        "C12=C3C4=C5C6=C1C7=C8C9=C1C%10=C%11C(=C29)C3=C2C3=C4C4=C5C5=C9C6=C7C6=C7C8=C1C1=C8C%10=C%10" +
+        "C%11=C2C2=C3C3=C4C4=C5C5=C%11C%12=C(C6=C95)C7=C1C1=C%12C5=C%11C4=C3C3=C5C(=C81)C%10=C23";
+
+    private final SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    @Test public void testGetInstance() throws Exception {
+        IAtomContainer molecule = MoleculeFactory.makeAlphaPinene();
+        RingSearch search = RingSearch.getInstance(molecule);
+        Assert.assertTrue(search.isSnapshotOf(molecule));
+        Assert.assertSame(search, RingSearch.getInstance(molecule));
+
+        molecule.removeBond(0);
+        Assert.assertFalse(search.isSnapshotOf(molecule));
+        RingSearch updated = RingSearch.getInstance(molecule);
+        Assert.assertNotSame(search, updated);
+        Assert.assertTrue(updated.isSnapshotOf(molecule));
+    }
+
+    @Test public void testRingMembership() {
+        IAtomContainer molecule = MoleculeFactory.makeEthylCyclohexane();
+        RingSearch search = new RingSearch(molecule);
+        Assert.assertEquals(molecule.getAtomCount(), search.getAtomCount());
+        for (int i = 0; i < molecule.getAtomCount(); i++) {
+            Assert.assertEquals(i < 6, search.isInRing(i));
+        }
+        for (int i = 0; i < molecule.getBondCount(); i++) {
+            boolean ring = molecule.getAtomNumber(molecule.getBond(i).getAtom(0)) < 6
+                && molecule.getAtomNumber(molecule.getBond(i).getAtom(1)) < 6;
+            Assert.assertEquals(ring, search.isRingBond(i));
+        }
+    }
+
+    @Test public void testRingSystems() throws Exception {
+        RingSearch search = new RingSearch(parser.parseSmiles("c1ccccc1Cc1ccc2ccccc2c1"));
+        Assert.assertEquals(2, search.getRingSystemCount());
+        int[] systems = search.getRingSystems();
+        Assert.assertEquals(0, systems[0]);
+        Assert.assertEquals(0, systems[5]);
+        Assert.assertEquals(-1, systems[6]);
+        Assert.assertEquals(1, systems[7]);
+        Assert.assertEquals(1, systems[16]);
+
+        Assert.assertEquals(0, new RingSearch(MoleculeFactory.makeAlkane(5)).getRingSystemCount());
+        Assert.assertEquals(1, new RingSearch(MoleculeFactory.makeSpiroRings()).getRingSystemCount());
+    }
+
+    @Test public void testGetSSSR() throws Exception {
+        Assert.assertArrayEquals(new int[]{6, 6}, sizes(new RingSearch(parser.parseSmiles("c1ccc2ccccc2c1")).getSSSR()));
+        Assert.assertArrayEquals(new int[]{4, 6}, sizes(new RingSearch(MoleculeFactory.makeAlphaPinene()).getSSSR()));
+        Assert.assertEquals(0, new RingSearch(MoleculeFactory.makeAlkane(4)).getSSSR().length);
+
+        int[][] sssr = new RingSearch(MoleculeFactory.makeCyclohexane()).getSSSR();
+        Assert.assertEquals(1, sssr.length);
+        Assert.assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, sorted(sssr[0]));
+    }
+
+    @Test public void testGetRelevantRings() throws Exception {
+        // the SSSR of cubane is not unique, all six faces are relevant
+        Assert.assertArrayEquals(new int[]{4, 4, 4, 4, 4, 4},
+            sizes(new RingSearch(parser.parseSmiles("C12C3C4C1C5C2C3C45")).getRelevantRings()));
+        Assert.assertArrayEquals(new int[]{6, 6}, sizes(new RingSearch(parser.parseSmiles("c1ccc2ccccc2c1")).getRelevantRings()));
+        Assert.assertEquals(32, new RingSearch(parser.parseSmiles(C60)).getRelevantRings().length);
+    }
+
+    @Test public void testGetEssentialRings() throws Exception {
+        Assert.assertEquals(0, new RingSearch(parser.parseSmiles("C12C3C4C1C5C2C3C45")).getEssentialRings().length);
+        Assert.assertArrayEquals(new int[]{6, 6}, sizes(new RingSearch(parser.parseSmiles("c1ccc2ccccc2c1")).getEssentialRings()));
+        Assert.assertArrayEquals(new int[]{5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5},
+            sizes(new RingSearch(parser.parseSmiles(C60)).getEssentialRings()));
+    }
+
+    @Test public void testGetAllRings() throws Exception {
+        RingSearch search = new RingSearch(parser.parseSmiles("c1ccc2ccccc2c1"));
+        Assert.assertArrayEquals(new int[]{6, 6, 10}, sizes(search.getAllRings()));
+        Assert.assertArrayEquals(new int[]{6, 6}, sizes(search.getAllRings(6)));
+        Assert.assertEquals(0, search.getAllRings(5).length);
+    }
+
+    @Test(expected=CDKException.class)
+    public void testGetAllRings_TooMany() throws Exception {
+        new RingSearch(parser.parseSmiles(C60)).getAllRings();
+    }
+
+    @Test public void testToRingSet() throws Exception {
+        IAtomContainer molecule = parser.parseSmiles("C1CC2CCC1C2");
+        RingSearch search = new RingSearch(molecule);
+        IRingSet rings = search.toRingSet(search.getSSSR());
+        Assert.assertEquals(2, rings.getAtomContainerCount());
+        IRing ring = (IRing)rings.getAtomContainer(0);
+        Assert.assertEquals(5, ring.getAtomCount());
+        Assert.assertEquals(5, ring.getBondCount());
+        for (int i = 0; i < ring.getAtomCount(); i++) {
+            Assert.assertNotNull(ring.getBond(ring.getAtom(i), ring.getAtom((i + 1) % ring.getAtomCount())));
+        }
+        Assert.assertEquals(5, ((IRing)rings.getAtomContainer(1)).getBondCount());
+    }
+
+    /**
+     * The smallest set of smallest rings has the same ring sizes as the one
+     * found by the {@link SSSRFinder}.
+     */
+    @Test public void testSameAsSSSRFinder() throws Exception {
+        IAtomContainer[] molecules = {
+            MoleculeFactory.makeAlphaPinene(), MoleculeFactory.makeSteran(), MoleculeFactory.makeAzulene(),
+            MoleculeFactory.makeSpiroRings(), MoleculeFactory.makeBicycloRings(), MoleculeFactory.makeFusedRings(),
+            MoleculeFactory.make4x3CondensedRings(), MoleculeFactory.makeEthylPropylPhenantren()
+        };
+        for (IAtomContainer molecule : molecules) {
+            IRingSet expected = new SSSRFinder(molecule).findSSSR();
+            List<Integer> expectedSizes = new ArrayList<Integer>();
+            for (int i = 0; i < expected.getAtomContainerCount(); i++) {
+                expectedSizes.add(expected.getAtomContainer(i).getAtomCount());
+            }
+            Collections.sort(expectedSizes);
+            int[] actual = sizes(new RingSearch(molecule).getSSSR());
+            Assert.assertEquals(expectedSizes.size(), actual.length);
+            for (int i = 0; i < actual.length; i++) {
+                Assert.assertEquals(expectedSizes.get(i).intValue(), actual[i]);
+            }
+        }
+    }
+
+    private static int[] sizes(int[][] rings) {
+        int[] sizes = new int[rings.length];
+        for (int i = 0; i < rings.length; i++) sizes[i] = rings[i].length;
+        return sizes;
+    }
+
+    private static int[] sorted(int[] ring) {
+        int[] copy = ring.clone();
+        java.util.Arrays.sort(copy);
+        return copy;
+    }
+}
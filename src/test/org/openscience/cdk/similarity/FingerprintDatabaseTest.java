@@ -0,0 +1,239 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.similarity;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.Fingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class FingerprintDatabaseTest extends CDKTestCase {
+
+    @Test public void testWrite_long_BitSet() throws Exception {
+        File file = createFile();
+        FingerprintDatabaseWriter writer = new FingerprintDatabaseWriter(file, 100);
+        writer.write(42, bits(1, 2, 3));
+        writer.write(7, bits(99));
+        writer.write(13, new BitSet());
+        Assert.assertEquals(3, writer.getRecordCount());
+        writer.close();
+
+        FingerprintDatabase database = new FingerprintDatabase(file, 1);
+        Assert.assertEquals(100, database.getSize());
+        Assert.assertEquals(3, database.getRecordCount());
+        // the records are sorted by popcount
+        Assert.assertEquals(13, database.getId(0));
+        Assert.assertEquals(new BitSet(), database.getFingerprint(0));
+        Assert.assertEquals(7, database.getId(1));
+        Assert.assertEquals(bits(99), database.getFingerprint(1));
+        Assert.assertEquals(42, database.getId(2));
+        Assert.assertEquals(bits(1, 2, 3), database.getFingerprint(2));
+        database.close();
+    }
+
+    @Test(expected=CDKException.class)
+    public void testWrite_TooLarge() throws Exception {
+        FingerprintDatabaseWriter writer = new FingerprintDatabaseWriter(createFile(), 64);
+        try {
+            writer.write(0, bits(64));
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void testNotADatabase() throws Exception {
+        File file = createFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[100]);
+        out.close();
+        new FingerprintDatabase(file);
+    }
+
+    @Test public void testFindSimilar() throws Exception {
+        IAtomContainer[] molecules = {
+            MoleculeFactory.makeIndole(), MoleculeFactory.makePyrrole(),
+            MoleculeFactory.makeBenzene(), MoleculeFactory.makeAzulene(),
+            MoleculeFactory.makeAlkane(6)
+        };
+        Fingerprinter fingerprinter = new Fingerprinter();
+        File file = createFile();
+        FingerprintDatabaseWriter writer = new FingerprintDatabaseWriter(file, fingerprinter);
+        for (int i = 0; i < molecules.length; i++)
+            Assert.assertEquals(i, writer.write(molecules[i]));
+        writer.close();
+
+        FingerprintDatabase database = new FingerprintDatabase(file);
+        BitSet query = fingerprinter.getFingerprint(MoleculeFactory.makeIndole());
+        List<FingerprintDatabase.Hit> hits = database.findSimilar(query, 0.3f);
+        Assert.assertEquals(0, hits.get(0).getId());
+        Assert.assertEquals(1.0f, hits.get(0).getSimilarity(), 0.0001);
+        Assert.assertEquals(1, hits.get(1).getId());
+        Assert.assertEquals(Tanimoto.calculate(query, fingerprinter.getFingerprint(molecules[1])),
+                            hits.get(1).getSimilarity(), 0.0001);
+        for (FingerprintDatabase.Hit hit : hits)
+            Assert.assertTrue(hit.getSimilarity() >= 0.3f);
+        database.close();
+    }
+
+    @Test public void testFindSimilar_Random() throws Exception {
+        Random random = new Random(12);
+        File file = createRandomDatabase(random, 3000, 200);
+        // small buffers, so that the records span several mappings
+        FingerprintDatabase database = new FingerprintDatabase(file, 4, 101);
+        for (int q = 0; q < 10; q++) {
+            BitSet query = randomFingerprint(random, 200);
+            for (float threshold : new float[]{0.2f, 0.5f, 0.8f, 1.0f}) {
+                List<Expected> expected = new ArrayList<Expected>();
+                for (Expected hit : bruteForce(database, query))
+                    if (hit.similarity >= threshold) expected.add(hit);
+                assertHits(expected, database.findSimilar(query, threshold));
+            }
+        }
+        database.close();
+    }
+
+    @Test public void testFindNearest() throws Exception {
+        Random random = new Random(21);
+        File file = createRandomDatabase(random, 3000, 200);
+        FingerprintDatabase database = new FingerprintDatabase(file, 4, 101);
+        for (int q = 0; q < 10; q++) {
+            BitSet query = randomFingerprint(random, 200);
+            List<Expected> all = bruteForce(database, query);
+            for (int k : new int[]{1, 10, 100}) {
+                assertHits(all.subList(0, k), database.findNearest(query, k));
+            }
+        }
+        Assert.assertEquals(3000, database.findNearest(new BitSet(), 5000).size());
+        database.close();
+    }
+
+    @Test public void testToWords_BitSet_arraylong() {
+        BitSet fingerprint = new BitSet();
+        fingerprint.set(0);
+        fingerprint.set(63);
+        fingerprint.set(64);
+        fingerprint.set(130);
+        long[] words = {-1L, -1L, -1L, -1L};
+        Assert.assertEquals(4, FingerprintDatabase.toWords(fingerprint, words));
+        Assert.assertEquals(1L | Long.MIN_VALUE, words[0]);
+        Assert.assertEquals(1L, words[1]);
+        Assert.assertEquals(4L, words[2]);
+        Assert.assertEquals(0L, words[3]);
+        Assert.assertEquals(0, FingerprintDatabase.toWords(new BitSet(), words));
+        for (long word : words) Assert.assertEquals(0L, word);
+    }
+
+    private static void assertHits(List<Expected> expected,
+                                   List<FingerprintDatabase.Hit> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).index, actual.get(i).getIndex());
+            Assert.assertEquals(expected.get(i).id, actual.get(i).getId());
+            Assert.assertEquals(expected.get(i).similarity, actual.get(i).getSimilarity(), 0.0);
+        }
+    }
+
+    /**
+     * Compares the query with all records, ordering the results like
+     * the database does: by decreasing similarity and then index.
+     */
+    private static List<Expected> bruteForce(FingerprintDatabase database,
+                                             BitSet query) throws Exception {
+        List<Expected> hits = new ArrayList<Expected>();
+        for (long index = 0; index < database.getRecordCount(); index++) {
+            BitSet fingerprint = database.getFingerprint(index);
+            BitSet common = (BitSet)fingerprint.clone();
+            common.and(query);
+            int union = fingerprint.cardinality() + query.cardinality() - common.cardinality();
+            float similarity = union == 0 ? 0f : (float)common.cardinality() / union;
+            hits.add(new Expected(index, database.getId(index), similarity));
+        }
+        Collections.sort(hits, new Comparator<Expected>() {
+            public int compare(Expected hit1, Expected hit2) {
+                int order = Float.compare(hit2.similarity, hit1.similarity);
+                if (order != 0) return order;
+                return hit1.index < hit2.index ? -1 : 1;
+            }
+        });
+        return hits;
+    }
+
+    private static class Expected {
+        final long index;
+        final long id;
+        final float similarity;
+
+        Expected(long index, long id, float similarity) {
+            this.index = index;
+            this.id = id;
+            this.similarity = similarity;
+        }
+    }
+
+    private static File createRandomDatabase(Random random, int count, int size)
+        throws Exception {
+        File file = createFile();
+        FingerprintDatabaseWriter writer = new FingerprintDatabaseWriter(file, size);
+        for (int i = 0; i < count; i++)
+            writer.write(1000 + i, randomFingerprint(random, size));
+        writer.close();
+        return file;
+    }
+
+    private static BitSet randomFingerprint(Random random, int size) {
+        BitSet fingerprint = new BitSet(size);
+        double density = random.nextDouble() * 0.5;
+        for (int bit = 0; bit < size; bit++)
+            if (random.nextDouble() < density) fingerprint.set(bit);
+        return fingerprint;
+    }
+
+    private static BitSet bits(int... bits) {
+        BitSet fingerprint = new BitSet();
+        for (int bit : bits) fingerprint.set(bit);
+        return fingerprint;
+    }
+
+    private static File createFile() throws IOException {
+        File file = File.createTempFile("cdk-fingerprints", ".fpt");
+        file.deleteOnExit();
+        return file;
+    }
+}
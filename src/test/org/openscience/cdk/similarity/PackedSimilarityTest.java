@@ -0,0 +1,213 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.similarity;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.fingerprint.Fingerprinter;
+import org.openscience.cdk.fingerprint.LingoFingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.templates.MoleculeFactory;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class PackedSimilarityTest extends CDKTestCase {
+
+    private static long[] words(int... bits) {
+        BitSet fingerprint = new BitSet();
+        for (int bit : bits) fingerprint.set(bit);
+        return PackedSimilarity.pack(fingerprint, 128);
+    }
+
+    private static IAtomContainer[] molecules() {
+        return new IAtomContainer[]{
+            MoleculeFactory.makeIndole(), MoleculeFactory.makePyrrole(),
+            MoleculeFactory.makeBenzene(), MoleculeFactory.makeAzulene()
+        };
+    }
+
+    @Test public void testPack() {
+        long[] words = words(0, 63, 64, 127);
+        Assert.assertEquals(2, words.length);
+        Assert.assertEquals(1L | (1L << 63), words[0]);
+        Assert.assertEquals(1L | (1L << 63), words[1]);
+        Assert.assertEquals(4, PackedSimilarity.cardinality(words));
+        Assert.assertEquals(0, PackedSimilarity.cardinality(words()));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPack_TooLarge() {
+        words(128);
+    }
+
+    @Test public void testTanimoto() throws Exception {
+        Fingerprinter fingerprinter = new Fingerprinter();
+        IAtomContainer[] molecules = molecules();
+        for (IAtomContainer molecule1 : molecules) {
+            for (IAtomContainer molecule2 : molecules) {
+                BitSet bits1 = fingerprinter.getFingerprint(molecule1);
+                BitSet bits2 = fingerprinter.getFingerprint(molecule2);
+                long[] words1 = PackedSimilarity.pack(bits1, fingerprinter.getSize());
+                long[] words2 = PackedSimilarity.pack(bits2, fingerprinter.getSize());
+                Assert.assertEquals(Tanimoto.calculate(bits1, bits2),
+                                    PackedSimilarity.tanimoto(words1, words2), 0.0001);
+            }
+        }
+        Assert.assertEquals(2, PackedSimilarity.common(words(1, 2, 3), words(2, 3, 4)));
+        Assert.assertEquals(0f, PackedSimilarity.tanimoto(words(), words()), 0f);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testTanimoto_DifferentLength() {
+        PackedSimilarity.tanimoto(new long[1], new long[2]);
+    }
+
+    @Test public void testTanimoto_OneToMany() {
+        long[] query = words(1, 2, 3, 4);
+        long[][] targets = {words(1, 2, 3, 4), words(1, 2), words(5, 6), words()};
+        float[] result = new float[5];
+        PackedSimilarity.tanimoto(query, PackedSimilarity.cardinality(query),
+                                  targets, PackedSimilarity.cardinalities(targets), result);
+        Assert.assertEquals(1f, result[0], 0.0001);
+        Assert.assertEquals(0.5f, result[1], 0.0001);
+        Assert.assertEquals(0f, result[2], 0.0001);
+        Assert.assertEquals(0f, result[3], 0.0001);
+    }
+
+    @Test public void testTanimoto_ManyToMany() {
+        long[][] queries = {words(1, 2), words(3, 4, 5)};
+        long[][] targets = {words(1, 2, 3), words(4, 5), words(1)};
+        float[] result = new float[6];
+        PackedSimilarity.tanimoto(queries, PackedSimilarity.cardinalities(queries),
+                                  targets, PackedSimilarity.cardinalities(targets), result);
+        for (int q = 0; q < queries.length; q++)
+            for (int t = 0; t < targets.length; t++)
+                Assert.assertEquals(PackedSimilarity.tanimoto(queries[q], targets[t]),
+                                    result[q * targets.length + t], 0f);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testTanimoto_ResultTooSmall() {
+        long[][] targets = {words(1), words(2)};
+        PackedSimilarity.tanimoto(words(1), 1, targets, new int[]{1, 1}, new float[1]);
+    }
+
+    @Test public void testDice() {
+        long[] query = words(1, 2, 3, 4);
+        long[][] targets = {words(1, 2), words(1, 2, 3, 4, 5, 6)};
+        Assert.assertEquals(2f * 2 / 6, PackedSimilarity.dice(query, targets[0]), 0.0001);
+        float[] result = new float[2];
+        PackedSimilarity.dice(query, 4, targets, PackedSimilarity.cardinalities(targets), result);
+        Assert.assertEquals(2f * 2 / 6, result[0], 0.0001);
+        Assert.assertEquals(2f * 4 / 10, result[1], 0.0001);
+        float[] matrix = new float[2];
+        PackedSimilarity.dice(new long[][]{query}, new int[]{4},
+                              targets, PackedSimilarity.cardinalities(targets), matrix);
+        Assert.assertArrayEquals(result, matrix, 0f);
+    }
+
+    @Test public void testTversky() {
+        long[] query = words(1, 2, 3, 4);
+        long[] target = words(1, 2, 5);
+        Assert.assertEquals(PackedSimilarity.tanimoto(query, target),
+                            PackedSimilarity.tversky(query, target, 1f, 1f), 0.0001);
+        Assert.assertEquals(PackedSimilarity.dice(query, target),
+                            PackedSimilarity.tversky(query, target, 0.5f, 0.5f), 0.0001);
+        // a substructure-like score: bits only set in the target are ignored
+        Assert.assertEquals(2f / 4, PackedSimilarity.tversky(query, target, 1f, 0f), 0.0001);
+
+        long[][] targets = {target, query};
+        float[] result = new float[2];
+        PackedSimilarity.tversky(query, 4, targets, PackedSimilarity.cardinalities(targets),
+                                 1f, 0f, result);
+        Assert.assertEquals(0.5f, result[0], 0.0001);
+        Assert.assertEquals(1f, result[1], 0.0001);
+        float[] matrix = new float[4];
+        PackedSimilarity.tversky(targets, PackedSimilarity.cardinalities(targets),
+                                 targets, PackedSimilarity.cardinalities(targets), 1f, 0f, matrix);
+        Assert.assertEquals(2f / 3, matrix[1], 0.0001);
+        Assert.assertEquals(0.5f, matrix[2], 0.0001);
+    }
+
+    @Test public void testCosine() {
+        long[] query = words(1, 2, 3, 4);
+        long[] target = words(1, 5);
+        Assert.assertEquals(1 / Math.sqrt(8), PackedSimilarity.cosine(query, target), 0.0001);
+        long[][] targets = {target};
+        float[] result = new float[1];
+        PackedSimilarity.cosine(query, 4, targets, new int[]{2}, result);
+        Assert.assertEquals(1 / Math.sqrt(8), result[0], 0.0001);
+        PackedSimilarity.cosine(new long[][]{query}, new int[]{4}, targets, new int[]{2}, result);
+        Assert.assertEquals(1 / Math.sqrt(8), result[0], 0.0001);
+    }
+
+    private static Map<String, Integer> counts(Object... features) {
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        for (int i = 0; i < features.length; i += 2)
+            map.put((String)features[i], (Integer)features[i + 1]);
+        return map;
+    }
+
+    @Test public void testTanimoto_CountFingerprint() throws Exception {
+        CountFingerprint fingerprint1 = new CountFingerprint(counts("CC", 2, "CO", 1, "c1", 4));
+        CountFingerprint fingerprint2 = new CountFingerprint(counts("CC", 1, "c1", 4, "N", 3));
+        Assert.assertEquals(3, fingerprint1.size());
+        Assert.assertEquals(7, fingerprint1.getTotalCount());
+        // common 1 + 4, union 7 + 8 - 5
+        Assert.assertEquals(0.5f, PackedSimilarity.tanimoto(fingerprint1, fingerprint2), 0.0001);
+
+        LingoFingerprinter fingerprinter = new LingoFingerprinter();
+        CountFingerprint indole = new CountFingerprint(
+            fingerprinter.getRawFingerprint(MoleculeFactory.makeIndole()));
+        Assert.assertEquals(1f, PackedSimilarity.tanimoto(indole, indole), 0.0001);
+
+        CountFingerprint[] targets = {fingerprint2, fingerprint1, indole};
+        float[] result = new float[3];
+        PackedSimilarity.tanimoto(fingerprint1, targets, result);
+        Assert.assertEquals(0.5f, result[0], 0.0001);
+        Assert.assertEquals(1f, result[1], 0.0001);
+
+        CountFingerprint empty = new CountFingerprint(new HashMap<String, Integer>());
+        Assert.assertEquals(0f, PackedSimilarity.tanimoto(empty, empty), 0f);
+    }
+
+    @Test public void testDice_CountFingerprint() {
+        CountFingerprint fingerprint1 = new CountFingerprint(counts("CC", 2, "CO", 1, "c1", 4));
+        CountFingerprint fingerprint2 = new CountFingerprint(counts("CC", 1, "c1", 4, "N", 3));
+        Assert.assertEquals(2f * 5 / 15, PackedSimilarity.dice(fingerprint1, fingerprint2), 0.0001);
+    }
+
+    @Test public void testCosine_CountFingerprint() {
+        CountFingerprint fingerprint1 = new CountFingerprint(counts("CC", 2, "CO", 1, "c1", 4));
+        CountFingerprint fingerprint2 = new CountFingerprint(counts("CC", 1, "c1", 4, "N", 3));
+        Assert.assertEquals(21.0, fingerprint1.getSquaredNorm(), 0.0);
+        Assert.assertEquals(18 / Math.sqrt(21 * 26),
+                            PackedSimilarity.cosine(fingerprint1, fingerprint2), 0.0001);
+    }
+}
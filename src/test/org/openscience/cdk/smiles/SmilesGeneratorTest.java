@@ -27,6 +27,8 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.vecmath.Point2d;
 
@@ -968,5 +970,45 @@ public class SmilesGeneratorTest extends CDKTestCase {
         String smileswitharomaticity = sg.createSMILESWithoutCheckForMultipleMolecules(benzene, false, new boolean[benzene.getBondCount()]);
         Assert.assertEquals("c1ccccc1", smileswitharomaticity);
     }
-}
 
+    /**
+     * One generator shared by several threads gives the same SMILES as
+     * when used by one thread.
+     */
+    @Test public void testCreateSMILES_Concurrent() throws Exception {
+        final SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        final String[] input = {
+            "OC(=O)C1=CC=CC=C1O", "CC(C)CC1=CC=C(C=C1)C(C)C(O)=O", "C1CCC2(CC1)CCCC2",
+            "CN1C=NC2=C1C(=O)N(C)C(=O)N2C", "ClC1=CC=C(Cl)C(Cl)=C1", "CC(=O)NC1=CC=C(O)C=C1.[Na+].[Cl-]"
+        };
+        final SmilesGenerator sg = new SmilesGenerator();
+        final String[] expected = new String[input.length];
+        for (int i = 0; i < input.length; i++)
+            expected[i] = sg.createSMILES(sp.parseSmiles(input[i]));
+
+        final List<IAtomContainer[]> molecules = new ArrayList<IAtomContainer[]>();
+        final int threadCount = 4;
+        for (int t = 0; t < threadCount; t++) {
+            IAtomContainer[] copies = new IAtomContainer[input.length];
+            for (int i = 0; i < input.length; i++) copies[i] = sp.parseSmiles(input[i]);
+            molecules.add(copies);
+        }
+        final String[][] actual = new String[threadCount][input.length];
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int repeat = 0; repeat < 20; repeat++) {
+                        for (int i = 0; i < input.length; i++)
+                            actual[thread][i] = sg.createSMILES(molecules.get(thread)[i]);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        for (int t = 0; t < threadCount; t++)
+            Assert.assertArrayEquals(expected, actual[t]);
+    }
+}
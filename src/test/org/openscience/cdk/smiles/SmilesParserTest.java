@@ -2329,6 +2329,58 @@ public class SmilesParserTest extends CDKTestCase {
         Assert.assertEquals(3, clone.getAtom(1).getFormalNeighbourCount().intValue());
     }
 
+    @Test public void testPerceivingAtomTypes() throws InvalidSmilesException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        Assert.assertTrue(sp.isPerceivingAtomTypes());
+        sp.setPerceivingAtomTypes(false);
+        Assert.assertFalse(sp.isPerceivingAtomTypes());
+
+        IAtomContainer molecule = sp.parseSmiles("Oc1ccncc1CS(=O)(=O)[O-]");
+        Assert.assertEquals(12, molecule.getAtomCount());
+        for (IAtom atom : molecule.atoms())
+            Assert.assertNull(atom.getAtomTypeName());
+        int[] hydrogens = {1, 0, 1, 1, 0, 1, 0, 2, 0, 0, 0, 0};
+        for (int i = 0; i < molecule.getAtomCount(); i++)
+            Assert.assertEquals(hydrogens[i], molecule.getAtom(i).getImplicitHydrogenCount().intValue());
+        Assert.assertEquals(-1, molecule.getAtom(11).getFormalCharge().intValue());
+        Assert.assertEquals(6, countAromaticAtoms(molecule));
+        Assert.assertEquals(6, countAromaticBonds(molecule));
+
+        molecule = sp.parseSmiles("CP(C)(C)=O.N#CC=CBr");
+        int[] expected = {3, 0, 3, 3, 0, 0, 0, 1, 1, 0};
+        for (int i = 0; i < molecule.getAtomCount(); i++)
+            Assert.assertEquals(expected[i], molecule.getAtom(i).getImplicitHydrogenCount().intValue());
+        Assert.assertEquals(0, countAromaticAtoms(molecule));
+    }
+
+    /**
+     * The deferred perception must give the same molecule as parsing with
+     * perception.
+     */
+    @Test public void testPerceiveAtomTypesAndAromaticity() throws Exception {
+        SmilesParser full = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        SmilesParser fast = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        fast.setPerceivingAtomTypes(false);
+        String[] smiles = {
+            "Oc1ccc(Cl)c2C(=O)c3c(sc4nccn34)C(=O)c12", "COc1ccc2[nH]c3c(cnn4c(C)nnc34)c2c1",
+            "CC(=O)[O-].[Na+]", "C1CCC=CC1", "c1ccc2ccccc2c1", "O=C1C=CC(=O)C=C1"
+        };
+        for (String smi : smiles) {
+            IAtomContainer expected = full.parseSmiles(smi);
+            IAtomContainer actual = fast.parseSmiles(smi);
+            fast.perceiveAtomTypesAndAromaticity(actual);
+            Assert.assertEquals(expected.getAtomCount(), actual.getAtomCount());
+            for (int i = 0; i < expected.getAtomCount(); i++) {
+                IAtom e = expected.getAtom(i);
+                IAtom a = actual.getAtom(i);
+                Assert.assertEquals(smi, e.getAtomTypeName(), a.getAtomTypeName());
+                Assert.assertEquals(smi, e.getImplicitHydrogenCount(), a.getImplicitHydrogenCount());
+                Assert.assertEquals(smi, e.getFlag(CDKConstants.ISAROMATIC), a.getFlag(CDKConstants.ISAROMATIC));
+            }
+            Assert.assertEquals(smi, countAromaticBonds(expected), countAromaticBonds(actual));
+        }
+    }
+
     /**
      * Counts aromatic atoms in a molecule.
      * @param mol molecule for which to count aromatic atoms.
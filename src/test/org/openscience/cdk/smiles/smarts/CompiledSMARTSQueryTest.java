@@ -0,0 +1,158 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.fingerprint.StandardSubstructureSets;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.SubstructureMatcher;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class CompiledSMARTSQueryTest extends CDKTestCase {
+
+    private static final String[] MOLECULES = {
+        "CC(=O)OC(=O)C", "c1ccncc1", "CCc1ccccc1", "OC(=O)C(N)Cc1c[nH]c2ccccc12",
+        "CC(C)(C)c1ccc(O)cc1", "ClC(Cl)(Cl)C(O)O", "C1CC1C(=O)NS(=O)(=O)c1ccccc1",
+        "CN1C=NC2=C1C(=O)N(C(=O)N2C)C", "[Na+].[Cl-]", "C=CC=CC#N", "[2H]C([2H])([2H])O",
+        "C1CCC2CCCCC2C1", "[NH4+].[O-]C(=O)c1ccccc1", "O=[N+]([O-])c1ccc(Br)cc1"
+    };
+
+    // primitives, logical operators and recursive SMARTS
+    private static final String[] SMARTS = {
+        "[C;H2;R1]", "[c,n]", "[!#6;!#1]", "[#7,#8;!R]", "[CX4]", "[D3]", "[v4]", "[h1]",
+        "[R2]", "[r6]", "[x2]", "[+]", "[-1]", "[2H]", "[$(C=O)]", "[$(C(=O)O)]O",
+        "[$([CX3](=O)[OX2H1]),$([CX3](=O)[OX1-])]", "[$(C[$(C=O)])]", "C!@C", "c:c",
+        "C=,#C", "[C&!R]-[C&R]", "*~*", "[A]", "[a;X2]", "[Cl,Br,I]", "[#6]=,:[#7]",
+        "[^2]", "[G17]", "N~*~O", "[$([NH2]),$([NH3+])]C"
+    };
+
+    private final SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    @Test public void testGetQuery() throws Exception {
+        QueryAtomContainer query = SMARTSParser.parse("C=O");
+        Assert.assertSame(query, new CompiledSMARTSQuery(query).getQuery());
+    }
+
+    @Test public void testCompiledSMARTSQuery_IQueryAtomContainer() throws Exception {
+        QueryAtomContainer query = SMARTSParser.parse("[$(C=O)]O");
+        CompiledSMARTSQuery compiled = new CompiledSMARTSQuery(query);
+        Assert.assertSame(query, compiled.getQuery());
+        // the compiled query does not depend on the target it is matched against
+        Assert.assertTrue(compiled.matches(new SMARTSTarget(parser.parseSmiles("CC(=O)O"))));
+        Assert.assertFalse(compiled.matches(new SMARTSTarget(parser.parseSmiles("CCO"))));
+        Assert.assertTrue(compiled.matches(new SMARTSTarget(parser.parseSmiles("CC(=O)OC"))));
+    }
+
+    @Test public void testMatches_SMARTSTarget() throws Exception {
+        CompiledSMARTSQuery query = new CompiledSMARTSQuery(SMARTSParser.parse("C(=O)[OH]"));
+        SMARTSTarget acid = new SMARTSTarget(parser.parseSmiles("CC(=O)O"));
+        SMARTSTarget ester = new SMARTSTarget(parser.parseSmiles("CC(=O)OC"));
+        Assert.assertTrue(query.matches(acid));
+        Assert.assertFalse(query.matches(ester));
+    }
+
+    @Test public void testGetFirstMatch_SMARTSTarget() throws Exception {
+        CompiledSMARTSQuery query = new CompiledSMARTSQuery(SMARTSParser.parse("C(=O)[OH]"));
+        SMARTSTarget acid = new SMARTSTarget(parser.parseSmiles("CC(=O)O"));
+        SMARTSTarget ester = new SMARTSTarget(parser.parseSmiles("CC(=O)OC"));
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, query.getFirstMatch(acid));
+        Assert.assertNull(query.getFirstMatch(ester));
+    }
+
+    @Test public void testCountMatches_SMARTSTarget() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles("c1ccccc1CC"));
+        Assert.assertEquals(6, new CompiledSMARTSQuery(SMARTSParser.parse("c")).countMatches(target));
+        Assert.assertEquals(12, new CompiledSMARTSQuery(SMARTSParser.parse("cc")).countMatches(target));
+        Assert.assertEquals(0, new CompiledSMARTSQuery(SMARTSParser.parse("N")).countMatches(target));
+    }
+
+    @Test public void testGetMatches_SMARTSTarget() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles("OCCO"));
+        List<int[]> matches = new CompiledSMARTSQuery(SMARTSParser.parse("CO")).getMatches(target);
+        Assert.assertEquals(2, matches.size());
+        Assert.assertArrayEquals(new int[]{1, 0}, matches.get(0));
+        Assert.assertArrayEquals(new int[]{2, 3}, matches.get(1));
+    }
+
+    /**
+     * A recursive SMARTS matches the atoms its first atom can be mapped on,
+     * also when it is nested in another recursive SMARTS.
+     */
+    @Test public void testRecursive() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles("CC(=O)OCC(=O)N"));
+        Assert.assertEquals(2, new CompiledSMARTSQuery(SMARTSParser.parse("[$(C=O)]")).countMatches(target));
+        Assert.assertEquals(1, new CompiledSMARTSQuery(SMARTSParser.parse("[$(C(=O)N)]")).countMatches(target));
+        Assert.assertEquals(2, new CompiledSMARTSQuery(SMARTSParser.parse("[$(C[$(C=O)])]")).countMatches(target));
+        Assert.assertEquals(1, new CompiledSMARTSQuery(SMARTSParser.parse("[$(C[$(C(=O)O)])]")).countMatches(target));
+    }
+
+    /**
+     * The compiled queries give the same matches as the query atoms and bonds
+     * themselves.
+     */
+    @Test public void testSameAsSubstructureMatcher() throws Exception {
+        String[] groups = StandardSubstructureSets.getFunctionalGroupSMARTS();
+        String[] smarts = new String[groups.length + SMARTS.length];
+        System.arraycopy(groups, 0, smarts, 0, groups.length);
+        System.arraycopy(SMARTS, 0, smarts, groups.length, SMARTS.length);
+        for (String smiles : MOLECULES) {
+            IAtomContainer molecule = parser.parseSmiles(smiles);
+            SMARTSTarget target = new SMARTSTarget(molecule);
+            for (String pattern : smarts) {
+                QueryAtomContainer query = SMARTSParser.parse(pattern);
+                SMARTSQueryTool.initializeRecursiveSmarts(query, target.getContainer());
+                List<int[]> expected = new SubstructureMatcher(query).getMatches(target.getContainer());
+                CompiledSMARTSQuery compiled = new CompiledSMARTSQuery(query);
+                List<int[]> actual = compiled.getMatches(target);
+                String message = pattern + " in " + smiles;
+                Assert.assertEquals(message, expected.size(), actual.size());
+                Assert.assertEquals(message, atomSets(expected), atomSets(actual));
+                Assert.assertEquals(message, expected.size(), compiled.countMatches(target));
+                Assert.assertEquals(message, !expected.isEmpty(), compiled.matches(target));
+            }
+        }
+    }
+
+    private static Set<BitSet> atomSets(List<int[]> mappings) {
+        Set<BitSet> atomSets = new HashSet<BitSet>();
+        for (int[] mapping : mappings) {
+            BitSet atoms = new BitSet();
+            for (int atom : mapping) atoms.set(atom);
+            atomSets.add(atoms);
+        }
+        return atomSets;
+    }
+}
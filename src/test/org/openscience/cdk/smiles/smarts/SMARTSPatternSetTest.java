@@ -0,0 +1,148 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.StandardSubstructureSets;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class SMARTSPatternSetTest extends CDKTestCase {
+
+    private static final String[] MOLECULES = {
+        "CC(=O)OC(=O)C", "c1ccncc1", "CCc1ccccc1", "OC(=O)C(N)Cc1c[nH]c2ccccc12",
+        "CC(C)(C)c1ccc(O)cc1", "ClC(Cl)(Cl)C(O)O", "C1CC1C(=O)NS(=O)(=O)c1ccccc1",
+        "CN1C=NC2=C1C(=O)N(C(=O)N2C)C", "[Na+].[Cl-]", "C=CC=CC#N"
+    };
+
+    private final SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    @Test public void testSMARTSPatternSet_arrayString() throws Exception {
+        String[] smarts = {"O=CO", "n"};
+        SMARTSPatternSet patterns = new SMARTSPatternSet(smarts);
+        // the set keeps its own copy of the patterns
+        smarts[0] = "C";
+        Assert.assertEquals("O=CO", patterns.getSmarts(0));
+        Assert.assertEquals(0, new SMARTSPatternSet(new String[0]).getPatternCount());
+    }
+
+    @Test public void testGetPatternCount() throws Exception {
+        SMARTSPatternSet patterns = new SMARTSPatternSet(new String[]{"O=CO", "n"});
+        Assert.assertEquals(2, patterns.getPatternCount());
+    }
+
+    @Test public void testGetSmarts_int() throws Exception {
+        SMARTSPatternSet patterns = new SMARTSPatternSet(new String[]{"O=CO", "n"});
+        Assert.assertEquals("O=CO", patterns.getSmarts(0));
+        Assert.assertEquals("n", patterns.getSmarts(1));
+    }
+
+    @Test(expected = CDKException.class)
+    public void testInvalidSmarts() throws Exception {
+        new SMARTSPatternSet(new String[]{"O=CO", "[C"});
+    }
+
+    /**
+     * The patterns found are those found by a {@link SMARTSQueryTool}.
+     */
+    @Test public void testMatches_IAtomContainer() throws Exception {
+        String[] smarts = StandardSubstructureSets.getFunctionalGroupSMARTS();
+        SMARTSPatternSet patterns = new SMARTSPatternSet(smarts);
+        SMARTSQueryTool querytool = new SMARTSQueryTool("C");
+        for (String smiles : MOLECULES) {
+            BitSet matches = patterns.matches(parser.parseSmiles(smiles));
+            IAtomContainer molecule = parser.parseSmiles(smiles);
+            for (int i = 0; i < smarts.length; i++) {
+                querytool.setSmarts(smarts[i]);
+                Assert.assertEquals(smarts[i] + " in " + smiles, querytool.matches(molecule), matches.get(i));
+            }
+        }
+    }
+
+    @Test public void testCountUniqueMatches_IAtomContainer() throws Exception {
+        String[] smarts = StandardSubstructureSets.getFunctionalGroupSMARTS();
+        SMARTSPatternSet patterns = new SMARTSPatternSet(smarts);
+        SMARTSQueryTool querytool = new SMARTSQueryTool("C");
+        for (String smiles : MOLECULES) {
+            int[] counts = patterns.countUniqueMatches(parser.parseSmiles(smiles));
+            IAtomContainer molecule = parser.parseSmiles(smiles);
+            for (int i = 0; i < smarts.length; i++) {
+                querytool.setSmarts(smarts[i]);
+                querytool.matches(molecule);
+                Assert.assertEquals(smarts[i] + " in " + smiles,
+                                    querytool.getUniqueMatchingAtoms().size(), counts[i]);
+            }
+        }
+
+        patterns = new SMARTSPatternSet(new String[]{"O=CO", "C", "[#7]"});
+        Assert.assertArrayEquals(new int[]{2, 4, 0}, patterns.countUniqueMatches(parser.parseSmiles("CC(=O)OC(=O)C")));
+    }
+
+    @Test public void testMatches_SMARTSTarget() throws Exception {
+        String[] smarts = StandardSubstructureSets.getFunctionalGroupSMARTS();
+        SMARTSPatternSet patterns = new SMARTSPatternSet(smarts);
+        for (String smiles : MOLECULES) {
+            SMARTSTarget target = new SMARTSTarget(parser.parseSmiles(smiles));
+            Assert.assertEquals(smiles, patterns.matches(parser.parseSmiles(smiles)), patterns.matches(target));
+        }
+    }
+
+    @Test public void testCountUniqueMatches_SMARTSTarget() throws Exception {
+        String[] smarts = StandardSubstructureSets.getFunctionalGroupSMARTS();
+        SMARTSPatternSet patterns = new SMARTSPatternSet(smarts);
+        for (String smiles : MOLECULES) {
+            SMARTSTarget target = new SMARTSTarget(parser.parseSmiles(smiles));
+            Assert.assertArrayEquals(smiles, patterns.countUniqueMatches(parser.parseSmiles(smiles)),
+                                     patterns.countUniqueMatches(target));
+        }
+    }
+
+    @Test public void testSetExecutor_ExecutorService() throws Exception {
+        String[] smarts = StandardSubstructureSets.getFunctionalGroupSMARTS();
+        SMARTSPatternSet serial = new SMARTSPatternSet(smarts);
+        SMARTSPatternSet parallel = new SMARTSPatternSet(smarts);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            parallel.setExecutor(executor);
+            for (String smiles : MOLECULES) {
+                Assert.assertEquals(serial.matches(parser.parseSmiles(smiles)),
+                                    parallel.matches(parser.parseSmiles(smiles)));
+                Assert.assertArrayEquals(serial.countUniqueMatches(parser.parseSmiles(smiles)),
+                                         parallel.countUniqueMatches(parser.parseSmiles(smiles)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -23,10 +23,12 @@ package org.openscience.cdk.smiles.smarts;
 import static java.util.Collections.sort;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.aromaticity.CDKHueckelAromaticityDetector;
@@ -34,10 +36,13 @@ import org.openscience.cdk.config.Elements;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.SubstructureScreen;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
 import org.openscience.cdk.smiles.SmilesGenerator;
 import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
 import org.openscience.cdk.templates.MoleculeFactory;
 
 /**
@@ -203,4 +208,170 @@ public class SMARTSQueryToolTest extends CDKTestCase {
         Assert.assertFalse(matches);
 
     }
+
+    @Test
+    public void testInitializeMolecule_IAtomContainer() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer ethylbenzene = sp.parseSmiles("CCc1ccccc1");
+        SMARTSQueryTool.initializeMolecule(ethylbenzene);
+        Assert.assertEquals(3, ethylbenzene.getAtom(0).getProperty(CDKConstants.TOTAL_H_COUNT));
+        Assert.assertEquals(4, ethylbenzene.getAtom(0).getProperty(CDKConstants.TOTAL_CONNECTIONS));
+        Assert.assertNull(ethylbenzene.getAtom(1).getProperty(CDKConstants.RING_SIZES));
+        List<?> ringSizes = (List<?>) ethylbenzene.getAtom(2).getProperty(CDKConstants.RING_SIZES);
+        Assert.assertEquals(1, ringSizes.size());
+        Assert.assertEquals(6, ringSizes.get(0));
+        Assert.assertTrue(ethylbenzene.getAtom(2).getFlag(CDKConstants.ISAROMATIC));
+    }
+
+    @Test
+    public void testInitializeRecursiveSmarts_QueryAtomContainer_IAtomContainer() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer acid = sp.parseSmiles("CC(=O)O");
+        SMARTSQueryTool.initializeMolecule(acid);
+        // the nested recursive SMARTS needs the target too
+        QueryAtomContainer query = SMARTSParser.parse("[$(C[$(C=O)])]");
+        SMARTSQueryTool.initializeRecursiveSmarts(query, acid);
+        IQueryAtom atom = (IQueryAtom) query.getAtom(0);
+        Assert.assertTrue(atom.matches(acid.getAtom(0)));
+        Assert.assertFalse(atom.matches(acid.getAtom(1)));
+    }
+
+    @Test
+    public void testMatches_IAtomContainer_BitSet() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer anhydride = sp.parseSmiles("CC(=O)OC(=O)C");
+        IAtomContainer pyridine = sp.parseSmiles("c1ccncc1");
+        SubstructureScreen screen = new SubstructureScreen();
+        SMARTSQueryTool querytool = new SMARTSQueryTool("O=CO");
+        querytool.setScreen(screen);
+
+        Assert.assertTrue(querytool.matches(anhydride, screen.getFingerprint(anhydride)));
+        Assert.assertEquals(2, querytool.countMatches());
+        Assert.assertFalse(querytool.matches(pyridine, screen.getFingerprint(pyridine)));
+        Assert.assertEquals(0, querytool.countMatches());
+        Assert.assertEquals(2, screen.getCandidateCount());
+        Assert.assertEquals(1, screen.getScreenedOutCount());
+
+        // the query fingerprint follows a new pattern
+        querytool.setSmarts("n");
+        BitSet fingerprint = screen.getFingerprint(pyridine);
+        Assert.assertTrue(querytool.matches(pyridine, fingerprint));
+        Assert.assertEquals(1, querytool.countMatches());
+    }
+
+    @Test(expected = CDKException.class)
+    public void testMatches_IAtomContainer_BitSet_NoScreen() throws Exception {
+        SMARTSQueryTool querytool = new SMARTSQueryTool("O=CO");
+        querytool.matches(MoleculeFactory.makeBenzene(), new BitSet());
+    }
+
+    @Test
+    public void testSetScreen_SubstructureScreen() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer pyridine = sp.parseSmiles("c1ccncc1");
+        SubstructureScreen screen = new SubstructureScreen();
+        SMARTSQueryTool querytool = new SMARTSQueryTool("O=CO");
+        querytool.setScreen(screen);
+        Assert.assertFalse(querytool.matches(pyridine, screen.getFingerprint(pyridine)));
+        Assert.assertEquals(1, screen.getScreenedOutCount());
+        // the screen can be shared by several query tools
+        SMARTSQueryTool nitrogen = new SMARTSQueryTool("n");
+        nitrogen.setScreen(screen);
+        Assert.assertTrue(nitrogen.matches(pyridine, screen.getFingerprint(pyridine)));
+        Assert.assertEquals(2, screen.getCandidateCount());
+        Assert.assertEquals(1, screen.getScreenedOutCount());
+        // and removed again
+        querytool.setScreen(null);
+        try {
+            querytool.matches(pyridine, screen.getFingerprint(pyridine));
+            Assert.fail("Matching on a fingerprint requires a screen");
+        } catch (CDKException exception) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testHasMatch_IAtomContainer() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        SMARTSQueryTool querytool = new SMARTSQueryTool("O=CO");
+        Assert.assertTrue(querytool.hasMatch(sp.parseSmiles("CC(=O)OC(=O)C")));
+        Assert.assertEquals(1, querytool.countMatches());
+        Assert.assertEquals(1, querytool.getMatchingAtoms().size());
+        Assert.assertFalse(querytool.hasMatch(sp.parseSmiles("c1ccncc1")));
+        Assert.assertEquals(0, querytool.countMatches());
+    }
+
+    @Test
+    public void testCountMatches_IAtomContainer() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        SMARTSQueryTool querytool = new SMARTSQueryTool("O=CO");
+        IAtomContainer anhydride = sp.parseSmiles("CC(=O)OC(=O)C");
+        Assert.assertEquals(2, querytool.countMatches(anhydride));
+        Assert.assertEquals(2, querytool.countMatches());
+        Assert.assertNull(querytool.getMatchingAtoms());
+        querytool.matches(anhydride);
+        Assert.assertEquals(2, querytool.getMatchingAtoms().size());
+    }
+
+    @Test
+    public void testMatches_SMARTSTarget() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer molecule = sp.parseSmiles("OC(=O)c1ccccc1CC(=O)O");
+        SMARTSTarget target = new SMARTSTarget(molecule);
+        SMARTSQueryTool querytool = new SMARTSQueryTool("[OH]C(=O)c");
+        Assert.assertTrue(querytool.matches(target));
+        Assert.assertEquals(1, querytool.countMatches());
+        Assert.assertEquals(4, querytool.getMatchingAtoms().get(0).size());
+        querytool.setSmarts("[R1]!@[CH2]");
+        Assert.assertTrue(querytool.matches(target));
+        Assert.assertEquals(1, querytool.countMatches());
+        // the molecule is left as it was
+        for (IAtom atom : molecule.atoms()) {
+            Assert.assertNull(atom.getProperty(CDKConstants.RING_SIZES));
+            Assert.assertNull(atom.getProperty(CDKConstants.TOTAL_H_COUNT));
+        }
+        // and matches the same as the prepared target
+        Assert.assertTrue(querytool.matches(molecule));
+        Assert.assertEquals(1, querytool.countMatches());
+    }
+
+    @Test
+    public void testHasMatch_SMARTSTarget() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        SMARTSTarget target = new SMARTSTarget(sp.parseSmiles("CC(=O)OC(=O)C"));
+        SMARTSQueryTool querytool = new SMARTSQueryTool("O=CO");
+        Assert.assertTrue(querytool.hasMatch(target));
+        Assert.assertEquals(1, querytool.getMatchingAtoms().size());
+        querytool.setSmarts("[$(C=O)]O[$(C=O)]");
+        Assert.assertTrue(querytool.hasMatch(target));
+        querytool.setSmarts("n");
+        Assert.assertFalse(querytool.hasMatch(target));
+        Assert.assertEquals(0, querytool.countMatches());
+    }
+
+    @Test
+    public void testCountMatches_SMARTSTarget() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        SMARTSTarget target = new SMARTSTarget(sp.parseSmiles("CC(=O)OC(=O)C"));
+        SMARTSQueryTool querytool = new SMARTSQueryTool("O=CO");
+        Assert.assertEquals(2, querytool.countMatches(target));
+        Assert.assertNull(querytool.getMatchingAtoms());
+        querytool.setSmarts("[CH3]");
+        Assert.assertEquals(2, querytool.countMatches(target));
+    }
+
+    @Test
+    public void testSetUseRGraph_boolean() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer ethylbenzene = sp.parseSmiles("CCc1ccccc1");
+        SMARTSQueryTool querytool = new SMARTSQueryTool("c-C");
+        Assert.assertTrue(querytool.matches(ethylbenzene));
+        Assert.assertEquals(1, querytool.countMatches());
+        // the bond based search reports the single bond mapping twice
+        querytool.setUseRGraph(true);
+        Assert.assertTrue(querytool.matches(ethylbenzene));
+        Assert.assertEquals(2, querytool.countMatches());
+        Assert.assertEquals(1, querytool.getUniqueMatchingAtoms().size());
+        Assert.assertTrue(querytool.hasMatch(ethylbenzene));
+    }
 }
@@ -0,0 +1,210 @@
+/* Copyright (C) 2010  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.cdk.smiles.smarts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class SMARTSTargetTest extends CDKTestCase {
+
+    // bicyclo[4.2.0]octane with an ethyl group
+    private static final String BICYCLOOCTANE = "CCC1CCC2CCC2C1";
+
+    private final SmilesParser parser = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    @Test public void testSMARTSTarget_IAtomContainer() throws Exception {
+        IAtomContainer molecule = parser.parseSmiles("C1=CC=CC=C1O");
+        SMARTSTarget target = new SMARTSTarget(molecule);
+        // the target is prepared on a copy
+        Assert.assertNotSame(molecule, target.getContainer());
+        Assert.assertEquals(7, target.getAtomCount());
+        Assert.assertTrue(target.isAromatic(0));
+        Assert.assertNull(molecule.getAtom(0).getProperty(CDKConstants.RING_SIZES));
+    }
+
+    @Test public void testSMARTSTarget_IAtomContainer_IAtomContainer() throws Exception {
+        IAtomContainer molecule = parser.parseSmiles("C1=CC=CC=C1O");
+        SMARTSQueryTool.initializeMolecule(molecule);
+        SMARTSTarget target = new SMARTSTarget(molecule, molecule);
+        Assert.assertSame(molecule, target.getMolecule());
+        Assert.assertSame(molecule, target.getContainer());
+        Assert.assertTrue(target.isAromatic(0));
+        Assert.assertFalse(target.isAromatic(6));
+    }
+
+    @Test public void testGetMolecule() throws Exception {
+        IAtomContainer molecule = parser.parseSmiles("CCO");
+        SMARTSTarget target = new SMARTSTarget(molecule);
+        Assert.assertSame(molecule, target.getMolecule());
+    }
+
+    @Test public void testGetContainer() throws Exception {
+        IAtomContainer molecule = parser.parseSmiles("C1CCC=CC1O");
+        SMARTSTarget target = new SMARTSTarget(molecule);
+        IAtomContainer container = target.getContainer();
+        Assert.assertEquals(molecule.getAtomCount(), container.getAtomCount());
+        Assert.assertNotNull(container.getAtom(0).getProperty(CDKConstants.RING_SIZES));
+    }
+
+    @Test public void testGetAtomCount() throws Exception {
+        Assert.assertEquals(3, new SMARTSTarget(parser.parseSmiles("CCO")).getAtomCount());
+        Assert.assertEquals(2, new SMARTSTarget(parser.parseSmiles("[Na+].[Cl-]")).getAtomCount());
+    }
+
+    /**
+     * The molecule is not modified by the ring perception and aromaticity
+     * detection.
+     */
+    @Test public void testMoleculeNotModified() throws Exception {
+        IAtomContainer molecule = parser.parseSmiles("C1CCC=CC1O");
+        Integer[] valencies = new Integer[molecule.getAtomCount()];
+        for (int i = 0; i < valencies.length; i++) valencies[i] = molecule.getAtom(i).getValency();
+        new SMARTSTarget(molecule);
+        for (int i = 0; i < valencies.length; i++) {
+            IAtom atom = molecule.getAtom(i);
+            Assert.assertNull(atom.getProperty(CDKConstants.RING_SIZES));
+            Assert.assertNull(atom.getProperty(CDKConstants.TOTAL_H_COUNT));
+            Assert.assertEquals(valencies[i], atom.getValency());
+        }
+    }
+
+    @Test public void testIsInRing_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles(BICYCLOOCTANE));
+        Assert.assertFalse(target.isInRing(0));
+        Assert.assertFalse(target.isInRing(1));
+        Assert.assertTrue(target.isInRing(2));
+        Assert.assertTrue(target.isInRing(5));
+    }
+
+    @Test public void testGetRingSizes_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles(BICYCLOOCTANE));
+        Assert.assertEquals(0, target.getRingSizes(0).length);
+        Assert.assertArrayEquals(new int[]{6, 8}, target.getRingSizes(2));
+        // a fusion atom
+        Assert.assertArrayEquals(new int[]{4, 6, 8}, target.getRingSizes(5));
+    }
+
+    @Test public void testGetSmallestRingSize_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles(BICYCLOOCTANE));
+        Assert.assertEquals(0, target.getSmallestRingSize(0));
+        Assert.assertEquals(6, target.getSmallestRingSize(2));
+        Assert.assertEquals(4, target.getSmallestRingSize(5));
+    }
+
+    @Test public void testGetSmallestRingCount_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles(BICYCLOOCTANE));
+        Assert.assertEquals(0, target.getSmallestRingCount(0));
+        Assert.assertEquals(1, target.getSmallestRingCount(2));
+        Assert.assertEquals(2, target.getSmallestRingCount(5));
+    }
+
+    @Test public void testGetRingConnectionCount_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles(BICYCLOOCTANE));
+        Assert.assertEquals(1, target.getRingConnectionCount(1));
+        Assert.assertEquals(3, target.getRingConnectionCount(5));
+    }
+
+    @Test public void testIsRingBond_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles(BICYCLOOCTANE));
+        Assert.assertFalse(target.isRingBond(0));
+        Assert.assertFalse(target.isRingBond(1));
+        Assert.assertTrue(target.isRingBond(2));
+    }
+
+    @Test public void testIsAromatic_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles("CC1=CC=CC=C1"));
+        Assert.assertFalse(target.isAromatic(0));
+        for (int i = 1; i < 7; i++) Assert.assertTrue(target.isAromatic(i));
+    }
+
+    @Test public void testIsAromaticBond_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles("CC1=CC=CC=C1"));
+        Assert.assertFalse(target.isAromaticBond(0));
+        for (int i = 1; i < 7; i++) Assert.assertTrue(target.isAromaticBond(i));
+    }
+
+    @Test public void testGetTotalHydrogenCount_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles("[H]OC(=O)C"));
+        // the oxygen has an explicit hydrogen
+        Assert.assertEquals(1, target.getTotalHydrogenCount(1));
+        Assert.assertEquals(0, target.getTotalHydrogenCount(2));
+        Assert.assertEquals(3, target.getTotalHydrogenCount(4));
+    }
+
+    @Test public void testGetTotalConnectionCount_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles("[H]OC(=O)C"));
+        Assert.assertEquals(2, target.getTotalConnectionCount(1));
+        Assert.assertEquals(4, target.getTotalConnectionCount(4));
+    }
+
+    @Test public void testGetValence_int() throws Exception {
+        SMARTSTarget target = new SMARTSTarget(parser.parseSmiles("CC(=O)[O-]"));
+        Assert.assertEquals(4, target.getValence(0));
+        Assert.assertEquals(2, target.getValence(2));
+    }
+
+    /**
+     * One target can be matched by several query tools at the same time.
+     */
+    @Test public void testMatchedFromThreads() throws Exception {
+        final SMARTSTarget target = new SMARTSTarget(parser.parseSmiles("OC(=O)C1CCC(c2ccccc2)CC1"));
+        final String[] smarts = {"[r6]", "[R1]", "c!@[C;R]", "[$(C=O)][OH]", "[x2]", "[CH2]"};
+        int[] expected = new int[smarts.length];
+        for (int i = 0; i < smarts.length; i++)
+            expected[i] = new SMARTSQueryTool(smarts[i]).countMatches(target);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+            for (int n = 0; n < 8; n++) {
+                futures.add(executor.submit(new Callable<int[]>() {
+                    public int[] call() throws Exception {
+                        int[] counts = new int[smarts.length];
+                        for (int i = 0; i < smarts.length; i++)
+                            counts[i] = new SMARTSQueryTool(smarts[i]).countMatches(target);
+                        return counts;
+                    }
+                }));
+            }
+            for (Future<int[]> future : futures)
+                Assert.assertArrayEquals(expected, future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -308,6 +308,22 @@ public class RecursiveTest extends CDKTestCase {
     }
 
 
+    /**
+     * A recursive SMARTS nested in another one, which is continued after it.
+     */
+    @Test public void testNestedRecursiveSmarts() throws Exception {
+        match("[N;$([H1][C;!$(C=O)])]", "CNC");
+        Assert.assertEquals(1, nmatch);
+        match("[N;$([H1][C;!$(C=O)])]", "CC(=O)NC");
+        Assert.assertEquals(1, nmatch);
+        match("[N;$([H1][C;!$(C=O)])]", "CC(=O)NC(C)=O");
+        Assert.assertEquals(0, nmatch);
+        match("[C;$(C(=O)[N;$([H1][C;!$(C=O)])])]", "CC(=O)NC");
+        Assert.assertEquals(1, nmatch);
+        match("[C;$(C(=O)[N;$([H1][C;!$(C=O)])])]", "CC(=O)NC(C)=O");
+        Assert.assertEquals(0, nmatch);
+    }
+
     @Test public void testBasicAmineOnDrugs() throws Exception {
         String filename = "data/smiles/drugs.smi";
         InputStream ins = this.getClass().getClassLoader().getResourceAsStream(filename);
@@ -52,6 +52,7 @@ import org.openscience.cdk.isomorphism.matchers.QueryAtomContainerCreator;
 import org.openscience.cdk.isomorphism.matchers.SymbolQueryAtom;
 import org.openscience.cdk.isomorphism.matchers.smarts.AnyAtom;
 import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.tools.TimeManager;
 import org.openscience.cdk.templates.MoleculeFactory;
 import org.openscience.cdk.tools.CDKHydrogenAdder;
@@ -479,6 +480,7 @@ public class CDKMCSTest extends CDKTestCase {
     /**
      * Test of setTimeManager method, of class CDKMCS.
      */
+    @SuppressWarnings("deprecation")
     @Test
     public void testSetTimeManager() {
         System.out.println("setTimeManager");
@@ -486,4 +488,22 @@ public class CDKMCSTest extends CDKTestCase {
         CDKMCS.setTimeManager(aTimeManager);
         Assert.assertNotNull(CDKMCS.getTimeManager().getElapsedTimeInSeconds());
     }
+
+    /**
+     * Test of getSubgraphMaps method with a time out, of class CDKMCS.
+     * @throws Exception
+     */
+    @Test
+    public void testGetSubgraphMaps_TimeOut() throws Exception {
+        IAtomContainer mol = MoleculeFactory.makeAlphaPinene();
+        IAtomContainer frag1 = MoleculeFactory.makeCyclohexane();
+        TimeOut timeOut = new TimeOut(-1);
+        Assert.assertEquals(CDKMCS.getSubgraphMaps(mol, frag1, false).size(),
+                CDKMCS.getSubgraphMaps(mol, frag1, false, timeOut).size());
+        Assert.assertFalse(timeOut.isTimeOutFlag());
+
+        timeOut.cancel();
+        Assert.assertTrue(CDKMCS.getSubgraphMaps(mol, frag1, false, timeOut).isEmpty());
+        Assert.assertTrue(timeOut.isTimeOutFlag());
+    }
 }
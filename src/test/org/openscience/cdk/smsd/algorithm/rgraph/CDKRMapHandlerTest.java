@@ -38,7 +38,6 @@ import org.openscience.cdk.exception.InvalidSmilesException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.smiles.SmilesParser;
-import org.openscience.cdk.smsd.helper.FinalMappings;
 
 /**
  * @cdk.module test-smsd
@@ -73,8 +72,9 @@ public class CDKRMapHandlerTest {
     public void testGetSource() {
         System.out.println("getSource");
         IAtomContainer expResult = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
-        CDKRMapHandler.setSource(expResult);
-        IAtomContainer result = CDKRMapHandler.getSource();
+        CDKRMapHandler instance = new CDKRMapHandler();
+        instance.setSource(expResult);
+        IAtomContainer result = instance.getSource();
         Assert.assertEquals(expResult, result);
     }
 
@@ -85,8 +85,9 @@ public class CDKRMapHandlerTest {
     public void testSetSource() {
         System.out.println("setSource");
         IAtomContainer expResult = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
-        CDKRMapHandler.setSource(expResult);
-        IAtomContainer result = CDKRMapHandler.getSource();
+        CDKRMapHandler instance = new CDKRMapHandler();
+        instance.setSource(expResult);
+        IAtomContainer result = instance.getSource();
         Assert.assertEquals(expResult, result);
     }
 
@@ -97,8 +98,9 @@ public class CDKRMapHandlerTest {
     public void testGetTarget() {
         System.out.println("getTarget");
         IAtomContainer expResult = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
-        CDKRMapHandler.setTarget(expResult);
-        IAtomContainer result = CDKRMapHandler.getTarget();
+        CDKRMapHandler instance = new CDKRMapHandler();
+        instance.setTarget(expResult);
+        IAtomContainer result = instance.getTarget();
         Assert.assertEquals(expResult, result);
     }
 
@@ -109,8 +111,9 @@ public class CDKRMapHandlerTest {
     public void testSetTarget() {
         System.out.println("setTarget");
         IAtomContainer expResult = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
-        CDKRMapHandler.setTarget(expResult);
-        IAtomContainer result = CDKRMapHandler.getTarget();
+        CDKRMapHandler instance = new CDKRMapHandler();
+        instance.setTarget(expResult);
+        IAtomContainer result = instance.getTarget();
         Assert.assertEquals(expResult, result);
     }
 
@@ -126,7 +129,7 @@ public class CDKRMapHandlerTest {
         IAtomContainer Molecule2 = sp.parseSmiles("C1CCCC1");
         CDKRMapHandler instance = new CDKRMapHandler();
         instance.calculateOverlapsAndReduce(Molecule1, Molecule2, true);
-        Assert.assertNotNull(FinalMappings.getInstance().getSize());
+        Assert.assertNotNull(instance.getMappings());
     }
 
     /**
@@ -142,7 +145,7 @@ public class CDKRMapHandlerTest {
         CDKRMapHandler instance = new CDKRMapHandler();
         instance.calculateOverlapsAndReduceExactMatch(Molecule1, Molecule2, true);
         // TODO review the generated test code and remove the default call to fail.
-        Assert.assertNotNull(FinalMappings.getInstance().getSize());
+        Assert.assertNotNull(instance.getMappings());
     }
 
     /**
@@ -24,6 +24,14 @@ package org.openscience.cdk.smsd.factory;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.openscience.cdk.DefaultChemObjectBuilder;
@@ -383,4 +391,93 @@ public class SubStructureSearchAlgorithmsTest {
 
         assertEquals(score, smsd2.getEuclideanDistance(), 0.005);
     }
+
+    /**
+     * Test of isTimeOut method, of class Isomorphism.
+     * @throws Exception
+     */
+    @Test
+    public void testIsTimeOut() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer target = sp.parseSmiles("C1=CC2=C(C=C1)C=CC=C2");
+        IAtomContainer queryac = sp.parseSmiles("C1=CC=CC=C1");
+
+        Isomorphism smsd1 = new Isomorphism(Algorithm.DEFAULT, true);
+        smsd1.init(queryac, target, true, true);
+        Assert.assertFalse(smsd1.isTimeOut());
+        Assert.assertEquals(6, smsd1.getFirstMapping().size());
+        smsd1.resetTimeOut();
+        Assert.assertFalse(smsd1.isTimeOut());
+    }
+
+    /**
+     * A cancelled search stops and reports the time out, without affecting
+     * the other instances.
+     * @throws Exception
+     */
+    @Test
+    public void testCancel() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer target = sp.parseSmiles("C1=CC2=C(C=C1)C=CC=C2");
+        IAtomContainer queryac = sp.parseSmiles("C1=CC=CC=C1");
+
+        Isomorphism cancelled = new Isomorphism(Algorithm.DEFAULT, true);
+        Isomorphism other = new Isomorphism(Algorithm.DEFAULT, true);
+        cancelled.cancel();
+        cancelled.init(queryac, target, true, true);
+        Assert.assertTrue(cancelled.isTimeOut());
+
+        other.init(queryac, target, true, true);
+        Assert.assertFalse(other.isTimeOut());
+        Assert.assertEquals(6, other.getFirstMapping().size());
+    }
+
+    /**
+     * Two different searches running at the same time each get their own
+     * mappings, the same as when they are run one after the other.
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentSearches() throws Exception {
+        final String[][] jobs = {
+            {"C1=CC=CC=C1", "C1=CC2=C(C=C1)C=CC=C2"},
+            {"CC(=O)O", "OCC(=O)OCC(N)C(=O)O"}
+        };
+        Algorithm[] algorithms = {Algorithm.DEFAULT, Algorithm.MCSPlus,
+            Algorithm.VFLibMCS, Algorithm.CDKMCS, Algorithm.SubStructure};
+        ExecutorService executor = Executors.newFixedThreadPool(jobs.length);
+        try {
+            for (final Algorithm algorithm : algorithms) {
+                List<List<Map<Integer, Integer>>> expected = new ArrayList<List<Map<Integer, Integer>>>();
+                for (String[] job : jobs) {
+                    expected.add(search(algorithm, job));
+                }
+                Assert.assertFalse(expected.get(0).equals(expected.get(1)));
+                for (int round = 0; round < 10; round++) {
+                    List<Future<List<Map<Integer, Integer>>>> results =
+                            new ArrayList<Future<List<Map<Integer, Integer>>>>();
+                    for (final String[] job : jobs) {
+                        results.add(executor.submit(new Callable<List<Map<Integer, Integer>>>() {
+
+                            public List<Map<Integer, Integer>> call() throws Exception {
+                                return search(algorithm, job);
+                            }
+                        }));
+                    }
+                    for (int i = 0; i < jobs.length; i++) {
+                        Assert.assertEquals(algorithm.toString(), expected.get(i), results.get(i).get());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Map<Integer, Integer>> search(Algorithm algorithm, String[] job) throws CDKException {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        Isomorphism smsd = new Isomorphism(algorithm, true);
+        smsd.init(sp.parseSmiles(job[0]), sp.parseSmiles(job[1]), true, true);
+        return new ArrayList<Map<Integer, Integer>>(smsd.getAllMapping());
+    }
 }
@@ -91,4 +91,56 @@ public class TimeOutTest {
         boolean result = instance.isTimeOutFlag();
         assertNotSame(expResult, result);
     }
+
+    @Test
+    public void testTimeOut_double() {
+        TimeOut instance = new TimeOut(0.5);
+        Assert.assertEquals(0.5, instance.getTimeOut(), 0.0001);
+        Assert.assertFalse(instance.isTimeOutFlag());
+        Assert.assertFalse(instance.isTimeOut());
+    }
+
+    @Test
+    public void testIsTimeOut() throws InterruptedException {
+        TimeOut instance = new TimeOut(0);
+        Thread.sleep(10);
+        Assert.assertTrue(instance.isTimeOut());
+        Assert.assertTrue(instance.isTimeOutFlag());
+        Assert.assertFalse(new TimeOut(-1).isTimeOut());
+    }
+
+    @Test
+    public void testStart() throws InterruptedException {
+        TimeOut instance = new TimeOut(0.5);
+        instance.setTimeOutFlag(true);
+        instance.start();
+        Assert.assertFalse(instance.isTimeOutFlag());
+        Assert.assertFalse(instance.isTimeOut());
+    }
+
+    @Test
+    public void testCancel() {
+        TimeOut instance = new TimeOut(-1);
+        Assert.assertFalse(instance.isCancelled());
+        instance.cancel();
+        Assert.assertTrue(instance.isCancelled());
+        Assert.assertTrue(instance.isTimeOut());
+        instance.start();
+        Assert.assertTrue(instance.isTimeOut());
+    }
+
+    /**
+     * Instances have their own time out and do not change the shared one.
+     */
+    @Test
+    public void testIndependentInstances() {
+        TimeOut.getInstance().setTimeOut(0.1);
+        TimeOut first = new TimeOut(-1);
+        TimeOut second = new TimeOut(0);
+        first.cancel();
+        Assert.assertTrue(first.isTimeOut());
+        Assert.assertFalse(second.isCancelled());
+        Assert.assertFalse(TimeOut.getInstance().isTimeOutFlag());
+        Assert.assertEquals(0.1, TimeOut.getInstance().getTimeOut(), 0.0001);
+    }
 }